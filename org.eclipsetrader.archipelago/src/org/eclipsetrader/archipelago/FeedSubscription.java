@@ -25,6 +25,7 @@ import org.eclipsetrader.core.feed.IQuote;
 import org.eclipsetrader.core.feed.ISubscriptionListener;
 import org.eclipsetrader.core.feed.ITodayOHL;
 import org.eclipsetrader.core.feed.ITrade;
+import org.eclipsetrader.core.feed.OrderBook;
 import org.eclipsetrader.core.feed.QuoteDelta;
 import org.eclipsetrader.core.feed.QuoteEvent;
 
@@ -39,6 +40,7 @@ public class FeedSubscription implements IFeedSubscription2 {
     private ITodayOHL todayOHL;
     private ILastClose lastClose;
     private IBook book;
+    private OrderBook orderBook = new OrderBook();
 
     private ListenerList listeners = new ListenerList(ListenerList.IDENTITY);
 
@@ -186,8 +188,8 @@ public class FeedSubscription implements IFeedSubscription2 {
         return book;
     }
 
-    public void setBook(IBook book) {
-        this.book = book;
+    public OrderBook getOrderBook() {
+        return orderBook;
     }
 
     public void addDelta(QuoteDelta delta) {
@@ -203,6 +205,11 @@ public class FeedSubscription implements IFeedSubscription2 {
     public void fireNotification() {
         QuoteDelta[] deltas;
         synchronized (deltaList) {
+            if (orderBook.hasChanges()) {
+                IBook newBook = orderBook.getSnapshot();
+                deltaList.add(new QuoteDelta(getIdentifier(), book, newBook));
+                book = newBook;
+            }
             if (deltaList.isEmpty()) {
                 return;
             }
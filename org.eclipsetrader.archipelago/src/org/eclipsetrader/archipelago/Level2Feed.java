@@ -19,10 +19,8 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -37,15 +35,13 @@ import org.eclipse.core.runtime.IExecutableExtensionFactory;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Status;
-import org.eclipsetrader.core.feed.BookEntry;
-import org.eclipsetrader.core.feed.IBook;
-import org.eclipsetrader.core.feed.IBookEntry;
+import org.eclipsetrader.core.feed.BookDelta;
 import org.eclipsetrader.core.feed.IConnectorListener;
 import org.eclipsetrader.core.feed.IFeedConnector2;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
 import org.eclipsetrader.core.feed.IFeedSubscription;
 import org.eclipsetrader.core.feed.IFeedSubscription2;
-import org.eclipsetrader.core.feed.QuoteDelta;
+import org.eclipsetrader.core.feed.OrderBook;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
@@ -344,38 +340,11 @@ public class Level2Feed implements IFeedConnector2, Runnable, IExecutableExtensi
 
                     String symbol = sections[1];
 
-                    int index = 0, item = 0;
-                    String[] elements = sections[2].split("#");
-
-                    List<BookEntry> bid = new ArrayList<BookEntry>();
-                    while (index < elements.length) {
-                        Double price = new Double(elements[index++]);
-                        Long quantity = new Long(elements[index++]);
-                        index++; // Time
-                        String id = elements[index++];
-                        bid.add(new BookEntry(null, price, quantity, 1L, id));
-                        item++;
-                    }
-
-                    index = 0;
-                    item = 0;
-                    elements = sections[3].split("#");
-                    List<BookEntry> ask = new ArrayList<BookEntry>();
-                    while (index < elements.length) {
-                        Double price = new Double(elements[index++]);
-                        Long quantity = new Long(elements[index++]);
-                        index++; // Time
-                        String id = elements[index++];
-                        ask.add(new BookEntry(null, price, quantity, 1L, id));
-                        item++;
-                    }
-
                     FeedSubscription subscription = symbolSubscriptions.get(symbol);
                     if (subscription != null) {
-                        IBook oldValue = subscription.getBook();
-                        IBook newValue = new org.eclipsetrader.core.feed.Book(bid.toArray(new IBookEntry[bid.size()]), ask.toArray(new IBookEntry[ask.size()]));
-                        subscription.setBook(newValue);
-                        subscription.addDelta(new QuoteDelta(subscription.getIdentifier(), oldValue, newValue));
+                        OrderBook orderBook = subscription.getOrderBook();
+                        updateBookSide(orderBook, BookDelta.BID, sections[2]);
+                        updateBookSide(orderBook, BookDelta.ASK, sections[3]);
                         subscription.fireNotification();
                     }
                 }
@@ -426,4 +395,39 @@ public class Level2Feed implements IFeedConnector2, Runnable, IExecutableExtensi
 
         thread = null;
     }
+
+    /**
+     * Updates one side of the book from the <code>price#quantity#time#id</code> entries
+     * of a book message, only the changed entries are recorded in the order book.
+     *
+     * @param orderBook the book to update.
+     * @param side the book side.
+     * @param section the message section with the side entries.
+     */
+    void updateBookSide(OrderBook orderBook, int side, String section) {
+        int level = 0;
+        int index = 0;
+        int length = section.length();
+        while (index < length) {
+            int end = section.indexOf('#', index);
+            double price = Double.parseDouble(section.substring(index, end));
+            index = end + 1;
+
+            end = section.indexOf('#', index);
+            long quantity = Long.parseLong(section.substring(index, end));
+            index = end + 1;
+
+            index = section.indexOf('#', index) + 1; // Time
+
+            end = section.indexOf('#', index);
+            if (end == -1) {
+                end = length;
+            }
+            String id = section.substring(index, end);
+            index = end + 1;
+
+            orderBook.set(side, level++, 0, price, quantity, 1L, id);
+        }
+        orderBook.truncate(side, level);
+    }
 }
@@ -20,7 +20,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.methods.GetMethod;
@@ -31,6 +30,8 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.osgi.util.NLS;
 import org.eclipsetrader.borsaitalia.internal.Activator;
+import org.eclipsetrader.core.HttpClientService;
+import org.eclipsetrader.core.IHttpClientService;
 import org.eclipsetrader.core.feed.IBackfillConnector;
 import org.eclipsetrader.core.feed.IDividend;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
@@ -47,8 +48,6 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
     private String name;
 
     private String host = "grafici.borsaitalia.it"; //$NON-NLS-1$
-    private NumberFormat nf = NumberFormat.getInstance(Locale.US);
-    private SimpleDateFormat df = new SimpleDateFormat("yyyyMMddHHmmss"); //$NON-NLS-1$
 
     public BackfillConnector() {
     }
@@ -136,8 +135,9 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
 
         List<OHLC> list = new ArrayList<OHLC>();
 
+        HttpMethod method = null;
         try {
-            HttpMethod method = new GetMethod("http://" + host + "/scripts/cligipsw.dll"); //$NON-NLS-1$ //$NON-NLS-2$
+            method = new GetMethod("http://" + host + "/scripts/cligipsw.dll"); //$NON-NLS-1$ //$NON-NLS-2$
             method.setQueryString(new NameValuePair[] {
                     new NameValuePair("app", "tic_d"), //$NON-NLS-1$ //$NON-NLS-2$
                     new NameValuePair("action", "dwnld4push"), //$NON-NLS-1$ //$NON-NLS-2$
@@ -152,14 +152,16 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
             });
             method.setFollowRedirects(true);
 
-            HttpClient client = new HttpClient();
-            client.getHttpConnectionManager().getParams().setConnectionTimeout(5000);
-            client.executeMethod(method);
+            IHttpClientService httpClientService = HttpClientService.getInstance();
+            httpClientService.executeMethod(method);
 
-            BufferedReader in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+            BufferedReader in = new BufferedReader(new InputStreamReader(httpClientService.getResponseBodyAsStream(method)));
 
             String inputLine = in.readLine();
             if (inputLine.startsWith("@")) { //$NON-NLS-1$
+                NumberFormat nf = NumberFormat.getInstance(Locale.US);
+                SimpleDateFormat df = new SimpleDateFormat("yyyyMMddHHmmss"); //$NON-NLS-1$
+
                 while ((inputLine = in.readLine()) != null) {
                     if (inputLine.startsWith("@") || inputLine.length() == 0) { //$NON-NLS-1$
                         continue;
@@ -187,6 +189,10 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
         } catch (Exception e) {
             Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading data", e); //$NON-NLS-1$
             Activator.getDefault().getLog().log(status);
+        } finally {
+            if (method != null) {
+                method.releaseConnection();
+            }
         }
 
         return list.toArray(new IOHLC[list.size()]);
@@ -12,39 +12,36 @@
 package org.eclipsetrader.borsaitalia.internal.ui.wizards;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
-import org.eclipse.osgi.util.NLS;
 import org.eclipsetrader.borsaitalia.internal.Activator;
 import org.eclipsetrader.borsaitalia.internal.core.BackfillConnector;
-import org.eclipsetrader.core.feed.History;
-import org.eclipsetrader.core.feed.HistoryDay;
+import org.eclipsetrader.core.feed.BackfillScheduler;
+import org.eclipsetrader.core.feed.HistoryBackfillTask;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
 import org.eclipsetrader.core.feed.IFeedProperties;
 import org.eclipsetrader.core.feed.IHistory;
-import org.eclipsetrader.core.feed.IOHLC;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.repositories.IRepositoryService;
-import org.eclipsetrader.core.repositories.IStoreObject;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
 public class DataImportJob extends Job {
 
-    public static final int FULL = 0;
-    public static final int INCREMENTAL = 1;
-    public static final int FULL_INCREMENTAL = 2;
+    public static final int FULL = HistoryBackfillTask.FULL;
+    public static final int INCREMENTAL = HistoryBackfillTask.INCREMENTAL;
+    public static final int FULL_INCREMENTAL = HistoryBackfillTask.FULL_INCREMENTAL;
+
+    private static final int CONCURRENCY = 4;
+    private static final long MINIMUM_INTERVAL = 250;
 
     private ISecurity[] securities;
     private int mode;
@@ -69,124 +66,50 @@ public class DataImportJob extends Job {
     @Override
     protected IStatus run(IProgressMonitor monitor) {
         ISecurity[] filteredList = getFilteredSecurities(securities);
-        monitor.beginTask(getName(), filteredList.length * timeSpan.length);
+        monitor.beginTask(getName(), filteredList.length);
 
         try {
             IRepositoryService repositoryService = getRepositoryService();
 
+            List<HistoryBackfillTask> tasks = new ArrayList<HistoryBackfillTask>();
             for (ISecurity security : filteredList) {
-                if (monitor.isCanceled()) {
-                    return Status.CANCEL_STATUS;
-                }
-
-                monitor.subTask(security.getName().replace("&", "&&")); //$NON-NLS-1$ //$NON-NLS-2$
-
-                try {
-                    IStoreObject storeObject = (IStoreObject) security.getAdapter(IStoreObject.class);
-
-                    IFeedIdentifier identifier = (IFeedIdentifier) security.getAdapter(IFeedIdentifier.class);
-                    if (identifier != null) {
-                        Date beginDate = fromDate;
-                        Date endDate = toDate;
-
-                        IHistory history = repositoryService.getHistoryFor(security);
-                        Map<Date, IOHLC> dailyDataMap = new HashMap<Date, IOHLC>(2048);
-
-                        if (history != null && mode != FULL) {
-                            for (IOHLC d : history.getOHLC()) {
-                                dailyDataMap.put(d.getDate(), d);
-                            }
-                            if (mode == FULL_INCREMENTAL) {
-                                if (history.getFirst() != null) {
-                                    beginDate = history.getFirst().getDate();
-                                    if (fromDate.before(beginDate)) {
-                                        beginDate = fromDate;
-                                    }
-                                }
-                            }
-                            else if (mode == INCREMENTAL) {
-                                if (history.getLast() != null) {
-                                    beginDate = history.getLast().getDate();
-                                }
-                                endDate = Calendar.getInstance().getTime();
+                tasks.add(new HistoryBackfillTask(security, connector, connector, mode, fromDate, toDate, timeSpan, repositoryService) {
+
+                    @Override
+                    protected Date[] getRange(IHistory history) {
+                        if (history != null && mode == FULL_INCREMENTAL && history.getFirst() != null) {
+                            Date beginDate = history.getFirst().getDate();
+                            if (fromDate.before(beginDate)) {
+                                beginDate = fromDate;
                             }
+                            return new Date[] {
+                                beginDate, toDate
+                            };
                         }
+                        return super.getRange(history);
+                    }
 
-                        Map<TimeSpan, IOHLC[]> dataMap = new HashMap<TimeSpan, IOHLC[]>();
-
-                        for (TimeSpan currentTimeSpan : timeSpan) {
-                            if (monitor.isCanceled()) {
-                                return Status.CANCEL_STATUS;
-                            }
-
-                            if (currentTimeSpan.equals(TimeSpan.days(1))) {
-                                monitor.subTask(security.getName().replace("&", "&&")); //$NON-NLS-1$ //$NON-NLS-2$
+                    @Override
+                    public String getErrorMessage() {
+                        return Messages.DataImportJob_ErrorDownloadingDataFor + getSecurity().getName();
+                    }
 
-                                IOHLC[] ohlc = connector.backfillHistory(identifier, beginDate, endDate, currentTimeSpan);
-                                if (ohlc != null && ohlc.length != 0) {
-                                    dataMap.put(currentTimeSpan, ohlc);
-                                }
-                            }
-                            else {
-                                monitor.subTask(NLS.bind("{0} ({1})", new Object[] { //$NON-NLS-1$
-                                        security.getName().replace("&", "&&"), //$NON-NLS-1$ //$NON-NLS-2$
-                                        currentTimeSpan.toString()
-                                }));
-
-                                IOHLC[] ohlc = connector.backfillHistory(identifier, beginDate, endDate, currentTimeSpan);
-                                if (ohlc != null && ohlc.length != 0) {
-                                    dataMap.put(currentTimeSpan, ohlc);
-                                }
-                            }
+                    @Override
+                    protected String getMissingDataMessage() {
+                        return Messages.DataImportJob_MissingDataFor + getSecurity().getName();
+                    }
+                });
+            }
 
-                            monitor.worked(1);
-                        }
+            BackfillScheduler scheduler = new BackfillScheduler();
+            scheduler.setConcurrency(connector, CONCURRENCY);
+            scheduler.setMinimumInterval(connector, MINIMUM_INTERVAL);
 
-                        if (dataMap.size() == timeSpan.length) {
-                            for (TimeSpan currentTimeSpan : dataMap.keySet()) {
-                                IOHLC[] ohlc = dataMap.get(currentTimeSpan);
-                                if (ohlc == null) {
-                                    continue;
-                                }
-                                if (currentTimeSpan.equals(TimeSpan.days(1))) {
-                                    for (IOHLC d : ohlc) {
-                                        dailyDataMap.put(d.getDate(), d);
-                                    }
-                                    ohlc = dailyDataMap.values().toArray(new IOHLC[dailyDataMap.values().size()]);
-
-                                    if (history == null) {
-                                        history = new History(security, ohlc);
-                                    }
-                                    else if (history instanceof History) {
-                                        ((History) history).setOHLC(ohlc);
-                                    }
-
-                                    repositoryService.moveAdaptable(new IHistory[] {
-                                        history
-                                    }, storeObject.getStore().getRepository());
-                                }
-                                else {
-                                    IHistory intradayHistory = history.getSubset(beginDate, endDate, currentTimeSpan);
-                                    if (intradayHistory instanceof HistoryDay) {
-                                        ((HistoryDay) intradayHistory).setOHLC(ohlc);
-                                    }
-
-                                    repositoryService.moveAdaptable(new IHistory[] {
-                                        intradayHistory
-                                    }, storeObject.getStore().getRepository());
-                                }
-                            }
-                        }
-                        else {
-                            Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, Messages.DataImportJob_MissingDataFor + security.getName(), null);
-                            Activator.log(status);
-                        }
-                    }
-                } catch (Exception e) {
-                    Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, Messages.DataImportJob_ErrorDownloadingDataFor + security.getName(), e);
-                    Activator.log(status);
-                }
+            for (IStatus status : scheduler.run(tasks, monitor)) {
+                Activator.log(status);
             }
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
         } finally {
             monitor.done();
         }
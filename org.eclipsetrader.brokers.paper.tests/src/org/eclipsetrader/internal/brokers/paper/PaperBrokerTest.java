@@ -11,12 +11,16 @@
 
 package org.eclipsetrader.internal.brokers.paper;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.easymock.classextension.EasyMock;
 import org.eclipsetrader.core.feed.FeedIdentifier;
+import org.eclipsetrader.core.feed.PricingDelta;
+import org.eclipsetrader.core.feed.PricingEvent;
 import org.eclipsetrader.core.feed.Quote;
 import org.eclipsetrader.core.feed.Trade;
 import org.eclipsetrader.core.instruments.ISecurity;
@@ -24,12 +28,14 @@ import org.eclipsetrader.core.instruments.Security;
 import org.eclipsetrader.core.markets.IMarketService;
 import org.eclipsetrader.core.markets.MarketPricingEnvironment;
 import org.eclipsetrader.core.repositories.IRepositoryService;
+import org.eclipsetrader.core.trading.IOrderChangeListener;
 import org.eclipsetrader.core.trading.IOrderMonitor;
 import org.eclipsetrader.core.trading.IOrderSide;
 import org.eclipsetrader.core.trading.IOrderStatus;
 import org.eclipsetrader.core.trading.IOrderType;
 import org.eclipsetrader.core.trading.ITransaction;
 import org.eclipsetrader.core.trading.Order;
+import org.eclipsetrader.core.trading.OrderChangeEvent;
 
 public class PaperBrokerTest extends TestCase {
 
@@ -218,4 +224,116 @@ public class PaperBrokerTest extends TestCase {
         ITransaction transaction = ((OrderMonitor) monitor).getTransactions()[0];
         assertEquals(-100 * 10.0, transaction.getAmount().getAmount());
     }
+
+    public void testProcessStopOrder() throws Exception {
+        PaperBroker broker = new PaperBroker("test", "Test Broker", marketService, repositoryService);
+
+        Security security = new Security("Test", new FeedIdentifier("TEST", null));
+        IOrderMonitor monitor = broker.prepareOrder(new Order(null, IOrderType.Stop, IOrderSide.Sell, security, 100L, 9.5, null));
+        monitor.submit();
+
+        broker.processTrade(security, new Trade(new Date(), 9.6, 100L, null));
+
+        assertNull(monitor.getFilledQuantity());
+        assertEquals(IOrderStatus.PendingNew, monitor.getStatus());
+
+        broker.processTrade(security, new Trade(new Date(), 9.4, 100L, null));
+
+        assertEquals(new Long(100), monitor.getFilledQuantity());
+        assertEquals(new Double(9.4), monitor.getAveragePrice());
+        assertEquals(IOrderStatus.Filled, monitor.getStatus());
+    }
+
+    public void testProcessStopLimitOrder() throws Exception {
+        PaperBroker broker = new PaperBroker("test", "Test Broker", marketService, repositoryService);
+
+        Security security = new Security("Test", new FeedIdentifier("TEST", null));
+        Order order = new Order(null, IOrderType.StopLimit, IOrderSide.Buy, security, 100L, 10.6, null);
+        order.setStopPrice(10.5);
+        IOrderMonitor monitor = broker.prepareOrder(order);
+        monitor.submit();
+
+        broker.processTrade(security, new Trade(new Date(), 10.8, 100L, null));
+
+        assertNull(monitor.getFilledQuantity());
+        assertEquals(IOrderStatus.PendingNew, monitor.getStatus());
+
+        broker.processTrade(security, new Trade(new Date(), 10.55, 100L, null));
+
+        assertEquals(new Long(100), monitor.getFilledQuantity());
+        assertEquals(new Double(10.55), monitor.getAveragePrice());
+        assertEquals(IOrderStatus.Filled, monitor.getStatus());
+    }
+
+    public void testFillLimitOrdersFromBestPrice() throws Exception {
+        PaperBroker broker = new PaperBroker("test", "Test Broker", marketService, repositoryService);
+
+        Security security = new Security("Test", new FeedIdentifier("TEST", null));
+        IOrderMonitor monitor1 = broker.prepareOrder(new Order(null, IOrderType.Limit, IOrderSide.Buy, security, 100L, 9.0, null));
+        monitor1.submit();
+        IOrderMonitor monitor2 = broker.prepareOrder(new Order(null, IOrderType.Limit, IOrderSide.Buy, security, 100L, 10.0, null));
+        monitor2.submit();
+        IOrderMonitor monitor3 = broker.prepareOrder(new Order(null, IOrderType.Limit, IOrderSide.Sell, security, 100L, 9.5, null));
+        monitor3.submit();
+
+        final List<OrderChangeEvent> events = new ArrayList<OrderChangeEvent>();
+        broker.addOrderChangeListener(new IOrderChangeListener() {
+
+            @Override
+            public void orderChanged(OrderChangeEvent event) {
+                events.add(event);
+            }
+        });
+
+        broker.processTrade(security, new Trade(new Date(), 9.5, 100L, null));
+
+        assertNull(monitor1.getFilledQuantity());
+        assertEquals(IOrderStatus.Filled, monitor2.getStatus());
+        assertEquals(IOrderStatus.Filled, monitor3.getStatus());
+        assertEquals(1, events.size());
+        assertEquals(2, events.get(0).deltas.length);
+    }
+
+    public void testCanceledOrderIsNotFilled() throws Exception {
+        PaperBroker broker = new PaperBroker("test", "Test Broker", marketService, repositoryService);
+
+        Security security = new Security("Test", new FeedIdentifier("TEST", null));
+        IOrderMonitor monitor = broker.prepareOrder(new Order(null, IOrderType.Limit, IOrderSide.Buy, security, 100L, 10.0, null));
+        monitor.submit();
+        monitor.cancel();
+
+        broker.processTrade(security, new Trade(new Date(), 9.0, 100L, null));
+
+        assertNull(monitor.getFilledQuantity());
+        assertEquals(IOrderStatus.Canceled, monitor.getStatus());
+    }
+
+    public void testBatchNotificationsOfPricingEvent() throws Exception {
+        PaperBroker broker = new PaperBroker("test", "Test Broker", marketService, repositoryService);
+
+        Security security = new Security("Test", new FeedIdentifier("TEST", null));
+        IOrderMonitor monitor1 = broker.prepareOrder(new Order(null, IOrderSide.Buy, security, 100L));
+        monitor1.submit();
+        IOrderMonitor monitor2 = broker.prepareOrder(new Order(null, IOrderSide.Sell, security, 100L));
+        monitor2.submit();
+
+        final List<OrderChangeEvent> events = new ArrayList<OrderChangeEvent>();
+        broker.addOrderChangeListener(new IOrderChangeListener() {
+
+            @Override
+            public void orderChanged(OrderChangeEvent event) {
+                events.add(event);
+            }
+        });
+
+        broker.pricingListener.pricingUpdate(new PricingEvent(security, new PricingDelta[] {
+            new PricingDelta(null, new Trade(new Date(), 10.0, 50L, null)),
+            new PricingDelta(null, new Trade(new Date(), 10.0, 50L, null)),
+        }));
+
+        assertEquals(IOrderStatus.Filled, monitor1.getStatus());
+        assertEquals(IOrderStatus.Filled, monitor2.getStatus());
+        assertEquals(1, events.size());
+        assertEquals(2, events.get(0).deltas.length);
+    }
 }
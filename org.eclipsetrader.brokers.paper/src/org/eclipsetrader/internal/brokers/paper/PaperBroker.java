@@ -12,7 +12,6 @@
 package org.eclipsetrader.internal.brokers.paper;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -20,21 +19,15 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-import javax.xml.namespace.QName;
-import javax.xml.transform.stream.StreamSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.PersistenceService;
+import org.eclipsetrader.core.feed.AsyncPricingListener;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
 import org.eclipsetrader.core.feed.IPricingListener;
 import org.eclipsetrader.core.feed.ITrade;
@@ -70,22 +63,31 @@ public class PaperBroker implements IBroker {
     private MarketPricingEnvironment pricingEnvironment;
 
     private List<OrderMonitor> pendingOrders = new ArrayList<OrderMonitor>();
+    private PendingOrderBook orderBook = new PendingOrderBook();
     private ListenerList listeners = new ListenerList(ListenerList.IDENTITY);
 
     private final Log log = LogFactory.getLog(getClass());
 
-    private IPricingListener pricingListener = new IPricingListener() {
+    IPricingListener pricingListener = new IPricingListener() {
 
         @Override
         public void pricingUpdate(PricingEvent event) {
+            List<OrderDelta> deltas = null;
             for (PricingDelta delta : event.getDelta()) {
                 if (delta.getNewValue() instanceof ITrade) {
-                    IMarket market = marketService.getMarketForSecurity(event.getSecurity());
-                    if (market == null || market.isOpen()) {
-                        processTrade(event.getSecurity(), (ITrade) delta.getNewValue());
+                    if (deltas == null) {
+                        IMarket market = marketService.getMarketForSecurity(event.getSecurity());
+                        if (market != null && !market.isOpen()) {
+                            return;
+                        }
+                        deltas = new ArrayList<OrderDelta>();
                     }
+                    processTrade(event.getSecurity(), (ITrade) delta.getNewValue(), deltas);
                 }
             }
+            if (deltas != null && deltas.size() != 0) {
+                fireUpdateNotifications(deltas.toArray(new OrderDelta[deltas.size()]));
+            }
         }
     };
 
@@ -123,6 +125,7 @@ public class PaperBroker implements IBroker {
         }
 
         pricingEnvironment = new MarketPricingEnvironment(marketService);
+        pricingEnvironment.setAsyncDispatch(AsyncPricingListener.Policy.BLOCK, AsyncPricingListener.DEFAULT_CAPACITY);
 
         List<OrderDelta> list = new ArrayList<OrderDelta>();
         for (OrderMonitor monitor : pendingOrders) {
@@ -199,7 +202,7 @@ public class PaperBroker implements IBroker {
     @Override
     public IOrderType[] getAllowedTypes() {
         return new IOrderType[] {
-            IOrderType.Limit, IOrderType.Market,
+            IOrderType.Limit, IOrderType.Market, IOrderType.Stop, IOrderType.StopLimit,
         };
     }
 
@@ -244,6 +247,9 @@ public class PaperBroker implements IBroker {
 
             @Override
             public void cancel() throws BrokerException {
+                synchronized (pendingOrders) {
+                    orderBook.remove(this);
+                }
                 setStatus(IOrderStatus.Canceled);
 
                 if (log.isInfoEnabled()) {
@@ -268,14 +274,15 @@ public class PaperBroker implements IBroker {
 
             @Override
             public void submit() throws BrokerException {
-                synchronized (pendingOrders) {
-                    pendingOrders.add(this);
-                }
-
                 SimpleDateFormat idFormatter = new SimpleDateFormat("yyMMddHHmmssSSS");
                 setId(idFormatter.format(new Date()));
                 setStatus(IOrderStatus.PendingNew);
 
+                synchronized (pendingOrders) {
+                    pendingOrders.add(this);
+                    orderBook.add(this);
+                }
+
                 if (log.isInfoEnabled()) {
                     StringBuilder sb = new StringBuilder("Order Submitted:");
                     sb.append(" instrument=" + getOrder().getSecurity().getName());
@@ -310,36 +317,54 @@ public class PaperBroker implements IBroker {
 
     protected void processTrade(ISecurity security, ITrade trade) {
         List<OrderDelta> deltas = new ArrayList<OrderDelta>();
+        processTrade(security, trade, deltas);
+        if (deltas.size() != 0) {
+            fireUpdateNotifications(deltas.toArray(new OrderDelta[deltas.size()]));
+        }
+    }
+
+    /**
+     * Fills the pending orders that can be executed at the trade price, adding the
+     * changed orders to the deltas list.
+     *
+     * @param security the traded security.
+     * @param trade the trade.
+     * @param deltas the list where the order changes are added.
+     */
+    protected void processTrade(ISecurity security, ITrade trade, List<OrderDelta> deltas) {
+        if (trade.getPrice() == null) {
+            return;
+        }
 
-        OrderMonitor[] monitors;
+        List<OrderMonitor> monitors;
         synchronized (pendingOrders) {
-            monitors = pendingOrders.toArray(new OrderMonitor[pendingOrders.size()]);
+            monitors = orderBook.match(security, trade.getPrice());
+        }
+        if (monitors.isEmpty()) {
+            return;
         }
-        for (int i = 0; i < monitors.length; i++) {
-            if (monitors[i].getStatus() != IOrderStatus.PendingNew && monitors[i].getStatus() != IOrderStatus.Partial) {
+
+        for (OrderMonitor monitor : monitors) {
+            if (monitor.getStatus() != IOrderStatus.PendingNew && monitor.getStatus() != IOrderStatus.Partial) {
                 continue;
             }
-            IOrder order = monitors[i].getOrder();
-            if (order.getSecurity() == security) {
-                if (order.getType() == IOrderType.Market) {
-                    fillOrder(monitors[i], monitors[i].getOrder(), trade.getSize(), trade.getPrice());
-                    deltas.add(new OrderDelta(OrderDelta.KIND_UPDATED, monitors[i]));
-                }
-                else if (order.getType() == IOrderType.Limit) {
-                    if (order.getSide() == IOrderSide.Buy && trade.getPrice() <= order.getPrice()) {
-                        fillOrder(monitors[i], monitors[i].getOrder(), trade.getSize(), trade.getPrice());
-                        deltas.add(new OrderDelta(OrderDelta.KIND_UPDATED, monitors[i]));
-                    }
-                    else if (order.getSide() == IOrderSide.Sell && trade.getPrice() >= order.getPrice()) {
-                        fillOrder(monitors[i], monitors[i].getOrder(), trade.getSize(), trade.getPrice());
-                        deltas.add(new OrderDelta(OrderDelta.KIND_UPDATED, monitors[i]));
-                    }
-                }
+            fillOrder(monitor, monitor.getOrder(), trade.getSize(), trade.getPrice());
+
+            boolean found = false;
+            for (int i = 0; i < deltas.size() && !found; i++) {
+                found = deltas.get(i).getOrder() == monitor;
+            }
+            if (!found) {
+                deltas.add(new OrderDelta(OrderDelta.KIND_UPDATED, monitor));
             }
         }
 
-        if (deltas.size() != 0) {
-            fireUpdateNotifications(deltas.toArray(new OrderDelta[deltas.size()]));
+        synchronized (pendingOrders) {
+            for (OrderMonitor monitor : monitors) {
+                if (monitor.getStatus() != IOrderStatus.PendingNew && monitor.getStatus() != IOrderStatus.Partial) {
+                    orderBook.remove(monitor);
+                }
+            }
         }
     }
 
@@ -434,56 +459,25 @@ public class PaperBroker implements IBroker {
         return Activator.getDefault().getRepository().getAccounts();
     }
 
-    public void load(File file) throws JAXBException {
-        if (!file.exists()) {
-            return;
-        }
-
-        JAXBContext jaxbContext = JAXBContext.newInstance(OrderMonitor[].class);
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-        unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                Activator.log(status);
-                return true;
-            }
-        });
-        JAXBElement<OrderMonitor[]> element = unmarshaller.unmarshal(new StreamSource(file), OrderMonitor[].class);
-        if (element != null) {
+    public void load(File file) throws JAXBException, IOException {
+        OrderMonitor[] elements = PersistenceService.getInstance().unmarshalElement(OrderMonitor[].class, file);
+        if (elements != null) {
             Calendar today = Calendar.getInstance();
             Calendar order = Calendar.getInstance();
-            for (OrderMonitor monitor : element.getValue()) {
+            for (OrderMonitor monitor : elements) {
                 order.setTime(monitor.getOrder().getDate());
                 if (order.get(Calendar.DAY_OF_YEAR) == today.get(Calendar.DAY_OF_YEAR)) {
                     pendingOrders.add(monitor);
+                    if (monitor.getStatus() == IOrderStatus.PendingNew || monitor.getStatus() == IOrderStatus.Partial) {
+                        orderBook.add(monitor);
+                    }
                 }
             }
         }
     }
 
     public void save(File file) throws JAXBException, IOException {
-        if (file.exists()) {
-            file.delete();
-        }
-
-        JAXBContext jaxbContext = JAXBContext.newInstance(OrderMonitor[].class);
-        Marshaller marshaller = jaxbContext.createMarshaller();
-        marshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                Activator.log(status);
-                return true;
-            }
-        });
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-
         OrderMonitor[] elements = pendingOrders.toArray(new OrderMonitor[pendingOrders.size()]);
-        JAXBElement<OrderMonitor[]> element = new JAXBElement<OrderMonitor[]>(new QName("list"), OrderMonitor[].class, elements);
-        marshaller.marshal(element, new FileWriter(file));
+        PersistenceService.getInstance().marshalElement("list", elements, OrderMonitor[].class, file); //$NON-NLS-1$
     }
 }
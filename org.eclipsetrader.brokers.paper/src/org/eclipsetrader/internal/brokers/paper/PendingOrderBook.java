@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.internal.brokers.paper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.trading.IOrder;
+import org.eclipsetrader.core.trading.IOrderSide;
+import org.eclipsetrader.core.trading.IOrderType;
+
+/**
+ * Index of the pending orders of the paper broker.
+ *
+ * <p>Orders are grouped by security. Limit orders are kept in buy and sell ladders
+ * sorted from the best price, so a trade only visits the orders it can fill. Stop
+ * orders are kept in ladders sorted by stop price and, when a trade reaches the
+ * stop price, are moved to the market orders or, for stop-limit orders, to the
+ * limit ladders.</p>
+ *
+ * <p>The index isn't synchronized.</p>
+ */
+class PendingOrderBook {
+
+    private final Map<ISecurity, Ladders> map = new HashMap<ISecurity, Ladders>();
+
+    private static class Ladders {
+
+        final List<OrderMonitor> market = new ArrayList<OrderMonitor>();
+        final TreeMap<Double, List<OrderMonitor>> buyLimits = new TreeMap<Double, List<OrderMonitor>>(Collections.reverseOrder());
+        final TreeMap<Double, List<OrderMonitor>> sellLimits = new TreeMap<Double, List<OrderMonitor>>();
+        final TreeMap<Double, List<OrderMonitor>> buyStops = new TreeMap<Double, List<OrderMonitor>>();
+        final TreeMap<Double, List<OrderMonitor>> sellStops = new TreeMap<Double, List<OrderMonitor>>(Collections.reverseOrder());
+        int size;
+    }
+
+    public PendingOrderBook() {
+    }
+
+    /**
+     * Adds a pending order to the index.
+     *
+     * @param monitor the order to add.
+     */
+    public void add(OrderMonitor monitor) {
+        IOrder order = monitor.getOrder();
+        Ladders ladders = map.get(order.getSecurity());
+        if (ladders == null) {
+            ladders = new Ladders();
+            map.put(order.getSecurity(), ladders);
+        }
+
+        boolean buy = isBuy(order);
+        if (order.getType() == IOrderType.Stop || order.getType() == IOrderType.StopLimit) {
+            Double stopPrice = getStopPrice(order);
+            if (stopPrice != null) {
+                add(buy ? ladders.buyStops : ladders.sellStops, stopPrice, monitor);
+                ladders.size++;
+                return;
+            }
+        }
+        addTriggered(ladders, monitor, buy);
+        ladders.size++;
+    }
+
+    /**
+     * Removes an order from the index.
+     *
+     * @param monitor the order to remove.
+     * @return <code>true</code> if the order was in the index.
+     */
+    public boolean remove(OrderMonitor monitor) {
+        IOrder order = monitor.getOrder();
+        Ladders ladders = map.get(order.getSecurity());
+        if (ladders == null) {
+            return false;
+        }
+
+        boolean buy = isBuy(order);
+        boolean removed = ladders.market.remove(monitor);
+        if (!removed && order.getPrice() != null) {
+            removed = remove(buy ? ladders.buyLimits : ladders.sellLimits, order.getPrice(), monitor);
+        }
+        if (!removed && getStopPrice(order) != null) {
+            removed = remove(buy ? ladders.buyStops : ladders.sellStops, getStopPrice(order), monitor);
+        }
+
+        if (removed && --ladders.size == 0) {
+            map.remove(order.getSecurity());
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the orders that can be filled by a trade at the given price, in
+     * priority order: the market orders in time order, then the limit orders
+     * from the best price. The stop orders triggered by the price are moved to
+     * the market orders or to the limit ladders before matching.
+     *
+     * @param security the traded security.
+     * @param price the trade price.
+     * @return the orders, possibly empty.
+     */
+    public List<OrderMonitor> match(ISecurity security, double price) {
+        Ladders ladders = map.get(security);
+        if (ladders == null) {
+            return Collections.emptyList();
+        }
+
+        trigger(ladders, ladders.buyStops, price, true);
+        trigger(ladders, ladders.sellStops, price, false);
+
+        List<OrderMonitor> result = new ArrayList<OrderMonitor>(ladders.market);
+        for (List<OrderMonitor> list : ladders.buyLimits.headMap(price, true).values()) {
+            result.addAll(list);
+        }
+        for (List<OrderMonitor> list : ladders.sellLimits.headMap(price, true).values()) {
+            result.addAll(list);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of orders indexed for a security.
+     *
+     * @param security the security.
+     * @return the number of orders.
+     */
+    public int size(ISecurity security) {
+        Ladders ladders = map.get(security);
+        return ladders != null ? ladders.size : 0;
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    private void trigger(Ladders ladders, TreeMap<Double, List<OrderMonitor>> stops, double price, boolean buy) {
+        Map<Double, List<OrderMonitor>> triggered = stops.headMap(price, true);
+        if (triggered.isEmpty()) {
+            return;
+        }
+        for (Iterator<List<OrderMonitor>> iter = triggered.values().iterator(); iter.hasNext();) {
+            for (OrderMonitor monitor : iter.next()) {
+                addTriggered(ladders, monitor, buy);
+            }
+            iter.remove();
+        }
+    }
+
+    private void addTriggered(Ladders ladders, OrderMonitor monitor, boolean buy) {
+        IOrder order = monitor.getOrder();
+        if ((order.getType() == IOrderType.Limit || order.getType() == IOrderType.StopLimit) && order.getPrice() != null) {
+            add(buy ? ladders.buyLimits : ladders.sellLimits, order.getPrice(), monitor);
+        }
+        else {
+            ladders.market.add(monitor);
+        }
+    }
+
+    private static void add(TreeMap<Double, List<OrderMonitor>> ladder, Double price, OrderMonitor monitor) {
+        List<OrderMonitor> list = ladder.get(price);
+        if (list == null) {
+            list = new ArrayList<OrderMonitor>(2);
+            ladder.put(price, list);
+        }
+        list.add(monitor);
+    }
+
+    private static boolean remove(TreeMap<Double, List<OrderMonitor>> ladder, Double price, OrderMonitor monitor) {
+        List<OrderMonitor> list = ladder.get(price);
+        if (list == null || !list.remove(monitor)) {
+            return false;
+        }
+        if (list.isEmpty()) {
+            ladder.remove(price);
+        }
+        return true;
+    }
+
+    private static boolean isBuy(IOrder order) {
+        return order.getSide() == IOrderSide.Buy || order.getSide() == IOrderSide.BuyCover;
+    }
+
+    private static Double getStopPrice(IOrder order) {
+        if (order.getType() == IOrderType.Stop) {
+            return order.getStopPrice() != null ? order.getStopPrice() : order.getPrice();
+        }
+        if (order.getType() == IOrderType.StopLimit) {
+            return order.getStopPrice();
+        }
+        return null;
+    }
+}
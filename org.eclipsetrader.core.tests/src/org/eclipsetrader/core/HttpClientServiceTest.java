@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpClientServiceTest extends TestCase {
+
+    private static final String BODY = "Date,Open,High,Low,Close,Volume\n2010-01-04,10.0,11.0,9.5,10.5,1000\n";
+
+    private HttpServer server;
+    private HttpClientService service;
+    private List<String> acceptEncodings;
+    private List<Integer> clientPorts;
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        acceptEncodings = Collections.synchronizedList(new ArrayList<String>());
+        clientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/plain", new TestHandler(null));
+        server.createContext("/gzip", new TestHandler("gzip"));
+        server.createContext("/deflate", new TestHandler("deflate"));
+        server.createContext("/raw-deflate", new TestHandler("raw-deflate"));
+        server.createContext("/etag", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(HttpStatus.SC_NOT_MODIFIED, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                send(exchange, BODY.getBytes("US-ASCII"));
+            }
+        });
+        server.start();
+
+        service = new HttpClientService();
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        service.shutDown();
+        server.stop(0);
+    }
+
+    public void testReadPlainResponse() throws Exception {
+        assertEquals(BODY, get("/plain"));
+    }
+
+    public void testRequestCompressedResponse() throws Exception {
+        get("/plain");
+        assertEquals("gzip, deflate", acceptEncodings.get(0));
+    }
+
+    public void testDecodeGzipResponse() throws Exception {
+        assertEquals(BODY, get("/gzip"));
+    }
+
+    public void testDecodeDeflateResponse() throws Exception {
+        assertEquals(BODY, get("/deflate"));
+    }
+
+    public void testDecodeRawDeflateResponse() throws Exception {
+        assertEquals(BODY, get("/raw-deflate"));
+    }
+
+    public void testReuseConnection() throws Exception {
+        get("/plain");
+        get("/gzip");
+        assertEquals(2, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    public void testConditionalRequest() throws Exception {
+        HttpMethod method = new GetMethod(getURL("/etag"));
+        try {
+            assertEquals(HttpStatus.SC_OK, service.executeConditionalMethod(method));
+            assertEquals(BODY, service.getResponseBodyAsString(method));
+        } finally {
+            method.releaseConnection();
+        }
+
+        method = new GetMethod(getURL("/etag"));
+        try {
+            assertEquals(HttpStatus.SC_NOT_MODIFIED, service.executeConditionalMethod(method));
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    public void testUnconditionalRequest() throws Exception {
+        get("/etag");
+
+        HttpMethod method = new GetMethod(getURL("/etag"));
+        try {
+            assertEquals(HttpStatus.SC_OK, service.executeMethod(method));
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    private String getURL(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private String get(String path) throws Exception {
+        HttpMethod method = new GetMethod(getURL(path));
+        try {
+            assertEquals(HttpStatus.SC_OK, service.executeMethod(method));
+            return service.getResponseBodyAsString(method);
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    private static void send(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(HttpStatus.SC_OK, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+    }
+
+    private class TestHandler implements HttpHandler {
+
+        private final String encoding;
+
+        TestHandler(String encoding) {
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            acceptEncodings.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            OutputStream os = buffer;
+            if ("gzip".equals(encoding)) {
+                os = new GZIPOutputStream(buffer);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            else if ("deflate".equals(encoding)) {
+                os = new DeflaterOutputStream(buffer);
+                exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+            }
+            else if ("raw-deflate".equals(encoding)) {
+                os = new DeflaterOutputStream(buffer, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+                exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+            }
+            os.write(BODY.getBytes("US-ASCII"));
+            os.close();
+
+            send(exchange, buffer.toByteArray());
+        }
+    }
+}
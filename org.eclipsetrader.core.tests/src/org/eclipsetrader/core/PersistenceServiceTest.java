@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.text.SimpleDateFormat;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.internal.markets.Market;
+import org.eclipsetrader.core.internal.markets.MarketList;
+import org.eclipsetrader.core.internal.markets.MarketTime;
+
+public class PersistenceServiceTest extends TestCase {
+
+    private File file = new File("persistence.xml");
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    public void testUnmarshalMissingFile() throws Exception {
+        PersistenceService service = new PersistenceService();
+        assertNull(service.unmarshal(MarketList.class, file));
+        assertNull(service.unmarshalElement(MarketTime[].class, file));
+    }
+
+    public void testMarshalFormatted() throws Exception {
+        PersistenceService service = new PersistenceService();
+        service.marshal(createList(), MarketList.class, file);
+
+        MarketList list = service.unmarshal(MarketList.class, file);
+        assertEquals(1, list.getList().size());
+        assertEquals("Test", list.getList().get(0).getName());
+    }
+
+    public void testMarshalCompressed() throws Exception {
+        PersistenceService service = new PersistenceService();
+        service.marshal(createList(), MarketList.class, file, IPersistenceService.COMPACT | IPersistenceService.GZIP);
+
+        FileInputStream is = new FileInputStream(file);
+        try {
+            assertEquals(0x1F, is.read());
+            assertEquals(0x8B, is.read());
+        } finally {
+            is.close();
+        }
+
+        MarketList list = service.unmarshal(MarketList.class, file);
+        assertEquals(1, list.getList().size());
+        assertEquals("Test", list.getList().get(0).getName());
+    }
+
+    public void testMarshalReplacesExistingFile() throws Exception {
+        PersistenceService service = new PersistenceService();
+        service.marshal(createList(), MarketList.class, file);
+        service.marshal(new MarketList(), MarketList.class, file);
+
+        assertFalse(new File(file.getPath() + PersistenceService.TEMP_EXTENSION).exists());
+        assertEquals(0, service.unmarshal(MarketList.class, file).getList().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testMarshalFailureRemovesTempFile() throws Exception {
+        PersistenceService service = new PersistenceService();
+        service.marshal(createList(), MarketList.class, file);
+        try {
+            service.marshal(new Object(), (Class) MarketList.class, file);
+            fail();
+        } catch (Exception e) {
+            // Expected
+        }
+
+        assertFalse(new File(file.getPath() + PersistenceService.TEMP_EXTENSION).exists());
+        assertEquals(1, service.unmarshal(MarketList.class, file).getList().size());
+    }
+
+    public void testMarshalElement() throws Exception {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm");
+        MarketTime[] elements = new MarketTime[] {
+            new MarketTime(dateFormat.parse("09:00"), dateFormat.parse("17:30"), "Test"),
+        };
+
+        PersistenceService service = new PersistenceService();
+        service.marshalElement("list", elements, MarketTime[].class, file);
+
+        MarketTime[] result = service.unmarshalElement(MarketTime[].class, file);
+        assertEquals(1, result.length);
+        assertEquals("Test", result[0].getDescription());
+    }
+
+    public void testReuseContext() throws Exception {
+        PersistenceService service = new PersistenceService();
+        assertSame(service.getContext(MarketList.class), service.getContext(MarketList.class));
+    }
+
+    private MarketList createList() {
+        MarketList list = new MarketList();
+        list.getList().add(new Market("Test", null, null));
+        return list;
+    }
+}
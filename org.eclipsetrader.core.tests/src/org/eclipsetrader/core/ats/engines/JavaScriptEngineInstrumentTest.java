@@ -15,8 +15,11 @@ import java.util.Calendar;
 
 import junit.framework.TestCase;
 
+import org.eclipsetrader.core.IScript;
+import org.eclipsetrader.core.Script;
 import org.eclipsetrader.core.ats.ScriptStrategy;
 import org.eclipsetrader.core.feed.Bar;
+import org.eclipsetrader.core.feed.DepthMetrics;
 import org.eclipsetrader.core.feed.Quote;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.feed.Trade;
@@ -24,6 +27,7 @@ import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.instruments.Security;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
 public class JavaScriptEngineInstrumentTest extends TestCase {
@@ -44,7 +48,7 @@ public class JavaScriptEngineInstrumentTest extends TestCase {
             instrument = new Security("Apple", null)
         });
 
-        cx = Context.enter();
+        cx = JavaScriptContextFactory.getInstance().enterContext();
         sharedScope = new ImporterTopLevel(cx);
     }
 
@@ -90,6 +94,20 @@ public class JavaScriptEngineInstrumentTest extends TestCase {
         assertEquals(trade, result);
     }
 
+    public void testOnDepthSetsDepthProperty() throws Exception {
+        DepthMetrics metrics = new DepthMetrics(1.5, 1.6, 100, 200, 300, 400, 100, 200, new long[] {
+            100
+        }, new long[] {
+            200
+        });
+
+        JavaScriptEngineInstrument context = new JavaScriptEngineInstrument(sharedScope, instrument, strategy);
+        context.onDepth(metrics);
+
+        Object result = context.get(JavaScriptEngineInstrument.PROPERTY_DEPTH);
+        assertEquals(metrics, result);
+    }
+
     public void testOnBarSetsBarProperty() throws Exception {
         Bar bar = new Bar(Calendar.getInstance().getTime(), TimeSpan.days(1), 1.2, 1.8, 1.1, 1.5, 1000L);
 
@@ -99,4 +117,60 @@ public class JavaScriptEngineInstrumentTest extends TestCase {
         Object result = context.get(JavaScriptEngineInstrument.PROPERTY_BAR);
         assertEquals(bar, result);
     }
+
+    public void testEvaluateIncludesOnce() throws Exception {
+        StringBuilder evaluations = new StringBuilder();
+        ScriptableObject.putProperty(sharedScope, "evaluations", Context.javaToJS(evaluations, sharedScope));
+        strategy.setIncludes(new IScript[] {
+            createScript("Include", "evaluations.append('x');")
+        });
+
+        Scriptable includesScope = JavaScriptEngineInstrument.createIncludesScope(cx, sharedScope, strategy);
+        new JavaScriptEngineInstrument(includesScope, new Security("Apple", null), strategy);
+        new JavaScriptEngineInstrument(includesScope, new Security("Microsoft", null), strategy);
+
+        assertEquals("x", evaluations.toString());
+    }
+
+    public void testIncludeFunctionsUseInstrumentScope() throws Exception {
+        strategy.setIncludes(new IScript[] {
+            createScript("Include", "function instrumentName() { return instrument.getName(); }")
+        });
+        strategy.setText("function onTrade(trade) { name = instrumentName(); }");
+
+        Scriptable includesScope = JavaScriptEngineInstrument.createIncludesScope(cx, sharedScope, strategy);
+        JavaScriptEngineInstrument context1 = new JavaScriptEngineInstrument(includesScope, new Security("Apple", null), strategy);
+        JavaScriptEngineInstrument context2 = new JavaScriptEngineInstrument(includesScope, new Security("Microsoft", null), strategy);
+        context1.onTrade(new Trade(1.5));
+        context2.onTrade(new Trade(1.5));
+
+        assertEquals("Apple", Context.toString(context1.get("name")));
+        assertEquals("Microsoft", Context.toString(context2.get("name")));
+    }
+
+    public void testIncludeVariablesAreSetInInstrumentScope() throws Exception {
+        strategy.setIncludes(new IScript[] {
+            createScript("Include", "var count = 0; function increment() { count++; }")
+        });
+        strategy.setText("increment();");
+
+        Scriptable includesScope = JavaScriptEngineInstrument.createIncludesScope(cx, sharedScope, strategy);
+        JavaScriptEngineInstrument context1 = new JavaScriptEngineInstrument(includesScope, new Security("Apple", null), strategy);
+        JavaScriptEngineInstrument context2 = new JavaScriptEngineInstrument(includesScope, new Security("Microsoft", null), strategy);
+
+        assertEquals(1.0, Context.toNumber(context1.get("count")));
+        assertEquals(1.0, Context.toNumber(context2.get("count")));
+        assertEquals(0.0, Context.toNumber(ScriptableObject.getProperty(includesScope, "count")));
+    }
+
+    public void testIncludesScopeIsSealed() throws Exception {
+        Scriptable includesScope = JavaScriptEngineInstrument.createIncludesScope(cx, sharedScope, strategy);
+        assertTrue(((ScriptableObject) includesScope).isSealed());
+    }
+
+    private IScript createScript(String name, String text) {
+        Script script = new Script(name);
+        script.setText(text);
+        return script;
+    }
 }
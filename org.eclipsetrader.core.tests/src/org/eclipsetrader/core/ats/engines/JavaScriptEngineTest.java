@@ -58,7 +58,7 @@ public class JavaScriptEngineTest extends TestCase {
         EasyMock.expect(context.getAccount()).andStubReturn(account);
         EasyMock.replay(context);
 
-        cx = Context.enter();
+        cx = JavaScriptContextFactory.getInstance().enterContext();
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.engines;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.ats.ScriptStrategy;
+import org.eclipsetrader.core.instruments.Security;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptableObject;
+
+public class ScriptCacheTest extends TestCase {
+
+    Context cx;
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        cx = Context.enter();
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        Context.exit();
+    }
+
+    public void testCompileOnce() throws Exception {
+        ScriptCache cache = new ScriptCache(4);
+        Script script = cache.getScript(cx, "var a = 1;", "Test");
+        assertSame(script, cache.getScript(cx, "var a = 1;", "Test"));
+        assertNotSame(script, cache.getScript(cx, "var a = 2;", "Test"));
+        assertEquals(2, cache.size());
+    }
+
+    public void testRecompileWithOptimizationLevel() throws Exception {
+        ScriptCache cache = new ScriptCache(4);
+        Script script = cache.getScript(cx, "var a = 1;", "Test");
+        cache.setOptimizationLevel(-1);
+        assertNotSame(script, cache.getScript(cx, "var a = 1;", "Test"));
+        assertEquals(0, cx.getOptimizationLevel());
+    }
+
+    public void testBoundedSize() throws Exception {
+        ScriptCache cache = new ScriptCache(2);
+        cache.getScript(cx, "var a = 1;", "Test");
+        cache.getScript(cx, "var a = 2;", "Test");
+        cache.getScript(cx, "var a = 3;", "Test");
+        assertEquals(2, cache.size());
+    }
+
+    public void testExecuteInDifferentScopes() throws Exception {
+        ScriptCache cache = new ScriptCache(4);
+        Script script = cache.getScript(cx, "var a = (typeof a == 'undefined') ? 1 : a + 1;", "Test");
+
+        ScriptableObject scope1 = new ImporterTopLevel(cx);
+        ScriptableObject scope2 = new ImporterTopLevel(cx);
+        script.exec(cx, scope1);
+        script.exec(cx, scope1);
+        script.exec(cx, scope2);
+
+        assertEquals(2.0, Context.toNumber(scope1.get("a", scope1)));
+        assertEquals(1.0, Context.toNumber(scope2.get("a", scope2)));
+    }
+
+    public void testImportsFromSharedScope() throws Exception {
+        ScriptableObject sharedScope = new ImporterTopLevel(cx);
+        ScriptCache.getInstance().getImportsScript(cx).exec(cx, sharedScope);
+
+        JavaScriptEngineInstrument instrument = new JavaScriptEngineInstrument(sharedScope, new Security("Test", null), new ScriptStrategy("Test"));
+        Object result = cx.evaluateString(instrument.getScope(), "new Trade(1.5).price;", "Test", 1, null);
+        assertEquals(1.5, Context.toNumber(result));
+    }
+
+    public void testImportsInInstrumentScope() throws Exception {
+        ScriptableObject sharedScope = new ImporterTopLevel(cx);
+        ScriptCache.getInstance().getImportsScript(cx).exec(cx, sharedScope);
+
+        ScriptStrategy strategy = new ScriptStrategy("Test");
+        strategy.setText("importClass(java.util.ArrayList); importPackage(java.text);");
+        JavaScriptEngineInstrument instrument1 = new JavaScriptEngineInstrument(sharedScope, new Security("Test 1", null), strategy);
+        JavaScriptEngineInstrument instrument2 = new JavaScriptEngineInstrument(sharedScope, new Security("Test 2", null), new ScriptStrategy("Test"));
+
+        Object result = cx.evaluateString(instrument1.getScope(), "new ArrayList().size() + new DecimalFormat('0').format(1);", "Test", 1, null);
+        assertEquals("01", Context.toString(result));
+
+        result = cx.evaluateString(instrument2.getScope(), "typeof ArrayList + typeof DecimalFormat;", "Test", 1, null);
+        assertEquals("undefinedundefined", Context.toString(result));
+        assertEquals(ScriptableObject.NOT_FOUND, ScriptableObject.getProperty(sharedScope, "ArrayList"));
+    }
+}
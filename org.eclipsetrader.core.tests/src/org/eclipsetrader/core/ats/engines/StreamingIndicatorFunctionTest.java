@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+package org.eclipsetrader.core.ats.engines;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.charts.StreamingDataSeries;
+import org.eclipsetrader.core.feed.Bar;
+import org.eclipsetrader.core.feed.IBar;
+import org.eclipsetrader.core.feed.TimeSpan;
+
+public class StreamingIndicatorFunctionTest extends TestCase {
+
+    private static class Average extends StreamingIndicatorFunction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int period;
+        private final double[] window;
+        private int count;
+        private double sum;
+        private int updates;
+        double offset;
+
+        public Average(BarsDataSeriesFunction bars, int period) {
+            super(bars, "Average"); //$NON-NLS-1$
+            this.period = period;
+            this.window = new double[period];
+            calculate();
+        }
+
+        @Override
+        protected void reset() {
+            count = 0;
+            sum = 0.0;
+        }
+
+        @Override
+        protected double update(IBar bar) {
+            updates++;
+            window[count % period] = bar.getClose();
+            sum += bar.getClose();
+            count++;
+            if (count < period) {
+                return Double.NaN;
+            }
+            double result = sum / period + offset;
+            sum -= window[count % period];
+            return result;
+        }
+
+        @Override
+        protected double[] calculateBatch() {
+            BarsDataSeriesFunction bars = getBars();
+            double[] result = new double[Math.max(bars.getBarCount() - period + 1, 0)];
+            for (int i = 0; i < result.length; i++) {
+                double total = 0.0;
+                for (int n = 0; n < period; n++) {
+                    total += bars.getBar(i + n).getClose();
+                }
+                result[i] = total / period;
+            }
+            return result;
+        }
+    }
+
+    private Bar createBar(int day, double close) {
+        return new Bar(new Date(1000000000000L + day * 86400000L), TimeSpan.days(1), close, close, close, close, 1000L);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        StreamingIndicatorFunction.setVerify(false);
+    }
+
+    public void testAppendUpdatesIncrementally() throws Exception {
+        BarsDataSeriesFunction bars = new BarsDataSeriesFunction();
+        Average average = new Average(bars, 3);
+
+        bars.append(createBar(1, 10.0));
+        bars.append(createBar(2, 20.0));
+        assertEquals(0, average.getSeries().size());
+
+        bars.append(createBar(3, 30.0));
+        bars.append(createBar(4, 40.0));
+
+        StreamingDataSeries series = average.getStreamingSeries();
+        assertEquals(2, series.size());
+        assertEquals(20.0, series.getDouble(0), 1E-9);
+        assertEquals(30.0, series.getDouble(1), 1E-9);
+        assertEquals(4, average.updates);
+        assertTrue(average.verify());
+    }
+
+    public void testPrependRestartsCalculation() throws Exception {
+        BarsDataSeriesFunction bars = new BarsDataSeriesFunction();
+        bars.append(createBar(3, 30.0));
+        bars.append(createBar(4, 40.0));
+        Average average = new Average(bars, 2);
+        assertEquals(1, average.getSeries().size());
+
+        bars.prepend(createBar(2, 20.0));
+        bars.prepend(createBar(1, 10.0));
+
+        StreamingDataSeries series = average.getStreamingSeries();
+        assertEquals(3, series.size());
+        assertEquals(15.0, series.getDouble(0), 1E-9);
+        assertEquals(35.0, series.getDouble(2), 1E-9);
+        assertTrue(average.verify());
+    }
+
+    public void testSeriesInstanceIsStable() throws Exception {
+        BarsDataSeriesFunction bars = new BarsDataSeriesFunction();
+        Average average = new Average(bars, 2);
+        StreamingDataSeries series = average.getStreamingSeries();
+
+        bars.append(createBar(2, 20.0));
+        bars.prepend(createBar(1, 10.0));
+
+        assertSame(series, average.getSeries());
+    }
+
+    public void testNotifyListeners() throws Exception {
+        BarsDataSeriesFunction bars = new BarsDataSeriesFunction();
+        Average average = new Average(bars, 2);
+
+        final int[] count = new int[1];
+        average.addPropertyChangeListener(IndicatorFunction.PROP_SERIES, new PropertyChangeListener() {
+
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                count[0]++;
+            }
+        });
+
+        bars.append(createBar(1, 10.0));
+        bars.append(createBar(2, 20.0));
+        bars.append(createBar(3, 30.0));
+
+        assertEquals(2, count[0]);
+    }
+
+    public void testVerifyDetectsMismatch() throws Exception {
+        BarsDataSeriesFunction bars = new BarsDataSeriesFunction();
+        Average average = new Average(bars, 2);
+        average.offset = 0.5;
+
+        bars.append(createBar(1, 10.0));
+        bars.append(createBar(2, 20.0));
+
+        assertFalse(average.verify());
+    }
+
+    public void testVerifyMode() throws Exception {
+        StreamingIndicatorFunction.setVerify(true);
+
+        BarsDataSeriesFunction bars = new BarsDataSeriesFunction();
+        Average average = new Average(bars, 2);
+        for (int i = 1; i <= 10; i++) {
+            bars.append(createBar(i, i * 10.0));
+        }
+
+        assertEquals(9, average.getSeries().size());
+        assertTrue(average.verify());
+    }
+}
@@ -161,4 +161,33 @@ public class AccountTest extends TestCase {
         assertEquals(new Long(2000), account.getPositions()[0].getQuantity());
         assertEquals(1.6, account.getPositions()[0].getPrice());
     }
+
+    public void testMergeAccounts() throws Exception {
+        ISecurity otherSecurity = new Stock("OTHER", null, Currency.getInstance("EUR"));
+
+        Order order1 = new Order(null, IOrderType.Market, IOrderSide.Buy, security, 1000L, 1.5);
+        OrderMonitor monitor1 = new OrderMonitor(null, order1);
+        monitor1.setFilledQuantity(1000L);
+        monitor1.setAveragePrice(1.5);
+        monitor1.setTransaction(new Transaction(monitor1, null));
+
+        Order order2 = new Order(null, IOrderType.Market, IOrderSide.Buy, otherSecurity, 100L, 2.0);
+        OrderMonitor monitor2 = new OrderMonitor(null, order2);
+        monitor2.setFilledQuantity(100L);
+        monitor2.setAveragePrice(2.0);
+        monitor2.setTransaction(new Transaction(monitor2, null));
+
+        Account account1 = new Account();
+        account1.processCompletedOrder(monitor1);
+        Account account2 = new Account();
+        account2.processCompletedOrder(monitor2);
+
+        Account account = new Account();
+        account.merge(account1);
+        account.merge(account2);
+
+        assertEquals(-1700.0, account.getBalance().getAmount());
+        assertEquals(2, account.getTransactions().length);
+        assertEquals(2, account.getPositions().length);
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.ats.ScriptStrategy;
+import org.eclipsetrader.core.ats.StrategyParameters;
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.OHLC;
+import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.core.instruments.Security;
+
+public class OptimizerTest extends TestCase {
+
+    private ScriptStrategy strategy = new ScriptStrategy("Test");
+
+    public void testGridParameterSets() throws Exception {
+        Optimizer optimizer = new Optimizer(null, strategy, new Date(0), new Date(1000));
+        optimizer.addParameter("period", 10, 30, 10);
+        optimizer.addParameter("side", new Object[] {
+            "long", "short"
+        });
+
+        List<StrategyParameters> list = optimizer.getParameterSets();
+        assertEquals(6, list.size());
+        assertEquals(10.0, list.get(0).getValue("period"));
+        assertEquals("long", list.get(0).getValue("side"));
+        assertEquals("short", list.get(1).getValue("side"));
+        assertEquals(30.0, list.get(5).getValue("period"));
+        assertEquals(6, new HashSet<StrategyParameters>(list).size());
+    }
+
+    public void testRandomParameterSets() throws Exception {
+        Optimizer optimizer = new Optimizer(null, strategy, new Date(0), new Date(1000));
+        optimizer.addParameter("fast", 1, 20, 1);
+        optimizer.addParameter("slow", 1, 50, 1);
+        optimizer.setMethod(Optimizer.Method.RANDOM);
+        optimizer.setRandomRuns(25);
+        optimizer.setRandomSeed(1L);
+
+        List<StrategyParameters> list = optimizer.getParameterSets();
+        assertEquals(25, list.size());
+        assertEquals(25, new HashSet<StrategyParameters>(list).size());
+        assertEquals(list, optimizer.getParameterSets());
+    }
+
+    public void testWalkForwardWindows() throws Exception {
+        Optimizer optimizer = new Optimizer(null, strategy, new Date(0), new Date(1000));
+        optimizer.setWalkForward(3, 0.5);
+
+        Date[][] windows = optimizer.getWalkForwardWindows();
+        assertEquals(3, windows.length);
+        assertEquals(new Date(0), windows[0][0]);
+        assertEquals(new Date(250), windows[0][1]);
+        assertEquals(new Date(500), windows[0][2]);
+        assertEquals(new Date(250), windows[1][0]);
+        assertEquals(new Date(500), windows[1][1]);
+        assertEquals(new Date(1000), windows[2][2]);
+    }
+
+    public void testHistoryCacheSubset() throws Exception {
+        Security security = new Security("Test", null);
+        HistoryCache cache = new HistoryCache(new TimeSpan[] {
+            TimeSpan.days(1)
+        });
+        cache.put(security, new IOHLC[][] {
+            new IOHLC[] {
+                new OHLC(new Date(100), 1.0, 1.0, 1.0, 1.0, 0L),
+                new OHLC(new Date(200), 2.0, 2.0, 2.0, 2.0, 0L),
+                new OHLC(new Date(300), 3.0, 3.0, 3.0, 3.0, 0L),
+            }
+        });
+
+        IOHLC[] bars = cache.get(security, new Date(150), new Date(300))[0];
+        assertEquals(2, bars.length);
+        assertEquals(new Date(200), bars[0].getDate());
+        assertEquals(new Date(300), bars[1].getDate());
+
+        assertEquals(0, cache.get(security, new Date(400), null)[0].length);
+        assertNull(cache.get(new Security("Other", null), null, null));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipsetrader.core.feed.PricingEnvironment;
+
+public class SimulationReportTest extends TestCase {
+
+    private class TestReport extends SimulationReport {
+
+        public TestReport() {
+            super(null, new SimulationContext(null, new Account(), new PricingEnvironment()), null, null);
+        }
+
+        public void add(long time, double amount) {
+            addEquityData(new Date(time), amount);
+        }
+    }
+
+    public void testMergeEquityData() throws Exception {
+        TestReport report1 = new TestReport();
+        report1.add(1000, 10.0);
+        report1.add(3000, 20.0);
+
+        TestReport report2 = new TestReport();
+        report2.add(2000, 5.0);
+        report2.add(3000, 15.0);
+
+        TestReport report = new TestReport();
+        report.merge(Arrays.asList(new SimulationReport[] {
+            report1, report2
+        }));
+
+        IAdaptable[] values = report.getEquityData().getValues();
+        assertEquals(3, values.length);
+        assertEquals(new Date(1000), values[0].getAdapter(Date.class));
+        assertEquals(10.0, values[0].getAdapter(Double.class));
+        assertEquals(new Date(2000), values[1].getAdapter(Date.class));
+        assertEquals(15.0, values[1].getAdapter(Double.class));
+        assertEquals(new Date(3000), values[2].getAdapter(Date.class));
+        assertEquals(35.0, values[2].getAdapter(Double.class));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import java.util.Currency;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.feed.FeedIdentifier;
+import org.eclipsetrader.core.feed.PricingEnvironment;
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.instruments.Stock;
+import org.eclipsetrader.core.trading.IOrderMonitor;
+import org.eclipsetrader.core.trading.IOrderSide;
+import org.eclipsetrader.core.trading.IOrderStatus;
+import org.eclipsetrader.core.trading.IOrderType;
+import org.eclipsetrader.core.trading.Order;
+
+public class TickBrokerTest extends TestCase {
+
+    ISecurity security;
+    PricingEnvironment pricingEnvironment;
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        security = new Stock("Test", new FeedIdentifier("TEST", null), Currency.getInstance("EUR"));
+
+        pricingEnvironment = new PricingEnvironment();
+    }
+
+    public void testFillMarketOrderAtQuote() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment);
+
+        IOrderMonitor monitor = broker.prepareOrder(new Order(null, IOrderSide.Buy, security, 100L));
+        monitor.submit();
+
+        broker.matchQuote(security, 1000L, 9.9, 500L, 10.1, 500L);
+
+        assertEquals(new Long(100), monitor.getFilledQuantity());
+        assertEquals(new Double(10.1), monitor.getAveragePrice());
+        assertEquals(IOrderStatus.Filled, monitor.getStatus());
+    }
+
+    public void testPartialFillByQuoteSize() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment);
+
+        IOrderMonitor monitor = broker.prepareOrder(new Order(null, IOrderSide.Sell, security, 100L));
+        monitor.submit();
+
+        broker.matchQuote(security, 1000L, 10.0, 60L, 10.1, 500L);
+
+        assertEquals(new Long(60), monitor.getFilledQuantity());
+        assertEquals(IOrderStatus.Partial, monitor.getStatus());
+
+        broker.matchQuote(security, 2000L, 9.5, 500L, 10.1, 500L);
+
+        assertEquals(new Long(100), monitor.getFilledQuantity());
+        assertEquals(9.8, monitor.getAveragePrice(), 0.0001);
+        assertEquals(IOrderStatus.Filled, monitor.getStatus());
+    }
+
+    public void testPartialFillByTradeSize() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment);
+
+        IOrderMonitor monitor = broker.prepareOrder(new Order(null, IOrderType.Limit, IOrderSide.Buy, security, 100L, 10.0));
+        monitor.submit();
+
+        broker.matchQuote(security, 1000L, 9.9, 500L, 10.1, 500L);
+        assertNull(monitor.getFilledQuantity());
+
+        broker.matchTrade(security, 2000L, 10.0, 30L);
+        assertEquals(new Long(30), monitor.getFilledQuantity());
+        assertEquals(IOrderStatus.Partial, monitor.getStatus());
+
+        broker.matchTrade(security, 3000L, 10.2, 500L);
+        assertEquals(new Long(30), monitor.getFilledQuantity());
+
+        broker.matchTrade(security, 4000L, 9.9, 500L);
+        assertEquals(new Long(100), monitor.getFilledQuantity());
+        assertEquals(IOrderStatus.Filled, monitor.getStatus());
+    }
+
+    public void testLatencyDelaysMatching() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment, new FixedLatencyModel(100L), new FixedSlippageModel(0.0));
+        broker.setTime(1000L);
+
+        IOrderMonitor monitor = broker.prepareOrder(new Order(null, IOrderSide.Buy, security, 100L));
+        monitor.submit();
+
+        broker.matchTrade(security, 1050L, 10.0, 500L);
+        assertEquals(IOrderStatus.PendingNew, monitor.getStatus());
+
+        broker.matchTrade(security, 1100L, 10.5, 500L);
+        assertEquals(new Double(10.5), monitor.getAveragePrice());
+        assertEquals(IOrderStatus.Filled, monitor.getStatus());
+    }
+
+    public void testSlippageOnMarketOrders() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment, new FixedLatencyModel(0L), new FixedSlippageModel(0.05));
+
+        IOrderMonitor buyMonitor = broker.prepareOrder(new Order(null, IOrderSide.Buy, security, 100L));
+        buyMonitor.submit();
+        IOrderMonitor limitMonitor = broker.prepareOrder(new Order(null, IOrderType.Limit, IOrderSide.Buy, security, 100L, 10.0));
+        limitMonitor.submit();
+
+        broker.matchTrade(security, 1000L, 10.0, 0L);
+
+        assertEquals(10.05, buyMonitor.getAveragePrice(), 0.0001);
+        assertEquals(new Double(10.0), limitMonitor.getAveragePrice());
+    }
+
+    public void testStopOrderTriggeredByTrade() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment);
+
+        Order order = new Order(null, IOrderType.Stop, IOrderSide.Sell, security, 100L, null);
+        order.setStopPrice(9.5);
+        IOrderMonitor monitor = broker.prepareOrder(order);
+        monitor.submit();
+
+        broker.matchTrade(security, 1000L, 9.6, 500L);
+        assertEquals(IOrderStatus.PendingNew, monitor.getStatus());
+
+        broker.matchTrade(security, 2000L, 9.4, 500L);
+        assertEquals(new Double(9.4), monitor.getAveragePrice());
+        assertEquals(IOrderStatus.Filled, monitor.getStatus());
+    }
+
+    public void testStopLimitOrderNotFilledAboveLimit() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment);
+
+        Order order = new Order(null, IOrderType.StopLimit, IOrderSide.Buy, security, 100L, 10.6);
+        order.setStopPrice(10.5);
+        IOrderMonitor monitor = broker.prepareOrder(order);
+        monitor.submit();
+
+        broker.matchTrade(security, 1000L, 10.8, 500L);
+        assertEquals(IOrderStatus.PendingNew, monitor.getStatus());
+
+        broker.matchTrade(security, 2000L, 10.55, 500L);
+        assertEquals(new Double(10.55), monitor.getAveragePrice());
+        assertEquals(IOrderStatus.Filled, monitor.getStatus());
+    }
+
+    public void testBarPathFillsAtOrderPrices() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment);
+
+        IOrderMonitor limitMonitor = broker.prepareOrder(new Order(null, IOrderType.Limit, IOrderSide.Buy, security, 100L, 9.5));
+        limitMonitor.submit();
+
+        Order order = new Order(null, IOrderType.Stop, IOrderSide.Buy, security, 100L, null);
+        order.setStopPrice(10.4);
+        IOrderMonitor stopMonitor = broker.prepareOrder(order);
+        stopMonitor.submit();
+
+        broker.matchBar(security, 0L, 60000L, 10.0, 10.5, 9.0, 10.2, 0L);
+
+        assertEquals(new Double(9.5), limitMonitor.getAveragePrice());
+        assertEquals(new Double(10.4), stopMonitor.getAveragePrice());
+        assertEquals(IOrderStatus.Filled, stopMonitor.getStatus());
+    }
+
+    public void testCancelPartialFillUpdatesAccount() throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment);
+        Account account = new Account();
+
+        IOrderMonitor monitor = broker.prepareOrder(new Order(account, IOrderSide.Buy, security, 100L));
+        monitor.submit();
+
+        broker.matchTrade(security, 1000L, 10.0, 60L);
+        assertEquals(0, account.getPositions().length);
+
+        monitor.cancel();
+        broker.matchTrade(security, 2000L, 10.0, 60L);
+
+        assertEquals(new Long(60), monitor.getFilledQuantity());
+        assertEquals(1, account.getPositions().length);
+        assertEquals(new Long(60), account.getPositions()[0].getQuantity());
+    }
+}
@@ -70,6 +70,32 @@ public class DataSeriesTest extends TestCase {
         assertSame(sampleValues[3], values[2]);
     }
 
+    public void testGetSeriesWithOpenRange() throws Exception {
+        IAdaptable[] sampleValues = new IAdaptable[] {
+            new NumberValue(getTime(11, Calendar.NOVEMBER, 2007), 10.0),
+            new NumberValue(getTime(12, Calendar.NOVEMBER, 2007), 20.0),
+            new NumberValue(getTime(13, Calendar.NOVEMBER, 2007), 5.0),
+        };
+        DataSeries series = new DataSeries("Test", sampleValues);
+        IAdaptable[] values = series.getSeries(sampleValues[1], null).getValues();
+        assertEquals(2, values.length);
+        assertSame(sampleValues[1], values[0]);
+        assertSame(sampleValues[2], values[1]);
+    }
+
+    public void testGetSeriesFromUnsortedValues() throws Exception {
+        IAdaptable[] sampleValues = new IAdaptable[] {
+            new NumberValue(getTime(13, Calendar.NOVEMBER, 2007), 5.0),
+            new NumberValue(getTime(11, Calendar.NOVEMBER, 2007), 10.0),
+            new NumberValue(getTime(12, Calendar.NOVEMBER, 2007), 20.0),
+        };
+        DataSeries series = new DataSeries("Test", sampleValues);
+        IAdaptable[] values = series.getSeries(sampleValues[1], sampleValues[2]).getValues();
+        assertEquals(2, values.length);
+        assertSame(sampleValues[1], values[0]);
+        assertSame(sampleValues[2], values[1]);
+    }
+
     public void testCrossAbove() throws Exception {
         IAdaptable[] sampleValues1 = new IAdaptable[] {
             new NumberValue(getTime(11, Calendar.NOVEMBER, 2007), 3.7692),
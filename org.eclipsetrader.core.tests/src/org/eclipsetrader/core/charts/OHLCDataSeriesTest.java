@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.charts;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.feed.BarSeries;
+import org.eclipsetrader.core.feed.IBarSeries;
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.OHLC;
+import org.eclipsetrader.core.feed.TimeSpan;
+
+public class OHLCDataSeriesTest extends TestCase {
+
+    private IOHLC[] sampleBars = new IOHLC[] {
+        new OHLC(getTime(11, Calendar.NOVEMBER, 2007), 10.0, 12.0, 9.0, 11.0, 1000L),
+        new OHLC(getTime(12, Calendar.NOVEMBER, 2007), 11.0, 20.0, 10.0, 19.0, 2000L),
+        new OHLC(getTime(13, Calendar.NOVEMBER, 2007), 19.0, 19.0, 5.0, 6.0, 3000L),
+    };
+
+    private Date getTime(int day, int month, int year) {
+        Calendar date = Calendar.getInstance();
+        date.set(year, month, day, 0, 0, 0);
+        date.set(Calendar.MILLISECOND, 0);
+        return date.getTime();
+    }
+
+    public void testValuesFromBarSeries() throws Exception {
+        IBarSeries barSeries = BarSeries.valueOf(sampleBars);
+        OHLCDataSeries series = new OHLCDataSeries("Test", barSeries, TimeSpan.days(1));
+        assertSame(barSeries, series.getBarSeries());
+        assertEquals(3, series.getValues().length);
+        assertEquals(sampleBars[1], series.getValues()[1].getAdapter(IOHLC.class));
+    }
+
+    public void testNoBarSeriesFromBars() throws Exception {
+        OHLCDataSeries series = new OHLCDataSeries("Test", sampleBars, TimeSpan.days(1));
+        assertNull(series.getBarSeries());
+    }
+
+    public void testGetSeriesKeepsBarSeries() throws Exception {
+        OHLCDataSeries series = new OHLCDataSeries("Test", BarSeries.valueOf(sampleBars), TimeSpan.days(1));
+
+        OHLCDataSeries subset = (OHLCDataSeries) series.getSeries(series.getValues()[1], series.getValues()[2]);
+        assertEquals(2, subset.getValues().length);
+        assertEquals(2, subset.getBarSeries().size());
+        assertEquals(19.0, subset.getBarSeries().getClose(0));
+        assertEquals(6.0, subset.getBarSeries().getClose(1));
+        assertSame(series.getValues()[1], subset.getValues()[0]);
+    }
+}
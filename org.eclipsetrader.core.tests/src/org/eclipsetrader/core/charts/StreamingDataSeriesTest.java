@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+package org.eclipsetrader.core.charts;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IAdaptable;
+
+public class StreamingDataSeriesTest extends TestCase {
+
+    private Date getTime(int day, int month, int year) {
+        Calendar date = Calendar.getInstance();
+        date.set(year, month, day, 0, 0, 0);
+        date.set(Calendar.MILLISECOND, 0);
+        return date.getTime();
+    }
+
+    private StreamingDataSeries createSeries(String name, double... values) {
+        StreamingDataSeries series = new StreamingDataSeries(name, 2);
+        for (int i = 0; i < values.length; i++) {
+            series.append(getTime(11 + i, Calendar.NOVEMBER, 2007), values[i]);
+        }
+        return series;
+    }
+
+    private double getValue(IAdaptable value) {
+        return ((Number) value.getAdapter(Number.class)).doubleValue();
+    }
+
+    public void testAppend() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 10.0, 20.0, 5.0, 15.0);
+        assertEquals(4, series.size());
+        assertEquals(4, series.getValues().length);
+        assertEquals(5.0, series.getDouble(2));
+        assertEquals(getTime(13, Calendar.NOVEMBER, 2007), series.getValue(2).getAdapter(Date.class));
+    }
+
+    public void testFirstLastHighestLowest() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 10.0, 20.0, 5.0, 15.0);
+        assertEquals(10.0, getValue(series.getFirst()));
+        assertEquals(15.0, getValue(series.getLast()));
+        assertEquals(20.0, getValue(series.getHighest()));
+        assertEquals(5.0, getValue(series.getLowest()));
+    }
+
+    public void testEmptySeries() throws Exception {
+        StreamingDataSeries series = new StreamingDataSeries("Test");
+        assertEquals(0, series.getValues().length);
+        assertNull(series.getFirst());
+        assertNull(series.getLast());
+        assertNull(series.getHighest());
+        assertNull(series.getLowest());
+    }
+
+    public void testValuesCachedUntilAppend() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 10.0, 20.0);
+        IAdaptable[] values = series.getValues();
+        assertSame(values, series.getValues());
+        assertSame(values[1], series.getValue(1));
+
+        series.append(getTime(20, Calendar.NOVEMBER, 2007), 30.0);
+        assertNotSame(values, series.getValues());
+        assertEquals(3, series.getValues().length);
+    }
+
+    public void testAppendEarlierDate() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 10.0, 20.0);
+        try {
+            series.append(getTime(1, Calendar.NOVEMBER, 2007), 30.0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    public void testClear() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 10.0, 20.0);
+        series.clear();
+        assertEquals(0, series.size());
+        assertNull(series.getHighest());
+
+        series.append(getTime(1, Calendar.NOVEMBER, 2007), 30.0);
+        assertEquals(30.0, getValue(series.getHighest()));
+    }
+
+    public void testIndexOf() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 10.0, 20.0, 5.0);
+        assertEquals(0, series.indexOf(getTime(11, Calendar.NOVEMBER, 2007)));
+        assertEquals(2, series.indexOf(getTime(13, Calendar.NOVEMBER, 2007)));
+        assertEquals(-1, series.indexOf(getTime(14, Calendar.NOVEMBER, 2007)));
+    }
+
+    public void testCrossAbove() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 10.0, 20.0, 30.0);
+        StreamingDataSeries other = createSeries("Other", 15.0, 15.0, 15.0);
+        assertEquals(IDataSeries.ABOVE, series.cross(other, series.getValue(1)));
+        assertEquals(IDataSeries.NONE, series.cross(other, series.getValue(2)));
+    }
+
+    public void testCrossBelowDataSeries() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 20.0, 10.0, 5.0);
+        DataSeries other = new DataSeries("Other", new IAdaptable[] {
+            new NumberValue(getTime(11, Calendar.NOVEMBER, 2007), 15.0),
+            new NumberValue(getTime(12, Calendar.NOVEMBER, 2007), 15.0),
+            new NumberValue(getTime(13, Calendar.NOVEMBER, 2007), 15.0),
+        });
+        assertEquals(IDataSeries.BELOW, series.cross(other, series.getValue(1)));
+    }
+
+    public void testGetSeries() throws Exception {
+        StreamingDataSeries series = createSeries("Test", 10.0, 20.0, 5.0, 15.0);
+        IDataSeries subset = series.getSeries(series.getValue(1), series.getValue(2));
+        assertEquals(2, subset.size());
+        assertEquals(20.0, getValue(subset.getFirst()));
+        assertEquals(5.0, getValue(subset.getLast()));
+    }
+}
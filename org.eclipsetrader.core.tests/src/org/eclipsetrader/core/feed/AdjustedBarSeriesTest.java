@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.Calendar;
+import java.util.Currency;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.instruments.Stock;
+import org.eclipsetrader.tests.Helper;
+
+public class AdjustedBarSeriesTest extends TestCase {
+
+    private IOHLC[] bars = new IOHLC[] {
+        new OHLC(Helper.getTime(2003, Calendar.FEBRUARY, 14), 48.0, 50.0, 46.0, 48.0, 1000L),
+        new OHLC(Helper.getTime(2003, Calendar.FEBRUARY, 18), 24.0, 25.0, 23.0, 24.0, 2000L),
+        new OHLC(Helper.getTime(2003, Calendar.FEBRUARY, 19), 24.0, 25.0, 23.0, 24.0, 3000L),
+        new OHLC(Helper.getTime(2003, Calendar.FEBRUARY, 20), 23.0, 24.0, 22.0, 23.0, 4000L),
+    };
+
+    public void testFactorsIndexOf() throws Exception {
+        AdjustmentFactors factors = new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, new IDividend[] {
+            new Dividend(Helper.getTime(2003, Calendar.FEBRUARY, 20), 0.5),
+        });
+        assertEquals(2, factors.size());
+        assertEquals(0, factors.indexOf(Helper.getTime(2003, Calendar.FEBRUARY, 14).getTime()));
+        assertEquals(1, factors.indexOf(Helper.getTime(2003, Calendar.FEBRUARY, 18).getTime()));
+        assertEquals(2, factors.indexOf(Helper.getTime(2003, Calendar.FEBRUARY, 20).getTime()));
+        assertEquals(2.0, factors.getSplitFactor(0));
+        assertEquals(0.5, factors.getDividends(0));
+        assertEquals(1.0, factors.getSplitFactor(1));
+        assertEquals(0.5, factors.getDividends(1));
+        assertEquals(1.0, factors.getSplitFactor(2));
+        assertEquals(0.0, factors.getDividends(2));
+    }
+
+    public void testFactorsMergeSameDate() throws Exception {
+        AdjustmentFactors factors = new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, new IDividend[] {
+            new Dividend(Helper.getTime(2003, Calendar.FEBRUARY, 18), 0.5),
+            new Dividend(Helper.getTime(2003, Calendar.FEBRUARY, 18), 0.25),
+        });
+        assertEquals(1, factors.size());
+        assertEquals(2.0, factors.getSplitFactor(0));
+        assertEquals(0.75, factors.getDividends(0));
+    }
+
+    public void testLastDifference() throws Exception {
+        AdjustmentFactors factors = new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, null);
+        AdjustmentFactors newFactors = new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, new IDividend[] {
+            new Dividend(Helper.getTime(2003, Calendar.FEBRUARY, 15), 0.5),
+        });
+        assertEquals(Long.MIN_VALUE, factors.getLastDifference(new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, null)));
+        assertEquals(Helper.getTime(2003, Calendar.FEBRUARY, 15).getTime(), factors.getLastDifference(newFactors));
+        assertEquals(Helper.getTime(2003, Calendar.FEBRUARY, 15).getTime(), newFactors.getLastDifference(factors));
+        assertEquals(Helper.getTime(2003, Calendar.FEBRUARY, 18).getTime(), factors.getLastDifference(AdjustmentFactors.NONE));
+    }
+
+    public void testAdjustedValues() throws Exception {
+        AdjustmentFactors factors = new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, new IDividend[] {
+            new Dividend(Helper.getTime(2003, Calendar.FEBRUARY, 20), 0.5),
+        });
+        AdjustedBarSeries series = new AdjustedBarSeries(BarSeries.valueOf(bars), factors);
+
+        assertEquals(new OHLC(Helper.getTime(2003, Calendar.FEBRUARY, 14), 23.5, 24.5, 22.5, 23.5, 2000L), series.getOHLC(0));
+        assertEquals(new OHLC(Helper.getTime(2003, Calendar.FEBRUARY, 18), 23.5, 24.5, 22.5, 23.5, 2000L), series.getOHLC(1));
+        assertEquals(bars[3], series.getOHLC(3));
+
+        double[] close = series.getValues(IBarSeries.CLOSE);
+        assertEquals(23.5, close[0]);
+        assertEquals(23.5, close[2]);
+        assertEquals(23.0, close[3]);
+        assertEquals(2000.0, series.getValues(IBarSeries.VOLUME)[0]);
+    }
+
+    public void testUpdateRecomputesPreviousBarsOnly() throws Exception {
+        AdjustedBarSeries series = new AdjustedBarSeries(BarSeries.valueOf(bars), new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, null));
+        double[] close = series.getValues(IBarSeries.CLOSE);
+
+        AdjustedBarSeries updated = series.update(new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, new IDividend[] {
+            new Dividend(Helper.getTime(2003, Calendar.FEBRUARY, 19), 1.0),
+        }));
+        assertNotSame(series, updated);
+
+        double[] updatedClose = updated.getValues(IBarSeries.CLOSE);
+        assertEquals(23.0, updatedClose[0]);
+        assertEquals(23.0, updatedClose[1]);
+        assertEquals(close[2], updatedClose[2]);
+        assertEquals(close[3], updatedClose[3]);
+        assertEquals(24.0, close[0]);
+    }
+
+    public void testUpdateWithSameFactors() throws Exception {
+        AdjustedBarSeries series = new AdjustedBarSeries(BarSeries.valueOf(bars), new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, null));
+        assertSame(series, series.update(new AdjustmentFactors(new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, null)));
+    }
+
+    public void testHistoryCachesAdjustedSeries() throws Exception {
+        Stock security = new Stock("Test", null, Currency.getInstance("USD"));
+        History history = new History(security, bars, new ISplit[] {
+            new Split(Helper.getTime(2003, Calendar.FEBRUARY, 18), 1.0, 2.0),
+        }, null);
+
+        IBarSeries adjustedSeries = history.getAdjustedBarSeries();
+        assertSame(adjustedSeries, history.getAdjustedBarSeries());
+
+        security.setDividends(new IDividend[] {
+            new Dividend(Helper.getTime(2003, Calendar.FEBRUARY, 19), 1.0),
+        });
+        IBarSeries newAdjustedSeries = history.getAdjustedBarSeries();
+        assertNotSame(adjustedSeries, newAdjustedSeries);
+
+        IOHLC[] newAdjustedBars = history.getAdjustedOHLC();
+        assertEquals(new OHLC(Helper.getTime(2003, Calendar.FEBRUARY, 18), 23.0, 24.0, 22.0, 23.0, 2000L), newAdjustedBars[1]);
+        assertEquals(adjustedSeries.getOHLC(2), newAdjustedBars[2]);
+        assertEquals(adjustedSeries.getOHLC(3), newAdjustedBars[3]);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.instruments.Security;
+
+public class AsyncPricingListenerTest extends TestCase {
+
+    private Security security = new Security("Test", null);
+    private Security otherSecurity = new Security("Other", null);
+
+    private class BlockingListener implements IPricingListener {
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done;
+        List<PricingEvent> events = new ArrayList<PricingEvent>();
+        Thread thread;
+
+        BlockingListener(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        @Override
+        public void pricingUpdate(PricingEvent event) {
+            thread = Thread.currentThread();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (events) {
+                events.add(event);
+            }
+            done.countDown();
+        }
+    }
+
+    private PricingEvent createEvent(Security security, double price) {
+        return new PricingEvent(security, new PricingDelta[] {
+            new PricingDelta(null, new Trade(price)),
+        });
+    }
+
+    public void testDeliverFromDispatchThread() throws Exception {
+        BlockingListener listener = new BlockingListener(1);
+        listener.release.countDown();
+        AsyncPricingListener asyncListener = new AsyncPricingListener(listener);
+        try {
+            asyncListener.pricingUpdate(createEvent(security, 10.0));
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), listener.thread);
+            assertEquals(1, listener.events.size());
+        } finally {
+            asyncListener.dispose();
+        }
+    }
+
+    public void testDropOldest() throws Exception {
+        BlockingListener listener = new BlockingListener(3);
+        AsyncPricingListener asyncListener = new AsyncPricingListener(listener, AsyncPricingListener.Policy.DROP_OLDEST, 2);
+        try {
+            asyncListener.pricingUpdate(createEvent(security, 1.0));
+            assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+
+            asyncListener.pricingUpdate(createEvent(security, 2.0));
+            asyncListener.pricingUpdate(createEvent(security, 3.0));
+            asyncListener.pricingUpdate(createEvent(security, 4.0));
+            assertEquals(2, asyncListener.getQueueDepth());
+            assertEquals(1, asyncListener.getDroppedCount());
+
+            listener.release.countDown();
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            assertEquals(1.0, ((ITrade) listener.events.get(0).getDelta()[0].getNewValue()).getPrice());
+            assertEquals(3.0, ((ITrade) listener.events.get(1).getDelta()[0].getNewValue()).getPrice());
+            assertEquals(4.0, ((ITrade) listener.events.get(2).getDelta()[0].getNewValue()).getPrice());
+        } finally {
+            asyncListener.dispose();
+        }
+    }
+
+    public void testConflate() throws Exception {
+        BlockingListener listener = new BlockingListener(3);
+        AsyncPricingListener asyncListener = new AsyncPricingListener(listener, AsyncPricingListener.Policy.CONFLATE, 2);
+        try {
+            asyncListener.pricingUpdate(createEvent(security, 1.0));
+            assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+
+            asyncListener.pricingUpdate(createEvent(security, 2.0));
+            asyncListener.pricingUpdate(createEvent(otherSecurity, 20.0));
+            asyncListener.pricingUpdate(createEvent(security, 3.0));
+            assertEquals(2, asyncListener.getQueueDepth());
+            assertEquals(1, asyncListener.getConflatedCount());
+
+            listener.release.countDown();
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            PricingDelta[] delta = listener.events.get(1).getDelta();
+            assertSame(security, listener.events.get(1).getSecurity());
+            assertEquals(1, delta.length);
+            assertEquals(3.0, ((ITrade) delta[0].getNewValue()).getPrice());
+            assertSame(otherSecurity, listener.events.get(2).getSecurity());
+        } finally {
+            asyncListener.dispose();
+        }
+    }
+
+    public void testConflateOnlyWhenFull() throws Exception {
+        BlockingListener listener = new BlockingListener(3);
+        AsyncPricingListener asyncListener = new AsyncPricingListener(listener, AsyncPricingListener.Policy.CONFLATE, 16);
+        try {
+            asyncListener.pricingUpdate(createEvent(security, 1.0));
+            assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+
+            asyncListener.pricingUpdate(createEvent(security, 2.0));
+            asyncListener.pricingUpdate(createEvent(security, 3.0));
+            assertEquals(2, asyncListener.getQueueDepth());
+            assertEquals(0, asyncListener.getConflatedCount());
+
+            listener.release.countDown();
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            assertEquals(2.0, ((ITrade) listener.events.get(1).getDelta()[0].getNewValue()).getPrice());
+            assertEquals(3.0, ((ITrade) listener.events.get(2).getDelta()[0].getNewValue()).getPrice());
+        } finally {
+            asyncListener.dispose();
+        }
+    }
+
+    public void testConflateKeepsBars() throws Exception {
+        PricingEvent event1 = new PricingEvent(security, new PricingDelta[] {
+            new PricingDelta(null, new Trade(1.0)),
+            new PricingDelta(null, new BarOpen(null, TimeSpan.minutes(1), 1.0)),
+        });
+        PricingEvent event2 = new PricingEvent(security, new PricingDelta[] {
+            new PricingDelta(null, new Trade(2.0)),
+            new PricingDelta(null, new BarOpen(null, TimeSpan.minutes(1), 2.0)),
+        });
+        PricingDelta[] delta = AsyncPricingListener.merge(event1, event2).getDelta();
+        assertEquals(3, delta.length);
+        assertEquals(2.0, ((ITrade) delta[0].getNewValue()).getPrice());
+    }
+
+    public void testBlock() throws Exception {
+        final BlockingListener listener = new BlockingListener(3);
+        final AsyncPricingListener asyncListener = new AsyncPricingListener(listener, AsyncPricingListener.Policy.BLOCK, 1);
+        try {
+            asyncListener.pricingUpdate(createEvent(security, 1.0));
+            assertTrue(listener.started.await(5, TimeUnit.SECONDS));
+            asyncListener.pricingUpdate(createEvent(security, 2.0));
+
+            final CountDownLatch notified = new CountDownLatch(1);
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    asyncListener.pricingUpdate(createEvent(security, 3.0));
+                    notified.countDown();
+                }
+            });
+            thread.start();
+            assertFalse(notified.await(200, TimeUnit.MILLISECONDS));
+
+            listener.release.countDown();
+            assertTrue(notified.await(5, TimeUnit.SECONDS));
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            assertEquals(0, asyncListener.getDroppedCount());
+            assertEquals(3, listener.events.size());
+        } finally {
+            asyncListener.dispose();
+        }
+    }
+
+    public void testEnvironmentAsyncDispatch() throws Exception {
+        BlockingListener listener = new BlockingListener(1);
+        listener.release.countDown();
+        PricingEnvironment env = new PricingEnvironment();
+        env.setAsyncDispatch(AsyncPricingListener.Policy.BLOCK, 16);
+        env.addPricingListener(listener);
+        assertNotNull(env.getAsyncListener(listener));
+
+        env.setTrade(security, new Trade(10.0));
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+
+        env.removePricingListener(listener);
+        assertNull(env.getAsyncListener(listener));
+        env.dispose();
+    }
+}
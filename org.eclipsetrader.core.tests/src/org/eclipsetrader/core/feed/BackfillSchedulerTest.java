@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.instruments.Security;
+import org.eclipsetrader.core.repositories.IRepositoryService;
+
+public class BackfillSchedulerTest extends TestCase {
+
+    private File file;
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("backfill", ".checkpoint");
+        file.delete();
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testRunAllTasks() throws Exception {
+        TestConnector connector = new TestConnector("test");
+        List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+
+        List<TestTask> tasks = new ArrayList<TestTask>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(new TestTask("T" + i, connector, 0, saved));
+        }
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        List<IStatus> results = scheduler.run(tasks, new NullProgressMonitor());
+
+        assertEquals(0, results.size());
+        assertEquals(10, saved.size());
+    }
+
+    public void testConcurrencyLimit() throws Exception {
+        TestConnector connector = new TestConnector("test");
+        List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+
+        List<TestTask> tasks = new ArrayList<TestTask>();
+        for (int i = 0; i < 12; i++) {
+            tasks.add(new TestTask("T" + i, connector, 0, saved));
+        }
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        scheduler.setConcurrency(connector, 3);
+        scheduler.run(tasks, new NullProgressMonitor());
+
+        assertEquals(12, saved.size());
+        assertTrue(connector.maxRunning.get() <= 3);
+    }
+
+    public void testRetryFailedDownloads() throws Exception {
+        TestConnector connector = new TestConnector("test");
+        List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+
+        TestTask task = new TestTask("T1", connector, 2, saved);
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        scheduler.setRetryPolicy(2, 1);
+        List<IStatus> results = scheduler.run(Collections.singletonList(task), new NullProgressMonitor());
+
+        assertEquals(0, results.size());
+        assertEquals(3, task.attempts.get());
+        assertEquals(1, saved.size());
+    }
+
+    public void testReportFailedDownloads() throws Exception {
+        TestConnector connector = new TestConnector("test");
+        List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+
+        TestTask task = new TestTask("T1", connector, 5, saved);
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        scheduler.setRetryPolicy(1, 1);
+        List<IStatus> results = scheduler.run(Collections.singletonList(task), new NullProgressMonitor());
+
+        assertEquals(1, results.size());
+        assertEquals(IStatus.ERROR, results.get(0).getSeverity());
+        assertEquals(2, task.attempts.get());
+        assertEquals(0, saved.size());
+    }
+
+    public void testDoNotRetryDownloadsWithoutData() throws Exception {
+        TestConnector connector = new TestConnector("test");
+        connector.result = null;
+
+        IRepositoryService repositoryService = EasyMock.createNiceMock(IRepositoryService.class);
+        EasyMock.replay(repositoryService);
+
+        HistoryBackfillTask task = new HistoryBackfillTask(new Security("Test", null), connector, connector, HistoryBackfillTask.FULL, new Date(), new Date(), new TimeSpan[] {
+            TimeSpan.days(1)
+        }, repositoryService);
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        scheduler.setRetryPolicy(2, 1);
+        List<IStatus> results = scheduler.run(Collections.singletonList(task), new NullProgressMonitor());
+
+        assertEquals(1, connector.calls.get());
+        assertEquals(1, results.size());
+        assertEquals("Missing data for Test", results.get(0).getMessage());
+    }
+
+    public void testResumeFromCheckpoint() throws Exception {
+        TestConnector connector = new TestConnector("test");
+        List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint(file, "signature");
+        checkpoint.setCompleted("T1");
+        checkpoint.close();
+
+        checkpoint = new BackfillCheckpoint(file, "signature");
+        checkpoint.load();
+        assertTrue(checkpoint.isCompleted("T1"));
+
+        List<TestTask> tasks = new ArrayList<TestTask>();
+        tasks.add(new TestTask("T1", connector, 0, saved));
+        tasks.add(new TestTask("T2", connector, 0, saved));
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        scheduler.setCheckpoint(checkpoint);
+        scheduler.run(tasks, new NullProgressMonitor());
+
+        assertEquals(1, saved.size());
+        assertEquals("T2", saved.get(0));
+
+        checkpoint = new BackfillCheckpoint(file, "signature");
+        checkpoint.load();
+        assertTrue(checkpoint.isCompleted("T1"));
+        assertTrue(checkpoint.isCompleted("T2"));
+    }
+
+    public void testDontCheckpointTasksNotSaved() throws Exception {
+        TestConnector connector = new TestConnector("test");
+        List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint(file, "signature");
+        checkpoint.load();
+
+        List<TestTask> tasks = new ArrayList<TestTask>();
+        tasks.add(new TestTask("T1", connector, 0, saved));
+        tasks.add(new TestTask("T2", connector, 0, saved));
+        tasks.get(0).saveStatus = new Status(IStatus.ERROR, "test", "Error saving T1");
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        scheduler.setCheckpoint(checkpoint);
+        List<IStatus> results = scheduler.run(tasks, new NullProgressMonitor());
+
+        assertEquals(1, results.size());
+        assertEquals("Error saving T1", results.get(0).getMessage());
+
+        checkpoint = new BackfillCheckpoint(file, "signature");
+        checkpoint.load();
+        assertFalse(checkpoint.isCompleted("T1"));
+        assertTrue(checkpoint.isCompleted("T2"));
+    }
+
+    public void testIgnoreCheckpointWithDifferentSignature() throws Exception {
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint(file, "signature");
+        checkpoint.setCompleted("T1");
+        checkpoint.close();
+
+        checkpoint = new BackfillCheckpoint(file, "other");
+        checkpoint.load();
+        assertFalse(checkpoint.isCompleted("T1"));
+    }
+
+    public void testRateLimit() throws Exception {
+        TestConnector connector = new TestConnector("test");
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        scheduler.setMinimumInterval(connector, 50);
+
+        IBackfillConnector rateLimitedConnector = scheduler.getConnector(connector);
+        assertNotSame(connector, rateLimitedConnector);
+
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            rateLimitedConnector.backfillHistory(null, null, null, TimeSpan.days(1));
+        }
+        assertTrue(System.currentTimeMillis() - time >= 100);
+    }
+
+    public void testNoRateLimit() throws Exception {
+        TestConnector connector = new TestConnector("test");
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        assertSame(connector, scheduler.getConnector(connector));
+    }
+
+    private static class TestTask extends BackfillTask<String> {
+
+        final int failures;
+        final List<String> saved;
+        final AtomicInteger attempts = new AtomicInteger();
+        IStatus saveStatus = Status.OK_STATUS;
+
+        TestTask(String id, TestConnector connector, int failures, List<String> saved) {
+            super(id, id, connector);
+            this.failures = failures;
+            this.saved = saved;
+        }
+
+        @Override
+        public String download(BackfillScheduler scheduler) throws Exception {
+            if (attempts.incrementAndGet() <= failures) {
+                throw new Exception("Download failed");
+            }
+            ((TestConnector) getConnector()).backfillHistory(null, null, null, TimeSpan.days(1));
+            return getId();
+        }
+
+        @Override
+        public IStatus save(String data) throws Exception {
+            saved.add(data);
+            return saveStatus;
+        }
+    }
+
+    private static class TestConnector implements IBackfillConnector {
+
+        final String id;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        IOHLC[] result = new IOHLC[0];
+
+        TestConnector(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return id;
+        }
+
+        @Override
+        public IOHLC[] backfillHistory(IFeedIdentifier identifier, Date from, Date to, TimeSpan timeSpan) {
+            calls.incrementAndGet();
+            int value = running.incrementAndGet();
+            synchronized (maxRunning) {
+                maxRunning.set(Math.max(maxRunning.get(), value));
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                // Do nothing
+            }
+            running.decrementAndGet();
+            return result;
+        }
+
+        @Override
+        public IDividend[] backfillDividends(IFeedIdentifier identifier, Date from, Date to) {
+            return null;
+        }
+
+        @Override
+        public ISplit[] backfillSplits(IFeedIdentifier identifier, Date from, Date to) {
+            return null;
+        }
+
+        @Override
+        public boolean canBackfill(IFeedIdentifier identifier, TimeSpan timeSpan) {
+            return true;
+        }
+    }
+}
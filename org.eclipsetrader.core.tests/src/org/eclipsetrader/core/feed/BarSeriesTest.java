@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.Calendar;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.tests.Helper;
+
+public class BarSeriesTest extends TestCase {
+
+    private IOHLC[] bars = new IOHLC[] {
+        new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
+        new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 12), 100.0, 110.0, 90.0, 95.0, 200000L),
+        new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 13), 200.0, 210.0, 190.0, 195.0, 300000L),
+        new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 14), 300.0, null, null, 305.0, null),
+    };
+
+    public void testValueOf() throws Exception {
+        BarSeries series = BarSeries.valueOf(bars);
+        assertEquals(4, series.size());
+        assertEquals(bars[1].getDate(), series.getDate(1));
+        assertEquals(100.0, series.getOpen(1));
+        assertEquals(110.0, series.getHigh(1));
+        assertEquals(90.0, series.getLow(1));
+        assertEquals(95.0, series.getClose(1));
+        assertEquals(200000L, series.getVolume(1));
+    }
+
+    public void testNullValues() throws Exception {
+        BarSeries series = BarSeries.valueOf(bars);
+        assertTrue(Double.isNaN(series.getHigh(3)));
+        assertEquals(IBarSeries.NO_VOLUME, series.getVolume(3));
+
+        IOHLC bar = series.getOHLC(3);
+        assertNull(bar.getHigh());
+        assertNull(bar.getVolume());
+        assertEquals(bars[3], bar);
+    }
+
+    public void testToOHLC() throws Exception {
+        IOHLC[] result = BarSeries.valueOf(bars).toOHLC();
+        assertEquals(bars.length, result.length);
+        for (int i = 0; i < bars.length; i++) {
+            assertEquals(bars[i], result[i]);
+        }
+    }
+
+    public void testGetValues() throws Exception {
+        BarSeries series = BarSeries.valueOf(bars);
+        double[] values = series.getValues(IBarSeries.CLOSE);
+        assertEquals(4, values.length);
+        assertEquals(395.0, values[0]);
+        assertEquals(305.0, values[3]);
+        assertSame(values, series.getValues(IBarSeries.CLOSE));
+    }
+
+    public void testGetVolumeValues() throws Exception {
+        double[] values = BarSeries.valueOf(bars).getValues(IBarSeries.VOLUME);
+        assertEquals(100000.0, values[0]);
+        assertEquals(0.0, values[3]);
+    }
+
+    public void testSubSeriesSharesValues() throws Exception {
+        IBarSeries series = BarSeries.valueOf(bars).getSubSeries(1, 3);
+        assertEquals(2, series.size());
+        assertEquals(bars[1], series.getOHLC(0));
+        assertEquals(bars[2], series.getOHLC(1));
+
+        double[] values = series.getValues(IBarSeries.OPEN);
+        assertEquals(2, values.length);
+        assertEquals(100.0, values[0]);
+        assertEquals(200.0, values[1]);
+    }
+
+    public void testSubSeriesByDate() throws Exception {
+        IBarSeries series = BarSeries.valueOf(bars).getSubSeries(bars[1].getDate(), bars[2].getDate());
+        assertEquals(2, series.size());
+        assertEquals(bars[1].getDate(), series.getDate(0));
+        assertEquals(bars[2].getDate(), series.getDate(1));
+    }
+
+    public void testSubSeriesOutOfRange() throws Exception {
+        IBarSeries series = BarSeries.valueOf(bars).getSubSeries(Helper.getTime(2008, Calendar.JANUARY, 1), null);
+        assertEquals(0, series.size());
+    }
+
+    public void testIndexOf() throws Exception {
+        IBarSeries series = BarSeries.valueOf(bars);
+        assertEquals(0, series.indexOf(0L));
+        assertEquals(1, series.indexOf(bars[1].getDate().getTime()));
+        assertEquals(2, series.indexOf(bars[1].getDate().getTime() + 1));
+        assertEquals(4, series.indexOf(Long.MAX_VALUE));
+
+        IBarSeries subSeries = series.getSubSeries(1, 3);
+        assertEquals(0, subSeries.indexOf(0L));
+        assertEquals(1, subSeries.indexOf(bars[2].getDate().getTime()));
+        assertEquals(2, subSeries.indexOf(Long.MAX_VALUE));
+    }
+
+    public void testGetIndexOutOfRange() throws Exception {
+        IBarSeries series = BarSeries.valueOf(bars).getSubSeries(1, 3);
+        try {
+            series.getClose(2);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.instruments.Security;
+import org.eclipsetrader.core.repositories.IPropertyConstants;
+import org.eclipsetrader.core.repositories.IStore;
+import org.eclipsetrader.core.repositories.IStoreObject;
+import org.eclipsetrader.core.repositories.IStoreProperties;
+import org.eclipsetrader.core.repositories.StoreProperties;
+import org.eclipsetrader.tests.Helper;
+
+public class BarsRollupTest extends TestCase {
+
+    private IOHLC[] bars = new IOHLC[] {
+        new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 3), 26.56, 26.56, 26.56, 26.56, 3043159L),
+        new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 5), 26.55, 26.6, 26.51, 26.52, 35083L),
+        new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 6), 26.52, 26.52, 26.47, 26.47, 41756L),
+        new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 7), 26.47, 26.47, 26.37, 26.39, 144494L),
+        new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 8), 26.38, 26.41, 26.38, 26.41, 58018L),
+    };
+
+    public void testAggregate() throws Exception {
+        IOHLC[] result = BarsRollup.aggregate(bars, TimeSpan.minutes(2));
+        assertEquals(3, result.length);
+        assertEquals(new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 3), 26.56, 26.56, 26.56, 26.56, 3043159L), result[0]);
+        assertEquals(new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 5), 26.55, 26.6, 26.47, 26.47, 76839L), result[1]);
+        assertEquals(new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 7), 26.47, 26.47, 26.37, 26.41, 202512L), result[2]);
+    }
+
+    public void testAggregateEmptyBars() throws Exception {
+        assertEquals(0, BarsRollup.aggregate(new IOHLC[0], TimeSpan.minutes(5)).length);
+    }
+
+    public void testUpdateSetsLongerTimeSpans() throws Exception {
+        StoreProperties properties = new StoreProperties();
+        properties.setProperty(TimeSpan.minutes(1).toString(), bars);
+
+        BarsRollup.update(properties, TimeSpan.minutes(1));
+
+        IOHLC[] result = (IOHLC[]) properties.getProperty(TimeSpan.minutes(5).toString());
+        assertEquals(2, result.length);
+        assertEquals(new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 3), 26.56, 26.6, 26.37, 26.39, 3264492L), result[0]);
+        assertEquals(bars[4], result[1]);
+
+        for (int i = 1; i < BarsRollup.TIME_SPANS.length; i++) {
+            result = (IOHLC[]) properties.getProperty(BarsRollup.TIME_SPANS[i].toString());
+            assertEquals(1, result.length);
+            assertEquals(new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 3), 26.56, 26.6, 26.37, 26.41, 3322510L), result[0]);
+        }
+    }
+
+    public void testUpdateSkipsShorterTimeSpans() throws Exception {
+        StoreProperties properties = new StoreProperties();
+        properties.setProperty(TimeSpan.minutes(15).toString(), bars);
+
+        BarsRollup.update(properties, TimeSpan.minutes(15));
+
+        assertNull(properties.getProperty(TimeSpan.minutes(5).toString()));
+        assertNotNull(properties.getProperty(TimeSpan.minutes(30).toString()));
+        assertNotNull(properties.getProperty(TimeSpan.minutes(60).toString()));
+    }
+
+    public void testHistoryDayStoresRollups() throws Exception {
+        HistoryDay history = new HistoryDay(new Security("Test", null), TimeSpan.minutes(1));
+        history.setOHLC(bars);
+
+        IStoreObject[] storeObjects = (IStoreObject[]) history.getAdapter(IStoreObject[].class);
+        assertEquals(1, storeObjects.length);
+        IStoreProperties properties = storeObjects[0].getStoreProperties();
+        assertNotNull(properties.getProperty(TimeSpan.minutes(5).toString()));
+
+        HistoryDay history5 = new HistoryDay(null, TimeSpan.minutes(5), new IStore[] {
+            null
+        }, new IStoreProperties[] {
+            properties
+        });
+        assertTrue(Arrays.equals((IOHLC[]) properties.getProperty(TimeSpan.minutes(5).toString()), history5.getOHLC()));
+    }
+
+    public void testHistoryDayUpdatesChangedDaysOnly() throws Exception {
+        final List<IStoreObject> updated = new ArrayList<IStoreObject>();
+        HistoryDay history = new HistoryDay(new Security("Test", null), TimeSpan.minutes(1)) {
+
+            @Override
+            protected IStoreObject[] updateStoreObjects() {
+                IStoreObject[] storeObjects = super.updateStoreObjects();
+                updated.clear();
+                updated.addAll(Arrays.asList(storeObjects));
+                return storeObjects;
+            }
+        };
+        IOHLC[] days = new IOHLC[] {
+            new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 3), 26.56, 26.56, 26.56, 26.56, 3043159L),
+            new OHLC(Helper.getTime(2008, Calendar.MAY, 23, 9, 3), 26.56, 26.56, 26.56, 26.56, 3043159L),
+        };
+        history.setOHLC(days);
+        assertEquals(2, updated.size());
+
+        IOHLC[] changedDays = new IOHLC[] {
+            days[0],
+            new OHLC(Helper.getTime(2008, Calendar.MAY, 23, 9, 3), 26.56, 26.6, 26.5, 26.6, 3043159L),
+        };
+        history.setOHLC(changedDays);
+        assertEquals(1, updated.size());
+
+        IStoreProperties properties = updated.get(0).getStoreProperties();
+        assertEquals(Helper.getTime(2008, Calendar.MAY, 23), properties.getProperty(IPropertyConstants.BARS_DATE));
+        IOHLC[] rollup = (IOHLC[]) properties.getProperty(TimeSpan.minutes(5).toString());
+        assertEquals(changedDays[1], rollup[0]);
+    }
+}
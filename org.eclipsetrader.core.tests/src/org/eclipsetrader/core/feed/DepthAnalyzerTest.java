@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import junit.framework.TestCase;
+
+public class DepthAnalyzerTest extends TestCase {
+
+    public void testComputeMetrics() throws Exception {
+        IBook book = new Book(new IBookEntry[] {
+                new BookEntry(null, 1.5, 300L, 1L, null),
+                new BookEntry(null, 1.4, 100L, 1L, null),
+        }, new IBookEntry[] {
+                new BookEntry(null, 1.6, 100L, 1L, null),
+                new BookEntry(null, 1.7, 100L, 1L, null),
+        });
+
+        IDepthMetrics metrics = new DepthAnalyzer().update(book);
+
+        assertEquals(1.5, metrics.getBid());
+        assertEquals(1.6, metrics.getAsk());
+        assertEquals(0.1, metrics.getSpread(), 0.000001);
+        assertEquals(1.55, metrics.getMidPrice(), 0.000001);
+        assertEquals(1.575, metrics.getWeightedMidPrice(), 0.000001);
+        assertEquals(400L, metrics.getBidDepth());
+        assertEquals(200L, metrics.getAskDepth());
+        assertEquals(1.0 / 3.0, metrics.getImbalance(), 0.000001);
+        assertEquals(2.0 / 3.0, metrics.getPressure(), 0.000001);
+    }
+
+    public void testEmptyBook() throws Exception {
+        IDepthMetrics metrics = new DepthAnalyzer().update(new Book(null, null));
+
+        assertTrue(Double.isNaN(metrics.getBid()));
+        assertTrue(Double.isNaN(metrics.getImbalance()));
+        assertEquals(0, metrics.getBidLevels().length);
+    }
+
+    public void testAggregateOrdersByPrice() throws Exception {
+        IBook book = new Book(new IBookEntry[] {
+                new BookEntry(null, 1.5, 100L, 1L, "A"),
+                new BookEntry(null, 1.5, 200L, 1L, "B"),
+                new BookEntry(null, 1.4, 100L, 1L, "C"),
+        }, null);
+
+        DepthAnalyzer analyzer = new DepthAnalyzer();
+        IDepthMetrics metrics = analyzer.update(book);
+
+        assertEquals(2, analyzer.getDepthBook().getLevelCount(BookDelta.BID));
+        assertEquals(2L, analyzer.getDepthBook().getProposals(BookDelta.BID, 0));
+        assertEquals(300L, metrics.getBidSize());
+        assertEquals(400L, metrics.getBidDepth());
+    }
+
+    public void testReturnsSameMetricsIfNotChanged() throws Exception {
+        DepthAnalyzer analyzer = new DepthAnalyzer();
+        IDepthMetrics metrics = analyzer.update(new Book(new IBookEntry[] {
+            new BookEntry(null, 1.5, 100L, 1L, null),
+        }, null));
+
+        assertSame(metrics, analyzer.update(new Book(new IBookEntry[] {
+            new BookEntry(null, 1.5, 100L, 1L, null),
+        }, null)));
+    }
+
+    public void testReturnsSameMetricsForChangesBeyondDepthLevels() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        book.put(BookDelta.BID, 1.4, 200, 1);
+        book.put(BookDelta.BID, 1.2, 400, 1);
+
+        DepthAnalyzer analyzer = new DepthAnalyzer(2, 0.1, 1);
+        IDepthMetrics metrics = analyzer.update(book.getSnapshot());
+
+        book.put(BookDelta.BID, 1.2, 500, 1);
+        assertSame(metrics, analyzer.update(book.getSnapshot()));
+
+        book.put(BookDelta.BID, 1.4, 300, 1);
+        assertNotSame(metrics, analyzer.update(book.getSnapshot()));
+        assertEquals(400L, analyzer.getMetrics().getBidDepth());
+    }
+
+    public void testIncrementalUpdateMatchesRebuild() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        book.put(BookDelta.BID, 1.4, 100, 1);
+        book.put(BookDelta.ASK, 1.6, 100, 1);
+
+        DepthAnalyzer analyzer = new DepthAnalyzer(2, 0.1, 1);
+        analyzer.update(book.getSnapshot());
+
+        book.put(BookDelta.BID, 1.55, 50, 1);
+        book.put(BookDelta.BID, 1.4, 0, 0);
+        book.put(BookDelta.ASK, 1.6, 150, 2);
+        book.put(BookDelta.ASK, 1.8, 100, 1);
+        BookSnapshot snapshot = book.getSnapshot();
+        assertNotNull(snapshot.getDeltas());
+
+        IDepthMetrics metrics = analyzer.update(snapshot);
+        assertEquals(new DepthAnalyzer(2, 0.1, 1).update(new Book(snapshot.getBidProposals(), snapshot.getAskProposals())), metrics);
+        assertEquals(150L, metrics.getBidDepth());
+        assertEquals(250L, metrics.getAskDepth());
+    }
+
+    public void testDepthLevelsShift() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        book.put(BookDelta.BID, 1.4, 200, 1);
+        book.put(BookDelta.BID, 1.3, 400, 1);
+
+        DepthAnalyzer analyzer = new DepthAnalyzer(2, 0.0, 0);
+        assertEquals(300L, analyzer.update(book.getSnapshot()).getBidDepth());
+
+        book.put(BookDelta.BID, 1.6, 800, 1);
+        assertEquals(900L, analyzer.update(book.getSnapshot()).getBidDepth());
+
+        book.put(BookDelta.BID, 1.6, 0, 0);
+        book.put(BookDelta.BID, 1.5, 0, 0);
+        IDepthMetrics metrics = analyzer.update(book.getSnapshot());
+        assertEquals(600L, metrics.getBidDepth());
+        assertEquals(2, metrics.getBidLevels().length);
+        assertEquals(200L, metrics.getBidLevels()[0]);
+    }
+
+    public void testTickDepth() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.ASK, 1.6, 100, 1);
+        book.put(BookDelta.ASK, 1.7, 200, 1);
+        book.put(BookDelta.ASK, 1.8, 400, 1);
+
+        DepthAnalyzer analyzer = new DepthAnalyzer(5, 0.1, 1);
+        assertEquals(300L, analyzer.update(book.getSnapshot()).getAskTickDepth());
+
+        book.put(BookDelta.ASK, 1.7, 250, 1);
+        assertEquals(350L, analyzer.update(book.getSnapshot()).getAskTickDepth());
+
+        book.put(BookDelta.ASK, 1.6, 0, 0);
+        assertEquals(650L, analyzer.update(book.getSnapshot()).getAskTickDepth());
+    }
+}
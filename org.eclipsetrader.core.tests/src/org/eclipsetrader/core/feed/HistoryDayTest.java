@@ -39,6 +39,22 @@ public class HistoryDayTest extends TestCase {
         assertTrue(storeObjects[1].getStoreProperties().getProperty(TimeSpan.minutes(1).toString()) != null);
     }
 
+    public void testGetSubset() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 3), 26.56, 26.56, 26.56, 26.56, 3043159L),
+            new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 4), 26.55, 26.6, 26.51, 26.52, 35083L),
+            new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 5), 26.52, 26.58, 26.5, 26.57, 12000L),
+        };
+
+        HistoryDay history = new HistoryDay(null, TimeSpan.minutes(1), bars);
+        IOHLC[] subsetBars = history.getSubset(Helper.getTime(2008, Calendar.MAY, 22, 9, 4), Helper.getTime(2008, Calendar.MAY, 22, 9, 5)).getOHLC();
+        assertEquals(2, subsetBars.length);
+        assertEquals(bars[1], subsetBars[0]);
+        assertEquals(bars[2], subsetBars[1]);
+
+        assertEquals(0, history.getSubset(Helper.getTime(2008, Calendar.MAY, 23, 9, 0), null).getOHLC().length);
+    }
+
     public void testFillStoreObjects() throws Exception {
         IOHLC[] bars = new IOHLC[] {
             new OHLC(Helper.getTime(2008, Calendar.MAY, 22, 9, 3), 26.56, 26.56, 26.56, 26.56, 3043159L),
@@ -55,13 +71,13 @@ public class HistoryDayTest extends TestCase {
         assertEquals(Helper.getTime(2008, Calendar.MAY, 22, 0, 0), storeObjects[0].getStoreProperties().getProperty(IPropertyConstants.BARS_DATE));
         IOHLC[] propBars1 = (IOHLC[]) storeObjects[0].getStoreProperties().getProperty(TimeSpan.minutes(1).toString());
         assertEquals(1, propBars1.length);
-        assertSame(bars[0], propBars1[0]);
+        assertEquals(bars[0], propBars1[0]);
 
         assertSame(security, storeObjects[1].getStoreProperties().getProperty(IPropertyConstants.SECURITY));
         assertEquals(Helper.getTime(2008, Calendar.MAY, 23, 0, 0), storeObjects[1].getStoreProperties().getProperty(IPropertyConstants.BARS_DATE));
         IOHLC[] propBars2 = (IOHLC[]) storeObjects[1].getStoreProperties().getProperty(TimeSpan.minutes(1).toString());
         assertEquals(1, propBars2.length);
-        assertSame(bars[1], propBars2[0]);
+        assertEquals(bars[1], propBars2[0]);
     }
 
     public void testGetLowestTimespanBars() throws Exception {
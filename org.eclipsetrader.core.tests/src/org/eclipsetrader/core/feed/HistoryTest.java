@@ -17,6 +17,7 @@ import java.beans.PropertyChangeSupport;
 import java.net.URI;
 import java.util.Calendar;
 import java.util.Currency;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -27,6 +28,8 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipsetrader.core.instruments.Security;
 import org.eclipsetrader.core.instruments.Stock;
+import org.eclipsetrader.core.repositories.BarsDelta;
+import org.eclipsetrader.core.repositories.IHistoryStore;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
 import org.eclipsetrader.core.repositories.IRepository;
 import org.eclipsetrader.core.repositories.IStore;
@@ -43,7 +46,7 @@ public class HistoryTest extends TestCase {
             new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
         };
         History history = new History(new Security("Test", null), bars);
-        assertSame(bars[2], history.getFirst());
+        assertEquals(bars[2], history.getFirst());
     }
 
     public void testGetLast() throws Exception {
@@ -53,7 +56,7 @@ public class HistoryTest extends TestCase {
             new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
         };
         History history = new History(new Security("Test", null), bars);
-        assertSame(bars[0], history.getLast());
+        assertEquals(bars[0], history.getLast());
     }
 
     public void testGetHighest() throws Exception {
@@ -63,7 +66,7 @@ public class HistoryTest extends TestCase {
             new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
         };
         History history = new History(new Security("Test", null), bars);
-        assertSame(bars[2], history.getHighest());
+        assertEquals(bars[2], history.getHighest());
     }
 
     public void testGetLowest() throws Exception {
@@ -73,7 +76,36 @@ public class HistoryTest extends TestCase {
             new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
         };
         History history = new History(new Security("Test", null), bars);
-        assertSame(bars[1], history.getLowest());
+        assertEquals(bars[1], history.getLowest());
+    }
+
+    public void testGetBarSeries() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 13), 200.0, 210.0, 190.0, 195.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 12), 100.0, 110.0, 90.0, 95.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
+        };
+        History history = new History(new Security("Test", null), bars);
+        IBarSeries series = history.getBarSeries();
+        assertEquals(3, series.size());
+        assertEquals(bars[2].getDate(), series.getDate(0));
+        assertEquals(bars[0].getDate(), series.getDate(2));
+        assertSame(series, history.getBarSeries());
+    }
+
+    public void testCreateFromBarSeries() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 12), 100.0, 110.0, 90.0, 95.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 13), 200.0, 210.0, 190.0, 195.0, 100000L),
+        };
+        History history = new History(new Security("Test", null), BarSeries.valueOf(bars), null, TimeSpan.days(1));
+        assertEquals(bars[0], history.getFirst());
+        assertEquals(bars[2], history.getLast());
+        assertEquals(bars[0], history.getHighest());
+        assertEquals(bars[1], history.getLowest());
+        assertEquals(3, history.getOHLC().length);
+        assertEquals(bars[1], history.getOHLC()[1]);
     }
 
     public void testGetSubset() throws Exception {
@@ -87,9 +119,9 @@ public class HistoryTest extends TestCase {
         History history = new History(new Security("Test", null), bars);
         IHistory subset = history.getSubset(Helper.getTime(2007, Calendar.NOVEMBER, 12), Helper.getTime(2007, Calendar.NOVEMBER, 14));
         assertEquals(3, subset.getOHLC().length);
-        assertSame(bars[1], subset.getOHLC()[0]);
-        assertSame(bars[2], subset.getOHLC()[1]);
-        assertSame(bars[3], subset.getOHLC()[2]);
+        assertEquals(bars[1], subset.getOHLC()[0]);
+        assertEquals(bars[2], subset.getOHLC()[1]);
+        assertEquals(bars[3], subset.getOHLC()[2]);
     }
 
     public void testGetAggregatedSubsetFromStore() throws Exception {
@@ -115,9 +147,9 @@ public class HistoryTest extends TestCase {
         History history = new History(historyStore, historyStore.fetchProperties(null));
         IHistory subset = history.getSubset(Helper.getTime(2008, Calendar.MAY, 22), Helper.getTime(2008, Calendar.MAY, 22), TimeSpan.minutes(1));
         assertEquals(3, subset.getOHLC().length);
-        assertSame(bars[0], subset.getOHLC()[0]);
-        assertSame(bars[1], subset.getOHLC()[1]);
-        assertSame(bars[2], subset.getOHLC()[2]);
+        assertEquals(bars[0], subset.getOHLC()[0]);
+        assertEquals(bars[1], subset.getOHLC()[1]);
+        assertEquals(bars[2], subset.getOHLC()[2]);
     }
 
     public void testGetMultidayAggregatedSubsetFromStore() throws Exception {
@@ -373,6 +405,131 @@ public class HistoryTest extends TestCase {
         assertSame(subsetHistory, subsetHistory2);
     }
 
+    public void testGetSubsetWithSameKeyHash() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(new Date(0), 200.0, 210.0, 190.0, 195.0, 100000L),
+            new OHLC(new Date(50), 100.0, 110.0, 90.0, 95.0, 100000L),
+            new OHLC(new Date(105), 400.0, 410.0, 390.0, 395.0, 100000L),
+        };
+        History history = new History(new Security("Test", null), bars);
+
+        IHistory subsetHistory = history.getSubset(new Date(11), new Date(100));
+        IHistory subsetHistory2 = history.getSubset(new Date(0), new Date(107));
+
+        assertNotSame(subsetHistory, subsetHistory2);
+        assertEquals(1, subsetHistory.getOHLC().length);
+        assertEquals(3, subsetHistory2.getOHLC().length);
+    }
+
+    public void testGetSubsetSharesBars() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 12), 100.0, 110.0, 90.0, 95.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 13), 200.0, 210.0, 190.0, 195.0, 100000L),
+        };
+        History history = new History(new Security("Test", null), bars);
+
+        IHistory subsetHistory = history.getSubset(Helper.getTime(2007, Calendar.NOVEMBER, 12), null);
+        IOHLC[] subsetBars = subsetHistory.getOHLC();
+        assertEquals(2, subsetBars.length);
+        assertEquals(bars[1], subsetBars[0]);
+        assertEquals(bars[2], subsetBars[1]);
+        assertEquals(2, subsetHistory.getBarSeries().size());
+    }
+
+    public void testGetSubsetFromBarSeries() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 11), 400.0, 410.0, 390.0, 395.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 12), 100.0, 110.0, 90.0, 95.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 13), 200.0, 210.0, 190.0, 195.0, 100000L),
+        };
+        History history = new History(new Security("Test", null), BarSeries.valueOf(bars), null, TimeSpan.days(1));
+
+        IHistory subsetHistory = history.getSubset(Helper.getTime(2007, Calendar.NOVEMBER, 12), Helper.getTime(2007, Calendar.NOVEMBER, 12));
+        assertEquals(1, subsetHistory.getBarSeries().size());
+        assertEquals(bars[1], subsetHistory.getOHLC()[0]);
+    }
+
+    public void testStorePropertiesDeltaAfterSave() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 12), 100.0, 110.0, 90.0, 95.0, 100000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 13), 200.0, 210.0, 190.0, 195.0, 100000L),
+        };
+        StoreProperties storeProperties = new StoreProperties();
+        storeProperties.setProperty(IPropertyConstants.BARS, bars);
+        TestStore historyStore = new TestStore(storeProperties);
+
+        History history = new History(historyStore, historyStore.fetchProperties(null));
+        history.setOHLC(new IOHLC[] {
+            bars[0],
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 13), 200.0, 220.0, 190.0, 215.0, 150000L),
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 14), 300.0, 310.0, 290.0, 295.0, 100000L),
+        });
+
+        BarsDelta delta = (BarsDelta) history.getStoreProperties().getProperty(IPropertyConstants.BARS_DELTA);
+        assertSame(historyStore, delta.getStore());
+        assertEquals(1, delta.getAdded().length);
+        assertEquals(1, delta.getChanged().length);
+        assertEquals(0, delta.getRemoved().length);
+
+        history.setStore(historyStore);
+
+        delta = (BarsDelta) history.getStoreProperties().getProperty(IPropertyConstants.BARS_DELTA);
+        assertTrue(delta.isEmpty());
+    }
+
+    public void testStorePropertiesDeltaWithoutSuccessfulSave() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 12), 100.0, 110.0, 90.0, 95.0, 100000L),
+        };
+        StoreProperties storeProperties = new StoreProperties();
+        storeProperties.setProperty(IPropertyConstants.BARS, bars);
+        TestStore historyStore = new TestStore(storeProperties);
+
+        History history = new History(historyStore, historyStore.fetchProperties(null));
+        history.setOHLC(new IOHLC[] {
+            bars[0],
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 13), 200.0, 210.0, 190.0, 195.0, 100000L),
+        });
+
+        // The save fails, the store is not set and the next delta still includes the added bar
+        history.getStoreProperties();
+        BarsDelta delta = (BarsDelta) history.getStoreProperties().getProperty(IPropertyConstants.BARS_DELTA);
+        assertEquals(1, delta.getAdded().length);
+
+        history.setStore(null);
+        assertNull(history.getStoreProperties().getProperty(IPropertyConstants.BARS_DELTA));
+    }
+
+    public void testNoStorePropertiesDeltaWithoutStore() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(Helper.getTime(2007, Calendar.NOVEMBER, 12), 100.0, 110.0, 90.0, 95.0, 100000L),
+        };
+        History history = new History(new Security("Test", null), bars);
+        assertNull(history.getStoreProperties().getProperty(IPropertyConstants.BARS_DELTA));
+    }
+
+    public void testGetSubsetFetchesChildsInRange() throws Exception {
+        StoreProperties day23StoreProperties = new StoreProperties();
+        day23StoreProperties.setProperty(IPropertyConstants.OBJECT_TYPE, IHistory.class.getName());
+        day23StoreProperties.setProperty(IPropertyConstants.BARS_DATE, Helper.getTime(2008, Calendar.MAY, 23));
+        IOHLC[] bars23 = new IOHLC[] {
+            new OHLC(Helper.getTime(2008, Calendar.MAY, 23, 9, 5), 26.55, 26.6, 26.51, 26.52, 35083L),
+            new OHLC(Helper.getTime(2008, Calendar.MAY, 23, 9, 6), 26.52, 26.52, 26.47, 26.47, 41756L),
+        };
+        day23StoreProperties.setProperty(TimeSpan.minutes(1).toString(), bars23);
+
+        RangeTestStore historyStore = new RangeTestStore(new IStore[] {
+            new TestStore(day23StoreProperties, null),
+        });
+
+        History history = new History(historyStore, historyStore.fetchProperties(null));
+        IHistory subset = history.getSubset(Helper.getTime(2008, Calendar.MAY, 23, 10, 0), Helper.getTime(2008, Calendar.MAY, 23, 11, 0), TimeSpan.minutes(1));
+        assertEquals(Helper.getTime(2008, Calendar.MAY, 23), historyStore.first);
+        assertEquals(Helper.getTime(2008, Calendar.MAY, 24).getTime() - 1, historyStore.last.getTime());
+        assertEquals(2, subset.getOHLC().length);
+    }
+
     public class TestStore implements IStore {
 
         private IStoreProperties storeProperties;
@@ -451,4 +608,33 @@ public class HistoryTest extends TestCase {
             return null;
         }
     }
+
+    public class RangeTestStore extends TestStore implements IHistoryStore {
+
+        Date first;
+        Date last;
+
+        public RangeTestStore(IStore[] childs) {
+            super(childs);
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.feed.HistoryTest.TestStore#fetchChilds(org.eclipse.core.runtime.IProgressMonitor)
+         */
+        @Override
+        public IStore[] fetchChilds(IProgressMonitor monitor) {
+            fail("All childs fetched");
+            return null;
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.repositories.IHistoryStore#fetchChilds(java.util.Date, java.util.Date, org.eclipse.core.runtime.IProgressMonitor)
+         */
+        @Override
+        public IStore[] fetchChilds(Date first, Date last, IProgressMonitor monitor) {
+            this.first = first;
+            this.last = last;
+            return super.fetchChilds(monitor);
+        }
+    }
 }
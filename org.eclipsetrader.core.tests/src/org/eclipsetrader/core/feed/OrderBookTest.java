@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import junit.framework.TestCase;
+
+public class OrderBookTest extends TestCase {
+
+    public void testInsertUpdateDelete() throws Exception {
+        OrderBook book = new OrderBook();
+        book.insert(BookDelta.BID, 0, 1.5, 100, 1);
+        book.insert(BookDelta.BID, 0, 1.6, 200, 2);
+        book.update(BookDelta.BID, 1, 1.5, 150, 3);
+
+        assertEquals(2, book.getLevelCount(BookDelta.BID));
+        assertEquals(1.6, book.getPrice(BookDelta.BID, 0));
+        assertEquals(200L, book.getQuantity(BookDelta.BID, 0));
+        assertEquals(150L, book.getQuantity(BookDelta.BID, 1));
+        assertEquals(3L, book.getProposals(BookDelta.BID, 1));
+
+        book.delete(BookDelta.BID, 0);
+        assertEquals(1, book.getLevelCount(BookDelta.BID));
+        assertEquals(1.5, book.getPrice(BookDelta.BID, 0));
+        assertEquals(0, book.getLevelCount(BookDelta.ASK));
+    }
+
+    public void testPutKeepsPriceOrder() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        book.put(BookDelta.BID, 1.7, 100, 1);
+        book.put(BookDelta.BID, 1.6, 100, 1);
+        book.put(BookDelta.ASK, 1.9, 100, 1);
+        book.put(BookDelta.ASK, 1.8, 100, 1);
+
+        assertEquals(1.7, book.getPrice(BookDelta.BID, 0));
+        assertEquals(1.6, book.getPrice(BookDelta.BID, 1));
+        assertEquals(1.5, book.getPrice(BookDelta.BID, 2));
+        assertEquals(1.8, book.getPrice(BookDelta.ASK, 0));
+        assertEquals(1.9, book.getPrice(BookDelta.ASK, 1));
+
+        assertEquals(1, book.indexOf(BookDelta.BID, 1.6));
+        assertEquals(-2, book.indexOf(BookDelta.BID, 1.65));
+        assertEquals(-3, book.indexOf(BookDelta.ASK, 2.0));
+    }
+
+    public void testPutWithZeroQuantityRemovesLevel() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.ASK, 1.8, 100, 1);
+        book.put(BookDelta.ASK, 1.9, 100, 1);
+
+        assertEquals(0, book.put(BookDelta.ASK, 1.8, 0, 0));
+        assertEquals(1, book.getLevelCount(BookDelta.ASK));
+        assertEquals(1.9, book.getPrice(BookDelta.ASK, 0));
+        assertEquals(-1, book.put(BookDelta.ASK, 2.0, 0, 0));
+    }
+
+    public void testSetRecordsOnlyChanges() throws Exception {
+        OrderBook book = new OrderBook();
+        assertTrue(book.set(BookDelta.BID, 0, 1.5, 100, 1));
+        book.getSnapshot();
+
+        assertFalse(book.set(BookDelta.BID, 0, 1.5, 100, 1));
+        assertFalse(book.hasChanges());
+
+        assertTrue(book.set(BookDelta.BID, 0, 1.5, 200, 1));
+        assertTrue(book.hasChanges());
+    }
+
+    public void testSetPastEndFillsEmptyLevels() throws Exception {
+        OrderBook book = new OrderBook();
+        book.set(BookDelta.ASK, 2, 1.8, 100, 1);
+
+        assertEquals(3, book.getLevelCount(BookDelta.ASK));
+        assertEquals(0.0, book.getPrice(BookDelta.ASK, 0));
+        assertEquals(1.8, book.getPrice(BookDelta.ASK, 2));
+    }
+
+    public void testSnapshotIsCachedUntilChanged() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+
+        BookSnapshot snapshot = book.getSnapshot();
+        assertSame(snapshot, book.getSnapshot());
+
+        book.put(BookDelta.BID, 1.5, 200, 1);
+        assertNotSame(snapshot, book.getSnapshot());
+    }
+
+    public void testSnapshotSharesUnchangedEntries() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        book.put(BookDelta.BID, 1.4, 100, 1);
+        BookSnapshot snapshot = book.getSnapshot();
+
+        book.put(BookDelta.BID, 1.6, 100, 1);
+        BookSnapshot newSnapshot = book.getSnapshot();
+
+        assertEquals(3, newSnapshot.getBidProposals().length);
+        assertSame(snapshot.getBidProposals()[0], newSnapshot.getBidProposals()[1]);
+        assertSame(snapshot.getBidProposals()[1], newSnapshot.getBidProposals()[2]);
+        assertEquals(1.6, newSnapshot.getBidProposals()[0].getPrice());
+        assertEquals(Long.valueOf(100), newSnapshot.getBidProposals()[0].getQuantity());
+    }
+
+    public void testSnapshotDeltas() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        BookSnapshot snapshot = book.getSnapshot();
+        assertEquals(0, snapshot.getBaseVersion());
+        assertNull(snapshot.getDeltas());
+
+        book.put(BookDelta.BID, 1.6, 200, 2);
+        book.put(BookDelta.BID, 1.5, 0, 0);
+        book.put(BookDelta.ASK, 1.7, 300, 3);
+        BookSnapshot newSnapshot = book.getSnapshot();
+
+        assertEquals(snapshot.getVersion(), newSnapshot.getBaseVersion());
+        assertTrue(newSnapshot.getVersion() > snapshot.getVersion());
+        assertEquals(3, newSnapshot.getDeltas().length);
+        assertEquals(new BookDelta(BookDelta.BID, BookDelta.INSERT, 0, 1.6, 200, 2), newSnapshot.getDeltas()[0]);
+        assertEquals(new BookDelta(BookDelta.BID, BookDelta.DELETE, 1, 1.5, 0, 0), newSnapshot.getDeltas()[1]);
+        assertEquals(new BookDelta(BookDelta.ASK, BookDelta.INSERT, 0, 1.7, 300, 3), newSnapshot.getDeltas()[2]);
+    }
+
+    public void testApplyDeltasReproducesBook() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        book.put(BookDelta.ASK, 1.7, 100, 1);
+        BookSnapshot snapshot = book.getSnapshot();
+
+        OrderBook copy = new OrderBook();
+        for (int i = 0; i < snapshot.getBidProposals().length; i++) {
+            IBookEntry entry = snapshot.getBidProposals()[i];
+            copy.insert(BookDelta.BID, i, entry.getPrice(), entry.getQuantity(), entry.getProposals());
+        }
+        for (int i = 0; i < snapshot.getAskProposals().length; i++) {
+            IBookEntry entry = snapshot.getAskProposals()[i];
+            copy.insert(BookDelta.ASK, i, entry.getPrice(), entry.getQuantity(), entry.getProposals());
+        }
+
+        book.put(BookDelta.BID, 1.6, 200, 2);
+        book.put(BookDelta.BID, 1.5, 150, 2);
+        book.put(BookDelta.ASK, 1.7, 0, 0);
+        book.truncate(BookDelta.BID, 1);
+
+        BookDelta[] deltas = book.getSnapshot().getDeltas();
+        for (int i = 0; i < deltas.length; i++) {
+            copy.apply(deltas[i]);
+        }
+
+        assertEquals(book.getSnapshot(), copy.getSnapshot());
+    }
+
+    public void testDeltasOverflowPublishesFullChange() throws Exception {
+        OrderBook book = new OrderBook();
+        book.getSnapshot();
+
+        for (int i = 0; i <= OrderBook.MAX_PENDING_DELTAS; i++) {
+            book.set(BookDelta.BID, 0, 1.5, i + 1, 1);
+        }
+
+        assertTrue(book.hasChanges());
+        assertNull(book.getSnapshot().getDeltas());
+    }
+
+    public void testClear() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        book.put(BookDelta.ASK, 1.7, 100, 1);
+        book.clear();
+
+        assertEquals(0, book.getBidProposals().length);
+        assertEquals(0, book.getAskProposals().length);
+    }
+}
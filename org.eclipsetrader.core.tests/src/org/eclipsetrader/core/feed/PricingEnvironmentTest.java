@@ -11,6 +11,9 @@
 
 package org.eclipsetrader.core.feed;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.eclipsetrader.core.instruments.Security;
@@ -90,4 +93,110 @@ public class PricingEnvironmentTest extends TestCase {
         env.setTodayOHL(security, value);
         assertSame(value, env.getStatus(security).todayOHL);
     }
+
+    public void testNotifyChangedSecurity() throws Exception {
+        final List<PricingEvent> events = new ArrayList<PricingEvent>();
+        PricingEnvironment env = new PricingEnvironment();
+        Security otherSecurity = new Security("Other", null);
+        env.setTrade(otherSecurity, new Trade(10.0));
+        env.addPricingListener(new IPricingListener() {
+
+            @Override
+            public void pricingUpdate(PricingEvent event) {
+                events.add(event);
+            }
+        });
+        env.setTrade(security, new Trade(100.0));
+        assertEquals(1, events.size());
+        assertSame(security, events.get(0).getSecurity());
+        assertEquals(1, events.get(0).getDelta().length);
+    }
+
+    public void testRunBatchGroupsDeltas() throws Exception {
+        final List<PricingEvent> events = new ArrayList<PricingEvent>();
+        final PricingEnvironment env = new PricingEnvironment();
+        env.addPricingListener(new IPricingListener() {
+
+            @Override
+            public void pricingUpdate(PricingEvent event) {
+                events.add(event);
+            }
+        });
+        env.runBatch(new Runnable() {
+
+            @Override
+            public void run() {
+                env.setTrade(security, new Trade(100.0));
+                env.setQuote(security, new Quote(99.0, 101.0));
+                assertEquals(0, events.size());
+            }
+        });
+        assertEquals(1, events.size());
+        assertEquals(2, events.get(0).getDelta().length);
+    }
+
+    public void testConflatePendingChanges() throws Exception {
+        final List<PricingEvent> events = new ArrayList<PricingEvent>();
+        final PricingEnvironment env = new PricingEnvironment(true);
+        final ITrade trade1 = new Trade(100.0);
+        final ITrade trade2 = new Trade(101.0);
+        env.addPricingListener(new IPricingListener() {
+
+            @Override
+            public void pricingUpdate(PricingEvent event) {
+                events.add(event);
+            }
+        });
+        env.runBatch(new Runnable() {
+
+            @Override
+            public void run() {
+                env.setTrade(security, trade1);
+                env.setTrade(security, trade2);
+            }
+        });
+        assertEquals(1, events.size());
+        PricingDelta[] delta = events.get(0).getDelta();
+        assertEquals(1, delta.length);
+        assertNull(delta[0].getOldValue());
+        assertSame(trade2, delta[0].getNewValue());
+    }
+
+    public void testConcurrentUpdates() throws Exception {
+        final int count = 1000;
+        final PricingEnvironment env = new PricingEnvironment();
+        final List<PricingDelta> deltas = new ArrayList<PricingDelta>();
+        env.addPricingListener(new IPricingListener() {
+
+            @Override
+            public void pricingUpdate(PricingEvent event) {
+                synchronized (deltas) {
+                    for (PricingDelta delta : event.getDelta()) {
+                        deltas.add(delta);
+                    }
+                }
+            }
+        });
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final Security threadSecurity = new Security("Test" + i, null);
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int n = 1; n <= count; n++) {
+                        env.setTrade(threadSecurity, new Trade((double) n));
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        env.notifyListeners();
+
+        assertEquals(threads.length * count, deltas.size());
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class SubsetCacheTest extends TestCase {
+
+    public void testGet() throws Exception {
+        SubsetCache<String, Object> cache = new SubsetCache<String, Object>(2);
+        Object value = new Object();
+        cache.put("a", value);
+        assertSame(value, cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    public void testBoundedSize() throws Exception {
+        SubsetCache<String, Object> cache = new SubsetCache<String, Object>(2);
+        cache.put("a", new Object());
+        cache.put("b", new Object());
+        cache.put("c", new Object());
+        assertEquals(2, cache.size());
+    }
+
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        SubsetCache<String, Object> cache = new SubsetCache<String, Object>(2);
+        Object a = new Object();
+        cache.put("a", a);
+        cache.put("b", new Object());
+        cache.get("a");
+        cache.put("c", new Object());
+
+        Map<String, Object> map = cache.snapshot();
+        assertSame(a, map.get("a"));
+        assertTrue(map.containsKey("c"));
+    }
+
+    public void testGetEvictedValueInUse() throws Exception {
+        SubsetCache<String, Object> cache = new SubsetCache<String, Object>(1);
+        Object a = new Object();
+        cache.put("a", a);
+        cache.put("b", new Object());
+        assertEquals(1, cache.size());
+
+        assertSame(a, cache.snapshot().get("a"));
+        assertSame(a, cache.get("a"));
+        assertEquals(1, cache.size());
+    }
+}
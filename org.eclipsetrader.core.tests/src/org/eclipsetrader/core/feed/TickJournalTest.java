@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+public class TickJournalTest extends TestCase {
+
+    private File directory;
+    private FeedIdentifier identifier = new FeedIdentifier("MSFT", null);
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private QuoteEvent createEvent(Object... values) {
+        QuoteDelta[] delta = new QuoteDelta[values.length];
+        for (int i = 0; i < values.length; i++) {
+            delta[i] = new QuoteDelta(identifier, null, values[i]);
+        }
+        return new QuoteEvent(null, identifier, delta);
+    }
+
+    public void testReadAppendedValues() throws Exception {
+        Date time = new Date(1000000L);
+        Trade trade = new Trade(time, 1.5, 100L, 1000L);
+        Quote quote = new Quote(1.4, 1.6, 200L, null);
+
+        TickJournal journal = new TickJournal(directory);
+        journal.append(time.getTime(), createEvent(trade, quote));
+        journal.append(time.getTime() + 1, createEvent(new TodayOHL(1.0, 2.0, 0.5), new LastClose(1.2, time)));
+        journal.close();
+
+        TickJournalReader reader = new TickJournalReader(journal.getFile());
+        try {
+            assertTrue(reader.next());
+            assertEquals("MSFT", reader.getSymbol());
+            assertEquals(time.getTime(), reader.getTime());
+            assertEquals(2, reader.getValues().length);
+            assertEquals(trade, reader.getValues()[0]);
+            assertEquals(quote, reader.getValues()[1]);
+
+            assertTrue(reader.next());
+            assertEquals(new TodayOHL(1.0, 2.0, 0.5), reader.getValues()[0]);
+            assertEquals(new LastClose(1.2, time), reader.getValues()[1]);
+
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testIgnoreAppendsAfterDispose() throws Exception {
+        TickJournal journal = new TickJournal(directory);
+        journal.append(1000000L, createEvent(new Trade(1.5)));
+        journal.dispose();
+        long length = journal.getFile().length();
+
+        journal.append(1000001L, createEvent(new Trade(1.6)));
+        assertTrue(journal.isDisposed());
+        assertEquals(length, journal.getFile().length());
+
+        TickJournalReader reader = new TickJournalReader(journal.getFile());
+        try {
+            assertTrue(reader.next());
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testFilesBetweenDates() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2011, Calendar.MARCH, 1, 10, 0, 0);
+        Date day1 = calendar.getTime();
+        calendar.add(Calendar.DATE, 2);
+        Date day3 = calendar.getTime();
+
+        TickJournal journal = new TickJournal(directory);
+        journal.getFile(day1).createNewFile();
+        journal.getFile(day3).createNewFile();
+
+        calendar.set(2011, Calendar.MARCH, 1, 18, 0, 0);
+        File[] files = journal.getFiles(calendar.getTime(), day3);
+        assertEquals(2, files.length);
+        assertEquals(journal.getFile(day1), files[0]);
+        assertEquals(journal.getFile(day3), files[1]);
+
+        assertEquals(1, journal.getFiles(day3, day3).length);
+    }
+
+    public void testSkipSameEvent() throws Exception {
+        QuoteEvent event = createEvent(new Trade(1.5));
+
+        TickJournal journal = new TickJournal(directory);
+        journal.append(event);
+        journal.append(event);
+        journal.close();
+
+        TickJournalReader reader = new TickJournalReader(journal.getFile());
+        try {
+            assertTrue(reader.next());
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testReadBookChanges() throws Exception {
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        book.put(BookDelta.ASK, 1.6, 100, 1);
+        BookSnapshot snapshot1 = book.getSnapshot();
+
+        book.put(BookDelta.BID, 1.55, 200, 2);
+        book.put(BookDelta.ASK, 1.6, 0, 0);
+        BookSnapshot snapshot2 = book.getSnapshot();
+
+        TickJournal journal = new TickJournal(directory);
+        journal.append(createEvent(snapshot1));
+        journal.append(createEvent(snapshot2));
+        journal.close();
+
+        TickJournalReader reader = new TickJournalReader(journal.getFile());
+        try {
+            assertTrue(reader.next());
+            BookSnapshot book1 = (BookSnapshot) reader.getValues()[0];
+            assertEquals(snapshot1, book1);
+
+            assertTrue(reader.next());
+            BookSnapshot book2 = (BookSnapshot) reader.getValues()[0];
+            assertEquals(snapshot2, book2);
+            assertEquals(book1.getVersion(), book2.getBaseVersion());
+            assertEquals(2, book2.getDeltas().length);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testReadPrimitiveItems() throws Exception {
+        Date time = new Date(1000000L);
+        OrderBook book = new OrderBook();
+        book.put(BookDelta.BID, 1.5, 100, 1);
+        BookSnapshot snapshot1 = book.getSnapshot();
+        book.put(BookDelta.ASK, 1.6, 100, 1);
+        BookSnapshot snapshot2 = book.getSnapshot();
+
+        TickJournal journal = new TickJournal(directory);
+        journal.append(time.getTime(), createEvent(new Trade(time, 1.5, 100L, 1000L), new Quote(1.4, null, 200L, null)));
+        journal.append(time.getTime() + 1, createEvent(snapshot1, new TodayOHL(1.0, 2.0, 0.5)));
+        journal.append(time.getTime() + 2, createEvent(snapshot2, new Trade(time, 1.6, null, null)));
+        journal.close();
+
+        TickJournalReader reader = new TickJournalReader(journal.getFile());
+        try {
+            assertTrue(reader.nextRecord());
+            assertEquals("MSFT", reader.getSymbol());
+            assertEquals(time.getTime(), reader.getTime());
+            assertEquals(TickJournalReader.TRADE, reader.nextItem());
+            assertEquals(1.5, reader.getPrice());
+            assertEquals(100L, reader.getSize());
+            assertEquals(1000L, reader.getVolume());
+            assertEquals(TickJournalReader.QUOTE, reader.nextItem());
+            assertEquals(1.4, reader.getBid());
+            assertTrue(Double.isNaN(reader.getAsk()));
+            assertEquals(200L, reader.getBidSize());
+            assertEquals(0L, reader.getAskSize());
+            assertEquals(TickJournalReader.NONE, reader.nextItem());
+
+            assertTrue(reader.nextRecord());
+            assertEquals(TickJournalReader.OTHER, reader.nextItem());
+
+            assertTrue(reader.nextRecord());
+            assertEquals(time.getTime() + 2, reader.getTime());
+            assertEquals(TickJournalReader.OTHER, reader.nextItem());
+            assertEquals(TickJournalReader.TRADE, reader.nextItem());
+            assertEquals(1.6, reader.getPrice());
+            assertEquals(0L, reader.getSize());
+            assertEquals(TickJournalReader.NONE, reader.nextItem());
+
+            assertFalse(reader.nextRecord());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testAppendToExistingFile() throws Exception {
+        long time = System.currentTimeMillis();
+
+        TickJournal journal = new TickJournal(directory);
+        journal.append(time, createEvent(new Trade(1.5)));
+        journal.close();
+
+        journal = new TickJournal(directory);
+        journal.append(time, createEvent(new Trade(1.6)));
+        journal.close();
+
+        TickJournalReader reader = new TickJournalReader(journal.getFile());
+        try {
+            assertTrue(reader.next());
+            assertEquals(1.5, ((ITrade) reader.getValues()[0]).getPrice());
+            assertTrue(reader.next());
+            assertEquals("MSFT", reader.getSymbol());
+            assertEquals(1.6, ((ITrade) reader.getValues()[0]).getPrice());
+            assertFalse(reader.next());
+            assertEquals(1, reader.getSymbols().length);
+        } finally {
+            reader.close();
+        }
+    }
+}
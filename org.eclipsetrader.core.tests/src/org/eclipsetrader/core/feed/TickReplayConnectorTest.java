@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TickReplayConnectorTest extends TestCase {
+
+    private File directory;
+    private File file;
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+        directory.mkdirs();
+
+        long time = System.currentTimeMillis();
+        TickJournal journal = new TickJournal(directory);
+        journal.append(time, createEvent("MSFT", new Trade(1.5)));
+        journal.append(time + 100, createEvent("AAPL", new Trade(2.5)));
+        journal.append(time + 200, createEvent("MSFT", new Trade(1.6), new Quote(1.55, 1.65)));
+        journal.close();
+
+        file = journal.getFile();
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        directory.delete();
+    }
+
+    private QuoteEvent createEvent(String symbol, Object... values) {
+        FeedIdentifier identifier = new FeedIdentifier(symbol, null);
+        QuoteDelta[] delta = new QuoteDelta[values.length];
+        for (int i = 0; i < values.length; i++) {
+            delta[i] = new QuoteDelta(identifier, null, values[i]);
+        }
+        return new QuoteEvent(null, identifier, delta);
+    }
+
+    public void testLastJournalFile() throws Exception {
+        File older = new File(directory, "20000101" + TickJournal.FILE_EXTENSION);
+        File other = new File(directory, "99999999.txt");
+        older.createNewFile();
+        other.createNewFile();
+        try {
+            File[] files = TickReplayConnector.getLastJournalFile(directory);
+            assertEquals(1, files.length);
+            assertEquals(file, files[0]);
+        } finally {
+            older.delete();
+            other.delete();
+        }
+    }
+
+    public void testReplaySubscribedSymbols() throws Exception {
+        TickReplayConnector connector = new TickReplayConnector(new File[] {
+            file
+        }, TickReplayConnector.SPEED_MAXIMUM);
+        final List<QuoteEvent> events = new ArrayList<QuoteEvent>();
+
+        IFeedSubscription subscription = connector.subscribe(new FeedIdentifier("MSFT", null));
+        subscription.addSubscriptionListener(new ISubscriptionListener() {
+
+            @Override
+            public void quoteUpdate(QuoteEvent event) {
+                events.add(event);
+            }
+        });
+        connector.replay();
+
+        assertEquals(2, events.size());
+        assertSame(connector, events.get(0).getConnector());
+        assertEquals(2, events.get(1).getDelta().length);
+        assertEquals(new Trade(1.5), events.get(1).getDelta()[0].getOldValue());
+        assertEquals(new Trade(1.6), subscription.getTrade());
+        assertEquals(new Quote(1.55, 1.65), subscription.getQuote());
+    }
+
+    public void testReplayWithSpeed() throws Exception {
+        TickReplayConnector connector = new TickReplayConnector(new File[] {
+            file
+        }, 2.0);
+        connector.subscribe(new FeedIdentifier("MSFT", null));
+
+        long start = System.currentTimeMillis();
+        connector.replay();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed >= 90);
+        assertTrue(elapsed < 200);
+    }
+
+    public void testDisposedSubscriptionIsNotNotified() throws Exception {
+        TickReplayConnector connector = new TickReplayConnector(new File[] {
+            file
+        }, TickReplayConnector.SPEED_MAXIMUM);
+        final List<QuoteEvent> events = new ArrayList<QuoteEvent>();
+
+        IFeedSubscription subscription = connector.subscribe(new FeedIdentifier("MSFT", null));
+        subscription.addSubscriptionListener(new ISubscriptionListener() {
+
+            @Override
+            public void quoteUpdate(QuoteEvent event) {
+                events.add(event);
+            }
+        });
+        subscription.dispose();
+        connector.replay();
+
+        assertEquals(0, events.size());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.repositories;
+
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.OHLC;
+
+public class BarsDeltaTest extends TestCase {
+
+    public void testComputeSameBars() throws Exception {
+        IOHLC[] bars = createBars(5);
+        BarsDelta delta = BarsDelta.compute(null, bars, createBars(5));
+        assertTrue(delta.isEmpty());
+    }
+
+    public void testComputeAddedBars() throws Exception {
+        IOHLC[] bars = createBars(5);
+        IOHLC[] newBars = createBars(7);
+        BarsDelta delta = BarsDelta.compute(null, bars, newBars);
+        assertEquals(2, delta.getAdded().length);
+        assertSame(newBars[5], delta.getAdded()[0]);
+        assertSame(newBars[6], delta.getAdded()[1]);
+        assertEquals(0, delta.getChanged().length);
+        assertEquals(0, delta.getRemoved().length);
+    }
+
+    public void testComputeChangedAndRemovedBars() throws Exception {
+        IOHLC[] bars = createBars(5);
+        IOHLC[] newBars = new IOHLC[] {
+            bars[0],
+            new OHLC(bars[2].getDate(), 1.0, 2.0, 0.5, 1.5, 100L),
+            bars[3],
+            bars[4],
+        };
+        BarsDelta delta = BarsDelta.compute(null, bars, newBars);
+        assertEquals(0, delta.getAdded().length);
+        assertEquals(1, delta.getChanged().length);
+        assertSame(newBars[1], delta.getChanged()[0]);
+        assertEquals(1, delta.getRemoved().length);
+        assertEquals(bars[1].getDate(), delta.getRemoved()[0]);
+    }
+
+    public void testGetUpdatedSortedByDate() throws Exception {
+        IOHLC[] bars = createBars(4);
+        BarsDelta delta = new BarsDelta(null, new IOHLC[] {
+                bars[1], bars[3]
+        }, new IOHLC[] {
+                bars[0], bars[2]
+        }, new Date[0]);
+        IOHLC[] updated = delta.getUpdated();
+        assertEquals(4, updated.length);
+        for (int i = 0; i < bars.length; i++) {
+            assertSame(bars[i], updated[i]);
+        }
+    }
+
+    private IOHLC[] createBars(int count) {
+        IOHLC[] bars = new IOHLC[count];
+        long time = 1300000000000L;
+        for (int i = 0; i < count; i++) {
+            bars[i] = new OHLC(new Date(time + i * 86400000L), 10.0 + i, 11.0 + i, 9.0 + i, 10.5 + i, 1000L + i);
+        }
+        return bars;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.eclipse.core.net.proxy.IProxyData;
+import org.eclipse.core.net.proxy.IProxyService;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.internal.CoreActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Default implementation of the <code>IHttpClientService</code> interface.
+ *
+ * <p>A single <code>MultiThreadedHttpConnectionManager</code> is shared by all
+ * clients, connections left idle for more than <code>IDLE_TIMEOUT</code> milliseconds
+ * are closed by a background thread. The validators of the conditional requests
+ * are kept for the last <code>MAX_VALIDATORS</code> URIs.</p>
+ *
+ * @since 1.0
+ */
+public class HttpClientService implements IHttpClientService {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    public static final int MAX_TOTAL_CONNECTIONS = 32;
+    public static final int CONNECTION_TIMEOUT = 15000;
+    public static final int SO_TIMEOUT = 60000;
+    public static final long IDLE_TIMEOUT = 30000;
+    public static final int MAX_VALIDATORS = 256;
+
+    static final String ACCEPT_ENCODING = "Accept-Encoding"; //$NON-NLS-1$
+    static final String CONTENT_ENCODING = "Content-Encoding"; //$NON-NLS-1$
+    static final String ETAG = "ETag"; //$NON-NLS-1$
+    static final String LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
+    static final String IF_NONE_MATCH = "If-None-Match"; //$NON-NLS-1$
+    static final String IF_MODIFIED_SINCE = "If-Modified-Since"; //$NON-NLS-1$
+
+    private static HttpClientService instance;
+
+    private final MultiThreadedHttpConnectionManager connectionManager;
+    private final IdleConnectionTimeoutThread idleConnectionThread;
+    private final HttpClient defaultClient;
+    private final Map<String, Integer> maxConnections = new ConcurrentHashMap<String, Integer>();
+
+    private final Map<String, Header[]> validators = new LinkedHashMap<String, Header[]>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Header[]> eldest) {
+            return size() > MAX_VALIDATORS;
+        }
+    };
+
+    public HttpClientService() {
+        connectionManager = new MultiThreadedHttpConnectionManager();
+
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        params.setMaxTotalConnections(MAX_TOTAL_CONNECTIONS);
+        params.setConnectionTimeout(CONNECTION_TIMEOUT);
+        params.setSoTimeout(SO_TIMEOUT);
+        params.setStaleCheckingEnabled(true);
+
+        idleConnectionThread = new IdleConnectionTimeoutThread();
+        idleConnectionThread.setName("HTTP Idle Connections"); //$NON-NLS-1$
+        idleConnectionThread.addConnectionManager(connectionManager);
+        idleConnectionThread.setConnectionTimeout(IDLE_TIMEOUT);
+        idleConnectionThread.setTimeoutInterval(IDLE_TIMEOUT / 2);
+        idleConnectionThread.start();
+
+        defaultClient = new HttpClient(connectionManager);
+    }
+
+    /**
+     * Returns the shared instance.
+     *
+     * @return the shared instance.
+     */
+    public static synchronized HttpClientService getInstance() {
+        if (instance == null) {
+            instance = new HttpClientService();
+        }
+        return instance;
+    }
+
+    /**
+     * Closes all pooled connections. The service can't be used after this
+     * method is called, a new shared instance is created on the next call
+     * to <code>getInstance</code>.
+     */
+    public void shutDown() {
+        synchronized (HttpClientService.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+        idleConnectionThread.shutdown();
+        connectionManager.shutdown();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IHttpClientService#createHttpClient(java.lang.String)
+     */
+    @Override
+    public HttpClient createHttpClient(String host) {
+        HttpClient client = new HttpClient(connectionManager);
+        setupProxy(client.getHostConfiguration(), client.getState(), host);
+        return client;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IHttpClientService#executeMethod(org.apache.commons.httpclient.HttpMethod)
+     */
+    @Override
+    public int executeMethod(HttpMethod method) throws IOException {
+        return executeMethod(defaultClient, method);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IHttpClientService#executeMethod(org.apache.commons.httpclient.HttpClient, org.apache.commons.httpclient.HttpMethod)
+     */
+    @Override
+    public int executeMethod(HttpClient client, HttpMethod method) throws IOException {
+        HostConfiguration hostConfiguration = new HostConfiguration(client.getHostConfiguration());
+        if (method.getURI().isAbsoluteURI()) {
+            hostConfiguration.setHost(method.getURI());
+            if (hostConfiguration.getProxyHost() == null) {
+                setupProxy(hostConfiguration, client.getState(), hostConfiguration.getHost());
+            }
+        }
+
+        Integer max = maxConnections.get(hostConfiguration.getHost());
+        if (max != null) {
+            HttpConnectionManagerParams params = connectionManager.getParams();
+            synchronized (params) {
+                if (params.getMaxConnectionsPerHost(hostConfiguration) != max.intValue()) {
+                    params.setMaxConnectionsPerHost(hostConfiguration, max.intValue());
+                }
+            }
+        }
+
+        if (method.getRequestHeader(ACCEPT_ENCODING) == null) {
+            method.setRequestHeader(ACCEPT_ENCODING, "gzip, deflate"); //$NON-NLS-1$
+        }
+
+        return client.executeMethod(hostConfiguration, method);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IHttpClientService#executeConditionalMethod(org.apache.commons.httpclient.HttpMethod)
+     */
+    @Override
+    public int executeConditionalMethod(HttpMethod method) throws IOException {
+        String key = method.getURI().toString();
+
+        Header[] headers;
+        synchronized (validators) {
+            headers = validators.get(key);
+        }
+        if (headers != null) {
+            if (headers[0] != null) {
+                method.setRequestHeader(IF_NONE_MATCH, headers[0].getValue());
+            }
+            if (headers[1] != null) {
+                method.setRequestHeader(IF_MODIFIED_SINCE, headers[1].getValue());
+            }
+        }
+
+        int statusCode = executeMethod(method);
+
+        if (statusCode == HttpStatus.SC_OK) {
+            Header etag = method.getResponseHeader(ETAG);
+            Header lastModified = method.getResponseHeader(LAST_MODIFIED);
+            synchronized (validators) {
+                if (etag != null || lastModified != null) {
+                    validators.put(key, new Header[] {
+                        etag, lastModified
+                    });
+                }
+                else {
+                    validators.remove(key);
+                }
+            }
+        }
+
+        return statusCode;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IHttpClientService#getResponseBodyAsStream(org.apache.commons.httpclient.HttpMethod)
+     */
+    @Override
+    public InputStream getResponseBodyAsStream(HttpMethod method) throws IOException {
+        InputStream stream = method.getResponseBodyAsStream();
+        if (stream == null) {
+            return null;
+        }
+
+        Header header = method.getResponseHeader(CONTENT_ENCODING);
+        if (header == null) {
+            return stream;
+        }
+
+        String encoding = header.getValue().trim().toLowerCase();
+        if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) { //$NON-NLS-1$ //$NON-NLS-2$
+            return new GZIPInputStream(stream);
+        }
+        if ("deflate".equals(encoding)) { //$NON-NLS-1$
+            return getInflaterInputStream(stream);
+        }
+
+        return stream;
+    }
+
+    /**
+     * Returns a stream that inflates the deflate encoded stream. Some servers
+     * sends raw deflate data instead of the zlib format required by the
+     * specification, the format is detected from the zlib header.
+     *
+     * @param stream the encoded stream.
+     * @return the decoded stream.
+     */
+    InputStream getInflaterInputStream(InputStream stream) throws IOException {
+        PushbackInputStream pushbackStream = new PushbackInputStream(stream, 2);
+
+        byte[] header = new byte[2];
+        int length = 0;
+        while (length < header.length) {
+            int count = pushbackStream.read(header, length, header.length - length);
+            if (count == -1) {
+                break;
+            }
+            length += count;
+        }
+        if (length != 0) {
+            pushbackStream.unread(header, 0, length);
+        }
+
+        boolean zlib = length == 2 && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        return new InflaterInputStream(pushbackStream, new Inflater(!zlib));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IHttpClientService#getResponseBodyAsString(org.apache.commons.httpclient.HttpMethod)
+     */
+    @Override
+    public String getResponseBodyAsString(HttpMethod method) throws IOException {
+        InputStream stream = getResponseBodyAsStream(method);
+        if (stream == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        try {
+            byte[] b = new byte[4096];
+            int count;
+            while ((count = stream.read(b)) != -1) {
+                buffer.write(b, 0, count);
+            }
+        } finally {
+            stream.close();
+        }
+
+        String charset = method instanceof HttpMethodBase ? ((HttpMethodBase) method).getResponseCharSet() : "ISO-8859-1"; //$NON-NLS-1$
+        return buffer.toString(charset);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IHttpClientService#setMaxConnectionsPerHost(java.lang.String, int)
+     */
+    @Override
+    public void setMaxConnectionsPerHost(String host, int maxConnections) {
+        this.maxConnections.put(host, maxConnections);
+    }
+
+    void setupProxy(HostConfiguration hostConfiguration, HttpState state, String host) {
+        if (CoreActivator.getDefault() == null || host == null) {
+            return;
+        }
+        try {
+            BundleContext context = CoreActivator.getDefault().getBundle().getBundleContext();
+            ServiceReference reference = context.getServiceReference(IProxyService.class.getName());
+            if (reference != null) {
+                IProxyService proxyService = (IProxyService) context.getService(reference);
+                IProxyData[] proxyData = proxyService.select(new java.net.URI(IProxyData.HTTP_PROXY_TYPE, "//" + host, null)); //$NON-NLS-1$
+                if (proxyData != null && proxyData.length != 0) {
+                    if (proxyData[0].getHost() != null) {
+                        hostConfiguration.setProxy(proxyData[0].getHost(), proxyData[0].getPort());
+                    }
+                    if (proxyData[0].isRequiresAuthentication()) {
+                        state.setProxyCredentials(AuthScope.ANY, new UsernamePasswordCredentials(proxyData[0].getUserId(), proxyData[0].getPassword()));
+                    }
+                }
+                context.ungetService(reference);
+            }
+        } catch (Exception e) {
+            Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error setting proxy for " + host, e); //$NON-NLS-1$
+            CoreActivator.log(status);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+
+/**
+ * Service to execute HTTP requests through a shared pool of connections.
+ *
+ * <p>All clients returned by the service share the same connection manager,
+ * so connections to the same host are kept alive and reused across requests
+ * and across connectors. Requests are sent with the proxy configured in the
+ * platform preferences and accept compressed responses, the response body
+ * must always be read with <code>getResponseBodyAsStream</code> or
+ * <code>getResponseBodyAsString</code> and the connection released with
+ * <code>HttpMethod.releaseConnection</code> when done.</p>
+ *
+ * @since 1.0
+ */
+public interface IHttpClientService {
+
+    /**
+     * Creates a new client for the given host.
+     *
+     * <p>The client uses the shared connection pool and the proxy configured for the
+     * host, and has its own state, so cookies and credentials are not shared with
+     * other clients. Use this method for connections that needs a session.</p>
+     *
+     * @param host the host name.
+     * @return the client.
+     */
+    public HttpClient createHttpClient(String host);
+
+    /**
+     * Executes a request with a shared, stateless client.
+     *
+     * @param method the request to execute.
+     * @return the response status code.
+     * @throws IOException if the request can't be executed.
+     */
+    public int executeMethod(HttpMethod method) throws IOException;
+
+    /**
+     * Executes a request with the given client.
+     *
+     * @param client the client, usually returned by <code>createHttpClient</code>.
+     * @param method the request to execute.
+     * @return the response status code.
+     * @throws IOException if the request can't be executed.
+     */
+    public int executeMethod(HttpClient client, HttpMethod method) throws IOException;
+
+    /**
+     * Executes a conditional request with a shared, stateless client.
+     *
+     * <p>The entity tag and last modified date of the last successful response to
+     * the same URI are sent with the request, if the resource was not changed the
+     * server answers with <code>HttpStatus.SC_NOT_MODIFIED</code> and no body.</p>
+     *
+     * @param method the request to execute.
+     * @return the response status code.
+     * @throws IOException if the request can't be executed.
+     */
+    public int executeConditionalMethod(HttpMethod method) throws IOException;
+
+    /**
+     * Returns the response body decoding the gzip or deflate content encoding.
+     *
+     * @param method the executed request.
+     * @return the response body, or <code>null</code> if the response has no body.
+     * @throws IOException if the body can't be read.
+     */
+    public InputStream getResponseBodyAsStream(HttpMethod method) throws IOException;
+
+    /**
+     * Returns the response body as a string decoding the gzip or deflate content encoding.
+     *
+     * @param method the executed request.
+     * @return the response body, or <code>null</code> if the response has no body.
+     * @throws IOException if the body can't be read.
+     */
+    public String getResponseBodyAsString(HttpMethod method) throws IOException;
+
+    /**
+     * Sets the maximum number of concurrent connections to a host.
+     *
+     * @param host the host name.
+     * @param maxConnections the maximum number of connections.
+     */
+    public void setMaxConnectionsPerHost(String host, int maxConnections);
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.bind.JAXBException;
+
+/**
+ * Service to load and save JAXB annotated objects.
+ *
+ * <p>Implementations keep a single JAXB context for each root type and reuse
+ * marshallers and unmarshallers, so they are safe to use concurrently from
+ * multiple threads. Files are always written to a temporary file first and
+ * then renamed over the target, so a failure never leaves a truncated file.</p>
+ *
+ * @since 1.0
+ */
+public interface IPersistenceService {
+
+    /**
+     * Style flag for indented, human readable output.
+     */
+    public static final int FORMATTED = 0x00;
+
+    /**
+     * Style flag for unformatted output.
+     */
+    public static final int COMPACT = 0x01;
+
+    /**
+     * Style flag for gzip compressed output. Compressed files are recognized
+     * automatically when loaded.
+     */
+    public static final int GZIP = 0x02;
+
+    /**
+     * Loads an object annotated as an XML root element.
+     *
+     * @param type the root type.
+     * @param file the file to read.
+     * @return the loaded object, or <code>null</code> if the file doesn't exist.
+     */
+    public <T> T unmarshal(Class<T> type, File file) throws JAXBException, IOException;
+
+    /**
+     * Loads an object annotated as an XML root element from a stream.
+     *
+     * @param type the root type.
+     * @param stream the stream to read, left open.
+     * @return the loaded object.
+     */
+    public <T> T unmarshal(Class<T> type, InputStream stream) throws JAXBException, IOException;
+
+    /**
+     * Loads a value of a type that is not annotated as root element, for
+     * example an array of elements.
+     *
+     * @param declaredType the value type.
+     * @param file the file to read.
+     * @return the loaded value, or <code>null</code> if the file doesn't exist.
+     */
+    public <T> T unmarshalElement(Class<T> declaredType, File file) throws JAXBException, IOException;
+
+    /**
+     * Saves an object annotated as an XML root element.
+     *
+     * @param object the object to save.
+     * @param type the root type.
+     * @param file the file to write.
+     */
+    public <T> void marshal(T object, Class<T> type, File file) throws JAXBException, IOException;
+
+    /**
+     * Saves an object annotated as an XML root element with the given output style.
+     *
+     * @param object the object to save.
+     * @param type the root type.
+     * @param file the file to write.
+     * @param style the output style flags.
+     */
+    public <T> void marshal(T object, Class<T> type, File file, int style) throws JAXBException, IOException;
+
+    /**
+     * Saves a value of a type that is not annotated as root element, wrapping
+     * it in an element with the given name.
+     *
+     * @param name the element name.
+     * @param value the value to save.
+     * @param declaredType the value type.
+     * @param file the file to write.
+     */
+    public <T> void marshalElement(String name, T value, Class<T> declaredType, File file) throws JAXBException, IOException;
+
+    /**
+     * Saves a value of a type that is not annotated as root element, wrapping
+     * it in an element with the given name, with the given output style.
+     *
+     * @param name the element name.
+     * @param value the value to save.
+     * @param declaredType the value type.
+     * @param file the file to write.
+     * @param style the output style flags.
+     */
+    public <T> void marshalElement(String name, T value, Class<T> declaredType, File file, int style) throws JAXBException, IOException;
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.internal.CoreActivator;
+
+/**
+ * Default implementation of the <code>IPersistenceService</code> interface.
+ *
+ * <p>JAXB contexts are expensive to build and thread-safe, so a single context
+ * is created for each root type and kept for the life of the application.
+ * Marshallers and unmarshallers are not thread-safe, they are borrowed from a
+ * pool for the duration of a single call.</p>
+ *
+ * @since 1.0
+ */
+public class PersistenceService implements IPersistenceService {
+
+    public static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+    public static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+    private static PersistenceService instance;
+
+    private final ConcurrentHashMap<Class<?>, Entry> entries = new ConcurrentHashMap<Class<?>, Entry>();
+
+    private final ValidationEventHandler validationEventHandler = new ValidationEventHandler() {
+
+        @Override
+        public boolean handleEvent(ValidationEvent event) {
+            Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
+            CoreActivator.log(status);
+            return true;
+        }
+    };
+
+    private class Entry {
+
+        final JAXBContext context;
+        final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<Marshaller>();
+        final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<Unmarshaller>();
+
+        Entry(JAXBContext context) {
+            this.context = context;
+        }
+
+        Marshaller getMarshaller() throws JAXBException {
+            Marshaller marshaller = marshallers.poll();
+            if (marshaller == null) {
+                marshaller = context.createMarshaller();
+                marshaller.setEventHandler(validationEventHandler);
+                marshaller.setProperty(Marshaller.JAXB_ENCODING, ENCODING);
+            }
+            return marshaller;
+        }
+
+        Unmarshaller getUnmarshaller() throws JAXBException {
+            Unmarshaller unmarshaller = unmarshallers.poll();
+            if (unmarshaller == null) {
+                unmarshaller = context.createUnmarshaller();
+                unmarshaller.setEventHandler(validationEventHandler);
+            }
+            return unmarshaller;
+        }
+    }
+
+    public PersistenceService() {
+    }
+
+    /**
+     * Returns the shared instance.
+     *
+     * @return the shared instance.
+     */
+    public static synchronized PersistenceService getInstance() {
+        if (instance == null) {
+            instance = new PersistenceService();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the JAXB context for the given type, creating it on first use.
+     *
+     * @param type the root type.
+     * @return the context.
+     */
+    public JAXBContext getContext(Class<?> type) throws JAXBException {
+        return getEntry(type).context;
+    }
+
+    private Entry getEntry(Class<?> type) throws JAXBException {
+        Entry entry = entries.get(type);
+        if (entry == null) {
+            Entry newEntry = new Entry(JAXBContext.newInstance(type));
+            entry = entries.putIfAbsent(type, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IPersistenceService#unmarshal(java.lang.Class, java.io.File)
+     */
+    @Override
+    public <T> T unmarshal(Class<T> type, File file) throws JAXBException, IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        InputStream stream = openInputStream(file);
+        try {
+            return unmarshal(type, stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IPersistenceService#unmarshal(java.lang.Class, java.io.InputStream)
+     */
+    @Override
+    public <T> T unmarshal(Class<T> type, InputStream stream) throws JAXBException, IOException {
+        Entry entry = getEntry(type);
+        Unmarshaller unmarshaller = entry.getUnmarshaller();
+        try {
+            return type.cast(unmarshaller.unmarshal(stream));
+        } finally {
+            entry.unmarshallers.offer(unmarshaller);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IPersistenceService#unmarshalElement(java.lang.Class, java.io.File)
+     */
+    @Override
+    public <T> T unmarshalElement(Class<T> declaredType, File file) throws JAXBException, IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        Entry entry = getEntry(declaredType);
+        InputStream stream = openInputStream(file);
+        try {
+            Unmarshaller unmarshaller = entry.getUnmarshaller();
+            try {
+                JAXBElement<T> element = unmarshaller.unmarshal(new StreamSource(stream), declaredType);
+                return element.getValue();
+            } finally {
+                entry.unmarshallers.offer(unmarshaller);
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IPersistenceService#marshal(java.lang.Object, java.lang.Class, java.io.File)
+     */
+    @Override
+    public <T> void marshal(T object, Class<T> type, File file) throws JAXBException, IOException {
+        write(getEntry(type), object, file, FORMATTED);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IPersistenceService#marshal(java.lang.Object, java.lang.Class, java.io.File, int)
+     */
+    @Override
+    public <T> void marshal(T object, Class<T> type, File file, int style) throws JAXBException, IOException {
+        write(getEntry(type), object, file, style);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IPersistenceService#marshalElement(java.lang.String, java.lang.Object, java.lang.Class, java.io.File)
+     */
+    @Override
+    public <T> void marshalElement(String name, T value, Class<T> declaredType, File file) throws JAXBException, IOException {
+        marshalElement(name, value, declaredType, file, FORMATTED);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.IPersistenceService#marshalElement(java.lang.String, java.lang.Object, java.lang.Class, java.io.File, int)
+     */
+    @Override
+    public <T> void marshalElement(String name, T value, Class<T> declaredType, File file, int style) throws JAXBException, IOException {
+        JAXBElement<T> element = new JAXBElement<T>(new QName(name), declaredType, value);
+        write(getEntry(declaredType), element, file, style);
+    }
+
+    private void write(Entry entry, Object object, File file, int style) throws JAXBException, IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+        boolean success = false;
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(tempFile));
+        try {
+            if ((style & GZIP) != 0) {
+                stream = new GZIPOutputStream(stream);
+            }
+            Marshaller marshaller = entry.getMarshaller();
+            try {
+                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, (style & COMPACT) == 0 ? Boolean.TRUE : Boolean.FALSE);
+                marshaller.marshal(object, stream);
+            } finally {
+                entry.marshallers.offer(marshaller);
+            }
+            stream.close();
+            success = true;
+        } finally {
+            if (!success) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // Do nothing, the original exception is reported
+                }
+                tempFile.delete();
+            }
+        }
+
+        if (!tempFile.renameTo(file)) {
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Unable to rename " + tempFile + " to " + file); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+
+    private InputStream openInputStream(File file) throws IOException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(file));
+        stream.mark(2);
+        int b0 = stream.read();
+        int b1 = stream.read();
+        stream.reset();
+        if (b0 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b1 == ((GZIPInputStream.GZIP_MAGIC >> 8) & 0xFF)) {
+            return new GZIPInputStream(stream);
+        }
+        return stream;
+    }
+}
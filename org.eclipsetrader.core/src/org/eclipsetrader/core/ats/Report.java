@@ -84,17 +84,7 @@ public class Report {
 
                 bars.add((IBar) delta.getNewValue());
 
-                double amount = calculateCurrentEquity();
-                if (amount == 0.0) {
-                    continue;
-                }
-                if (equityData.size() != 0) {
-                    EquityData lastData = equityData.get(equityData.size() - 1);
-                    if (lastData.amount == amount) {
-                        continue;
-                    }
-                }
-                equityData.add(new EquityData(((IBar) delta.getNewValue()).getDate(), amount));
+                addEquityData(((IBar) delta.getNewValue()).getDate(), calculateCurrentEquity());
             }
         }
     };
@@ -122,6 +112,26 @@ public class Report {
         return result;
     }
 
+    /**
+     * Adds a point to the equity line. Zero amounts and amounts equal to the
+     * last point are ignored.
+     *
+     * @param date the date.
+     * @param amount the equity amount.
+     */
+    protected void addEquityData(Date date, double amount) {
+        if (amount == 0.0) {
+            return;
+        }
+        if (equityData.size() != 0) {
+            EquityData lastData = equityData.get(equityData.size() - 1);
+            if (lastData.amount == amount) {
+                return;
+            }
+        }
+        equityData.add(new EquityData(date, amount));
+    }
+
     double calculateCurrentEquity() {
         double result = context.getAccount().getBalance().getAmount();
 
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named values assigned to the global variables of a strategy script.
+ *
+ * <p>Strategies return the parameters as an adapter. The values are assigned
+ * after the script is evaluated, overriding the defaults declared by the
+ * script, and before the <code>onStrategyStart</code> function is called.</p>
+ *
+ * @since 1.0
+ */
+public class StrategyParameters {
+
+    private final Map<String, Object> values;
+
+    public StrategyParameters(Map<String, Object> values) {
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<String, Object>(values));
+    }
+
+    public String[] getNames() {
+        return values.keySet().toArray(new String[values.size()]);
+    }
+
+    public Object getValue(String name) {
+        return values.get(name);
+    }
+
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof StrategyParameters)) {
+            return false;
+        }
+        return values.equals(((StrategyParameters) obj).values);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
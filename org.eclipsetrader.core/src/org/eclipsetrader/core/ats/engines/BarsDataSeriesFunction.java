@@ -56,12 +56,20 @@ public class BarsDataSeriesFunction extends ScriptableObject {
 
     public void append(IBar element) {
         list.add(element);
-        changeSupport.firePropertyChange(PROP_BARS, null, toArray());
+        changeSupport.firePropertyChange(PROP_BARS, null, element);
     }
 
     public void prepend(IBar element) {
         list.add(0, element);
-        changeSupport.firePropertyChange(PROP_BARS, null, toArray());
+        changeSupport.firePropertyChange(PROP_BARS, null, element);
+    }
+
+    public IBar getBar(int index) {
+        return list.get(index);
+    }
+
+    public int getBarCount() {
+        return list.size();
     }
 
     /* (non-Javadoc)
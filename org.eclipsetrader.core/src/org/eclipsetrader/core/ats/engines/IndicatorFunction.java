@@ -17,6 +17,7 @@ import java.beans.PropertyChangeSupport;
 
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipsetrader.core.charts.IDataSeries;
+import org.eclipsetrader.core.charts.StreamingDataSeries;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
@@ -94,6 +95,9 @@ public abstract class IndicatorFunction extends ScriptableObject {
         try {
             int s = series.size();
             if (index >= 0 && index < s) {
+                if (series instanceof StreamingDataSeries) {
+                    return ((StreamingDataSeries) series).getValue(index);
+                }
                 return series.getValues()[index];
             }
             else {
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.engines;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * Factory of the Rhino contexts used to run the strategy scripts.
+ *
+ * <p>Contexts use dynamic scope, so the functions defined by the includes,
+ * evaluated once in a scope shared by all instruments, resolve the global
+ * names from the scope of the instrument that calls them.</p>
+ *
+ * <p>The market data and position callbacks run in a context entered once
+ * for each thread and never exited, see {@link #getThreadContext()}.</p>
+ */
+public class JavaScriptContextFactory extends ContextFactory {
+
+    private static JavaScriptContextFactory instance;
+
+    public JavaScriptContextFactory() {
+    }
+
+    public static synchronized JavaScriptContextFactory getInstance() {
+        if (instance == null) {
+            instance = new JavaScriptContextFactory();
+        }
+        return instance;
+    }
+
+    /* (non-Javadoc)
+     * @see org.mozilla.javascript.ContextFactory#makeContext()
+     */
+    @Override
+    protected Context makeContext() {
+        Context cx = super.makeContext();
+        cx.setWrapFactory(new EnhancedWrapFactory());
+        return cx;
+    }
+
+    /* (non-Javadoc)
+     * @see org.mozilla.javascript.ContextFactory#hasFeature(org.mozilla.javascript.Context, int)
+     */
+    @Override
+    protected boolean hasFeature(Context cx, int featureIndex) {
+        if (featureIndex == Context.FEATURE_DYNAMIC_SCOPE) {
+            return true;
+        }
+        return super.hasFeature(cx, featureIndex);
+    }
+
+    /**
+     * Returns the context associated with the current thread, entering a new
+     * context if none is associated yet.
+     *
+     * <p>The context entered by this method is left associated with the thread,
+     * so the callbacks don't pay the cost of entering and exiting a context for
+     * each event. Callers must not call {@link Context#exit()}.</p>
+     *
+     * @return the current context.
+     */
+    public Context getThreadContext() {
+        Context cx = Context.getCurrentContext();
+        if (cx == null) {
+            cx = enterContext();
+        }
+        return cx;
+    }
+}
@@ -22,6 +22,7 @@ import org.eclipsetrader.core.ats.ITradingSystemInstrument;
 import org.eclipsetrader.core.charts.IDataSeries;
 import org.eclipsetrader.core.feed.IBar;
 import org.eclipsetrader.core.feed.IBarOpen;
+import org.eclipsetrader.core.feed.IDepthMetrics;
 import org.eclipsetrader.core.feed.IPricingEnvironment;
 import org.eclipsetrader.core.feed.IPricingListener;
 import org.eclipsetrader.core.feed.IQuote;
@@ -29,6 +30,7 @@ import org.eclipsetrader.core.feed.ITrade;
 import org.eclipsetrader.core.feed.PricingDelta;
 import org.eclipsetrader.core.feed.PricingEvent;
 import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.markets.MarketPricingEnvironment;
 import org.eclipsetrader.core.trading.IAccount;
 import org.eclipsetrader.core.trading.IBroker;
 import org.eclipsetrader.core.trading.IPosition;
@@ -36,6 +38,7 @@ import org.eclipsetrader.core.trading.IPositionListener;
 import org.eclipsetrader.core.trading.PositionEvent;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
 public class JavaScriptEngine extends Observable {
@@ -73,7 +76,8 @@ public class JavaScriptEngine extends Observable {
             if (context == null) {
                 return;
             }
-            context.onPositionOpen(e.position);
+            Context cx = JavaScriptContextFactory.getInstance().getThreadContext();
+            context.onPositionOpen(cx, e.position);
             updatePositionsMap();
             setChanged();
             notifyObservers(new EngineEvent(e.position.getSecurity(), e.position));
@@ -85,7 +89,8 @@ public class JavaScriptEngine extends Observable {
             if (context == null) {
                 return;
             }
-            context.onPositionClosed(e.position);
+            Context cx = JavaScriptContextFactory.getInstance().getThreadContext();
+            context.onPositionClosed(cx, e.position);
             updatePositionsMap();
             setChanged();
             notifyObservers(new EngineEvent(e.position.getSecurity(), e.position));
@@ -97,7 +102,8 @@ public class JavaScriptEngine extends Observable {
             if (context == null) {
                 return;
             }
-            context.onPositionChange(e.position);
+            Context cx = JavaScriptContextFactory.getInstance().getThreadContext();
+            context.onPositionChange(cx, e.position);
             updatePositionsMap();
             setChanged();
             notifyObservers(new EngineEvent(e.position.getSecurity(), e.position));
@@ -114,10 +120,8 @@ public class JavaScriptEngine extends Observable {
     }
 
     public void start() throws Exception {
-        Context cx = Context.enter();
+        Context cx = JavaScriptContextFactory.getInstance().enterContext();
         try {
-            cx.setWrapFactory(new EnhancedWrapFactory());
-
             scope = new ImporterTopLevel(cx);
 
             scope.putConst("Buy", scope, BaseOrderFunction.Buy);
@@ -138,11 +142,15 @@ public class JavaScriptEngine extends Observable {
 
             updatePositionsMap();
 
+            // Imports and includes are shared by all instruments through the prototype of their scopes
+            ScriptCache.getInstance().getImportsScript(cx).exec(cx, scope);
+            Scriptable includesScope = JavaScriptEngineInstrument.createIncludesScope(cx, scope, strategy);
+
             int backfillSize = context.getInitialBackfillSize();
 
             for (ITradingSystemInstrument instrument : tradingSystem.getInstruments()) {
                 ISecurity security = instrument.getInstrument();
-                JavaScriptEngineInstrument engineInstrument = new JavaScriptEngineInstrument(scope, security, strategy);
+                JavaScriptEngineInstrument engineInstrument = new JavaScriptEngineInstrument(includesScope, security, strategy);
                 if (backfillSize != 0) {
                     engineInstrument.backfill(backfillSize);
                 }
@@ -152,10 +160,14 @@ public class JavaScriptEngine extends Observable {
                 }
                 engineInstrument.setPosition(positionsMap.get(security));
                 contextsMap.put(instrument.getInstrument(), engineInstrument);
+
+                if (engineInstrument.hasDepthFunction() && pricingEnvironment instanceof MarketPricingEnvironment) {
+                    ((MarketPricingEnvironment) pricingEnvironment).addLevel2Security(security);
+                }
             }
 
             for (JavaScriptEngineInstrument engineInstrument : contextsMap.values()) {
-                engineInstrument.onStrategyStart();
+                engineInstrument.onStrategyStart(cx);
             }
 
             account.addPositionListener(positionListener);
@@ -166,6 +178,11 @@ public class JavaScriptEngine extends Observable {
     }
 
     public void stop() {
+        for (JavaScriptEngineInstrument engineInstrument : contextsMap.values()) {
+            if (engineInstrument.hasDepthFunction() && pricingEnvironment instanceof MarketPricingEnvironment) {
+                ((MarketPricingEnvironment) pricingEnvironment).removeLevel2Security(engineInstrument.getInstrument());
+            }
+        }
         contextsMap.clear();
 
         instrumentsMap.clear();
@@ -186,25 +203,35 @@ public class JavaScriptEngine extends Observable {
         if (instrument == null) {
             return;
         }
+        // The context stays entered in the pricing thread, no need to enter it for each event
+        doPricingUpdate(JavaScriptContextFactory.getInstance().getThreadContext(), instrument, event);
+    }
+
+    private void doPricingUpdate(Context cx, JavaScriptEngineInstrument instrument, PricingEvent event) {
         for (PricingDelta delta : event.getDelta()) {
             Object value = delta.getNewValue();
             if (value instanceof IQuote) {
-                instrument.onQuote((IQuote) value);
+                instrument.onQuote(cx, (IQuote) value);
                 setChanged();
                 notifyObservers(new EngineEvent(event.getSecurity(), value));
             }
             else if (value instanceof ITrade) {
-                instrument.onTrade((ITrade) value);
+                instrument.onTrade(cx, (ITrade) value);
                 setChanged();
                 notifyObservers(new EngineEvent(event.getSecurity(), value));
             }
             else if (value instanceof IBarOpen) {
-                instrument.onBarOpen((IBarOpen) value);
+                instrument.onBarOpen(cx, (IBarOpen) value);
+                setChanged();
+                notifyObservers(new EngineEvent(event.getSecurity(), value));
+            }
+            else if (value instanceof IDepthMetrics) {
+                instrument.onDepth(cx, (IDepthMetrics) value);
                 setChanged();
                 notifyObservers(new EngineEvent(event.getSecurity(), value));
             }
             else if (value instanceof IBar) {
-                instrument.onBar((IBar) value);
+                instrument.onBar(cx, (IBar) value);
                 setChanged();
                 notifyObservers(new EngineEvent(event.getSecurity(), instrument.getBars()));
             }
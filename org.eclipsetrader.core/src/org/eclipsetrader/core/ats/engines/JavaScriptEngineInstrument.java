@@ -20,9 +20,11 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipsetrader.core.IScript;
 import org.eclipsetrader.core.ats.IScriptStrategy;
+import org.eclipsetrader.core.ats.StrategyParameters;
 import org.eclipsetrader.core.feed.Bar;
 import org.eclipsetrader.core.feed.IBar;
 import org.eclipsetrader.core.feed.IBarOpen;
+import org.eclipsetrader.core.feed.IDepthMetrics;
 import org.eclipsetrader.core.feed.IHistory;
 import org.eclipsetrader.core.feed.IOHLC;
 import org.eclipsetrader.core.feed.IQuote;
@@ -34,6 +36,7 @@ import org.eclipsetrader.core.repositories.IRepositoryService;
 import org.eclipsetrader.core.trading.IPosition;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
+import org.mozilla.javascript.ImporterTopLevel;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.osgi.framework.BundleContext;
@@ -46,6 +49,7 @@ public class JavaScriptEngineInstrument {
     public static final String FUNCTION_ON_TRADE = "onTrade"; //$NON-NLS-1$
     public static final String FUNCTION_ON_BAR_OPEN = "onBarOpen"; //$NON-NLS-1$
     public static final String FUNCTION_ON_BAR = "onBar"; //$NON-NLS-1$
+    public static final String FUNCTION_ON_DEPTH = "onDepth"; //$NON-NLS-1$
     public static final String FUNCTION_ON_POSITION_OPENED = "onPositionOpened"; //$NON-NLS-1$
     public static final String FUNCTION_ON_POSITION_CHANGED = "onPositionChanged"; //$NON-NLS-1$
     public static final String FUNCTION_ON_POSITION_CLOSED = "onPositionClosed"; //$NON-NLS-1$
@@ -54,6 +58,7 @@ public class JavaScriptEngineInstrument {
     public static final String PROPERTY_TRADE = "trade"; //$NON-NLS-1$
     public static final String PROPERTY_BAR = "bar"; //$NON-NLS-1$
     public static final String PROPERTY_BARS = "bars"; //$NON-NLS-1$
+    public static final String PROPERTY_DEPTH = "depth"; //$NON-NLS-1$
     public static final String PROPERTY_POSITION = "position"; //$NON-NLS-1$
 
     private final Scriptable scope;
@@ -63,26 +68,68 @@ public class JavaScriptEngineInstrument {
     private Function onTrade;
     private Function onBarOpen;
     private Function onBar;
+    private Function onDepth;
     private Function onPositionOpened;
     private Function onPositionChanged;
     private Function onPositionClosed;
 
     private BarsDataSeriesFunction bars;
 
+    // Arguments of the market data callbacks, reused since the callbacks are not reentrant
+    private final Object[] quoteArgs = new Object[1];
+    private final Object[] tradeArgs = new Object[1];
+    private final Object[] barOpenArgs = new Object[1];
+    private final Object[] barArgs = new Object[1];
+    private final Object[] depthArgs = new Object[1];
+
     private final Log log = LogFactory.getLog(getClass());
 
+    /**
+     * Creates the scope where the includes of the strategy are evaluated.
+     *
+     * <p>The includes are evaluated once and the returned scope is sealed, it is
+     * shared by all instruments through the prototype of their scopes. Functions
+     * defined by the includes are called with dynamic scope and resolve the global
+     * names, like the instrument and its bars, from the calling instrument's scope.</p>
+     *
+     * @param cx the current context.
+     * @param sharedScope the engine's scope with the properties and imports.
+     * @param strategy the strategy.
+     * @return the sealed includes scope.
+     */
+    public static ScriptableObject createIncludesScope(Context cx, Scriptable sharedScope, IScriptStrategy strategy) {
+        ScriptableObject includesScope = new ImporterTopLevel(cx);
+        includesScope.setPrototype(sharedScope);
+        includesScope.setParentScope(null);
+
+        ScriptCache scriptCache = ScriptCache.getInstance();
+        for (IScript script : strategy.getIncludes()) {
+            scriptCache.getScript(cx, script.getText(), script.getName()).exec(cx, includesScope);
+        }
+
+        includesScope.sealObject();
+        return includesScope;
+    }
+
+    /**
+     * Creates the context of an instrument.
+     *
+     * @param sharedScope the scope inherited by the instrument, with the includes of the strategy
+     *            already evaluated, see {@link #createIncludesScope(Context, Scriptable, IScriptStrategy)}.
+     * @param instrument the instrument.
+     * @param strategy the strategy.
+     * @throws Exception if the strategy script can't be evaluated.
+     */
     public JavaScriptEngineInstrument(Scriptable sharedScope, ISecurity instrument, IScriptStrategy strategy) throws Exception {
         this.instrument = instrument;
         this.strategy = strategy;
 
-        Context cx = Context.enter();
+        Context cx = JavaScriptContextFactory.getInstance().enterContext();
         try {
-            scope = cx.newObject(sharedScope);
+            // Each instrument has its own unsealed top-level scope, so the scripts can import classes
+            // and packages, and inherits the includes, properties and imports from the shared scope
+            scope = new ImporterTopLevel(cx);
             scope.setPrototype(sharedScope);
-            for (Object id : ScriptableObject.getPropertyIds(sharedScope)) {
-                Object obj = ScriptableObject.getProperty(sharedScope, (String) id);
-                ScriptableObject.putProperty(scope, (String) id, obj);
-            }
             scope.setParentScope(null);
 
             ScriptableObject.defineClass(scope, BarsDataSeriesFunction.class);
@@ -96,14 +143,15 @@ public class JavaScriptEngineInstrument {
             bars = (BarsDataSeriesFunction) cx.newObject(scope, BarsDataSeriesFunction.FUNCTION_NAME);
             ScriptableObject.putProperty(scope, PROPERTY_BARS, bars);
 
-            cx.evaluateString(scope, "importPackage(org.eclipsetrader.core.feed);", strategy.getName(), 0, null); //$NON-NLS-1$
-            cx.evaluateString(scope, "importPackage(org.eclipsetrader.core.instruments);", strategy.getName(), 0, null); //$NON-NLS-1$
-            cx.evaluateString(scope, "importPackage(org.eclipsetrader.core.trading);", strategy.getName(), 0, null); //$NON-NLS-1$
+            // The packages are imported and the includes evaluated once in the shared scope
+            ScriptCache.getInstance().getScript(cx, strategy.getText(), strategy.getName()).exec(cx, scope);
 
-            for (IScript script : strategy.getIncludes()) {
-                cx.evaluateString(scope, script.getText(), script.getName(), 1, null);
+            StrategyParameters parameters = (StrategyParameters) strategy.getAdapter(StrategyParameters.class);
+            if (parameters != null) {
+                for (String name : parameters.getNames()) {
+                    ScriptableObject.putProperty(scope, name, Context.javaToJS(parameters.getValue(name), scope));
+                }
             }
-            cx.evaluateString(scope, strategy.getText(), strategy.getName(), 1, null);
 
             Object obj = scope.get(FUNCTION_ON_QUOTE, scope);
             if (obj instanceof Function) {
@@ -125,6 +173,11 @@ public class JavaScriptEngineInstrument {
                 onBar = (Function) obj;
             }
 
+            obj = scope.get(FUNCTION_ON_DEPTH, scope);
+            if (obj instanceof Function) {
+                onDepth = (Function) obj;
+            }
+
             obj = scope.get(FUNCTION_ON_POSITION_OPENED, scope);
             if (obj instanceof Function) {
                 onPositionOpened = (Function) obj;
@@ -169,129 +222,140 @@ public class JavaScriptEngineInstrument {
     }
 
     public void onStrategyStart() {
-        Context cx = Context.enter();
-        try {
-            Object obj = scope.get(FUNCTION_ON_STRATEGY_START, scope);
-            if (obj instanceof Function) {
-                ((Function) obj).call(cx, scope, scope, new Object[0]);
-            }
-        } finally {
-            Context.exit();
+        onStrategyStart(JavaScriptContextFactory.getInstance().getThreadContext());
+    }
+
+    /**
+     * Calls the <code>onStrategyStart</code> function using a context already
+     * entered by the caller.
+     *
+     * @param cx the current context.
+     */
+    public void onStrategyStart(Context cx) {
+        Object obj = scope.get(FUNCTION_ON_STRATEGY_START, scope);
+        if (obj instanceof Function) {
+            ((Function) obj).call(cx, scope, scope, new Object[0]);
         }
     }
 
     public void onQuote(IQuote quote) {
-        Context cx = Context.enter();
-        try {
-            if (onQuote != null) {
-                onQuote.call(cx, scope, scope, new Object[] {
-                    quote
-                });
-            }
-            ScriptableObject.putProperty(scope, PROPERTY_QUOTE, quote);
-        } finally {
-            Context.exit();
+        onQuote(JavaScriptContextFactory.getInstance().getThreadContext(), quote);
+    }
+
+    public void onQuote(Context cx, IQuote quote) {
+        if (onQuote != null) {
+            quoteArgs[0] = quote;
+            onQuote.call(cx, scope, scope, quoteArgs);
         }
+        ScriptableObject.putProperty(scope, PROPERTY_QUOTE, quote);
     }
 
     public void onTrade(ITrade trade) {
-        Context cx = Context.enter();
-        try {
-            if (onTrade != null) {
-                onTrade.call(cx, scope, scope, new Object[] {
-                    trade
-                });
-            }
-            ScriptableObject.putProperty(scope, PROPERTY_TRADE, trade);
-        } finally {
-            Context.exit();
+        onTrade(JavaScriptContextFactory.getInstance().getThreadContext(), trade);
+    }
+
+    public void onTrade(Context cx, ITrade trade) {
+        if (onTrade != null) {
+            tradeArgs[0] = trade;
+            onTrade.call(cx, scope, scope, tradeArgs);
+        }
+        ScriptableObject.putProperty(scope, PROPERTY_TRADE, trade);
+    }
+
+    /**
+     * Returns whether the strategy defines the <code>onDepth</code> function and
+     * needs the Level II book of the instrument.
+     *
+     * @return <code>true</code> if the function is defined.
+     */
+    public boolean hasDepthFunction() {
+        return onDepth != null;
+    }
+
+    public void onDepth(IDepthMetrics metrics) {
+        onDepth(JavaScriptContextFactory.getInstance().getThreadContext(), metrics);
+    }
+
+    public void onDepth(Context cx, IDepthMetrics metrics) {
+        if (onDepth != null) {
+            depthArgs[0] = metrics;
+            onDepth.call(cx, scope, scope, depthArgs);
         }
+        ScriptableObject.putProperty(scope, PROPERTY_DEPTH, metrics);
     }
 
     public void onBarOpen(IBarOpen bar) {
-        Context cx = Context.enter();
-        try {
-            if (onBarOpen != null) {
-                onBarOpen.call(cx, scope, scope, new Object[] {
-                    bar
-                });
-            }
-        } finally {
-            Context.exit();
+        onBarOpen(JavaScriptContextFactory.getInstance().getThreadContext(), bar);
+    }
+
+    public void onBarOpen(Context cx, IBarOpen bar) {
+        if (onBarOpen != null) {
+            barOpenArgs[0] = bar;
+            onBarOpen.call(cx, scope, scope, barOpenArgs);
         }
     }
 
     public void onBar(IBar bar) {
-        Context cx = Context.enter();
-        try {
-            bars.append(bar);
-            if (onBar != null) {
-                onBar.call(cx, scope, scope, new Object[] {
-                    bar
-                });
-            }
-            ScriptableObject.putProperty(scope, PROPERTY_BAR, bar);
-        } finally {
-            Context.exit();
+        onBar(JavaScriptContextFactory.getInstance().getThreadContext(), bar);
+    }
+
+    public void onBar(Context cx, IBar bar) {
+        bars.append(bar);
+        if (onBar != null) {
+            barArgs[0] = bar;
+            onBar.call(cx, scope, scope, barArgs);
         }
+        ScriptableObject.putProperty(scope, PROPERTY_BAR, bar);
     }
 
     public void onPositionOpen(IPosition position) {
+        onPositionOpen(JavaScriptContextFactory.getInstance().getThreadContext(), position);
+    }
+
+    public void onPositionOpen(Context cx, IPosition position) {
         log.info("onPositionOpen: " + position);
-        Context cx = Context.enter();
-        try {
-            ScriptableObject.putProperty(scope, PROPERTY_POSITION, position);
-            if (onPositionOpened != null) {
-                onPositionOpened.call(cx, scope, scope, new Object[] {
-                    position
-                });
-            }
-        } finally {
-            Context.exit();
+        ScriptableObject.putProperty(scope, PROPERTY_POSITION, position);
+        if (onPositionOpened != null) {
+            onPositionOpened.call(cx, scope, scope, new Object[] {
+                position
+            });
         }
     }
 
     public void onPositionChange(IPosition position) {
+        onPositionChange(JavaScriptContextFactory.getInstance().getThreadContext(), position);
+    }
+
+    public void onPositionChange(Context cx, IPosition position) {
         log.info("onPositionChange: " + position);
-        Context cx = Context.enter();
-        try {
-            ScriptableObject.putProperty(scope, PROPERTY_POSITION, position);
-            if (onPositionChanged != null) {
-                onPositionChanged.call(cx, scope, scope, new Object[] {
-                    position
-                });
-            }
-        } finally {
-            Context.exit();
+        ScriptableObject.putProperty(scope, PROPERTY_POSITION, position);
+        if (onPositionChanged != null) {
+            onPositionChanged.call(cx, scope, scope, new Object[] {
+                position
+            });
         }
     }
 
     public void onPositionClosed(IPosition position) {
+        onPositionClosed(JavaScriptContextFactory.getInstance().getThreadContext(), position);
+    }
+
+    public void onPositionClosed(Context cx, IPosition position) {
         log.info("onPositionClosed: " + position);
-        Context cx = Context.enter();
-        try {
-            ScriptableObject.deleteProperty(scope, PROPERTY_POSITION);
-            if (onPositionClosed != null) {
-                onPositionClosed.call(cx, scope, scope, new Object[] {
-                    position
-                });
-            }
-        } finally {
-            Context.exit();
+        ScriptableObject.deleteProperty(scope, PROPERTY_POSITION);
+        if (onPositionClosed != null) {
+            onPositionClosed.call(cx, scope, scope, new Object[] {
+                position
+            });
         }
     }
 
     public void setPosition(IPosition position) {
-        Context.enter();
-        try {
-            ScriptableObject.putProperty(scope, PROPERTY_POSITION, position);
-        } finally {
-            Context.exit();
-        }
+        ScriptableObject.putProperty(scope, PROPERTY_POSITION, position);
     }
 
     public Object get(String name) {
-        return scope.get(name, scope);
+        return ScriptableObject.getProperty(scope, name);
     }
 
     public Scriptable getScope() {
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.engines;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+/**
+ * Cache of compiled strategy scripts.
+ *
+ * <p>Scripts are compiled once for each source text and shared by all
+ * instruments and engines running the same strategy revision. Compiled
+ * scripts hold no state and can be executed concurrently in different
+ * scopes.</p>
+ *
+ * <p>The Rhino optimization level used to compile the scripts defaults to
+ * the value of the <code>org.eclipsetrader.core.ats.optimizationLevel</code>
+ * system property, or 0 if not set.</p>
+ */
+public class ScriptCache {
+
+    public static final String PROP_OPTIMIZATION_LEVEL = "org.eclipsetrader.core.ats.optimizationLevel"; //$NON-NLS-1$
+    public static final int DEFAULT_SIZE = 64;
+
+    static final String IMPORTS_NAME = "imports"; //$NON-NLS-1$
+    static final String IMPORTS_TEXT = "importPackage(org.eclipsetrader.core.feed);\n" //$NON-NLS-1$
+        + "importPackage(org.eclipsetrader.core.instruments);\n" //$NON-NLS-1$
+        + "importPackage(org.eclipsetrader.core.trading);\n"; //$NON-NLS-1$
+
+    private static ScriptCache instance;
+
+    private int optimizationLevel;
+    private final Map<Key, Script> map;
+
+    private static class Key {
+
+        final String name;
+        final String text;
+        final int optimizationLevel;
+
+        public Key(String name, String text, int optimizationLevel) {
+            this.name = name;
+            this.text = text;
+            this.optimizationLevel = optimizationLevel;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return (name != null ? name.hashCode() * 7 : 0) + text.hashCode() * 11 + optimizationLevel;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return optimizationLevel == other.optimizationLevel && (name == other.name || name != null && name.equals(other.name)) && text.equals(other.text);
+        }
+    }
+
+    ScriptCache(int size) {
+        final int maxSize = size;
+        this.optimizationLevel = Integer.getInteger(PROP_OPTIMIZATION_LEVEL, 0);
+        this.map = new LinkedHashMap<Key, Script>(size + 1, 1.0f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<Key, Script> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static synchronized ScriptCache getInstance() {
+        if (instance == null) {
+            instance = new ScriptCache(DEFAULT_SIZE);
+        }
+        return instance;
+    }
+
+    public synchronized int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    /**
+     * Sets the Rhino optimization level used to compile the scripts, from -1
+     * (interpreted) to 9. Scripts already compiled with a different level are
+     * compiled again when requested.
+     *
+     * @param optimizationLevel the optimization level.
+     */
+    public synchronized void setOptimizationLevel(int optimizationLevel) {
+        if (!Context.isValidOptimizationLevel(optimizationLevel)) {
+            throw new IllegalArgumentException("Invalid optimization level " + optimizationLevel); //$NON-NLS-1$
+        }
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Returns the compiled script for the given source text, compiling it if
+     * not already in the cache.
+     *
+     * @param cx the current context.
+     * @param text the source text.
+     * @param name the source name, used in error messages.
+     * @return the compiled script.
+     */
+    public Script getScript(Context cx, String text, String name) {
+        Key key;
+        synchronized (this) {
+            key = new Key(name, text != null ? text : "", optimizationLevel); //$NON-NLS-1$
+            Script script = map.get(key);
+            if (script != null) {
+                return script;
+            }
+        }
+
+        // Compiles outside the lock, concurrent compilations of the same text are harmless
+        int level = cx.getOptimizationLevel();
+        try {
+            cx.setOptimizationLevel(key.optimizationLevel);
+            Script script = cx.compileString(key.text, name, 1, null);
+            synchronized (this) {
+                map.put(key, script);
+            }
+            return script;
+        } finally {
+            cx.setOptimizationLevel(level);
+        }
+    }
+
+    /**
+     * Returns the script importing the packages available to all strategies.
+     *
+     * @param cx the current context.
+     * @return the compiled script.
+     */
+    public Script getImportsScript(Context cx) {
+        return getScript(cx, IMPORTS_TEXT, IMPORTS_NAME);
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+}
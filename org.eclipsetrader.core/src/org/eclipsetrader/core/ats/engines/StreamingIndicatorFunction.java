@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.engines;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.charts.StreamingDataSeries;
+import org.eclipsetrader.core.feed.IBar;
+import org.eclipsetrader.core.internal.CoreActivator;
+
+/**
+ * Indicator function computed incrementally as new bars are appended.
+ *
+ * <p>Subclasses keep the indicator state in fields and update it in constant
+ * time for each new bar, the results are appended to a
+ * <code>StreamingDataSeries</code>. If bars are inserted before the first
+ * bar the state is reset and all bars are processed again.</p>
+ *
+ * <p>When the verification mode is enabled, with the
+ * <code>org.eclipsetrader.core.ats.verifyIndicators</code> system property
+ * or with <code>setVerify</code>, the results are compared after each update
+ * with the values computed on the whole series by <code>calculateBatch</code>
+ * and a warning is logged at the first mismatch.</p>
+ *
+ * @since 1.0
+ */
+public abstract class StreamingIndicatorFunction extends IndicatorFunction {
+
+    private static final long serialVersionUID = 2871620305126390473L;
+
+    public static final String PROP_VERIFY = "org.eclipsetrader.core.ats.verifyIndicators"; //$NON-NLS-1$
+    public static final double VERIFY_TOLERANCE = 1E-6;
+
+    private static boolean verify = Boolean.getBoolean(PROP_VERIFY);
+
+    private BarsDataSeriesFunction bars;
+    private IBar firstBar;
+    private int processed;
+    private boolean mismatchLogged;
+
+    public StreamingIndicatorFunction() {
+    }
+
+    public StreamingIndicatorFunction(BarsDataSeriesFunction bars, String name) {
+        super(bars);
+        this.bars = bars;
+        this.series = new StreamingDataSeries(name);
+    }
+
+    public static boolean isVerify() {
+        return verify;
+    }
+
+    public static void setVerify(boolean verify) {
+        StreamingIndicatorFunction.verify = verify;
+    }
+
+    /**
+     * Clears the indicator state before processing all bars from the first.
+     */
+    protected abstract void reset();
+
+    /**
+     * Updates the indicator state with a new bar.
+     *
+     * @param bar the new bar.
+     * @return the indicator value at the bar, or <code>NaN</code> if there are not enough bars yet.
+     */
+    protected abstract double update(IBar bar);
+
+    /**
+     * Computes the indicator values on the whole bars series, used as a
+     * reference when the verification mode is enabled.
+     *
+     * @return the values aligned to the last bars, or <code>null</code> if not available.
+     */
+    protected double[] calculateBatch() {
+        return null;
+    }
+
+    protected BarsDataSeriesFunction getBars() {
+        return bars;
+    }
+
+    public StreamingDataSeries getStreamingSeries() {
+        return (StreamingDataSeries) series;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.IndicatorFunction#calculate()
+     */
+    @Override
+    protected void calculate() {
+        if (bars == null) {
+            return;
+        }
+
+        StreamingDataSeries streamingSeries = getStreamingSeries();
+        boolean changed = false;
+
+        int count = bars.getBarCount();
+        IBar first = count != 0 ? bars.getBar(0) : null;
+        if (first != firstBar || count < processed) {
+            changed = streamingSeries.size() != 0;
+            reset();
+            streamingSeries.clear();
+            firstBar = first;
+            processed = 0;
+        }
+
+        for (; processed < count; processed++) {
+            IBar bar = bars.getBar(processed);
+            double value = update(bar);
+            if (!Double.isNaN(value)) {
+                streamingSeries.append(bar.getDate(), value);
+                changed = true;
+            }
+        }
+
+        if (verify) {
+            verify();
+        }
+
+        if (changed) {
+            changeSupport.firePropertyChange(PROP_SERIES, null, series);
+        }
+    }
+
+    /**
+     * Compares the incremental results with the values computed by <code>calculateBatch</code>.
+     * The first mismatch is logged as a warning.
+     *
+     * @return <code>true</code> if the results match or there are no batch values to compare with.
+     */
+    public boolean verify() {
+        double[] expected = calculateBatch();
+        if (expected == null) {
+            return true;
+        }
+
+        StreamingDataSeries streamingSeries = getStreamingSeries();
+
+        String message = null;
+        if (expected.length != streamingSeries.size()) {
+            message = String.format("%s: %d incremental values, %d expected", series.getName(), streamingSeries.size(), expected.length); //$NON-NLS-1$
+        }
+        else {
+            for (int i = 0; i < expected.length; i++) {
+                double value = streamingSeries.getDouble(i);
+                if (Math.abs(value - expected[i]) > VERIFY_TOLERANCE * Math.max(1.0, Math.max(Math.abs(value), Math.abs(expected[i])))) {
+                    message = String.format("%s: incremental value %f at %d, expected %f", series.getName(), value, i, expected[i]); //$NON-NLS-1$
+                    break;
+                }
+            }
+        }
+
+        if (message != null && !mismatchLogged) {
+            Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, message, null);
+            CoreActivator.log(status);
+            mismatchLogged = true;
+        }
+
+        return message == null;
+    }
+}
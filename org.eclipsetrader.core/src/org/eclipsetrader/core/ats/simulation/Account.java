@@ -13,6 +13,8 @@ package org.eclipsetrader.core.ats.simulation;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Currency;
 import java.util.HashMap;
 import java.util.List;
@@ -131,6 +133,41 @@ public class Account implements IAccount {
         }
     }
 
+    /**
+     * Adds the balance, transactions and positions of an account simulated
+     * independently to the receiver.
+     *
+     * @param account the account to merge.
+     */
+    void merge(Account account) {
+        balance += account.balance;
+
+        transactions.addAll(account.transactions);
+        Collections.sort(transactions, new Comparator<Transaction>() {
+
+            @Override
+            public int compare(Transaction o1, Transaction o2) {
+                if (o1.getDate() == null || o2.getDate() == null) {
+                    return o1.getDate() == null ? (o2.getDate() == null ? 0 : -1) : 1;
+                }
+                return o1.getDate().compareTo(o2.getDate());
+            }
+        });
+
+        for (Position other : account.positions.values()) {
+            Position position = positions.get(other.getSecurity());
+            if (position == null) {
+                positions.put(other.getSecurity(), new Position(other.getSecurity(), other.getQuantity(), other.getPrice()));
+            }
+            else {
+                position.add(other.getQuantity(), other.getPrice());
+                if (position.getQuantity() == 0L) {
+                    positions.remove(position.getSecurity());
+                }
+            }
+        }
+    }
+
     protected void firePositionOpenedEvent(Position position) {
         PositionEvent event = new PositionEvent(this, position);
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.core.instruments.ISecurity;
+
+/**
+ * Replays the price bars of a security as simulation events.
+ *
+ * @since 1.0
+ */
+public class BarEventSource extends SimulationEventSource {
+
+    private final ISecurity security;
+    private final TimeSpan timeSpan;
+    private final IOHLC[] bars;
+    private final long duration;
+    private int index;
+
+    public BarEventSource(ISecurity security, TimeSpan timeSpan, IOHLC[] bars) {
+        this.security = security;
+        this.timeSpan = timeSpan;
+        this.bars = bars;
+        this.duration = getDuration(timeSpan);
+    }
+
+    public TimeSpan getTimeSpan() {
+        return timeSpan;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.SimulationEventSource#next()
+     */
+    @Override
+    public boolean next() {
+        while (bars != null && index < bars.length) {
+            IOHLC bar = bars[index++];
+            if (bar.getDate() == null || bar.getOpen() == null || bar.getClose() == null) {
+                continue;
+            }
+            double open = bar.getOpen();
+            double close = bar.getClose();
+            double high = bar.getHigh() != null ? bar.getHigh() : Math.max(open, close);
+            double low = bar.getLow() != null ? bar.getLow() : Math.min(open, close);
+            long volume = bar.getVolume() != null ? bar.getVolume() : 0L;
+            setBar(security, bar.getDate().getTime(), duration, open, high, low, close, volume);
+            return true;
+        }
+        return false;
+    }
+
+    static long getDuration(TimeSpan timeSpan) {
+        switch (timeSpan.getUnits()) {
+            case Minutes:
+                return timeSpan.getLength() * 60L * 1000L;
+            case Days:
+                return timeSpan.getLength() * 24L * 60L * 60L * 1000L;
+            case Months:
+                return timeSpan.getLength() * 30L * 24L * 60L * 60L * 1000L;
+            case Years:
+                return timeSpan.getLength() * 365L * 24L * 60L * 60L * 1000L;
+        }
+        return 0L;
+    }
+}
@@ -132,6 +132,8 @@ public class Broker implements IBroker {
                     log.info(sb.toString());
                 }
 
+                orderCanceled(this);
+
                 fireUpdateNotifications(new OrderDelta[] {
                     new OrderDelta(OrderDelta.KIND_UPDATED, this),
                 });
@@ -161,6 +163,8 @@ public class Broker implements IBroker {
                     log.info(sb.toString());
                 }
 
+                orderSubmitted(this);
+
                 fireUpdateNotifications(new OrderDelta[] {
                     new OrderDelta(OrderDelta.KIND_UPDATED, this),
                 });
@@ -170,6 +174,22 @@ public class Broker implements IBroker {
         return monitor;
     }
 
+    /**
+     * Called when an order is submitted, before the listeners are notified.
+     *
+     * @param monitor the submitted order.
+     */
+    protected void orderSubmitted(OrderMonitor monitor) {
+    }
+
+    /**
+     * Called when an order is canceled, before the listeners are notified.
+     *
+     * @param monitor the canceled order.
+     */
+    protected void orderCanceled(OrderMonitor monitor) {
+    }
+
     protected void fireUpdateNotifications(OrderDelta[] deltas) {
         if (deltas.length != 0) {
             OrderChangeEvent event = new OrderChangeEvent(this, deltas);
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import org.eclipsetrader.core.trading.IOrder;
+
+/**
+ * Latency model that delays all orders by the same amount of time.
+ *
+ * @since 1.0
+ */
+public class FixedLatencyModel implements ILatencyModel {
+
+    private final long delay;
+
+    public FixedLatencyModel(long delay) {
+        this.delay = delay;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.ILatencyModel#getDelay(org.eclipsetrader.core.trading.IOrder, long)
+     */
+    @Override
+    public long getDelay(IOrder order, long time) {
+        return delay;
+    }
+}
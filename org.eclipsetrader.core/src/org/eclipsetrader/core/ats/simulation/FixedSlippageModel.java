@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import org.eclipsetrader.core.trading.IOrder;
+import org.eclipsetrader.core.trading.IOrderSide;
+
+/**
+ * Slippage model that moves the fill price against the order by a fixed amount
+ * plus a fraction of the quoted price.
+ *
+ * @since 1.0
+ */
+public class FixedSlippageModel implements ISlippageModel {
+
+    private final double amount;
+    private final double rate;
+
+    public FixedSlippageModel(double amount) {
+        this(amount, 0.0);
+    }
+
+    /**
+     * Creates a slippage model.
+     *
+     * @param amount the price amount added to buys and subtracted from sells.
+     * @param rate the fraction of the price added to buys and subtracted from sells.
+     */
+    public FixedSlippageModel(double amount, double rate) {
+        this.amount = amount;
+        this.rate = rate;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.ISlippageModel#getPrice(org.eclipsetrader.core.trading.IOrder, double, long)
+     */
+    @Override
+    public double getPrice(IOrder order, double price, long quantity) {
+        double slippage = amount + price * rate;
+        if (order.getSide() == IOrderSide.Sell || order.getSide() == IOrderSide.SellShort) {
+            return price - slippage;
+        }
+        return price + slippage;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipsetrader.core.feed.IHistory;
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.repositories.IRepositoryService;
+
+/**
+ * Read-only bars of a set of instruments, loaded once and shared by many
+ * simulation runs.
+ *
+ * <p>The bars are loaded from the calling thread, once loaded the cache can
+ * be used concurrently from any thread.</p>
+ */
+class HistoryCache {
+
+    private final TimeSpan[] barsTimeSpan;
+    private final Map<ISecurity, IOHLC[][]> map = new HashMap<ISecurity, IOHLC[][]>();
+
+    public HistoryCache(TimeSpan[] barsTimeSpan) {
+        this.barsTimeSpan = barsTimeSpan;
+    }
+
+    public void load(IRepositoryService repositoryService, ISecurity[] securities, Date begin, Date end) {
+        for (ISecurity security : securities) {
+            IHistory history = repositoryService.getHistoryFor(security);
+            IOHLC[][] bars = new IOHLC[barsTimeSpan.length][];
+            for (int i = 0; i < barsTimeSpan.length; i++) {
+                bars[i] = history.getSubset(begin, end, barsTimeSpan[i]).getOHLC();
+            }
+            map.put(security, bars);
+        }
+    }
+
+    public void put(ISecurity security, IOHLC[][] bars) {
+        map.put(security, bars);
+    }
+
+    public TimeSpan[] getBarsTimeSpan() {
+        return barsTimeSpan;
+    }
+
+    /**
+     * Returns the bars of the given instrument between two dates, inclusive.
+     *
+     * @param security the instrument.
+     * @param begin the first date, or <code>null</code> for all bars before the last date.
+     * @param end the last date, or <code>null</code> for all bars after the first date.
+     * @return the bars for each timespan, or <code>null</code> if the instrument is not loaded.
+     */
+    public IOHLC[][] get(ISecurity security, Date begin, Date end) {
+        IOHLC[][] bars = map.get(security);
+        if (bars == null) {
+            return null;
+        }
+
+        IOHLC[][] result = new IOHLC[bars.length][];
+        for (int i = 0; i < bars.length; i++) {
+            if (bars[i] == null) {
+                result[i] = new IOHLC[0];
+                continue;
+            }
+            int first = begin != null ? indexOf(bars[i], begin.getTime()) : 0;
+            int last = end != null ? indexOf(bars[i], end.getTime() + 1) : bars[i].length;
+            result[i] = first == 0 && last == bars[i].length ? bars[i] : Arrays.copyOfRange(bars[i], first, Math.max(first, last));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the first bar with a date not earlier than the given time.
+     */
+    static int indexOf(IOHLC[] bars, long time) {
+        int low = 0;
+        int high = bars.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bars[mid].getDate().getTime() < time) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
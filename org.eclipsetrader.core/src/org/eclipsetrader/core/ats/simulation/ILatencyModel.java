@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import org.eclipsetrader.core.trading.IOrder;
+
+/**
+ * Models the time an order takes to reach the simulated market.
+ *
+ * @since 1.0
+ */
+public interface ILatencyModel {
+
+    /**
+     * Returns the delay between the submission of an order and the time it can
+     * be matched.
+     *
+     * @param order the submitted order.
+     * @param time the simulated submission time, in milliseconds.
+     * @return the delay, in milliseconds.
+     */
+    public long getDelay(IOrder order, long time);
+}
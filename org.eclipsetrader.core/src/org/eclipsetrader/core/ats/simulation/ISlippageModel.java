@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import org.eclipsetrader.core.trading.IOrder;
+
+/**
+ * Models the price impact of the orders filled at market.
+ *
+ * @since 1.0
+ */
+public interface ISlippageModel {
+
+    /**
+     * Returns the price an order is filled at.
+     *
+     * @param order the order being filled.
+     * @param price the price quoted by the market.
+     * @param quantity the quantity filled.
+     * @return the fill price.
+     */
+    public double getPrice(IOrder order, double price, long quantity);
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipsetrader.core.ats.StrategyParameters;
+
+/**
+ * Result of a simulation run with a set of strategy parameters.
+ *
+ * <p>For walk-forward optimizations the result holds the best parameters of
+ * the in-sample period of a window and the report of the out-of-sample
+ * period simulated with those parameters.</p>
+ *
+ * @since 1.0
+ */
+public class OptimizationResult {
+
+    private final StrategyParameters parameters;
+    private final SimulationReport report;
+    private final int window;
+    private SimulationReport outOfSampleReport;
+
+    private final double netProfit;
+    private final double maxDrawdown;
+    private final int tradesCount;
+
+    public OptimizationResult(StrategyParameters parameters, SimulationReport report) {
+        this(parameters, report, -1);
+    }
+
+    public OptimizationResult(StrategyParameters parameters, SimulationReport report, int window) {
+        this.parameters = parameters;
+        this.report = report;
+        this.window = window;
+
+        double equity = 0.0;
+        double peak = 0.0;
+        double drawdown = 0.0;
+        for (IAdaptable value : report.getEquityData().getValues()) {
+            equity = (Double) value.getAdapter(Double.class);
+            if (equity > peak) {
+                peak = equity;
+            }
+            if (peak - equity > drawdown) {
+                drawdown = peak - equity;
+            }
+        }
+        this.netProfit = equity;
+        this.maxDrawdown = drawdown;
+        this.tradesCount = report.getTradesData().size();
+    }
+
+    public StrategyParameters getParameters() {
+        return parameters;
+    }
+
+    public SimulationReport getReport() {
+        return report;
+    }
+
+    /**
+     * Returns the walk-forward window of the result.
+     *
+     * @return the window index, or -1 if the result doesn't belong to a walk-forward optimization.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    public SimulationReport getOutOfSampleReport() {
+        return outOfSampleReport;
+    }
+
+    void setOutOfSampleReport(SimulationReport outOfSampleReport) {
+        this.outOfSampleReport = outOfSampleReport;
+    }
+
+    public double getNetProfit() {
+        return netProfit;
+    }
+
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    public int getTradesCount() {
+        return tradesCount;
+    }
+
+    /**
+     * Returns the value of the given metric, higher values rank better.
+     *
+     * @param metric the metric.
+     * @return the metric value.
+     */
+    public double getValue(Optimizer.Metric metric) {
+        switch (metric) {
+            case NET_PROFIT:
+                return netProfit;
+            case MAX_DRAWDOWN:
+                return -maxDrawdown;
+            case PROFIT_DRAWDOWN_RATIO:
+                return maxDrawdown != 0.0 ? netProfit / maxDrawdown : netProfit;
+        }
+        return 0.0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "OptimizationResult: parameters=" + parameters + ", netProfit=" + netProfit + ", maxDrawdown=" + maxDrawdown + ", trades=" + tradesCount; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipsetrader.core.IScript;
+import org.eclipsetrader.core.ats.IScriptStrategy;
+import org.eclipsetrader.core.ats.StrategyParameters;
+import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.repositories.IRepositoryService;
+
+/**
+ * Runs a strategy many times with different parameters and ranks the results.
+ *
+ * <p>The parameters are assigned to the global variables of the strategy
+ * script. The sets of values to simulate are all combinations of the
+ * parameter values (grid search) or a random sample of them. With
+ * walk-forward windows the parameters are optimized on the in-sample period
+ * of each window and the best set is then simulated on the following
+ * out-of-sample period.</p>
+ *
+ * <p>The history of the instruments is loaded once and shared read-only by
+ * all runs, which are executed concurrently.</p>
+ *
+ * @since 1.0
+ */
+public class Optimizer {
+
+    public enum Method {
+        GRID,
+        RANDOM,
+    }
+
+    public enum Metric {
+        NET_PROFIT,
+        MAX_DRAWDOWN,
+        PROFIT_DRAWDOWN_RATIO,
+    }
+
+    private final IRepositoryService repositoryService;
+    private final IScriptStrategy strategy;
+    private final Date begin;
+    private final Date end;
+
+    private final Map<String, Object[]> parameters = new LinkedHashMap<String, Object[]>();
+    private Method method = Method.GRID;
+    private Metric metric = Metric.NET_PROFIT;
+    private int randomRuns = 100;
+    private long randomSeed = System.currentTimeMillis();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int walkForwardWindows;
+    private double inSampleRatio = 0.75;
+
+    /**
+     * Strategy with a set of parameters.
+     */
+    private static class ParameterizedStrategy implements IScriptStrategy {
+
+        private final IScriptStrategy strategy;
+        private final StrategyParameters parameters;
+
+        public ParameterizedStrategy(IScriptStrategy strategy, StrategyParameters parameters) {
+            this.strategy = strategy;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public String getName() {
+            return strategy.getName();
+        }
+
+        @Override
+        public ISecurity[] getInstruments() {
+            return strategy.getInstruments();
+        }
+
+        @Override
+        public TimeSpan[] getBarsTimeSpan() {
+            return strategy.getBarsTimeSpan();
+        }
+
+        @Override
+        public String getLanguage() {
+            return strategy.getLanguage();
+        }
+
+        @Override
+        public String getText() {
+            return strategy.getText();
+        }
+
+        @Override
+        public IScript[] getIncludes() {
+            return strategy.getIncludes();
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Object getAdapter(Class adapter) {
+            if (adapter.isAssignableFrom(StrategyParameters.class)) {
+                return parameters;
+            }
+            if (adapter.isAssignableFrom(getClass())) {
+                return this;
+            }
+            if (adapter.isAssignableFrom(PropertyChangeSupport.class)) {
+                return null;
+            }
+            return strategy.getAdapter(adapter);
+        }
+    }
+
+    private final Comparator<OptimizationResult> comparator = new Comparator<OptimizationResult>() {
+
+        @Override
+        public int compare(OptimizationResult o1, OptimizationResult o2) {
+            return Double.compare(o2.getValue(metric), o1.getValue(metric));
+        }
+    };
+
+    public Optimizer(IRepositoryService repositoryService, IScriptStrategy strategy, Date begin, Date end) {
+        this.repositoryService = repositoryService;
+        this.strategy = strategy;
+        this.begin = begin;
+        this.end = end;
+    }
+
+    /**
+     * Adds a parameter with the given values.
+     *
+     * @param name the name of the script variable.
+     * @param values the values to simulate.
+     */
+    public void addParameter(String name, Object[] values) {
+        parameters.put(name, values);
+    }
+
+    /**
+     * Adds a numeric parameter with the values from <code>from</code> to
+     * <code>to</code>, inclusive, in increments of <code>step</code>.
+     *
+     * @param name the name of the script variable.
+     * @param from the first value.
+     * @param to the last value.
+     * @param step the increment.
+     */
+    public void addParameter(String name, double from, double to, double step) {
+        if (step <= 0.0) {
+            throw new IllegalArgumentException("Invalid step " + step); //$NON-NLS-1$
+        }
+        List<Object> values = new ArrayList<Object>();
+        for (int i = 0; from + i * step <= to + step / 1000.0; i++) {
+            values.add(from + i * step);
+        }
+        parameters.put(name, values.toArray());
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public void setMethod(Method method) {
+        this.method = method;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public void setMetric(Metric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Sets the number of parameter sets simulated by the random search.
+     *
+     * @param randomRuns the number of runs.
+     */
+    public void setRandomRuns(int randomRuns) {
+        this.randomRuns = randomRuns;
+    }
+
+    public void setRandomSeed(long randomSeed) {
+        this.randomSeed = randomSeed;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Enables the walk-forward optimization.
+     *
+     * <p>The simulation period is divided in overlapping windows, each made of
+     * an in-sample period followed by an out-of-sample period. The
+     * out-of-sample periods of consecutive windows are adjacent.</p>
+     *
+     * @param windows the number of windows, 0 to disable the walk-forward optimization.
+     * @param inSampleRatio the fraction of each window used as in-sample period.
+     */
+    public void setWalkForward(int windows, double inSampleRatio) {
+        if (inSampleRatio <= 0.0 || inSampleRatio >= 1.0) {
+            throw new IllegalArgumentException("Invalid in-sample ratio " + inSampleRatio); //$NON-NLS-1$
+        }
+        this.walkForwardWindows = windows;
+        this.inSampleRatio = inSampleRatio;
+    }
+
+    /**
+     * Returns the parameter sets to simulate.
+     *
+     * @return the parameter sets.
+     */
+    public List<StrategyParameters> getParameterSets() {
+        String[] names = parameters.keySet().toArray(new String[parameters.size()]);
+        Object[][] values = parameters.values().toArray(new Object[parameters.size()][]);
+
+        int total = 1;
+        for (int i = 0; i < values.length; i++) {
+            total = values[i].length != 0 && total > Integer.MAX_VALUE / values[i].length ? Integer.MAX_VALUE : total * values[i].length;
+        }
+
+        List<StrategyParameters> result = new ArrayList<StrategyParameters>();
+        if (total == 0) {
+            return result;
+        }
+
+        if (method == Method.RANDOM && randomRuns < total) {
+            Random random = new Random(randomSeed);
+            Set<StrategyParameters> set = new LinkedHashSet<StrategyParameters>();
+            while (set.size() < randomRuns) {
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                for (int i = 0; i < names.length; i++) {
+                    map.put(names[i], values[i][random.nextInt(values[i].length)]);
+                }
+                set.add(new StrategyParameters(map));
+            }
+            result.addAll(set);
+        }
+        else {
+            int[] index = new int[names.length];
+            for (int n = 0; n < total; n++) {
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                for (int i = 0; i < names.length; i++) {
+                    map.put(names[i], values[i][index[i]]);
+                }
+                result.add(new StrategyParameters(map));
+
+                for (int i = names.length - 1; i >= 0; i--) {
+                    if (++index[i] < values[i].length) {
+                        break;
+                    }
+                    index[i] = 0;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the walk-forward windows as arrays of three dates: the
+     * in-sample begin, the in-sample end that is also the out-of-sample begin,
+     * and the out-of-sample end.
+     *
+     * @return the windows, or an empty array if walk-forward is disabled.
+     */
+    Date[][] getWalkForwardWindows() {
+        if (walkForwardWindows <= 0) {
+            return new Date[0][];
+        }
+
+        double total = end.getTime() - begin.getTime();
+        double length = total / (1.0 + (walkForwardWindows - 1) * (1.0 - inSampleRatio));
+        double step = length * (1.0 - inSampleRatio);
+
+        Date[][] result = new Date[walkForwardWindows][];
+        for (int i = 0; i < walkForwardWindows; i++) {
+            long windowBegin = begin.getTime() + Math.round(i * step);
+            long windowEnd = i == walkForwardWindows - 1 ? end.getTime() : begin.getTime() + Math.round(i * step + length);
+            result[i] = new Date[] {
+                new Date(windowBegin),
+                new Date(begin.getTime() + Math.round(i * step + length * inSampleRatio)),
+                new Date(windowEnd),
+            };
+        }
+        return result;
+    }
+
+    /**
+     * Runs the optimization.
+     *
+     * @param monitor the progress monitor.
+     * @return the results ranked by the selected metric or, for walk-forward
+     * optimizations, the best result of each window in window order.
+     * @throws Exception if a simulation fails.
+     */
+    public List<OptimizationResult> run(IProgressMonitor monitor) throws Exception {
+        TimeSpan[] barsTimeSpan = strategy.getBarsTimeSpan();
+        if (barsTimeSpan == null || barsTimeSpan.length == 0) {
+            barsTimeSpan = new TimeSpan[] {
+                TimeSpan.days(1)
+            };
+        }
+
+        List<StrategyParameters> parameterSets = getParameterSets();
+        Date[][] windows = getWalkForwardWindows();
+
+        monitor.beginTask("Optimizing " + strategy.getName(), parameterSets.size() * Math.max(1, windows.length) + windows.length + 1); //$NON-NLS-1$
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Optimizer - " + threadCount.incrementAndGet()); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            HistoryCache historyCache = new HistoryCache(barsTimeSpan);
+            historyCache.load(repositoryService, strategy.getInstruments(), begin, end);
+            monitor.worked(1);
+
+            if (windows.length == 0) {
+                List<OptimizationResult> result = run(executor, historyCache, parameterSets, begin, end, -1, monitor);
+                Collections.sort(result, comparator);
+                return result;
+            }
+
+            List<OptimizationResult> result = new ArrayList<OptimizationResult>();
+            for (int i = 0; i < windows.length && !monitor.isCanceled(); i++) {
+                List<OptimizationResult> inSample = run(executor, historyCache, parameterSets, windows[i][0], windows[i][1], i, monitor);
+                if (inSample.isEmpty()) {
+                    continue;
+                }
+                OptimizationResult best = Collections.min(inSample, comparator);
+
+                SimulationRunner runner = new SimulationRunner(historyCache, new ParameterizedStrategy(strategy, best.getParameters()), new Date(windows[i][1].getTime() + 1), windows[i][2]);
+                runner.runWithProgress(monitor);
+                best.setOutOfSampleReport(runner.getReport());
+                monitor.worked(1);
+
+                result.add(best);
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+            monitor.done();
+        }
+    }
+
+    private List<OptimizationResult> run(ExecutorService executor, final HistoryCache historyCache, List<StrategyParameters> parameterSets, final Date begin, final Date end, final int window, final IProgressMonitor monitor) throws Exception {
+        List<Future<OptimizationResult>> futures = new ArrayList<Future<OptimizationResult>>();
+        for (final StrategyParameters parameters : parameterSets) {
+            futures.add(executor.submit(new Callable<OptimizationResult>() {
+
+                @Override
+                public OptimizationResult call() throws Exception {
+                    if (monitor.isCanceled()) {
+                        return null;
+                    }
+                    SimulationRunner runner = new SimulationRunner(historyCache, new ParameterizedStrategy(strategy, parameters), begin, end);
+                    runner.runWithProgress(monitor);
+
+                    // The bars are the same for all runs, don't keep thousands of copies
+                    SimulationReport report = runner.getReport();
+                    if (report == null) {
+                        return null;
+                    }
+                    report.getBarsData().clear();
+
+                    return new OptimizationResult(parameters, report, window);
+                }
+            }));
+        }
+
+        List<OptimizationResult> result = new ArrayList<OptimizationResult>();
+        for (Future<OptimizationResult> future : futures) {
+            try {
+                OptimizationResult element = future.get();
+                if (element != null) {
+                    result.add(element);
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+            monitor.worked(1);
+        }
+        return result;
+    }
+}
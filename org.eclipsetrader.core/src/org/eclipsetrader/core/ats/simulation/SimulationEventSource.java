@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import org.eclipsetrader.core.instruments.ISecurity;
+
+/**
+ * Source of the market events replayed by a <code>TickSimulationRunner</code>.
+ *
+ * <p>A source exposes one event at a time as a primitive record that is reused
+ * by each call to <code>next()</code>, so the replay doesn't allocate objects
+ * for each event. Events of a source must be in time order, the runner merges
+ * the sources by event time.</p>
+ *
+ * @since 1.0
+ */
+public abstract class SimulationEventSource implements Comparable<SimulationEventSource> {
+
+    public static final int TRADE = 1;
+    public static final int QUOTE = 2;
+    public static final int BAR = 3;
+
+    int ordinal;
+
+    int type;
+    ISecurity security;
+    long time;
+
+    double price;
+    long size;
+
+    double bid;
+    long bidSize;
+    double ask;
+    long askSize;
+
+    long duration;
+    double open;
+    double high;
+    double low;
+    double close;
+    long volume;
+
+    protected SimulationEventSource() {
+    }
+
+    /**
+     * Advances to the next event.
+     *
+     * @return <code>true</code> if an event is available, <code>false</code> at the end of the events.
+     * @throws Exception if an error occurs reading the events.
+     */
+    public abstract boolean next() throws Exception;
+
+    /**
+     * Releases the resources used by the source.
+     */
+    public void close() {
+    }
+
+    /**
+     * Sets the current event to a trade.
+     *
+     * @param security the traded security.
+     * @param time the trade time, in milliseconds.
+     * @param price the trade price.
+     * @param size the traded quantity, or 0 if unknown.
+     */
+    protected void setTrade(ISecurity security, long time, double price, long size) {
+        this.type = TRADE;
+        this.security = security;
+        this.time = time;
+        this.price = price;
+        this.size = size;
+    }
+
+    /**
+     * Sets the current event to a bid/ask quote.
+     *
+     * @param security the quoted security.
+     * @param time the quote time, in milliseconds.
+     * @param bid the bid price, or <code>Double.NaN</code> if not available.
+     * @param bidSize the bid size, or 0 if unknown.
+     * @param ask the ask price, or <code>Double.NaN</code> if not available.
+     * @param askSize the ask size, or 0 if unknown.
+     */
+    protected void setQuote(ISecurity security, long time, double bid, long bidSize, double ask, long askSize) {
+        this.type = QUOTE;
+        this.security = security;
+        this.time = time;
+        this.bid = bid;
+        this.bidSize = bidSize;
+        this.ask = ask;
+        this.askSize = askSize;
+    }
+
+    /**
+     * Sets the current event to a price bar.
+     *
+     * @param security the security.
+     * @param time the bar open time, in milliseconds.
+     * @param duration the bar duration, in milliseconds.
+     * @param open the open price.
+     * @param high the highest price.
+     * @param low the lowest price.
+     * @param close the close price.
+     * @param volume the traded volume, or 0 if unknown.
+     */
+    protected void setBar(ISecurity security, long time, long duration, double open, double high, double low, double close, long volume) {
+        this.type = BAR;
+        this.security = security;
+        this.time = time;
+        this.duration = duration;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public ISecurity getSecurity() {
+        return security;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(SimulationEventSource o) {
+        if (time != o.time) {
+            return time < o.time ? -1 : 1;
+        }
+        return ordinal < o.ordinal ? -1 : ordinal > o.ordinal ? 1 : 0;
+    }
+}
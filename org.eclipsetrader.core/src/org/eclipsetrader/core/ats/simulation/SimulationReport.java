@@ -11,8 +11,12 @@
 
 package org.eclipsetrader.core.ats.simulation;
 
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
 
+import org.eclipse.core.runtime.IAdaptable;
 import org.eclipsetrader.core.ats.IStrategy;
 import org.eclipsetrader.core.ats.ITradingSystemContext;
 import org.eclipsetrader.core.ats.Report;
@@ -35,4 +39,56 @@ public class SimulationReport extends Report {
     public Date getEnd() {
         return end;
     }
+
+    /**
+     * Merges the results of simulations run independently on a subset of the
+     * instruments. The equity line is the sum of the equity lines of the
+     * merged reports.
+     *
+     * @param reports the reports to merge.
+     */
+    void merge(List<SimulationReport> reports) {
+        final double[] current = new double[reports.size()];
+        final IAdaptable[][] values = new IAdaptable[reports.size()][];
+        final int[] index = new int[reports.size()];
+
+        PriorityQueue<Integer> queue = new PriorityQueue<Integer>(Math.max(1, reports.size()), new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return getDate(values[o1][index[o1]]).compareTo(getDate(values[o2][index[o2]]));
+            }
+        });
+
+        for (int i = 0; i < reports.size(); i++) {
+            SimulationReport report = reports.get(i);
+            getBarsData().putAll(report.getBarsData());
+            values[i] = report.getEquityData().getValues();
+            if (values[i].length != 0) {
+                queue.add(i);
+            }
+        }
+
+        double total = 0.0;
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            Date date = getDate(values[i][index[i]]);
+            double amount = (Double) values[i][index[i]].getAdapter(Double.class);
+            total += amount - current[i];
+            current[i] = amount;
+
+            index[i]++;
+            if (index[i] < values[i].length) {
+                queue.add(i);
+            }
+
+            if (queue.isEmpty() || getDate(values[queue.peek()][index[queue.peek()]]).after(date)) {
+                addEquityData(date, total);
+            }
+        }
+    }
+
+    private static Date getDate(IAdaptable value) {
+        return (Date) value.getAdapter(Date.class);
+    }
 }
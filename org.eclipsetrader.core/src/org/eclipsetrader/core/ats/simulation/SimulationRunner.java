@@ -11,18 +11,29 @@
 
 package org.eclipsetrader.core.ats.simulation;
 
+import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipsetrader.core.IScript;
 import org.eclipsetrader.core.ats.IScriptStrategy;
 import org.eclipsetrader.core.feed.Bar;
 import org.eclipsetrader.core.feed.BarOpen;
 import org.eclipsetrader.core.feed.IHistory;
 import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.ITrade;
 import org.eclipsetrader.core.feed.PricingEnvironment;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.feed.Trade;
@@ -30,6 +41,16 @@ import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.internal.ats.TradingSystem;
 import org.eclipsetrader.core.repositories.IRepositoryService;
 
+/**
+ * Runs a strategy against the historical data of its instruments.
+ *
+ * <p>By default all instruments are replayed in date order on the calling
+ * thread through a single account. When the parallelism is greater than one,
+ * each instrument is simulated independently on a thread pool with its own
+ * account, broker and pricing environment, and the results are merged into a
+ * combined report. The history of the next instruments is loaded while the
+ * previous ones are running.</p>
+ */
 public class SimulationRunner {
 
     private final IRepositoryService repositoryService;
@@ -37,23 +58,139 @@ public class SimulationRunner {
 
     private Date begin;
     private Date end;
+    private int parallelism = 1;
+    private HistoryCache historyCache;
     private SimulationReport report;
 
-    private class BarData implements Comparable<BarData> {
+    /**
+     * Iterates the bars of an instrument for a given timespan. Cursors are
+     * merged by bar date, the ordinal keeps bars with the same date in the
+     * order the instruments and timespans were loaded.
+     */
+    private static class BarCursor implements Comparable<BarCursor> {
 
-        ISecurity security;
-        TimeSpan timeSpan;
-        IOHLC bar;
+        final ISecurity security;
+        final TimeSpan timeSpan;
+        final IOHLC[] bars;
+        final int ordinal;
+        int index;
 
-        public BarData(ISecurity security, TimeSpan timeSpan, IOHLC bar) {
+        public BarCursor(ISecurity security, TimeSpan timeSpan, IOHLC[] bars, int ordinal) {
             this.security = security;
             this.timeSpan = timeSpan;
-            this.bar = bar;
+            this.bars = bars;
+            this.ordinal = ordinal;
+        }
+
+        IOHLC getBar() {
+            return bars[index];
+        }
+
+        @Override
+        public int compareTo(BarCursor o) {
+            int result = getBar().getDate().compareTo(o.getBar().getDate());
+            if (result == 0) {
+                result = ordinal < o.ordinal ? -1 : ordinal > o.ordinal ? 1 : 0;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Strategy restricted to a single instrument, used to run the instruments
+     * of the simulated strategy independently.
+     */
+    private static class InstrumentStrategy implements IScriptStrategy {
+
+        private final IScriptStrategy strategy;
+        private final ISecurity[] instruments;
+
+        public InstrumentStrategy(IScriptStrategy strategy, ISecurity security) {
+            this.strategy = strategy;
+            this.instruments = new ISecurity[] {
+                security
+            };
+        }
+
+        @Override
+        public String getName() {
+            return strategy.getName();
+        }
+
+        @Override
+        public ISecurity[] getInstruments() {
+            return instruments;
+        }
+
+        @Override
+        public TimeSpan[] getBarsTimeSpan() {
+            return strategy.getBarsTimeSpan();
         }
 
         @Override
-        public int compareTo(BarData o) {
-            return bar.getDate().compareTo(o.bar.getDate());
+        public String getLanguage() {
+            return strategy.getLanguage();
+        }
+
+        @Override
+        public String getText() {
+            return strategy.getText();
+        }
+
+        @Override
+        public IScript[] getIncludes() {
+            return strategy.getIncludes();
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Object getAdapter(Class adapter) {
+            if (adapter.isAssignableFrom(getClass())) {
+                return this;
+            }
+            if (adapter.isAssignableFrom(PropertyChangeSupport.class)) {
+                return null;
+            }
+            return strategy.getAdapter(adapter);
+        }
+    }
+
+    private class Partition implements Callable<SimulationReport> {
+
+        private final ISecurity security;
+        private final IOHLC[][] bars;
+        private final TimeSpan[] barsTimeSpan;
+        private final IProgressMonitor monitor;
+        private final Semaphore semaphore;
+
+        PricingEnvironment pricingEnvironment;
+        Account account;
+
+        public Partition(ISecurity security, TimeSpan[] barsTimeSpan, IOHLC[][] bars, IProgressMonitor monitor, Semaphore semaphore) {
+            this.security = security;
+            this.barsTimeSpan = barsTimeSpan;
+            this.bars = bars;
+            this.monitor = monitor;
+            this.semaphore = semaphore;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public SimulationReport call() throws Exception {
+            try {
+                PriorityQueue<BarCursor> queue = new PriorityQueue<BarCursor>();
+                for (int i = 0; i < barsTimeSpan.length; i++) {
+                    addCursor(queue, new BarCursor(security, barsTimeSpan[i], bars[i], i));
+                }
+
+                pricingEnvironment = new PricingEnvironment();
+                account = new Account();
+                return run(new InstrumentStrategy(strategy, security), pricingEnvironment, account, queue, monitor);
+            } finally {
+                semaphore.release();
+            }
         }
     }
 
@@ -64,6 +201,34 @@ public class SimulationRunner {
         this.end = end;
     }
 
+    /**
+     * Creates a runner that reads the bars from a cache instead of the repository.
+     */
+    SimulationRunner(HistoryCache historyCache, IScriptStrategy strategy, Date begin, Date end) {
+        this.repositoryService = null;
+        this.historyCache = historyCache;
+        this.strategy = strategy;
+        this.begin = begin;
+        this.end = end;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads used to run the simulation.
+     *
+     * <p>With a value greater than one the instruments are simulated
+     * independently, each with its own account, so the strategy can't
+     * allocate capital across instruments.</p>
+     *
+     * @param parallelism the number of threads, 1 to run all instruments on the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     public void runWithProgress(IProgressMonitor monitor) throws Exception {
         TimeSpan[] barsTimeSpan = strategy.getBarsTimeSpan();
         if (barsTimeSpan == null || barsTimeSpan.length == 0) {
@@ -72,45 +237,149 @@ public class SimulationRunner {
             };
         }
 
-        List<BarData> dataSet = new ArrayList<BarData>();
+        if (parallelism > 1 && strategy.getInstruments().length > 1) {
+            runParallel(barsTimeSpan, monitor);
+        }
+        else {
+            runSerial(barsTimeSpan, monitor);
+        }
+    }
+
+    private void runSerial(TimeSpan[] barsTimeSpan, IProgressMonitor monitor) throws Exception {
+        PriorityQueue<BarCursor> queue = new PriorityQueue<BarCursor>();
         for (ISecurity security : strategy.getInstruments()) {
             if (monitor.isCanceled()) {
                 return;
             }
-            IHistory history = repositoryService.getHistoryFor(security);
-            for (TimeSpan timeSpan : barsTimeSpan) {
-                IHistory subHistory = history.getSubset(begin, end, timeSpan);
-                for (IOHLC ohlc : subHistory.getOHLC()) {
-                    dataSet.add(new BarData(security, timeSpan, ohlc));
+            IOHLC[][] bars = loadHistory(security, barsTimeSpan);
+            for (int i = 0; i < barsTimeSpan.length; i++) {
+                addCursor(queue, new BarCursor(security, barsTimeSpan[i], bars[i], queue.size()));
+            }
+        }
+
+        report = run(strategy, new PricingEnvironment(), new Account(), queue, monitor);
+    }
+
+    private void runParallel(TimeSpan[] barsTimeSpan, IProgressMonitor monitor) throws Exception {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Simulation Runner - " + threadCount.incrementAndGet()); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // Limits the histories loaded in memory and not yet simulated
+        Semaphore semaphore = new Semaphore(parallelism * 2);
+
+        List<Partition> partitions = new ArrayList<Partition>();
+        List<Future<SimulationReport>> futures = new ArrayList<Future<SimulationReport>>();
+        try {
+            for (ISecurity security : strategy.getInstruments()) {
+                semaphore.acquire();
+                if (monitor.isCanceled()) {
+                    semaphore.release();
+                    break;
                 }
+                Partition partition;
+                try {
+                    partition = new Partition(security, barsTimeSpan, loadHistory(security, barsTimeSpan), monitor, semaphore);
+                } catch (RuntimeException e) {
+                    semaphore.release();
+                    throw e;
+                }
+                partitions.add(partition);
+                futures.add(executor.submit(partition));
+            }
+
+            List<SimulationReport> reports = new ArrayList<SimulationReport>();
+            for (Future<SimulationReport> future : futures) {
+                try {
+                    reports.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+
+            PricingEnvironment pricingEnvironment = new PricingEnvironment();
+            Account account = new Account();
+            for (Partition partition : partitions) {
+                account.merge(partition.account);
+                ITrade trade = partition.pricingEnvironment.getTrade(partition.security);
+                if (trade != null) {
+                    pricingEnvironment.setTrade(partition.security, trade);
+                }
+            }
+
+            SimulationContext context = new SimulationContext(new Broker(pricingEnvironment), account, pricingEnvironment);
+            report = new SimulationReport(strategy, context, begin, end);
+            report.merge(reports);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private IOHLC[][] loadHistory(ISecurity security, TimeSpan[] barsTimeSpan) {
+        if (historyCache != null && Arrays.equals(barsTimeSpan, historyCache.getBarsTimeSpan())) {
+            IOHLC[][] result = historyCache.get(security, begin, end);
+            if (result != null) {
+                return result;
             }
         }
-        Collections.sort(dataSet);
 
-        PricingEnvironment pricingEnvironment = new PricingEnvironment();
+        IOHLC[][] result = new IOHLC[barsTimeSpan.length][];
+        IHistory history = repositoryService.getHistoryFor(security);
+        for (int i = 0; i < barsTimeSpan.length; i++) {
+            IHistory subHistory = history.getSubset(begin, end, barsTimeSpan[i]);
+            result[i] = subHistory.getOHLC();
+        }
+        return result;
+    }
+
+    private static void addCursor(PriorityQueue<BarCursor> queue, BarCursor cursor) {
+        if (cursor.bars != null && cursor.index < cursor.bars.length) {
+            queue.add(cursor);
+        }
+    }
+
+    private SimulationReport run(IScriptStrategy strategy, PricingEnvironment pricingEnvironment, Account account, PriorityQueue<BarCursor> queue, IProgressMonitor monitor) throws Exception {
         Broker broker = new Broker(pricingEnvironment);
         broker.connect();
-        Account account = new Account();
 
         SimulationContext context = new SimulationContext(broker, account, pricingEnvironment);
 
-        report = new SimulationReport(strategy, context, begin, end);
+        SimulationReport report = new SimulationReport(strategy, context, begin, end);
 
         TradingSystem tradingSystem = new TradingSystem(strategy);
         tradingSystem.start(context);
 
-        for (Iterator<BarData> iter = dataSet.iterator(); iter.hasNext() && !monitor.isCanceled();) {
-            BarData data = iter.next();
-            pricingEnvironment.setTrade(data.security, new Trade(data.bar.getDate(), data.bar.getOpen(), 0L, 0L));
-            pricingEnvironment.setBarOpen(data.security, new BarOpen(data.bar.getDate(), data.timeSpan, data.bar.getOpen()));
-            pricingEnvironment.setTrade(data.security, new Trade(data.bar.getDate(), data.bar.getClose(), 0L, 0L));
-            pricingEnvironment.setBar(data.security, new Bar(data.bar.getDate(), data.timeSpan, data.bar.getOpen(), data.bar.getHigh(), data.bar.getLow(), data.bar.getClose(), data.bar.getVolume()));
+        while (!queue.isEmpty() && !monitor.isCanceled()) {
+            BarCursor cursor = queue.poll();
+            ISecurity security = cursor.security;
+            TimeSpan timeSpan = cursor.timeSpan;
+            IOHLC bar = cursor.getBar();
+
+            pricingEnvironment.setTrade(security, new Trade(bar.getDate(), bar.getOpen(), 0L, 0L));
+            pricingEnvironment.setBarOpen(security, new BarOpen(bar.getDate(), timeSpan, bar.getOpen()));
+            pricingEnvironment.setTrade(security, new Trade(bar.getDate(), bar.getClose(), 0L, 0L));
+            pricingEnvironment.setBar(security, new Bar(bar.getDate(), timeSpan, bar.getOpen(), bar.getHigh(), bar.getLow(), bar.getClose(), bar.getVolume()));
+
+            cursor.index++;
+            addCursor(queue, cursor);
         }
 
         tradingSystem.stop();
         broker.disconnect();
 
         context.dispose();
+
+        return report;
     }
 
     public SimulationReport getReport() {
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipsetrader.core.feed.IPricingEnvironment;
+import org.eclipsetrader.core.feed.ITrade;
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.trading.IOrder;
+import org.eclipsetrader.core.trading.IOrderSide;
+import org.eclipsetrader.core.trading.IOrderStatus;
+import org.eclipsetrader.core.trading.IOrderType;
+import org.eclipsetrader.core.trading.Order;
+import org.eclipsetrader.core.trading.OrderDelta;
+
+/**
+ * Simulation broker that matches the orders against individual trades, quotes
+ * and intraday bars.
+ *
+ * <p>Orders reach the market after the delay given by the latency model. Market
+ * orders and marketable limit orders are filled at the opposite side of the
+ * quote up to the quoted size, or at the trade price up to the traded size when
+ * no quote is available, so large orders may be partially filled over several
+ * events. Stop and stop-limit orders are triggered when a trade or the opposite
+ * side of the quote reaches the stop price. Orders filled at market are adjusted
+ * by the slippage model.</p>
+ *
+ * <p>Bars are matched as a path from the open to the close through the low and
+ * high, in the order that gives the shortest path, with the volume split evenly
+ * among the segments. Resting orders crossed by a segment are filled at their
+ * limit or stop price.</p>
+ *
+ * <p>The broker isn't connected to the pricing environment, the matching methods
+ * are called directly by the <code>TickSimulationRunner</code>.</p>
+ *
+ * @since 1.0
+ */
+public class TickBroker extends Broker {
+
+    private final ILatencyModel latencyModel;
+    private final ISlippageModel slippageModel;
+
+    private final Map<ISecurity, Instrument> instruments = new HashMap<ISecurity, Instrument>();
+    private long time;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    private static class Instrument {
+
+        double bid = Double.NaN;
+        double ask = Double.NaN;
+        final List<PendingOrder> orders = new ArrayList<PendingOrder>();
+    }
+
+    private static class PendingOrder {
+
+        final OrderMonitor monitor;
+        final boolean buy;
+        final long quantity;
+        final double limitPrice;
+        final double stopPrice;
+        final long activeTime;
+
+        boolean triggered;
+        long filled;
+        double amount;
+
+        PendingOrder(OrderMonitor monitor, long activeTime) {
+            IOrder order = monitor.getOrder();
+            this.monitor = monitor;
+            this.buy = order.getSide() == IOrderSide.Buy || order.getSide() == IOrderSide.BuyCover;
+            this.quantity = order.getQuantity() != null ? order.getQuantity() : 0L;
+            this.activeTime = activeTime;
+
+            double limitPrice = Double.NaN;
+            double stopPrice = Double.NaN;
+            if (order.getType() == IOrderType.Limit) {
+                limitPrice = order.getPrice() != null ? order.getPrice() : Double.NaN;
+            }
+            else if (order.getType() == IOrderType.Stop) {
+                Double stop = order.getStopPrice() != null ? order.getStopPrice() : order.getPrice();
+                stopPrice = stop != null ? stop : Double.NaN;
+            }
+            else if (order.getType() == IOrderType.StopLimit) {
+                limitPrice = order.getPrice() != null ? order.getPrice() : Double.NaN;
+                stopPrice = order.getStopPrice() != null ? order.getStopPrice() : Double.NaN;
+            }
+            this.limitPrice = limitPrice;
+            this.stopPrice = stopPrice;
+            this.triggered = Double.isNaN(stopPrice);
+        }
+
+        boolean isPending() {
+            IOrderStatus status = monitor.getStatus();
+            return filled < quantity && (status == IOrderStatus.PendingNew || status == IOrderStatus.Partial);
+        }
+    }
+
+    public TickBroker(IPricingEnvironment pricingEnvironment) {
+        this(pricingEnvironment, new FixedLatencyModel(0L), new FixedSlippageModel(0.0));
+    }
+
+    public TickBroker(IPricingEnvironment pricingEnvironment, ILatencyModel latencyModel, ISlippageModel slippageModel) {
+        super(pricingEnvironment);
+        this.latencyModel = latencyModel;
+        this.slippageModel = slippageModel;
+    }
+
+    public ILatencyModel getLatencyModel() {
+        return latencyModel;
+    }
+
+    public ISlippageModel getSlippageModel() {
+        return slippageModel;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.Broker#connect()
+     */
+    @Override
+    public void connect() {
+        // The market events are delivered by the simulation runner
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.Broker#disconnect()
+     */
+    @Override
+    public void disconnect() {
+    }
+
+    /**
+     * Returns the current simulated time.
+     *
+     * @return the time of the last matched event, in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Sets the current simulated time, used as the submission time of the orders.
+     *
+     * @param time the time, in milliseconds.
+     */
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.Broker#orderSubmitted(org.eclipsetrader.core.ats.simulation.OrderMonitor)
+     */
+    @Override
+    protected void orderSubmitted(OrderMonitor monitor) {
+        ISecurity security = monitor.getOrder().getSecurity();
+        Instrument instrument = instruments.get(security);
+        if (instrument == null) {
+            instrument = new Instrument();
+            instruments.put(security, instrument);
+        }
+        instrument.orders.add(new PendingOrder(monitor, time + latencyModel.getDelay(monitor.getOrder(), time)));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.Broker#orderCanceled(org.eclipsetrader.core.ats.simulation.OrderMonitor)
+     */
+    @Override
+    protected void orderCanceled(OrderMonitor monitor) {
+        Long filledQuantity = monitor.getFilledQuantity();
+        if (filledQuantity != null && filledQuantity > 0 && filledQuantity < monitor.getOrder().getQuantity()) {
+            Account account = (Account) monitor.getOrder().getAccount();
+            if (account != null) {
+                account.processCompletedOrder(monitor);
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.Broker#processTrade(org.eclipsetrader.core.instruments.ISecurity, org.eclipsetrader.core.feed.ITrade)
+     */
+    @Override
+    protected void processTrade(ISecurity security, ITrade trade) {
+        if (trade.getPrice() != null) {
+            long time = trade.getTime() != null ? trade.getTime().getTime() : this.time;
+            matchTrade(security, time, trade.getPrice(), trade.getSize() != null ? trade.getSize() : 0L);
+        }
+    }
+
+    /**
+     * Matches the pending orders against a trade.
+     *
+     * @param security the traded security.
+     * @param time the trade time, in milliseconds.
+     * @param price the trade price.
+     * @param size the traded quantity, or 0 if unknown.
+     */
+    public void matchTrade(ISecurity security, long time, double price, long size) {
+        this.time = time;
+
+        Instrument instrument = instruments.get(security);
+        if (instrument == null || instrument.orders.isEmpty()) {
+            return;
+        }
+
+        List<OrderDelta> deltas = new ArrayList<OrderDelta>();
+        matchPrice(instrument, price, price, price, size > 0 ? size : Long.MAX_VALUE, deltas);
+        complete(instrument, deltas);
+    }
+
+    /**
+     * Updates the quote of a security and matches the pending orders against it.
+     *
+     * @param security the quoted security.
+     * @param time the quote time, in milliseconds.
+     * @param bid the bid price, or <code>Double.NaN</code> if not available.
+     * @param bidSize the bid size, or 0 if unknown.
+     * @param ask the ask price, or <code>Double.NaN</code> if not available.
+     * @param askSize the ask size, or 0 if unknown.
+     */
+    public void matchQuote(ISecurity security, long time, double bid, long bidSize, double ask, long askSize) {
+        this.time = time;
+
+        Instrument instrument = instruments.get(security);
+        if (instrument == null) {
+            instrument = new Instrument();
+            instruments.put(security, instrument);
+        }
+        instrument.bid = bid > 0 ? bid : Double.NaN;
+        instrument.ask = ask > 0 ? ask : Double.NaN;
+        if (instrument.orders.isEmpty()) {
+            return;
+        }
+
+        long availableBid = bidSize > 0 ? bidSize : Long.MAX_VALUE;
+        long availableAsk = askSize > 0 ? askSize : Long.MAX_VALUE;
+
+        List<OrderDelta> deltas = new ArrayList<OrderDelta>();
+        int count = instrument.orders.size();
+        for (int i = 0; i < count; i++) {
+            PendingOrder pending = instrument.orders.get(i);
+            if (pending.activeTime > time || !pending.isPending()) {
+                continue;
+            }
+
+            double price = pending.buy ? instrument.ask : instrument.bid;
+            long available = pending.buy ? availableAsk : availableBid;
+            if (Double.isNaN(price) || available <= 0) {
+                continue;
+            }
+            if (!pending.triggered) {
+                if (pending.buy ? price < pending.stopPrice : price > pending.stopPrice) {
+                    continue;
+                }
+                pending.triggered = true;
+            }
+            if (!Double.isNaN(pending.limitPrice) && (pending.buy ? price > pending.limitPrice : price < pending.limitPrice)) {
+                continue;
+            }
+
+            long quantity = Math.min(pending.quantity - pending.filled, available);
+            if (pending.buy) {
+                availableAsk -= quantity;
+            }
+            else {
+                availableBid -= quantity;
+            }
+            if (Double.isNaN(pending.limitPrice)) {
+                price = slippageModel.getPrice(pending.monitor.getOrder(), price, quantity);
+            }
+            fill(pending, quantity, price, deltas);
+        }
+
+        complete(instrument, deltas);
+    }
+
+    /**
+     * Matches the pending orders against the prices of a bar.
+     *
+     * @param security the security.
+     * @param time the bar open time, in milliseconds.
+     * @param duration the bar duration, in milliseconds.
+     * @param open the open price.
+     * @param high the highest price.
+     * @param low the lowest price.
+     * @param close the close price.
+     * @param volume the traded volume, or 0 if unknown.
+     */
+    public void matchBar(ISecurity security, long time, long duration, double open, double high, double low, double close, long volume) {
+        this.time = time;
+
+        Instrument instrument = instruments.get(security);
+        if (instrument == null || instrument.orders.isEmpty()) {
+            return;
+        }
+
+        long size = volume > 0 ? Math.max(1L, volume / 4) : Long.MAX_VALUE;
+        double first = close >= open ? low : high;
+        double second = close >= open ? high : low;
+
+        List<OrderDelta> deltas = new ArrayList<OrderDelta>();
+        matchPrice(instrument, open, open, open, size, deltas);
+
+        this.time = time + duration / 3;
+        matchPrice(instrument, Math.min(open, first), Math.max(open, first), first, size, deltas);
+
+        this.time = time + duration * 2 / 3;
+        matchPrice(instrument, low, high, second, size, deltas);
+
+        this.time = duration > 0 ? time + duration - 1 : time;
+        matchPrice(instrument, Math.min(second, close), Math.max(second, close), close, size, deltas);
+
+        complete(instrument, deltas);
+    }
+
+    /**
+     * Matches the pending orders against the prices traded between <code>low</code>
+     * and <code>high</code>, the last traded price is <code>price</code>. Orders crossed
+     * by the range are filled at their limit or stop price.
+     */
+    private void matchPrice(Instrument instrument, double low, double high, double price, long available, List<OrderDelta> deltas) {
+        int count = instrument.orders.size();
+        for (int i = 0; i < count && available > 0; i++) {
+            PendingOrder pending = instrument.orders.get(i);
+            if (pending.activeTime > time || !pending.isPending()) {
+                continue;
+            }
+
+            double fillPrice = price;
+            boolean triggered = false;
+            if (!pending.triggered) {
+                if (pending.buy ? high < pending.stopPrice : low > pending.stopPrice) {
+                    continue;
+                }
+                pending.triggered = triggered = true;
+                fillPrice = pending.buy ? Math.max(pending.stopPrice, low) : Math.min(pending.stopPrice, high);
+            }
+            if (!Double.isNaN(pending.limitPrice)) {
+                if (!triggered) {
+                    if (pending.buy ? low > pending.limitPrice : high < pending.limitPrice) {
+                        continue;
+                    }
+                    fillPrice = pending.buy ? Math.min(pending.limitPrice, high) : Math.max(pending.limitPrice, low);
+                }
+                else if (pending.buy ? fillPrice > pending.limitPrice : fillPrice < pending.limitPrice) {
+                    continue;
+                }
+            }
+
+            long quantity = Math.min(pending.quantity - pending.filled, available);
+            available -= quantity;
+            if (Double.isNaN(pending.limitPrice)) {
+                fillPrice = slippageModel.getPrice(pending.monitor.getOrder(), fillPrice, quantity);
+            }
+            fill(pending, quantity, fillPrice, deltas);
+        }
+    }
+
+    private void fill(PendingOrder pending, long quantity, double price, List<OrderDelta> deltas) {
+        OrderMonitor monitor = pending.monitor;
+
+        pending.filled += quantity;
+        pending.amount += quantity * price;
+
+        ((Order) monitor.getOrder()).setDate(new Date(time));
+        monitor.setFilledQuantity(pending.filled);
+        monitor.setAveragePrice(pending.amount / pending.filled);
+        monitor.setStatus(pending.filled >= pending.quantity ? IOrderStatus.Filled : IOrderStatus.Partial);
+
+        if (log.isInfoEnabled()) {
+            StringBuilder sb = new StringBuilder(pending.filled >= pending.quantity ? "Order Filled:" : "Order Partially Filled:");
+            sb.append(" instrument=" + monitor.getOrder().getSecurity().getName());
+            sb.append(", type=" + monitor.getOrder().getType());
+            sb.append(", side=" + monitor.getOrder().getSide());
+            sb.append(", qty=" + monitor.getOrder().getQuantity());
+            sb.append(", fillQty=" + quantity);
+            sb.append(", fillPrice=" + price);
+            sb.append(", avgPrice=" + monitor.getAveragePrice());
+            if (monitor.getOrder().getReference() != null) {
+                sb.append(", reference=" + monitor.getOrder().getReference());
+            }
+            log.info(sb.toString());
+        }
+
+        boolean found = false;
+        for (int i = 0; i < deltas.size() && !found; i++) {
+            found = deltas.get(i).getOrder() == monitor;
+        }
+        if (!found) {
+            deltas.add(new OrderDelta(OrderDelta.KIND_UPDATED, monitor));
+        }
+
+        if (pending.filled >= pending.quantity) {
+            monitor.fireOrderCompletedEvent();
+
+            Account account = (Account) monitor.getOrder().getAccount();
+            if (account != null) {
+                account.processCompletedOrder(monitor);
+            }
+        }
+    }
+
+    private void complete(Instrument instrument, List<OrderDelta> deltas) {
+        List<PendingOrder> orders = instrument.orders;
+        int index = 0;
+        for (int i = 0; i < orders.size(); i++) {
+            PendingOrder pending = orders.get(i);
+            if (pending.isPending()) {
+                orders.set(index++, pending);
+            }
+        }
+        while (orders.size() > index) {
+            orders.remove(orders.size() - 1);
+        }
+
+        if (deltas.size() != 0) {
+            fireUpdateNotifications(deltas.toArray(new OrderDelta[deltas.size()]));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.eclipsetrader.core.feed.TickJournalReader;
+import org.eclipsetrader.core.instruments.ISecurity;
+
+/**
+ * Replays the trades and quotes recorded in a tick journal file as simulation
+ * events.
+ *
+ * <p>The records are decoded directly into the primitive event fields, books and
+ * the other values are skipped without being decoded.</p>
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.feed.TickJournal
+ */
+public class TickJournalEventSource extends SimulationEventSource {
+
+    private final TickJournalReader reader;
+    private final Map<String, ISecurity> securities;
+
+    private ISecurity currentSecurity;
+
+    /**
+     * Creates a source that reads the given journal file.
+     *
+     * @param file the journal file.
+     * @param securities the securities to replay, keyed by their feed symbol.
+     * @throws IOException if the file can't be opened.
+     */
+    public TickJournalEventSource(File file, Map<String, ISecurity> securities) throws IOException {
+        this.reader = new TickJournalReader(file);
+        this.securities = securities;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.SimulationEventSource#next()
+     */
+    @Override
+    public boolean next() throws IOException {
+        for (;;) {
+            if (currentSecurity != null) {
+                int item;
+                while ((item = reader.nextItem()) != TickJournalReader.NONE) {
+                    if (item == TickJournalReader.TRADE) {
+                        if (!Double.isNaN(reader.getPrice())) {
+                            setTrade(currentSecurity, reader.getTime(), reader.getPrice(), reader.getSize());
+                            return true;
+                        }
+                    }
+                    else if (item == TickJournalReader.QUOTE) {
+                        if (!Double.isNaN(reader.getBid()) || !Double.isNaN(reader.getAsk())) {
+                            setQuote(currentSecurity, reader.getTime(), reader.getBid(), reader.getBidSize(), reader.getAsk(), reader.getAskSize());
+                            return true;
+                        }
+                    }
+                }
+            }
+
+            if (!reader.nextRecord()) {
+                return false;
+            }
+            currentSecurity = securities.get(reader.getSymbol());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.simulation.SimulationEventSource#close()
+     */
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.ats.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipsetrader.core.ats.IScriptStrategy;
+import org.eclipsetrader.core.feed.Bar;
+import org.eclipsetrader.core.feed.BarOpen;
+import org.eclipsetrader.core.feed.IHistory;
+import org.eclipsetrader.core.feed.PricingEnvironment;
+import org.eclipsetrader.core.feed.Quote;
+import org.eclipsetrader.core.feed.TickJournal;
+import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.core.feed.Trade;
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.internal.ats.TradingSystem;
+import org.eclipsetrader.core.repositories.IRepositoryService;
+
+/**
+ * Runs a strategy against recorded trades and quotes or intraday bars.
+ *
+ * <p>The events of all sources are merged by time and matched by a
+ * <code>TickBroker</code>, so limit and stop orders are filled at the price and
+ * time the market reached them, with the configured latency and slippage. The
+ * events are read as primitive records and passed to the broker without creating
+ * objects, the strategy receives the trades and quotes and the bars of its
+ * timespans built from them. When no source is added, the bars of the
+ * instruments at the smallest timespan of the strategy are loaded from the
+ * repository.</p>
+ *
+ * <p>Bars are built from the event times and are published when an event of the
+ * same security falls past the bar end, or at the end of the simulation.</p>
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.ats.simulation.SimulationRunner
+ */
+public class TickSimulationRunner {
+
+    private final IRepositoryService repositoryService;
+    private final IScriptStrategy strategy;
+
+    private Date begin;
+    private Date end;
+    private final List<SimulationEventSource> sources = new ArrayList<SimulationEventSource>();
+    private ILatencyModel latencyModel = new FixedLatencyModel(0L);
+    private ISlippageModel slippageModel = new FixedSlippageModel(0.0);
+    private boolean publishTicks = true;
+
+    private long eventCount;
+    private SimulationReport report;
+
+    /**
+     * Builds the bars of a security for a timespan from the replayed events.
+     */
+    private static class BarBuilder {
+
+        final ISecurity security;
+        final TimeSpan timeSpan;
+        final Calendar calendar = Calendar.getInstance();
+
+        long openTime;
+        long closeTime = Long.MIN_VALUE;
+        double open;
+        double high;
+        double low;
+        double close;
+        long volume;
+
+        public BarBuilder(ISecurity security, TimeSpan timeSpan) {
+            this.security = security;
+            this.timeSpan = timeSpan;
+        }
+
+        void roll(PricingEnvironment pricingEnvironment, long time, double price) {
+            if (closeTime != Long.MIN_VALUE && time >= closeTime) {
+                close(pricingEnvironment);
+            }
+            if (closeTime == Long.MIN_VALUE) {
+                calendar.setTimeInMillis(time);
+                calendar.set(Calendar.SECOND, 0);
+                calendar.set(Calendar.MILLISECOND, 0);
+                if (timeSpan.getUnits() == TimeSpan.Units.Minutes) {
+                    int minutes = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+                    minutes -= minutes % timeSpan.getLength();
+                    calendar.set(Calendar.HOUR_OF_DAY, minutes / 60);
+                    calendar.set(Calendar.MINUTE, minutes % 60);
+                    openTime = calendar.getTimeInMillis();
+                    calendar.add(Calendar.MINUTE, timeSpan.getLength());
+                }
+                else {
+                    calendar.set(Calendar.HOUR_OF_DAY, 0);
+                    calendar.set(Calendar.MINUTE, 0);
+                    openTime = calendar.getTimeInMillis();
+                    calendar.add(Calendar.DATE, timeSpan.getLength());
+                }
+                closeTime = calendar.getTimeInMillis();
+
+                open = high = low = close = price;
+                volume = 0L;
+
+                pricingEnvironment.setBarOpen(security, new BarOpen(new Date(openTime), timeSpan, open));
+            }
+        }
+
+        void update(PricingEnvironment pricingEnvironment, double high, double low, double close, long volume, long endTime) {
+            this.high = Math.max(this.high, high);
+            this.low = Math.min(this.low, low);
+            this.close = close;
+            this.volume += volume;
+            if (endTime >= closeTime) {
+                close(pricingEnvironment);
+            }
+        }
+
+        void close(PricingEnvironment pricingEnvironment) {
+            if (closeTime != Long.MIN_VALUE) {
+                closeTime = Long.MIN_VALUE;
+                pricingEnvironment.setBar(security, new Bar(new Date(openTime), timeSpan, open, high, low, close, volume));
+            }
+        }
+    }
+
+    public TickSimulationRunner(IRepositoryService repositoryService, IScriptStrategy strategy, Date begin, Date end) {
+        this.repositoryService = repositoryService;
+        this.strategy = strategy;
+        this.begin = begin;
+        this.end = end;
+    }
+
+    /**
+     * Adds a source of events to replay.
+     *
+     * @param source the source to add.
+     */
+    public void addSource(SimulationEventSource source) {
+        sources.add(source);
+    }
+
+    /**
+     * Adds a tick journal file to replay, the recorded symbols are matched with
+     * the feed symbols of the strategy instruments.
+     *
+     * @param file the journal file.
+     * @throws IOException if the file can't be opened.
+     */
+    public void addJournal(File file) throws IOException {
+        Map<String, ISecurity> securities = new HashMap<String, ISecurity>();
+        for (ISecurity security : strategy.getInstruments()) {
+            if (security.getIdentifier() != null) {
+                securities.put(security.getIdentifier().getSymbol(), security);
+            }
+        }
+        sources.add(new TickJournalEventSource(file, securities));
+    }
+
+    /**
+     * Adds the files of a tick journal recorded between the begin and end dates
+     * of the simulation.
+     *
+     * @param directory the journal directory.
+     * @return the number of files added.
+     * @throws IOException if a file can't be opened.
+     */
+    public int addJournals(File directory) throws IOException {
+        if (begin == null || end == null) {
+            return 0;
+        }
+        File[] files = new TickJournal(directory).getFiles(begin, end);
+        for (int i = 0; i < files.length; i++) {
+            addJournal(files[i]);
+        }
+        return files.length;
+    }
+
+    public ILatencyModel getLatencyModel() {
+        return latencyModel;
+    }
+
+    public void setLatencyModel(ILatencyModel latencyModel) {
+        this.latencyModel = latencyModel;
+    }
+
+    public ISlippageModel getSlippageModel() {
+        return slippageModel;
+    }
+
+    public void setSlippageModel(ISlippageModel slippageModel) {
+        this.slippageModel = slippageModel;
+    }
+
+    public boolean isPublishTicks() {
+        return publishTicks;
+    }
+
+    /**
+     * Sets whether the replayed trades and quotes are delivered to the strategy.
+     *
+     * <p>Strategies that only react to bars can disable it, the orders are still
+     * matched against all events but no objects are created for them.</p>
+     *
+     * @param publishTicks <code>true</code> to deliver the trades and quotes.
+     */
+    public void setPublishTicks(boolean publishTicks) {
+        this.publishTicks = publishTicks;
+    }
+
+    /**
+     * Returns the number of events replayed by the last run.
+     *
+     * @return the number of events.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void runWithProgress(IProgressMonitor monitor) throws Exception {
+        TimeSpan[] barsTimeSpan = strategy.getBarsTimeSpan();
+        if (barsTimeSpan == null || barsTimeSpan.length == 0) {
+            barsTimeSpan = new TimeSpan[] {
+                TimeSpan.days(1)
+            };
+        }
+
+        List<SimulationEventSource> list = new ArrayList<SimulationEventSource>(sources);
+        if (list.isEmpty() && repositoryService != null) {
+            TimeSpan timeSpan = barsTimeSpan[0];
+            for (int i = 1; i < barsTimeSpan.length; i++) {
+                if (barsTimeSpan[i].lowerThan(timeSpan)) {
+                    timeSpan = barsTimeSpan[i];
+                }
+            }
+            for (ISecurity security : strategy.getInstruments()) {
+                IHistory history = repositoryService.getHistoryFor(security);
+                list.add(new BarEventSource(security, timeSpan, history.getSubset(begin, end, timeSpan).getOHLC()));
+            }
+        }
+
+        Map<ISecurity, BarBuilder[]> builders = new HashMap<ISecurity, BarBuilder[]>();
+        for (ISecurity security : strategy.getInstruments()) {
+            List<BarBuilder> l = new ArrayList<BarBuilder>();
+            for (TimeSpan timeSpan : barsTimeSpan) {
+                if (timeSpan.getUnits() == TimeSpan.Units.Minutes || timeSpan.getUnits() == TimeSpan.Units.Days) {
+                    l.add(new BarBuilder(security, timeSpan));
+                }
+            }
+            builders.put(security, l.toArray(new BarBuilder[l.size()]));
+        }
+
+        PricingEnvironment pricingEnvironment = new PricingEnvironment();
+        Account account = new Account();
+
+        PriorityQueue<SimulationEventSource> queue = new PriorityQueue<SimulationEventSource>(Math.max(1, list.size()));
+        try {
+            for (int i = 0; i < list.size(); i++) {
+                SimulationEventSource source = list.get(i);
+                source.ordinal = i;
+                advance(queue, source);
+            }
+            report = run(pricingEnvironment, account, queue, builders, monitor);
+        } finally {
+            for (SimulationEventSource source : queue) {
+                source.close();
+            }
+        }
+    }
+
+    private void advance(PriorityQueue<SimulationEventSource> queue, SimulationEventSource source) throws Exception {
+        long beginTime = begin != null ? begin.getTime() : Long.MIN_VALUE;
+        long endTime = end != null ? end.getTime() : Long.MAX_VALUE;
+        while (source.next()) {
+            if (source.time < beginTime) {
+                continue;
+            }
+            if (source.time <= endTime) {
+                queue.add(source);
+                return;
+            }
+            break;
+        }
+        source.close();
+    }
+
+    private SimulationReport run(PricingEnvironment pricingEnvironment, Account account, PriorityQueue<SimulationEventSource> queue, Map<ISecurity, BarBuilder[]> builders, IProgressMonitor monitor) throws Exception {
+        TickBroker broker = new TickBroker(pricingEnvironment, latencyModel, slippageModel);
+        broker.connect();
+
+        SimulationContext context = new SimulationContext(broker, account, pricingEnvironment);
+
+        SimulationReport report = new SimulationReport(strategy, context, begin, end);
+
+        TradingSystem tradingSystem = new TradingSystem(strategy);
+        tradingSystem.start(context);
+
+        eventCount = 0;
+        while (!queue.isEmpty() && !monitor.isCanceled()) {
+            SimulationEventSource source = queue.poll();
+            ISecurity security = source.security;
+            BarBuilder[] bars = builders.get(security);
+
+            switch (source.type) {
+                case SimulationEventSource.TRADE:
+                    if (bars != null) {
+                        for (int i = 0; i < bars.length; i++) {
+                            bars[i].roll(pricingEnvironment, source.time, source.price);
+                        }
+                    }
+                    broker.matchTrade(security, source.time, source.price, source.size);
+                    if (publishTicks) {
+                        pricingEnvironment.setTrade(security, new Trade(new Date(source.time), source.price, source.size != 0 ? source.size : null, null));
+                    }
+                    if (bars != null) {
+                        for (int i = 0; i < bars.length; i++) {
+                            bars[i].update(pricingEnvironment, source.price, source.price, source.price, source.size, source.time);
+                        }
+                    }
+                    break;
+
+                case SimulationEventSource.QUOTE:
+                    broker.matchQuote(security, source.time, source.bid, source.bidSize, source.ask, source.askSize);
+                    if (publishTicks) {
+                        Double bid = !Double.isNaN(source.bid) ? source.bid : null;
+                        Double ask = !Double.isNaN(source.ask) ? source.ask : null;
+                        pricingEnvironment.setQuote(security, new Quote(bid, ask, source.bidSize != 0 ? source.bidSize : null, source.askSize != 0 ? source.askSize : null));
+                    }
+                    break;
+
+                case SimulationEventSource.BAR:
+                    if (bars != null) {
+                        for (int i = 0; i < bars.length; i++) {
+                            bars[i].roll(pricingEnvironment, source.time, source.open);
+                        }
+                    }
+                    broker.matchBar(security, source.time, source.duration, source.open, source.high, source.low, source.close, source.volume);
+                    if (publishTicks) {
+                        pricingEnvironment.setTrade(security, new Trade(new Date(source.time), source.close, null, source.volume != 0 ? source.volume : null));
+                    }
+                    if (bars != null) {
+                        for (int i = 0; i < bars.length; i++) {
+                            bars[i].update(pricingEnvironment, source.high, source.low, source.close, source.volume, source.time + source.duration);
+                        }
+                    }
+                    break;
+            }
+
+            eventCount++;
+            advance(queue, source);
+        }
+
+        for (BarBuilder[] bars : builders.values()) {
+            for (int i = 0; i < bars.length; i++) {
+                bars[i].close(pricingEnvironment);
+            }
+        }
+
+        tradingSystem.stop();
+        broker.disconnect();
+
+        context.dispose();
+
+        return report;
+    }
+
+    public SimulationReport getReport() {
+        return report;
+    }
+}
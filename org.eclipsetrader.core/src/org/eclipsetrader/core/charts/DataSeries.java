@@ -12,6 +12,7 @@
 package org.eclipsetrader.core.charts;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -38,6 +39,9 @@ public class DataSeries implements IDataSeries {
     private boolean highestOverride = false;
     private boolean lowestOverride = false;
 
+    private long[] timeIndex;
+    private boolean timeIndexChecked;
+
     private class RangeVisitor implements IDataSeriesVisitor {
 
         private Double lowestValue;
@@ -207,6 +211,16 @@ public class DataSeries implements IDataSeries {
         Date firstValue = first != null ? (Date) first.getAdapter(Date.class) : null;
         Date lastValue = last != null ? (Date) last.getAdapter(Date.class) : null;
 
+        long[] time = getTimeIndex();
+        if (time != null) {
+            int fromIndex = firstValue != null ? indexOf(time, firstValue.getTime()) : 0;
+            int toIndex = lastValue != null ? indexOf(time, lastValue.getTime() + 1) : time.length;
+            if (fromIndex >= toIndex) {
+                return new IAdaptable[0];
+            }
+            return Arrays.copyOfRange(values, fromIndex, toIndex);
+        }
+
         List<IAdaptable> list = new ArrayList<IAdaptable>(values.length);
         for (int i = 0; i < values.length; i++) {
             Date date = (Date) values[i].getAdapter(Date.class);
@@ -218,6 +232,44 @@ public class DataSeries implements IDataSeries {
         return list.toArray(new IAdaptable[list.size()]);
     }
 
+    /**
+     * Returns the dates of the values in milliseconds, or <code>null</code> if
+     * the values are not sorted by date and can't be searched.
+     *
+     * @return the time index.
+     */
+    private long[] getTimeIndex() {
+        if (!timeIndexChecked) {
+            long[] time = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                Date date = (Date) values[i].getAdapter(Date.class);
+                if (date == null || i != 0 && date.getTime() < time[i - 1]) {
+                    time = null;
+                    break;
+                }
+                time[i] = date.getTime();
+            }
+            timeIndex = time;
+            timeIndexChecked = true;
+        }
+        return timeIndex;
+    }
+
+    private static int indexOf(long[] time, long value) {
+        int from = 0;
+        int to = time.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (time[mid] < value) {
+                from = mid + 1;
+            }
+            else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
     /* (non-Javadoc)
      * @see org.eclipsetrader.core.charts.IDataSeries#cross(org.eclipsetrader.core.charts.IDataSeries, org.eclipse.core.runtime.IAdaptable)
      */
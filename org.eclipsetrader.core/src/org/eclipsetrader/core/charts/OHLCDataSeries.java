@@ -14,6 +14,7 @@ package org.eclipsetrader.core.charts;
 import java.util.Date;
 
 import org.eclipse.core.runtime.IAdaptable;
+import org.eclipsetrader.core.feed.IBarSeries;
 import org.eclipsetrader.core.feed.IOHLC;
 import org.eclipsetrader.core.feed.TimeSpan;
 
@@ -26,6 +27,7 @@ import org.eclipsetrader.core.feed.TimeSpan;
 public class OHLCDataSeries extends DataSeries {
 
     private TimeSpan resolution;
+    private IBarSeries barSeries;
 
     private static class OHLCWrapper implements IAdaptable {
 
@@ -69,17 +71,38 @@ public class OHLCDataSeries extends DataSeries {
         this.resolution = resolution;
     }
 
+    public OHLCDataSeries(String name, IBarSeries series, TimeSpan resolution) {
+        super(name, convertValues(series.toOHLC()));
+        this.barSeries = series;
+        this.resolution = resolution;
+    }
+
     protected OHLCDataSeries(String name, IAdaptable[] values, TimeSpan resolution) {
         super(name, values);
         this.resolution = resolution;
     }
 
+    protected OHLCDataSeries(String name, IAdaptable[] values, IBarSeries series, TimeSpan resolution) {
+        super(name, values);
+        this.barSeries = series;
+        this.resolution = resolution;
+    }
+
     /* (non-Javadoc)
      * @see org.eclipsetrader.charts.core.DataSeries#getSeries(org.eclipse.core.runtime.IAdaptable, org.eclipse.core.runtime.IAdaptable)
      */
     @Override
     public IDataSeries getSeries(IAdaptable first, IAdaptable last) {
-        return new OHLCDataSeries(getName(), getSubset(first, last), resolution);
+        IAdaptable[] values = getSubset(first, last);
+        if (barSeries != null) {
+            Date firstDate = first != null ? (Date) first.getAdapter(Date.class) : null;
+            Date lastDate = last != null ? (Date) last.getAdapter(Date.class) : null;
+            IBarSeries subset = barSeries.getSubSeries(firstDate, lastDate);
+            if (subset.size() == values.length) {
+                return new OHLCDataSeries(getName(), values, subset, resolution);
+            }
+        }
+        return new OHLCDataSeries(getName(), values, resolution);
     }
 
     /* (non-Javadoc)
@@ -115,4 +138,13 @@ public class OHLCDataSeries extends DataSeries {
     public TimeSpan getResolution() {
         return resolution;
     }
+
+    /**
+     * Returns the bar series holding the values of this data series.
+     *
+     * @return the bar series, or <code>null</code> if the data series was not created from a bar series.
+     */
+    public IBarSeries getBarSeries() {
+        return barSeries;
+    }
 }
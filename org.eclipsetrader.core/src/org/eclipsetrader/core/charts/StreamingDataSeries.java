@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.charts;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipse.core.runtime.IAdaptable;
+
+/**
+ * Numeric data series that grows by appending values in temporal order.
+ *
+ * <p>Values and dates are stored in primitive arrays, appending a value
+ * updates the first, last, highest and lowest references in constant time.
+ * The <code>IAdaptable</code> wrappers are created only when requested.</p>
+ *
+ * @since 1.0
+ */
+public class StreamingDataSeries implements IDataSeries {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final String name;
+
+    private double[] values;
+    private long[] dates;
+    private int size;
+
+    private int highestIndex = -1;
+    private int lowestIndex = -1;
+
+    private IAdaptable[] adaptables;
+    private IDataSeries[] childrens;
+
+    public StreamingDataSeries(String name) {
+        this(name, INITIAL_CAPACITY);
+    }
+
+    public StreamingDataSeries(String name, int initialCapacity) {
+        this.name = name;
+        this.values = new double[Math.max(initialCapacity, 1)];
+        this.dates = new long[Math.max(initialCapacity, 1)];
+    }
+
+    /**
+     * Appends a value to the series.
+     *
+     * @param date the date of the value, must not be earlier than the date of the last value.
+     * @param value the value.
+     */
+    public void append(Date date, double value) {
+        long time = date.getTime();
+        if (size != 0 && time < dates[size - 1]) {
+            throw new IllegalArgumentException("Value date " + date + " is earlier than the last value date"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        if (size == values.length) {
+            int capacity = size + (size >> 1) + 1;
+            values = Arrays.copyOf(values, capacity);
+            dates = Arrays.copyOf(dates, capacity);
+        }
+        values[size] = value;
+        dates[size] = time;
+
+        if (highestIndex == -1 || value > values[highestIndex]) {
+            highestIndex = size;
+        }
+        if (lowestIndex == -1 || value < values[lowestIndex]) {
+            lowestIndex = size;
+        }
+
+        size++;
+        adaptables = null;
+    }
+
+    /**
+     * Removes all values from the series.
+     */
+    public void clear() {
+        size = 0;
+        highestIndex = -1;
+        lowestIndex = -1;
+        adaptables = null;
+    }
+
+    public double getDouble(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return values[index];
+    }
+
+    public long getTime(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return dates[index];
+    }
+
+    /**
+     * Returns the value at the given position, without building the values array.
+     *
+     * @param index the value position.
+     * @return the value.
+     */
+    public IAdaptable getValue(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (adaptables != null) {
+            return adaptables[index];
+        }
+        return new NumberValue(new Date(dates[index]), values[index]);
+    }
+
+    /**
+     * Returns a copy of the values.
+     *
+     * @return the values array.
+     */
+    public double[] toDoubleArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns the position of the value with the given date.
+     *
+     * @param date the date to search.
+     * @return the value position, or -1 if the series has no value with that date.
+     */
+    public int indexOf(Date date) {
+        int index = indexOf(date.getTime());
+        return index < size && dates[index] == date.getTime() ? index : -1;
+    }
+
+    private int indexOf(long time) {
+        int from = 0;
+        int to = size;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (dates[mid] < time) {
+                from = mid + 1;
+            }
+            else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#getName()
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#getValues()
+     */
+    @Override
+    public IAdaptable[] getValues() {
+        if (adaptables == null) {
+            IAdaptable[] v = new IAdaptable[size];
+            for (int i = 0; i < size; i++) {
+                v[i] = new NumberValue(new Date(dates[i]), values[i]);
+            }
+            adaptables = v;
+        }
+        return adaptables;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#size()
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#cross(org.eclipsetrader.core.charts.IDataSeries, org.eclipse.core.runtime.IAdaptable)
+     */
+    @Override
+    public int cross(IDataSeries series, IAdaptable value) {
+        if (size <= 1 || series.size() <= 1) {
+            return NONE;
+        }
+
+        Date date = (Date) value.getAdapter(Date.class);
+        if (date == null) {
+            return NONE;
+        }
+
+        int index = indexOf(date);
+        if (index <= 0) {
+            return NONE;
+        }
+
+        double ourValue = values[index - 1];
+        double ourNextValue = values[index];
+        double otherValue;
+        double otherNextValue;
+
+        if (series instanceof StreamingDataSeries) {
+            StreamingDataSeries other = (StreamingDataSeries) series;
+            int otherIndex = other.indexOf(date);
+            if (otherIndex <= 0) {
+                return NONE;
+            }
+            otherValue = other.values[otherIndex - 1];
+            otherNextValue = other.values[otherIndex];
+        }
+        else {
+            IAdaptable[] otherValues = series.getValues();
+            int otherIndex = -1;
+            for (int i = 0; i < otherValues.length; i++) {
+                if (date.equals(otherValues[i].getAdapter(Date.class))) {
+                    otherIndex = i;
+                    break;
+                }
+            }
+            if (otherIndex <= 0) {
+                return NONE;
+            }
+            otherValue = ((Number) otherValues[otherIndex - 1].getAdapter(Number.class)).doubleValue();
+            otherNextValue = ((Number) otherValues[otherIndex].getAdapter(Number.class)).doubleValue();
+        }
+
+        if (ourValue < otherValue && ourNextValue > otherNextValue) {
+            return ABOVE;
+        }
+        if (ourValue > otherValue && ourNextValue < otherNextValue) {
+            return BELOW;
+        }
+
+        return NONE;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#getHighest()
+     */
+    @Override
+    public IAdaptable getHighest() {
+        return highestIndex != -1 ? getValue(highestIndex) : null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#getLowest()
+     */
+    @Override
+    public IAdaptable getLowest() {
+        return lowestIndex != -1 ? getValue(lowestIndex) : null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#getFirst()
+     */
+    @Override
+    public IAdaptable getFirst() {
+        return size != 0 ? getValue(0) : null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#getLast()
+     */
+    @Override
+    public IAdaptable getLast() {
+        return size != 0 ? getValue(size - 1) : null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#getSeries(org.eclipse.core.runtime.IAdaptable, org.eclipse.core.runtime.IAdaptable)
+     */
+    @Override
+    public IDataSeries getSeries(IAdaptable first, IAdaptable last) {
+        Date firstValue = first != null ? (Date) first.getAdapter(Date.class) : null;
+        Date lastValue = last != null ? (Date) last.getAdapter(Date.class) : null;
+
+        int fromIndex = firstValue != null ? indexOf(firstValue.getTime()) : 0;
+        int toIndex = lastValue != null ? indexOf(lastValue.getTime() + 1) : size;
+
+        StreamingDataSeries series = new StreamingDataSeries(name, Math.max(toIndex - fromIndex, 1));
+        for (int i = fromIndex; i < toIndex; i++) {
+            series.append(new Date(dates[i]), values[i]);
+        }
+        return series;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#getChildren()
+     */
+    @Override
+    public IDataSeries[] getChildren() {
+        return childrens;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#setChildren(org.eclipsetrader.core.charts.IDataSeries[])
+     */
+    @Override
+    public void setChildren(IDataSeries[] childrens) {
+        this.childrens = childrens;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.charts.IDataSeries#accept(org.eclipsetrader.core.charts.IDataSeriesVisitor)
+     */
+    @Override
+    public void accept(IDataSeriesVisitor visitor) {
+        if (visitor.visit(this)) {
+            if (childrens != null) {
+                for (int i = 0; i < childrens.length; i++) {
+                    childrens[i].accept(visitor);
+                }
+            }
+        }
+    }
+}
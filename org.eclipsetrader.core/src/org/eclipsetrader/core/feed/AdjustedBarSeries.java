@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.Date;
+
+/**
+ * A view of a bar series with prices and volumes adjusted for splits and
+ * dividends.
+ *
+ * <p>Single values are adjusted when read, the values of a whole field are
+ * computed the first time they are requested and kept until the adjustments
+ * change. When new adjustments are set with <code>update</code>, only the
+ * values of the bars dated before the changed actions are computed again.</p>
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.feed.AdjustmentFactors
+ */
+public class AdjustedBarSeries implements IBarSeries {
+
+    private final IBarSeries series;
+    private final AdjustmentFactors factors;
+
+    private final double[][] values = new double[4][];
+    private long[] volume;
+
+    public AdjustedBarSeries(IBarSeries series, AdjustmentFactors factors) {
+        this.series = series;
+        this.factors = factors;
+    }
+
+    /**
+     * Returns the series with the raw values.
+     *
+     * @return the raw series.
+     */
+    public IBarSeries getRawSeries() {
+        return series;
+    }
+
+    public AdjustmentFactors getFactors() {
+        return factors;
+    }
+
+    /**
+     * Returns a series adjusted with the given factors. The adjusted values
+     * already computed for the bars not affected by the changed actions are
+     * reused.
+     *
+     * @param factors the new adjustment factors.
+     * @return the adjusted series, <code>this</code> if the adjustments didn't change.
+     */
+    public AdjustedBarSeries update(AdjustmentFactors factors) {
+        long time = this.factors.getLastDifference(factors);
+        if (time == Long.MIN_VALUE) {
+            return this;
+        }
+
+        AdjustedBarSeries result = new AdjustedBarSeries(series, factors);
+
+        int count = series.indexOf(time);
+        for (int field = 0; field < values.length; field++) {
+            if (values[field] != null) {
+                result.values[field] = values[field].clone();
+                result.adjustPrices(field, result.values[field], count);
+            }
+        }
+        if (volume != null) {
+            result.volume = volume.clone();
+            result.adjustVolumes(result.volume, count);
+        }
+
+        return result;
+    }
+
+    private void adjustPrices(int field, double[] result, int count) {
+        int index = -1;
+        long nextTime = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long time = series.getTime(i);
+            if (index == -1 || time >= nextTime) {
+                index = factors.indexOf(time);
+                nextTime = index < factors.size() ? factors.getTime(index) : Long.MAX_VALUE;
+            }
+            result[i] = factors.adjustPrice(series.getValue(field, i), index);
+        }
+    }
+
+    private void adjustVolumes(long[] result, int count) {
+        int index = -1;
+        long nextTime = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long time = series.getTime(i);
+            if (index == -1 || time >= nextTime) {
+                index = factors.indexOf(time);
+                nextTime = index < factors.size() ? factors.getTime(index) : Long.MAX_VALUE;
+            }
+            result[i] = factors.adjustVolume(series.getVolume(i), index);
+        }
+    }
+
+    private double getPrice(int field, int index) {
+        double[] cache = values[field];
+        if (cache != null) {
+            return cache[index];
+        }
+        return factors.adjustPrice(series.getValue(field, index), factors.indexOf(series.getTime(index)));
+    }
+
+    private double[] getPrices(int field) {
+        if (values[field] == null) {
+            double[] result = new double[series.size()];
+            adjustPrices(field, result, result.length);
+            values[field] = result;
+        }
+        return values[field];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#size()
+     */
+    @Override
+    public int size() {
+        return series.size();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getTime(int)
+     */
+    @Override
+    public long getTime(int index) {
+        return series.getTime(index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getDate(int)
+     */
+    @Override
+    public Date getDate(int index) {
+        return series.getDate(index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getOpen(int)
+     */
+    @Override
+    public double getOpen(int index) {
+        return getPrice(OPEN, index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getHigh(int)
+     */
+    @Override
+    public double getHigh(int index) {
+        return getPrice(HIGH, index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getLow(int)
+     */
+    @Override
+    public double getLow(int index) {
+        return getPrice(LOW, index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getClose(int)
+     */
+    @Override
+    public double getClose(int index) {
+        return getPrice(CLOSE, index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getVolume(int)
+     */
+    @Override
+    public long getVolume(int index) {
+        if (volume != null) {
+            return volume[index];
+        }
+        return factors.adjustVolume(series.getVolume(index), factors.indexOf(series.getTime(index)));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getValue(int, int)
+     */
+    @Override
+    public double getValue(int field, int index) {
+        switch (field) {
+            case OPEN:
+            case HIGH:
+            case LOW:
+            case CLOSE:
+                return getPrice(field, index);
+            case VOLUME: {
+                long value = getVolume(index);
+                return value != NO_VOLUME ? value : 0.0;
+            }
+        }
+        throw new IllegalArgumentException("Invalid field " + field); //$NON-NLS-1$
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getValues(int)
+     */
+    @Override
+    public double[] getValues(int field) {
+        switch (field) {
+            case OPEN:
+            case HIGH:
+            case LOW:
+            case CLOSE:
+                return getPrices(field);
+            case VOLUME: {
+                if (volume == null) {
+                    long[] result = new long[series.size()];
+                    adjustVolumes(result, result.length);
+                    volume = result;
+                }
+                double[] result = new double[volume.length];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = volume[i] != NO_VOLUME ? volume[i] : 0.0;
+                }
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Invalid field " + field); //$NON-NLS-1$
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#indexOf(long)
+     */
+    @Override
+    public int indexOf(long time) {
+        return series.indexOf(time);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getSubSeries(int, int)
+     */
+    @Override
+    public IBarSeries getSubSeries(int fromIndex, int toIndex) {
+        IBarSeries subSeries = series.getSubSeries(fromIndex, toIndex);
+        if (subSeries == series) {
+            return this;
+        }
+        return new AdjustedBarSeries(subSeries, factors);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getSubSeries(java.util.Date, java.util.Date)
+     */
+    @Override
+    public IBarSeries getSubSeries(Date first, Date last) {
+        int fromIndex = first != null ? indexOf(first.getTime()) : 0;
+        int toIndex = last != null ? indexOf(last.getTime() + 1) : size();
+        return getSubSeries(fromIndex, Math.max(fromIndex, toIndex));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getOHLC(int)
+     */
+    @Override
+    public IOHLC getOHLC(int index) {
+        long value = getVolume(index);
+        return new OHLC(getDate(index), toObject(getOpen(index)), toObject(getHigh(index)), toObject(getLow(index)), toObject(getClose(index)), value != NO_VOLUME ? Long.valueOf(value) : null);
+    }
+
+    private Double toObject(double value) {
+        return Double.isNaN(value) ? null : Double.valueOf(value);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#toOHLC()
+     */
+    @Override
+    public IOHLC[] toOHLC() {
+        IOHLC[] result = new IOHLC[size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getOHLC(i);
+        }
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "[adjusted " + series + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.Arrays;
+
+/**
+ * Cumulative price adjustments for splits and dividends.
+ *
+ * <p>The corporate actions are sorted by date and, for each action date,
+ * the product of the split ratios and the sum of the dividends of all actions
+ * at or after that date are computed once, so the adjustment of a bar is
+ * found with a binary search on its time. A bar is adjusted by the actions
+ * dated after the bar: prices are divided by the split factor and reduced
+ * by the dividends, volumes are multiplied by the split factor.</p>
+ *
+ * @since 1.0
+ */
+public class AdjustmentFactors {
+
+    public static final AdjustmentFactors NONE = new AdjustmentFactors(null, null);
+
+    private final long[] time;
+    private final double[] splitFactor;
+    private final double[] dividends;
+
+    public AdjustmentFactors(ISplit[] splits, IDividend[] dividends) {
+        int count = (splits != null ? splits.length : 0) + (dividends != null ? dividends.length : 0);
+
+        long[] actionTime = new long[count];
+        int index = 0;
+        if (splits != null) {
+            for (int i = 0; i < splits.length; i++) {
+                actionTime[index++] = splits[i].getDate().getTime();
+            }
+        }
+        if (dividends != null) {
+            for (int i = 0; i < dividends.length; i++) {
+                actionTime[index++] = dividends[i].getExDate().getTime();
+            }
+        }
+        Arrays.sort(actionTime);
+
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (size == 0 || actionTime[size - 1] != actionTime[i]) {
+                actionTime[size++] = actionTime[i];
+            }
+        }
+        this.time = Arrays.copyOf(actionTime, size);
+
+        double[] ratio = new double[size];
+        Arrays.fill(ratio, 1.0);
+        double[] value = new double[size];
+        if (splits != null) {
+            for (int i = 0; i < splits.length; i++) {
+                int k = Arrays.binarySearch(time, splits[i].getDate().getTime());
+                ratio[k] *= splits[i].getNewQuantity() / splits[i].getOldQuantity();
+            }
+        }
+        if (dividends != null) {
+            for (int i = 0; i < dividends.length; i++) {
+                int k = Arrays.binarySearch(time, dividends[i].getExDate().getTime());
+                value[k] += dividends[i].getValue();
+            }
+        }
+
+        this.splitFactor = new double[size + 1];
+        this.dividends = new double[size + 1];
+        this.splitFactor[size] = 1.0;
+        for (int k = size - 1; k >= 0; k--) {
+            this.splitFactor[k] = this.splitFactor[k + 1] * ratio[k];
+            this.dividends[k] = this.dividends[k + 1] + value[k];
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if there are no corporate actions.
+     *
+     * @return <code>true</code> if prices are not adjusted.
+     */
+    public boolean isEmpty() {
+        return time.length == 0;
+    }
+
+    /**
+     * Returns the number of distinct corporate action dates.
+     *
+     * @return the number of action dates.
+     */
+    public int size() {
+        return time.length;
+    }
+
+    /**
+     * Returns the index of the adjustment that applies to a bar, that is the
+     * index of the first action dated after the bar time.
+     *
+     * @param barTime the bar time in milliseconds.
+     * @return the adjustment index, <code>size()</code> if no action applies to the bar.
+     */
+    public int indexOf(long barTime) {
+        int from = 0;
+        int to = time.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (time[mid] <= barTime) {
+                from = mid + 1;
+            }
+            else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Returns the time of the action at the given index.
+     *
+     * @param index the action index.
+     * @return the action time in milliseconds.
+     */
+    public long getTime(int index) {
+        return time[index];
+    }
+
+    public double getSplitFactor(int index) {
+        return splitFactor[index];
+    }
+
+    public double getDividends(int index) {
+        return dividends[index];
+    }
+
+    /**
+     * Adjusts a price with the adjustment at the given index.
+     *
+     * @param value the raw price.
+     * @param index the adjustment index as returned by <code>indexOf</code>.
+     * @return the adjusted price.
+     */
+    public double adjustPrice(double value, int index) {
+        return value / splitFactor[index] - dividends[index];
+    }
+
+    /**
+     * Adjusts a volume with the adjustment at the given index.
+     *
+     * @param value the raw volume, or <code>IBarSeries.NO_VOLUME</code>.
+     * @param index the adjustment index as returned by <code>indexOf</code>.
+     * @return the adjusted volume.
+     */
+    public long adjustVolume(long value, int index) {
+        return value != IBarSeries.NO_VOLUME ? (long) (value * splitFactor[index]) : value;
+    }
+
+    /**
+     * Compares the adjustments with the given adjustments and returns the
+     * time before which the adjusted bars differ. Bars at or after the returned
+     * time have the same adjusted values with both adjustments.
+     *
+     * @param other the adjustments to compare.
+     * @return the time in milliseconds, or <code>Long.MIN_VALUE</code> if all adjustments are the same.
+     */
+    public long getLastDifference(AdjustmentFactors other) {
+        int i = time.length - 1;
+        int j = other.time.length - 1;
+        while (i >= 0 || j >= 0) {
+            long t = Math.max(i >= 0 ? time[i] : Long.MIN_VALUE, j >= 0 ? other.time[j] : Long.MIN_VALUE);
+            if (i >= 0 && time[i] == t) {
+                i--;
+            }
+            if (j >= 0 && other.time[j] == t) {
+                j--;
+            }
+            if (splitFactor[i + 1] != other.splitFactor[j + 1] || dividends[i + 1] != other.dividends[j + 1]) {
+                return t;
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.core.runtime.ISafeRunnable;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.SafeRunner;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.internal.CoreActivator;
+
+/**
+ * Pricing listener that delivers events to another listener from a dedicated
+ * thread.
+ *
+ * <p>Events are queued in a bounded ring buffer so the thread notifying the
+ * events, usually the feed reader thread, is not slowed down by the listener.
+ * When the buffer is full the configured policy decides whether the notifying
+ * thread waits, the oldest event is dropped, or events of the same security
+ * are merged. Events notified by the listener itself, from the dispatch
+ * thread, never wait, the oldest event is dropped instead.</p>
+ *
+ * @since 1.0
+ */
+public class AsyncPricingListener implements IPricingListener {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public enum Policy {
+
+        /**
+         * Waits for free space in the buffer, no events are lost.
+         */
+        BLOCK,
+
+        /**
+         * Drops the oldest event in the buffer.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Merges the event with the last one queued for the same security, so
+         * only the latest trade, quote, OHL, last close and book are delivered.
+         * Events are merged only when the buffer is full, if no event is queued
+         * for the security, drops the oldest event.
+         */
+        CONFLATE,
+    }
+
+    private static final Class<?>[] CONFLATED_TYPES = new Class<?>[] {
+        ITrade.class, IQuote.class, ITodayOHL.class, ILastClose.class, IBook.class,
+    };
+
+    private final IPricingListener listener;
+    private final Policy policy;
+
+    private final PricingEvent[] events;
+    private final long[] timestamps;
+    private long headSequence;
+    private int count;
+    private final Map<ISecurity, Long> pending = new HashMap<ISecurity, Long>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private boolean disposed;
+
+    private int maxQueueDepth;
+    private long droppedCount;
+    private long conflatedCount;
+    private volatile long deliveredCount;
+    private volatile long lastLag;
+    private volatile long maxLag;
+
+    private final Thread thread;
+
+    private Runnable dispatchRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            for (;;) {
+                PricingEvent event;
+                long timestamp;
+
+                lock.lock();
+                try {
+                    while (count == 0 && !disposed) {
+                        notEmpty.await();
+                    }
+                    if (disposed) {
+                        return;
+                    }
+                    int index = (int) (headSequence % events.length);
+                    event = events[index];
+                    timestamp = timestamps[index];
+                    removeHead();
+                    notFull.signal();
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+
+                long lag = System.currentTimeMillis() - timestamp;
+                lastLag = lag;
+                if (lag > maxLag) {
+                    maxLag = lag;
+                }
+
+                deliver(event);
+                deliveredCount++;
+            }
+        }
+    };
+
+    public AsyncPricingListener(IPricingListener listener) {
+        this(listener, Policy.BLOCK, DEFAULT_CAPACITY);
+    }
+
+    public AsyncPricingListener(IPricingListener listener, Policy policy, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity); //$NON-NLS-1$
+        }
+        this.listener = listener;
+        this.policy = policy;
+        this.events = new PricingEvent[capacity];
+        this.timestamps = new long[capacity];
+
+        thread = new Thread(dispatchRunnable, "Pricing Dispatch - " + listener.getClass().getName()); //$NON-NLS-1$
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the listener receiving the events.
+     *
+     * @return the listener.
+     */
+    public IPricingListener getListener() {
+        return listener;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IPricingListener#pricingUpdate(org.eclipsetrader.core.feed.PricingEvent)
+     */
+    @Override
+    public void pricingUpdate(PricingEvent event) {
+        lock.lock();
+        try {
+            if (disposed) {
+                return;
+            }
+
+            if (count == events.length) {
+                if (policy == Policy.CONFLATE) {
+                    Long sequence = pending.get(event.getSecurity());
+                    if (sequence != null) {
+                        int index = (int) (sequence % events.length);
+                        events[index] = merge(events[index], event);
+                        conflatedCount++;
+                        return;
+                    }
+                }
+                if (policy == Policy.BLOCK && Thread.currentThread() != thread) {
+                    while (count == events.length && !disposed) {
+                        notFull.await();
+                    }
+                    if (disposed) {
+                        return;
+                    }
+                }
+                else {
+                    removeHead();
+                    droppedCount++;
+                }
+            }
+
+            long sequence = headSequence + count;
+            int index = (int) (sequence % events.length);
+            events[index] = event;
+            timestamps[index] = System.currentTimeMillis();
+            count++;
+            if (policy == Policy.CONFLATE) {
+                pending.put(event.getSecurity(), sequence);
+            }
+            if (count > maxQueueDepth) {
+                maxQueueDepth = count;
+            }
+
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeHead() {
+        int index = (int) (headSequence % events.length);
+        if (policy == Policy.CONFLATE) {
+            ISecurity security = events[index].getSecurity();
+            Long sequence = pending.get(security);
+            if (sequence != null && sequence == headSequence) {
+                pending.remove(security);
+            }
+        }
+        events[index] = null;
+        headSequence++;
+        count--;
+    }
+
+    static PricingEvent merge(PricingEvent pendingEvent, PricingEvent event) {
+        List<PricingDelta> list = new ArrayList<PricingDelta>(Arrays.asList(pendingEvent.getDelta()));
+        for (PricingDelta delta : event.getDelta()) {
+            Class<?> type = getConflatedType(delta);
+
+            int index = -1;
+            if (type != null) {
+                for (int i = 0; i < list.size(); i++) {
+                    if (type == getConflatedType(list.get(i))) {
+                        index = i;
+                        break;
+                    }
+                }
+            }
+
+            if (index != -1) {
+                list.set(index, new PricingDelta(list.get(index).getOldValue(), delta.getNewValue()));
+            }
+            else {
+                list.add(delta);
+            }
+        }
+        return new PricingEvent(event.getSecurity(), list.toArray(new PricingDelta[list.size()]));
+    }
+
+    static Class<?> getConflatedType(PricingDelta delta) {
+        Object value = delta.getNewValue() != null ? delta.getNewValue() : delta.getOldValue();
+        if (value != null) {
+            for (Class<?> type : CONFLATED_TYPES) {
+                if (type.isInstance(value)) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void deliver(final PricingEvent event) {
+        SafeRunner.run(new ISafeRunnable() {
+
+            @Override
+            public void run() throws Exception {
+                listener.pricingUpdate(event);
+            }
+
+            @Override
+            public void handleException(Throwable exception) {
+                Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error running pricing environment listener", exception); //$NON-NLS-1$
+                CoreActivator.log(status);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of events waiting to be delivered.
+     *
+     * @return the queue depth.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        lock.lock();
+        try {
+            return maxQueueDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the age, in milliseconds, of the oldest event waiting to be delivered.
+     *
+     * @return the lag, or 0 if the queue is empty.
+     */
+    public long getLag() {
+        lock.lock();
+        try {
+            if (count == 0) {
+                return 0;
+            }
+            return System.currentTimeMillis() - timestamps[(int) (headSequence % events.length)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the time, in milliseconds, the last delivered event waited in the queue.
+     *
+     * @return the lag.
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getConflatedCount() {
+        lock.lock();
+        try {
+            return conflatedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * Stops the dispatch thread and discards the events not yet delivered.
+     */
+    public void dispose() {
+        lock.lock();
+        try {
+            disposed = true;
+            Arrays.fill(events, null);
+            pending.clear();
+            count = 0;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
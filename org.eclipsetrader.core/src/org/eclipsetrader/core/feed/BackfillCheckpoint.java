@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the completed backfill tasks so an interrupted backfill can be
+ * resumed without downloading again the data already saved.
+ *
+ * <p>The identifiers of the completed tasks are appended to a file as the
+ * tasks completes. The first line of the file holds a signature of the
+ * backfill parameters, a checkpoint written with different parameters is
+ * ignored.</p>
+ *
+ * @since 1.0
+ */
+public class BackfillCheckpoint {
+
+    private final File file;
+    private final String signature;
+    private final Set<String> completed = new HashSet<String>();
+
+    private boolean resumed;
+    private PrintWriter writer;
+
+    /**
+     * Constructor.
+     *
+     * @param file the checkpoint file, or <code>null</code> to keep the checkpoint in memory only.
+     * @param signature the signature of the backfill parameters.
+     */
+    public BackfillCheckpoint(File file, String signature) {
+        this.file = file;
+        this.signature = signature;
+    }
+
+    /**
+     * Reads the tasks completed by a previous backfill with the same signature.
+     *
+     * @throws IOException if the checkpoint can't be read.
+     */
+    public synchronized void load() throws IOException {
+        completed.clear();
+        resumed = false;
+        if (file == null || !file.exists()) {
+            return;
+        }
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line = reader.readLine();
+            if (line == null || !line.equals(signature)) {
+                return;
+            }
+            resumed = true;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() != 0) {
+                    completed.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    public synchronized boolean isCompleted(String id) {
+        return completed.contains(id);
+    }
+
+    public synchronized int getCompletedCount() {
+        return completed.size();
+    }
+
+    /**
+     * Records a completed task.
+     *
+     * @param id the task identifier.
+     * @throws IOException if the checkpoint can't be written.
+     */
+    public synchronized void setCompleted(String id) throws IOException {
+        if (!completed.add(id) || file == null) {
+            return;
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new FileWriter(file, resumed));
+            if (!resumed) {
+                writer.println(signature);
+                resumed = true;
+            }
+        }
+        writer.println(id);
+        writer.flush();
+    }
+
+    /**
+     * Closes the checkpoint file.
+     */
+    public synchronized void close() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Deletes the checkpoint, usually after all tasks are completed.
+     */
+    public synchronized void clear() {
+        close();
+        completed.clear();
+        resumed = false;
+        if (file != null && file.exists()) {
+            file.delete();
+        }
+    }
+}
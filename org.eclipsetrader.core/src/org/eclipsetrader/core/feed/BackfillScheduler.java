@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.internal.CoreActivator;
+
+/**
+ * Runs backfill tasks concurrently.
+ *
+ * <p>The downloads are run by a thread pool for each connector, with a
+ * configurable number of threads, and the requests sent to each connector are
+ * spaced by a minimum interval. Failed downloads are retried with an
+ * exponentially increasing delay, a download that completes without data
+ * is not retried. The downloaded data is saved by the thread calling
+ * <code>run</code> while the other downloads continues, and the
+ * completed tasks are recorded in a checkpoint so an interrupted backfill can
+ * be resumed.</p>
+ *
+ * @since 1.0
+ */
+public class BackfillScheduler {
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int DEFAULT_RETRIES = 3;
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+
+    private int defaultConcurrency = DEFAULT_CONCURRENCY;
+    private Map<String, Integer> concurrency = new HashMap<String, Integer>();
+    private long defaultMinimumInterval;
+    private Map<String, Long> minimumInterval = new HashMap<String, Long>();
+    private Map<String, RateLimiter> rateLimiters = new HashMap<String, RateLimiter>();
+
+    private int retries = DEFAULT_RETRIES;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+
+    private BackfillCheckpoint checkpoint;
+
+    public BackfillScheduler() {
+    }
+
+    public void setDefaultConcurrency(int defaultConcurrency) {
+        this.defaultConcurrency = Math.max(1, defaultConcurrency);
+    }
+
+    /**
+     * Sets the maximum number of concurrent downloads from a connector.
+     *
+     * @param connectorId the connector id.
+     * @param value the number of concurrent downloads.
+     */
+    public void setConcurrency(String connectorId, int value) {
+        concurrency.put(connectorId, Math.max(1, value));
+    }
+
+    /**
+     * Sets the maximum number of concurrent downloads from a connector.
+     *
+     * @param connector the connector.
+     * @param value the number of concurrent downloads.
+     */
+    public void setConcurrency(IBackfillConnector connector, int value) {
+        setConcurrency(getKey(connector), value);
+    }
+
+    public int getConcurrency(String connectorId) {
+        Integer value = concurrency.get(connectorId);
+        return value != null ? value : defaultConcurrency;
+    }
+
+    public synchronized void setDefaultMinimumInterval(long defaultMinimumInterval) {
+        this.defaultMinimumInterval = defaultMinimumInterval;
+        rateLimiters.clear();
+    }
+
+    /**
+     * Sets the minimum interval between two requests sent to the host of
+     * a connector.
+     *
+     * @param connectorId the connector id.
+     * @param interval the interval in milliseconds, 0 to disable the rate limit.
+     */
+    public synchronized void setMinimumInterval(String connectorId, long interval) {
+        minimumInterval.put(connectorId, interval);
+        rateLimiters.remove(connectorId);
+    }
+
+    /**
+     * Sets the minimum interval between two requests sent to the host of
+     * a connector.
+     *
+     * @param connector the connector.
+     * @param interval the interval in milliseconds, 0 to disable the rate limit.
+     */
+    public void setMinimumInterval(IBackfillConnector connector, long interval) {
+        setMinimumInterval(getKey(connector), interval);
+    }
+
+    /**
+     * Sets the retry policy of the failed downloads.
+     *
+     * @param retries the maximum number of retries.
+     * @param retryDelay the delay before the first retry in milliseconds, doubled at each retry.
+     */
+    public void setRetryPolicy(int retries, long retryDelay) {
+        this.retries = Math.max(0, retries);
+        this.retryDelay = retryDelay;
+    }
+
+    public BackfillCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(BackfillCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Returns a connector that delegates to the given connector after waiting
+     * for the minimum interval since the previous request to the same connector.
+     *
+     * @param connector the connector.
+     * @return the rate limited connector.
+     */
+    public IBackfillConnector getConnector(IBackfillConnector connector) {
+        if (connector == null || connector instanceof RateLimitedConnector) {
+            return connector;
+        }
+        RateLimiter rateLimiter = getRateLimiter(getKey(connector));
+        return rateLimiter != null ? new RateLimitedConnector(connector, rateLimiter) : connector;
+    }
+
+    synchronized RateLimiter getRateLimiter(String connectorId) {
+        Long value = minimumInterval.get(connectorId);
+        long interval = value != null ? value : defaultMinimumInterval;
+        if (interval <= 0) {
+            return null;
+        }
+        RateLimiter rateLimiter = rateLimiters.get(connectorId);
+        if (rateLimiter == null) {
+            rateLimiter = new RateLimiter(interval);
+            rateLimiters.put(connectorId, rateLimiter);
+        }
+        return rateLimiter;
+    }
+
+    /**
+     * Runs the tasks and waits for their completion. Tasks already recorded
+     * as completed in the checkpoint are skipped.
+     *
+     * @param tasks the tasks to run.
+     * @param monitor the progress monitor, one unit of work is reported for each task.
+     * @return the status of the failed tasks and the statuses returned by the tasks, an empty list if all tasks completes successfully.
+     * @throws InterruptedException if the monitor was cancelled or the thread interrupted.
+     */
+    public List<IStatus> run(List<? extends BackfillTask<?>> tasks, IProgressMonitor monitor) throws InterruptedException {
+        List<IStatus> results = new ArrayList<IStatus>();
+
+        List<BackfillTask<?>> pendingTasks = new ArrayList<BackfillTask<?>>();
+        for (BackfillTask<?> task : tasks) {
+            if (checkpoint != null && checkpoint.isCompleted(task.getId())) {
+                monitor.worked(1);
+                continue;
+            }
+            pendingTasks.add(task);
+        }
+
+        BlockingQueue<Future<Entry<?>>> completionQueue = new LinkedBlockingQueue<Future<Entry<?>>>();
+        Map<String, CompletionService<Entry<?>>> services = new HashMap<String, CompletionService<Entry<?>>>();
+        List<ExecutorService> executors = new ArrayList<ExecutorService>();
+
+        int maxPending = 0;
+        for (BackfillTask<?> task : pendingTasks) {
+            String connectorId = getKey(task.getConnector());
+            if (!services.containsKey(connectorId)) {
+                int threads = getConcurrency(connectorId);
+                ExecutorService executor = createExecutor(connectorId, threads);
+                executors.add(executor);
+                services.put(connectorId, new ExecutorCompletionService<Entry<?>>(executor, completionQueue));
+                maxPending += threads * 2;
+            }
+        }
+
+        try {
+            int submitted = 0;
+            int completed = 0;
+            Iterator<BackfillTask<?>> iter = pendingTasks.iterator();
+            while (completed < submitted || iter.hasNext()) {
+                while (iter.hasNext() && submitted - completed < maxPending) {
+                    BackfillTask<?> task = iter.next();
+                    services.get(getKey(task.getConnector())).submit(createEntry(task, monitor));
+                    submitted++;
+                }
+
+                Future<Entry<?>> future = completionQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (monitor.isCanceled()) {
+                    throw new InterruptedException();
+                }
+                if (future == null) {
+                    continue;
+                }
+                completed++;
+
+                try {
+                    Entry<?> entry = future.get();
+                    monitor.subTask(entry.task.getName().replace("&", "&&")); //$NON-NLS-1$ //$NON-NLS-2$
+                    IStatus status = entry.save();
+                    if (status != null && !status.isOK()) {
+                        results.add(status);
+                    }
+                    else if (checkpoint != null) {
+                        // Tasks not saved are downloaded again when the backfill is resumed
+                        checkpoint.setCompleted(entry.task.getId());
+                    }
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof BackfillException) {
+                        BackfillException cause = (BackfillException) e.getCause();
+                        results.add(new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, cause.task.getErrorMessage(), cause.getCause()));
+                    }
+                    else {
+                        results.add(new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error downloading data", e.getCause())); //$NON-NLS-1$
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    results.add(new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error saving data", e)); //$NON-NLS-1$
+                }
+
+                monitor.worked(1);
+            }
+        } finally {
+            for (ExecutorService executor : executors) {
+                executor.shutdownNow();
+            }
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        }
+
+        return results;
+    }
+
+    static String getKey(IBackfillConnector connector) {
+        return connector.getId() != null ? connector.getId() : connector.getClass().getName();
+    }
+
+    private ExecutorService createExecutor(final String connectorId, int threads) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Backfill " + connectorId + " - " + threadCount.incrementAndGet()); //$NON-NLS-1$ //$NON-NLS-2$
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private <T> Callable<Entry<?>> createEntry(final BackfillTask<T> task, final IProgressMonitor monitor) {
+        return new Callable<Entry<?>>() {
+
+            @Override
+            public Entry<?> call() throws Exception {
+                long delay = retryDelay;
+                for (int attempt = 0;; attempt++) {
+                    try {
+                        return new Entry<T>(task, task.download(BackfillScheduler.this));
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        if (attempt >= retries || monitor.isCanceled()) {
+                            throw new BackfillException(task, e);
+                        }
+                    }
+                    Thread.sleep(delay);
+                    delay *= 2;
+                }
+            }
+        };
+    }
+
+    private static class Entry<T> {
+
+        final BackfillTask<T> task;
+        final T data;
+
+        Entry(BackfillTask<T> task, T data) {
+            this.task = task;
+            this.data = data;
+        }
+
+        IStatus save() throws Exception {
+            return task.save(data);
+        }
+    }
+
+    private static class BackfillException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final BackfillTask<?> task;
+
+        BackfillException(BackfillTask<?> task, Throwable cause) {
+            super(cause);
+            this.task = task;
+        }
+    }
+
+    static class RateLimiter {
+
+        private final long interval;
+        private long nextTime;
+
+        RateLimiter(long interval) {
+            this.interval = interval;
+        }
+
+        void acquire() throws InterruptedException {
+            long time;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                time = Math.max(now, nextTime);
+                nextTime = time + interval;
+                time -= now;
+            }
+            if (time > 0) {
+                Thread.sleep(time);
+            }
+        }
+    }
+
+    private static class RateLimitedConnector implements IBackfillConnector {
+
+        private final IBackfillConnector connector;
+        private final RateLimiter rateLimiter;
+
+        RateLimitedConnector(IBackfillConnector connector, RateLimiter rateLimiter) {
+            this.connector = connector;
+            this.rateLimiter = rateLimiter;
+        }
+
+        private void acquire() {
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.feed.IBackfillConnector#getId()
+         */
+        @Override
+        public String getId() {
+            return connector.getId();
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.feed.IBackfillConnector#getName()
+         */
+        @Override
+        public String getName() {
+            return connector.getName();
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.feed.IBackfillConnector#backfillHistory(org.eclipsetrader.core.feed.IFeedIdentifier, java.util.Date, java.util.Date, org.eclipsetrader.core.feed.TimeSpan)
+         */
+        @Override
+        public IOHLC[] backfillHistory(IFeedIdentifier identifier, Date from, Date to, TimeSpan timeSpan) {
+            acquire();
+            return connector.backfillHistory(identifier, from, to, timeSpan);
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.feed.IBackfillConnector#backfillDividends(org.eclipsetrader.core.feed.IFeedIdentifier, java.util.Date, java.util.Date)
+         */
+        @Override
+        public IDividend[] backfillDividends(IFeedIdentifier identifier, Date from, Date to) {
+            acquire();
+            return connector.backfillDividends(identifier, from, to);
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.feed.IBackfillConnector#backfillSplits(org.eclipsetrader.core.feed.IFeedIdentifier, java.util.Date, java.util.Date)
+         */
+        @Override
+        public ISplit[] backfillSplits(IFeedIdentifier identifier, Date from, Date to) {
+            acquire();
+            return connector.backfillSplits(identifier, from, to);
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.feed.IBackfillConnector#canBackfill(org.eclipsetrader.core.feed.IFeedIdentifier, org.eclipsetrader.core.feed.TimeSpan)
+         */
+        @Override
+        public boolean canBackfill(IFeedIdentifier identifier, TimeSpan timeSpan) {
+            return connector.canBackfill(identifier, timeSpan);
+        }
+    }
+}
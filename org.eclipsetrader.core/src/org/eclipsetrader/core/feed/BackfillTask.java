@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import org.eclipse.core.runtime.IStatus;
+
+/**
+ * A unit of work run by the backfill scheduler, usually the update of the
+ * history of a single security.
+ *
+ * <p>The work is split in two steps: <code>download</code> reads the data
+ * from the connectors and is run concurrently with other tasks, <code>save</code>
+ * writes the downloaded data to the repository and is run by the scheduler
+ * one task at time, in the order the downloads completes.</p>
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.feed.BackfillScheduler
+ */
+public abstract class BackfillTask<T> {
+
+    private final String id;
+    private final String name;
+    private final IBackfillConnector connector;
+
+    /**
+     * Constructor.
+     *
+     * @param id the unique identifier of the task, used to record the completed tasks.
+     * @param name the name of the task displayed to the user.
+     * @param connector the connector used to download the data.
+     */
+    protected BackfillTask(String id, String name, IBackfillConnector connector) {
+        this.id = id;
+        this.name = name;
+        this.connector = connector;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the connector used to download the data. Tasks using the
+     * same connector share its concurrency and rate limits.
+     *
+     * @return the backfill connector.
+     */
+    public IBackfillConnector getConnector() {
+        return connector;
+    }
+
+    /**
+     * Returns the message reported when the download fails after all retries.
+     * Clients may override to provide a localized message.
+     *
+     * @return the message.
+     */
+    public String getErrorMessage() {
+        return "Error downloading data for " + name; //$NON-NLS-1$
+    }
+
+    /**
+     * Downloads the data. This method may be called again if it throws
+     * an exception.
+     *
+     * @param scheduler the scheduler running the task.
+     * @return the downloaded data.
+     * @throws Exception if the data can't be downloaded.
+     */
+    public abstract T download(BackfillScheduler scheduler) throws Exception;
+
+    /**
+     * Saves the downloaded data.
+     *
+     * @param data the data returned by <code>download</code>.
+     * @return the result status, reported to the user if not ok.
+     * @throws Exception if the data can't be saved.
+     */
+    public abstract IStatus save(T data) throws Exception;
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Default implementation of the <code>IBarSeries</code> interface.
+ *
+ * <p>Bars are stored in parallel arrays, one for each field, so a series of
+ * <i>n</i> bars costs about 48 &times; <i>n</i> bytes. Sub series are views
+ * sharing the same arrays.</p>
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.feed.IBarSeries
+ */
+public class BarSeries implements IBarSeries {
+
+    private final long[] time;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final long[] volume;
+
+    private final int offset;
+    private final int size;
+
+    public BarSeries(long[] time, double[] open, double[] high, double[] low, double[] close, long[] volume) {
+        this(time, open, high, low, close, volume, 0, time.length);
+    }
+
+    private BarSeries(long[] time, double[] open, double[] high, double[] low, double[] close, long[] volume, int offset, int size) {
+        this.time = time;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Creates a series from an array of bars. The bars must be sorted by date.
+     *
+     * @param bars the bars.
+     * @return the series.
+     */
+    public static BarSeries valueOf(IOHLC[] bars) {
+        int size = bars != null ? bars.length : 0;
+
+        long[] time = new long[size];
+        double[] open = new double[size];
+        double[] high = new double[size];
+        double[] low = new double[size];
+        double[] close = new double[size];
+        long[] volume = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            time[i] = bars[i].getDate().getTime();
+            open[i] = toPrimitive(bars[i].getOpen());
+            high[i] = toPrimitive(bars[i].getHigh());
+            low[i] = toPrimitive(bars[i].getLow());
+            close[i] = toPrimitive(bars[i].getClose());
+            volume[i] = bars[i].getVolume() != null ? bars[i].getVolume() : NO_VOLUME;
+        }
+
+        return new BarSeries(time, open, high, low, close, volume);
+    }
+
+    private static double toPrimitive(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#size()
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getTime(int)
+     */
+    @Override
+    public long getTime(int index) {
+        return time[position(index)];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getDate(int)
+     */
+    @Override
+    public Date getDate(int index) {
+        return new Date(time[position(index)]);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getOpen(int)
+     */
+    @Override
+    public double getOpen(int index) {
+        return open[position(index)];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getHigh(int)
+     */
+    @Override
+    public double getHigh(int index) {
+        return high[position(index)];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getLow(int)
+     */
+    @Override
+    public double getLow(int index) {
+        return low[position(index)];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getClose(int)
+     */
+    @Override
+    public double getClose(int index) {
+        return close[position(index)];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getVolume(int)
+     */
+    @Override
+    public long getVolume(int index) {
+        return volume[position(index)];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getValue(int, int)
+     */
+    @Override
+    public double getValue(int field, int index) {
+        switch (field) {
+            case OPEN:
+                return getOpen(index);
+            case HIGH:
+                return getHigh(index);
+            case LOW:
+                return getLow(index);
+            case CLOSE:
+                return getClose(index);
+            case VOLUME: {
+                long value = getVolume(index);
+                return value != NO_VOLUME ? value : 0.0;
+            }
+        }
+        throw new IllegalArgumentException("Invalid field " + field); //$NON-NLS-1$
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getValues(int)
+     */
+    @Override
+    public double[] getValues(int field) {
+        switch (field) {
+            case OPEN:
+                return getValues(open);
+            case HIGH:
+                return getValues(high);
+            case LOW:
+                return getValues(low);
+            case CLOSE:
+                return getValues(close);
+            case VOLUME: {
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) {
+                    long value = volume[offset + i];
+                    values[i] = value != NO_VOLUME ? value : 0.0;
+                }
+                return values;
+            }
+        }
+        throw new IllegalArgumentException("Invalid field " + field); //$NON-NLS-1$
+    }
+
+    private double[] getValues(double[] values) {
+        if (offset == 0 && size == values.length) {
+            return values;
+        }
+        double[] result = new double[size];
+        System.arraycopy(values, offset, result, 0, size);
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#indexOf(long)
+     */
+    @Override
+    public int indexOf(long value) {
+        int from = offset;
+        int to = offset + size;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (time[mid] < value) {
+                from = mid + 1;
+            }
+            else {
+                to = mid;
+            }
+        }
+        return from - offset;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getSubSeries(int, int)
+     */
+    @Override
+    public IBarSeries getSubSeries(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("from=" + fromIndex + ", to=" + toIndex + ", size=" + size); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        if (fromIndex == 0 && toIndex == size) {
+            return this;
+        }
+        return new BarSeries(time, open, high, low, close, volume, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getSubSeries(java.util.Date, java.util.Date)
+     */
+    @Override
+    public IBarSeries getSubSeries(Date first, Date last) {
+        int fromIndex = first != null ? indexOf(first.getTime()) : 0;
+        int toIndex = last != null ? indexOf(last.getTime() + 1) : size;
+        return getSubSeries(fromIndex, Math.max(fromIndex, toIndex));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#getOHLC(int)
+     */
+    @Override
+    public IOHLC getOHLC(int index) {
+        int i = position(index);
+        return new OHLC(new Date(time[i]), toObject(open[i]), toObject(high[i]), toObject(low[i]), toObject(close[i]), volume[i] != NO_VOLUME ? Long.valueOf(volume[i]) : null);
+    }
+
+    private Double toObject(double value) {
+        return Double.isNaN(value) ? null : Double.valueOf(value);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBarSeries#toOHLC()
+     */
+    @Override
+    public IOHLC[] toOHLC() {
+        IOHLC[] result = new IOHLC[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = getOHLC(i);
+        }
+        return result;
+    }
+
+    private int position(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return offset + index;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "[size=" + size + (size != 0 ? " first=" + getDate(0) + " last=" + getDate(size - 1) : "") + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof BarSeries)) {
+            return false;
+        }
+        BarSeries other = (BarSeries) obj;
+        if (size != other.size) {
+            return false;
+        }
+        return equals(time, offset, other.time, other.offset, size) && Arrays.equals(getValues(open), other.getValues(other.open)) && Arrays.equals(getValues(high), other.getValues(other.high)) && Arrays.equals(getValues(low), other.getValues(other.low)) && Arrays.equals(getValues(close), other.getValues(other.close)) && equals(volume, offset, other.volume, other.offset, size);
+    }
+
+    private static boolean equals(long[] a, int aOffset, long[] b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        int hash = 3 * size;
+        if (size != 0) {
+            hash += 7 * (int) (getTime(0) ^ getTime(0) >>> 32) + 11 * (int) (getTime(size - 1) ^ getTime(size - 1) >>> 32);
+        }
+        return hash;
+    }
+}
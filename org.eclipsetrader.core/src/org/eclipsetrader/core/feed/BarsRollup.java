@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipsetrader.core.repositories.IStoreProperties;
+
+/**
+ * Aggregates intraday bars into longer time spans.
+ *
+ * <p>The bars of a day are stored with the rollups to the common chart
+ * resolutions, so the histories with these time spans are read directly
+ * instead of being aggregated from the minute bars each time. The rollups
+ * are computed again only for the days with changed bars.</p>
+ *
+ * @since 1.0
+ */
+public class BarsRollup {
+
+    public static final TimeSpan[] TIME_SPANS = new TimeSpan[] {
+        TimeSpan.minutes(5), TimeSpan.minutes(15), TimeSpan.minutes(30), TimeSpan.minutes(60),
+    };
+
+    private static final long MINUTE = 60L * 1000L;
+
+    private BarsRollup() {
+    }
+
+    /**
+     * Aggregates the given bars. Each aggregated bar starts with the first bar
+     * following the previous aggregated bar and includes the bars within the
+     * time span length.
+     *
+     * @param bars the bars to aggregate, sorted by date.
+     * @param timeSpan the time span of the aggregated bars, in minutes.
+     * @return the aggregated bars.
+     */
+    public static IOHLC[] aggregate(IOHLC[] bars, TimeSpan timeSpan) {
+        long length = timeSpan.getLength() * MINUTE;
+
+        IOHLC[] result = new IOHLC[bars.length];
+        int size = 0;
+
+        int index = 0;
+        while (index < bars.length) {
+            long startTime = bars[index].getDate().getTime();
+            long endTime = startTime + length;
+
+            Double open = bars[index].getOpen();
+            double high = bars[index].getHigh();
+            double low = bars[index].getLow();
+            Double close = bars[index].getClose();
+            long volume = bars[index].getVolume();
+            index++;
+
+            while (index < bars.length && bars[index].getDate().getTime() < endTime) {
+                if (open == null) {
+                    open = bars[index].getOpen();
+                }
+                high = Math.max(high, bars[index].getHigh());
+                low = Math.min(low, bars[index].getLow());
+                close = bars[index].getClose();
+                volume += bars[index].getVolume();
+                index++;
+            }
+
+            result[size++] = new OHLC(new Date(startTime), open, high, low, close, volume);
+        }
+
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Sets the rollups of the base bars to the time spans longer than the base
+     * time span.
+     *
+     * @param properties the properties of the day.
+     * @param baseTimeSpan the time span of the base bars.
+     */
+    public static void update(IStoreProperties properties, TimeSpan baseTimeSpan) {
+        IOHLC[] bars = (IOHLC[]) properties.getProperty(baseTimeSpan.toString());
+        if (bars == null || baseTimeSpan.getUnits() != TimeSpan.Units.Minutes) {
+            return;
+        }
+        for (int i = 0; i < TIME_SPANS.length; i++) {
+            if (TIME_SPANS[i].higherThan(baseTimeSpan)) {
+                properties.setProperty(TIME_SPANS[i].toString(), aggregate(bars, TIME_SPANS[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.Serializable;
+
+/**
+ * Change of a single level of an order book.
+ *
+ * <p>Levels are identified by side and index, with the best price at index 0. An
+ * <code>INSERT</code> shifts the levels at and below the given index down by one,
+ * a <code>DELETE</code> shifts them up by one, an <code>UPDATE</code> replaces the
+ * values of the level in place.</p>
+ *
+ * @since 1.0
+ * @see IOrderBook
+ */
+public final class BookDelta implements Serializable {
+
+    private static final long serialVersionUID = 3917276424633711248L;
+
+    public static final int BID = 0;
+    public static final int ASK = 1;
+
+    public static final int INSERT = 0;
+    public static final int UPDATE = 1;
+    public static final int DELETE = 2;
+
+    private final int side;
+    private final int action;
+    private final int level;
+    private final double price;
+    private final long quantity;
+    private final long proposals;
+
+    public BookDelta(int side, int action, int level, double price, long quantity, long proposals) {
+        this.side = side;
+        this.action = action;
+        this.level = level;
+        this.price = price;
+        this.quantity = quantity;
+        this.proposals = proposals;
+    }
+
+    /**
+     * Gets the side of the book, either <code>BID</code> or <code>ASK</code>.
+     *
+     * @return the book side.
+     */
+    public int getSide() {
+        return side;
+    }
+
+    /**
+     * Gets the change applied to the level, one of <code>INSERT</code>,
+     * <code>UPDATE</code> or <code>DELETE</code>.
+     *
+     * @return the action.
+     */
+    public int getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the zero-based index of the level.
+     *
+     * @return the level index.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the price of the level, for deleted levels the price the level had
+     * before it was removed.
+     *
+     * @return the level price.
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Gets the quantity of the level, always 0 for deleted levels.
+     *
+     * @return the level quantity.
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Gets the number of proposals of the level, always 0 for deleted levels.
+     *
+     * @return the number of proposals.
+     */
+    public long getProposals() {
+        return proposals;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(price);
+        return 3 * side + 7 * action + 11 * level + 13 * (int) (bits ^ bits >>> 32) + 17 * (int) (quantity ^ quantity >>> 32) + 19 * (int) (proposals ^ proposals >>> 32);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof BookDelta)) {
+            return false;
+        }
+        BookDelta other = (BookDelta) obj;
+        return side == other.side && action == other.action && level == other.level && Double.doubleToLongBits(price) == Double.doubleToLongBits(other.price) && quantity == other.quantity && proposals == other.proposals;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return (side == BID ? "BID" : "ASK") + " " + (action == INSERT ? "INSERT" : action == UPDATE ? "UPDATE" : "DELETE") + " " + level + " " + price + " " + quantity + " " + proposals; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+/**
+ * Immutable copy of an order book taken at a given time.
+ *
+ * <p>Each snapshot carries the level changes applied to the book since the previous
+ * snapshot, identified by the base version, so consumers that already hold the
+ * previous snapshot can update only the changed levels.</p>
+ *
+ * @since 1.0
+ * @see IOrderBook#getSnapshot()
+ */
+public class BookSnapshot extends Book {
+
+    private static final long serialVersionUID = -2603318406212436751L;
+
+    private long version;
+    private long baseVersion;
+    private BookDelta[] deltas;
+
+    public BookSnapshot(long version, long baseVersion, IBookEntry[] bid, IBookEntry[] ask, BookDelta[] deltas) {
+        super(bid, ask);
+        this.version = version;
+        this.baseVersion = baseVersion;
+        this.deltas = deltas;
+    }
+
+    /**
+     * Gets the version of this snapshot, unique among all order books.
+     *
+     * @return the snapshot version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the version of the snapshot the deltas are relative to.
+     *
+     * @return the base snapshot version, or 0 if this is the first snapshot of the book.
+     */
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    /**
+     * Gets the changes that transform the base snapshot into this snapshot, in the
+     * order they were applied.
+     *
+     * @return the level changes, or <code>null</code> if the changes are not available
+     * and the whole book must be considered changed.
+     */
+    public BookDelta[] getDeltas() {
+        return deltas;
+    }
+}
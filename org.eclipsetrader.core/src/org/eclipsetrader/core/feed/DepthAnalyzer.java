@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+/**
+ * Maintains the full-depth book of an instrument aggregated by price and computes
+ * its microstructure metrics incrementally.
+ *
+ * <p>The received books are mirrored entry by entry, so books reporting single orders
+ * or market makers are reconstructed into price levels. When a <code>BookSnapshot</code>
+ * follows the previously analyzed snapshot only its deltas are applied, each delta
+ * updates the depth sums in constant time, other books rebuild the analyzer state.</p>
+ *
+ * <p>The cumulative depth within a number of ticks is updated in constant time unless
+ * the best price changes, in which case only the levels within the tick range are
+ * summed again. The metrics are compared in place with the last returned instance and
+ * a new instance is allocated only when they change.</p>
+ *
+ * @since 1.0
+ */
+public class DepthAnalyzer {
+
+    public static final int DEFAULT_DEPTH_LEVELS = 5;
+
+    private static final double EPSILON = 1E-9;
+
+    private final int depthLevels;
+    private final double tickSize;
+    private final int ticks;
+
+    private final OrderBook source = new OrderBook(false);
+    private final OrderBook depth = new OrderBook(false);
+
+    private final long[] levelsDepth = new long[2];
+    private final long[] tickDepth = new long[2];
+
+    private IBook lastBook;
+    private long lastVersion = -1;
+    private IDepthMetrics metrics;
+
+    public DepthAnalyzer() {
+        this(DEFAULT_DEPTH_LEVELS, 0.0, 0);
+    }
+
+    /**
+     * Creates a new analyzer.
+     *
+     * @param depthLevels the number of price levels summed by the depth metrics.
+     * @param tickSize the minimum price increment, or 0 if unknown.
+     * @param ticks the number of ticks from the best price summed by the tick depth metrics.
+     */
+    public DepthAnalyzer(int depthLevels, double tickSize, int ticks) {
+        this.depthLevels = depthLevels;
+        this.tickSize = tickSize;
+        this.ticks = ticks;
+    }
+
+    public int getDepthLevels() {
+        return depthLevels;
+    }
+
+    public double getTickSize() {
+        return tickSize;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the book aggregated by price.
+     *
+     * @return the aggregated book.
+     */
+    public IOrderBook getDepthBook() {
+        return depth;
+    }
+
+    /**
+     * Returns the metrics computed from the last analyzed book.
+     *
+     * @return the metrics, or <code>null</code> if no book was analyzed.
+     */
+    public synchronized IDepthMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Analyzes a new book.
+     *
+     * @param book the new book.
+     * @return the updated metrics, the same instance is returned if the metrics are not changed.
+     */
+    public synchronized IDepthMetrics update(IBook book) {
+        if (book == null || book == lastBook) {
+            return metrics;
+        }
+
+        BookDelta[] deltas = null;
+        if (book instanceof BookSnapshot) {
+            BookSnapshot snapshot = (BookSnapshot) book;
+            if (snapshot.getBaseVersion() == lastVersion) {
+                deltas = snapshot.getDeltas();
+            }
+            lastVersion = snapshot.getVersion();
+        }
+        else {
+            lastVersion = -1;
+        }
+
+        if (deltas != null) {
+            for (int i = 0; i < deltas.length; i++) {
+                apply(deltas[i]);
+            }
+        }
+        else {
+            rebuild(book);
+        }
+        lastBook = book;
+
+        // The metrics are shared with the listeners, a new instance is built only when they change
+        if (isMetricsChanged()) {
+            metrics = buildMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Applies a change of the received book.
+     *
+     * @param delta the change to apply.
+     */
+    protected void apply(BookDelta delta) {
+        int side = delta.getSide();
+        int level = delta.getLevel();
+
+        switch (delta.getAction()) {
+            case BookDelta.INSERT: {
+                source.insert(side, level, delta.getPrice(), delta.getQuantity(), delta.getProposals());
+                changeLevel(side, delta.getPrice(), delta.getQuantity(), delta.getProposals());
+                break;
+            }
+            case BookDelta.UPDATE: {
+                double oldPrice = source.getPrice(side, level);
+                long oldQuantity = source.getQuantity(side, level);
+                long oldProposals = source.getProposals(side, level);
+                source.update(side, level, delta.getPrice(), delta.getQuantity(), delta.getProposals());
+                if (oldPrice == delta.getPrice()) {
+                    changeLevel(side, oldPrice, delta.getQuantity() - oldQuantity, delta.getProposals() - oldProposals);
+                }
+                else {
+                    changeLevel(side, oldPrice, -oldQuantity, -oldProposals);
+                    changeLevel(side, delta.getPrice(), delta.getQuantity(), delta.getProposals());
+                }
+                break;
+            }
+            case BookDelta.DELETE: {
+                double oldPrice = source.getPrice(side, level);
+                long oldQuantity = source.getQuantity(side, level);
+                long oldProposals = source.getProposals(side, level);
+                source.delete(side, level);
+                changeLevel(side, oldPrice, -oldQuantity, -oldProposals);
+                break;
+            }
+        }
+    }
+
+    protected void rebuild(IBook book) {
+        source.clear();
+        depth.clear();
+        for (int side = BookDelta.BID; side <= BookDelta.ASK; side++) {
+            levelsDepth[side] = 0;
+            tickDepth[side] = 0;
+
+            IBookEntry[] entries = side == BookDelta.BID ? book.getBidProposals() : book.getAskProposals();
+            if (entries == null) {
+                continue;
+            }
+            for (int i = 0; i < entries.length; i++) {
+                double price = 0.0;
+                long quantity = 0;
+                long proposals = 0;
+                if (entries[i] != null) {
+                    price = entries[i].getPrice() != null ? entries[i].getPrice() : 0.0;
+                    quantity = entries[i].getQuantity() != null ? entries[i].getQuantity() : 0;
+                    proposals = entries[i].getProposals() != null ? entries[i].getProposals() : 0;
+                }
+                source.insert(side, i, price, quantity, proposals);
+                changeLevel(side, price, quantity, proposals);
+            }
+        }
+    }
+
+    /**
+     * Adds the given quantity and proposals to the aggregated level at a price, updating
+     * the running depth sums.
+     */
+    private void changeLevel(int side, double price, long quantityChange, long proposalsChange) {
+        if (quantityChange == 0 && proposalsChange == 0) {
+            return;
+        }
+
+        int count = depth.getLevelCount(side);
+        double oldBest = count != 0 ? depth.getPrice(side, 0) : Double.NaN;
+
+        int level = depth.indexOf(side, price);
+        long oldQuantity = 0;
+        long newQuantity;
+
+        if (level >= 0) {
+            oldQuantity = depth.getQuantity(side, level);
+            newQuantity = Math.max(0, oldQuantity + quantityChange);
+            if (newQuantity == 0) {
+                depth.delete(side, level);
+                if (level < depthLevels) {
+                    levelsDepth[side] -= oldQuantity;
+                    if (count - 1 >= depthLevels) {
+                        levelsDepth[side] += depth.getQuantity(side, depthLevels - 1);
+                    }
+                }
+            }
+            else {
+                long proposals = Math.max(0, depth.getProposals(side, level) + proposalsChange);
+                depth.update(side, level, price, newQuantity, proposals);
+                if (level < depthLevels) {
+                    levelsDepth[side] += newQuantity - oldQuantity;
+                }
+            }
+        }
+        else {
+            newQuantity = quantityChange;
+            if (newQuantity <= 0) {
+                return;
+            }
+            level = -level - 1;
+            depth.insert(side, level, price, newQuantity, Math.max(0, proposalsChange));
+            if (level < depthLevels) {
+                levelsDepth[side] += newQuantity;
+                if (count + 1 > depthLevels) {
+                    levelsDepth[side] -= depth.getQuantity(side, depthLevels);
+                }
+            }
+        }
+
+        count = depth.getLevelCount(side);
+        double newBest = count != 0 ? depth.getPrice(side, 0) : Double.NaN;
+        if (Double.compare(oldBest, newBest) != 0) {
+            updateTickDepth(side);
+        }
+        else if (isWithinTicks(price, newBest)) {
+            tickDepth[side] += newQuantity - oldQuantity;
+        }
+    }
+
+    private boolean isWithinTicks(double price, double best) {
+        double range = ticks * tickSize + (tickSize != 0.0 ? tickSize / 2.0 : EPSILON);
+        return Math.abs(price - best) <= range;
+    }
+
+    private void updateTickDepth(int side) {
+        long sum = 0;
+        int count = depth.getLevelCount(side);
+        if (count != 0) {
+            double best = depth.getPrice(side, 0);
+            for (int i = 0; i < count && isWithinTicks(depth.getPrice(side, i), best); i++) {
+                sum += depth.getQuantity(side, i);
+            }
+        }
+        tickDepth[side] = sum;
+    }
+
+    private boolean isMetricsChanged() {
+        if (metrics == null) {
+            return true;
+        }
+
+        int bidCount = depth.getLevelCount(BookDelta.BID);
+        int askCount = depth.getLevelCount(BookDelta.ASK);
+        if (Double.compare(bidCount != 0 ? depth.getPrice(BookDelta.BID, 0) : Double.NaN, metrics.getBid()) != 0) {
+            return true;
+        }
+        if (Double.compare(askCount != 0 ? depth.getPrice(BookDelta.ASK, 0) : Double.NaN, metrics.getAsk()) != 0) {
+            return true;
+        }
+        if (levelsDepth[BookDelta.BID] != metrics.getBidDepth() || levelsDepth[BookDelta.ASK] != metrics.getAskDepth()) {
+            return true;
+        }
+        if (tickDepth[BookDelta.BID] != metrics.getBidTickDepth() || tickDepth[BookDelta.ASK] != metrics.getAskTickDepth()) {
+            return true;
+        }
+
+        return isLevelsChanged(BookDelta.BID, metrics.getBidLevels()) || isLevelsChanged(BookDelta.ASK, metrics.getAskLevels());
+    }
+
+    private boolean isLevelsChanged(int side, long[] levels) {
+        int count = Math.min(depth.getLevelCount(side), depthLevels);
+        if (levels == null || levels.length != count) {
+            return true;
+        }
+        for (int i = 0; i < count; i++) {
+            if (levels[i] != depth.getQuantity(side, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private IDepthMetrics buildMetrics() {
+        int bidCount = depth.getLevelCount(BookDelta.BID);
+        int askCount = depth.getLevelCount(BookDelta.ASK);
+
+        long[] bidLevels = new long[Math.min(bidCount, depthLevels)];
+        for (int i = 0; i < bidLevels.length; i++) {
+            bidLevels[i] = depth.getQuantity(BookDelta.BID, i);
+        }
+        long[] askLevels = new long[Math.min(askCount, depthLevels)];
+        for (int i = 0; i < askLevels.length; i++) {
+            askLevels[i] = depth.getQuantity(BookDelta.ASK, i);
+        }
+
+        return new DepthMetrics(
+            bidCount != 0 ? depth.getPrice(BookDelta.BID, 0) : Double.NaN,
+            askCount != 0 ? depth.getPrice(BookDelta.ASK, 0) : Double.NaN,
+            bidLevels.length != 0 ? bidLevels[0] : 0,
+            askLevels.length != 0 ? askLevels[0] : 0,
+            levelsDepth[BookDelta.BID],
+            levelsDepth[BookDelta.ASK],
+            tickDepth[BookDelta.BID],
+            tickDepth[BookDelta.ASK],
+            bidLevels,
+            askLevels);
+    }
+}
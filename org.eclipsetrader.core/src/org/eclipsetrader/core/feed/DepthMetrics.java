@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Default implementation of the <code>IDepthMetrics</code> interface.
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.feed.IDepthMetrics
+ */
+public class DepthMetrics implements IDepthMetrics, Serializable {
+
+    private static final long serialVersionUID = -4436590981736260165L;
+
+    private double bid;
+    private double ask;
+    private long bidSize;
+    private long askSize;
+    private long bidDepth;
+    private long askDepth;
+    private long bidTickDepth;
+    private long askTickDepth;
+    private long[] bidLevels;
+    private long[] askLevels;
+
+    public DepthMetrics(double bid, double ask, long bidSize, long askSize, long bidDepth, long askDepth, long bidTickDepth, long askTickDepth, long[] bidLevels, long[] askLevels) {
+        this.bid = bid;
+        this.ask = ask;
+        this.bidSize = bidSize;
+        this.askSize = askSize;
+        this.bidDepth = bidDepth;
+        this.askDepth = askDepth;
+        this.bidTickDepth = bidTickDepth;
+        this.askTickDepth = askTickDepth;
+        this.bidLevels = bidLevels;
+        this.askLevels = askLevels;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getBid()
+     */
+    @Override
+    public double getBid() {
+        return bid;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getAsk()
+     */
+    @Override
+    public double getAsk() {
+        return ask;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getBidSize()
+     */
+    @Override
+    public long getBidSize() {
+        return bidSize;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getAskSize()
+     */
+    @Override
+    public long getAskSize() {
+        return askSize;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getSpread()
+     */
+    @Override
+    public double getSpread() {
+        return ask - bid;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getMidPrice()
+     */
+    @Override
+    public double getMidPrice() {
+        return (bid + ask) / 2.0;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getWeightedMidPrice()
+     */
+    @Override
+    public double getWeightedMidPrice() {
+        long size = bidSize + askSize;
+        if (size == 0) {
+            return getMidPrice();
+        }
+        return (bid * askSize + ask * bidSize) / size;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getBidDepth()
+     */
+    @Override
+    public long getBidDepth() {
+        return bidDepth;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getAskDepth()
+     */
+    @Override
+    public long getAskDepth() {
+        return askDepth;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getImbalance()
+     */
+    @Override
+    public double getImbalance() {
+        long depth = bidDepth + askDepth;
+        if (depth == 0) {
+            return Double.NaN;
+        }
+        return (double) (bidDepth - askDepth) / depth;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getPressure()
+     */
+    @Override
+    public double getPressure() {
+        long depth = bidDepth + askDepth;
+        if (depth == 0) {
+            return Double.NaN;
+        }
+        return (double) bidDepth / depth;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getBidTickDepth()
+     */
+    @Override
+    public long getBidTickDepth() {
+        return bidTickDepth;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getAskTickDepth()
+     */
+    @Override
+    public long getAskTickDepth() {
+        return askTickDepth;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getBidLevels()
+     */
+    @Override
+    public long[] getBidLevels() {
+        return bidLevels;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IDepthMetrics#getAskLevels()
+     */
+    @Override
+    public long[] getAskLevels() {
+        return askLevels;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(bid) + 31 * Double.doubleToLongBits(ask);
+        return 3 * (int) (bits ^ bits >>> 32) + 7 * (int) bidDepth + 11 * (int) askDepth + 13 * Arrays.hashCode(bidLevels) + 17 * Arrays.hashCode(askLevels);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof DepthMetrics)) {
+            return false;
+        }
+        DepthMetrics other = (DepthMetrics) obj;
+        return Double.doubleToLongBits(bid) == Double.doubleToLongBits(other.bid) && Double.doubleToLongBits(ask) == Double.doubleToLongBits(other.ask) && bidSize == other.bidSize && askSize == other.askSize && bidDepth == other.bidDepth && askDepth == other.askDepth && bidTickDepth == other.bidTickDepth && askTickDepth == other.askTickDepth && Arrays.equals(bidLevels, other.bidLevels) && Arrays.equals(askLevels, other.askLevels);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "Bid=" + bid + " Ask=" + ask + " BidDepth=" + bidDepth + " AskDepth=" + askDepth + " Imbalance=" + getImbalance(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    }
+}
@@ -12,7 +12,6 @@
 package org.eclipsetrader.core.feed;
 
 import java.beans.PropertyChangeSupport;
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -28,6 +27,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.repositories.BarsDelta;
+import org.eclipsetrader.core.repositories.IHistoryStore;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
 import org.eclipsetrader.core.repositories.IStore;
 import org.eclipsetrader.core.repositories.IStoreObject;
@@ -37,7 +38,7 @@ import org.eclipsetrader.core.repositories.StoreProperties;
 public class History implements IHistory, IStoreObject {
 
     private ISecurity security;
-    private IOHLC[] bars = new IOHLC[0];
+    private IBarSeries series = BarSeries.valueOf(new IOHLC[0]);
     private ISplit[] splits = new ISplit[0];
     private TimeSpan timeSpan;
 
@@ -46,6 +47,10 @@ public class History implements IHistory, IStoreObject {
 
     private IStore store;
     private IStoreProperties storeProperties;
+    private IBarSeries storedSeries;
+    private IBarSeries pendingSeries;
+
+    private AdjustedBarSeries adjustedSeries;
 
     private PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
 
@@ -102,11 +107,16 @@ public class History implements IHistory, IStoreObject {
             if (!(obj instanceof Key)) {
                 return false;
             }
-            return hashCode() == obj.hashCode();
+            Key other = (Key) obj;
+            return equals(first, other.first) && equals(last, other.last) && timeSpan.equals(other.timeSpan);
+        }
+
+        private boolean equals(Date d1, Date d2) {
+            return d1 == null ? d2 == null : d1.equals(d2);
         }
     }
 
-    private Map<Key, WeakReference<HistoryDay>> historyMap = new HashMap<Key, WeakReference<HistoryDay>>();
+    private SubsetCache<Key, HistoryDay> historyMap = new SubsetCache<Key, HistoryDay>();
 
     protected History() {
     }
@@ -128,6 +138,14 @@ public class History implements IHistory, IStoreObject {
         setSplits(splits);
     }
 
+    public History(ISecurity security, IBarSeries series, ISplit[] splits, TimeSpan timeSpan) {
+        this.timeSpan = timeSpan;
+        this.series = series;
+        setSecurity(security);
+        setSplits(splits);
+        updateRange();
+    }
+
     public History(IStore store, IStoreProperties storeProperties) {
         setStore(store);
         setStoreProperties(storeProperties);
@@ -150,7 +168,7 @@ public class History implements IHistory, IStoreObject {
      */
     @Override
     public IOHLC getFirst() {
-        return bars != null && bars.length != 0 ? bars[0] : null;
+        return series.size() != 0 ? series.getOHLC(0) : null;
     }
 
     /* (non-Javadoc)
@@ -158,7 +176,7 @@ public class History implements IHistory, IStoreObject {
      */
     @Override
     public IOHLC getLast() {
-        return bars != null && bars.length != 0 ? bars[bars.length - 1] : null;
+        return series.size() != 0 ? series.getOHLC(series.size() - 1) : null;
     }
 
     /* (non-Javadoc)
@@ -182,16 +200,18 @@ public class History implements IHistory, IStoreObject {
      */
     @Override
     public IOHLC[] getOHLC() {
-        return bars;
+        return series.toOHLC();
     }
 
-    public void setOHLC(IOHLC[] bars) {
-        if (Arrays.equals(this.bars, bars)) {
-            return;
-        }
-
-        IOHLC[] oldBars = this.bars;
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IHistory#getBarSeries()
+     */
+    @Override
+    public IBarSeries getBarSeries() {
+        return series;
+    }
 
+    public void setOHLC(IOHLC[] bars) {
         List<IOHLC> l = new ArrayList<IOHLC>(Arrays.asList(bars));
         Collections.sort(l, new Comparator<IOHLC>() {
 
@@ -200,12 +220,19 @@ public class History implements IHistory, IStoreObject {
                 return o1.getDate().compareTo(o2.getDate());
             }
         });
-        this.bars = l.toArray(new IOHLC[l.size()]);
+        IOHLC[] newBars = l.toArray(new IOHLC[l.size()]);
+
+        IBarSeries newSeries = BarSeries.valueOf(newBars);
+        if (newSeries.equals(series)) {
+            return;
+        }
+        this.series = newSeries;
 
         updateRange();
         updateSubsets();
 
-        propertyChangeSupport.firePropertyChange(IPropertyConstants.BARS, oldBars, this.bars);
+        // The old bars are not kept, listeners receive only the new bars
+        propertyChangeSupport.firePropertyChange(IPropertyConstants.BARS, null, newBars);
     }
 
     /* (non-Javadoc)
@@ -215,30 +242,17 @@ public class History implements IHistory, IStoreObject {
     public IHistory getSubset(Date first, Date last) {
         Key key = new Key(first, last, timeSpan);
 
-        WeakReference<HistoryDay> reference = historyMap.get(key);
-        HistoryDay history = reference != null ? reference.get() : null;
+        HistoryDay history = historyMap.get(key);
         if (history != null) {
             return history;
         }
 
-        IOHLC[] subset = getOHLCSubset(first, last);
-        history = new HistoryDay(security, timeSpan, subset);
-
-        historyMap.put(key, new WeakReference<HistoryDay>(history));
+        history = new HistoryDay(security, timeSpan, series.getSubSeries(first, last));
+        historyMap.put(key, history);
 
         return history;
     }
 
-    private IOHLC[] getOHLCSubset(Date first, Date last) {
-        List<IOHLC> l = new ArrayList<IOHLC>();
-        for (IOHLC b : bars) {
-            if ((first == null || !b.getDate().before(first)) && (last == null || !b.getDate().after(last))) {
-                l.add(b);
-            }
-        }
-        return l.toArray(new IOHLC[l.size()]);
-    }
-
     /* (non-Javadoc)
      * @see org.eclipsetrader.core.feed.IHistory#getSubset(java.util.Date, java.util.Date, org.eclipsetrader.core.feed.TimeSpan)
      */
@@ -250,8 +264,7 @@ public class History implements IHistory, IStoreObject {
 
         Key key = new Key(first, last, timeSpan);
 
-        WeakReference<HistoryDay> reference = historyMap.get(key);
-        HistoryDay history = reference != null ? reference.get() : null;
+        HistoryDay history = historyMap.get(key);
         if (history != null) {
             return history;
         }
@@ -278,7 +291,7 @@ public class History implements IHistory, IStoreObject {
         List<IStoreProperties> propertyList = new ArrayList<IStoreProperties>();
 
         if (store != null) {
-            IStore[] childStores = store.fetchChilds(null);
+            IStore[] childStores = fetchChildStores(first, last);
             if (childStores != null) {
                 for (IStore childStore : childStores) {
                     IStoreProperties properties = childStore.fetchProperties(null);
@@ -301,8 +314,9 @@ public class History implements IHistory, IStoreObject {
             protected IStoreObject[] updateStoreObjects() {
                 IStoreObject[] storeObject = super.updateStoreObjects();
 
-                Set<Entry<Key, WeakReference<HistoryDay>>> set = historyMap.entrySet();
-                Entry<Key, WeakReference<HistoryDay>>[] entry = set.toArray(new Entry[set.size()]);
+                Map<Key, HistoryDay> subsets = historyMap.snapshot();
+                Set<Entry<Key, HistoryDay>> set = subsets.entrySet();
+                Entry<Key, HistoryDay>[] entry = set.toArray(new Entry[set.size()]);
 
                 Set<Key> updatedElements = new HashSet<Key>();
                 TimeSpan skipTimeSpan = TimeSpan.days(1);
@@ -310,7 +324,7 @@ public class History implements IHistory, IStoreObject {
                 for (int ii = 0; ii < storeObject.length; ii++) {
                     Date barsDate = (Date) storeObject[ii].getStoreProperties().getProperty(IPropertyConstants.BARS_DATE);
                     for (int i = 0; i < entry.length; i++) {
-                        HistoryDay element = entry[i].getValue().get();
+                        HistoryDay element = entry[i].getValue();
                         Key key = entry[i].getKey();
                         if (element != null && element != this && !element.getTimeSpan().equals(skipTimeSpan)) {
                             if (!entry[i].getKey().isInRange(barsDate)) {
@@ -322,15 +336,12 @@ public class History implements IHistory, IStoreObject {
                 }
 
                 for (Key key : updatedElements) {
-                    HistoryDay element = historyMap.get(key).get();
-                    if (element == null) {
-                        continue;
-                    }
+                    HistoryDay element = subsets.get(key);
 
                     Map<Date, IStore> storeList = new HashMap<Date, IStore>();
                     Map<Date, IStoreProperties> propertyList = new HashMap<Date, IStoreProperties>();
 
-                    IStore[] childStores = store != null ? store.fetchChilds(null) : null;
+                    IStore[] childStores = store != null ? fetchChildStores(key.getFirst(), key.getLast()) : null;
                     if (childStores != null) {
                         for (IStore childStore : childStores) {
                             IStoreProperties properties = childStore.fetchProperties(null);
@@ -363,7 +374,7 @@ public class History implements IHistory, IStoreObject {
             }
         };
 
-        historyMap.put(key, new WeakReference<HistoryDay>(history));
+        historyMap.put(key, history);
 
         return history;
     }
@@ -385,7 +396,7 @@ public class History implements IHistory, IStoreObject {
         IStoreProperties dayProperties = null;
 
         if (store != null) {
-            IStore[] childStores = store.fetchChilds(null);
+            IStore[] childStores = fetchChildStores(date, date);
             if (childStores != null) {
                 for (int i = 0; i < childStores.length; i++) {
                     IStoreProperties childProperties = childStores[i].fetchProperties(null);
@@ -416,8 +427,7 @@ public class History implements IHistory, IStoreObject {
             if (timeSpan != null) {
                 Key key = new Key(date, date, timeSpan);
 
-                WeakReference<HistoryDay> reference = historyMap.get(key);
-                HistoryDay history = reference != null ? reference.get() : null;
+                HistoryDay history = historyMap.get(key);
                 if (history == null) {
                     IStore[] storeList = new IStore[] {
                         dayStore,
@@ -426,7 +436,7 @@ public class History implements IHistory, IStoreObject {
                         dayProperties
                     };
                     history = createHistoryDay(storeList, propertiesList, timeSpan);
-                    historyMap.put(key, new WeakReference<HistoryDay>(history));
+                    historyMap.put(key, history);
                 }
                 l.add(history);
             }
@@ -435,6 +445,21 @@ public class History implements IHistory, IStoreObject {
         return l.toArray(new IHistory[l.size()]);
     }
 
+    /**
+     * Returns the intraday child stores with a date within the given range, or all
+     * child stores if the store can't fetch a range of childs.
+     *
+     * @param first the first date, or <code>null</code>.
+     * @param last the last date, or <code>null</code>.
+     * @return the child stores, may be <code>null</code>.
+     */
+    private IStore[] fetchChildStores(Date first, Date last) {
+        if (store instanceof IHistoryStore) {
+            return ((IHistoryStore) store).fetchChilds(first, last, null);
+        }
+        return store.fetchChilds(null);
+    }
+
     @SuppressWarnings("unchecked")
     private HistoryDay createHistoryDay(IStore[] storeList, IStoreProperties[] propertiesList, TimeSpan timeSpan) {
         HistoryDay history = new HistoryDay(security, timeSpan, storeList, propertiesList) {
@@ -443,8 +468,9 @@ public class History implements IHistory, IStoreObject {
             protected IStoreObject[] updateStoreObjects() {
                 IStoreObject[] storeObject = super.updateStoreObjects();
 
-                Set<Entry<Key, WeakReference<HistoryDay>>> set = historyMap.entrySet();
-                Entry<Key, WeakReference<HistoryDay>>[] entry = set.toArray(new Entry[set.size()]);
+                Map<Key, HistoryDay> subsets = historyMap.snapshot();
+                Set<Entry<Key, HistoryDay>> set = subsets.entrySet();
+                Entry<Key, HistoryDay>[] entry = set.toArray(new Entry[set.size()]);
 
                 Set<Key> updatedElements = new HashSet<Key>();
 
@@ -452,7 +478,7 @@ public class History implements IHistory, IStoreObject {
                     TimeSpan timeSpan = (TimeSpan) storeObject[ii].getStoreProperties().getProperty(IPropertyConstants.TIME_SPAN);
                     Date barsDate = (Date) storeObject[ii].getStoreProperties().getProperty(IPropertyConstants.BARS_DATE);
                     for (int i = 0; i < entry.length; i++) {
-                        HistoryDay element = entry[i].getValue().get();
+                        HistoryDay element = entry[i].getValue();
                         Key key = entry[i].getKey();
                         if (element != null && element != this && element.getTimeSpan().equals(timeSpan)) {
                             if (!entry[i].getKey().isInRange(barsDate)) {
@@ -464,15 +490,12 @@ public class History implements IHistory, IStoreObject {
                 }
 
                 for (Key key : updatedElements) {
-                    HistoryDay element = historyMap.get(key).get();
-                    if (element == null) {
-                        continue;
-                    }
+                    HistoryDay element = subsets.get(key);
 
                     Map<Date, IStore> storeList = new HashMap<Date, IStore>();
                     Map<Date, IStoreProperties> propertyList = new HashMap<Date, IStoreProperties>();
 
-                    IStore[] childStores = store != null ? store.fetchChilds(null) : null;
+                    IStore[] childStores = store != null ? fetchChildStores(key.getFirst(), key.getLast()) : null;
                     if (childStores != null) {
                         for (IStore childStore : childStores) {
                             IStoreProperties properties = childStore.fetchProperties(null);
@@ -537,35 +560,31 @@ public class History implements IHistory, IStoreObject {
      */
     @Override
     public IOHLC[] getAdjustedOHLC() {
-        IDividend[] dividends = (IDividend[]) security.getAdapter(IDividend[].class);
+        return updateAdjustedSeries().toOHLC();
+    }
 
-        if ((dividends == null || dividends.length == 0) && (splits == null || splits.length == 0)) {
-            return bars;
-        }
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IHistory#getAdjustedBarSeries()
+     */
+    @Override
+    public IBarSeries getAdjustedBarSeries() {
+        return updateAdjustedSeries();
+    }
 
-        IOHLC[] l = new IOHLC[bars.length];
-        for (int i = 0; i < l.length; i++) {
-            double splitFactor = 1.0;
-            if (splits != null) {
-                for (int s = 0; s < splits.length; s++) {
-                    if (bars[i].getDate().before(splits[s].getDate())) {
-                        splitFactor *= splits[s].getNewQuantity() / splits[s].getOldQuantity();
-                    }
-                }
-            }
+    private AdjustedBarSeries updateAdjustedSeries() {
+        IDividend[] dividends = security != null ? (IDividend[]) security.getAdapter(IDividend[].class) : null;
+        AdjustmentFactors factors = new AdjustmentFactors(splits, dividends);
 
-            double cumulatedDividends = 0.0;
-            if (dividends != null) {
-                for (int d = 0; d < dividends.length; d++) {
-                    if (bars[i].getDate().before(dividends[d].getExDate())) {
-                        cumulatedDividends += dividends[d].getValue();
-                    }
-                }
-            }
+        if (adjustedSeries == null || adjustedSeries.getRawSeries() != series) {
+            adjustedSeries = new AdjustedBarSeries(series, factors);
+            return adjustedSeries;
+        }
 
-            l[i] = new OHLC(bars[i].getDate(), bars[i].getOpen() / splitFactor - cumulatedDividends, bars[i].getHigh() / splitFactor - cumulatedDividends, bars[i].getLow() / splitFactor - cumulatedDividends, bars[i].getClose() / splitFactor - cumulatedDividends, (long) (bars[i].getVolume() * splitFactor));
+        if (adjustedSeries.getFactors().getLastDifference(factors) != Long.MIN_VALUE) {
+            adjustedSeries = adjustedSeries.update(factors);
         }
-        return l;
+
+        return adjustedSeries;
     }
 
     /* (non-Javadoc)
@@ -601,6 +620,17 @@ public class History implements IHistory, IStoreObject {
     @Override
     public void setStore(IStore store) {
         this.store = store;
+
+        // The store is set only after the properties are written successfully, the written
+        // bars become the reference for the next delta. Without a store there is no reference.
+        if (store == null) {
+            storedSeries = null;
+            pendingSeries = null;
+        }
+        else if (pendingSeries != null) {
+            storedSeries = pendingSeries;
+            pendingSeries = null;
+        }
     }
 
     /* (non-Javadoc)
@@ -615,8 +645,11 @@ public class History implements IHistory, IStoreObject {
         storeProperties.setProperty(IPropertyConstants.OBJECT_TYPE, IHistory.class.getName());
 
         storeProperties.setProperty(IPropertyConstants.SECURITY, security);
+        IOHLC[] bars = series.toOHLC();
         storeProperties.setProperty(IPropertyConstants.BARS, bars);
+        storeProperties.setProperty(IPropertyConstants.BARS_DELTA, store != null && storedSeries != null ? BarsDelta.compute(store, storedSeries.toOHLC(), bars) : null);
         storeProperties.setProperty(IPropertyConstants.TIME_SPAN, timeSpan);
+        pendingSeries = series;
         storeProperties.setProperty(IPropertyConstants.SPLITS, splits);
 
         return storeProperties;
@@ -640,7 +673,12 @@ public class History implements IHistory, IStoreObject {
                 return o1.getDate().compareTo(o2.getDate());
             }
         });
-        this.bars = l1.toArray(new IOHLC[l1.size()]);
+        this.series = BarSeries.valueOf(l1.toArray(new IOHLC[l1.size()]));
+        this.storedSeries = this.series;
+        this.pendingSeries = null;
+
+        // The series holds the bars from now on, getStoreProperties() sets them back when saving
+        storeProperties.setProperty(IPropertyConstants.BARS, null);
 
         this.timeSpan = (TimeSpan) storeProperties.getProperty(IPropertyConstants.TIME_SPAN);
 
@@ -661,26 +699,29 @@ public class History implements IHistory, IStoreObject {
     protected void updateRange() {
         highest = null;
         lowest = null;
-        for (IOHLC b : bars) {
-            if (highest == null || b.getHigh() > highest.getHigh()) {
-                highest = b;
+
+        int highestIndex = -1;
+        int lowestIndex = -1;
+        for (int i = 0; i < series.size(); i++) {
+            if (highestIndex == -1 || series.getHigh(i) > series.getHigh(highestIndex)) {
+                highestIndex = i;
             }
-            if (lowest == null || b.getLow() < lowest.getLow()) {
-                lowest = b;
+            if (lowestIndex == -1 || series.getLow(i) < series.getLow(lowestIndex)) {
+                lowestIndex = i;
             }
         }
+        if (highestIndex != -1) {
+            highest = series.getOHLC(highestIndex);
+            lowest = series.getOHLC(lowestIndex);
+        }
     }
 
     protected void updateSubsets() {
-        for (Key key : historyMap.keySet()) {
-            WeakReference<HistoryDay> reference = historyMap.get(key);
-            HistoryDay history = reference.get();
-            if (history == null) {
-                continue;
-            }
+        for (Entry<Key, HistoryDay> entry : historyMap.snapshot().entrySet()) {
+            HistoryDay history = entry.getValue();
             if (history.getTimeSpan().equals(timeSpan)) {
-                IOHLC[] subset = getOHLCSubset(key.getFirst(), key.getLast());
-                history.setOHLC(subset);
+                Key key = entry.getKey();
+                history.setBarSeries(series.getSubSeries(key.getFirst(), key.getLast()));
             }
         }
     }
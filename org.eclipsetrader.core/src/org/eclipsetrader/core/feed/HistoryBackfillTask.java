@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.instruments.Stock;
+import org.eclipsetrader.core.internal.CoreActivator;
+import org.eclipsetrader.core.repositories.IRepository;
+import org.eclipsetrader.core.repositories.IRepositoryService;
+import org.eclipsetrader.core.repositories.IStoreObject;
+
+/**
+ * Updates the history of a security with the bars, splits and dividends
+ * downloaded from the backfill connectors.
+ *
+ * <p>The daily bars are downloaded from the daily connector, the intraday
+ * bars from the intraday connector. The downloaded daily bars, splits and
+ * dividends are merged with the existing data unless the task runs in
+ * <code>FULL</code> mode. Nothing is saved if the bars of any time span
+ * can't be downloaded.</p>
+ *
+ * @since 1.0
+ */
+public class HistoryBackfillTask extends BackfillTask<HistoryBackfillTask.Data> {
+
+    public static final int FULL = 0;
+    public static final int INCREMENTAL = 1;
+    public static final int FULL_INCREMENTAL = 2;
+
+    private final ISecurity security;
+    private final IBackfillConnector intradayConnector;
+    private final int mode;
+    private final Date beginDate;
+    private final Date endDate;
+    private final TimeSpan[] timeSpan;
+    private final IRepositoryService repositoryService;
+
+    protected static class Data {
+
+        IHistory history;
+        Date beginDate;
+        Date endDate;
+        Map<TimeSpan, IOHLC[]> dataMap = new HashMap<TimeSpan, IOHLC[]>();
+        ISplit[] splits;
+        IDividend[] dividends;
+        List<IStatus> messages = new ArrayList<IStatus>();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param security the security to update.
+     * @param connector the connector of the daily bars, splits and dividends.
+     * @param intradayConnector the connector of the intraday bars.
+     * @param mode the update mode, one of <code>FULL</code>, <code>INCREMENTAL</code> or <code>FULL_INCREMENTAL</code>.
+     * @param beginDate the first date to download.
+     * @param endDate the last date to download.
+     * @param timeSpan the time spans of the bars to download.
+     * @param repositoryService the repository service.
+     */
+    public HistoryBackfillTask(ISecurity security, IBackfillConnector connector, IBackfillConnector intradayConnector, int mode, Date beginDate, Date endDate, TimeSpan[] timeSpan, IRepositoryService repositoryService) {
+        super(getTaskId(security), security.getName(), connector);
+        this.security = security;
+        this.intradayConnector = intradayConnector;
+        this.mode = mode;
+        this.beginDate = beginDate;
+        this.endDate = endDate;
+        this.timeSpan = timeSpan;
+        this.repositoryService = repositoryService;
+    }
+
+    static String getTaskId(ISecurity security) {
+        IStoreObject storeObject = (IStoreObject) security.getAdapter(IStoreObject.class);
+        if (storeObject != null && storeObject.getStore() != null) {
+            return storeObject.getStore().toURI().toString();
+        }
+        return security.getName();
+    }
+
+    public ISecurity getSecurity() {
+        return security;
+    }
+
+    /**
+     * Returns the range of dates to download.
+     *
+     * @param history the current history, or <code>null</code> if the security has no history.
+     * @return a two elements array with the first and the last date to download.
+     */
+    protected Date[] getRange(IHistory history) {
+        if (history != null && mode == INCREMENTAL) {
+            return new Date[] {
+                history.getLast() != null ? history.getLast().getDate() : beginDate,
+                Calendar.getInstance().getTime(),
+            };
+        }
+        return new Date[] {
+            beginDate, endDate
+        };
+    }
+
+    /**
+     * Returns the message reported when no bars of the given time span are downloaded.
+     * Clients may override to provide a localized message.
+     *
+     * @param timeSpan the time span.
+     * @return the message.
+     */
+    protected String getDownloadErrorMessage(TimeSpan timeSpan) {
+        return "Can't download " + timeSpan.toString() + " data for " + security.getName(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Returns the message reported when nothing is saved because some bars are missing.
+     * Clients may override to provide a localized message.
+     *
+     * @return the message.
+     */
+    protected String getMissingDataMessage() {
+        return "Missing data for " + security.getName(); //$NON-NLS-1$
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.BackfillTask#download(org.eclipsetrader.core.feed.BackfillScheduler)
+     */
+    @Override
+    public Data download(BackfillScheduler scheduler) throws Exception {
+        IBackfillConnector backfillConnector = scheduler.getConnector(getConnector());
+        IBackfillConnector intradayBackfillConnector = scheduler.getConnector(intradayConnector);
+
+        IFeedIdentifier identifier = (IFeedIdentifier) security.getAdapter(IFeedIdentifier.class);
+
+        Data data = new Data();
+        data.history = repositoryService.getHistoryFor(security);
+
+        Date[] range = getRange(data.history);
+        data.beginDate = range[0];
+        data.endDate = range[1];
+
+        for (TimeSpan currentTimeSpan : timeSpan) {
+            IOHLC[] ohlc = null;
+            if (currentTimeSpan.equals(TimeSpan.days(1))) {
+                ohlc = backfillConnector.backfillHistory(identifier, data.beginDate, data.endDate, currentTimeSpan);
+            }
+            else if (intradayBackfillConnector.canBackfill(identifier, currentTimeSpan)) {
+                ohlc = intradayBackfillConnector.backfillHistory(identifier, data.beginDate, data.endDate, currentTimeSpan);
+            }
+            else {
+                data.dataMap.put(currentTimeSpan, null);
+                continue;
+            }
+
+            // The connectors handle their own errors and return null when there is no data,
+            // only the exceptions thrown by the connectors are retried by the scheduler
+            if (ohlc != null && ohlc.length != 0) {
+                data.dataMap.put(currentTimeSpan, ohlc);
+            }
+            else {
+                data.messages.add(new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, getDownloadErrorMessage(currentTimeSpan), null));
+            }
+        }
+
+        if (data.dataMap.size() == timeSpan.length && security instanceof Stock) {
+            if (data.dataMap.get(TimeSpan.days(1)) != null) {
+                data.splits = backfillConnector.backfillSplits(identifier, data.beginDate, data.endDate);
+            }
+            data.dividends = backfillConnector.backfillDividends(identifier, data.beginDate, data.endDate);
+        }
+
+        return data;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.BackfillTask#save(java.lang.Object)
+     */
+    @Override
+    public IStatus save(Data data) throws Exception {
+        if (data.dataMap.size() != timeSpan.length) {
+            return new MultiStatus(CoreActivator.PLUGIN_ID, 0, data.messages.toArray(new IStatus[data.messages.size()]), getMissingDataMessage(), null);
+        }
+
+        IStoreObject storeObject = (IStoreObject) security.getAdapter(IStoreObject.class);
+        IRepository defaultRepository = storeObject != null && storeObject.getStore() != null ? storeObject.getStore().getRepository() : null;
+
+        IHistory history = data.history;
+
+        for (TimeSpan currentTimeSpan : data.dataMap.keySet()) {
+            IOHLC[] ohlc = data.dataMap.get(currentTimeSpan);
+            if (ohlc == null) {
+                continue;
+            }
+            if (currentTimeSpan.equals(TimeSpan.days(1))) {
+                Map<Date, IOHLC> dailyDataMap = new HashMap<Date, IOHLC>(2048);
+                if (history != null && mode != FULL) {
+                    for (IOHLC d : history.getOHLC()) {
+                        dailyDataMap.put(d.getDate(), d);
+                    }
+                }
+                for (IOHLC d : ohlc) {
+                    dailyDataMap.put(d.getDate(), d);
+                }
+                ohlc = dailyDataMap.values().toArray(new IOHLC[dailyDataMap.values().size()]);
+
+                if (history == null) {
+                    history = new History(security, ohlc);
+                }
+                else if (history instanceof History) {
+                    ((History) history).setOHLC(ohlc);
+                }
+
+                if (security instanceof Stock && history instanceof History) {
+                    ISplit[] splits = data.splits;
+                    if (splits != null && splits.length != 0) {
+                        Map<Date, ISplit> splitsMap = new HashMap<Date, ISplit>();
+
+                        ISplit[] currentSplits = history.getSplits();
+                        if (currentSplits != null && mode != FULL) {
+                            for (ISplit s : currentSplits) {
+                                splitsMap.put(s.getDate(), s);
+                            }
+                        }
+
+                        for (int i = 0; i < splits.length; i++) {
+                            splitsMap.put(splits[i].getDate(), splits[i]);
+                        }
+
+                        Collection<ISplit> c = splitsMap.values();
+                        ((History) history).setSplits(c.toArray(new ISplit[c.size()]));
+                    }
+                }
+
+                save(new IHistory[] {
+                    history
+                }, defaultRepository);
+            }
+            else {
+                if (history == null) {
+                    history = new History(security, ohlc);
+                    IHistory intradayHistory = history.getSubset(data.beginDate, data.endDate, currentTimeSpan);
+                    if (intradayHistory instanceof HistoryDay) {
+                        ((HistoryDay) intradayHistory).setOHLC(ohlc);
+                    }
+                    save(new IHistory[] {
+                        history, intradayHistory
+                    }, defaultRepository);
+                }
+                else {
+                    IHistory intradayHistory = history.getSubset(data.beginDate, data.endDate, currentTimeSpan);
+                    if (intradayHistory instanceof HistoryDay) {
+                        ((HistoryDay) intradayHistory).setOHLC(ohlc);
+                    }
+                    save(new IHistory[] {
+                        intradayHistory
+                    }, defaultRepository);
+                }
+            }
+        }
+
+        if (security instanceof Stock) {
+            IDividend[] dividends = data.dividends;
+            if (dividends != null && dividends.length != 0) {
+                Map<Date, IDividend> dividendsMap = new HashMap<Date, IDividend>();
+
+                IDividend[] currentDividends = ((Stock) security).getDividends();
+                if (currentDividends != null && mode != FULL) {
+                    for (IDividend d : currentDividends) {
+                        dividendsMap.put(d.getExDate(), d);
+                    }
+                }
+
+                for (int i = 0; i < dividends.length; i++) {
+                    dividendsMap.put(dividends[i].getExDate(), dividends[i]);
+                }
+
+                if (dividendsMap.size() != 0) {
+                    ((Stock) security).setDividends(dividendsMap.values().toArray(new IDividend[dividendsMap.values().size()]));
+                    repositoryService.saveAdaptable(new ISecurity[] {
+                        security
+                    });
+                }
+            }
+        }
+
+        return Status.OK_STATUS;
+    }
+
+    private void save(IHistory[] history, IRepository defaultRepository) {
+        if (defaultRepository != null) {
+            repositoryService.saveAdaptable(history, defaultRepository);
+        }
+        else {
+            repositoryService.saveAdaptable(history);
+        }
+    }
+}
@@ -37,7 +37,7 @@ import org.eclipsetrader.core.repositories.StoreProperties;
 public class HistoryDay implements IHistory {
 
     private ISecurity security;
-    private IOHLC[] bars = new IOHLC[0];
+    private IBarSeries series = BarSeries.valueOf(new IOHLC[0]);
     private TimeSpan timeSpan;
 
     private IOHLC highest;
@@ -106,7 +106,13 @@ public class HistoryDay implements IHistory {
     public HistoryDay(ISecurity security, TimeSpan timeSpan, IOHLC[] bars) {
         this.security = security;
         this.timeSpan = timeSpan;
-        this.bars = bars;
+        this.series = BarSeries.valueOf(bars);
+    }
+
+    public HistoryDay(ISecurity security, TimeSpan timeSpan, IBarSeries series) {
+        this.security = security;
+        this.timeSpan = timeSpan;
+        this.series = series;
     }
 
     /* (non-Javadoc)
@@ -114,7 +120,15 @@ public class HistoryDay implements IHistory {
      */
     @Override
     public IOHLC[] getAdjustedOHLC() {
-        return bars;
+        return getOHLC();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IHistory#getAdjustedBarSeries()
+     */
+    @Override
+    public IBarSeries getAdjustedBarSeries() {
+        return series;
     }
 
     /* (non-Javadoc)
@@ -122,7 +136,7 @@ public class HistoryDay implements IHistory {
      */
     @Override
     public IOHLC getFirst() {
-        return bars != null && bars.length != 0 ? bars[0] : null;
+        return series.size() != 0 ? series.getOHLC(0) : null;
     }
 
     /* (non-Javadoc)
@@ -138,7 +152,7 @@ public class HistoryDay implements IHistory {
      */
     @Override
     public IOHLC getLast() {
-        return bars != null && bars.length != 0 ? bars[bars.length - 1] : null;
+        return series.size() != 0 ? series.getOHLC(series.size() - 1) : null;
     }
 
     /* (non-Javadoc)
@@ -154,16 +168,18 @@ public class HistoryDay implements IHistory {
      */
     @Override
     public IOHLC[] getOHLC() {
-        return bars;
+        return series.toOHLC();
     }
 
-    public void setOHLC(IOHLC[] bars) {
-        if (Arrays.equals(this.bars, bars)) {
-            return;
-        }
-
-        IOHLC[] oldBars = this.bars;
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IHistory#getBarSeries()
+     */
+    @Override
+    public IBarSeries getBarSeries() {
+        return series;
+    }
 
+    public void setOHLC(IOHLC[] bars) {
         List<IOHLC> l = new ArrayList<IOHLC>(Arrays.asList(bars));
         Collections.sort(l, new Comparator<IOHLC>() {
 
@@ -172,12 +188,37 @@ public class HistoryDay implements IHistory {
                 return o1.getDate().compareTo(o2.getDate());
             }
         });
-        this.bars = l.toArray(new IOHLC[l.size()]);
+        IOHLC[] newBars = l.toArray(new IOHLC[l.size()]);
+
+        IBarSeries newSeries = BarSeries.valueOf(newBars);
+        if (newSeries.equals(series)) {
+            return;
+        }
+        this.series = newSeries;
+
+        updateStoreObjects();
+        updateRange();
+
+        propertyChangeSupport.firePropertyChange(IPropertyConstants.BARS, null, newBars);
+    }
+
+    /**
+     * Sets the bars from a subset of a parent history.
+     *
+     * @param series the bars series.
+     */
+    void setBarSeries(IBarSeries series) {
+        if (series.equals(this.series)) {
+            return;
+        }
+        this.series = series;
 
         updateStoreObjects();
         updateRange();
 
-        propertyChangeSupport.firePropertyChange(IPropertyConstants.BARS, oldBars, this.bars);
+        if (propertyChangeSupport.hasListeners(IPropertyConstants.BARS)) {
+            propertyChangeSupport.firePropertyChange(IPropertyConstants.BARS, null, series.toOHLC());
+        }
     }
 
     protected IStoreObject[] updateStoreObjects() {
@@ -191,13 +232,14 @@ public class HistoryDay implements IHistory {
             }
         }
 
-        if (bars.length != 0) {
+        if (series.size() != 0) {
             Calendar c = Calendar.getInstance();
             int dayOfYear = -1;
             Date date = null;
 
             List<IOHLC> list = new ArrayList<IOHLC>(2048);
-            for (IOHLC d : bars) {
+            for (int i = 0; i < series.size(); i++) {
+                IOHLC d = series.getOHLC(i);
                 c.setTime(d.getDate());
                 c.set(Calendar.HOUR_OF_DAY, 0);
                 c.set(Calendar.MINUTE, 0);
@@ -206,24 +248,7 @@ public class HistoryDay implements IHistory {
 
                 if (c.get(Calendar.DAY_OF_YEAR) != dayOfYear) {
                     if (list.size() != 0 && date != null) {
-                        StoreObject object = storeObjects.get(date);
-                        if (object == null) {
-                            IStoreProperties properties = new StoreProperties();
-                            properties.setProperty(IPropertyConstants.OBJECT_TYPE, IHistory.class.getName());
-                            properties.setProperty(IPropertyConstants.SECURITY, security);
-                            properties.setProperty(IPropertyConstants.BARS_DATE, date);
-                            properties.setProperty(timeSpan.toString(), list.toArray(new IOHLC[list.size()]));
-                            object = new StoreObject(repository != null ? repository.createObject() : null, properties);
-                            storeObjects.put(date, object);
-                            updatedStoreObjects.add(object);
-                        }
-                        else {
-                            IStoreProperties properties = object.getStoreProperties();
-                            properties.setProperty(timeSpan.toString(), list.toArray(new IOHLC[list.size()]));
-                            object.setStoreProperties(properties);
-                            updatedStoreObjects.add(object);
-                        }
-
+                        updateStoreObject(date, list.toArray(new IOHLC[list.size()]), repository, updatedStoreObjects);
                         list = new ArrayList<IOHLC>(2048);
                     }
                     dayOfYear = c.get(Calendar.DAY_OF_YEAR);
@@ -232,29 +257,50 @@ public class HistoryDay implements IHistory {
                 date = c.getTime();
             }
             if (list.size() != 0 && date != null) {
-                StoreObject object = storeObjects.get(date);
-                if (object == null) {
-                    IStoreProperties properties = new StoreProperties();
-                    properties.setProperty(IPropertyConstants.OBJECT_TYPE, IHistory.class.getName());
-                    properties.setProperty(IPropertyConstants.SECURITY, security);
-                    properties.setProperty(IPropertyConstants.BARS_DATE, date);
-                    properties.setProperty(timeSpan.toString(), list.toArray(new IOHLC[list.size()]));
-                    object = new StoreObject(repository != null ? repository.createObject() : null, properties);
-                    storeObjects.put(date, object);
-                    updatedStoreObjects.add(object);
-                }
-                else {
-                    IStoreProperties properties = object.getStoreProperties();
-                    properties.setProperty(timeSpan.toString(), list.toArray(new IOHLC[list.size()]));
-                    object.setStoreProperties(properties);
-                    updatedStoreObjects.add(object);
-                }
+                updateStoreObject(date, list.toArray(new IOHLC[list.size()]), repository, updatedStoreObjects);
             }
         }
 
         return updatedStoreObjects.toArray(new IStoreObject[updatedStoreObjects.size()]);
     }
 
+    /**
+     * Sets the bars of a day to the day store object, and the rollups to the longer
+     * time spans if the bars have the lowest time span of the day. Days with
+     * the same bars are left untouched.
+     *
+     * @param date the day.
+     * @param dayBars the bars of the day.
+     * @param repository the repository where new store objects are created.
+     * @param updatedStoreObjects the set where the updated store objects are added.
+     */
+    private void updateStoreObject(Date date, IOHLC[] dayBars, IRepository repository, Set<StoreObject> updatedStoreObjects) {
+        StoreObject object = storeObjects.get(date);
+        if (object == null) {
+            IStoreProperties properties = new StoreProperties();
+            properties.setProperty(IPropertyConstants.OBJECT_TYPE, IHistory.class.getName());
+            properties.setProperty(IPropertyConstants.SECURITY, security);
+            properties.setProperty(IPropertyConstants.BARS_DATE, date);
+            properties.setProperty(timeSpan.toString(), dayBars);
+            BarsRollup.update(properties, timeSpan);
+            object = new StoreObject(repository != null ? repository.createObject() : null, properties);
+            storeObjects.put(date, object);
+            updatedStoreObjects.add(object);
+        }
+        else {
+            IStoreProperties properties = object.getStoreProperties();
+            if (Arrays.equals((IOHLC[]) properties.getProperty(timeSpan.toString()), dayBars)) {
+                return;
+            }
+            properties.setProperty(timeSpan.toString(), dayBars);
+            if (getLowestTimespanBars(properties) == null) {
+                BarsRollup.update(properties, timeSpan);
+            }
+            object.setStoreProperties(properties);
+            updatedStoreObjects.add(object);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.eclipsetrader.core.feed.IHistory#getSecurity()
      */
@@ -284,13 +330,7 @@ public class HistoryDay implements IHistory {
      */
     @Override
     public IHistory getSubset(Date first, Date last) {
-        List<IOHLC> l = new ArrayList<IOHLC>();
-        for (IOHLC b : bars) {
-            if ((first == null || !b.getDate().before(first)) && (last == null || !b.getDate().after(last))) {
-                l.add(b);
-            }
-        }
-        return new HistoryDay(security, timeSpan, l.toArray(new IOHLC[l.size()]));
+        return new HistoryDay(security, timeSpan, series.getSubSeries(first, last));
     }
 
     /* (non-Javadoc)
@@ -364,41 +404,7 @@ public class HistoryDay implements IHistory {
             if (bars == null) {
                 IOHLC[] minuteBars = getLowestTimespanBars(storeProperties[i]);
                 if (minuteBars != null) {
-                    Date startDate = null, endDate = null;
-                    Double open = null, high = null, low = null, close = null;
-                    Long volume = 0L;
-                    Calendar c = Calendar.getInstance();
-
-                    List<IOHLC> l = new ArrayList<IOHLC>();
-                    for (IOHLC currentBar : minuteBars) {
-                        if (startDate != null && !currentBar.getDate().before(endDate)) {
-                            l.add(new OHLC(startDate, open, high, low, close, volume));
-                            startDate = null;
-                        }
-
-                        if (startDate == null) {
-                            c.setTime(currentBar.getDate());
-                            startDate = c.getTime();
-                            c.add(Calendar.MINUTE, timeSpan.getLength());
-                            endDate = c.getTime();
-                            open = high = low = close = null;
-                            volume = 0L;
-                        }
-
-                        if (open == null) {
-                            open = currentBar.getOpen();
-                        }
-                        high = high != null ? Math.max(high, currentBar.getHigh()) : currentBar.getHigh();
-                        low = low != null ? Math.min(low, currentBar.getLow()) : currentBar.getLow();
-                        close = currentBar.getClose();
-                        volume += currentBar.getVolume();
-                    }
-
-                    if (startDate != null) {
-                        l.add(new OHLC(startDate, open, high, low, close, volume));
-                    }
-
-                    bars = l.toArray(new IOHLC[l.size()]);
+                    bars = BarsRollup.aggregate(minuteBars, timeSpan);
                 }
             }
             if (bars != null) {
@@ -415,16 +421,16 @@ public class HistoryDay implements IHistory {
         });
 
         IOHLC[] newBars = l1.toArray(new IOHLC[l1.size()]);
-        if (Arrays.equals(this.bars, newBars)) {
+
+        IBarSeries newSeries = BarSeries.valueOf(newBars);
+        if (newSeries.equals(series)) {
             return;
         }
-
-        IOHLC[] oldBars = this.bars;
-        this.bars = newBars;
+        this.series = newSeries;
 
         updateRange();
 
-        propertyChangeSupport.firePropertyChange(IPropertyConstants.BARS, oldBars, this.bars);
+        propertyChangeSupport.firePropertyChange(IPropertyConstants.BARS, null, newBars);
     }
 
     IOHLC[] getLowestTimespanBars(IStoreProperties storeProperties) {
@@ -449,13 +455,20 @@ public class HistoryDay implements IHistory {
     protected void updateRange() {
         highest = null;
         lowest = null;
-        for (IOHLC b : bars) {
-            if (highest == null || b.getHigh() > highest.getHigh()) {
-                highest = b;
+
+        int highestIndex = -1;
+        int lowestIndex = -1;
+        for (int i = 0; i < series.size(); i++) {
+            if (highestIndex == -1 || series.getHigh(i) > series.getHigh(highestIndex)) {
+                highestIndex = i;
             }
-            if (lowest == null || b.getLow() < lowest.getLow()) {
-                lowest = b;
+            if (lowestIndex == -1 || series.getLow(i) < series.getLow(lowestIndex)) {
+                lowestIndex = i;
             }
         }
+        if (highestIndex != -1) {
+            highest = series.getOHLC(highestIndex);
+            lowest = series.getOHLC(lowestIndex);
+        }
     }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.Date;
+
+/**
+ * Interface to access a time ordered series of OHLC bars stored in
+ * primitive columns.
+ *
+ * <p>Missing prices are represented by <code>Double.NaN</code> and a missing
+ * volume by <code>NO_VOLUME</code>.</p>
+ *
+ * @since 1.0
+ */
+public interface IBarSeries {
+
+    public static final int OPEN = 0;
+    public static final int HIGH = 1;
+    public static final int LOW = 2;
+    public static final int CLOSE = 3;
+    public static final int VOLUME = 4;
+
+    /**
+     * Value returned by <code>getVolume(int)</code> when the volume is unknown.
+     */
+    public static final long NO_VOLUME = Long.MIN_VALUE;
+
+    /**
+     * Returns the number of bars in the series.
+     *
+     * @return the number of bars.
+     */
+    public int size();
+
+    /**
+     * Returns the starting time, in milliseconds, of the bar at the given index.
+     *
+     * @param index the bar index.
+     * @return the time in milliseconds.
+     */
+    public long getTime(int index);
+
+    /**
+     * Returns the starting time of the bar at the given index.
+     *
+     * @param index the bar index.
+     * @return the date.
+     */
+    public Date getDate(int index);
+
+    public double getOpen(int index);
+
+    public double getHigh(int index);
+
+    public double getLow(int index);
+
+    public double getClose(int index);
+
+    public long getVolume(int index);
+
+    /**
+     * Returns the value of a field of the bar at the given index.
+     *
+     * @param field the field, one of <code>OPEN</code>, <code>HIGH</code>, <code>LOW</code>, <code>CLOSE</code> or <code>VOLUME</code>.
+     * @param index the bar index.
+     * @return the value.
+     */
+    public double getValue(int field, int index);
+
+    /**
+     * Returns the values of a field for all bars of the series.
+     *
+     * <p>The returned array may be shared with the series and must not be
+     * modified.</p>
+     *
+     * @param field the field, one of <code>OPEN</code>, <code>HIGH</code>, <code>LOW</code>, <code>CLOSE</code> or <code>VOLUME</code>.
+     * @return the values.
+     */
+    public double[] getValues(int field);
+
+    /**
+     * Returns the index of the first bar starting at or after the given time.
+     *
+     * @param time the time in milliseconds.
+     * @return the bar index, or <code>size()</code> if all bars start before the given time.
+     */
+    public int indexOf(long time);
+
+    /**
+     * Returns a view of a range of bars. The view shares the storage of this series.
+     *
+     * @param fromIndex the index of the first bar, inclusive.
+     * @param toIndex the index of the last bar, exclusive.
+     * @return the view.
+     */
+    public IBarSeries getSubSeries(int fromIndex, int toIndex);
+
+    /**
+     * Returns a view of the bars starting between the given dates, inclusive.
+     * A <code>null</code> date means unbounded.
+     *
+     * @param first the first date.
+     * @param last the last date.
+     * @return the view.
+     */
+    public IBarSeries getSubSeries(Date first, Date last);
+
+    /**
+     * Returns the bar at the given index as an <code>IOHLC</code> object.
+     *
+     * @param index the bar index.
+     * @return the bar.
+     */
+    public IOHLC getOHLC(int index);
+
+    /**
+     * Returns all bars of the series as <code>IOHLC</code> objects.
+     *
+     * @return the bars.
+     */
+    public IOHLC[] toOHLC();
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+/**
+ * Interface to get the microstructure metrics of a Level II book.
+ *
+ * <p>Metrics are computed on the book aggregated by price. Prices are
+ * <code>Double.NaN</code> when the book side they depend on is empty.</p>
+ *
+ * @since 1.0
+ * @see DepthAnalyzer
+ */
+public interface IDepthMetrics {
+
+    /**
+     * Returns the best bid price.
+     *
+     * @return the price.
+     */
+    public double getBid();
+
+    /**
+     * Returns the best ask price.
+     *
+     * @return the price.
+     */
+    public double getAsk();
+
+    /**
+     * Returns the quantity at the best bid price.
+     *
+     * @return the quantity.
+     */
+    public long getBidSize();
+
+    /**
+     * Returns the quantity at the best ask price.
+     *
+     * @return the quantity.
+     */
+    public long getAskSize();
+
+    /**
+     * Returns the difference between the best ask and the best bid prices.
+     *
+     * @return the spread.
+     */
+    public double getSpread();
+
+    /**
+     * Returns the average of the best bid and ask prices.
+     *
+     * @return the mid price.
+     */
+    public double getMidPrice();
+
+    /**
+     * Returns the mid price weighted by the quantities at the best prices, that
+     * moves toward the side with the smaller quantity.
+     *
+     * @return the weighted mid price.
+     */
+    public double getWeightedMidPrice();
+
+    /**
+     * Returns the cumulative bid quantity of the first levels.
+     *
+     * @return the quantity.
+     * @see DepthAnalyzer#getDepthLevels()
+     */
+    public long getBidDepth();
+
+    /**
+     * Returns the cumulative ask quantity of the first levels.
+     *
+     * @return the quantity.
+     * @see DepthAnalyzer#getDepthLevels()
+     */
+    public long getAskDepth();
+
+    /**
+     * Returns the depth imbalance, from -1 when the depth is all on the ask side
+     * to 1 when the depth is all on the bid side.
+     *
+     * @return the imbalance, or <code>Double.NaN</code> if the book is empty.
+     */
+    public double getImbalance();
+
+    /**
+     * Returns the buying pressure, the fraction of the depth on the bid side.
+     *
+     * @return the pressure between 0 and 1, or <code>Double.NaN</code> if the book is empty.
+     */
+    public double getPressure();
+
+    /**
+     * Returns the cumulative bid quantity within the configured number of ticks
+     * from the best bid price.
+     *
+     * @return the quantity.
+     * @see DepthAnalyzer#getTicks()
+     */
+    public long getBidTickDepth();
+
+    /**
+     * Returns the cumulative ask quantity within the configured number of ticks
+     * from the best ask price.
+     *
+     * @return the quantity.
+     * @see DepthAnalyzer#getTicks()
+     */
+    public long getAskTickDepth();
+
+    /**
+     * Returns the quantities of the first bid levels, best price first.
+     *
+     * @return the possibly empty array of quantities.
+     */
+    public long[] getBidLevels();
+
+    /**
+     * Returns the quantities of the first ask levels, best price first.
+     *
+     * @return the possibly empty array of quantities.
+     */
+    public long[] getAskLevels();
+}
@@ -22,6 +22,14 @@ public interface IHistory extends IAdaptable {
 
     public IOHLC[] getOHLC();
 
+    /**
+     * Returns the bars as a primitive backed series.
+     *
+     * @return the bar series.
+     * @since 1.0
+     */
+    public IBarSeries getBarSeries();
+
     public IOHLC getHighest();
 
     public IOHLC getLowest();
@@ -40,5 +48,13 @@ public interface IHistory extends IAdaptable {
 
     public IOHLC[] getAdjustedOHLC();
 
+    /**
+     * Returns the bars adjusted for splits and dividends as a primitive backed series.
+     *
+     * @return the adjusted bar series.
+     * @since 1.0
+     */
+    public IBarSeries getAdjustedBarSeries();
+
     public IHistory[] getDay(Date date);
 }
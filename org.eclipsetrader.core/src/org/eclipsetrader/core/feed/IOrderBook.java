@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+/**
+ * Mutable Level II book with price sorted levels.
+ *
+ * <p>Bid levels are sorted by descending price and ask levels by ascending price,
+ * the best price is at level 0. Sides are identified by the <code>BookDelta.BID</code>
+ * and <code>BookDelta.ASK</code> constants.</p>
+ *
+ * <p>The <code>IBook</code> methods return the proposals of the current snapshot.</p>
+ *
+ * @since 1.0
+ * @see BookDelta
+ */
+public interface IOrderBook extends IBook {
+
+    /**
+     * Gets the number of levels on the given side.
+     *
+     * @param side the book side.
+     * @return the number of levels.
+     */
+    public int getLevelCount(int side);
+
+    /**
+     * Gets the price of a level.
+     *
+     * @param side the book side.
+     * @param level the level index.
+     * @return the price.
+     */
+    public double getPrice(int side, int level);
+
+    /**
+     * Gets the quantity of a level.
+     *
+     * @param side the book side.
+     * @param level the level index.
+     * @return the quantity.
+     */
+    public long getQuantity(int side, int level);
+
+    /**
+     * Gets the number of proposals of a level.
+     *
+     * @param side the book side.
+     * @param level the level index.
+     * @return the number of proposals.
+     */
+    public long getProposals(int side, int level);
+
+    /**
+     * Searches the level with the given price.
+     *
+     * @param side the book side.
+     * @param price the price to search.
+     * @return the index of the first level with the price, or <code>(-(insertion point) - 1)</code>
+     * if there are no levels with that price.
+     */
+    public int indexOf(int side, double price);
+
+    /**
+     * Returns an immutable copy of the book.
+     *
+     * <p>Snapshots are cached, the same instance is returned until the book is
+     * changed, and the entries of the levels not changed since the previous snapshot
+     * are shared between snapshots.</p>
+     *
+     * @return the book snapshot.
+     */
+    public BookSnapshot getSnapshot();
+
+    /**
+     * Checks if the book was changed since the last snapshot was taken.
+     *
+     * @return <code>true</code> if the book was changed.
+     */
+    public boolean hasChanges();
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default implementation of the <code>IOrderBook</code> interface.
+ *
+ * <p>Levels are stored in primitive arrays updated in place, each change is recorded
+ * as a <code>BookDelta</code> published with the next snapshot. The book is intended
+ * to be updated by a single feed thread and read by any number of threads.</p>
+ *
+ * @since 1.0
+ */
+public class OrderBook implements IOrderBook {
+
+    /**
+     * Maximum number of deltas kept between two snapshots, when the limit is exceeded
+     * the deltas are discarded and the next snapshot is published as a full change.
+     */
+    public static final int MAX_PENDING_DELTAS = 4096;
+
+    private static final AtomicLong versionCounter = new AtomicLong();
+
+    private final Side bid = new Side(true);
+    private final Side ask = new Side(false);
+
+    private final boolean recordDeltas;
+    private List<BookDelta> pendingDeltas = new ArrayList<BookDelta>();
+    private boolean deltasOverflow;
+    private boolean changed;
+    private BookSnapshot snapshot;
+
+    public OrderBook() {
+        this(true);
+    }
+
+    /**
+     * Creates a new order book.
+     *
+     * @param recordDeltas <code>true</code> to record the changes published with the snapshots,
+     * <code>false</code> for books that are only read through the level accessors.
+     */
+    public OrderBook(boolean recordDeltas) {
+        this.recordDeltas = recordDeltas;
+    }
+
+    private Side getSide(int side) {
+        if (side == BookDelta.BID) {
+            return bid;
+        }
+        if (side == BookDelta.ASK) {
+            return ask;
+        }
+        throw new IllegalArgumentException("Invalid book side " + side); //$NON-NLS-1$
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IOrderBook#getLevelCount(int)
+     */
+    @Override
+    public synchronized int getLevelCount(int side) {
+        return getSide(side).size;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IOrderBook#getPrice(int, int)
+     */
+    @Override
+    public synchronized double getPrice(int side, int level) {
+        Side s = getSide(side);
+        s.checkIndex(level);
+        return s.price[level];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IOrderBook#getQuantity(int, int)
+     */
+    @Override
+    public synchronized long getQuantity(int side, int level) {
+        Side s = getSide(side);
+        s.checkIndex(level);
+        return s.quantity[level];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IOrderBook#getProposals(int, int)
+     */
+    @Override
+    public synchronized long getProposals(int side, int level) {
+        Side s = getSide(side);
+        s.checkIndex(level);
+        return s.proposals[level];
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IOrderBook#indexOf(int, double)
+     */
+    @Override
+    public synchronized int indexOf(int side, double price) {
+        return getSide(side).indexOf(price);
+    }
+
+    /**
+     * Inserts a new level, shifting down the levels at and below the given index.
+     *
+     * @param side the book side.
+     * @param level the index of the new level, between 0 and the number of levels.
+     * @param price the level price.
+     * @param quantity the level quantity.
+     * @param proposals the number of proposals.
+     */
+    public void insert(int side, int level, double price, long quantity, long proposals) {
+        insert(side, level, 0, price, quantity, proposals, null);
+    }
+
+    /**
+     * Inserts a new level, shifting down the levels at and below the given index.
+     *
+     * @param side the book side.
+     * @param level the index of the new level, between 0 and the number of levels.
+     * @param time the time of the level in milliseconds, or 0 if not available.
+     * @param price the level price.
+     * @param quantity the level quantity.
+     * @param proposals the number of proposals.
+     * @param marketMaker the market maker id, or <code>null</code> if not available.
+     */
+    public synchronized void insert(int side, int level, long time, double price, long quantity, long proposals, String marketMaker) {
+        Side s = getSide(side);
+        if (level < 0 || level > s.size) {
+            throw new IndexOutOfBoundsException("Level " + level + ", size " + s.size); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        s.insert(level, time, price, quantity, proposals, marketMaker);
+        addDelta(side, BookDelta.INSERT, level, price, quantity, proposals);
+    }
+
+    /**
+     * Replaces the values of a level.
+     *
+     * @param side the book side.
+     * @param level the level index.
+     * @param price the level price.
+     * @param quantity the level quantity.
+     * @param proposals the number of proposals.
+     */
+    public void update(int side, int level, double price, long quantity, long proposals) {
+        update(side, level, 0, price, quantity, proposals, null);
+    }
+
+    /**
+     * Replaces the values of a level.
+     *
+     * @param side the book side.
+     * @param level the level index.
+     * @param time the time of the level in milliseconds, or 0 if not available.
+     * @param price the level price.
+     * @param quantity the level quantity.
+     * @param proposals the number of proposals.
+     * @param marketMaker the market maker id, or <code>null</code> if not available.
+     */
+    public synchronized void update(int side, int level, long time, double price, long quantity, long proposals, String marketMaker) {
+        Side s = getSide(side);
+        s.checkIndex(level);
+        s.set(level, time, price, quantity, proposals, marketMaker);
+        addDelta(side, BookDelta.UPDATE, level, price, quantity, proposals);
+    }
+
+    /**
+     * Removes a level, shifting up the levels below the given index.
+     *
+     * @param side the book side.
+     * @param level the level index.
+     */
+    public synchronized void delete(int side, int level) {
+        Side s = getSide(side);
+        s.checkIndex(level);
+        double price = s.price[level];
+        s.delete(level);
+        addDelta(side, BookDelta.DELETE, level, price, 0, 0);
+    }
+
+    /**
+     * Sets the values of a level, for feeds that send the book by level position.
+     *
+     * <p>The level is updated only if the values are changed. Levels past the end of
+     * the book are appended, filling the gap with empty levels.</p>
+     *
+     * @param side the book side.
+     * @param level the level index.
+     * @param price the level price.
+     * @param quantity the level quantity.
+     * @param proposals the number of proposals.
+     * @return <code>true</code> if the book was changed.
+     */
+    public boolean set(int side, int level, double price, long quantity, long proposals) {
+        return set(side, level, 0, price, quantity, proposals, null);
+    }
+
+    /**
+     * Sets the values of a level, for feeds that send the book by level position.
+     *
+     * <p>The level is updated only if the values are changed. Levels past the end of
+     * the book are appended, filling the gap with empty levels.</p>
+     *
+     * @param side the book side.
+     * @param level the level index.
+     * @param time the time of the level in milliseconds, or 0 if not available.
+     * @param price the level price.
+     * @param quantity the level quantity.
+     * @param proposals the number of proposals.
+     * @param marketMaker the market maker id, or <code>null</code> if not available.
+     * @return <code>true</code> if the book was changed.
+     */
+    public synchronized boolean set(int side, int level, long time, double price, long quantity, long proposals, String marketMaker) {
+        Side s = getSide(side);
+        if (level < 0) {
+            throw new IndexOutOfBoundsException("Level " + level); //$NON-NLS-1$
+        }
+        while (s.size < level) {
+            int index = s.size;
+            s.insert(index, 0, 0.0, 0, 0, null);
+            addDelta(side, BookDelta.INSERT, index, 0.0, 0, 0);
+        }
+        if (level == s.size) {
+            s.insert(level, time, price, quantity, proposals, marketMaker);
+            addDelta(side, BookDelta.INSERT, level, price, quantity, proposals);
+            return true;
+        }
+        if (s.equals(level, time, price, quantity, proposals, marketMaker)) {
+            return false;
+        }
+        s.set(level, time, price, quantity, proposals, marketMaker);
+        addDelta(side, BookDelta.UPDATE, level, price, quantity, proposals);
+        return true;
+    }
+
+    /**
+     * Sets the aggregated quantity at the given price, for feeds that send the book
+     * by price.
+     *
+     * <p>The level with the price is inserted at its sorted position if not present,
+     * updated if present, or removed if the quantity is 0.</p>
+     *
+     * @param side the book side.
+     * @param price the level price.
+     * @param quantity the level quantity, or 0 to remove the level.
+     * @param proposals the number of proposals.
+     * @return the index of the changed level, or -1 if the book was not changed.
+     */
+    public synchronized int put(int side, double price, long quantity, long proposals) {
+        Side s = getSide(side);
+        int level = s.indexOf(price);
+        if (level >= 0) {
+            if (quantity == 0) {
+                s.delete(level);
+                addDelta(side, BookDelta.DELETE, level, price, 0, 0);
+                return level;
+            }
+            if (s.equals(level, s.time[level], price, quantity, proposals, s.marketMaker[level])) {
+                return -1;
+            }
+            s.set(level, s.time[level], price, quantity, proposals, s.marketMaker[level]);
+            addDelta(side, BookDelta.UPDATE, level, price, quantity, proposals);
+            return level;
+        }
+        if (quantity == 0) {
+            return -1;
+        }
+        level = -level - 1;
+        s.insert(level, 0, price, quantity, proposals, null);
+        addDelta(side, BookDelta.INSERT, level, price, quantity, proposals);
+        return level;
+    }
+
+    /**
+     * Removes the levels past the given depth.
+     *
+     * @param side the book side.
+     * @param levels the number of levels to keep.
+     */
+    public synchronized void truncate(int side, int levels) {
+        Side s = getSide(side);
+        while (s.size > levels) {
+            int level = s.size - 1;
+            double price = s.price[level];
+            s.delete(level);
+            addDelta(side, BookDelta.DELETE, level, price, 0, 0);
+        }
+    }
+
+    /**
+     * Removes all levels from both sides of the book.
+     */
+    public synchronized void clear() {
+        truncate(BookDelta.BID, 0);
+        truncate(BookDelta.ASK, 0);
+    }
+
+    /**
+     * Applies a level change received from another book.
+     *
+     * @param delta the change to apply.
+     */
+    public synchronized void apply(BookDelta delta) {
+        switch (delta.getAction()) {
+            case BookDelta.INSERT:
+                insert(delta.getSide(), delta.getLevel(), delta.getPrice(), delta.getQuantity(), delta.getProposals());
+                break;
+            case BookDelta.UPDATE:
+                update(delta.getSide(), delta.getLevel(), delta.getPrice(), delta.getQuantity(), delta.getProposals());
+                break;
+            case BookDelta.DELETE:
+                delete(delta.getSide(), delta.getLevel());
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid book delta action " + delta.getAction()); //$NON-NLS-1$
+        }
+    }
+
+    private void addDelta(int side, int action, int level, double price, long quantity, long proposals) {
+        changed = true;
+        if (!recordDeltas || deltasOverflow) {
+            return;
+        }
+        if (pendingDeltas.size() >= MAX_PENDING_DELTAS) {
+            pendingDeltas.clear();
+            deltasOverflow = true;
+            return;
+        }
+        pendingDeltas.add(new BookDelta(side, action, level, price, quantity, proposals));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IOrderBook#hasChanges()
+     */
+    @Override
+    public synchronized boolean hasChanges() {
+        return changed;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IOrderBook#getSnapshot()
+     */
+    @Override
+    public synchronized BookSnapshot getSnapshot() {
+        if (snapshot != null && !hasChanges()) {
+            return snapshot;
+        }
+
+        BookDelta[] deltas = null;
+        if (snapshot != null && recordDeltas && !deltasOverflow) {
+            deltas = pendingDeltas.toArray(new BookDelta[pendingDeltas.size()]);
+        }
+        long baseVersion = snapshot != null ? snapshot.getVersion() : 0;
+
+        snapshot = new BookSnapshot(versionCounter.incrementAndGet(), baseVersion, bid.toEntries(), ask.toEntries(), deltas);
+
+        pendingDeltas.clear();
+        deltasOverflow = false;
+        changed = false;
+
+        return snapshot;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBook#getBidProposals()
+     */
+    @Override
+    public IBookEntry[] getBidProposals() {
+        return getSnapshot().getBidProposals();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IBook#getAskProposals()
+     */
+    @Override
+    public IBookEntry[] getAskProposals() {
+        return getSnapshot().getAskProposals();
+    }
+
+    private static class Side {
+
+        private final boolean descending;
+
+        long[] time = new long[16];
+        double[] price = new double[16];
+        long[] quantity = new long[16];
+        long[] proposals = new long[16];
+        String[] marketMaker = new String[16];
+        IBookEntry[] entry = new IBookEntry[16];
+        int size;
+
+        Side(boolean descending) {
+            this.descending = descending;
+        }
+
+        void checkIndex(int level) {
+            if (level < 0 || level >= size) {
+                throw new IndexOutOfBoundsException("Level " + level + ", size " + size); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        int indexOf(double value) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int c = Double.compare(price[mid], value);
+                if (descending) {
+                    c = -c;
+                }
+                if (c < 0) {
+                    low = mid + 1;
+                }
+                else if (c > 0) {
+                    high = mid - 1;
+                }
+                else {
+                    while (mid > 0 && price[mid - 1] == value) {
+                        mid--;
+                    }
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        boolean equals(int level, long time, double price, long quantity, long proposals, String marketMaker) {
+            return this.time[level] == time && this.price[level] == price && this.quantity[level] == quantity && this.proposals[level] == proposals && (this.marketMaker[level] == marketMaker || marketMaker != null && marketMaker.equals(this.marketMaker[level]));
+        }
+
+        void set(int level, long time, double price, long quantity, long proposals, String marketMaker) {
+            this.time[level] = time;
+            this.price[level] = price;
+            this.quantity[level] = quantity;
+            this.proposals[level] = proposals;
+            this.marketMaker[level] = marketMaker;
+            this.entry[level] = null;
+        }
+
+        void insert(int level, long time, double price, long quantity, long proposals, String marketMaker) {
+            if (size == this.price.length) {
+                grow();
+            }
+            int length = size - level;
+            if (length != 0) {
+                System.arraycopy(this.time, level, this.time, level + 1, length);
+                System.arraycopy(this.price, level, this.price, level + 1, length);
+                System.arraycopy(this.quantity, level, this.quantity, level + 1, length);
+                System.arraycopy(this.proposals, level, this.proposals, level + 1, length);
+                System.arraycopy(this.marketMaker, level, this.marketMaker, level + 1, length);
+                System.arraycopy(this.entry, level, this.entry, level + 1, length);
+            }
+            size++;
+            set(level, time, price, quantity, proposals, marketMaker);
+        }
+
+        void delete(int level) {
+            int length = size - level - 1;
+            if (length != 0) {
+                System.arraycopy(time, level + 1, time, level, length);
+                System.arraycopy(price, level + 1, price, level, length);
+                System.arraycopy(quantity, level + 1, quantity, level, length);
+                System.arraycopy(proposals, level + 1, proposals, level, length);
+                System.arraycopy(marketMaker, level + 1, marketMaker, level, length);
+                System.arraycopy(entry, level + 1, entry, level, length);
+            }
+            size--;
+            marketMaker[size] = null;
+            entry[size] = null;
+        }
+
+        private void grow() {
+            int capacity = price.length * 2;
+
+            long[] newTime = new long[capacity];
+            System.arraycopy(time, 0, newTime, 0, size);
+            time = newTime;
+
+            double[] newPrice = new double[capacity];
+            System.arraycopy(price, 0, newPrice, 0, size);
+            price = newPrice;
+
+            long[] newQuantity = new long[capacity];
+            System.arraycopy(quantity, 0, newQuantity, 0, size);
+            quantity = newQuantity;
+
+            long[] newProposals = new long[capacity];
+            System.arraycopy(proposals, 0, newProposals, 0, size);
+            proposals = newProposals;
+
+            String[] newMarketMaker = new String[capacity];
+            System.arraycopy(marketMaker, 0, newMarketMaker, 0, size);
+            marketMaker = newMarketMaker;
+
+            IBookEntry[] newEntry = new IBookEntry[capacity];
+            System.arraycopy(entry, 0, newEntry, 0, size);
+            entry = newEntry;
+        }
+
+        IBookEntry[] toEntries() {
+            IBookEntry[] result = new IBookEntry[size];
+            for (int i = 0; i < size; i++) {
+                if (entry[i] == null) {
+                    entry[i] = new BookEntry(time[i] != 0 ? new Date(time[i]) : null, price[i], quantity[i], proposals[i], marketMaker[i]);
+                }
+                result[i] = entry[i];
+            }
+            return result;
+        }
+    }
+}
@@ -12,17 +12,17 @@
 package org.eclipsetrader.core.feed;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.ILock;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.internal.CoreActivator;
 
@@ -30,29 +30,67 @@ import org.eclipsetrader.core.internal.CoreActivator;
  * Default implementation of the <code>IPricingEnvironment</code> interface.
  * <p>Clients sets pricing values using setters methods.</p>
  *
+ * <p>The setters are safe to call from multiple threads. Securities with
+ * pending changes are queued and only those are visited when listeners are
+ * notified. Notifications are delivered by one thread at a time, changes made
+ * by other threads while listeners are running are delivered by the same
+ * thread before it returns.</p>
+ *
+ * <p>When conflation is enabled, pending trade, quote, OHL, last close and
+ * book changes of a security are merged so listeners that fall behind only
+ * receive the latest value. Bars are never conflated.</p>
+ *
  * @since 1.0
  */
 public class PricingEnvironment implements IPricingEnvironment {
 
+    private static final int TRADE = 0;
+    private static final int QUOTE = 1;
+    private static final int TODAY_OHL = 2;
+    private static final int LAST_CLOSE = 3;
+    private static final int BOOK = 4;
+    private static final int BAR = -1;
+
     private ListenerList listeners = new ListenerList(ListenerList.IDENTITY);
-    private boolean doNotify = true;
+    private volatile boolean conflate;
+    private AsyncPricingListener.Policy dispatchPolicy;
+    private int dispatchCapacity = AsyncPricingListener.DEFAULT_CAPACITY;
 
     class PricingStatus {
 
-        ITrade trade;
-        IQuote quote;
-        ITodayOHL todayOHL;
-        ILastClose lastClose;
-        IBook book;
+        final ISecurity security;
+
+        volatile ITrade trade;
+        volatile IQuote quote;
+        volatile ITodayOHL todayOHL;
+        volatile ILastClose lastClose;
+        volatile IBook book;
         List<PricingDelta> deltas = new ArrayList<PricingDelta>();
+        List<Integer> types = new ArrayList<Integer>();
+        boolean queued;
+
+        PricingStatus(ISecurity security) {
+            this.security = security;
+        }
     }
 
-    private Map<ISecurity, PricingStatus> map = new HashMap<ISecurity, PricingStatus>();
+    private ConcurrentHashMap<ISecurity, PricingStatus> map = new ConcurrentHashMap<ISecurity, PricingStatus>();
+    private Queue<PricingStatus> dirtyQueue = new ConcurrentLinkedQueue<PricingStatus>();
 
-    private final ILock lock;
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final ThreadLocal<int[]> batchDepth = new ThreadLocal<int[]>() {
+
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
 
     public PricingEnvironment() {
-        lock = Job.getJobManager().newLock();
+    }
+
+    public PricingEnvironment(boolean conflate) {
+        this.conflate = conflate;
     }
 
     /* (non-Javadoc)
@@ -60,8 +98,29 @@ public class PricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public void dispose() {
+        Object[] l = listeners.getListeners();
+        for (int i = 0; i < l.length; i++) {
+            if (l[i] instanceof AsyncPricingListener) {
+                ((AsyncPricingListener) l[i]).dispose();
+            }
+        }
         listeners.clear();
         map.clear();
+        dirtyQueue.clear();
+    }
+
+    public boolean isConflate() {
+        return conflate;
+    }
+
+    /**
+     * Sets whether pending changes of the same type are merged before being
+     * delivered to the listeners.
+     *
+     * @param conflate <code>true</code> to merge pending changes.
+     */
+    public void setConflate(boolean conflate) {
+        this.conflate = conflate;
     }
 
     /* (non-Javadoc)
@@ -69,7 +128,12 @@ public class PricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public void addPricingListener(IPricingListener listener) {
-        listeners.add(listener);
+        if (dispatchPolicy != null) {
+            listeners.add(new AsyncPricingListener(listener, dispatchPolicy, dispatchCapacity));
+        }
+        else {
+            listeners.add(listener);
+        }
     }
 
     /* (non-Javadoc)
@@ -77,7 +141,42 @@ public class PricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public void removePricingListener(IPricingListener listener) {
-        listeners.remove(listener);
+        AsyncPricingListener asyncListener = getAsyncListener(listener);
+        if (asyncListener != null) {
+            listeners.remove(asyncListener);
+            asyncListener.dispose();
+        }
+        else {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Sets the environment to notify the listeners added afterward from a dedicated
+     * thread, so slow listeners don't delay the feed.
+     *
+     * @param policy the policy to apply when a listener falls behind, or <code>null</code> to notify synchronously.
+     * @param capacity the maximum number of events queued for each listener.
+     */
+    public void setAsyncDispatch(AsyncPricingListener.Policy policy, int capacity) {
+        this.dispatchPolicy = policy;
+        this.dispatchCapacity = capacity;
+    }
+
+    /**
+     * Returns the asynchronous dispatcher of a listener, used to read the queue metrics.
+     *
+     * @param listener the listener.
+     * @return the dispatcher, or <code>null</code> if the listener is notified synchronously.
+     */
+    public AsyncPricingListener getAsyncListener(IPricingListener listener) {
+        Object[] l = listeners.getListeners();
+        for (int i = 0; i < l.length; i++) {
+            if (l[i] instanceof AsyncPricingListener && ((AsyncPricingListener) l[i]).getListener() == listener) {
+                return (AsyncPricingListener) l[i];
+            }
+        }
+        return null;
     }
 
     /* (non-Javadoc)
@@ -85,7 +184,8 @@ public class PricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public ITrade getTrade(ISecurity security) {
-        return map.get(security) != null ? map.get(security).trade : null;
+        PricingStatus status = map.get(security);
+        return status != null ? status.trade : null;
     }
 
     /**
@@ -95,18 +195,17 @@ public class PricingEnvironment implements IPricingEnvironment {
      * @param trade the new trade value.
      */
     public void setTrade(ISecurity security, ITrade trade) {
-        PricingStatus status = map.get(security);
-        if (status == null) {
-            status = new PricingStatus();
-            map.put(security, status);
-        }
-        Object oldValue = status.trade;
-        if (oldValue == null && trade != null || oldValue != null && !oldValue.equals(trade)) {
-            status.trade = trade;
-            status.deltas.add(new PricingDelta(oldValue, trade));
-            if (doNotify) {
-                notifyListeners();
+        PricingStatus status = getOrCreateStatus(security);
+        synchronized (status) {
+            Object oldValue = status.trade;
+            if (!isChanged(oldValue, trade)) {
+                return;
             }
+            status.trade = trade;
+            addDelta(status, TRADE, new PricingDelta(oldValue, trade));
+        }
+        if (isNotify()) {
+            notifyListeners();
         }
     }
 
@@ -115,7 +214,8 @@ public class PricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public IQuote getQuote(ISecurity security) {
-        return map.get(security) != null ? map.get(security).quote : null;
+        PricingStatus status = map.get(security);
+        return status != null ? status.quote : null;
     }
 
     /**
@@ -125,18 +225,17 @@ public class PricingEnvironment implements IPricingEnvironment {
      * @param quote the new quote value.
      */
     public void setQuote(ISecurity security, IQuote quote) {
-        PricingStatus status = map.get(security);
-        if (status == null) {
-            status = new PricingStatus();
-            map.put(security, status);
-        }
-        Object oldValue = status.quote;
-        if (oldValue == null && quote != null || oldValue != null && !oldValue.equals(quote)) {
-            status.quote = quote;
-            status.deltas.add(new PricingDelta(oldValue, quote));
-            if (doNotify) {
-                notifyListeners();
+        PricingStatus status = getOrCreateStatus(security);
+        synchronized (status) {
+            Object oldValue = status.quote;
+            if (!isChanged(oldValue, quote)) {
+                return;
             }
+            status.quote = quote;
+            addDelta(status, QUOTE, new PricingDelta(oldValue, quote));
+        }
+        if (isNotify()) {
+            notifyListeners();
         }
     }
 
@@ -145,7 +244,8 @@ public class PricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public ITodayOHL getTodayOHL(ISecurity security) {
-        return map.get(security) != null ? map.get(security).todayOHL : null;
+        PricingStatus status = map.get(security);
+        return status != null ? status.todayOHL : null;
     }
 
     /**
@@ -155,18 +255,17 @@ public class PricingEnvironment implements IPricingEnvironment {
      * @param todayOHL the new OHL value.
      */
     public void setTodayOHL(ISecurity security, ITodayOHL todayOHL) {
-        PricingStatus status = map.get(security);
-        if (status == null) {
-            status = new PricingStatus();
-            map.put(security, status);
-        }
-        Object oldValue = status.todayOHL;
-        if (oldValue == null && todayOHL != null || oldValue != null && !oldValue.equals(todayOHL)) {
-            status.todayOHL = todayOHL;
-            status.deltas.add(new PricingDelta(oldValue, todayOHL));
-            if (doNotify) {
-                notifyListeners();
+        PricingStatus status = getOrCreateStatus(security);
+        synchronized (status) {
+            Object oldValue = status.todayOHL;
+            if (!isChanged(oldValue, todayOHL)) {
+                return;
             }
+            status.todayOHL = todayOHL;
+            addDelta(status, TODAY_OHL, new PricingDelta(oldValue, todayOHL));
+        }
+        if (isNotify()) {
+            notifyListeners();
         }
     }
 
@@ -175,7 +274,8 @@ public class PricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public ILastClose getLastClose(ISecurity security) {
-        return map.get(security) != null ? map.get(security).lastClose : null;
+        PricingStatus status = map.get(security);
+        return status != null ? status.lastClose : null;
     }
 
     /**
@@ -185,18 +285,17 @@ public class PricingEnvironment implements IPricingEnvironment {
      * @param lastClose the new last close value.
      */
     public void setLastClose(ISecurity security, ILastClose lastClose) {
-        PricingStatus status = map.get(security);
-        if (status == null) {
-            status = new PricingStatus();
-            map.put(security, status);
-        }
-        Object oldValue = status.lastClose;
-        if (oldValue == null && lastClose != null || oldValue != null && !oldValue.equals(lastClose)) {
-            status.lastClose = lastClose;
-            status.deltas.add(new PricingDelta(oldValue, lastClose));
-            if (doNotify) {
-                notifyListeners();
+        PricingStatus status = getOrCreateStatus(security);
+        synchronized (status) {
+            Object oldValue = status.lastClose;
+            if (!isChanged(oldValue, lastClose)) {
+                return;
             }
+            status.lastClose = lastClose;
+            addDelta(status, LAST_CLOSE, new PricingDelta(oldValue, lastClose));
+        }
+        if (isNotify()) {
+            notifyListeners();
         }
     }
 
@@ -205,7 +304,8 @@ public class PricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public IBook getBook(ISecurity security) {
-        return map.get(security) != null ? map.get(security).book : null;
+        PricingStatus status = map.get(security);
+        return status != null ? status.book : null;
     }
 
     /**
@@ -215,55 +315,94 @@ public class PricingEnvironment implements IPricingEnvironment {
      * @param book the new book values.
      */
     public void setBook(ISecurity security, IBook book) {
-        PricingStatus status = map.get(security);
-        if (status == null) {
-            status = new PricingStatus();
-            map.put(security, status);
-        }
-        Object oldValue = status.book;
-        if (oldValue == null && book != null || oldValue != null && !oldValue.equals(book)) {
-            status.book = book;
-            status.deltas.add(new PricingDelta(oldValue, book));
-            if (doNotify) {
-                notifyListeners();
+        PricingStatus status = getOrCreateStatus(security);
+        synchronized (status) {
+            Object oldValue = status.book;
+            if (!isChanged(oldValue, book)) {
+                return;
             }
+            status.book = book;
+            addDelta(status, BOOK, new PricingDelta(oldValue, book));
+        }
+        if (isNotify()) {
+            notifyListeners();
         }
     }
 
     public void setBarOpen(ISecurity security, IBarOpen bar) {
-        PricingStatus status = map.get(security);
-        if (status == null) {
-            status = new PricingStatus();
-            map.put(security, status);
+        PricingStatus status = getOrCreateStatus(security);
+        synchronized (status) {
+            addDelta(status, BAR, new PricingDelta(null, bar));
         }
-        status.deltas.add(new PricingDelta(null, bar));
-        if (doNotify) {
+        if (isNotify()) {
             notifyListeners();
         }
     }
 
     public void setBar(ISecurity security, IBar bar) {
+        PricingStatus status = getOrCreateStatus(security);
+        synchronized (status) {
+            addDelta(status, BAR, new PricingDelta(null, bar));
+        }
+        if (isNotify()) {
+            notifyListeners();
+        }
+    }
+
+    private PricingStatus getOrCreateStatus(ISecurity security) {
         PricingStatus status = map.get(security);
         if (status == null) {
-            status = new PricingStatus();
-            map.put(security, status);
+            PricingStatus newStatus = new PricingStatus(security);
+            status = map.putIfAbsent(security, newStatus);
+            if (status == null) {
+                status = newStatus;
+            }
         }
-        status.deltas.add(new PricingDelta(null, bar));
-        if (doNotify) {
-            notifyListeners();
+        return status;
+    }
+
+    private boolean isChanged(Object oldValue, Object newValue) {
+        return oldValue == null && newValue != null || oldValue != null && !oldValue.equals(newValue);
+    }
+
+    /**
+     * Adds a delta to the pending changes of a security and queues the security
+     * for notification. Must be called while holding the status lock.
+     */
+    private void addDelta(PricingStatus status, int type, PricingDelta delta) {
+        if (conflate && type != BAR) {
+            int index = status.types.indexOf(type);
+            if (index != -1) {
+                PricingDelta pendingDelta = status.deltas.get(index);
+                status.deltas.set(index, new PricingDelta(pendingDelta.getOldValue(), delta.getNewValue()));
+                return;
+            }
+        }
+        status.deltas.add(delta);
+        status.types.add(type);
+        if (!status.queued) {
+            status.queued = true;
+            dirtyQueue.offer(status);
         }
     }
 
+    private boolean isNotify() {
+        return batchDepth.get()[0] == 0;
+    }
+
     /**
      * Updates a set of quotes in a single batch. Events are notified to the listeners
      * when the runnable returns.
      *
+     * <p>Batches only defer the notifications of changes made by the calling
+     * thread, other threads can update prices concurrently.</p>
+     *
      * @param runnable the runnable to run.
      */
     public void runBatch(Runnable runnable) {
+        int[] depth = batchDepth.get();
         try {
-            lock.acquire();
-            doNotify = false;
+            depth[0]++;
             try {
                 runnable.run();
             } catch (Exception e) {
@@ -273,44 +412,64 @@ public class PricingEnvironment implements IPricingEnvironment {
                 Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error running pricing environment batch", e); //$NON-NLS-1$
                 CoreActivator.getDefault().getLog().log(status);
             }
-            notifyListeners();
-            doNotify = true;
-        } catch (Exception e) {
-            Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error running pricing environment batch", e); //$NON-NLS-1$
-            CoreActivator.getDefault().getLog().log(status);
         } finally {
-            lock.release();
+            depth[0]--;
+        }
+        if (depth[0] == 0) {
+            try {
+                notifyListeners();
+            } catch (Exception e) {
+                Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error running pricing environment batch", e); //$NON-NLS-1$
+                CoreActivator.getDefault().getLog().log(status);
+            }
         }
     }
 
     /**
      * Notify all listeners of changes occurred since the last notification.
+     *
+     * <p>If another thread is already notifying the listeners, returns immediately
+     * and the pending changes are delivered by that thread.</p>
      */
     protected void notifyListeners() {
-        Object[] l = listeners.getListeners();
-        for (ISecurity security : map.keySet()) {
-            PricingStatus status = map.get(security);
-            if (status == null || status.deltas.size() == 0) {
-                continue;
-            }
-            final PricingEvent event = new PricingEvent(security, status.deltas.toArray(new PricingDelta[status.deltas.size()]));
-            for (int i = 0; i < l.length; i++) {
-                final IPricingListener listener = (IPricingListener) l[i];
-                SafeRunner.run(new ISafeRunnable() {
-
-                    @Override
-                    public void run() throws Exception {
-                        listener.pricingUpdate(event);
+        while (!dirtyQueue.isEmpty() && dispatching.compareAndSet(false, true)) {
+            try {
+                PricingStatus status;
+                while ((status = dirtyQueue.poll()) != null) {
+                    PricingDelta[] deltas;
+                    synchronized (status) {
+                        deltas = status.deltas.toArray(new PricingDelta[status.deltas.size()]);
+                        status.deltas.clear();
+                        status.types.clear();
+                        status.queued = false;
                     }
-
-                    @Override
-                    public void handleException(Throwable exception) {
-                        Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error running pricing environment listener", exception); //$NON-NLS-1$
-                        CoreActivator.log(status);
+                    if (deltas.length != 0) {
+                        fireEvent(new PricingEvent(status.security, deltas));
                     }
-                });
+                }
+            } finally {
+                dispatching.set(false);
             }
-            status.deltas.clear();
+        }
+    }
+
+    private void fireEvent(final PricingEvent event) {
+        Object[] l = listeners.getListeners();
+        for (int i = 0; i < l.length; i++) {
+            final IPricingListener listener = (IPricingListener) l[i];
+            SafeRunner.run(new ISafeRunnable() {
+
+                @Override
+                public void run() throws Exception {
+                    listener.pricingUpdate(event);
+                }
+
+                @Override
+                public void handleException(Throwable exception) {
+                    Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error running pricing environment listener", exception); //$NON-NLS-1$
+                    CoreActivator.log(status);
+                }
+            });
         }
     }
 
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Bounded least-recently-used cache of history subsets.
+ *
+ * <p>The most recently used subsets are strongly referenced. Subsets evicted
+ * from the cache are tracked with weak references until they are no longer
+ * in use, so callers still holding them continue to receive updates.</p>
+ */
+class SubsetCache<K, V> {
+
+    public static final int DEFAULT_SIZE = 16;
+
+    private final int maxSize;
+    private final Map<K, V> map;
+    private final Map<K, WeakReference<V>> evicted = new HashMap<K, WeakReference<V>>();
+
+    public SubsetCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    @SuppressWarnings("serial")
+    public SubsetCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<K, V>(maxSize + 1, 1.0f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Entry<K, V> eldest) {
+                if (size() > SubsetCache.this.maxSize) {
+                    evicted.put(eldest.getKey(), new WeakReference<V>(eldest.getValue()));
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value == null) {
+            WeakReference<V> reference = evicted.remove(key);
+            value = reference != null ? reference.get() : null;
+            if (value != null) {
+                map.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        evicted.remove(key);
+        map.put(key, value);
+        purge();
+    }
+
+    /**
+     * Returns a copy of all subsets still in use, including those evicted
+     * from the cache but not yet garbage collected.
+     *
+     * @return the subsets map.
+     */
+    public synchronized Map<K, V> snapshot() {
+        Map<K, V> result = new HashMap<K, V>(map);
+        for (Iterator<Entry<K, WeakReference<V>>> iter = evicted.entrySet().iterator(); iter.hasNext();) {
+            Entry<K, WeakReference<V>> entry = iter.next();
+            V value = entry.getValue().get();
+            if (value == null) {
+                iter.remove();
+                continue;
+            }
+            result.put(entry.getKey(), value);
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    private void purge() {
+        for (Iterator<WeakReference<V>> iter = evicted.values().iterator(); iter.hasNext();) {
+            if (iter.next().get() == null) {
+                iter.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.internal.CoreActivator;
+
+/**
+ * Append-only binary log of the quote updates received from the feed connectors.
+ *
+ * <p>A journal file is written for each trading day in the journal directory. Files
+ * are memory-mapped in segments, so appending a record is a copy to the mapped memory
+ * and the operating system writes the pages to disk. Records can be read back with a
+ * <code>TickJournalReader</code>.</p>
+ *
+ * <p>Connectors deliver the same event instance to all the listeners of a subscription,
+ * the events already journaled are recognized and skipped so more pricing environments
+ * can share the same journal.</p>
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.feed.TickJournalReader
+ * @see org.eclipsetrader.core.feed.TickReplayConnector
+ */
+public class TickJournal {
+
+    public static final String FILE_EXTENSION = ".ticks"; //$NON-NLS-1$
+
+    static final int MAGIC = 0x54434B31;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+
+    static final byte RECORD_SYMBOL = 1;
+    static final byte RECORD_EVENT = 2;
+
+    static final byte ITEM_TRADE = 1;
+    static final byte ITEM_QUOTE = 2;
+    static final byte ITEM_TODAY_OHL = 3;
+    static final byte ITEM_LAST_CLOSE = 4;
+    static final byte ITEM_PRICE = 5;
+    static final byte ITEM_BOOK = 6;
+    static final byte ITEM_BOOK_DELTAS = 7;
+
+    static final int SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private static class SymbolEntry {
+
+        int id;
+        QuoteEvent lastEvent;
+        long bookVersion = -1;
+
+        SymbolEntry(int id) {
+            this.id = id;
+        }
+    }
+
+    private final File directory;
+    private final SimpleDateFormat fileNameFormat = new SimpleDateFormat("yyyyMMdd"); //$NON-NLS-1$
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segmentStart;
+    private long dayEnd;
+    private boolean disposed;
+
+    private Map<String, SymbolEntry> symbols = new HashMap<String, SymbolEntry>();
+    private ByteBuffer record = ByteBuffer.allocate(4096);
+
+    public TickJournal(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the file currently written.
+     *
+     * @return the file, or <code>null</code> if nothing was written yet.
+     */
+    public synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the journal file of the given day.
+     *
+     * @param date the day.
+     * @return the file.
+     */
+    public File getFile(Date date) {
+        synchronized (fileNameFormat) {
+            return new File(directory, fileNameFormat.format(date) + FILE_EXTENSION);
+        }
+    }
+
+    /**
+     * Returns the existing journal files of the days between the given dates.
+     *
+     * @param begin the first day.
+     * @param end the last day.
+     * @return the files sorted by day, possibly empty.
+     */
+    public File[] getFiles(Date begin, Date end) {
+        List<File> list = new ArrayList<File>();
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(begin);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        while (!calendar.getTime().after(end)) {
+            File file = getFile(calendar.getTime());
+            if (file.isFile()) {
+                list.add(file);
+            }
+            calendar.add(Calendar.DATE, 1);
+        }
+
+        return list.toArray(new File[list.size()]);
+    }
+
+    /**
+     * Appends the updates carried by an event received from a subscription.
+     *
+     * <p>Errors are logged and close the journal, the next append opens it again.
+     * Appends to a disposed journal are ignored.</p>
+     *
+     * @param event the event to append.
+     */
+    public void append(QuoteEvent event) {
+        append(System.currentTimeMillis(), event);
+    }
+
+    /**
+     * Appends the updates carried by an event with the given receive time.
+     *
+     * @param time the receive time, in milliseconds.
+     * @param event the event to append.
+     */
+    public synchronized void append(long time, QuoteEvent event) {
+        if (disposed || event.getIdentifier() == null || event.getIdentifier().getSymbol() == null) {
+            return;
+        }
+        try {
+            if (channel == null || time >= dayEnd) {
+                open(time);
+            }
+
+            String symbol = event.getIdentifier().getSymbol();
+            SymbolEntry entry = symbols.get(symbol);
+            if (entry == null) {
+                entry = new SymbolEntry(symbols.size());
+                symbols.put(symbol, entry);
+                beginRecord(RECORD_SYMBOL, time, entry.id);
+                putString(symbol);
+                endRecord();
+            }
+            else if (entry.lastEvent == event) {
+                return;
+            }
+            entry.lastEvent = event;
+
+            QuoteDelta[] delta = event.getDelta();
+            beginRecord(RECORD_EVENT, time, entry.id);
+            int countPosition = record.position();
+            record.putShort((short) 0);
+            short count = 0;
+            for (int i = 0; i < delta.length; i++) {
+                if (putItem(entry, delta[i].getNewValue())) {
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return;
+            }
+            record.putShort(countPosition, count);
+            endRecord();
+        } catch (IOException e) {
+            Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error writing tick journal " + file, e); //$NON-NLS-1$
+            CoreActivator.log(status);
+            close();
+        }
+    }
+
+    /**
+     * Forces the written records to the storage device.
+     */
+    public synchronized void flush() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Flushes and closes the current journal file.
+     */
+    public synchronized void close() {
+        flush();
+        buffer = null;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error closing tick journal " + file, e); //$NON-NLS-1$
+            CoreActivator.log(status);
+        }
+        channel = null;
+        randomAccessFile = null;
+        symbols.clear();
+    }
+
+    /**
+     * Closes the journal for good, the files are not opened again by later appends.
+     */
+    public synchronized void dispose() {
+        disposed = true;
+        close();
+    }
+
+    public synchronized boolean isDisposed() {
+        return disposed;
+    }
+
+    private void open(long time) throws IOException {
+        close();
+
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        c.add(Calendar.DATE, 1);
+        dayEnd = c.getTimeInMillis();
+
+        directory.mkdirs();
+        file = getFile(new Date(time));
+
+        long position = HEADER_SIZE;
+        if (file.exists() && file.length() != 0) {
+            TickJournalReader reader = new TickJournalReader(file);
+            try {
+                while (reader.next()) {
+                }
+                String[] s = reader.getSymbols();
+                for (int i = 0; i < s.length; i++) {
+                    symbols.put(s[i], new SymbolEntry(i));
+                }
+                position = reader.getPosition();
+            } finally {
+                reader.close();
+            }
+        }
+
+        randomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+        channel = randomAccessFile.getChannel();
+        map(position > HEADER_SIZE ? position : 0, SEGMENT_SIZE);
+        if (position == HEADER_SIZE) {
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+        }
+    }
+
+    private void map(long position, int size) throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        segmentStart = position;
+    }
+
+    private void beginRecord(byte kind, long time, int symbolId) {
+        record.clear();
+        record.putInt(0);
+        record.put(kind);
+        record.putLong(time);
+        record.putInt(symbolId);
+    }
+
+    private void endRecord() throws IOException {
+        record.putInt(0, record.position() - 4);
+        record.flip();
+
+        // Keeps room for the zero length that marks the end of the records
+        if (buffer.remaining() < record.remaining() + 4) {
+            map(segmentStart + buffer.position(), Math.max(SEGMENT_SIZE, record.remaining() + 4));
+        }
+        buffer.put(record);
+    }
+
+    private void ensureCapacity(int size) {
+        if (record.remaining() < size) {
+            ByteBuffer newRecord = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + size));
+            record.flip();
+            newRecord.put(record);
+            record = newRecord;
+        }
+    }
+
+    private boolean putItem(SymbolEntry entry, Object value) {
+        if (value instanceof ITrade) {
+            ITrade trade = (ITrade) value;
+            ensureCapacity(33);
+            record.put(ITEM_TRADE);
+            putDate(trade.getTime());
+            putDouble(trade.getPrice());
+            putLong(trade.getSize());
+            putLong(trade.getVolume());
+        }
+        else if (value instanceof IQuote) {
+            IQuote quote = (IQuote) value;
+            ensureCapacity(33);
+            record.put(ITEM_QUOTE);
+            putDouble(quote.getBid());
+            putDouble(quote.getAsk());
+            putLong(quote.getBidSize());
+            putLong(quote.getAskSize());
+        }
+        else if (value instanceof ITodayOHL) {
+            ITodayOHL todayOHL = (ITodayOHL) value;
+            ensureCapacity(25);
+            record.put(ITEM_TODAY_OHL);
+            putDouble(todayOHL.getOpen());
+            putDouble(todayOHL.getHigh());
+            putDouble(todayOHL.getLow());
+        }
+        else if (value instanceof ILastClose) {
+            ILastClose lastClose = (ILastClose) value;
+            ensureCapacity(17);
+            record.put(ITEM_LAST_CLOSE);
+            putDouble(lastClose.getPrice());
+            putDate(lastClose.getDate());
+        }
+        else if (value instanceof IPrice) {
+            IPrice price = (IPrice) value;
+            ensureCapacity(17);
+            record.put(ITEM_PRICE);
+            putDate(price.getTime());
+            putDouble(price.getPrice());
+        }
+        else if (value instanceof IBook) {
+            putBook(entry, (IBook) value);
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
+    private void putBook(SymbolEntry entry, IBook book) {
+        if (book instanceof BookSnapshot) {
+            BookSnapshot snapshot = (BookSnapshot) book;
+            BookDelta[] deltas = snapshot.getDeltas();
+            boolean chained = deltas != null && snapshot.getBaseVersion() == entry.bookVersion;
+            entry.bookVersion = snapshot.getVersion();
+            if (chained) {
+                ensureCapacity(5 + deltas.length * 30);
+                record.put(ITEM_BOOK_DELTAS);
+                record.putInt(deltas.length);
+                for (int i = 0; i < deltas.length; i++) {
+                    record.put((byte) deltas[i].getSide());
+                    record.put((byte) deltas[i].getAction());
+                    record.putInt(deltas[i].getLevel());
+                    record.putDouble(deltas[i].getPrice());
+                    record.putLong(deltas[i].getQuantity());
+                    record.putLong(deltas[i].getProposals());
+                }
+                return;
+            }
+        }
+        else {
+            entry.bookVersion = -1;
+        }
+
+        ensureCapacity(1);
+        record.put(ITEM_BOOK);
+        putBookEntries(book.getBidProposals());
+        putBookEntries(book.getAskProposals());
+    }
+
+    private void putBookEntries(IBookEntry[] entries) {
+        int length = entries != null ? entries.length : 0;
+        ensureCapacity(4);
+        record.putInt(length);
+        for (int i = 0; i < length; i++) {
+            ensureCapacity(32);
+            IBookEntry bookEntry = entries[i];
+            putDate(bookEntry != null ? bookEntry.getTime() : null);
+            putDouble(bookEntry != null ? bookEntry.getPrice() : null);
+            putLong(bookEntry != null ? bookEntry.getQuantity() : null);
+            putLong(bookEntry != null ? bookEntry.getProposals() : null);
+            putString(bookEntry != null ? bookEntry.getMarketMaker() : null);
+        }
+    }
+
+    private void putDouble(Double value) {
+        record.putDouble(value != null ? value : Double.NaN);
+    }
+
+    private void putLong(Long value) {
+        record.putLong(value != null ? value : Long.MIN_VALUE);
+    }
+
+    private void putDate(Date value) {
+        record.putLong(value != null ? value.getTime() : Long.MIN_VALUE);
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureCapacity(2);
+            record.putShort((short) -1);
+            return;
+        }
+        byte[] b;
+        try {
+            b = value.getBytes("UTF-8"); //$NON-NLS-1$
+        } catch (IOException e) {
+            b = value.getBytes();
+        }
+        ensureCapacity(2 + b.length);
+        record.putShort((short) b.length);
+        record.put(b);
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the records of a tick journal file.
+ *
+ * <p>The file is memory-mapped in windows and the records are decoded in place. Level II
+ * books are rebuilt from the journaled changes, so the books returned for a symbol are
+ * <code>BookSnapshot</code>s that follow each other.</p>
+ *
+ * <p>Readers that only need trades and quotes, like the simulation, can walk the records
+ * with <code>nextRecord()</code> and <code>nextItem()</code> instead. These read the
+ * values straight from the mapped buffer into primitive fields, without allocating objects,
+ * and skip all other items without decoding them. Books are not rebuilt in this mode, so
+ * a reader should use either <code>next()</code> or <code>nextRecord()</code>, not both.</p>
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.feed.TickJournal
+ */
+public class TickJournalReader {
+
+    /**
+     * Item type returned by <code>nextItem()</code> at the end of the record.
+     */
+    public static final int NONE = 0;
+
+    /**
+     * Item type of trades, see <code>getPrice()</code>, <code>getSize()</code> and <code>getVolume()</code>.
+     */
+    public static final int TRADE = TickJournal.ITEM_TRADE;
+
+    /**
+     * Item type of quotes, see <code>getBid()</code>, <code>getAsk()</code>, <code>getBidSize()</code>
+     * and <code>getAskSize()</code>.
+     */
+    public static final int QUOTE = TickJournal.ITEM_QUOTE;
+
+    /**
+     * Item type of all other values, that are skipped by <code>nextItem()</code>.
+     */
+    public static final int OTHER = -1;
+
+    static final int WINDOW_SIZE = 16 * 1024 * 1024;
+
+    private final File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long windowStart;
+    private long size;
+    private long position;
+
+    private List<String> symbols = new ArrayList<String>();
+    private Map<Integer, OrderBook> books = new HashMap<Integer, OrderBook>();
+
+    private long time;
+    private int symbolId;
+    private String symbol;
+    private Object[] values;
+
+    private int itemCount;
+    private int itemIndex;
+    private double tradePrice;
+    private long tradeSize;
+    private long tradeVolume;
+    private double bid;
+    private double ask;
+    private long bidSize;
+    private long askSize;
+
+    public TickJournalReader(File file) throws IOException {
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        this.channel = randomAccessFile.getChannel();
+        this.size = channel.size();
+
+        if (size < TickJournal.HEADER_SIZE) {
+            position = size;
+            return;
+        }
+        map(0, TickJournal.HEADER_SIZE);
+        if (buffer.getInt() != TickJournal.MAGIC) {
+            close();
+            throw new IOException("Not a tick journal file: " + file); //$NON-NLS-1$
+        }
+        int version = buffer.getInt();
+        if (version != TickJournal.VERSION) {
+            close();
+            throw new IOException("Unsupported tick journal version " + version + ": " + file); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        position = TickJournal.HEADER_SIZE;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Advances to the next quote update.
+     *
+     * @return <code>true</code> if an update was read, <code>false</code> at the end of the records.
+     * @throws IOException if an error occurs reading the file.
+     */
+    public boolean next() throws IOException {
+        if (!nextRecord()) {
+            return false;
+        }
+        values = readValues();
+        return true;
+    }
+
+    /**
+     * Advances to the next quote update without decoding its values.
+     *
+     * <p>The values can then be read one at a time with <code>nextItem()</code>.</p>
+     *
+     * @return <code>true</code> if an update was read, <code>false</code> at the end of the records.
+     * @throws IOException if an error occurs reading the file.
+     */
+    public boolean nextRecord() throws IOException {
+        values = null;
+        itemCount = 0;
+        itemIndex = 0;
+
+        while (position + 4 <= size) {
+            ensureMapped(position, 4);
+            int length = buffer.getInt((int) (position - windowStart));
+            if (length <= 0 || position + 4 + length > size) {
+                break;
+            }
+            ensureMapped(position, 4 + length);
+            buffer.position((int) (position - windowStart) + 4);
+            position += 4 + length;
+
+            byte kind = buffer.get();
+            long recordTime = buffer.getLong();
+            int symbolId = buffer.getInt();
+            if (kind == TickJournal.RECORD_SYMBOL) {
+                while (symbols.size() <= symbolId) {
+                    symbols.add(null);
+                }
+                symbols.set(symbolId, getString());
+            }
+            else if (kind == TickJournal.RECORD_EVENT) {
+                this.time = recordTime;
+                this.symbolId = symbolId;
+                this.symbol = symbolId < symbols.size() ? symbols.get(symbolId) : null;
+                this.itemCount = buffer.getShort();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the next value of the current update.
+     *
+     * <p>Trades and quotes are decoded into the primitive fields returned by the getters,
+     * all other values are skipped.</p>
+     *
+     * @return the item type, <code>TRADE</code>, <code>QUOTE</code>, <code>OTHER</code>, or
+     * <code>NONE</code> if there are no more values.
+     */
+    public int nextItem() {
+        if (itemIndex >= itemCount) {
+            return NONE;
+        }
+        itemIndex++;
+
+        byte type = buffer.get();
+        switch (type) {
+            case TickJournal.ITEM_TRADE:
+                skip(8);
+                tradePrice = buffer.getDouble();
+                tradeSize = getPrimitiveLong();
+                tradeVolume = getPrimitiveLong();
+                return TRADE;
+            case TickJournal.ITEM_QUOTE:
+                bid = buffer.getDouble();
+                ask = buffer.getDouble();
+                bidSize = getPrimitiveLong();
+                askSize = getPrimitiveLong();
+                return QUOTE;
+            case TickJournal.ITEM_TODAY_OHL:
+                skip(24);
+                return OTHER;
+            case TickJournal.ITEM_LAST_CLOSE:
+            case TickJournal.ITEM_PRICE:
+                skip(16);
+                return OTHER;
+            case TickJournal.ITEM_BOOK:
+                skipBookEntries();
+                skipBookEntries();
+                return OTHER;
+            case TickJournal.ITEM_BOOK_DELTAS:
+                skip(buffer.getInt() * 30);
+                return OTHER;
+        }
+
+        // Unknown item, the rest of the record can't be read
+        itemIndex = itemCount;
+        return NONE;
+    }
+
+    /**
+     * Returns the price of the last trade read by <code>nextItem()</code>.
+     *
+     * @return the price, or <code>Double.NaN</code> if not available.
+     */
+    public double getPrice() {
+        return tradePrice;
+    }
+
+    /**
+     * Returns the size of the last trade read by <code>nextItem()</code>.
+     *
+     * @return the size, or 0 if not available.
+     */
+    public long getSize() {
+        return tradeSize;
+    }
+
+    /**
+     * Returns the total volume of the last trade read by <code>nextItem()</code>.
+     *
+     * @return the volume, or 0 if not available.
+     */
+    public long getVolume() {
+        return tradeVolume;
+    }
+
+    /**
+     * Returns the bid price of the last quote read by <code>nextItem()</code>.
+     *
+     * @return the price, or <code>Double.NaN</code> if not available.
+     */
+    public double getBid() {
+        return bid;
+    }
+
+    /**
+     * Returns the ask price of the last quote read by <code>nextItem()</code>.
+     *
+     * @return the price, or <code>Double.NaN</code> if not available.
+     */
+    public double getAsk() {
+        return ask;
+    }
+
+    /**
+     * Returns the bid size of the last quote read by <code>nextItem()</code>.
+     *
+     * @return the size, or 0 if not available.
+     */
+    public long getBidSize() {
+        return bidSize;
+    }
+
+    /**
+     * Returns the ask size of the last quote read by <code>nextItem()</code>.
+     *
+     * @return the size, or 0 if not available.
+     */
+    public long getAskSize() {
+        return askSize;
+    }
+
+    /**
+     * Returns the time the current update was received.
+     *
+     * @return the time, in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the symbol of the current update.
+     *
+     * @return the feed symbol.
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns the values carried by the current update.
+     *
+     * @return the array of <code>ITrade</code>, <code>IQuote</code>, <code>ITodayOHL</code>,
+     * <code>ILastClose</code>, <code>IPrice</code> or <code>IBook</code> values.
+     */
+    public Object[] getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the symbols read so far, indexed by their journal identifier.
+     *
+     * @return the symbols.
+     */
+    public String[] getSymbols() {
+        return symbols.toArray(new String[symbols.size()]);
+    }
+
+    /**
+     * Returns the file offset following the last record read.
+     *
+     * @return the offset.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void close() {
+        buffer = null;
+        try {
+            channel.close();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            // Do nothing
+        }
+    }
+
+    private void ensureMapped(long offset, int length) throws IOException {
+        if (buffer == null || offset < windowStart || offset + length > windowStart + buffer.capacity()) {
+            map(offset, (int) Math.min(Math.max(WINDOW_SIZE, length), size - offset));
+        }
+    }
+
+    private void map(long offset, int length) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        windowStart = offset;
+    }
+
+    private Object[] readValues() {
+        Object[] result = new Object[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            byte type = buffer.get();
+            switch (type) {
+                case TickJournal.ITEM_TRADE:
+                    result[i] = new Trade(getDate(), getDouble(), getLong(), getLong());
+                    break;
+                case TickJournal.ITEM_QUOTE:
+                    result[i] = new Quote(getDouble(), getDouble(), getLong(), getLong());
+                    break;
+                case TickJournal.ITEM_TODAY_OHL:
+                    result[i] = new TodayOHL(getDouble(), getDouble(), getDouble());
+                    break;
+                case TickJournal.ITEM_LAST_CLOSE:
+                    result[i] = new LastClose(getDouble(), getDate());
+                    break;
+                case TickJournal.ITEM_PRICE:
+                    result[i] = new Price(getDate(), getDouble());
+                    break;
+                case TickJournal.ITEM_BOOK:
+                    result[i] = readBook(getBook(symbolId));
+                    break;
+                case TickJournal.ITEM_BOOK_DELTAS:
+                    result[i] = readBookDeltas(getBook(symbolId));
+                    break;
+            }
+        }
+        itemIndex = itemCount;
+        return result;
+    }
+
+    private OrderBook getBook(int symbolId) {
+        OrderBook book = books.get(symbolId);
+        if (book == null) {
+            book = new OrderBook();
+            books.put(symbolId, book);
+        }
+        return book;
+    }
+
+    private IBook readBook(OrderBook book) {
+        for (int side = BookDelta.BID; side <= BookDelta.ASK; side++) {
+            int length = buffer.getInt();
+            for (int level = 0; level < length; level++) {
+                long entryTime = buffer.getLong();
+                double price = buffer.getDouble();
+                long quantity = buffer.getLong();
+                long proposals = buffer.getLong();
+                String marketMaker = getString();
+                book.set(side, level, entryTime != Long.MIN_VALUE ? entryTime : 0, Double.isNaN(price) ? 0.0 : price, quantity != Long.MIN_VALUE ? quantity : 0, proposals != Long.MIN_VALUE ? proposals : 0, marketMaker);
+            }
+            book.truncate(side, length);
+        }
+        return book.getSnapshot();
+    }
+
+    private IBook readBookDeltas(OrderBook book) {
+        int length = buffer.getInt();
+        for (int i = 0; i < length; i++) {
+            int side = buffer.get();
+            int action = buffer.get();
+            book.apply(new BookDelta(side, action, buffer.getInt(), buffer.getDouble(), buffer.getLong(), buffer.getLong()));
+        }
+        return book.getSnapshot();
+    }
+
+    private void skipBookEntries() {
+        int length = buffer.getInt();
+        for (int level = 0; level < length; level++) {
+            skip(32);
+            int stringLength = buffer.getShort();
+            if (stringLength > 0) {
+                skip(stringLength);
+            }
+        }
+    }
+
+    private void skip(int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    private long getPrimitiveLong() {
+        long value = buffer.getLong();
+        return value != Long.MIN_VALUE ? value : 0L;
+    }
+
+    private Double getDouble() {
+        double value = buffer.getDouble();
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private Long getLong() {
+        long value = buffer.getLong();
+        return value != Long.MIN_VALUE ? value : null;
+    }
+
+    private Date getDate() {
+        long value = buffer.getLong();
+        return value != Long.MIN_VALUE ? new Date(value) : null;
+    }
+
+    private String getString() {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] b = new byte[length];
+        buffer.get(b);
+        try {
+            return new String(b, "UTF-8"); //$NON-NLS-1$
+        } catch (IOException e) {
+            return new String(b);
+        }
+    }
+}
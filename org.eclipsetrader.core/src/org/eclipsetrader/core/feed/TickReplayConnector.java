@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.internal.CoreActivator;
+
+/**
+ * Feed connector that plays back the quote updates recorded in tick journal files.
+ *
+ * <p>Updates are delivered with the recorded timing multiplied by the replay speed,
+ * a speed of 1 replays in real time, a speed of 0 replays as fast as possible. The
+ * replay runs in a background thread started by <code>connect()</code>, or in the
+ * calling thread with <code>replay()</code>. The connector registered as extension
+ * replays in real time the last day recorded by the application journal.</p>
+ *
+ * @since 1.0
+ * @see org.eclipsetrader.core.feed.TickJournal
+ */
+public class TickReplayConnector implements IFeedConnector2, Runnable {
+
+    public static final String ID = "org.eclipsetrader.core.feed.replay"; //$NON-NLS-1$
+
+    public static final double SPEED_REALTIME = 1.0;
+    public static final double SPEED_MAXIMUM = 0.0;
+
+    private final File[] files;
+    private volatile double speed;
+
+    private Map<String, TickReplaySubscription> symbolSubscriptions = new HashMap<String, TickReplaySubscription>();
+    private ListenerList connectorListeners = new ListenerList(ListenerList.IDENTITY);
+
+    private Thread thread;
+    private volatile boolean stopping;
+    private long replayTime;
+
+    public TickReplayConnector() {
+        this(null, SPEED_REALTIME);
+    }
+
+    public TickReplayConnector(File[] files, double speed) {
+        this.files = files;
+        this.speed = speed;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector#getId()
+     */
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector#getName()
+     */
+    @Override
+    public String getName() {
+        return "Tick Replay"; //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the files to replay.
+     *
+     * @return the files given to the constructor, or the last file of the application journal.
+     */
+    public File[] getFiles() {
+        if (files == null) {
+            CoreActivator activator = CoreActivator.getDefault();
+            return activator != null ? getLastJournalFile(activator.getTickJournalLocation()) : new File[0];
+        }
+        return files;
+    }
+
+    static File[] getLastJournalFile(File directory) {
+        File[] list = directory.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.isFile() && pathname.getName().endsWith(TickJournal.FILE_EXTENSION);
+            }
+        });
+        if (list == null || list.length == 0) {
+            return new File[0];
+        }
+
+        // File names are the recorded days, sorting by name sorts by date
+        Arrays.sort(list);
+        return new File[] {
+            list[list.length - 1]
+        };
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Sets the replay speed, the change applies to the next replayed update.
+     *
+     * @param speed the speed multiplier, or <code>SPEED_MAXIMUM</code> to replay without delays.
+     */
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Returns the recorded time of the last replayed update.
+     *
+     * @return the time in milliseconds, or 0 if nothing was replayed.
+     */
+    public long getReplayTime() {
+        return replayTime;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector#subscribe(org.eclipsetrader.core.feed.IFeedIdentifier)
+     */
+    @Override
+    public IFeedSubscription subscribe(IFeedIdentifier identifier) {
+        return subscribe(identifier.getSymbol(), identifier);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector2#subscribeLevel2(org.eclipsetrader.core.feed.IFeedIdentifier)
+     */
+    @Override
+    public IFeedSubscription2 subscribeLevel2(IFeedIdentifier identifier) {
+        return subscribe(identifier.getSymbol(), identifier);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector2#subscribeLevel2(java.lang.String)
+     */
+    @Override
+    public IFeedSubscription2 subscribeLevel2(String symbol) {
+        return subscribe(symbol, null);
+    }
+
+    protected TickReplaySubscription subscribe(String symbol, IFeedIdentifier identifier) {
+        synchronized (symbolSubscriptions) {
+            TickReplaySubscription subscription = symbolSubscriptions.get(symbol);
+            if (subscription == null) {
+                subscription = new TickReplaySubscription(this, symbol, identifier != null ? identifier : new FeedIdentifier(symbol, null));
+                symbolSubscriptions.put(symbol, subscription);
+            }
+            else if (identifier != null && subscription.getIdentifier() != identifier) {
+                subscription.setIdentifier(identifier);
+            }
+            subscription.incrementInstanceCount();
+            return subscription;
+        }
+    }
+
+    void disposeSubscription(TickReplaySubscription subscription) {
+        synchronized (symbolSubscriptions) {
+            if (subscription.decrementInstanceCount() <= 0) {
+                symbolSubscriptions.remove(subscription.getSymbol());
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector#connect()
+     */
+    @Override
+    public synchronized void connect() {
+        if (thread == null || !thread.isAlive()) {
+            stopping = false;
+            thread = new Thread(this, getName());
+            thread.start();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector#disconnect()
+     */
+    @Override
+    public synchronized void disconnect() {
+        stopping = true;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(30 * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        replay();
+    }
+
+    /**
+     * Replays the journal files in the calling thread, returns when all updates are
+     * replayed or the connector is disconnected.
+     */
+    public void replay() {
+        fireConnectorEvent(new ConnectorEvent(this, STATUS_CONNECTED));
+
+        long firstTime = 0;
+        long startTime = 0;
+        double currentSpeed = Double.NaN;
+
+        File[] files = getFiles();
+        for (int i = 0; i < files.length && !stopping; i++) {
+            TickJournalReader reader = null;
+            try {
+                reader = new TickJournalReader(files[i]);
+                while (!stopping && reader.next()) {
+                    long time = reader.getTime();
+
+                    double s = speed;
+                    if (s != currentSpeed) {
+                        currentSpeed = s;
+                        firstTime = time;
+                        startTime = System.currentTimeMillis();
+                    }
+                    if (s > 0) {
+                        long delay = startTime + (long) ((time - firstTime) / s) - System.currentTimeMillis();
+                        if (delay > 0) {
+                            Thread.sleep(delay);
+                        }
+                    }
+
+                    replayTime = time;
+
+                    TickReplaySubscription subscription;
+                    synchronized (symbolSubscriptions) {
+                        subscription = symbolSubscriptions.get(reader.getSymbol());
+                    }
+                    if (subscription != null) {
+                        subscription.replay(reader.getValues());
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error reading tick journal " + files[i], e); //$NON-NLS-1$
+                CoreActivator.log(status);
+            } finally {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+        }
+
+        fireConnectorEvent(new ConnectorEvent(this, STATUS_INACTIVE));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector#addConnectorListener(org.eclipsetrader.core.feed.IConnectorListener)
+     */
+    @Override
+    public void addConnectorListener(IConnectorListener listener) {
+        connectorListeners.add(listener);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedConnector#removeConnectorListener(org.eclipsetrader.core.feed.IConnectorListener)
+     */
+    @Override
+    public void removeConnectorListener(IConnectorListener listener) {
+        connectorListeners.remove(listener);
+    }
+
+    protected void fireConnectorEvent(ConnectorEvent event) {
+        Object[] l = connectorListeners.getListeners();
+        for (int i = 0; i < l.length; i++) {
+            try {
+                ((IConnectorListener) l[i]).connectorStatusChange(event);
+            } catch (Exception e) {
+                Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error notifying a connector status change", e); //$NON-NLS-1$
+                CoreActivator.log(status);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.feed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.internal.CoreActivator;
+
+/**
+ * Subscription to a symbol replayed by a <code>TickReplayConnector</code>.
+ *
+ * @since 1.0
+ */
+class TickReplaySubscription implements IFeedSubscription2 {
+
+    private final TickReplayConnector connector;
+    private final String symbol;
+    private IFeedIdentifier identifier;
+    private int instanceCount;
+
+    private ITrade trade;
+    private IQuote quote;
+    private ITodayOHL todayOHL;
+    private ILastClose lastClose;
+    private IBook book;
+
+    private ListenerList listeners = new ListenerList(ListenerList.IDENTITY);
+
+    TickReplaySubscription(TickReplayConnector connector, String symbol, IFeedIdentifier identifier) {
+        this.connector = connector;
+        this.symbol = symbol;
+        this.identifier = identifier;
+    }
+
+    int incrementInstanceCount() {
+        return ++instanceCount;
+    }
+
+    int decrementInstanceCount() {
+        return --instanceCount;
+    }
+
+    void setIdentifier(IFeedIdentifier identifier) {
+        this.identifier = identifier;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#getIdentifier()
+     */
+    @Override
+    public IFeedIdentifier getIdentifier() {
+        return identifier;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#getSymbol()
+     */
+    @Override
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#dispose()
+     */
+    @Override
+    public void dispose() {
+        connector.disposeSubscription(this);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#getTrade()
+     */
+    @Override
+    public ITrade getTrade() {
+        return trade;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#getQuote()
+     */
+    @Override
+    public IQuote getQuote() {
+        return quote;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#getTodayOHL()
+     */
+    @Override
+    public ITodayOHL getTodayOHL() {
+        return todayOHL;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#getLastClose()
+     */
+    @Override
+    public ILastClose getLastClose() {
+        return lastClose;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription2#getBook()
+     */
+    @Override
+    public IBook getBook() {
+        return book;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#addSubscriptionListener(org.eclipsetrader.core.feed.ISubscriptionListener)
+     */
+    @Override
+    public void addSubscriptionListener(ISubscriptionListener listener) {
+        listeners.add(listener);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.feed.IFeedSubscription#removeSubscriptionListener(org.eclipsetrader.core.feed.ISubscriptionListener)
+     */
+    @Override
+    public void removeSubscriptionListener(ISubscriptionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Updates the subscription with the values of a journal record and notifies
+     * the listeners.
+     *
+     * @param values the replayed values.
+     */
+    void replay(Object[] values) {
+        List<QuoteDelta> deltas = new ArrayList<QuoteDelta>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            Object oldValue = null;
+            if (value instanceof ITrade) {
+                oldValue = trade;
+                trade = (ITrade) value;
+            }
+            else if (value instanceof IQuote) {
+                oldValue = quote;
+                quote = (IQuote) value;
+            }
+            else if (value instanceof ITodayOHL) {
+                oldValue = todayOHL;
+                todayOHL = (ITodayOHL) value;
+            }
+            else if (value instanceof ILastClose) {
+                oldValue = lastClose;
+                lastClose = (ILastClose) value;
+            }
+            else if (value instanceof IBook) {
+                oldValue = book;
+                book = (IBook) value;
+            }
+            else if (value == null) {
+                continue;
+            }
+            deltas.add(new QuoteDelta(identifier, oldValue, value));
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        QuoteEvent event = new QuoteEvent(connector, identifier, deltas.toArray(new QuoteDelta[deltas.size()]));
+        Object[] l = listeners.getListeners();
+        for (int i = 0; i < l.length; i++) {
+            try {
+                ((ISubscriptionListener) l[i]).quoteUpdate(event);
+            } catch (Exception e) {
+                Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error notifying a quote update", e); //$NON-NLS-1$
+                CoreActivator.log(status);
+            } catch (LinkageError e) {
+                Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error notifying a quote update", e); //$NON-NLS-1$
+                CoreActivator.log(status);
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@
 
 package org.eclipsetrader.core.internal;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -23,11 +24,20 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipsetrader.core.HttpClientService;
 import org.eclipsetrader.core.ICurrencyService;
+import org.eclipsetrader.core.IHttpClientService;
+import org.eclipsetrader.core.IPersistenceService;
+import org.eclipsetrader.core.PersistenceService;
 import org.eclipsetrader.core.ats.ITradingSystemService;
+import org.eclipsetrader.core.feed.DepthAnalyzer;
 import org.eclipsetrader.core.feed.IBackfillConnector;
 import org.eclipsetrader.core.feed.IFeedConnector;
 import org.eclipsetrader.core.feed.IFeedService;
+import org.eclipsetrader.core.feed.TickJournal;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.internal.ats.TradingSystemService;
 import org.eclipsetrader.core.internal.ats.TradingSystemServiceFactory;
@@ -73,10 +83,19 @@ public class CoreActivator extends Plugin {
     // Preferences IDs
     public static final String DEFAULT_CONNECTOR_ID = "DEFAULT_CONNECTOR";
     public static final String DEFAULT_BACKFILL_CONNECTOR_ID = "DEFAULT_BACKFILL_CONNECTOR";
+    public static final String TICK_JOURNAL_ENABLED = "TICK_JOURNAL_ENABLED";
+    public static final String DEPTH_LEVELS = "DEPTH_LEVELS";
+    public static final String DEPTH_TICK_SIZE = "DEPTH_TICK_SIZE";
+    public static final String DEPTH_TICKS = "DEPTH_TICKS";
 
     // The shared instance
     private static CoreActivator plugin;
 
+    private ServiceRegistration persistenceServiceRegistration;
+
+    private HttpClientService httpClientService;
+    private ServiceRegistration httpClientServiceRegistration;
+
     private RepositoryService repositoryService;
     private ServiceRegistration repositoryServiceRegistration;
 
@@ -100,6 +119,18 @@ public class CoreActivator extends Plugin {
 
     private ConnectorOverrideAdapter overrideAdapter;
 
+    private volatile TickJournal tickJournal;
+
+    private IPreferenceChangeListener preferenceChangeListener = new IPreferenceChangeListener() {
+
+        @Override
+        public void preferenceChange(PreferenceChangeEvent event) {
+            if (TICK_JOURNAL_ENABLED.equals(event.getKey())) {
+                updateTickJournal();
+            }
+        }
+    };
+
     /**
      * The constructor
      */
@@ -115,6 +146,15 @@ public class CoreActivator extends Plugin {
         super.start(context);
         plugin = this;
 
+        persistenceServiceRegistration = context.registerService(new String[] {
+            IPersistenceService.class.getName(), PersistenceService.class.getName()
+        }, PersistenceService.getInstance(), new Hashtable<String, Object>());
+
+        httpClientService = HttpClientService.getInstance();
+        httpClientServiceRegistration = context.registerService(new String[] {
+            IHttpClientService.class.getName(), HttpClientService.class.getName()
+        }, httpClientService, new Hashtable<String, Object>());
+
         repositoryService = new RepositoryService();
         repositoryServiceRegistration = context.registerService(new String[] {
             IRepositoryService.class.getName(), RepositoryService.class.getName()
@@ -151,6 +191,9 @@ public class CoreActivator extends Plugin {
         }, alertService, new Hashtable<String, Object>());
         alertService.startUp();
 
+        updateTickJournal();
+        InstanceScope.INSTANCE.getNode(PLUGIN_ID).addPreferenceChangeListener(preferenceChangeListener);
+
         tradingSystemServiceFactory = new TradingSystemServiceFactory(repositoryService);
         tradingSystemServiceRegistration = context.registerService(new String[] {
             ITradingSystemService.class.getName(), TradingSystemService.class.getName()
@@ -218,6 +261,19 @@ public class CoreActivator extends Plugin {
         repositoryServiceRegistration.unregister();
         repositoryService.shutDown();
 
+        httpClientServiceRegistration.unregister();
+        httpClientService.shutDown();
+
+        InstanceScope.INSTANCE.getNode(PLUGIN_ID).removePreferenceChangeListener(preferenceChangeListener);
+        synchronized (this) {
+            if (tickJournal != null) {
+                tickJournal.dispose();
+                tickJournal = null;
+            }
+        }
+
+        persistenceServiceRegistration.unregister();
+
         plugin = null;
         super.stop(context);
     }
@@ -362,4 +418,51 @@ public class CoreActivator extends Plugin {
 
         return connector;
     }
+
+    /**
+     * Creates a depth analyzer configured with the depth levels, tick size and
+     * number of ticks set in the preferences.
+     *
+     * @return the new analyzer.
+     */
+    public DepthAnalyzer createDepthAnalyzer() {
+        int depthLevels = getPluginPreferences().getInt(DEPTH_LEVELS);
+        double tickSize = getPluginPreferences().getDouble(DEPTH_TICK_SIZE);
+        int ticks = getPluginPreferences().getInt(DEPTH_TICKS);
+        return new DepthAnalyzer(depthLevels, tickSize, ticks);
+    }
+
+    /**
+     * Returns the journal that records the quote updates received by the pricing
+     * environments.
+     *
+     * @return the journal, or <code>null</code> if journaling is disabled.
+     */
+    public TickJournal getTickJournal() {
+        return tickJournal;
+    }
+
+    /**
+     * Returns the directory where the tick journal files are written.
+     *
+     * @return the directory.
+     */
+    public File getTickJournalLocation() {
+        return getStateLocation().append("journal").toFile(); //$NON-NLS-1$
+    }
+
+    /**
+     * Creates or disposes the tick journal to match the preferences. A disposed
+     * journal ignores the appends from the environments still holding it.
+     */
+    synchronized void updateTickJournal() {
+        boolean enabled = getPluginPreferences().getBoolean(TICK_JOURNAL_ENABLED);
+        if (enabled && tickJournal == null) {
+            tickJournal = new TickJournal(getTickJournalLocation());
+        }
+        else if (!enabled && tickJournal != null) {
+            tickJournal.dispose();
+            tickJournal = null;
+        }
+    }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.internal;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipsetrader.core.feed.DepthAnalyzer;
+
+public class PreferenceInitializer extends AbstractPreferenceInitializer {
+
+    public PreferenceInitializer() {
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer#initializeDefaultPreferences()
+     */
+    @Override
+    public void initializeDefaultPreferences() {
+        IEclipsePreferences node = DefaultScope.INSTANCE.getNode(CoreActivator.PLUGIN_ID);
+        node.putBoolean(CoreActivator.TICK_JOURNAL_ENABLED, false);
+        node.putInt(CoreActivator.DEPTH_LEVELS, DepthAnalyzer.DEFAULT_DEPTH_LEVELS);
+        node.putDouble(CoreActivator.DEPTH_TICK_SIZE, 0.01);
+        node.putInt(CoreActivator.DEPTH_TICKS, 5);
+    }
+}
@@ -17,6 +17,7 @@ import org.eclipsetrader.core.ats.BarFactoryEvent;
 import org.eclipsetrader.core.ats.IBarFactoryListener;
 import org.eclipsetrader.core.ats.IStrategy;
 import org.eclipsetrader.core.ats.ITradingSystemContext;
+import org.eclipsetrader.core.feed.AsyncPricingListener;
 import org.eclipsetrader.core.feed.Bar;
 import org.eclipsetrader.core.feed.BarOpen;
 import org.eclipsetrader.core.feed.IBar;
@@ -126,6 +127,7 @@ public class TradingSystemContext implements ITradingSystemContext {
         pricingEnvironment = new PricingEnvironment();
 
         marketPricingEnvironment = new MarketPricingEnvironment(marketService);
+        marketPricingEnvironment.setAsyncDispatch(AsyncPricingListener.Policy.BLOCK, AsyncPricingListener.DEFAULT_CAPACITY);
         marketPricingEnvironment.addSecurities(strategy.getInstruments());
         marketPricingEnvironment.addPricingListener(pricingListener);
 
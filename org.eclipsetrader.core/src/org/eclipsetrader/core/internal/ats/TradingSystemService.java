@@ -12,21 +12,15 @@
 package org.eclipsetrader.core.internal.ats;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipsetrader.core.PersistenceService;
 import org.eclipsetrader.core.ats.IStrategy;
 import org.eclipsetrader.core.ats.ITradingSystem;
 import org.eclipsetrader.core.ats.ITradingSystemListener;
@@ -229,18 +223,7 @@ public class TradingSystemService implements ITradingSystemService {
     private void loadSettings(File file) {
         if (file.exists() == true) {
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(SettingsCollection.class);
-                Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-                unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-                    @Override
-                    public boolean handleEvent(ValidationEvent event) {
-                        Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                        CoreActivator.log(status);
-                        return true;
-                    }
-                });
-                collection = (SettingsCollection) unmarshaller.unmarshal(file);
+                collection = PersistenceService.getInstance().unmarshal(SettingsCollection.class, file);
             } catch (Exception e) {
                 Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error loading repository", e); //$NON-NLS-1$
                 CoreActivator.log(status);
@@ -261,28 +244,11 @@ public class TradingSystemService implements ITradingSystemService {
 
     private void saveSettings(File file) {
         try {
-            if (file.exists()) {
-                file.delete();
-            }
-
             for (TradingSystem system : list) {
                 collection.setSettingsFor(system.getStrategy(), system.getProperties());
             }
 
-            JAXBContext jaxbContext = JAXBContext.newInstance(SettingsCollection.class);
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-            marshaller.setEventHandler(new ValidationEventHandler() {
-
-                @Override
-                public boolean handleEvent(ValidationEvent event) {
-                    Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                    CoreActivator.log(status);
-                    return true;
-                }
-            });
-            marshaller.marshal(collection, new FileWriter(file));
+            PersistenceService.getInstance().marshal(collection, SettingsCollection.class, file);
         } catch (Exception e) {
             Status status = new Status(IStatus.ERROR, CoreActivator.PLUGIN_ID, 0, "Error saving repository", e); //$NON-NLS-1$
             CoreActivator.log(status);
@@ -12,7 +12,7 @@
 package org.eclipsetrader.core.internal.markets;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -20,18 +20,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.PersistenceService;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.internal.CoreActivator;
 import org.eclipsetrader.core.markets.IMarket;
@@ -58,24 +53,18 @@ public class MarketService extends Observable implements IMarketService, Runnabl
     }
 
     public void startUp(IProgressMonitor monitor) throws Exception {
-        JAXBContext jaxbContext = JAXBContext.newInstance(MarketList.class);
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-        unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                CoreActivator.getDefault().getLog().log(status);
-                return true;
-            }
-        });
         MarketList list = null;
         File file = CoreActivator.getDefault().getStateLocation().append(REPOSITORY_FILE).toFile();
         if (file.exists()) {
-            list = (MarketList) unmarshaller.unmarshal(file);
+            list = PersistenceService.getInstance().unmarshal(MarketList.class, file);
         }
         else {
-            list = (MarketList) unmarshaller.unmarshal(FileLocator.openStream(CoreActivator.getDefault().getBundle(), new Path("data").append(REPOSITORY_FILE), false));
+            InputStream stream = FileLocator.openStream(CoreActivator.getDefault().getBundle(), new Path("data").append(REPOSITORY_FILE), false);
+            try {
+                list = PersistenceService.getInstance().unmarshal(MarketList.class, stream);
+            } finally {
+                stream.close();
+            }
         }
 
         if (list != null) {
@@ -110,23 +99,7 @@ public class MarketService extends Observable implements IMarketService, Runnabl
         }
 
         File file = CoreActivator.getDefault().getStateLocation().append(REPOSITORY_FILE).toFile();
-        if (file.exists()) {
-            file.delete();
-        }
-        JAXBContext jaxbContext = JAXBContext.newInstance(MarketList.class);
-        Marshaller marshaller = jaxbContext.createMarshaller();
-        marshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                CoreActivator.getDefault().getLog().log(status);
-                return true;
-            }
-        });
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-        marshaller.marshal(new MarketList(marketsList), new FileWriter(file));
+        PersistenceService.getInstance().marshal(new MarketList(marketsList), MarketList.class, file);
     }
 
     public void addMarket(Market market) {
@@ -424,7 +424,11 @@ public class RepositoryService implements IRepositoryService {
                     ruleSet = new HashSet<ISchedulingRule>();
                     rules.put(repository, ruleSet);
                 }
-                if (repository instanceof ISchedulingRule) {
+                // Stores that are scheduling rules lock only the object they belong to
+                if (store instanceof ISchedulingRule && store.getRepository() == repository) {
+                    ruleSet.add((ISchedulingRule) store);
+                }
+                else if (repository instanceof ISchedulingRule) {
                     ruleSet.add((ISchedulingRule) repository);
                 }
             }
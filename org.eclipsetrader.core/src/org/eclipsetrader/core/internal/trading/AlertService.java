@@ -12,7 +12,6 @@
 package org.eclipsetrader.core.internal.trading;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -20,19 +19,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-import javax.xml.namespace.QName;
-import javax.xml.transform.stream.StreamSource;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.PersistenceService;
+import org.eclipsetrader.core.feed.AsyncPricingListener;
 import org.eclipsetrader.core.feed.IPricingListener;
 import org.eclipsetrader.core.feed.IQuote;
 import org.eclipsetrader.core.feed.ITrade;
@@ -73,6 +66,7 @@ public class AlertService implements IAlertService {
         BundleContext context = CoreActivator.getDefault().getBundle().getBundleContext();
         ServiceReference serviceReference = context.getServiceReference(IMarketService.class.getName());
         pricingEnvironment = new MarketPricingEnvironment((IMarketService) context.getService(serviceReference));
+        pricingEnvironment.setAsyncDispatch(AsyncPricingListener.Policy.BLOCK, AsyncPricingListener.DEFAULT_CAPACITY);
         context.ungetService(serviceReference);
 
         load(CoreActivator.getDefault().getStateLocation().append("alerts.xml").toFile());
@@ -91,28 +85,17 @@ public class AlertService implements IAlertService {
         pricingEnvironment.addPricingListener(pricingListener);
     }
 
-    void load(File file) throws JAXBException {
+    void load(File file) throws JAXBException, IOException {
         if (!file.exists()) {
             return;
         }
 
-        JAXBContext jaxbContext = JAXBContext.newInstance(InstrumentElement[].class);
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-        unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                CoreActivator.log(status);
-                return true;
-            }
-        });
-        JAXBElement<InstrumentElement[]> element = unmarshaller.unmarshal(new StreamSource(file), InstrumentElement[].class);
-        if (element == null) {
+        InstrumentElement[] elements = PersistenceService.getInstance().unmarshalElement(InstrumentElement[].class, file);
+        if (elements == null) {
             return;
         }
 
-        for (InstrumentElement ie : element.getValue()) {
+        for (InstrumentElement ie : elements) {
             ISecurity instrument = ie.getInstrument();
 
             List<IAlert> list = new ArrayList<IAlert>();
@@ -248,26 +231,7 @@ public class AlertService implements IAlertService {
     }
 
     void save(File file, InstrumentElement[] elements) throws JAXBException, IOException {
-        if (file.exists()) {
-            file.delete();
-        }
-
-        JAXBContext jaxbContext = JAXBContext.newInstance(InstrumentElement[].class);
-        Marshaller marshaller = jaxbContext.createMarshaller();
-        marshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                CoreActivator.log(status);
-                return true;
-            }
-        });
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-
-        JAXBElement<InstrumentElement[]> element = new JAXBElement<InstrumentElement[]>(new QName("list"), InstrumentElement[].class, elements);
-        marshaller.marshal(element, new FileWriter(file));
+        PersistenceService.getInstance().marshalElement("list", elements, InstrumentElement[].class, file); //$NON-NLS-1$
     }
 
     /* (non-Javadoc)
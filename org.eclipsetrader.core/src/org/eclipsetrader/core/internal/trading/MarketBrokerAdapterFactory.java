@@ -12,26 +12,18 @@
 package org.eclipsetrader.core.internal.trading;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-import javax.xml.namespace.QName;
-import javax.xml.transform.stream.StreamSource;
 
 import org.eclipse.core.runtime.IAdapterFactory;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.PersistenceService;
 import org.eclipsetrader.core.internal.CoreActivator;
 import org.eclipsetrader.core.markets.IMarket;
 import org.eclipsetrader.core.trading.IBroker;
@@ -93,20 +85,11 @@ public class MarketBrokerAdapterFactory implements IAdapterFactory {
         };
     }
 
-    void load(File file) throws JAXBException {
-        JAXBContext jaxbContext = JAXBContext.newInstance(MarketBroker[].class);
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-        unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                CoreActivator.log(status);
-                return true;
-            }
-        });
-        JAXBElement<MarketBroker[]> element = unmarshaller.unmarshal(new StreamSource(file), MarketBroker[].class);
-        list.addAll(Arrays.asList(element.getValue()));
+    void load(File file) throws JAXBException, IOException {
+        MarketBroker[] elements = PersistenceService.getInstance().unmarshalElement(MarketBroker[].class, file);
+        if (elements != null) {
+            list.addAll(Arrays.asList(elements));
+        }
     }
 
     public void addOverride(MarketBroker override) {
@@ -139,25 +122,7 @@ public class MarketBrokerAdapterFactory implements IAdapterFactory {
             return;
         }
 
-        if (file.exists()) {
-            file.delete();
-        }
-
-        JAXBContext jaxbContext = JAXBContext.newInstance(MarketBroker[].class);
-        Marshaller marshaller = jaxbContext.createMarshaller();
-        marshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, CoreActivator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                CoreActivator.log(status);
-                return true;
-            }
-        });
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-
-        JAXBElement<MarketBroker[]> element = new JAXBElement<MarketBroker[]>(new QName("list"), MarketBroker[].class, list.toArray(new MarketBroker[list.size()]));
-        marshaller.marshal(element, new FileWriter(file));
+        MarketBroker[] elements = list.toArray(new MarketBroker[list.size()]);
+        PersistenceService.getInstance().marshalElement("list", elements, MarketBroker[].class, file); //$NON-NLS-1$
     }
 }
@@ -27,11 +27,14 @@ import org.eclipse.core.internal.runtime.AdapterManager;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.feed.AsyncPricingListener;
 import org.eclipsetrader.core.feed.Bar;
+import org.eclipsetrader.core.feed.DepthAnalyzer;
 import org.eclipsetrader.core.feed.IBar;
 import org.eclipsetrader.core.feed.IBarOpen;
 import org.eclipsetrader.core.feed.IBook;
 import org.eclipsetrader.core.feed.IConnectorOverride;
+import org.eclipsetrader.core.feed.IDepthMetrics;
 import org.eclipsetrader.core.feed.IFeedConnector;
 import org.eclipsetrader.core.feed.IFeedConnector2;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
@@ -49,6 +52,8 @@ import org.eclipsetrader.core.feed.PricingDelta;
 import org.eclipsetrader.core.feed.PricingEvent;
 import org.eclipsetrader.core.feed.QuoteDelta;
 import org.eclipsetrader.core.feed.QuoteEvent;
+import org.eclipsetrader.core.feed.TickJournal;
+import org.eclipsetrader.core.feed.TickReplayConnector;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.internal.CoreActivator;
@@ -72,6 +77,8 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
         ITodayOHL todayOHL;
         ILastClose lastClose;
         IBook book;
+        DepthAnalyzer depthAnalyzer;
+        IDepthMetrics depthMetrics;
         IBarOpen todayBarOpen;
         IBar todayBar;
         List<PricingDelta> deltas = new ArrayList<PricingDelta>();
@@ -94,11 +101,19 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
     private Map<IFeedIdentifier, SubscriptionStatus2> identifiersMap2 = new HashMap<IFeedIdentifier, SubscriptionStatus2>();
 
     private ListenerList listeners = new ListenerList(ListenerList.IDENTITY);
+    private AsyncPricingListener.Policy dispatchPolicy;
+    private int dispatchCapacity = AsyncPricingListener.DEFAULT_CAPACITY;
+    private volatile TickJournal tickJournal;
+    private volatile boolean tickJournalSet;
 
     private ISubscriptionListener listener = new ISubscriptionListener() {
 
         @Override
         public void quoteUpdate(QuoteEvent event) {
+            TickJournal journal = getTickJournal();
+            if (journal != null && !(event.getConnector() instanceof TickReplayConnector)) {
+                journal.append(event);
+            }
             processUpdateQuotes(event.getIdentifier(), event.getDelta());
         }
     };
@@ -157,6 +172,30 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
         }
     }
 
+    /**
+     * Returns the journal that records the quote updates received by this environment,
+     * the application journal unless a journal was set with <code>setTickJournal()</code>.
+     *
+     * @return the journal, or <code>null</code> if journaling is disabled.
+     */
+    public TickJournal getTickJournal() {
+        if (!tickJournalSet) {
+            CoreActivator activator = CoreActivator.getDefault();
+            return activator != null ? activator.getTickJournal() : null;
+        }
+        return tickJournal;
+    }
+
+    /**
+     * Sets the journal that records the quote updates received by this environment.
+     *
+     * @param tickJournal the journal, or <code>null</code> to disable journaling.
+     */
+    public void setTickJournal(TickJournal tickJournal) {
+        this.tickJournal = tickJournal;
+        this.tickJournalSet = true;
+    }
+
     protected IMarket getMarketsForSecurity(ISecurity security) {
         if (marketService != null) {
             for (IMarket market : marketService.getMarkets()) {
@@ -306,6 +345,7 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
             pricingStatus.todayOHL = subscription.getTodayOHL();
             pricingStatus.lastClose = subscription.getLastClose();
             pricingStatus.book = subscription.getBook();
+            updateDepthMetrics(pricingStatus);
         }
     }
 
@@ -426,7 +466,12 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public void addPricingListener(IPricingListener listener) {
-        listeners.add(listener);
+        if (dispatchPolicy != null) {
+            listeners.add(new AsyncPricingListener(listener, dispatchPolicy, dispatchCapacity));
+        }
+        else {
+            listeners.add(listener);
+        }
     }
 
     /* (non-Javadoc)
@@ -434,7 +479,42 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public void removePricingListener(IPricingListener listener) {
-        listeners.remove(listener);
+        AsyncPricingListener asyncListener = getAsyncListener(listener);
+        if (asyncListener != null) {
+            listeners.remove(asyncListener);
+            asyncListener.dispose();
+        }
+        else {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Sets the environment to notify the listeners added afterward from a dedicated
+     * thread, so slow listeners don't delay the feed.
+     *
+     * @param policy the policy to apply when a listener falls behind, or <code>null</code> to notify synchronously.
+     * @param capacity the maximum number of events queued for each listener.
+     */
+    public void setAsyncDispatch(AsyncPricingListener.Policy policy, int capacity) {
+        this.dispatchPolicy = policy;
+        this.dispatchCapacity = capacity;
+    }
+
+    /**
+     * Returns the asynchronous dispatcher of a listener, used to read the queue metrics.
+     *
+     * @param listener the listener.
+     * @return the dispatcher, or <code>null</code> if the listener is notified synchronously.
+     */
+    public AsyncPricingListener getAsyncListener(IPricingListener listener) {
+        Object[] l = listeners.getListeners();
+        for (int i = 0; i < l.length; i++) {
+            if (l[i] instanceof AsyncPricingListener && ((AsyncPricingListener) l[i]).getListener() == listener) {
+                return (AsyncPricingListener) l[i];
+            }
+        }
+        return null;
     }
 
     /* (non-Javadoc)
@@ -442,6 +522,8 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
      */
     @Override
     public void dispose() {
+        setTickJournal(null);
+
         marketService.removeMarketStatusListener(marketStatusListener);
 
         for (IMarket market : marketService.getMarkets()) {
@@ -451,6 +533,12 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
             }
         }
 
+        Object[] l = listeners.getListeners();
+        for (int i = 0; i < l.length; i++) {
+            if (l[i] instanceof AsyncPricingListener) {
+                ((AsyncPricingListener) l[i]).dispose();
+            }
+        }
         listeners.clear();
 
         for (Iterator<Entry<IFeedIdentifier, SubscriptionStatus>> iter = identifiersMap.entrySet().iterator(); iter.hasNext();) {
@@ -511,6 +599,16 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
         return securitiesMap.get(security) != null ? securitiesMap.get(security).book : null;
     }
 
+    /**
+     * Returns the metrics computed from the Level II book of the given security.
+     *
+     * @param security the security.
+     * @return the metrics, or <code>null</code> if the book is not available.
+     */
+    public IDepthMetrics getDepthMetrics(ISecurity security) {
+        return securitiesMap.get(security) != null ? securitiesMap.get(security).depthMetrics : null;
+    }
+
     protected void processUpdateQuotes(IFeedIdentifier identifier, QuoteDelta[] delta) {
         SubscriptionStatus subscriptionStatus = identifiersMap.get(identifier);
         if (subscriptionStatus != null) {
@@ -542,6 +640,11 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
                             Object oldValue = pricingStatus.book;
                             pricingStatus.book = (IBook) delta[i].getNewValue();
                             pricingStatus.deltas.add(new PricingDelta(oldValue, delta[i].getNewValue()));
+
+                            Object oldMetrics = pricingStatus.depthMetrics;
+                            if (updateDepthMetrics(pricingStatus)) {
+                                pricingStatus.deltas.add(new PricingDelta(oldMetrics, pricingStatus.depthMetrics));
+                            }
                         }
                         if (delta[i].getNewValue() instanceof IBarOpen) {
                             pricingStatus.todayBarOpen = (IBarOpen) delta[i].getNewValue();
@@ -561,6 +664,29 @@ public class MarketPricingEnvironment implements IPricingEnvironment {
         }
     }
 
+    /**
+     * Updates the depth metrics from the current book, the metrics are computed on
+     * the notifying thread so listeners only receive the results.
+     *
+     * @param pricingStatus the status to update.
+     * @return <code>true</code> if the metrics are changed.
+     */
+    protected boolean updateDepthMetrics(PricingStatus pricingStatus) {
+        if (pricingStatus.book == null) {
+            return false;
+        }
+        if (pricingStatus.depthAnalyzer == null) {
+            CoreActivator activator = CoreActivator.getDefault();
+            pricingStatus.depthAnalyzer = activator != null ? activator.createDepthAnalyzer() : new DepthAnalyzer();
+        }
+        IDepthMetrics newMetrics = pricingStatus.depthAnalyzer.update(pricingStatus.book);
+        if (newMetrics == pricingStatus.depthMetrics) {
+            return false;
+        }
+        pricingStatus.depthMetrics = newMetrics;
+        return true;
+    }
+
     protected void notifyListeners() {
         Object[] l = listeners.getListeners();
 
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.repositories;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipsetrader.core.feed.IOHLC;
+
+/**
+ * Changes of a bars array since it was last written to a store.
+ *
+ * <p>The delta is relative to the content of a specific store, a store that
+ * receives a delta computed for another store must ignore it and write the
+ * whole bars array.</p>
+ *
+ * @since 1.0
+ */
+public class BarsDelta {
+
+    private final IStore store;
+    private final IOHLC[] added;
+    private final IOHLC[] changed;
+    private final Date[] removed;
+
+    public BarsDelta(IStore store, IOHLC[] added, IOHLC[] changed, Date[] removed) {
+        this.store = store;
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+    }
+
+    /**
+     * Computes the changes between two bars arrays sorted by date.
+     *
+     * @param store the store holding the old bars.
+     * @param oldBars the bars stored.
+     * @param newBars the bars to store.
+     * @return the delta.
+     */
+    public static BarsDelta compute(IStore store, IOHLC[] oldBars, IOHLC[] newBars) {
+        List<IOHLC> added = new ArrayList<IOHLC>();
+        List<IOHLC> changed = new ArrayList<IOHLC>();
+        List<Date> removed = new ArrayList<Date>();
+
+        int i = 0;
+        int j = 0;
+        while (i < oldBars.length || j < newBars.length) {
+            if (j == newBars.length) {
+                removed.add(oldBars[i++].getDate());
+                continue;
+            }
+            if (i == oldBars.length) {
+                added.add(newBars[j++]);
+                continue;
+            }
+
+            int c = oldBars[i].getDate().compareTo(newBars[j].getDate());
+            if (c < 0) {
+                removed.add(oldBars[i++].getDate());
+            }
+            else if (c > 0) {
+                added.add(newBars[j++]);
+            }
+            else {
+                if (!isSame(oldBars[i], newBars[j])) {
+                    changed.add(newBars[j]);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return new BarsDelta(store, added.toArray(new IOHLC[added.size()]), changed.toArray(new IOHLC[changed.size()]), removed.toArray(new Date[removed.size()]));
+    }
+
+    /**
+     * Returns the store holding the bars this delta is relative to.
+     *
+     * @return the store.
+     */
+    public IStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the bars with a date not already stored, sorted by date.
+     *
+     * @return the added bars.
+     */
+    public IOHLC[] getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the bars with a date already stored but with different values, sorted by date.
+     *
+     * @return the changed bars.
+     */
+    public IOHLC[] getChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns the dates of the stored bars that are no longer present, sorted by date.
+     *
+     * @return the removed dates.
+     */
+    public Date[] getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return added.length == 0 && changed.length == 0 && removed.length == 0;
+    }
+
+    /**
+     * Returns the added and changed bars merged in a single array sorted by date.
+     *
+     * @return the bars to write.
+     */
+    public IOHLC[] getUpdated() {
+        IOHLC[] result = new IOHLC[added.length + changed.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < added.length && j < changed.length) {
+            if (added[i].getDate().before(changed[j].getDate())) {
+                result[k++] = added[i++];
+            }
+            else {
+                result[k++] = changed[j++];
+            }
+        }
+        while (i < added.length) {
+            result[k++] = added[i++];
+        }
+        while (j < changed.length) {
+            result[k++] = changed[j++];
+        }
+        return result;
+    }
+
+    static boolean isSame(IOHLC o1, IOHLC o2) {
+        if (o1 == o2) {
+            return true;
+        }
+        return equals(o1.getOpen(), o2.getOpen()) && equals(o1.getHigh(), o2.getHigh()) && equals(o1.getLow(), o2.getLow()) && equals(o1.getClose(), o2.getClose()) && equals(o1.getVolume(), o2.getVolume());
+    }
+
+    private static boolean equals(Object o1, Object o2) {
+        return o1 == o2 || o1 != null && o1.equals(o2);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "BarsDelta [added=" + added.length + ", changed=" + changed.length + ", removed=" + removed.length + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.core.repositories;
+
+import java.util.Date;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * An history object store that can fetch only the intraday childs within a
+ * range of days, without reading the childs outside the range.
+ *
+ * @since 1.0
+ */
+public interface IHistoryStore extends IStore {
+
+    /**
+     * Returns the child objects with a <code>BARS_DATE</code> property within the given range,
+     * bounds included.
+     *
+     * @param first - the first date, or <code>null</code> to include all childs up to the last date
+     * @param last - the last date, or <code>null</code> to include all childs from the first date
+     * @param monitor - a progress monitor, or null if progress reporting and cancellation are not desired
+     * @return an array containing the child objects
+     */
+    public IStore[] fetchChilds(Date first, Date last, IProgressMonitor monitor);
+}
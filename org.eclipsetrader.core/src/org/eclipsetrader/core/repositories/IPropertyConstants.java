@@ -82,6 +82,14 @@ public interface IPropertyConstants {
      */
     public static final String TIME_SPAN = "bars-time-span";
 
+    /**
+     * A <code>BarsDelta</code> instance describing the changes of the
+     * <code>BARS</code> property since it was last written to the store.
+     * Stores can use it to write only the changed bars.
+     * @see org.eclipsetrader.core.repositories.BarsDelta
+     */
+    public static final String BARS_DELTA = "bars-delta";
+
     /**
      * An instance of java.util.Date representing the starting date of
      * an IOHLC array.
@@ -154,6 +154,10 @@ public class Order implements IOrder {
         return stopPrice;
     }
 
+    public void setStopPrice(Double stopPrice) {
+        this.stopPrice = stopPrice;
+    }
+
     /* (non-Javadoc)
      * @see org.eclipsetrader.core.trading.IOrder#getValidity()
      */
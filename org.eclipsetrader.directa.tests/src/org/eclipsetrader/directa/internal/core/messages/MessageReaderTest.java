@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.directa.internal.core.messages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import junit.framework.TestCase;
+
+public class MessageReaderTest extends TestCase {
+
+    private static final byte[] PRICE = new byte[] {
+            1, 124, 37, -25, -62, 2, 80, 76, 84, -49, -9, -61, 63, 124, 37, -25, -62, 0, 0, 39, 16, -37, 45, -32, 75, 1, 36, 74, 52, 92, -113, -62, 63, -57, 75, -57, 63, 0, 0, 12, 68,
+    };
+
+    public void testReadMessage() throws Exception {
+        MessageReader reader = new MessageReader();
+        reader.read(new ChunkedChannel(frame(CreaMsg.DATA_MSG, PRICE), 1024));
+
+        assertTrue(reader.nextMessage());
+        assertEquals(CreaMsg.DATA_MSG, reader.getType());
+        assertEquals(PRICE.length, reader.getMessage().remaining());
+        assertFalse(reader.nextMessage());
+    }
+
+    public void testReadMessageSplitAcrossReads() throws Exception {
+        byte[] data = concat(frame(CreaMsg.DATA_MSG, PRICE), frame(CreaMsg.DATA_MSG, PRICE));
+        ChunkedChannel channel = new ChunkedChannel(data, 7);
+
+        MessageReader reader = new MessageReader();
+        int count = 0;
+        while (reader.read(channel) != -1) {
+            while (reader.nextMessage()) {
+                assertEquals(PRICE.length, reader.getMessage().remaining());
+                count++;
+            }
+        }
+
+        assertEquals(2, count);
+    }
+
+    public void testSkipInvalidHeader() throws Exception {
+        byte[] data = concat(new byte[] {
+                0, 1, 2
+        }, frame(CreaMsg.DATA_MSG, PRICE));
+
+        MessageReader reader = new MessageReader();
+        reader.read(new ChunkedChannel(data, 1024));
+
+        assertTrue(reader.nextMessage());
+        assertEquals(PRICE.length, reader.getMessage().remaining());
+    }
+
+    public void testReadMessageLargerThanBuffer() throws Exception {
+        byte[] body = new byte[100];
+        ChunkedChannel channel = new ChunkedChannel(frame(CreaMsg.DATA_MSG, body), 1024);
+
+        MessageReader reader = new MessageReader(16);
+        int count = 0;
+        while (reader.read(channel) != -1) {
+            while (reader.nextMessage()) {
+                assertEquals(body.length, reader.getMessage().remaining());
+                count++;
+            }
+        }
+
+        assertEquals(1, count);
+    }
+
+    public void testGetHeader() throws Exception {
+        byte[] frame = frame(Message.TIP_ECHO, new byte[] {
+                10, 20
+        });
+
+        MessageReader reader = new MessageReader();
+        reader.read(new ChunkedChannel(frame, 1024));
+
+        assertTrue(reader.nextMessage());
+        byte[] header = reader.getHeader();
+        for (int i = 0; i < header.length; i++) {
+            assertEquals(frame[i], header[i]);
+        }
+    }
+
+    public void testDecodeMessageSlice() throws Exception {
+        byte[] data = concat(frame(CreaMsg.DATA_MSG, PRICE), frame(CreaMsg.DATA_MSG, PRICE));
+
+        MessageReader reader = new MessageReader();
+        reader.read(new ChunkedChannel(data, 1024));
+
+        Price expected = (Price) Message.decodeMessage(PRICE);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(reader.nextMessage());
+            Price msg = (Price) Message.decodeMessage(reader.getMessage());
+            assertEquals(expected.head.key, msg.head.key);
+            assertEquals(expected.head.oraMsg, msg.head.oraMsg);
+            assertEquals(expected.val_ult, msg.val_ult);
+            assertEquals(expected.ora_ult, msg.ora_ult);
+            assertEquals(expected.qta_prgs, msg.qta_prgs);
+            assertEquals(expected.num_contr, msg.num_contr);
+        }
+    }
+
+    public void testReplayCapture() throws Exception {
+        int messages = 20000;
+
+        ByteArrayOutputStream capture = new ByteArrayOutputStream();
+        for (int i = 0; i < messages; i++) {
+            capture.write(frame(CreaMsg.DATA_MSG, PRICE));
+        }
+        final byte[] data = capture.toByteArray();
+
+        final Pipe pipe = Pipe.open();
+        final IOException[] writeException = new IOException[1];
+        Thread writer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    ByteBuffer bb = ByteBuffer.wrap(data);
+                    while (bb.hasRemaining()) {
+                        bb.limit(Math.min(bb.position() + 1500, data.length));
+                        pipe.sink().write(bb);
+                        bb.limit(data.length);
+                    }
+                } catch (IOException e) {
+                    writeException[0] = e;
+                } finally {
+                    try {
+                        pipe.sink().close();
+                    } catch (IOException e) {
+                        if (writeException[0] == null) {
+                            writeException[0] = e;
+                        }
+                    }
+                }
+            }
+        };
+        writer.start();
+
+        Selector selector = Selector.open();
+        pipe.source().configureBlocking(false);
+        pipe.source().register(selector, SelectionKey.OP_READ);
+
+        MessageReader reader = new MessageReader();
+        int count = 0;
+        try {
+            for (;;) {
+                if (selector.select(1000) == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+                if (reader.read(pipe.source()) == -1) {
+                    break;
+                }
+                while (reader.nextMessage()) {
+                    DataMessage msg = Message.decodeMessage(reader.getMessage());
+                    assertNotNull(msg);
+                    count++;
+                }
+            }
+        } finally {
+            selector.close();
+            pipe.source().close();
+        }
+        writer.join();
+        if (writeException[0] != null) {
+            throw writeException[0];
+        }
+
+        assertEquals(messages, count);
+    }
+
+    private byte[] frame(int type, byte[] body) {
+        byte[] frame = new byte[MessageReader.HEADER_LENGTH + body.length];
+        frame[0] = '#';
+        frame[1] = (byte) type;
+        frame[2] = (byte) (body.length & 0xFF);
+        frame[3] = (byte) ((body.length >> 8) & 0xFF);
+        System.arraycopy(body, 0, frame, MessageReader.HEADER_LENGTH, body.length);
+        return frame;
+    }
+
+    private byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static class ChunkedChannel implements ReadableByteChannel {
+
+        private final ByteBuffer data;
+        private final int chunkSize;
+
+        ChunkedChannel(byte[] data, int chunkSize) {
+            this.data = ByteBuffer.wrap(data);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(chunkSize, data.remaining()), dst.remaining());
+            for (int i = 0; i < n; i++) {
+                dst.put(data.get());
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
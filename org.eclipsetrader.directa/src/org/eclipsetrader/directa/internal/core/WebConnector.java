@@ -14,8 +14,6 @@ package org.eclipsetrader.directa.internal.core;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -24,13 +22,9 @@ import java.util.Locale;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.NameValuePair;
-import org.apache.commons.httpclient.UsernamePasswordCredentials;
-import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.eclipse.core.net.proxy.IProxyData;
-import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.equinox.security.storage.ISecurePreferences;
@@ -39,6 +33,7 @@ import org.eclipse.jface.dialogs.ErrorDialog;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.window.Window;
 import org.eclipse.swt.widgets.Display;
+import org.eclipsetrader.core.HttpClientService;
 import org.eclipsetrader.core.feed.FeedIdentifier;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
 import org.eclipsetrader.core.feed.IFeedProperties;
@@ -192,25 +187,12 @@ public class WebConnector {
             }
 
             if (client == null) {
-                client = new HttpClient();
-                client.getHttpConnectionManager().getParams().setConnectionTimeout(30000);
-                try {
-                    setupProxy(client, HOST);
-                } catch (URISyntaxException e) {
-                    final Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Error setting proxy", e); //$NON-NLS-1$
-                    Display.getDefault().syncExec(new Runnable() {
-
-                        @Override
-                        public void run() {
-                            Activator.log(status);
-                            ErrorDialog.openError(null, null, null, status);
-                        }
-                    });
-                }
+                client = HttpClientService.getInstance().createHttpClient(HOST);
             }
 
+            HttpMethod method = null;
             try {
-                HttpMethod method = new GetMethod("https://" + HOST + "/trading/collegc_3"); //$NON-NLS-1$ //$NON-NLS-2$
+                method = new GetMethod("https://" + HOST + "/trading/collegc_3"); //$NON-NLS-1$ //$NON-NLS-2$
                 method.setFollowRedirects(true);
                 method.setQueryString(new NameValuePair[] {
                     new NameValuePair("USER", userName), //$NON-NLS-1$
@@ -220,9 +202,9 @@ public class WebConnector {
                 });
 
                 logger.debug(method.getURI().toString());
-                client.executeMethod(method);
+                HttpClientService.getInstance().executeMethod(client, method);
 
-                Parser parser = Parser.createParser(method.getResponseBodyAsString(), ""); //$NON-NLS-1$
+                Parser parser = Parser.createParser(HttpClientService.getInstance().getResponseBodyAsString(method), ""); //$NON-NLS-1$
                 NodeList list = parser.extractAllNodesThatMatch(new NodeClassFilter(RemarkNode.class));
                 for (SimpleNodeIterator iter = list.elements(); iter.hasMoreNodes();) {
                     RemarkNode node = (RemarkNode) iter.nextNode();
@@ -241,6 +223,10 @@ public class WebConnector {
                 Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error connecting to login server", e); //$NON-NLS-1$
                 Activator.log(status);
                 return;
+            } finally {
+                if (method != null) {
+                    method.releaseConnection();
+                }
             }
 
             if (user.equals("") || prt.equals("") || urt.equals("")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
@@ -264,30 +250,6 @@ public class WebConnector {
         return account;
     }
 
-    private void setupProxy(HttpClient client, String host) throws URISyntaxException {
-        if (Activator.getDefault() != null) {
-            BundleContext context = Activator.getDefault().getBundle().getBundleContext();
-            ServiceReference reference = context.getServiceReference(IProxyService.class.getName());
-            if (reference != null) {
-                IProxyService proxyService = (IProxyService) context.getService(reference);
-                IProxyData[] proxyData = proxyService.select(new URI(null, host, null, null));
-                for (int i = 0; i < proxyData.length; i++) {
-                    if (IProxyData.HTTP_PROXY_TYPE.equals(proxyData[i].getType())) {
-                        IProxyData data = proxyData[i];
-                        if (data.getHost() != null) {
-                            client.getHostConfiguration().setProxy(data.getHost(), data.getPort());
-                        }
-                        if (data.isRequiresAuthentication()) {
-                            client.getState().setProxyCredentials(AuthScope.ANY, new UsernamePasswordCredentials(data.getUserId(), data.getPassword()));
-                        }
-                        break;
-                    }
-                }
-                context.ungetService(reference);
-            }
-        }
-    }
-
     protected IPreferenceStore getPreferenceStore() {
         return Activator.getDefault().getPreferenceStore();
     }
@@ -375,16 +337,17 @@ public class WebConnector {
         query.add(new NameValuePair("FAS5", order.getRoute() != null ? order.getRoute().getId() : BrokerConnector.Immediate.getId())); //$NON-NLS-1$
 
         // Inserisce l'ordine di acquisto
+        GetMethod method = null;
         try {
-            GetMethod method = new GetMethod("https://" + HOST + "/trading/ordimm5c"); //$NON-NLS-1$ //$NON-NLS-2$
+            method = new GetMethod("https://" + HOST + "/trading/ordimm5c"); //$NON-NLS-1$ //$NON-NLS-2$
             method.setFollowRedirects(true);
             query.add(new NameValuePair("MODO", "C")); //$NON-NLS-1$ //$NON-NLS-2$
             method.setQueryString(query.toArray(new NameValuePair[query.size()]));
 
             logger.debug(method.getURI().toString());
-            client.executeMethod(method);
+            HttpClientService.getInstance().executeMethod(client, method);
 
-            BufferedReader in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+            BufferedReader in = new BufferedReader(new InputStreamReader(HttpClientService.getInstance().getResponseBodyAsStream(method)));
             while ((inputLine = in.readLine()) != null) {
                 logger.debug(inputLine);
                 if (inputLine.indexOf("VI TRASMETTO L'ORDINE DI") != -1) { //$NON-NLS-1$
@@ -408,23 +371,28 @@ public class WebConnector {
         } catch (Exception e) {
             Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error sending order [" + order.toString() + "]", e); //$NON-NLS-1$ //$NON-NLS-2$
             Activator.log(status);
+        } finally {
+            if (method != null) {
+                method.releaseConnection();
+            }
         }
 
         // Se viene richiesta invia anche la conferma d'ordine
         if (ok && confirm) {
             ok = false;
 
+            method = null;
             try {
-                GetMethod method = new GetMethod("https://" + HOST + "/trading/ordimm5c"); //$NON-NLS-1$ //$NON-NLS-2$
+                method = new GetMethod("https://" + HOST + "/trading/ordimm5c"); //$NON-NLS-1$ //$NON-NLS-2$
                 method.setFollowRedirects(true);
                 query.remove(new NameValuePair("MODO", "C")); //$NON-NLS-1$ //$NON-NLS-2$
                 query.add(new NameValuePair("MODO", "V")); //$NON-NLS-1$ //$NON-NLS-2$
                 method.setQueryString(query.toArray(new NameValuePair[query.size()]));
 
                 logger.debug(method.getURI().toString());
-                client.executeMethod(method);
+                HttpClientService.getInstance().executeMethod(client, method);
 
-                BufferedReader in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+                BufferedReader in = new BufferedReader(new InputStreamReader(HttpClientService.getInstance().getResponseBodyAsStream(method)));
                 while ((inputLine = in.readLine()) != null) {
                     logger.debug(inputLine);
                     if (inputLine.indexOf("ORDINE IMMESSO") != -1) { //$NON-NLS-1$
@@ -444,6 +412,10 @@ public class WebConnector {
             } catch (Exception e) {
                 Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error confirming order [" + order.toString() + "]", e); //$NON-NLS-1$ //$NON-NLS-2$
                 Activator.log(status);
+            } finally {
+                if (method != null) {
+                    method.releaseConnection();
+                }
             }
         }
 
@@ -473,8 +445,9 @@ public class WebConnector {
         boolean ok = false;
         String inputLine;
 
+        GetMethod method = null;
         try {
-            GetMethod method = new GetMethod("https://" + HOST + "/trading/ordmod5c"); //$NON-NLS-1$ //$NON-NLS-2$
+            method = new GetMethod("https://" + HOST + "/trading/ordmod5c"); //$NON-NLS-1$ //$NON-NLS-2$
             method.setQueryString(new NameValuePair[] {
                 new NameValuePair("TAST", "REVOCA"), //$NON-NLS-1$ //$NON-NLS-2$
                 new NameValuePair("USER", user), //$NON-NLS-1$
@@ -486,9 +459,9 @@ public class WebConnector {
             });
 
             logger.debug(method.getURI().toString());
-            client.executeMethod(method);
+            HttpClientService.getInstance().executeMethod(client, method);
 
-            BufferedReader in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+            BufferedReader in = new BufferedReader(new InputStreamReader(HttpClientService.getInstance().getResponseBodyAsStream(method)));
             while ((inputLine = in.readLine()) != null) {
                 logger.debug(inputLine);
                 if (inputLine.indexOf("INOLTRATA LA RICHIESTA DI REVOCA") != -1 || inputLine.indexOf("RICH.ANN.") != -1) { //$NON-NLS-1$ //$NON-NLS-2$
@@ -499,6 +472,10 @@ public class WebConnector {
         } catch (Exception e) {
             Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error canceling order [" + tracker.toString() + "]", e); //$NON-NLS-1$ //$NON-NLS-2$
             Activator.log(status);
+        } finally {
+            if (method != null) {
+                method.releaseConnection();
+            }
         }
 
         if (ok) {
@@ -509,8 +486,9 @@ public class WebConnector {
     }
 
     public void importWatchlists() {
+        GetMethod method = null;
         try {
-            GetMethod method = new GetMethod("https://" + HOST + "/trading/select"); //$NON-NLS-1$ //$NON-NLS-2$
+            method = new GetMethod("https://" + HOST + "/trading/select"); //$NON-NLS-1$ //$NON-NLS-2$
             method.setFollowRedirects(true);
             method.setQueryString(new NameValuePair[] {
                 new NameValuePair("USER", user), //$NON-NLS-1$
@@ -518,9 +496,9 @@ public class WebConnector {
             });
 
             logger.debug(method.getURI().toString());
-            client.executeMethod(method);
+            HttpClientService.getInstance().executeMethod(client, method);
 
-            Parser parser = Parser.createParser(method.getResponseBodyAsString(), ""); //$NON-NLS-1$
+            Parser parser = Parser.createParser(HttpClientService.getInstance().getResponseBodyAsString(method), ""); //$NON-NLS-1$
             NodeList list = parser.extractAllNodesThatMatch(new HasAttributeFilter("name", "DEVAR")); //$NON-NLS-1$ //$NON-NLS-2$
             for (SimpleNodeIterator iter = list.elements(); iter.hasMoreNodes();) {
                 Object o = iter.nextNode();
@@ -537,12 +515,17 @@ public class WebConnector {
             }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            if (method != null) {
+                method.releaseConnection();
+            }
         }
     }
 
     protected void getWatchlist(String id, String title) {
+        HttpMethod method = null;
         try {
-            HttpMethod method = new GetMethod("https://" + HOST + "/trading/tabelc_4"); //$NON-NLS-1$ //$NON-NLS-2$
+            method = new GetMethod("https://" + HOST + "/trading/tabelc_4"); //$NON-NLS-1$ //$NON-NLS-2$
             method.setFollowRedirects(true);
             method.setQueryString(new NameValuePair[] {
                 new NameValuePair("USER", user), //$NON-NLS-1$
@@ -550,9 +533,9 @@ public class WebConnector {
             });
 
             logger.debug(method.getURI().toString());
-            client.executeMethod(method);
+            HttpClientService.getInstance().executeMethod(client, method);
 
-            Parser parser = Parser.createParser(method.getResponseBodyAsString(), ""); //$NON-NLS-1$
+            Parser parser = Parser.createParser(HttpClientService.getInstance().getResponseBodyAsString(method), ""); //$NON-NLS-1$
             NodeList list = parser.extractAllNodesThatMatch(new NodeClassFilter(TableRow.class));
             for (SimpleNodeIterator iter = list.elements(); iter.hasMoreNodes();) {
                 TableRow row = (TableRow) iter.nextNode();
@@ -594,6 +577,10 @@ public class WebConnector {
             }
         } catch (Exception e) {
             logger.error(e.toString(), e);
+        } finally {
+            if (method != null) {
+                method.releaseConnection();
+            }
         }
     }
 }
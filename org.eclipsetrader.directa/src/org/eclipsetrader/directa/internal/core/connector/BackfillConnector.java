@@ -22,7 +22,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.zip.Inflater;
 
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,6 +30,7 @@ import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExecutableExtension;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.HttpClientService;
 import org.eclipsetrader.core.feed.IBackfillConnector;
 import org.eclipsetrader.core.feed.IDividend;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
@@ -49,12 +49,10 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
     private String name;
 
     private String backfillServer = "213.92.13.41"; //$NON-NLS-1$
-    private SimpleDateFormat df;
 
     private Log log = LogFactory.getLog(getClass());
 
     public BackfillConnector() {
-        df = new SimpleDateFormat("yyyyMMdd"); //$NON-NLS-1$
     }
 
     /* (non-Javadoc)
@@ -111,14 +109,19 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
             c.add(Calendar.DATE, 1);
         }
 
+        // The check and the login are done on the connector's lock, so concurrent downloads login only once
         WebConnector connector = WebConnector.getInstance();
-        if (!connector.isLoggedIn()) {
-            connector.login();
+        synchronized (connector) {
+            if (!connector.isLoggedIn()) {
+                connector.login();
+            }
         }
 
         List<OHLC> list = new ArrayList<OHLC>();
 
         if (timeSpan.getUnits() == TimeSpan.Units.Days) {
+            SimpleDateFormat df = new SimpleDateFormat("yyyyMMdd"); //$NON-NLS-1$
+
             StringBuilder s = new StringBuilder();
             s.append("/jchart/jwrap.php?"); //$NON-NLS-1$
             s.append("jmodo=dati"); //$NON-NLS-1$
@@ -127,21 +130,25 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
             s.append(String.format("&di=%s", df.format(from))); //$NON-NLS-1$
             s.append(String.format("&df=%s", df.format(to))); //$NON-NLS-1$
 
-            HttpClient client = new HttpClient();
+            GetMethod method = null;
             try {
-                GetMethod method = new GetMethod();
+                method = new GetMethod();
                 method.setURI(new org.apache.commons.httpclient.URI("http://" + backfillServer + s.toString(), false)); //$NON-NLS-1$
                 method.setFollowRedirects(true);
                 log.debug(method.getURI().toString());
 
-                client.executeMethod(method);
+                HttpClientService.getInstance().executeMethod(method);
 
-                BufferedInputStream in = new BufferedInputStream(method.getResponseBodyAsStream());
+                BufferedInputStream in = new BufferedInputStream(HttpClientService.getInstance().getResponseBodyAsStream(method));
                 parseEndOfDayStream(in, list);
                 in.close();
             } catch (Exception e) {
                 Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading data", e); //$NON-NLS-1$
                 Activator.log(status);
+            } finally {
+                if (method != null) {
+                    method.releaseConnection();
+                }
             }
         }
         else if (timeSpan.getUnits() == TimeSpan.Units.Minutes) {
@@ -159,21 +166,25 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
             s.append("&cod=A"); //$NON-NLS-1$
             s.append(String.format("&stcmd=%s,,,%d,%d,0", symbol, days, size)); //$NON-NLS-1$
 
-            HttpClient client = new HttpClient();
+            GetMethod method = null;
             try {
-                GetMethod method = new GetMethod();
+                method = new GetMethod();
                 method.setURI(new org.apache.commons.httpclient.URI("http://" + backfillServer + s.toString(), false)); //$NON-NLS-1$
                 method.setFollowRedirects(true);
                 log.debug(method.getURI().toString());
 
-                client.executeMethod(method);
+                HttpClientService.getInstance().executeMethod(method);
 
-                BufferedInputStream in = new BufferedInputStream(method.getResponseBodyAsStream());
+                BufferedInputStream in = new BufferedInputStream(HttpClientService.getInstance().getResponseBodyAsStream(method));
                 parseIntradayStream(in, list);
                 in.close();
             } catch (Exception e) {
                 Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading data", e); //$NON-NLS-1$
                 Activator.log(status);
+            } finally {
+                if (method != null) {
+                    method.releaseConnection();
+                }
             }
         }
 
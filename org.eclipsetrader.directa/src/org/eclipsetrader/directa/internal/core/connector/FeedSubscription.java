@@ -28,6 +28,7 @@ import org.eclipsetrader.core.feed.ISubscriptionListener;
 import org.eclipsetrader.core.feed.ITodayOHL;
 import org.eclipsetrader.core.feed.ITrade;
 import org.eclipsetrader.core.feed.LastClose;
+import org.eclipsetrader.core.feed.OrderBook;
 import org.eclipsetrader.core.feed.Quote;
 import org.eclipsetrader.core.feed.QuoteDelta;
 import org.eclipsetrader.core.feed.QuoteEvent;
@@ -45,6 +46,7 @@ public class FeedSubscription implements IFeedSubscription2 {
     private ITodayOHL todayOHL;
     private ILastClose lastClose;
     private IBook book;
+    private OrderBook orderBook = new OrderBook();
     private ListenerList listeners = new ListenerList(ListenerList.IDENTITY);
     private IdentifierType identifierType;
     List<QuoteDelta> deltaList = new ArrayList<QuoteDelta>();
@@ -221,9 +223,16 @@ public class FeedSubscription implements IFeedSubscription2 {
         return book;
     }
 
-    public void setBook(IBook book) {
-        addDelta(new QuoteDelta(identifierType.getIdentifier(), this.book, book));
-        this.book = book;
+    /**
+     * Returns the live order book updated by the streaming connector.
+     *
+     * <p>Changes are published to the listeners as a book snapshot with the next
+     * notification.</p>
+     *
+     * @return the order book.
+     */
+    public OrderBook getOrderBook() {
+        return orderBook;
     }
 
     public void addDelta(QuoteDelta delta) {
@@ -239,6 +248,11 @@ public class FeedSubscription implements IFeedSubscription2 {
     public void fireNotification() {
         QuoteDelta[] deltas;
         synchronized (deltaList) {
+            if (orderBook.hasChanges()) {
+                IBook newBook = orderBook.getSnapshot();
+                deltaList.add(new QuoteDelta(identifierType.getIdentifier(), book, newBook));
+                book = newBook;
+            }
             if (deltaList.isEmpty()) {
                 return;
             }
@@ -262,7 +276,7 @@ public class FeedSubscription implements IFeedSubscription2 {
 
     public boolean hasPendingChanges() {
         synchronized (deltaList) {
-            return deltaList.size() != 0;
+            return deltaList.size() != 0 || orderBook.hasChanges();
         }
     }
 
@@ -21,8 +21,9 @@ import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -37,11 +38,8 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
 
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.NameValuePair;
-import org.apache.commons.httpclient.UsernamePasswordCredentials;
-import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -54,16 +52,17 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipsetrader.core.HttpClientService;
+import org.eclipsetrader.core.IHttpClientService;
 import org.eclipsetrader.core.feed.Bar;
 import org.eclipsetrader.core.feed.BarOpen;
-import org.eclipsetrader.core.feed.BookEntry;
-import org.eclipsetrader.core.feed.IBook;
-import org.eclipsetrader.core.feed.IBookEntry;
+import org.eclipsetrader.core.feed.BookDelta;
 import org.eclipsetrader.core.feed.IConnectorListener;
 import org.eclipsetrader.core.feed.IFeedConnector2;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
 import org.eclipsetrader.core.feed.IFeedSubscription;
 import org.eclipsetrader.core.feed.IFeedSubscription2;
+import org.eclipsetrader.core.feed.OrderBook;
 import org.eclipsetrader.core.feed.QuoteDelta;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.directa.internal.Activator;
@@ -75,8 +74,8 @@ import org.eclipsetrader.directa.internal.core.messages.Book;
 import org.eclipsetrader.directa.internal.core.messages.CreaMsg;
 import org.eclipsetrader.directa.internal.core.messages.DataMessage;
 import org.eclipsetrader.directa.internal.core.messages.ErrorMessage;
-import org.eclipsetrader.directa.internal.core.messages.Header;
 import org.eclipsetrader.directa.internal.core.messages.Message;
+import org.eclipsetrader.directa.internal.core.messages.MessageReader;
 import org.eclipsetrader.directa.internal.core.messages.Price;
 import org.eclipsetrader.directa.internal.core.messages.Util;
 import org.eclipsetrader.directa.internal.core.repository.IdentifierType;
@@ -105,6 +104,8 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
     private static final String ASK_QUANTITA = "[AS1]"; //$NON-NLS-1$
     private static final String ASK_PREZZO = "[AP1]"; //$NON-NLS-1$
 
+    private static final long SELECT_TIMEOUT = 100;
+
     private String id;
     private String name;
 
@@ -126,6 +127,7 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
     private int streamingPort = 8002;
     private String streamingVersion = "3.0"; //$NON-NLS-1$
     private SocketChannel sc;
+    private Selector selector;
     private Set<String> sTit;
     private Set<String> sTit2;
 
@@ -384,6 +386,11 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
     public synchronized void disconnect() {
         stopping = true;
 
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+
         if (thread != null) {
             try {
                 thread.join(30 * 1000);
@@ -420,8 +427,6 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
         "rawtypes", "unchecked"
     })
     public void run() {
-        byte bHeader[] = new byte[4];
-
         sTit = new HashSet<String>();
         sTit2 = new HashSet<String>();
 
@@ -494,11 +499,15 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
         subscriptionsChanged = true;
         try {
             sc.configureBlocking(false);
-        } catch (IOException e1) {
-            // Do nothing
+            selector = Selector.open();
+            sc.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            Activator.log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading data", e)); //$NON-NLS-1$
         }
 
-        while (!isStopping()) {
+        MessageReader reader = new MessageReader();
+
+        while (selector != null && selector.isOpen() && !isStopping()) {
             if (subscriptionsChanged) {
                 try {
                     updateStreamSubscriptions();
@@ -509,66 +518,35 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
                 }
             }
 
-            // Legge l'header di un messaggio (se c'e')
+            // Attende i dati dal server, il timeout consente di aggiornare le sottoscrizioni
             try {
-                ByteBuffer bb = ByteBuffer.wrap(bHeader);
-                if (sc.read(bb) <= 0) {
-                    Thread.sleep(100);
+                if (selector.select(SELECT_TIMEOUT) == 0) {
                     continue;
                 }
-                while (bb.remaining() > 0) {
-                    sc.read(bb);
+                selector.selectedKeys().clear();
+                if (reader.read(sc) == -1) {
+                    Activator.log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Connection closed by the streaming server", null)); //$NON-NLS-1$
+                    break;
                 }
             } catch (Exception e) {
                 Activator.log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading data", e)); //$NON-NLS-1$
                 break;
             }
 
-            // Verifica la correttezza dell'header e legge il resto del messaggio
-            Header h = new Header();
-            h.start = (char) Util.byteToInt(bHeader[0]);
-            if (h.start == '#') {
-                h.tipo = Util.getByte(bHeader[1]);
-                h.len = Util.getMessageLength(bHeader, 2);
-                byte mes[] = new byte[h.len];
-                try {
-                    ByteBuffer bb = ByteBuffer.wrap(mes);
-                    while (bb.remaining() > 0) {
-                        sc.read(bb);
-                    }
-                } catch (Exception e) {
-                }
-
-                if (h.tipo == CreaMsg.ERROR_MSG) {
-                    ErrorMessage eMsg = new ErrorMessage(mes);
-                    Activator.log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Message from server: " + eMsg.sMessageError, null)); //$NON-NLS-1$
-                }
-                else if (h.tipo == Message.TIP_ECHO) {
-                    try {
-                        sc.write(ByteBuffer.wrap(new byte[] {
-                            bHeader[0], bHeader[1], bHeader[2], bHeader[3], mes[0], mes[1]
-                        }));
-                        //os.flush();
-                    } catch (Exception e) {
-                        // Do nothing
-                    }
-                }
-                else if (h.len > 0) {
-                    DataMessage obj;
-                    try {
-                        obj = Message.decodeMessage(mes);
-                        if (obj == null) {
-                            continue;
-                        }
-                    } catch (Exception e) {
-                        Activator.log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error decoding incoming message", e)); //$NON-NLS-1$
-                        continue;
-                    }
+            // Elabora i messaggi completi presenti nel buffer
+            while (reader.nextMessage()) {
+                processMessage(reader);
+            }
+        }
 
-                    processMessage(obj);
-                }
+        try {
+            if (selector != null) {
+                selector.close();
             }
+        } catch (Exception e) {
+            // Do nothing
         }
+        selector = null;
 
         try {
             sc.write(ByteBuffer.wrap(CreaMsg.creaStopDataMsg()));
@@ -690,6 +668,41 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
         }
     }
 
+    void processMessage(MessageReader reader) {
+        ByteBuffer message = reader.getMessage();
+
+        if (reader.getType() == CreaMsg.ERROR_MSG) {
+            byte[] mes = new byte[message.remaining()];
+            message.get(mes);
+            ErrorMessage eMsg = new ErrorMessage(mes);
+            Activator.log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Message from server: " + eMsg.sMessageError, null)); //$NON-NLS-1$
+        }
+        else if (reader.getType() == Message.TIP_ECHO) {
+            try {
+                byte[] header = reader.getHeader();
+                sc.write(ByteBuffer.wrap(new byte[] {
+                    header[0], header[1], header[2], header[3], message.get(message.position()), message.get(message.position() + 1)
+                }));
+            } catch (Exception e) {
+                // Do nothing
+            }
+        }
+        else if (message.hasRemaining()) {
+            DataMessage obj;
+            try {
+                obj = Message.decodeMessage(message);
+                if (obj == null) {
+                    return;
+                }
+            } catch (Exception e) {
+                Activator.log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error decoding incoming message", e)); //$NON-NLS-1$
+                return;
+            }
+
+            processMessage(obj);
+        }
+    }
+
     void processMessage(DataMessage obj) {
         FeedSubscription subscription = symbolSubscriptions.get(obj.head.key);
         if (subscription == null) {
@@ -730,41 +743,14 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
         else if (obj instanceof Book) {
             Book bm = (Book) obj;
 
-            IBook oldValue = subscription.getBook();
-
-            int levels = bm.offset + 5;
-            if (oldValue != null) {
-                IBookEntry[] oldEntry = oldValue.getBidProposals();
-                if (oldEntry != null) {
-                    levels = Math.max(levels, oldEntry.length);
-                }
-                oldEntry = oldValue.getAskProposals();
-                if (oldEntry != null) {
-                    levels = Math.max(levels, oldEntry.length);
-                }
-            }
-
-            IBookEntry[] bidEntry = new IBookEntry[levels];
-            IBookEntry[] askEntry = new IBookEntry[levels];
-
-            if (oldValue != null) {
-                IBookEntry[] oldEntry = oldValue.getBidProposals();
-                if (oldEntry != null) {
-                    System.arraycopy(oldEntry, 0, bidEntry, 0, oldEntry.length);
-                }
-                oldEntry = oldValue.getAskProposals();
-                if (oldEntry != null) {
-                    System.arraycopy(oldEntry, 0, askEntry, 0, oldEntry.length);
-                }
-            }
-
+            // Each message carries five levels starting at the message offset, only
+            // the changed levels are recorded in the order book
+            OrderBook orderBook = subscription.getOrderBook();
             int index = bm.offset;
-            for (int i = 0; i < 5; i++) {
-                bidEntry[index + i] = new BookEntry(null, bm.val_c[i], new Long(bm.q_pdn_c[i]), new Long(bm.n_pdn_c[i]), null);
-                askEntry[index + i] = new BookEntry(null, bm.val_v[i], new Long(bm.q_pdn_v[i]), new Long(bm.n_pdn_v[i]), null);
+            for (int i = 0; i < Book.LEVELS; i++) {
+                orderBook.set(BookDelta.BID, index + i, bm.val_c[i], bm.q_pdn_c[i], bm.n_pdn_c[i]);
+                orderBook.set(BookDelta.ASK, index + i, bm.val_v[i], bm.q_pdn_v[i], bm.n_pdn_v[i]);
             }
-            IBook newValue = new org.eclipsetrader.core.feed.Book(bidEntry, askEntry);
-            subscription.setBook(newValue);
         }
         else if (obj instanceof BidAsk) {
             BidAsk bam = (BidAsk) obj;
@@ -827,15 +813,15 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
     protected void fetchLatestBookSnapshot(String[] sTit) {
         Hashtable<String, String[]> hashtable = new Hashtable<String, String[]>();
 
+        HttpMethod method = null;
         try {
-            HttpMethod method = createMethod(sTit, "t", streamingServer, WebConnector.getInstance().getUrt(), WebConnector.getInstance().getPrt()); //$NON-NLS-1$
+            method = createMethod(sTit, "t", streamingServer, WebConnector.getInstance().getUrt(), WebConnector.getInstance().getPrt()); //$NON-NLS-1$
             method.setFollowRedirects(true);
 
-            HttpClient client = new HttpClient();
-            setupProxy(client, streamingServer);
-            client.executeMethod(method);
+            IHttpClientService httpClientService = HttpClientService.getInstance();
+            httpClientService.executeMethod(method);
 
-            BufferedReader bufferedreader = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+            BufferedReader bufferedreader = new BufferedReader(new InputStreamReader(httpClientService.getResponseBodyAsStream(method)));
 
             String s5;
             while ((s5 = bufferedreader.readLine()) != null) {
@@ -847,6 +833,10 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
         } catch (Exception e) {
             Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading snapshot data", e); //$NON-NLS-1$
             Activator.log(status);
+        } finally {
+            if (method != null) {
+                method.releaseConnection();
+            }
         }
 
         for (String symbol : sTit) {
@@ -860,16 +850,13 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
             }
 
             try {
-                Object oldValue = subscription.getBook();
-                IBookEntry[] bidEntry = new IBookEntry[20];
-                IBookEntry[] askEntry = new IBookEntry[20];
+                OrderBook orderBook = subscription.getOrderBook();
                 for (int x = 0, k = 9; x < 20; x++, k += 6) {
-                    bidEntry[x] = new BookEntry(null, Double.parseDouble(sVal[k + 2]), Long.parseLong(sVal[k + 1]), Long.parseLong(sVal[k]), null);
-                    askEntry[x] = new BookEntry(null, Double.parseDouble(sVal[k + 5]), Long.parseLong(sVal[k + 4]), Long.parseLong(sVal[k + 3]), null);
+                    orderBook.set(BookDelta.BID, x, Double.parseDouble(sVal[k + 2]), Long.parseLong(sVal[k + 1]), Long.parseLong(sVal[k]));
+                    orderBook.set(BookDelta.ASK, x, Double.parseDouble(sVal[k + 5]), Long.parseLong(sVal[k + 4]), Long.parseLong(sVal[k + 3]));
                 }
-                Object newValue = new org.eclipsetrader.core.feed.Book(bidEntry, askEntry);
-                subscription.setBook((IBook) newValue);
-                subscription.addDelta(new QuoteDelta(subscription.getIdentifier(), oldValue, newValue));
+                orderBook.truncate(BookDelta.BID, 20);
+                orderBook.truncate(BookDelta.ASK, 20);
             } catch (Exception e) {
                 Activator.log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading snapshot data", e)); //$NON-NLS-1$
             }
@@ -889,16 +876,16 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
             byte byte0 = 43;
 
             Hashtable<String, Map<String, String>> hashTable = new Hashtable<String, Map<String, String>>();
+            HttpMethod method = null;
             try {
-                HttpMethod method = createSnapshotMethod(sTit, INFO, streamingServer, WebConnector.getInstance().getUrt(), WebConnector.getInstance().getPrt());
+                method = createSnapshotMethod(sTit, INFO, streamingServer, WebConnector.getInstance().getUrt(), WebConnector.getInstance().getPrt());
                 method.setFollowRedirects(true);
                 logger.debug(method.getURI().toString());
 
-                HttpClient client = new HttpClient();
-                setupProxy(client, streamingServer);
-                client.executeMethod(method);
+                IHttpClientService httpClientService = HttpClientService.getInstance();
+                httpClientService.executeMethod(method);
 
-                BufferedReader bufferedreader = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+                BufferedReader bufferedreader = new BufferedReader(new InputStreamReader(httpClientService.getResponseBodyAsStream(method)));
 
                 String s5;
                 while ((s5 = bufferedreader.readLine()) != null && !s5.startsWith(s)) {
@@ -933,6 +920,10 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
             } catch (Exception e) {
                 Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading snapshot data", e); //$NON-NLS-1$
                 Activator.log(status);
+            } finally {
+                if (method != null) {
+                    method.releaseConnection();
+                }
             }
 
             processSnapshotData(sTit, hashTable);
@@ -1047,33 +1038,6 @@ public class StreamingConnector implements Runnable, IFeedConnector2, IExecutabl
         return method;
     }
 
-    @SuppressWarnings({
-        "rawtypes", "unchecked"
-    })
-    private void setupProxy(HttpClient client, String host) throws URISyntaxException {
-        if (Activator.getDefault() != null) {
-            BundleContext context = Activator.getDefault().getBundle().getBundleContext();
-            ServiceReference reference = context.getServiceReference(IProxyService.class.getName());
-            if (reference != null) {
-                IProxyService proxyService = (IProxyService) context.getService(reference);
-                IProxyData[] proxyData = proxyService.select(new URI(null, host, null, null));
-                for (int i = 0; i < proxyData.length; i++) {
-                    if (IProxyData.HTTP_PROXY_TYPE.equals(proxyData[i].getType())) {
-                        IProxyData data = proxyData[i];
-                        if (data.getHost() != null) {
-                            client.getHostConfiguration().setProxy(data.getHost(), data.getPort());
-                        }
-                        if (data.isRequiresAuthentication()) {
-                            client.getState().setProxyCredentials(AuthScope.ANY, new UsernamePasswordCredentials(data.getUserId(), data.getPassword()));
-                        }
-                        break;
-                    }
-                }
-                context.ungetService(reference);
-            }
-        }
-    }
-
     /* (non-Javadoc)
      * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
      */
@@ -11,6 +11,8 @@
 
 package org.eclipsetrader.directa.internal.core.messages;
 
+import java.nio.ByteBuffer;
+
 public class AstaApertura extends DataMessage {
 
     public double val_aper;
@@ -20,6 +22,10 @@ public class AstaApertura extends DataMessage {
     public int num_aper;
 
     public AstaApertura(byte[] arr, int i, int decade) {
+        this(ByteBuffer.wrap(arr), i, decade);
+    }
+
+    public AstaApertura(ByteBuffer arr, int i, int decade) {
         val_aper = Util.getFloat(arr, i);
         i += 4;
         ora_aper = Util.getDataOra(arr, i, decade);
@@ -11,12 +11,18 @@
 
 package org.eclipsetrader.directa.internal.core.messages;
 
+import java.nio.ByteBuffer;
+
 public class AstaChiusura extends DataMessage {
 
     public double val_chiu;
     public long ora_chiu;
 
     public AstaChiusura(byte[] arr, int i, int decade) {
+        this(ByteBuffer.wrap(arr), i, decade);
+    }
+
+    public AstaChiusura(ByteBuffer arr, int i, int decade) {
         val_chiu = Util.getFloat(arr, i);
         i += 4;
         ora_chiu = Util.getDataOra(arr, i, decade);
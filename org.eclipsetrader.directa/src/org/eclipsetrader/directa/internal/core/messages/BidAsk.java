@@ -11,6 +11,8 @@
 
 package org.eclipsetrader.directa.internal.core.messages;
 
+import java.nio.ByteBuffer;
+
 public class BidAsk extends DataMessage {
 
     public long num_bid;
@@ -19,6 +21,10 @@ public class BidAsk extends DataMessage {
     public double ask;
 
     public BidAsk(byte[] packet, int i) {
+        this(ByteBuffer.wrap(packet), i);
+    }
+
+    public BidAsk(ByteBuffer packet, int i) {
         num_bid = Util.getUlong(packet, i);
         i += 4;
         bid = Util.getFloat(packet, i);
@@ -11,6 +11,8 @@
 
 package org.eclipsetrader.directa.internal.core.messages;
 
+import java.nio.ByteBuffer;
+
 public class Book extends DataMessage {
 
     public static final int LEVELS = 5;
@@ -26,6 +28,10 @@ public class Book extends DataMessage {
     public double val_v[] = new double[LEVELS];
 
     public Book(byte[] arr, int i, int offset) {
+        this(ByteBuffer.wrap(arr), i, offset);
+    }
+
+    public Book(ByteBuffer arr, int i, int offset) {
         this.offset = offset;
 
         for (int j = 0; j < LEVELS; j++) {
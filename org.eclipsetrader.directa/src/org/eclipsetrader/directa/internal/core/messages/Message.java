@@ -11,6 +11,8 @@
 
 package org.eclipsetrader.directa.internal.core.messages;
 
+import java.nio.ByteBuffer;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -36,61 +38,72 @@ public class Message {
     private static Log logger = LogFactory.getLog(Message.class);
 
     public static DataMessage decodeMessage(byte[] arr) {
+        return decodeMessage(ByteBuffer.wrap(arr));
+    }
+
+    /**
+     * Decodes the message between the current position and the limit of the buffer.
+     *
+     * <p>The message fields are read in place with absolute offsets, the position and
+     * limit of the buffer are left unchanged, so the buffer can be a slice of a larger
+     * receive buffer.</p>
+     *
+     * @param arr the buffer with the message.
+     * @return the decoded message, or <code>null</code> if the message can't be decoded or is ignored.
+     */
+    public static DataMessage decodeMessage(ByteBuffer arr) {
         HeaderRecord head = decodeHeader(arr);
         if (head == null) {
             return null;
         }
 
+        int i = arr.position() + head.lenHeader;
         switch (head.tipo) {
             case TIP_PRICE: {
-                DataMessage msg = new Price(arr, head.lenHeader, head.decade);
+                DataMessage msg = new Price(arr, i, head.decade);
                 msg.head = head;
                 return msg;
             }
             case TIP_BOOK_5: {
-                DataMessage msg = new Book(arr, head.lenHeader, 0);
+                DataMessage msg = new Book(arr, i, 0);
                 msg.head = head;
                 return msg;
             }
             case TIP_BOOK_10: {
-                DataMessage msg = new Book(arr, head.lenHeader, 5);
+                DataMessage msg = new Book(arr, i, 5);
                 msg.head = head;
                 return msg;
             }
             case TIP_BOOK_15: {
-                DataMessage msg = new Book(arr, head.lenHeader, 10);
+                DataMessage msg = new Book(arr, i, 10);
                 msg.head = head;
                 return msg;
             }
             case TIP_BOOK_20: {
-                DataMessage msg = new Book(arr, head.lenHeader, 15);
+                DataMessage msg = new Book(arr, i, 15);
                 msg.head = head;
                 return msg;
             }
             case TIP_BIDASK: {
-                DataMessage msg = new BidAsk(arr, head.lenHeader);
+                DataMessage msg = new BidAsk(arr, i);
                 msg.head = head;
                 return msg;
             }
             case TIP_ASTA: {
-                DataMessage msg = new AstaApertura(arr, head.lenHeader, head.decade);
+                DataMessage msg = new AstaApertura(arr, i, head.decade);
                 msg.head = head;
                 return msg;
             }
             case TIP_INDICIDAY: {
-                byte data[] = new byte[21];
-                System.arraycopy(arr, head.lenHeader, data, 0, data.length);
-                return decodeIndexDayMessage(head, data);
+                return decodeIndexDayMessage(head, arr, i);
             }
             case TIP_ASTACHIUSURA: {
-                DataMessage msg = new AstaChiusura(arr, head.lenHeader, head.decade);
+                DataMessage msg = new AstaChiusura(arr, i, head.decade);
                 msg.head = head;
                 return msg;
             }
             case TIP_TUTTIPREZZI: {
-                byte data[] = new byte[9];
-                System.arraycopy(arr, head.lenHeader, data, 0, data.length);
-                return decodeAllPricesMessage(head, data);
+                return decodeAllPricesMessage(head, arr, i);
             }
             case TIP_LABEL: {
                 // Ignore
@@ -105,27 +118,26 @@ public class Message {
                     break;
                 }
                 logger.debug(String.format("Unknown message type: %d", head.tipo));
-                for (int i = 0; i < arr.length;) {
-                    StringBuilder sb = new StringBuilder();
-                    for (; i < arr.length; i++) {
-                        sb.append(String.format(" %02X", arr[i]));
-                    }
-                    logger.debug(sb.toString());
+                StringBuilder sb = new StringBuilder();
+                for (int n = arr.position(); n < arr.limit(); n++) {
+                    sb.append(String.format(" %02X", arr.get(n)));
                 }
+                logger.debug(sb.toString());
             }
         }
 
         return null;
     }
 
-    private static HeaderRecord decodeHeader(byte packet[]) {
-        if (packet.length < 7) {
+    private static HeaderRecord decodeHeader(ByteBuffer packet) {
+        int p = packet.position();
+        if (packet.limit() - p < 7) {
             return null;
         }
 
         HeaderRecord head = new HeaderRecord();
-        head.tipo = Util.getByte(packet[0]);
-        int i = Util.byteToInt(packet[5]);
+        head.tipo = Util.getByte(packet.get(p));
+        int i = Util.byteToInt(packet.get(p + 5));
         int j = i & 0x80;
         if (j == 0) {
             head.decade = 0;
@@ -135,42 +147,47 @@ public class Message {
         }
 
         int k = i & 0xf;
-        head.key = new String(packet, 6, k + 1);
-        head.oraMsg = Util.getDataOra(packet, 1, j);
+        if (packet.limit() - p < 7 + k) {
+            return null;
+        }
+        char[] key = new char[k + 1];
+        for (int n = 0; n < key.length; n++) {
+            key[n] = (char) Util.byteToInt(packet.get(p + 6 + n));
+        }
+        head.key = new String(key);
+        head.oraMsg = Util.getDataOra(packet, p + 1, j);
         head.lenHeader = 7 + k;
 
         return head;
     }
 
-    private static TuttiPrezzi decodeAllPricesMessage(HeaderRecord head, byte packet[]) {
-        if (packet.length < 9) {
+    private static TuttiPrezzi decodeAllPricesMessage(HeaderRecord head, ByteBuffer packet, int i) {
+        if (packet.limit() - i < 9) {
             return null;
         }
 
         TuttiPrezzi msg = new TuttiPrezzi();
         msg.head = head;
-        int i = 0;
         msg.val_contr = Util.getFloat(packet, i);
         i += 4;
         msg.qta_contr = Util.getUlong(packet, i);
         i += 4;
-        msg.cross_order = Util.getByte(packet[i]);
+        msg.cross_order = Util.getByte(packet.get(i));
         return msg;
     }
 
-    private static IndiciDay decodeIndexDayMessage(HeaderRecord head, byte packet[]) {
-        if (packet.length < 8) {
+    private static IndiciDay decodeIndexDayMessage(HeaderRecord head, ByteBuffer packet, int i) {
+        if (packet.limit() - i < 21) {
             return null;
         }
 
         IndiciDay msg = new IndiciDay();
         msg.head = head;
-        int i = 0;
         msg.val_ult = Util.getFloat(packet, i);
         i += 4;
         msg.ora_ult = Util.getDataOra(packet, i, head.decade);
         i += 4;
-        msg.tendenza = Util.getByte(packet[i]);
+        msg.tendenza = Util.getByte(packet.get(i));
         i++;
         msg.percent = Util.getFloat(packet, i);
         i += 4;
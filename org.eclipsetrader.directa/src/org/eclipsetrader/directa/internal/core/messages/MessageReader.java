@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.directa.internal.core.messages;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads the messages of the streaming feed from a non-blocking channel.
+ *
+ * <p>Data is received in a reusable direct buffer, the <code>#</code> prefixed headers
+ * are framed in place and each complete message is returned as a slice of the receive
+ * buffer, without copying. Incomplete messages are kept in the buffer until the next
+ * read completes them.</p>
+ *
+ * <p>Typical usage, after the channel is reported readable by a selector:</p>
+ *
+ * <pre>
+ * if (reader.read(channel) == -1) {
+ *     // Connection closed
+ * }
+ * while (reader.nextMessage()) {
+ *     ByteBuffer message = reader.getMessage();
+ *     ...
+ * }
+ * </pre>
+ */
+public class MessageReader {
+
+    public static final int HEADER_LENGTH = 4;
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private ByteBuffer buffer;
+    private int dataLimit;
+    private int frameStart;
+    private int frameEnd;
+    private int type;
+
+    public MessageReader() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public MessageReader(int bufferSize) {
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.limit(0);
+    }
+
+    /**
+     * Reads the data available from the channel.
+     *
+     * <p>Messages already returned by <code>nextMessage</code> are discarded from the buffer.</p>
+     *
+     * @param channel the channel to read from.
+     * @return the number of bytes read, or <code>-1</code> if the channel has reached end-of-stream.
+     * @throws IOException if the channel can't be read.
+     */
+    public int read(ReadableByteChannel channel) throws IOException {
+        buffer.limit(dataLimit);
+        buffer.position(frameEnd);
+        buffer.compact();
+
+        int n = channel.read(buffer);
+
+        buffer.flip();
+        dataLimit = buffer.limit();
+        frameEnd = 0;
+
+        return n;
+    }
+
+    /**
+     * Advances to the next complete message in the buffer.
+     *
+     * <p>Bytes that doesn't start a message header are skipped. If the message is larger
+     * than the buffer, the buffer is enlarged so the next read can complete it.</p>
+     *
+     * @return <code>true</code> if a message is available, <code>false</code> if more data must be read.
+     */
+    public boolean nextMessage() {
+        buffer.limit(dataLimit);
+
+        int start = frameEnd;
+        while (start < dataLimit && buffer.get(start) != '#') {
+            start++;
+        }
+        frameEnd = start;
+
+        if (dataLimit - start < HEADER_LENGTH) {
+            return false;
+        }
+
+        int length = Util.getMessageLength(buffer, start + 2);
+        if (dataLimit - start < HEADER_LENGTH + length) {
+            if (HEADER_LENGTH + length > buffer.capacity()) {
+                grow(HEADER_LENGTH + length);
+            }
+            return false;
+        }
+
+        type = Util.byteToInt(buffer.get(start + 1));
+        frameStart = start;
+        frameEnd = start + HEADER_LENGTH + length;
+
+        buffer.position(start + HEADER_LENGTH);
+        buffer.limit(frameEnd);
+
+        return true;
+    }
+
+    private void grow(int size) {
+        ByteBuffer newBuffer = ByteBuffer.allocateDirect(Math.max(size, buffer.capacity() * 2));
+
+        buffer.limit(dataLimit);
+        buffer.position(frameEnd);
+        newBuffer.put(buffer);
+        newBuffer.flip();
+
+        buffer = newBuffer;
+        dataLimit = buffer.limit();
+        frameEnd = 0;
+    }
+
+    /**
+     * Returns the type of the current message, from the message header.
+     *
+     * @return the message type.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the body of the current message.
+     *
+     * <p>The returned buffer is positioned at the start of the message body with the
+     * limit set to the end of the message, the content is valid until the next call
+     * to <code>nextMessage</code> or <code>read</code>.</p>
+     *
+     * @return the receive buffer set to the message body.
+     */
+    public ByteBuffer getMessage() {
+        return buffer;
+    }
+
+    /**
+     * Returns the header of the current message.
+     *
+     * @return a new array with the message header.
+     */
+    public byte[] getHeader() {
+        byte[] header = new byte[HEADER_LENGTH];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = buffer.get(frameStart + i);
+        }
+        return header;
+    }
+}
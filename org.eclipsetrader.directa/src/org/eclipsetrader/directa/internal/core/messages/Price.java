@@ -11,6 +11,8 @@
 
 package org.eclipsetrader.directa.internal.core.messages;
 
+import java.nio.ByteBuffer;
+
 public class Price extends DataMessage {
 
     public double val_ult;
@@ -23,6 +25,10 @@ public class Price extends DataMessage {
     public long num_contr;
 
     public Price(byte[] arr, int i, int decade) {
+        this(ByteBuffer.wrap(arr), i, decade);
+    }
+
+    public Price(ByteBuffer arr, int i, int decade) {
         val_ult = Util.getFloat(arr, i);
         i += 4;
         ora_ult = Util.getDataOra(arr, i, decade);
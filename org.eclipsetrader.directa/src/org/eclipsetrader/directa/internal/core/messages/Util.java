@@ -11,6 +11,7 @@
 
 package org.eclipsetrader.directa.internal.core.messages;
 
+import java.nio.ByteBuffer;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -21,13 +22,17 @@ public class Util {
     }
 
     public static float getFloat(byte[] arr, int i) {
-        if (arr.length < i + 4) {
+        return getFloat(ByteBuffer.wrap(arr), i);
+    }
+
+    public static float getFloat(ByteBuffer bb, int i) {
+        if (bb.limit() < i + 4) {
             return 0.0F;
         }
         int j = 0;
         int k = 0;
         for (int l = 0; l < 4; l++) {
-            k += byteToInt(arr[i + l]) << j;
+            k += byteToInt(bb.get(i + l)) << j;
             j += 8;
         }
 
@@ -36,17 +41,25 @@ public class Util {
     }
 
     public static int getUInt(byte[] arr, int i) {
-        return (int) unpackLong(arr, i, 2);
+        return getUInt(ByteBuffer.wrap(arr), i);
+    }
+
+    public static int getUInt(ByteBuffer bb, int i) {
+        return (int) unpackLong(bb, i, 2);
     }
 
     public static int getMessageLength(byte[] arr, int i) {
-        if (arr.length < i + 2) {
+        return getMessageLength(ByteBuffer.wrap(arr), i);
+    }
+
+    public static int getMessageLength(ByteBuffer bb, int i) {
+        if (bb.limit() < i + 2) {
             return 0;
         }
         int j = 0;
         int k = 0;
         for (int l = 0; l < 2; l++) {
-            j += byteToInt(arr[i + l]) << k;
+            j += byteToInt(bb.get(i + l)) << k;
             k += 8;
         }
 
@@ -58,14 +71,22 @@ public class Util {
     }
 
     public static long getUlong(byte[] arr, int i) {
-        return unpackLong(arr, i, 4);
+        return getUlong(ByteBuffer.wrap(arr), i);
+    }
+
+    public static long getUlong(ByteBuffer bb, int i) {
+        return unpackLong(bb, i, 4);
     }
 
     public static long getDataOra(byte[] arr, int i, int j) {
+        return getDataOra(ByteBuffer.wrap(arr), i, j);
+    }
+
+    public static long getDataOra(ByteBuffer bb, int i, int j) {
         long k = 0;
         int l = 0;
         for (int i1 = 0; i1 < 4; i1++) {
-            k += (long) byteToInt(arr[i1 + i]) << l;
+            k += (long) byteToInt(bb.get(i1 + i)) << l;
             l += 8;
         }
 
@@ -90,14 +111,14 @@ public class Util {
         return i;
     }
 
-    private static long unpackLong(byte[] arr, int i, int j) {
-        if (arr.length < i + j) {
+    private static long unpackLong(ByteBuffer bb, int i, int j) {
+        if (bb.limit() < i + j) {
             return 0L;
         }
         long l = 0L;
         int k = (j - 1) * 8;
         for (int i1 = 0; i1 < j; i1++) {
-            l += byteToInt(arr[i + i1]) << k;
+            l += byteToInt(bb.get(i + i1)) << k;
             k -= 8;
         }
         return l;
@@ -13,8 +13,6 @@ package org.eclipsetrader.directaworld.internal.core.connector;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -26,13 +24,9 @@ import java.util.TimeZone;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
-import org.apache.commons.httpclient.UsernamePasswordCredentials;
-import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.eclipse.core.net.proxy.IProxyData;
-import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExecutableExtension;
@@ -47,6 +41,7 @@ import org.eclipse.jface.window.Window;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.PlatformUI;
+import org.eclipsetrader.core.HttpClientService;
 import org.eclipsetrader.core.feed.IConnectorListener;
 import org.eclipsetrader.core.feed.IFeedConnector;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
@@ -59,8 +54,6 @@ import org.eclipsetrader.directaworld.internal.Activator;
 import org.eclipsetrader.directaworld.internal.core.repository.IdentifierType;
 import org.eclipsetrader.directaworld.internal.core.repository.IdentifiersList;
 import org.eclipsetrader.directaworld.internal.core.repository.PriceDataType;
-import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 
 public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableExtension {
 
@@ -266,21 +259,7 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
             }
         }
 
-        client = new HttpClient();
-        client.getHttpConnectionManager().getParams().setConnectionTimeout(30000);
-        try {
-            setupProxy(client, HOST);
-        } catch (URISyntaxException e) {
-            final Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Error setting proxy", e); //$NON-NLS-1$
-            Display.getDefault().syncExec(new Runnable() {
-
-                @Override
-                public void run() {
-                    Activator.log(status);
-                    ErrorDialog.openError(null, null, null, status);
-                }
-            });
-        }
+        client = HttpClientService.getInstance().createHttpClient(HOST);
 
         do {
             if (userName == null || password == null || "".equals(userName) || "".equals(password)) { //$NON-NLS-1$ //$NON-NLS-2$
@@ -341,36 +320,13 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
         thread = null;
     }
 
-    private void setupProxy(HttpClient client, String host) throws URISyntaxException {
-        if (Activator.getDefault() != null) {
-            BundleContext context = Activator.getDefault().getBundle().getBundleContext();
-            ServiceReference<IProxyService> reference = context.getServiceReference(IProxyService.class);
-            if (reference != null) {
-                IProxyService proxyService = context.getService(reference);
-                IProxyData[] proxyData = proxyService.select(new URI(null, host, null, null));
-                for (int i = 0; i < proxyData.length; i++) {
-                    if (IProxyData.HTTP_PROXY_TYPE.equals(proxyData[i].getType())) {
-                        IProxyData data = proxyData[i];
-                        if (data.getHost() != null) {
-                            client.getHostConfiguration().setProxy(data.getHost(), data.getPort());
-                        }
-                        if (data.isRequiresAuthentication()) {
-                            client.getState().setProxyCredentials(AuthScope.ANY, new UsernamePasswordCredentials(data.getUserId(), data.getPassword()));
-                        }
-                        break;
-                    }
-                }
-                context.ungetService(reference);
-            }
-        }
-    }
-
     protected IPreferenceStore getPreferenceStore() {
         return Activator.getDefault().getPreferenceStore();
     }
 
     protected void fetchLatestSnapshot() {
         BufferedReader in = null;
+        HttpMethod method = null;
         try {
             String[] symbols;
             synchronized (symbolSubscriptions) {
@@ -387,15 +343,15 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
             }
             url.append("&u=" + userName + "&p=" + password); //$NON-NLS-1$ //$NON-NLS-2$
 
-            HttpMethod method = new GetMethod(url.toString());
+            method = new GetMethod(url.toString());
             method.setFollowRedirects(true);
 
             logger.debug(method.getURI().toString());
-            client.executeMethod(method);
+            HttpClientService.getInstance().executeMethod(client, method);
             requiredDelay = 15;
 
             String inputLine;
-            in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+            in = new BufferedReader(new InputStreamReader(HttpClientService.getInstance().getResponseBodyAsStream(method)));
             while ((inputLine = in.readLine()) != null) {
                 logger.debug(inputLine);
                 if (inputLine.indexOf("<!--QT START HERE-->") != -1) { //$NON-NLS-1$
@@ -442,6 +398,9 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
                 if (in != null) {
                     in.close();
                 }
+                if (method != null) {
+                    method.releaseConnection();
+                }
             } catch (Exception e) {
                 // We can't do anything at this time, ignore
             }
@@ -512,6 +471,7 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
         boolean result = false;
 
         BufferedReader in = null;
+        HttpMethod method = null;
         try {
             StringBuilder url = new StringBuilder("http://" + HOST + "/cgi-bin/qta?idx=alfa&modo=t&appear=n"); //$NON-NLS-1$ //$NON-NLS-2$
             int x = 0;
@@ -520,14 +480,14 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
             }
             url.append("&u=" + userName + "&p=" + password); //$NON-NLS-1$ //$NON-NLS-2$
 
-            HttpMethod method = new GetMethod(url.toString());
+            method = new GetMethod(url.toString());
             method.setFollowRedirects(true);
 
-            client.executeMethod(method);
+            HttpClientService.getInstance().executeMethod(client, method);
             requiredDelay = 15;
 
             String inputLine;
-            in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+            in = new BufferedReader(new InputStreamReader(HttpClientService.getInstance().getResponseBodyAsStream(method)));
             while ((inputLine = in.readLine()) != null) {
                 if (inputLine.indexOf("<!--QT START HERE-->") != -1) { //$NON-NLS-1$
                     result = true;
@@ -542,6 +502,9 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
                 if (in != null) {
                     in.close();
                 }
+                if (method != null) {
+                    method.releaseConnection();
+                }
             } catch (Exception e) {
                 // We can't do anything at this time, ignore
             }
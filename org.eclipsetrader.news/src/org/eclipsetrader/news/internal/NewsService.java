@@ -12,7 +12,6 @@
 package org.eclipsetrader.news.internal;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -23,15 +22,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-import javax.xml.namespace.QName;
-import javax.xml.transform.stream.StreamSource;
 
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtensionPoint;
@@ -46,6 +37,7 @@ import org.eclipse.core.runtime.jobs.ILock;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.MultiRule;
+import org.eclipsetrader.core.PersistenceService;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.news.core.HeadLineStatus;
 import org.eclipsetrader.news.core.IHeadLine;
@@ -77,22 +69,11 @@ public class NewsService implements INewsService, ISchedulingRule {
         lock = jobManager.newLock();
     }
 
-    public void startUp(IProgressMonitor monitor) throws JAXBException {
+    public void startUp(IProgressMonitor monitor) throws JAXBException, IOException {
         File file = Activator.getDefault().getStateLocation().append(HEADLINES_FILE).toFile();
-        if (file.exists()) {
-            JAXBContext jaxbContext = JAXBContext.newInstance(HeadLine[].class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-                @Override
-                public boolean handleEvent(ValidationEvent event) {
-                    Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                    Activator.getDefault().getLog().log(status);
-                    return true;
-                }
-            });
-            JAXBElement<HeadLine[]> element = unmarshaller.unmarshal(new StreamSource(file), HeadLine[].class);
-            headLines.addAll(Arrays.asList(element.getValue()));
+        HeadLine[] list = PersistenceService.getInstance().unmarshalElement(HeadLine[].class, file);
+        if (list != null) {
+            headLines.addAll(Arrays.asList(list));
         }
 
         IConfigurationElement[] elements = getProvidersConfigurationElements();
@@ -121,25 +102,6 @@ public class NewsService implements INewsService, ISchedulingRule {
             newsProvider.stop();
         }
 
-        File file = Activator.getDefault().getStateLocation().append(HEADLINES_FILE).toFile();
-        if (file.exists()) {
-            file.delete();
-        }
-
-        JAXBContext jaxbContext = JAXBContext.newInstance(HeadLine[].class);
-        Marshaller marshaller = jaxbContext.createMarshaller();
-        marshaller.setEventHandler(new ValidationEventHandler() {
-
-            @Override
-            public boolean handleEvent(ValidationEvent event) {
-                Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                Activator.getDefault().getLog().log(status);
-                return true;
-            }
-        });
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-        marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-
         List<HeadLine> list = new ArrayList<HeadLine>();
         for (IHeadLine h : headLines) {
             if (h instanceof HeadLine) {
@@ -147,8 +109,8 @@ public class NewsService implements INewsService, ISchedulingRule {
             }
         }
 
-        JAXBElement<HeadLine[]> element = new JAXBElement<HeadLine[]>(new QName("list"), HeadLine[].class, list.toArray(new HeadLine[list.size()]));
-        marshaller.marshal(element, new FileWriter(file));
+        File file = Activator.getDefault().getStateLocation().append(HEADLINES_FILE).toFile();
+        PersistenceService.getInstance().marshalElement("list", list.toArray(new HeadLine[list.size()]), HeadLine[].class, file); //$NON-NLS-1$
     }
 
     /* (non-Javadoc)
@@ -11,7 +11,6 @@
 
 package org.eclipsetrader.news.internal;
 
-import javax.xml.bind.JAXBException;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.ServiceFactory;
@@ -33,7 +32,7 @@ public class NewsServiceFactory implements ServiceFactory {
             serviceInstance = new NewsService();
             try {
                 serviceInstance.startUp(null);
-            } catch (JAXBException e) {
+            } catch (Exception e) {
                 e.printStackTrace();
             }
         }
@@ -391,6 +391,25 @@ public class HibernateRepositoryTest extends TestCase {
         assertEquals(0, repository.fetchObjects(null).length);
     }
 
+    public void testStoreRulesDontConflict() throws Exception {
+        SecurityStore store1 = new SecurityStore(repository);
+        SecurityStore store2 = new SecurityStore(repository);
+        WatchListStore store3 = new WatchListStore(repository);
+
+        assertTrue(store1.isConflicting(store1));
+        assertFalse(store1.isConflicting(store2));
+        assertFalse(store2.isConflicting(store3));
+    }
+
+    public void testRepositoryRuleConflictsWithStoreRules() throws Exception {
+        SecurityStore store = new SecurityStore(repository);
+
+        assertTrue(repository.isConflicting(store));
+        assertTrue(store.isConflicting(repository));
+        assertTrue(repository.contains(store));
+        assertFalse(store.contains(repository));
+    }
+
     private IStore createSecurity(String name, IFeedIdentifier identifier) {
         StoreProperties storeProperties = new StoreProperties();
         storeProperties.setProperty(IPropertyConstants.OBJECT_TYPE, ISecurity.class.getName());
@@ -11,51 +11,132 @@
 
 package org.eclipsetrader.repository.hibernate.internal.stores;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.easymock.classextension.EasyMock;
 import org.eclipsetrader.core.feed.IOHLC;
 import org.eclipsetrader.core.feed.OHLC;
+import org.eclipsetrader.core.repositories.BarsDelta;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
 import org.eclipsetrader.core.repositories.StoreProperties;
 import org.eclipsetrader.repository.hibernate.HibernateRepository;
-import org.eclipsetrader.repository.hibernate.internal.types.HistoryData;
+import org.eclipsetrader.repository.hibernate.internal.types.HistoryDataBulkLoaderTest;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 
 public class HistoryStoreTest extends TestCase {
 
     HibernateRepository repository;
+    Connection connection;
 
     /* (non-Javadoc)
      * @see junit.framework.TestCase#setUp()
      */
     @Override
     protected void setUp() throws Exception {
+        Class.forName("org.hsqldb.jdbcDriver");
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:historydb", "sa", "");
+        HistoryDataBulkLoaderTest.createTable(connection);
+
         repository = EasyMock.createNiceMock(HibernateRepository.class);
         Session session = EasyMock.createNiceMock(Session.class);
         org.easymock.EasyMock.expect(repository.getSession()).andStubReturn(session);
-        EasyMock.replay(repository, session);
+        org.easymock.EasyMock.expect(session.connection()).andStubReturn(connection);
+        StatelessSession statelessSession = EasyMock.createNiceMock(StatelessSession.class);
+        org.easymock.EasyMock.expect(repository.openStatelessSession()).andStubReturn(statelessSession);
+        org.easymock.EasyMock.expect(statelessSession.connection()).andStubReturn(connection);
+        EasyMock.replay(repository, session, statelessSession);
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.execute("drop table histories_data");
+        statement.close();
+        connection.close();
     }
 
     public void testDontReplaceExistingHistoryData() throws Exception {
         HistoryStore store = new HistoryStore(null, repository);
+        store.id = "1";
         StoreProperties properties = new StoreProperties();
-        OHLC ohlc1 = new OHLC(new Date(), 1.0, 2.0, 3.0, 4.0, 5L);
-        OHLC ohlc2 = new OHLC(new Date(), 1.0, 2.0, 3.0, 4.0, 15L);
+        OHLC ohlc1 = new OHLC(new Date(1300000000000L), 1.0, 2.0, 3.0, 4.0, 5L);
+        OHLC ohlc2 = new OHLC(new Date(1300086400000L), 1.0, 2.0, 3.0, 4.0, 15L);
         properties.setProperty(IPropertyConstants.BARS, new IOHLC[] {
             ohlc1
         });
         store.putProperties(properties, null);
-        assertEquals(1, store.data.size());
-        HistoryData data = store.data.get(0);
+        assertEquals(1, getIds().size());
+        String id = getIds().get(0);
 
         properties.setProperty(IPropertyConstants.BARS, new IOHLC[] {
                 ohlc1, ohlc2
         });
         store.putProperties(properties, null);
-        assertEquals(2, store.data.size());
-        assertSame(data, store.data.get(0));
+        assertEquals(2, getIds().size());
+        assertEquals(id, getIds().get(0));
+    }
+
+    public void testFetchStoredBars() throws Exception {
+        HistoryStore store = new HistoryStore(null, repository);
+        store.id = "1";
+        StoreProperties properties = new StoreProperties();
+        OHLC ohlc1 = new OHLC(new Date(1300000000000L), 1.0, 2.0, 3.0, 4.0, 5L);
+        OHLC ohlc2 = new OHLC(new Date(1300086400000L), 1.0, 2.0, 3.0, 4.0, 15L);
+        properties.setProperty(IPropertyConstants.BARS, new IOHLC[] {
+                ohlc2, ohlc1
+        });
+        store.putProperties(properties, null);
+
+        IOHLC[] bars = (IOHLC[]) store.fetchProperties(null).getProperty(IPropertyConstants.BARS);
+        assertEquals(2, bars.length);
+        assertEquals(ohlc1, bars[0]);
+        assertEquals(ohlc2, bars[1]);
+    }
+
+    public void testPutDelta() throws Exception {
+        HistoryStore store = new HistoryStore(null, repository);
+        store.id = "1";
+        StoreProperties properties = new StoreProperties();
+        OHLC ohlc1 = new OHLC(new Date(1300000000000L), 1.0, 2.0, 3.0, 4.0, 5L);
+        OHLC ohlc2 = new OHLC(new Date(1300086400000L), 1.0, 2.0, 3.0, 4.0, 15L);
+        properties.setProperty(IPropertyConstants.BARS, new IOHLC[] {
+            ohlc1
+        });
+        store.putProperties(properties, null);
+
+        IOHLC[] bars = new IOHLC[] {
+                ohlc1, ohlc2
+        };
+        properties.setProperty(IPropertyConstants.BARS, bars);
+        properties.setProperty(IPropertyConstants.BARS_DELTA, new BarsDelta(store, new IOHLC[] {
+            ohlc2
+        }, new IOHLC[0], new Date[0]));
+        store.putProperties(properties, null);
+
+        assertEquals(2, getIds().size());
+    }
+
+    private List<String> getIds() throws Exception {
+        List<String> l = new ArrayList<String>();
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("select id from histories_data order by date");
+        while (rs.next()) {
+            l.add(rs.getString(1));
+        }
+        rs.close();
+        statement.close();
+        return l;
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.repository.hibernate.internal.types;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.feed.IBarSeries;
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.OHLC;
+import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.core.repositories.BarsDelta;
+
+public class HistoryDataBulkLoaderTest extends TestCase {
+
+    private Connection connection;
+    private HistoryDataBulkLoader loader;
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        Class.forName("org.hsqldb.jdbcDriver");
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:bulkdb", "sa", "");
+        createTable(connection);
+        loader = new HistoryDataBulkLoader(connection);
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.execute("drop table histories_data");
+        statement.close();
+        connection.close();
+    }
+
+    public static void createTable(Connection connection) throws Exception {
+        Statement statement = connection.createStatement();
+        statement.execute("create table histories_data (id varchar(32) not null primary key, date timestamp, timespan varchar(255), open_price double, high_price double, low_price double, close_price double, volume bigint, history_id varchar(32))");
+        statement.close();
+    }
+
+    public void testInsertAndRead() throws Exception {
+        IOHLC[] bars = createBars(HistoryDataBulkLoader.BATCH_SIZE + 10);
+        loader.insert("1", TimeSpan.days(1), bars);
+
+        assertEquals(bars.length, loader.count("1", TimeSpan.days(1)));
+        assertEquals(0, loader.count("2", TimeSpan.days(1)));
+
+        IOHLC[] result = loader.read("1", TimeSpan.days(1), null, null).toOHLC();
+        assertEquals(bars.length, result.length);
+        for (int i = 0; i < bars.length; i++) {
+            assertEquals(bars[i], result[i]);
+        }
+    }
+
+    public void testReadNullValues() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(new Date(1000000L), 1.0, null, 0.5, 1.5, null),
+        };
+        loader.insert("1", TimeSpan.days(1), bars);
+
+        IBarSeries series = loader.read("1", TimeSpan.days(1), null, null);
+        assertEquals(1, series.size());
+        assertTrue(Double.isNaN(series.getHigh(0)));
+        assertEquals(IBarSeries.NO_VOLUME, series.getVolume(0));
+        assertEquals(bars[0], series.toOHLC()[0]);
+    }
+
+    public void testReadRange() throws Exception {
+        IOHLC[] bars = createBars(10);
+        loader.insert("1", TimeSpan.days(1), bars);
+
+        IOHLC[] result = loader.read("1", TimeSpan.days(1), bars[3].getDate(), bars[5].getDate()).toOHLC();
+        assertEquals(3, result.length);
+        assertEquals(bars[3], result[0]);
+        assertEquals(bars[5], result[2]);
+    }
+
+    public void testApplyDelta() throws Exception {
+        IOHLC[] bars = createBars(5);
+        loader.insert("1", TimeSpan.days(1), bars);
+
+        IOHLC changed = new OHLC(bars[2].getDate(), 1.0, 2.0, 0.5, 1.5, 100L);
+        IOHLC added = new OHLC(new Date(bars[4].getDate().getTime() + 86400000L), 1.0, 2.0, 0.5, 1.5, 200L);
+        loader.apply("1", TimeSpan.days(1), new BarsDelta(null, new IOHLC[] {
+            added
+        }, new IOHLC[] {
+            changed
+        }, new Date[] {
+            bars[0].getDate()
+        }));
+
+        IOHLC[] result = loader.read("1", TimeSpan.days(1), null, null).toOHLC();
+        assertEquals(5, result.length);
+        assertEquals(bars[1], result[0]);
+        assertEquals(changed, result[1]);
+        assertEquals(added, result[4]);
+    }
+
+    private IOHLC[] createBars(int count) {
+        IOHLC[] bars = new IOHLC[count];
+        long time = 1300000000000L;
+        for (int i = 0; i < count; i++) {
+            bars[i] = new OHLC(new Date(time + i * 86400000L), 10.0 + i, 11.0 + i, 9.0 + i, 10.5 + i, 1000L + i);
+        }
+        return bars;
+    }
+}
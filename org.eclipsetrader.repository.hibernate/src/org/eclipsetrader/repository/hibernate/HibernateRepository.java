@@ -13,6 +13,7 @@ package org.eclipsetrader.repository.hibernate;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,8 +60,10 @@ import org.eclipsetrader.repository.hibernate.internal.types.SecurityUnknownProp
 import org.eclipsetrader.repository.hibernate.internal.types.SplitData;
 import org.eclipsetrader.repository.hibernate.internal.types.WatchListColumn;
 import org.eclipsetrader.repository.hibernate.internal.types.WatchListHolding;
+import org.hibernate.LockMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.AnnotationConfiguration;
 import org.hibernate.event.PostDeleteEvent;
@@ -86,14 +89,16 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
     private String name;
     private Properties properties;
     private RepositoryDefinition repositoryDefinition;
+    private SessionFactory sessionFactory;
     private Session session;
+    private final ThreadLocal<Session> currentSession = new ThreadLocal<Session>();
 
     private Map<String, IdentifierType> identifiersMap;
     private List<WatchListStore> watchlists;
-    private Map<URI, IStore> uriMap = new HashMap<URI, IStore>();
+    private Map<URI, IStore> uriMap = Collections.synchronizedMap(new HashMap<URI, IStore>());
 
     private IJobManager jobManager;
-    private final ILock lock;
+    private final ILock sessionLock;
 
     public HibernateRepository() {
         this(null, null, new Properties());
@@ -109,10 +114,10 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
         this.name = name;
         this.properties = properties;
 
-        this.identifiersMap = new HashMap<String, IdentifierType>();
+        this.identifiersMap = Collections.synchronizedMap(new HashMap<String, IdentifierType>());
 
         jobManager = Job.getJobManager();
-        lock = jobManager.newLock();
+        sessionLock = jobManager.newLock();
     }
 
     /* (non-Javadoc)
@@ -248,10 +253,28 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
 
     public void startUp(IProgressMonitor monitor) {
         properties.put("hibernate.query.factory_class", "org.hibernate.hql.classic.ClassicQueryTranslatorFactory");
-        properties.put("hibernate.connection.pool_size", "5");
         properties.put("hibernate.jdbc.batch_size", "20");
         properties.put("hibernate.show_sql", "false");
 
+        // Pooled connections shared by the sessions of concurrent repository tasks
+        if (!properties.containsKey("hibernate.connection.provider_class") && !properties.containsKey("hibernate.c3p0.max_size")) {
+            properties.put("hibernate.c3p0.min_size", "1");
+            properties.put("hibernate.c3p0.max_size", "10");
+            properties.put("hibernate.c3p0.timeout", "300");
+            properties.put("hibernate.c3p0.max_statements", "50");
+            properties.put("hibernate.c3p0.idle_test_period", "120");
+        }
+
+        // Second-level cache for securities, identifiers and watchlists. Only these entities
+        // are mapped as cacheable and their number is bounded by the user's lists, history
+        // bars and trades are never cached, so the non-evicting hashtable provider is enough
+        if (!properties.containsKey("hibernate.cache.provider_class")) {
+            properties.put("hibernate.cache.provider_class", "org.hibernate.cache.HashtableCacheProvider");
+        }
+        if (!properties.containsKey("hibernate.cache.use_second_level_cache")) {
+            properties.put("hibernate.cache.use_second_level_cache", "true");
+        }
+
         // Build suitable defaults for file-based databases (Apache Derby and HSQL)
         if (!properties.containsKey("hibernate.connection.url") && Activator.getDefault() != null) {
             if ("org.apache.derby.jdbc.EmbeddedDriver".equals(properties.get("hibernate.connection.driver_class"))) {
@@ -304,50 +327,62 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
 
     @SuppressWarnings("unchecked")
     void initializeDatabase(AnnotationConfiguration cfg) {
-        SessionFactory sessionFactory = cfg.buildSessionFactory();
-        session = sessionFactory.openSession();
+        sessionLock.acquire();
+        try {
+            sessionFactory = cfg.buildSessionFactory();
+            session = sessionFactory.openSession();
 
-        List<IdentifierType> identifiers = session.createCriteria(IdentifierType.class).list();
-        for (IdentifierType identifierType : identifiers) {
-            identifiersMap.put(identifierType.getSymbol(), identifierType);
-        }
+            List<IdentifierType> identifiers = session.createCriteria(IdentifierType.class).list();
+            for (IdentifierType identifierType : identifiers) {
+                identifiersMap.put(identifierType.getSymbol(), identifierType);
+            }
 
-        List<SecurityStore> securities = session.createCriteria(SecurityStore.class).list();
-        for (SecurityStore store : securities) {
-            store.setRepository(this);
-            uriMap.put(store.toURI(), store);
-        }
+            List<SecurityStore> securities = session.createCriteria(SecurityStore.class).list();
+            for (SecurityStore store : securities) {
+                store.setRepository(this);
+                uriMap.put(store.toURI(), store);
+            }
 
-        List<ScriptStore> scripts = session.createCriteria(ScriptStore.class).list();
-        for (ScriptStore store : scripts) {
-            store.setRepository(this);
-            uriMap.put(store.toURI(), store);
-        }
+            List<ScriptStore> scripts = session.createCriteria(ScriptStore.class).list();
+            for (ScriptStore store : scripts) {
+                store.setRepository(this);
+                uriMap.put(store.toURI(), store);
+            }
 
-        List<StrategyScriptStore> strategies = session.createCriteria(StrategyScriptStore.class).list();
-        for (StrategyScriptStore store : strategies) {
-            store.setRepository(this);
-            uriMap.put(store.toURI(), store);
+            List<StrategyScriptStore> strategies = session.createCriteria(StrategyScriptStore.class).list();
+            for (StrategyScriptStore store : strategies) {
+                store.setRepository(this);
+                uriMap.put(store.toURI(), store);
+            }
+        } finally {
+            sessionLock.release();
         }
     }
 
     public void shutDown(IProgressMonitor monitor) {
+        sessionLock.acquire();
         try {
             if (session != null) {
                 session.close();
             }
+            if (sessionFactory != null) {
+                sessionFactory.close();
+            }
         } catch (Exception e) {
             String message = NLS.bind("Error shutting down repository {0}:{1}", new Object[] {
                 schema, name
             });
             Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, message, e);
             Activator.log(status);
+        } finally {
+            sessionLock.release();
         }
     }
 
     @SuppressWarnings("unchecked")
     protected synchronized void initializeWatchListsCollections() {
         if (watchlists == null) {
+            sessionLock.acquire();
             try {
                 watchlists = session.createCriteria(WatchListStore.class).list();
                 for (WatchListStore store : watchlists) {
@@ -360,6 +395,8 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
                 });
                 Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, message, e);
                 Activator.log(status);
+            } finally {
+                sessionLock.release();
             }
         }
         if (watchlists == null) {
@@ -367,17 +404,89 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
         }
     }
 
+    /**
+     * Returns the session of the repository task running in the current
+     * thread, or the shared session used for reads outside of a task.
+     *
+     * <p>The shared session is not thread safe, reads outside of a task must
+     * use <code>acquireSession()</code> instead.</p>
+     *
+     * @return the session.
+     */
     public Session getSession() {
+        Session unitSession = currentSession.get();
+        return unitSession != null ? unitSession : session;
+    }
+
+    /**
+     * Returns the session of the repository task running in the current
+     * thread, or locks and returns the shared session if no task is running.
+     * Callers must pass the session to <code>releaseSession()</code> when done,
+     * including the loading of lazy collections.
+     *
+     * @return the session.
+     */
+    public Session acquireSession() {
+        Session unitSession = currentSession.get();
+        if (unitSession != null) {
+            return unitSession;
+        }
+        sessionLock.acquire();
         return session;
     }
 
+    /**
+     * Releases a session returned by <code>acquireSession()</code>.
+     *
+     * @param session the session.
+     */
+    public void releaseSession(Session session) {
+        if (currentSession.get() == null) {
+            sessionLock.release();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a repository task is running in the current thread.
+     *
+     * @return <code>true</code> if the current thread has a task session.
+     */
+    public boolean hasCurrentSession() {
+        return currentSession.get() != null;
+    }
+
+    /**
+     * Opens a session without first-level cache for read-only scans, the
+     * caller must close it.
+     *
+     * @return the stateless session.
+     */
+    public StatelessSession openStatelessSession() {
+        return sessionFactory.openStatelessSession();
+    }
+
+    /**
+     * Associates a detached entity with a session returned by <code>acquireSession()</code>
+     * so its lazy collections can be loaded.
+     *
+     * @param session the acquired session.
+     * @param entity the entity.
+     */
+    public void attach(Session session, Object entity) {
+        if (!session.contains(entity)) {
+            session.lock(entity, LockMode.NONE);
+        }
+    }
+
     public IdentifierType getIdentifierTypeFromFeedIdentifier(IFeedIdentifier feedIdentifier) {
-        IdentifierType type = identifiersMap.get(feedIdentifier.getSymbol());
-        if (type == null) {
-            type = new IdentifierType(feedIdentifier);
-            identifiersMap.put(type.getSymbol(), type);
+        synchronized (identifiersMap) {
+            IdentifierType type = identifiersMap.get(feedIdentifier.getSymbol());
+            if (type == null) {
+                type = new IdentifierType(feedIdentifier);
+                identifiersMap.put(type.getSymbol(), type);
+            }
+            return type;
         }
-        return type;
     }
 
     /* (non-Javadoc)
@@ -414,7 +523,9 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
         }
 
         List<IStore> list = new ArrayList<IStore>();
-        list.addAll(uriMap.values());
+        synchronized (uriMap) {
+            list.addAll(uriMap.values());
+        }
         return list.toArray(new IStore[list.size()]);
     }
 
@@ -446,16 +557,37 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
     public IStatus runInRepository(IRepositoryRunnable runnable, ISchedulingRule rule, IProgressMonitor monitor) {
         IStatus status;
 
+        // Nested tasks run in the session and transaction of the outer task
+        if (currentSession.get() != null) {
+            try {
+                status = runnable.run(monitor);
+            } catch (Exception e) {
+                status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error running repository task", e); //$NON-NLS-1$
+                Activator.log(status);
+            }
+            return status;
+        }
+
         jobManager.beginRule(rule, monitor);
+        Session unitSession = null;
         Transaction currentTransaction = null;
 
         try {
-            lock.acquire();
-            currentTransaction = session.beginTransaction();
+            // Detaches the objects read outside of a task, so they can be associated with the task session
+            sessionLock.acquire();
+            try {
+                session.clear();
+            } finally {
+                sessionLock.release();
+            }
+
+            unitSession = sessionFactory.openSession();
+            currentSession.set(unitSession);
+            currentTransaction = unitSession.beginTransaction();
             try {
                 status = runnable.run(monitor);
 
-                session.flush();
+                unitSession.flush();
 
                 currentTransaction.commit();
                 currentTransaction = null;
@@ -469,19 +601,27 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
         } catch (Exception e) {
             status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error running repository task", e); //$NON-NLS-1$
             Activator.log(status);
-            try {
-                currentTransaction.rollback();
-            } catch (Exception e1) {
-                Status status1 = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error rolling back transaction", e1); //$NON-NLS-1$
-                Activator.log(status1);
-            }
         } finally {
-            lock.release();
+            if (currentTransaction != null) {
+                try {
+                    currentTransaction.rollback();
+                } catch (Exception e1) {
+                    Status status1 = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error rolling back transaction", e1); //$NON-NLS-1$
+                    Activator.log(status1);
+                }
+            }
+            currentSession.set(null);
+            if (unitSession != null) {
+                try {
+                    unitSession.close();
+                } catch (Exception e1) {
+                    Status status1 = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error closing session", e1); //$NON-NLS-1$
+                    Activator.log(status1);
+                }
+            }
             jobManager.endRule(rule);
         }
 
-        session.clear();
-
         return status;
     }
 
@@ -493,6 +633,9 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
         if (this == rule) {
             return true;
         }
+        if (rule instanceof IStore && ((IStore) rule).getRepository() == this) {
+            return true;
+        }
         if (rule instanceof MultiRule) {
             MultiRule multi = (MultiRule) rule;
             ISchedulingRule[] children = multi.getChildren();
@@ -514,6 +657,11 @@ public class HibernateRepository implements IRepository, ISchedulingRule, IExecu
         if (this == rule) {
             return true;
         }
+        // Stores are the rules of the tasks that access a single object, they run
+        // concurrently with each other but not with tasks on the whole repository
+        if (rule instanceof IStore && ((IStore) rule).getRepository() == this) {
+            return true;
+        }
         return false;
     }
 
@@ -13,8 +13,12 @@ package org.eclipsetrader.repository.hibernate.internal.stores;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 
 import javax.persistence.CascadeType;
@@ -23,6 +27,7 @@ import javax.persistence.DiscriminatorColumn;
 import javax.persistence.DiscriminatorType;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -36,11 +41,14 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipsetrader.core.feed.IHistory;
 import org.eclipsetrader.core.feed.IOHLC;
 import org.eclipsetrader.core.feed.ISplit;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.repositories.BarsDelta;
+import org.eclipsetrader.core.repositories.IHistoryStore;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
 import org.eclipsetrader.core.repositories.IRepository;
 import org.eclipsetrader.core.repositories.IRepositoryService;
@@ -51,22 +59,33 @@ import org.eclipsetrader.core.repositories.StoreProperties;
 import org.eclipsetrader.repository.hibernate.HibernateRepository;
 import org.eclipsetrader.repository.hibernate.internal.Activator;
 import org.eclipsetrader.repository.hibernate.internal.types.HistoryData;
+import org.eclipsetrader.repository.hibernate.internal.types.HistoryDataBulkLoader;
 import org.eclipsetrader.repository.hibernate.internal.types.SecurityType;
 import org.eclipsetrader.repository.hibernate.internal.types.SplitData;
+import org.hibernate.JDBCException;
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
 import org.hibernate.annotations.Target;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
 @Entity
 @Table(name = "histories")
+@org.hibernate.annotations.Table(appliesTo = "histories", indexes = {
+    @Index(name = "histories_instrument_date", columnNames = {
+        "instrument", "date"
+    })
+})
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "type", discriminatorType = DiscriminatorType.STRING, length = 16)
 @DiscriminatorValue("history")
-public class HistoryStore implements IStore {
+public class HistoryStore implements IHistoryStore, ISchedulingRule {
 
     @Id
     @Column(name = "id", length = 32)
@@ -87,7 +106,8 @@ public class HistoryStore implements IStore {
     @Cascade(org.hibernate.annotations.CascadeType.DELETE_ORPHAN)
     List<HistoryData> data = new ArrayList<HistoryData>();
 
-    @OneToMany(mappedBy = "history", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "history", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT)
     @Cascade(org.hibernate.annotations.CascadeType.DELETE_ORPHAN)
     private List<SplitData> splits = new ArrayList<SplitData>();
 
@@ -117,7 +137,25 @@ public class HistoryStore implements IStore {
 
         properties.setProperty(IPropertyConstants.SECURITY, security);
         properties.setProperty(IPropertyConstants.TIME_SPAN, TimeSpan.days(1));
-        properties.setProperty(IPropertyConstants.BARS, data.toArray(new IOHLC[data.size()]));
+        if (id != null) {
+            // Reads outside of a repository task don't need a session cache
+            StatelessSession statelessSession = !repository.hasCurrentSession() ? repository.openStatelessSession() : null;
+            try {
+                Connection connection = statelessSession != null ? statelessSession.connection() : repository.getSession().connection();
+                HistoryDataBulkLoader loader = new HistoryDataBulkLoader(connection);
+                properties.setProperty(IPropertyConstants.BARS, loader.read(id, TimeSpan.days(1), null, null).toOHLC());
+            } catch (SQLException e) {
+                Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading history data", e); //$NON-NLS-1$
+                Activator.log(status);
+            } finally {
+                if (statelessSession != null) {
+                    statelessSession.close();
+                }
+            }
+        }
+        else {
+            properties.setProperty(IPropertyConstants.BARS, data.toArray(new IOHLC[data.size()]));
+        }
         properties.setProperty(IPropertyConstants.SPLITS, splits.toArray(new ISplit[splits.size()]));
 
         return properties;
@@ -132,25 +170,6 @@ public class HistoryStore implements IStore {
 
         this.security = (ISecurity) properties.getProperty(IPropertyConstants.SECURITY);
 
-        List<HistoryData> newData = new ArrayList<HistoryData>(2048);
-        IOHLC[] bars = (IOHLC[]) properties.getProperty(IPropertyConstants.BARS);
-        if (bars != null) {
-            TimeSpan timeSpan = TimeSpan.days(1);
-            for (int i = 0; i < bars.length; i++) {
-                newData.add(new HistoryData(this, bars[i], timeSpan));
-            }
-        }
-        for (HistoryData ohlc : newData) {
-            if (!this.data.contains(ohlc)) {
-                this.data.add(ohlc);
-            }
-        }
-        for (Iterator<HistoryData> iter = this.data.iterator(); iter.hasNext();) {
-            if (!newData.contains(iter.next())) {
-                iter.remove();
-            }
-        }
-
         ISplit[] s = (ISplit[]) properties.getProperty(IPropertyConstants.SPLITS);
         splits.clear();
         if (s != null) {
@@ -159,7 +178,47 @@ public class HistoryStore implements IStore {
             }
         }
 
-        session.save(this);
+        session.saveOrUpdate(this);
+        session.flush();
+
+        IOHLC[] bars = (IOHLC[]) properties.getProperty(IPropertyConstants.BARS);
+        try {
+            HistoryDataBulkLoader loader = new HistoryDataBulkLoader(session.connection());
+            putBars(loader, bars != null ? bars : new IOHLC[0], (BarsDelta) properties.getProperty(IPropertyConstants.BARS_DELTA));
+        } catch (SQLException e) {
+            throw new JDBCException("Error writing history data", e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Writes the bars with JDBC batches. The given delta is used if it was
+     * computed against the bars held by this store, otherwise the changes are
+     * computed from the stored bars.
+     */
+    void putBars(HistoryDataBulkLoader loader, IOHLC[] bars, BarsDelta delta) throws SQLException {
+        TimeSpan timeSpan = TimeSpan.days(1);
+        if (delta == null || delta.getStore() != this || loader.count(id, timeSpan) + delta.getAdded().length - delta.getRemoved().length != bars.length) {
+            IOHLC[] storedBars = loader.read(id, timeSpan, null, null).toOHLC();
+            delta = BarsDelta.compute(this, storedBars, sort(bars));
+        }
+        loader.apply(id, timeSpan, delta);
+    }
+
+    static IOHLC[] sort(IOHLC[] bars) {
+        for (int i = 1; i < bars.length; i++) {
+            if (bars[i].getDate().before(bars[i - 1].getDate())) {
+                IOHLC[] sortedBars = bars.clone();
+                Arrays.sort(sortedBars, new Comparator<IOHLC>() {
+
+                    @Override
+                    public int compare(IOHLC o1, IOHLC o2) {
+                        return o1.getDate().compareTo(o2.getDate());
+                    }
+                });
+                return sortedBars;
+            }
+        }
+        return bars;
     }
 
     /* (non-Javadoc)
@@ -173,19 +232,46 @@ public class HistoryStore implements IStore {
      * @see org.eclipsetrader.core.repositories.IStore#fetchChilds(org.eclipse.core.runtime.IProgressMonitor)
      */
     @Override
-    @SuppressWarnings("unchecked")
     public IStore[] fetchChilds(IProgressMonitor monitor) {
+        return fetchChilds(null, null, monitor);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.repositories.IHistoryStore#fetchChilds(java.util.Date, java.util.Date, org.eclipse.core.runtime.IProgressMonitor)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public IStore[] fetchChilds(Date first, Date last, IProgressMonitor monitor) {
         List<IStore> l = new ArrayList<IStore>();
 
-        Query query = repository.getSession().createQuery("from IntradayHistoryStore where instrument = :instrument");
-        IStoreObject storeObject = (IStoreObject) security.getAdapter(IStoreObject.class);
-        query.setString("instrument", storeObject.getStore().toURI().toString());
+        StringBuilder hql = new StringBuilder("from IntradayHistoryStore where instrument = :instrument");
+        if (first != null) {
+            hql.append(" and date >= :first");
+        }
+        if (last != null) {
+            hql.append(" and date <= :last");
+        }
+
+        Session session = repository.acquireSession();
+        try {
+            Query query = session.createQuery(hql.toString());
+            IStoreObject storeObject = (IStoreObject) security.getAdapter(IStoreObject.class);
+            query.setString("instrument", storeObject.getStore().toURI().toString());
+            if (first != null) {
+                query.setTimestamp("first", first);
+            }
+            if (last != null) {
+                query.setTimestamp("last", last);
+            }
 
-        List list = query.list();
-        if (list != null) {
-            for (Object o : list) {
-                l.add((IStore) o);
+            List list = query.list();
+            if (list != null) {
+                for (Object o : list) {
+                    l.add((IStore) o);
+                }
             }
+        } finally {
+            repository.releaseSession(session);
         }
 
         return l.toArray(new IStore[l.size()]);
@@ -220,6 +306,22 @@ public class HistoryStore implements IStore {
         return repository;
     }
 
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#contains(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean contains(ISchedulingRule rule) {
+        return this == rule;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#isConflicting(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean isConflicting(ISchedulingRule rule) {
+        return this == rule || rule == repository;
+    }
+
     protected ISecurity getSecurityFromURI(URI uri) {
         ISecurity security = null;
         try {
@@ -42,6 +42,7 @@ import org.eclipsetrader.core.repositories.IStoreProperties;
 import org.eclipsetrader.core.repositories.StoreProperties;
 import org.eclipsetrader.repository.hibernate.HibernateRepository;
 import org.eclipsetrader.repository.hibernate.internal.types.HistoryData;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 
 @Entity
@@ -109,6 +110,15 @@ public class IntradayHistoryStore extends HistoryStore {
 
     protected void fillHistory() {
         if (bars.size() == 0) {
+            if (!Hibernate.isInitialized(data)) {
+                Session session = repository.acquireSession();
+                try {
+                    repository.attach(session, this);
+                    Hibernate.initialize(data);
+                } finally {
+                    repository.releaseSession(session);
+                }
+            }
             Map<TimeSpan, List<HistoryData>> map = new HashMap<TimeSpan, List<HistoryData>>();
             for (HistoryData ohlc : data) {
                 List<HistoryData> h = map.get(ohlc.getTimeSpan());
@@ -131,6 +141,7 @@ public class IntradayHistoryStore extends HistoryStore {
     @Override
     public void putProperties(IStoreProperties properties, IProgressMonitor monitor) {
         Session session = repository.getSession();
+        session.saveOrUpdate(this);
 
         this.security = (ISecurity) properties.getProperty(IPropertyConstants.SECURITY);
         this.date = (Date) properties.getProperty(IPropertyConstants.BARS_DATE);
@@ -158,8 +169,6 @@ public class IntradayHistoryStore extends HistoryStore {
 
         this.bars.clear();
         fillHistory();
-
-        session.save(this);
     }
 
     /* (non-Javadoc)
@@ -25,6 +25,7 @@ import javax.persistence.Version;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipsetrader.core.IScript;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
@@ -41,7 +42,7 @@ import org.hibernate.annotations.Target;
 
 @Entity
 @Table(name = "scripts")
-public class ScriptStore implements IStore {
+public class ScriptStore implements IStore, ISchedulingRule {
 
     @Id
     @Column(name = "id", length = 32)
@@ -134,7 +135,7 @@ public class ScriptStore implements IStore {
         this.language = (String) properties.getProperty(IScript.LANGUAGE);
         this.text = (String) properties.getProperty(IScript.TEXT);
 
-        session.save(this);
+        session.saveOrUpdate(this);
     }
 
     /* (non-Javadoc)
@@ -170,4 +171,20 @@ public class ScriptStore implements IStore {
     public IRepository getRepository() {
         return repository;
     }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#contains(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean contains(ISchedulingRule rule) {
+        return this == rule;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#isConflicting(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean isConflicting(ISchedulingRule rule) {
+        return this == rule || rule == repository;
+    }
 }
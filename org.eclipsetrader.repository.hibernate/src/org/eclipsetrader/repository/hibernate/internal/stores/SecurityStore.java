@@ -22,6 +22,7 @@ import java.util.Set;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
@@ -33,6 +34,7 @@ import javax.persistence.Version;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipsetrader.core.feed.IDividend;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
 import org.eclipsetrader.core.feed.IFeedProperties;
@@ -51,13 +53,18 @@ import org.eclipsetrader.repository.hibernate.internal.types.RepositoryFactoryTy
 import org.eclipsetrader.repository.hibernate.internal.types.SecurityUnknownPropertyType;
 import org.hibernate.Query;
 import org.hibernate.Session;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Target;
 
 @Entity
 @Table(name = "securities")
-public class SecurityStore implements IStore {
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+public class SecurityStore implements IStore, ISchedulingRule {
 
     @Id
     @Column(name = "id", length = 32)
@@ -86,7 +93,9 @@ public class SecurityStore implements IStore {
     @Column(name = "currency")
     private Currency currency;
 
-    @OneToMany(mappedBy = "security", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "security", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Fetch(FetchMode.SELECT)
     @Cascade(org.hibernate.annotations.CascadeType.DELETE_ORPHAN)
     @OrderBy("exDate")
     private List<DividendType> dividends = new ArrayList<DividendType>();
@@ -94,7 +103,9 @@ public class SecurityStore implements IStore {
     @Transient
     private IUserProperties userProperties;
 
-    @OneToMany(mappedBy = "security", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "security", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Fetch(FetchMode.SELECT)
     @Cascade(org.hibernate.annotations.CascadeType.DELETE_ORPHAN)
     private List<SecurityUnknownPropertyType> unknownProperties = new ArrayList<SecurityUnknownPropertyType>();
 
@@ -199,7 +210,7 @@ public class SecurityStore implements IStore {
         this.identifier = feedIdentifier != null ? repository.getIdentifierTypeFromFeedIdentifier(feedIdentifier) : null;
         if (this.identifier != null) {
             this.identifier.updateProperties((IFeedProperties) feedIdentifier.getAdapter(IFeedProperties.class));
-            session.save(this.identifier);
+            session.saveOrUpdate(this.identifier);
         }
 
         this.currency = (Currency) properties.getProperty(IPropertyConstants.CURRENCY);
@@ -220,7 +231,7 @@ public class SecurityStore implements IStore {
             }
         }
 
-        session.save(this);
+        session.saveOrUpdate(this);
     }
 
     /* (non-Javadoc)
@@ -250,13 +261,18 @@ public class SecurityStore implements IStore {
     @SuppressWarnings("rawtypes")
     public IStore[] fetchChilds(IProgressMonitor monitor) {
         if (historyStore == null) {
-            Query query = repository.getSession().createQuery("from HistoryStore where instrument = :instrument and type = :type");
-            query.setString("instrument", toURI().toString());
-            query.setString("type", "history");
-            List l = query.list();
-            if (l != null && l.size() == 1) {
-                historyStore = (HistoryStore) l.get(0);
-                historyStore.setRepository(repository);
+            Session session = repository.acquireSession();
+            try {
+                Query query = session.createQuery("from HistoryStore where instrument = :instrument and type = :type");
+                query.setString("instrument", toURI().toString());
+                query.setString("type", "history");
+                List l = query.list();
+                if (l != null && l.size() == 1) {
+                    historyStore = (HistoryStore) l.get(0);
+                    historyStore.setRepository(repository);
+                }
+            } finally {
+                repository.releaseSession(session);
             }
         }
 
@@ -283,4 +299,20 @@ public class SecurityStore implements IStore {
     public IRepository getRepository() {
         return repository;
     }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#contains(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean contains(ISchedulingRule rule) {
+        return this == rule;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#isConflicting(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean isConflicting(ISchedulingRule rule) {
+        return this == rule || rule == repository;
+    }
 }
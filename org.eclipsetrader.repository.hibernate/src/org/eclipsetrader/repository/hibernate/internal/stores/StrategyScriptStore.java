@@ -20,6 +20,7 @@ import java.util.List;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Lob;
@@ -30,6 +31,7 @@ import javax.persistence.Version;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipsetrader.core.IScript;
 import org.eclipsetrader.core.ats.IScriptStrategy;
 import org.eclipsetrader.core.feed.TimeSpan;
@@ -44,12 +46,14 @@ import org.eclipsetrader.repository.hibernate.HibernateRepository;
 import org.eclipsetrader.repository.hibernate.internal.types.RepositoryFactoryType;
 import org.hibernate.Session;
 import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Target;
 
 @Entity
 @Table(name = "strategies")
-public class StrategyScriptStore implements IStore {
+public class StrategyScriptStore implements IStore, ISchedulingRule {
 
     public static final String K_INCLUDE = "include";
     public static final String K_INSTRUMENT = "instrument";
@@ -91,7 +95,8 @@ public class StrategyScriptStore implements IStore {
     @Transient
     IScript[] includesData;
 
-    @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT)
     @Cascade(org.hibernate.annotations.CascadeType.DELETE_ORPHAN)
     List<StrategyScriptProperties> properties = new ArrayList<StrategyScriptProperties>();
 
@@ -224,7 +229,7 @@ public class StrategyScriptStore implements IStore {
             }
         }
 
-        session.save(this);
+        session.saveOrUpdate(this);
     }
 
     /* (non-Javadoc)
@@ -260,4 +265,20 @@ public class StrategyScriptStore implements IStore {
     public IRepository getRepository() {
         return repository;
     }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#contains(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean contains(ISchedulingRule rule) {
+        return this == rule;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#isConflicting(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean isConflicting(ISchedulingRule rule) {
+        return this == rule || rule == repository;
+    }
 }
@@ -25,6 +25,7 @@ import javax.persistence.Version;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
 import org.eclipsetrader.core.repositories.IRepository;
@@ -39,7 +40,7 @@ import org.hibernate.annotations.Target;
 
 @Entity
 @Table(name = "trades")
-public class TradeStore implements IStore {
+public class TradeStore implements IStore, ISchedulingRule {
 
     @Id
     @Column(name = "id", length = 32)
@@ -131,6 +132,22 @@ public class TradeStore implements IStore {
         return repository;
     }
 
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#contains(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean contains(ISchedulingRule rule) {
+        return this == rule;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#isConflicting(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean isConflicting(ISchedulingRule rule) {
+        return this == rule || rule == repository;
+    }
+
     /* (non-Javadoc)
      * @see org.eclipsetrader.core.repositories.IStore#toURI()
      */
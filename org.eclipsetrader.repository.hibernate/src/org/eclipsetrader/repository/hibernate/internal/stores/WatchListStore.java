@@ -19,6 +19,7 @@ import java.util.List;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
@@ -29,6 +30,7 @@ import javax.persistence.Version;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
 import org.eclipsetrader.core.repositories.IRepository;
 import org.eclipsetrader.core.repositories.IRepositoryElementFactory;
@@ -43,13 +45,18 @@ import org.eclipsetrader.repository.hibernate.internal.types.RepositoryFactoryTy
 import org.eclipsetrader.repository.hibernate.internal.types.WatchListColumn;
 import org.eclipsetrader.repository.hibernate.internal.types.WatchListHolding;
 import org.hibernate.Session;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Target;
 import org.hibernate.annotations.Type;
 
 @Entity
 @Table(name = "watchlists")
-public class WatchListStore implements IStore {
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+public class WatchListStore implements IStore, ISchedulingRule {
 
     @Id
     @Column(name = "id", length = 32)
@@ -70,11 +77,15 @@ public class WatchListStore implements IStore {
     @Column(name = "name")
     private String name;
 
-    @OneToMany(mappedBy = "watchlist", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "watchlist", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Fetch(FetchMode.SELECT)
     @OrderBy("index")
     private List<WatchListColumn> columns = new ArrayList<WatchListColumn>();
 
-    @OneToMany(mappedBy = "watchlist", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "watchlist", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Fetch(FetchMode.SELECT)
     @OrderBy("index")
     private List<WatchListHolding> elements = new ArrayList<WatchListHolding>();
 
@@ -156,7 +167,7 @@ public class WatchListStore implements IStore {
             }
         }
 
-        session.save(this);
+        session.saveOrUpdate(this);
     }
 
     /* (non-Javadoc)
@@ -192,4 +203,20 @@ public class WatchListStore implements IStore {
     public IRepository getRepository() {
         return repository;
     }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#contains(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean contains(ISchedulingRule rule) {
+        return this == rule;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.ISchedulingRule#isConflicting(org.eclipse.core.runtime.jobs.ISchedulingRule)
+     */
+    @Override
+    public boolean isConflicting(ISchedulingRule rule) {
+        return this == rule || rule == repository;
+    }
 }
@@ -23,10 +23,13 @@ import javax.persistence.Table;
 import org.eclipsetrader.core.feed.Dividend;
 import org.eclipsetrader.core.feed.IDividend;
 import org.eclipsetrader.repository.hibernate.internal.stores.SecurityStore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 
 @Entity
 @Table(name = "securities_dividends")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class DividendType {
 
     @Id
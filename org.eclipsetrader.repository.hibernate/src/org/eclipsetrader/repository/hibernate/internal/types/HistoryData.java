@@ -29,6 +29,11 @@ import org.hibernate.annotations.Target;
 
 @Entity
 @Table(name = "histories_data")
+@org.hibernate.annotations.Table(appliesTo = "histories_data", indexes = {
+    @Index(name = "histories_data_range", columnNames = {
+        "history_id", "timespan", "date"
+    })
+})
 public class HistoryData implements IOHLC {
 
     @Id
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.repository.hibernate.internal.types;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import org.eclipsetrader.core.feed.BarSeries;
+import org.eclipsetrader.core.feed.IBarSeries;
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.core.repositories.BarsDelta;
+
+/**
+ * Reads and writes the <code>histories_data</code> rows of a history with
+ * plain JDBC statements, bypassing the <code>HistoryData</code> entities.
+ *
+ * <p>Writes are sent as JDBC batches on the connection of the current
+ * session, so they take part in the running transaction. Reads go through a
+ * forward-only cursor on the (history, timespan, date) index and fill a
+ * primitive backed series without creating an object for each row; drivers
+ * that stream result sets only within a transaction, like PostgreSQL, do so
+ * when called from a repository runnable.</p>
+ */
+public class HistoryDataBulkLoader {
+
+    public static final int BATCH_SIZE = 1000;
+    public static final int FETCH_SIZE = 1000;
+
+    static final String INSERT = "insert into histories_data (id, date, timespan, open_price, high_price, low_price, close_price, volume, history_id) values (?, ?, ?, ?, ?, ?, ?, ?, ?)"; //$NON-NLS-1$
+    static final String UPDATE = "update histories_data set open_price = ?, high_price = ?, low_price = ?, close_price = ?, volume = ? where history_id = ? and timespan = ? and date = ?"; //$NON-NLS-1$
+    static final String DELETE = "delete from histories_data where history_id = ? and timespan = ? and date = ?"; //$NON-NLS-1$
+    static final String COUNT = "select count(*) from histories_data where history_id = ? and timespan = ?"; //$NON-NLS-1$
+    static final String SELECT = "select date, open_price, high_price, low_price, close_price, volume from histories_data where history_id = ? and timespan = ?"; //$NON-NLS-1$
+
+    private final Connection connection;
+
+    public HistoryDataBulkLoader(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Returns the number of bars stored for the given history and time span.
+     *
+     * @param historyId the history id.
+     * @param timeSpan the bars time span.
+     * @return the number of bars.
+     */
+    public int count(String historyId, TimeSpan timeSpan) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(COUNT);
+        try {
+            statement.setString(1, historyId);
+            statement.setString(2, timeSpan.toString());
+            ResultSet rs = statement.executeQuery();
+            try {
+                return rs.next() ? rs.getInt(1) : 0;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Reads the bars with a date within the given range, bounds included,
+     * sorted by date.
+     *
+     * @param historyId the history id.
+     * @param timeSpan the bars time span.
+     * @param first the first date, or <code>null</code> to read from the first bar.
+     * @param last the last date, or <code>null</code> to read up to the last bar.
+     * @return the bars series, never <code>null</code>.
+     */
+    public IBarSeries read(String historyId, TimeSpan timeSpan, Date first, Date last) throws SQLException {
+        StringBuilder sql = new StringBuilder(SELECT);
+        if (first != null) {
+            sql.append(" and date >= ?"); //$NON-NLS-1$
+        }
+        if (last != null) {
+            sql.append(" and date <= ?"); //$NON-NLS-1$
+        }
+        sql.append(" order by date"); //$NON-NLS-1$
+
+        int capacity = 256;
+        long[] time = new long[capacity];
+        double[] open = new double[capacity];
+        double[] high = new double[capacity];
+        double[] low = new double[capacity];
+        double[] close = new double[capacity];
+        long[] volume = new long[capacity];
+        int size = 0;
+
+        PreparedStatement statement = connection.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            statement.setFetchSize(FETCH_SIZE);
+            int index = 1;
+            statement.setString(index++, historyId);
+            statement.setString(index++, timeSpan.toString());
+            if (first != null) {
+                statement.setTimestamp(index++, new Timestamp(first.getTime()));
+            }
+            if (last != null) {
+                statement.setTimestamp(index++, new Timestamp(last.getTime()));
+            }
+
+            ResultSet rs = statement.executeQuery();
+            try {
+                while (rs.next()) {
+                    if (size == capacity) {
+                        capacity *= 2;
+                        time = Arrays.copyOf(time, capacity);
+                        open = Arrays.copyOf(open, capacity);
+                        high = Arrays.copyOf(high, capacity);
+                        low = Arrays.copyOf(low, capacity);
+                        close = Arrays.copyOf(close, capacity);
+                        volume = Arrays.copyOf(volume, capacity);
+                    }
+                    time[size] = rs.getTimestamp(1).getTime();
+                    open[size] = getDouble(rs, 2);
+                    high[size] = getDouble(rs, 3);
+                    low[size] = getDouble(rs, 4);
+                    close[size] = getDouble(rs, 5);
+                    long value = rs.getLong(6);
+                    volume[size] = rs.wasNull() ? IBarSeries.NO_VOLUME : value;
+                    size++;
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+
+        return new BarSeries(Arrays.copyOf(time, size), Arrays.copyOf(open, size), Arrays.copyOf(high, size), Arrays.copyOf(low, size), Arrays.copyOf(close, size), Arrays.copyOf(volume, size));
+    }
+
+    /**
+     * Inserts the given bars.
+     *
+     * @param historyId the history id.
+     * @param timeSpan the bars time span.
+     * @param bars the bars to insert, must not be already stored.
+     */
+    public void insert(String historyId, TimeSpan timeSpan, IOHLC[] bars) throws SQLException {
+        if (bars.length == 0) {
+            return;
+        }
+        PreparedStatement statement = connection.prepareStatement(INSERT);
+        try {
+            for (int i = 0; i < bars.length; i++) {
+                statement.setString(1, UUID.randomUUID().toString().replace("-", "")); //$NON-NLS-1$ //$NON-NLS-2$
+                statement.setTimestamp(2, new Timestamp(bars[i].getDate().getTime()));
+                statement.setString(3, timeSpan.toString());
+                setDouble(statement, 4, bars[i].getOpen());
+                setDouble(statement, 5, bars[i].getHigh());
+                setDouble(statement, 6, bars[i].getLow());
+                setDouble(statement, 7, bars[i].getClose());
+                setLong(statement, 8, bars[i].getVolume());
+                statement.setString(9, historyId);
+                statement.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            if (bars.length % BATCH_SIZE != 0) {
+                statement.executeBatch();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Updates the prices and volumes of the stored bars with the same date of the given bars.
+     *
+     * @param historyId the history id.
+     * @param timeSpan the bars time span.
+     * @param bars the bars to update.
+     */
+    public void update(String historyId, TimeSpan timeSpan, IOHLC[] bars) throws SQLException {
+        if (bars.length == 0) {
+            return;
+        }
+        PreparedStatement statement = connection.prepareStatement(UPDATE);
+        try {
+            for (int i = 0; i < bars.length; i++) {
+                setDouble(statement, 1, bars[i].getOpen());
+                setDouble(statement, 2, bars[i].getHigh());
+                setDouble(statement, 3, bars[i].getLow());
+                setDouble(statement, 4, bars[i].getClose());
+                setLong(statement, 5, bars[i].getVolume());
+                statement.setString(6, historyId);
+                statement.setString(7, timeSpan.toString());
+                statement.setTimestamp(8, new Timestamp(bars[i].getDate().getTime()));
+                statement.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            if (bars.length % BATCH_SIZE != 0) {
+                statement.executeBatch();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Deletes the stored bars with the given dates.
+     *
+     * @param historyId the history id.
+     * @param timeSpan the bars time span.
+     * @param dates the dates of the bars to delete.
+     */
+    public void delete(String historyId, TimeSpan timeSpan, Date[] dates) throws SQLException {
+        if (dates.length == 0) {
+            return;
+        }
+        PreparedStatement statement = connection.prepareStatement(DELETE);
+        try {
+            for (int i = 0; i < dates.length; i++) {
+                statement.setString(1, historyId);
+                statement.setString(2, timeSpan.toString());
+                statement.setTimestamp(3, new Timestamp(dates[i].getTime()));
+                statement.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            if (dates.length % BATCH_SIZE != 0) {
+                statement.executeBatch();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Applies the given delta to the stored bars.
+     *
+     * @param historyId the history id.
+     * @param timeSpan the bars time span.
+     * @param delta the changes to write.
+     */
+    public void apply(String historyId, TimeSpan timeSpan, BarsDelta delta) throws SQLException {
+        delete(historyId, timeSpan, delta.getRemoved());
+        update(historyId, timeSpan, delta.getChanged());
+        insert(historyId, timeSpan, delta.getAdded());
+    }
+
+    private static double getDouble(ResultSet rs, int index) throws SQLException {
+        double value = rs.getDouble(index);
+        return rs.wasNull() ? Double.NaN : value;
+    }
+
+    private static void setDouble(PreparedStatement statement, int index, Double value) throws SQLException {
+        if (value == null || value.isNaN()) {
+            statement.setNull(index, Types.DOUBLE);
+        }
+        else {
+            statement.setDouble(index, value);
+        }
+    }
+
+    private static void setLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.BIGINT);
+        }
+        else {
+            statement.setLong(index, value);
+        }
+    }
+}
@@ -19,10 +19,13 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 
 @Entity
 @Table(name = "identifiers_properties")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class IdentifierPropertyType {
 
     @Id
@@ -19,6 +19,7 @@ import java.util.Map;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
@@ -30,11 +31,16 @@ import org.eclipsetrader.core.feed.FeedIdentifier;
 import org.eclipsetrader.core.feed.FeedProperties;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
 import org.eclipsetrader.core.feed.IFeedProperties;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.GenericGenerator;
 
 @Entity
 @Table(name = "identifiers")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class IdentifierType {
 
     @Id
@@ -52,7 +58,9 @@ public class IdentifierType {
     @Column(name = "symbol", unique = true)
     private String symbol;
 
-    @OneToMany(mappedBy = "identifier", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "identifier", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Fetch(FetchMode.SELECT)
     @Cascade(org.hibernate.annotations.CascadeType.DELETE_ORPHAN)
     List<IdentifierPropertyType> properties = new ArrayList<IdentifierPropertyType>();
 
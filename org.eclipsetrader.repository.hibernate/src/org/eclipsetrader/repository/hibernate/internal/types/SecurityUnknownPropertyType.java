@@ -26,10 +26,13 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
 import org.eclipsetrader.repository.hibernate.internal.stores.SecurityStore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 
 @Entity
 @Table(name = "securities_other_properties")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class SecurityUnknownPropertyType {
 
     @Id
@@ -21,11 +21,14 @@ import javax.persistence.Table;
 import org.eclipsetrader.core.views.IColumn;
 import org.eclipsetrader.core.views.IDataProviderFactory;
 import org.eclipsetrader.repository.hibernate.internal.stores.WatchListStore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Target;
 
 @Entity
 @Table(name = "watchlists_columns")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class WatchListColumn implements IColumn {
 
     @Id
@@ -23,11 +23,14 @@ import javax.persistence.Table;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.views.IHolding;
 import org.eclipsetrader.repository.hibernate.internal.stores.WatchListStore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Target;
 
 @Entity
 @Table(name = "watchlists_elements")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class WatchListHolding implements IHolding {
 
     @Id
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.repository.local.internal.bars;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.OHLC;
+
+public class BarsFileTest extends TestCase {
+
+    private File file = new File("test.bars");
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    public void testReadEmptyFile() throws Exception {
+        BarsFile barsFile = new BarsFile(file);
+        assertEquals(0, barsFile.size());
+        assertEquals(0, barsFile.read().length);
+    }
+
+    public void testWriteAndRead() throws Exception {
+        IOHLC[] bars = createBars(10);
+        new BarsFile(file).write(bars);
+
+        IOHLC[] result = new BarsFile(file).read();
+        assertEquals(10, result.length);
+        for (int i = 0; i < bars.length; i++) {
+            assertEquals(bars[i], result[i]);
+        }
+    }
+
+    public void testReadNullValues() throws Exception {
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(new Date(1000000L), 1.0, null, 0.5, 1.5, null),
+        };
+        new BarsFile(file).write(bars);
+
+        IOHLC[] result = new BarsFile(file).read();
+        assertNull(result[0].getHigh());
+        assertNull(result[0].getVolume());
+        assertEquals(0.5, result[0].getLow());
+    }
+
+    public void testAppendBeyondCapacity() throws Exception {
+        IOHLC[] bars = createBars(BarsFile.INITIAL_CAPACITY * 2 + 10);
+
+        IOHLC[] head = new IOHLC[10];
+        System.arraycopy(bars, 0, head, 0, head.length);
+
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(head);
+        assertEquals(10, barsFile.size());
+
+        barsFile.write(bars);
+        assertEquals(bars.length, barsFile.size());
+        assertEquals(bars[bars.length - 1], new BarsFile(file).read()[bars.length - 1]);
+    }
+
+    public void testReadRange() throws Exception {
+        IOHLC[] bars = createBars(10);
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(bars);
+
+        IOHLC[] result = barsFile.read(bars[3].getDate(), bars[5].getDate());
+        assertEquals(3, result.length);
+        assertEquals(bars[3], result[0]);
+        assertEquals(bars[5], result[2]);
+    }
+
+    public void testReplaceRange() throws Exception {
+        IOHLC[] bars = createBars(10);
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(bars);
+
+        IOHLC bar = new OHLC(bars[4].getDate(), 9.0, 9.0, 9.0, 9.0, 9L);
+        barsFile.replace(bars[3].getDate(), bars[5].getDate(), new IOHLC[] {
+            bar
+        });
+
+        IOHLC[] result = barsFile.read();
+        assertEquals(8, result.length);
+        assertEquals(bars[2], result[2]);
+        assertEquals(bar, result[3]);
+        assertEquals(bars[6], result[4]);
+    }
+
+    public void testReplaceTailInPlace() throws Exception {
+        IOHLC[] bars = createBars(10);
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(bars);
+        long length = file.length();
+
+        IOHLC bar = new OHLC(bars[8].getDate(), 9.0, 9.0, 9.0, 9.0, 9L);
+        barsFile.replace(bars[7].getDate(), bars[9].getDate(), new IOHLC[] {
+            bar
+        });
+
+        IOHLC[] result = new BarsFile(file).read();
+        assertEquals(8, result.length);
+        assertEquals(bars[6], result[6]);
+        assertEquals(bar, result[7]);
+        assertEquals(length, file.length());
+    }
+
+    public void testReplaceSameNumberOfBarsInPlace() throws Exception {
+        IOHLC[] bars = createBars(10);
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(bars);
+
+        IOHLC bar = new OHLC(bars[4].getDate(), 9.0, 9.0, 9.0, 9.0, 9L);
+        barsFile.replace(bars[4].getDate(), bars[4].getDate(), new IOHLC[] {
+            bar
+        });
+
+        IOHLC[] result = new BarsFile(file).read();
+        assertEquals(10, result.length);
+        assertEquals(bars[3], result[3]);
+        assertEquals(bar, result[4]);
+        assertEquals(bars[5], result[5]);
+    }
+
+    public void testGetDays() throws Exception {
+        Calendar c = Calendar.getInstance();
+        c.set(2011, Calendar.MARCH, 1, 0, 0, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        Date day1 = c.getTime();
+        c.add(Calendar.DATE, 1);
+        Date day2 = c.getTime();
+        c.add(Calendar.DATE, 2);
+        Date day4 = c.getTime();
+
+        IOHLC[] bars = new IOHLC[] {
+            new OHLC(new Date(day1.getTime() + 9 * BarsFile.HOUR), 1.0, 1.0, 1.0, 1.0, 1L),
+            new OHLC(new Date(day1.getTime() + 23 * BarsFile.HOUR), 1.0, 1.0, 1.0, 1.0, 1L),
+            new OHLC(new Date(day1.getTime() + 23 * BarsFile.HOUR + 60000L), 1.0, 1.0, 1.0, 1.0, 1L),
+            new OHLC(day2, 1.0, 1.0, 1.0, 1.0, 1L),
+            new OHLC(new Date(day2.getTime() + 12 * BarsFile.HOUR), 1.0, 1.0, 1.0, 1.0, 1L),
+            new OHLC(new Date(day4.getTime() + 10 * BarsFile.HOUR), 1.0, 1.0, 1.0, 1.0, 1L),
+        };
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(bars);
+
+        Date[] days = barsFile.getDays();
+        assertEquals(3, days.length);
+        assertEquals(day1, days[0]);
+        assertEquals(day2, days[1]);
+        assertEquals(day4, days[2]);
+    }
+
+    public void testDeleteMappedFile() throws Exception {
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(createBars(10));
+        assertEquals(10, barsFile.read().length);
+
+        barsFile.delete();
+        assertFalse(file.exists());
+        assertEquals(0, barsFile.size());
+    }
+
+    public void testIndexOf() throws Exception {
+        IOHLC[] bars = createBars(10);
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(bars);
+
+        assertEquals(0, barsFile.indexOf(0L));
+        assertEquals(2, barsFile.indexOf(bars[2].getDate().getTime()));
+        assertEquals(3, barsFile.indexOf(bars[2].getDate().getTime() + 1));
+        assertEquals(10, barsFile.indexOf(Long.MAX_VALUE));
+    }
+
+    public void testPatchChangedAndAddedBars() throws Exception {
+        IOHLC[] bars = createBars(10);
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(bars);
+
+        IOHLC changed = new OHLC(bars[9].getDate(), 20.0, 21.0, 19.0, 20.5, 5000L);
+        IOHLC added = new OHLC(new Date(bars[9].getDate().getTime() + 60000L), 21.0, 22.0, 20.0, 21.5, 6000L);
+        assertTrue(barsFile.patch(new IOHLC[] {
+                changed, added
+        }));
+
+        IOHLC[] result = new BarsFile(file).read();
+        assertEquals(11, result.length);
+        assertEquals(bars[8], result[8]);
+        assertEquals(changed, result[9]);
+        assertEquals(added, result[10]);
+    }
+
+    public void testPatchRejectsInsertedBars() throws Exception {
+        IOHLC[] bars = createBars(10);
+        BarsFile barsFile = new BarsFile(file);
+        barsFile.write(bars);
+
+        IOHLC inserted = new OHLC(new Date(bars[4].getDate().getTime() + 1000L), 1.0, 1.0, 1.0, 1.0, 1L);
+        assertFalse(barsFile.patch(new IOHLC[] {
+                inserted
+        }));
+        assertEquals(10, barsFile.size());
+    }
+
+    private IOHLC[] createBars(int count) {
+        IOHLC[] bars = new IOHLC[count];
+        long time = 1300000000000L;
+        for (int i = 0; i < count; i++) {
+            bars[i] = new OHLC(new Date(time + i * 60000L), 10.0 + i, 11.0 + i, 9.0 + i, 10.5 + i, 1000L + i);
+        }
+        return bars;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.repository.local.internal.bars;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+public class HistoryMigrationJobTest extends TestCase {
+
+    private File historyFolder = new File("history-test");
+    private BarsStorage storage = new BarsStorage(new File(historyFolder, BarsStorage.FOLDER));
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        deleteFolder(historyFolder);
+        historyFolder.mkdirs();
+        new File(historyFolder, "1.xml").createNewFile();
+        new File(historyFolder, "2.xml").createNewFile();
+    }
+
+    /* (non-Javadoc)
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        deleteFolder(historyFolder);
+    }
+
+    public void testSetMigratedWhenAllSecuritiesConverted() throws Exception {
+        HistoryMigrationJob job = new TestMigrationJob(null);
+
+        IStatus status = job.run(new NullProgressMonitor());
+
+        assertTrue(status.isOK());
+        assertTrue(storage.exists(1));
+        assertTrue(storage.exists(2));
+        assertTrue(storage.isMigrated());
+    }
+
+    public void testDontSetMigratedWhenSecurityFails() throws Exception {
+        HistoryMigrationJob job = new TestMigrationJob(2);
+
+        IStatus status = job.run(new NullProgressMonitor());
+
+        assertEquals(IStatus.ERROR, status.getSeverity());
+        assertTrue(storage.exists(1));
+        assertFalse(storage.exists(2));
+        assertFalse(storage.isMigrated());
+        assertFalse(storage.canWrite(2));
+    }
+
+    public void testRetryFailedSecurity() throws Exception {
+        new TestMigrationJob(2).run(new NullProgressMonitor());
+
+        IStatus status = new TestMigrationJob(null).run(new NullProgressMonitor());
+
+        assertTrue(status.isOK());
+        assertTrue(storage.exists(2));
+        assertTrue(storage.isMigrated());
+    }
+
+    private void deleteFolder(File folder) {
+        File[] childFiles = folder.listFiles();
+        if (childFiles != null) {
+            for (int i = 0; i < childFiles.length; i++) {
+                deleteFolder(childFiles[i]);
+            }
+        }
+        folder.delete();
+    }
+
+    private class TestMigrationJob extends HistoryMigrationJob {
+
+        private final Integer failingId;
+
+        public TestMigrationJob(Integer failingId) {
+            super(historyFolder, storage, null);
+            this.failingId = failingId;
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.repository.local.internal.bars.HistoryMigrationJob#migrate(java.lang.Integer)
+         */
+        @Override
+        protected void migrate(Integer id) throws Exception {
+            if (id.equals(failingId)) {
+                throw new Exception("Corrupted history");
+            }
+            storage.getFolder(id).mkdirs();
+        }
+    }
+}
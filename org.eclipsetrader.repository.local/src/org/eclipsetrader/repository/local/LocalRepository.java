@@ -12,17 +12,10 @@
 package org.eclipsetrader.repository.local;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -32,6 +25,7 @@ import org.eclipse.core.runtime.jobs.ILock;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.MultiRule;
+import org.eclipsetrader.core.PersistenceService;
 import org.eclipsetrader.core.repositories.IRepository;
 import org.eclipsetrader.core.repositories.IRepositoryRunnable;
 import org.eclipsetrader.core.repositories.IStore;
@@ -42,6 +36,8 @@ import org.eclipsetrader.repository.local.internal.SecurityCollection;
 import org.eclipsetrader.repository.local.internal.StrategiesCollection;
 import org.eclipsetrader.repository.local.internal.TradeCollection;
 import org.eclipsetrader.repository.local.internal.WatchListCollection;
+import org.eclipsetrader.repository.local.internal.bars.BarsStorage;
+import org.eclipsetrader.repository.local.internal.bars.HistoryMigrationJob;
 import org.eclipsetrader.repository.local.internal.stores.RepositoryStore;
 
 public class LocalRepository implements IRepository, ISchedulingRule {
@@ -73,6 +69,9 @@ public class LocalRepository implements IRepository, ISchedulingRule {
     private ScriptsCollection scripts;
     private StrategiesCollection strategies;
 
+    private boolean columnarHistory;
+    private BarsStorage barsStorage;
+
     private IJobManager jobManager;
     private final ILock lock;
 
@@ -96,7 +95,32 @@ public class LocalRepository implements IRepository, ISchedulingRule {
         return location;
     }
 
+    public boolean isColumnarHistory() {
+        return columnarHistory;
+    }
+
+    public void setColumnarHistory(boolean columnarHistory) {
+        this.columnarHistory = columnarHistory;
+    }
+
+    /**
+     * Returns the columnar history storage, or <code>null</code> if the
+     * history is stored only in the XML tree.
+     *
+     * @return the columnar storage.
+     */
+    public BarsStorage getBarsStorage() {
+        return barsStorage;
+    }
+
     public void startUp() {
+        if (columnarHistory) {
+            barsStorage = new BarsStorage(location.append(BarsStorage.FOLDER).toFile());
+            if (!barsStorage.isMigrated()) {
+                new HistoryMigrationJob(location.append(SECURITIES_HISTORY_FILE).toFile(), barsStorage, this).schedule();
+            }
+        }
+
         File file = location.append(IDENTIFIERS_FILE).toFile();
         identifiers = (IdentifiersCollection) unmarshal(IdentifiersCollection.class, file);
         if (identifiers == null) {
@@ -353,26 +377,12 @@ public class LocalRepository implements IRepository, ISchedulingRule {
         return null;
     }
 
-    @SuppressWarnings("rawtypes")
+    @SuppressWarnings({
+        "rawtypes", "unchecked"
+    })
     protected void marshal(Object object, Class clazz, File file) {
         try {
-            if (file.exists()) {
-                file.delete();
-            }
-            JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            marshaller.setEventHandler(new ValidationEventHandler() {
-
-                @Override
-                public boolean handleEvent(ValidationEvent event) {
-                    Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                    Activator.getDefault().getLog().log(status);
-                    return true;
-                }
-            });
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-            marshaller.marshal(object, new FileWriter(file));
+            PersistenceService.getInstance().marshal(object, clazz, file);
         } catch (Exception e) {
             Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error saving securities", null); //$NON-NLS-1$
             Activator.getDefault().getLog().log(status);
@@ -382,20 +392,7 @@ public class LocalRepository implements IRepository, ISchedulingRule {
     @SuppressWarnings("rawtypes")
     protected Object unmarshal(Class clazz, File file) {
         try {
-            if (file.exists()) {
-                JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-                Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-                unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-                    @Override
-                    public boolean handleEvent(ValidationEvent event) {
-                        Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                        Activator.getDefault().getLog().log(status);
-                        return true;
-                    }
-                });
-                return unmarshaller.unmarshal(file);
-            }
+            return PersistenceService.getInstance().unmarshal(clazz, file);
         } catch (Exception e) {
             Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error loading identifiers", null); //$NON-NLS-1$
             Activator.getDefault().getLog().log(status);
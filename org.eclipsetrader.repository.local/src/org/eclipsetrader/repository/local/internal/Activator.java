@@ -24,6 +24,9 @@ public class Activator extends AbstractUIPlugin {
     // The plug-in ID
     public static final String PLUGIN_ID = "org.eclipsetrader.repository.local";
 
+    // Preferences IDs
+    public static final String PREFS_COLUMNAR_HISTORY = "COLUMNAR_HISTORY";
+
     // The shared instance
     private static Activator plugin;
 
@@ -45,6 +48,7 @@ public class Activator extends AbstractUIPlugin {
         plugin = this;
 
         repository = new LocalRepository(getStateLocation());
+        repository.setColumnarHistory(getPreferenceStore().getBoolean(PREFS_COLUMNAR_HISTORY));
         repository.startUp();
     }
 
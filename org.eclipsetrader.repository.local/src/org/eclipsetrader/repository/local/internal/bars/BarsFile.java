@@ -0,0 +1,585 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.repository.local.internal.bars;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.eclipsetrader.core.feed.BarSeries;
+import org.eclipsetrader.core.feed.IBarSeries;
+import org.eclipsetrader.core.feed.IOHLC;
+
+/**
+ * Append-only columnar file holding the bars of a single security at a single
+ * time span.
+ *
+ * <p>The file starts with a fixed size header followed by six column regions
+ * (time, open, high, low, close, volume), each one <code>capacity</code>
+ * elements long. New bars are written in place at the end of each column and
+ * only the header count is updated, the file is rewritten with a doubled
+ * capacity when it is full. Bars replaced at the end of the file, or replaced
+ * with the same number of bars, are also written in place. Reads go through a
+ * read-only memory mapping of the file, the mapping is released before the file
+ * is renamed or deleted.</p>
+ *
+ * <p>Missing prices are stored as <code>NaN</code> and missing volumes as
+ * <code>Long.MIN_VALUE</code>.</p>
+ */
+public class BarsFile {
+
+    public static final String EXTENSION = ".bars"; //$NON-NLS-1$
+
+    static final int MAGIC = 0x45544243;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int COLUMNS = 6;
+    static final int INITIAL_CAPACITY = 256;
+
+    static final int TIME = 0;
+    static final int OPEN = 1;
+    static final int HIGH = 2;
+    static final int LOW = 3;
+    static final int CLOSE = 4;
+    static final int VOLUME = 5;
+
+    static final long NULL_VOLUME = IBarSeries.NO_VOLUME;
+    static final long HOUR = 60L * 60L * 1000L;
+    static final long DAY = 24L * HOUR;
+
+    public static final Comparator<IOHLC> DATE_COMPARATOR = new Comparator<IOHLC>() {
+
+        @Override
+        public int compare(IOHLC o1, IOHLC o2) {
+            return o1.getDate().compareTo(o2.getDate());
+        }
+    };
+
+    private final File file;
+
+    private int size;
+    private int capacity;
+    private MappedByteBuffer buffer;
+    private Date[] days;
+
+    public BarsFile(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Returns the number of bars stored in the file.
+     *
+     * @return the number of bars.
+     */
+    public synchronized int size() throws IOException {
+        map();
+        return size;
+    }
+
+    public synchronized long getTime(int index) throws IOException {
+        map();
+        return buffer.getLong(position(TIME, index));
+    }
+
+    public synchronized long getFirstTime() throws IOException {
+        map();
+        return size != 0 ? buffer.getLong(position(TIME, 0)) : Long.MIN_VALUE;
+    }
+
+    public synchronized long getLastTime() throws IOException {
+        map();
+        return size != 0 ? buffer.getLong(position(TIME, size - 1)) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the index of the first bar with a time equal or greater than the
+     * given time, or <code>size()</code> if all bars are before it.
+     *
+     * @param time the time to search.
+     * @return the insertion index.
+     */
+    public synchronized int indexOf(long time) throws IOException {
+        map();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(position(TIME, mid)) < time) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads all bars stored in the file.
+     *
+     * @return the bars array, never <code>null</code>.
+     */
+    public synchronized IOHLC[] read() throws IOException {
+        map();
+        return read(0, size);
+    }
+
+    /**
+     * Reads the bars with a time within the given range, bounds included.
+     *
+     * @param first the first time, or <code>null</code> to read from the first bar.
+     * @param last the last time, or <code>null</code> to read up to the last bar.
+     * @return the bars array, never <code>null</code>.
+     */
+    public synchronized IOHLC[] read(Date first, Date last) throws IOException {
+        int from = first != null ? indexOf(first.getTime()) : 0;
+        int to = last != null ? indexOf(last.getTime() + 1) : size();
+        return read(from, to);
+    }
+
+    synchronized IOHLC[] read(int from, int to) throws IOException {
+        return readSeries(from, to).toOHLC();
+    }
+
+    /**
+     * Reads all bars stored in the file as a primitive backed series.
+     *
+     * @return the bars series, never <code>null</code>.
+     */
+    public synchronized IBarSeries readSeries() throws IOException {
+        map();
+        return readSeries(0, size);
+    }
+
+    /**
+     * Reads the bars with a time within the given range, bounds included, as
+     * a primitive backed series.
+     *
+     * @param first the first time, or <code>null</code> to read from the first bar.
+     * @param last the last time, or <code>null</code> to read up to the last bar.
+     * @return the bars series, never <code>null</code>.
+     */
+    public synchronized IBarSeries readSeries(Date first, Date last) throws IOException {
+        int from = first != null ? indexOf(first.getTime()) : 0;
+        int to = last != null ? indexOf(last.getTime() + 1) : size();
+        return readSeries(from, to);
+    }
+
+    synchronized BarSeries readSeries(int from, int to) throws IOException {
+        map();
+
+        int length = Math.max(to - from, 0);
+        long[] time = new long[length];
+        double[] open = new double[length];
+        double[] high = new double[length];
+        double[] low = new double[length];
+        double[] close = new double[length];
+        long[] volume = new long[length];
+
+        if (length != 0) {
+            longColumn(TIME, from, length).get(time);
+            doubleColumn(OPEN, from, length).get(open);
+            doubleColumn(HIGH, from, length).get(high);
+            doubleColumn(LOW, from, length).get(low);
+            doubleColumn(CLOSE, from, length).get(close);
+            longColumn(VOLUME, from, length).get(volume);
+        }
+
+        return new BarSeries(time, open, high, low, close, volume);
+    }
+
+    /**
+     * Returns the distinct days, at midnight in the default time zone, that
+     * have at least one bar stored in the file.
+     *
+     * @return the days array, never <code>null</code>.
+     */
+    public synchronized Date[] getDays() throws IOException {
+        map();
+        if (days != null) {
+            return days.clone();
+        }
+
+        // Jumps to the first bar of each day with a binary search, the search starts one hour
+        // before the local midnight so a daylight saving change can't skip a day
+        TimeZone timeZone = TimeZone.getDefault();
+        List<Date> l = new ArrayList<Date>();
+        long lastDay = Long.MIN_VALUE;
+        int index = 0;
+        while (index < size) {
+            long time = buffer.getLong(position(TIME, index));
+            int timeOffset = timeZone.getOffset(time);
+            long localTime = time + timeOffset;
+            long day = localTime >= 0 ? localTime / DAY : (localTime - DAY + 1) / DAY;
+            if (day != lastDay) {
+                l.add(new Date(day * DAY - timeOffset));
+                lastDay = day;
+            }
+            index = Math.max(index + 1, indexOf((day + 1) * DAY - timeOffset - HOUR));
+        }
+        days = l.toArray(new Date[l.size()]);
+
+        return days.clone();
+    }
+
+    /**
+     * Stores the given sorted bars replacing the file content. If the stored
+     * bars are a prefix of the new bars, only the tail is appended.
+     *
+     * @param bars the bars to write.
+     */
+    public synchronized void write(IOHLC[] bars) throws IOException {
+        map();
+        if (size != 0 && bars.length >= size) {
+            int index = 0;
+            while (index < size && isSame(index, bars[index])) {
+                index++;
+            }
+            if (index == size) {
+                append(bars, size, bars.length - size);
+                return;
+            }
+        }
+        rewrite(null, 0, bars, 0, bars.length, null, 0);
+    }
+
+    /**
+     * Writes the given sorted bars over the stored bars with the same time and
+     * appends the bars after the last stored bar, without rewriting the file.
+     *
+     * @param bars the changed and added bars.
+     * @return <code>true</code> if the bars were written, <code>false</code> if a bar
+     * must be inserted between the stored bars and the file must be rewritten.
+     */
+    public synchronized boolean patch(IOHLC[] bars) throws IOException {
+        map();
+
+        int[] index = new int[bars.length];
+        int changed = 0;
+        while (changed < bars.length) {
+            long time = bars[changed].getDate().getTime();
+            int i = indexOf(time);
+            if (i == size) {
+                break;
+            }
+            if (buffer.getLong(position(TIME, i)) != time) {
+                return false;
+            }
+            index[changed++] = i;
+        }
+        for (int i = changed + 1; i < bars.length; i++) {
+            if (bars[i].getDate().getTime() <= bars[i - 1].getDate().getTime()) {
+                return false;
+            }
+        }
+
+        if (changed != 0) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+            try {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer value = ByteBuffer.allocate(8);
+                for (int i = 0; i < changed; i++) {
+                    for (int c = OPEN; c < COLUMNS; c++) {
+                        value.clear();
+                        putValue(value, c, bars[i]);
+                        value.flip();
+                        channel.write(value, offset(c, index[i]));
+                    }
+                }
+                channel.force(false);
+            } finally {
+                raf.close();
+            }
+            unmap();
+        }
+
+        append(bars, changed, bars.length - changed);
+        return true;
+    }
+
+    /**
+     * Replaces the bars with a time within the given range with the new bars,
+     * leaving the bars outside of the range untouched.
+     *
+     * @param first the first time of the range.
+     * @param last the last time of the range.
+     * @param bars the new bars, all within the range.
+     */
+    public synchronized void replace(Date first, Date last, IOHLC[] bars) throws IOException {
+        map();
+        int from = indexOf(first.getTime());
+        int to = indexOf(last.getTime() + 1);
+        if (from == size) {
+            append(bars, 0, bars.length);
+            return;
+        }
+        if (to == size && from + bars.length <= capacity) {
+            writeAt(from, bars, 0, bars.length, from + bars.length);
+            return;
+        }
+        if (to - from == bars.length) {
+            writeAt(from, bars, 0, bars.length, size);
+            return;
+        }
+        IOHLC[] head = read(0, from);
+        IOHLC[] tail = read(to, size);
+        rewrite(head, head.length, bars, 0, bars.length, tail, tail.length);
+    }
+
+    /**
+     * Releases the memory mapping of the file, the file is mapped again by the
+     * next read.
+     */
+    public synchronized void close() {
+        unmap();
+    }
+
+    public synchronized void delete() {
+        unmap();
+        size = capacity = 0;
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    protected void append(IOHLC[] bars, int from, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (size + length > capacity) {
+            IOHLC[] head = read(0, size);
+            rewrite(head, head.length, bars, from, length, null, 0);
+            return;
+        }
+        writeAt(size, bars, from, length, size + length);
+    }
+
+    /**
+     * Writes the bars in place starting at the given index and updates the header count.
+     */
+    private void writeAt(int index, IOHLC[] bars, int from, int length, int newSize) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+        try {
+            FileChannel channel = raf.getChannel();
+            if (length != 0) {
+                ByteBuffer column = ByteBuffer.allocate(length * 8);
+                for (int c = 0; c < COLUMNS; c++) {
+                    column.clear();
+                    for (int i = 0; i < length; i++) {
+                        putValue(column, c, bars[from + i]);
+                    }
+                    column.flip();
+                    channel.write(column, offset(c, index));
+                }
+                channel.force(false);
+            }
+
+            if (newSize != size) {
+                ByteBuffer header = ByteBuffer.allocate(4);
+                header.putInt(0, newSize);
+                channel.write(header, 8);
+                channel.force(false);
+            }
+        } finally {
+            raf.close();
+        }
+
+        unmap();
+    }
+
+    protected void rewrite(IOHLC[] head, int headLength, IOHLC[] bars, int from, int length, IOHLC[] tail, int tailLength) throws IOException {
+        int newSize = headLength + length + tailLength;
+        int newCapacity = Math.max(INITIAL_CAPACITY, capacity);
+        while (newCapacity < newSize) {
+            newCapacity *= 2;
+        }
+
+        File parentFile = file.getAbsoluteFile().getParentFile();
+        parentFile.mkdirs();
+        File tempFile = new File(parentFile, file.getName() + ".tmp"); //$NON-NLS-1$
+
+        RandomAccessFile raf = new RandomAccessFile(tempFile, "rw"); //$NON-NLS-1$
+        try {
+            raf.setLength(HEADER_SIZE + (long) COLUMNS * newCapacity * 8L);
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(newSize);
+            header.putInt(newCapacity);
+            header.flip();
+            channel.write(header, 0);
+
+            ByteBuffer column = ByteBuffer.allocate(newSize * 8);
+            for (int c = 0; c < COLUMNS; c++) {
+                column.clear();
+                for (int i = 0; i < headLength; i++) {
+                    putValue(column, c, head[i]);
+                }
+                for (int i = 0; i < length; i++) {
+                    putValue(column, c, bars[from + i]);
+                }
+                for (int i = 0; i < tailLength; i++) {
+                    putValue(column, c, tail[i]);
+                }
+                column.flip();
+                channel.write(column, HEADER_SIZE + (long) c * newCapacity * 8L);
+            }
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+
+        unmap();
+        if (!tempFile.renameTo(file)) {
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Unable to replace " + file); //$NON-NLS-1$
+            }
+        }
+    }
+
+    protected void map() throws IOException {
+        if (buffer != null) {
+            return;
+        }
+        if (!file.exists()) {
+            size = capacity = 0;
+            return;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mappedBuffer.getInt(0) != MAGIC || mappedBuffer.getInt(4) != VERSION) {
+                throw new IOException("Invalid bars file " + file); //$NON-NLS-1$
+            }
+            size = mappedBuffer.getInt(8);
+            capacity = mappedBuffer.getInt(12);
+            buffer = mappedBuffer;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Releases the memory mapping. The mapping would otherwise be released only when
+     * the buffer is garbage collected, preventing the file from being renamed or
+     * deleted on some platforms.
+     */
+    private void unmap() {
+        MappedByteBuffer mappedBuffer = buffer;
+        buffer = null;
+        days = null;
+        if (mappedBuffer == null) {
+            return;
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+            Field field = unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+            field.setAccessible(true);
+            invokeCleaner.invoke(field.get(null), mappedBuffer);
+            return;
+        } catch (Exception e) {
+            // Not available before Java 9, try with the buffer cleaner
+        }
+        try {
+            Method cleanerMethod = mappedBuffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(mappedBuffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner); //$NON-NLS-1$
+            }
+        } catch (Exception e) {
+            // Not supported, the mapping is released by the garbage collector
+        }
+    }
+
+    private long offset(int column, int index) {
+        return HEADER_SIZE + ((long) column * capacity + index) * 8L;
+    }
+
+    private int position(int column, int index) {
+        return (int) offset(column, index);
+    }
+
+    private LongBuffer longColumn(int column, int from, int length) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(position(column, from));
+        b.limit(position(column, from + length));
+        return b.slice().asLongBuffer();
+    }
+
+    private DoubleBuffer doubleColumn(int column, int from, int length) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(position(column, from));
+        b.limit(position(column, from + length));
+        return b.slice().asDoubleBuffer();
+    }
+
+    private boolean isSame(int index, IOHLC bar) {
+        if (buffer.getLong(position(TIME, index)) != bar.getDate().getTime()) {
+            return false;
+        }
+        return sameDouble(buffer.getDouble(position(OPEN, index)), bar.getOpen()) && sameDouble(buffer.getDouble(position(HIGH, index)), bar.getHigh()) && sameDouble(buffer.getDouble(position(LOW, index)), bar.getLow()) && sameDouble(buffer.getDouble(position(CLOSE, index)), bar.getClose()) && buffer.getLong(position(VOLUME, index)) == (bar.getVolume() != null ? bar.getVolume() : NULL_VOLUME);
+    }
+
+    private static boolean sameDouble(double value, Double other) {
+        return Double.doubleToLongBits(value) == Double.doubleToLongBits(other != null ? other : Double.NaN);
+    }
+
+    private static void putValue(ByteBuffer column, int c, IOHLC bar) {
+        switch (c) {
+            case TIME:
+                column.putLong(bar.getDate().getTime());
+                break;
+            case OPEN:
+                column.putDouble(bar.getOpen() != null ? bar.getOpen() : Double.NaN);
+                break;
+            case HIGH:
+                column.putDouble(bar.getHigh() != null ? bar.getHigh() : Double.NaN);
+                break;
+            case LOW:
+                column.putDouble(bar.getLow() != null ? bar.getLow() : Double.NaN);
+                break;
+            case CLOSE:
+                column.putDouble(bar.getClose() != null ? bar.getClose() : Double.NaN);
+                break;
+            case VOLUME:
+                column.putLong(bar.getVolume() != null ? bar.getVolume() : NULL_VOLUME);
+                break;
+        }
+    }
+}
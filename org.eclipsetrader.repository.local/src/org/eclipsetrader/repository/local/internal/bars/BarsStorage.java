@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.repository.local.internal.bars;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipsetrader.core.feed.ISplit;
+import org.eclipsetrader.core.feed.Split;
+import org.eclipsetrader.core.feed.TimeSpan;
+
+/**
+ * Columnar storage of the securities history.
+ *
+ * <p>Each security has its own folder, named after the security id, containing
+ * one <code>BarsFile</code> per time span (for example <code>1d.bars</code> or
+ * <code>1min.bars</code>) and a small <code>splits.dat</code> file. The
+ * folder is created atomically by the migrator, so its existence tells whether
+ * the security must be read from here or from the old XML tree.</p>
+ */
+public class BarsStorage {
+
+    public static final String FOLDER = ".bars"; //$NON-NLS-1$
+    public static final String SPLITS_FILE = "splits.dat"; //$NON-NLS-1$
+    public static final String MIGRATED_FILE = ".migrated"; //$NON-NLS-1$
+
+    private final File root;
+    private final Map<File, BarsFile> files = new HashMap<File, BarsFile>();
+
+    public BarsStorage(File root) {
+        this.root = root;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public File getFolder(Integer id) {
+        return new File(root, String.valueOf(id));
+    }
+
+    public boolean exists(Integer id) {
+        return getFolder(id).isDirectory();
+    }
+
+    /**
+     * Returns whether new data for the given security must be written here.
+     * Securities not yet converted keep being written to the XML tree until
+     * the migration is complete.
+     *
+     * @param id the security id.
+     * @return <code>true</code> if the security is stored here.
+     */
+    public boolean canWrite(Integer id) {
+        return exists(id) || isMigrated();
+    }
+
+    public boolean isMigrated() {
+        return new File(root, MIGRATED_FILE).exists();
+    }
+
+    public void setMigrated() throws IOException {
+        root.mkdirs();
+        new File(root, MIGRATED_FILE).createNewFile();
+    }
+
+    public BarsFile getBarsFile(Integer id, TimeSpan timeSpan) {
+        return getBarsFile(getFolder(id), timeSpan);
+    }
+
+    BarsFile getBarsFile(File folder, TimeSpan timeSpan) {
+        File file = new File(folder, timeSpan.toString() + BarsFile.EXTENSION);
+        synchronized (files) {
+            BarsFile barsFile = files.get(file);
+            if (barsFile == null) {
+                barsFile = new BarsFile(file);
+                files.put(file, barsFile);
+            }
+            return barsFile;
+        }
+    }
+
+    /**
+     * Returns the time spans stored for the given security.
+     *
+     * @param id the security id.
+     * @return the time spans, never <code>null</code>.
+     */
+    public TimeSpan[] getTimeSpans(Integer id) {
+        List<TimeSpan> l = new ArrayList<TimeSpan>();
+        File[] childFiles = getFolder(id).listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.isFile() && pathname.getName().endsWith(BarsFile.EXTENSION);
+            }
+        });
+        if (childFiles != null) {
+            for (int i = 0; i < childFiles.length; i++) {
+                String name = childFiles[i].getName();
+                TimeSpan timeSpan = TimeSpan.fromString(name.substring(0, name.length() - BarsFile.EXTENSION.length()));
+                if (timeSpan != null) {
+                    l.add(timeSpan);
+                }
+            }
+        }
+        return l.toArray(new TimeSpan[l.size()]);
+    }
+
+    /**
+     * Returns the days having intraday bars stored for the given security.
+     *
+     * @param id the security id.
+     * @return the sorted days, never <code>null</code>.
+     */
+    public Date[] getIntradayDays(Integer id) throws IOException {
+        Set<Date> set = new TreeSet<Date>();
+        for (TimeSpan timeSpan : getTimeSpans(id)) {
+            if (timeSpan.getUnits() == TimeSpan.Units.Minutes) {
+                Date[] days = getBarsFile(id, timeSpan).getDays();
+                for (int i = 0; i < days.length; i++) {
+                    set.add(days[i]);
+                }
+            }
+        }
+        return set.toArray(new Date[set.size()]);
+    }
+
+    public ISplit[] readSplits(Integer id) throws IOException {
+        return readSplits(getFolder(id));
+    }
+
+    ISplit[] readSplits(File folder) throws IOException {
+        File file = new File(folder, SPLITS_FILE);
+        if (!file.exists()) {
+            return new ISplit[0];
+        }
+        DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            ISplit[] splits = new ISplit[is.readInt()];
+            for (int i = 0; i < splits.length; i++) {
+                splits[i] = new Split(new Date(is.readLong()), is.readDouble(), is.readDouble());
+            }
+            return splits;
+        } finally {
+            is.close();
+        }
+    }
+
+    public void writeSplits(Integer id, ISplit[] splits) throws IOException {
+        writeSplits(getFolder(id), splits);
+    }
+
+    void writeSplits(File folder, ISplit[] splits) throws IOException {
+        File file = new File(folder, SPLITS_FILE);
+        if (splits == null || splits.length == 0) {
+            if (file.exists()) {
+                file.delete();
+            }
+            return;
+        }
+        folder.mkdirs();
+        DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            os.writeInt(splits.length);
+            for (int i = 0; i < splits.length; i++) {
+                os.writeLong(splits[i].getDate().getTime());
+                os.writeDouble(splits[i].getOldQuantity());
+                os.writeDouble(splits[i].getNewQuantity());
+            }
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Deletes all data stored for the given security.
+     *
+     * @param id the security id.
+     */
+    public void delete(Integer id) {
+        deleteFolder(getFolder(id));
+    }
+
+    void deleteFolder(File folder) {
+        synchronized (files) {
+            File[] childFiles = folder.listFiles();
+            if (childFiles != null) {
+                for (int i = 0; i < childFiles.length; i++) {
+                    BarsFile barsFile = files.remove(childFiles[i]);
+                    if (barsFile != null) {
+                        barsFile.delete();
+                    }
+                    else {
+                        childFiles[i].delete();
+                    }
+                }
+            }
+            folder.delete();
+        }
+    }
+}
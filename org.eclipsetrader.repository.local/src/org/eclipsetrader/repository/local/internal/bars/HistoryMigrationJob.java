@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.repository.local.internal.bars;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipsetrader.core.PersistenceService;
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.repository.local.internal.Activator;
+import org.eclipsetrader.repository.local.internal.types.HistoryDayType;
+import org.eclipsetrader.repository.local.internal.types.HistoryType;
+
+/**
+ * One-shot conversion of the XML history tree to the columnar storage.
+ *
+ * <p>Each security is converted into a temporary folder that is renamed once
+ * complete, securities that already have a columnar folder are skipped, so
+ * an interrupted migration can be safely restarted. The XML files are left
+ * in place and keep being served by the fallback readers until the security
+ * is converted. The migration is marked as complete only once all securities
+ * are converted, otherwise the job runs again at the next start.</p>
+ */
+public class HistoryMigrationJob extends Job {
+
+    private final File historyFolder;
+    private final BarsStorage storage;
+
+    public HistoryMigrationJob(File historyFolder, BarsStorage storage, ISchedulingRule rule) {
+        super("History Migration");
+        this.historyFolder = historyFolder;
+        this.storage = storage;
+        setRule(rule);
+        setSystem(true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+     */
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        List<IStatus> results = new ArrayList<IStatus>();
+
+        Integer[] ids = getSecurityIds();
+        monitor.beginTask(getName(), ids.length);
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                if (!storage.exists(ids[i])) {
+                    try {
+                        migrate(ids[i]);
+                    } catch (Exception e) {
+                        Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error migrating history of security " + ids[i], e); //$NON-NLS-1$
+                        results.add(status);
+                    }
+                }
+                monitor.worked(1);
+            }
+
+            // Securities that failed keep being read from and written to the XML tree
+            // until a later run converts them
+            if (results.size() == 0) {
+                storage.setMigrated();
+            }
+        } catch (Exception e) {
+            Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error migrating history", e); //$NON-NLS-1$
+            results.add(status);
+        } finally {
+            monitor.done();
+        }
+
+        if (results.size() != 0) {
+            return new MultiStatus(Activator.PLUGIN_ID, 0, results.toArray(new IStatus[results.size()]), "Error migrating history", null); //$NON-NLS-1$
+        }
+        return Status.OK_STATUS;
+    }
+
+    protected Integer[] getSecurityIds() {
+        Set<Integer> set = new TreeSet<Integer>();
+        String[] names = historyFolder.list();
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i];
+                if (name.endsWith(".xml")) { //$NON-NLS-1$
+                    name = name.substring(0, name.length() - 4);
+                }
+                else if (name.startsWith(".")) { //$NON-NLS-1$
+                    name = name.substring(1);
+                }
+                try {
+                    set.add(Integer.valueOf(name));
+                } catch (NumberFormatException e) {
+                    // Not a security history, do nothing
+                }
+            }
+        }
+        return set.toArray(new Integer[set.size()]);
+    }
+
+    protected void migrate(Integer id) throws Exception {
+        File tempFolder = new File(storage.getRoot(), String.valueOf(id) + ".tmp"); //$NON-NLS-1$
+        if (tempFolder.exists()) {
+            storage.deleteFolder(tempFolder);
+        }
+        tempFolder.mkdirs();
+
+        File file = new File(historyFolder, String.valueOf(id) + ".xml"); //$NON-NLS-1$
+        if (file.exists()) {
+            HistoryType historyType = PersistenceService.getInstance().unmarshal(HistoryType.class, file);
+            IOHLC[] bars = sort(historyType.toArray());
+            BarsFile barsFile = new BarsFile(new File(tempFolder, TimeSpan.days(1).toString() + BarsFile.EXTENSION));
+            barsFile.write(bars);
+            barsFile.close();
+            storage.writeSplits(tempFolder, historyType.getSplits());
+        }
+
+        File intradayFolder = new File(historyFolder, "." + String.valueOf(id)); //$NON-NLS-1$
+        File[] childFiles = intradayFolder.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.isFile() && pathname.getName().endsWith(".xml"); //$NON-NLS-1$
+            }
+        });
+        if (childFiles != null) {
+            Arrays.sort(childFiles);
+
+            DateFormat dateFormat = new SimpleDateFormat("yyyyMMdd"); //$NON-NLS-1$
+            Calendar c = Calendar.getInstance();
+
+            for (int i = 0; i < childFiles.length; i++) {
+                String name = childFiles[i].getName();
+                Date date;
+                try {
+                    date = dateFormat.parse(name.substring(0, name.length() - 4));
+                } catch (ParseException e) {
+                    continue;
+                }
+                c.setTime(date);
+                c.add(Calendar.DATE, 1);
+                Date last = new Date(c.getTimeInMillis() - 1);
+
+                HistoryDayType dayType = PersistenceService.getInstance().unmarshal(HistoryDayType.class, childFiles[i]);
+                for (HistoryType type : dayType.getPeriods()) {
+                    IOHLC[] bars = sort(type.toArray());
+                    BarsFile barsFile = new BarsFile(new File(tempFolder, type.getPeriod().toString() + BarsFile.EXTENSION));
+                    barsFile.replace(date, last, bars);
+                    barsFile.close();
+                }
+            }
+        }
+
+        if (!tempFolder.renameTo(storage.getFolder(id))) {
+            throw new Exception("Unable to rename " + tempFolder); //$NON-NLS-1$
+        }
+    }
+
+    private IOHLC[] sort(IOHLC[] bars) {
+        IOHLC[] result = new IOHLC[bars.length];
+        System.arraycopy(bars, 0, result, 0, bars.length);
+        Arrays.sort(result, BarsFile.DATE_COMPARATOR);
+        return result;
+    }
+}
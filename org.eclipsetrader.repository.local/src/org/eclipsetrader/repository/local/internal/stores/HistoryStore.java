@@ -13,7 +13,7 @@ package org.eclipsetrader.repository.local.internal.stores;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -27,21 +27,20 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.IPersistenceService;
+import org.eclipsetrader.core.PersistenceService;
 import org.eclipsetrader.core.feed.IHistory;
 import org.eclipsetrader.core.feed.IOHLC;
 import org.eclipsetrader.core.feed.ISplit;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.repositories.BarsDelta;
+import org.eclipsetrader.core.repositories.IHistoryStore;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
 import org.eclipsetrader.core.repositories.IRepository;
 import org.eclipsetrader.core.repositories.IRepositoryService;
@@ -50,11 +49,13 @@ import org.eclipsetrader.core.repositories.IStoreProperties;
 import org.eclipsetrader.core.repositories.StoreProperties;
 import org.eclipsetrader.repository.local.LocalRepository;
 import org.eclipsetrader.repository.local.internal.Activator;
+import org.eclipsetrader.repository.local.internal.bars.BarsFile;
+import org.eclipsetrader.repository.local.internal.bars.BarsStorage;
 import org.eclipsetrader.repository.local.internal.types.HistoryType;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
-public class HistoryStore implements IStore {
+public class HistoryStore implements IHistoryStore {
 
     private Integer id;
     private ISecurity security;
@@ -95,15 +96,54 @@ public class HistoryStore implements IStore {
         IOHLC[] bars = (IOHLC[]) properties.getProperty(IPropertyConstants.BARS);
         ISplit[] splits = (ISplit[]) properties.getProperty(IPropertyConstants.SPLITS);
 
+        BarsStorage storage = LocalRepository.getInstance().getBarsStorage();
+        if (storage != null && storage.canWrite(id)) {
+            try {
+                BarsFile barsFile = storage.getBarsFile(id, TimeSpan.days(1));
+                if (!writeDelta(barsFile, bars, (BarsDelta) properties.getProperty(IPropertyConstants.BARS_DELTA))) {
+                    barsFile.write(bars != null ? bars : new IOHLC[0]);
+                }
+                storage.writeSplits(id, splits);
+            } catch (IOException e) {
+                // Reports the failure to the caller, so the history keeps the previous bars as the delta reference
+                throw new RuntimeException("Error saving history", e); //$NON-NLS-1$
+            }
+            return;
+        }
+
         HistoryType historyType = new HistoryType(security, bars, splits, null);
         saveHistoryType(historyType);
     }
 
+    /**
+     * Writes only the bars changed since the last save, when the delta was
+     * computed against the bars stored in the given file.
+     *
+     * @return <code>true</code> if the delta was written.
+     */
+    boolean writeDelta(BarsFile barsFile, IOHLC[] bars, BarsDelta delta) throws IOException {
+        if (delta == null || delta.getStore() != this || bars == null || delta.getRemoved().length != 0) {
+            return false;
+        }
+        if (barsFile.size() + delta.getAdded().length != bars.length) {
+            return false;
+        }
+        if (delta.isEmpty()) {
+            return true;
+        }
+        return barsFile.patch(delta.getUpdated());
+    }
+
     /* (non-Javadoc)
      * @see org.eclipsetrader.core.repositories.IStore#delete(org.eclipse.core.runtime.IProgressMonitor)
      */
     @Override
     public void delete(IProgressMonitor monitor) throws CoreException {
+        BarsStorage storage = LocalRepository.getInstance().getBarsStorage();
+        if (storage != null) {
+            storage.delete(id);
+        }
+
         IPath path = LocalRepository.getInstance().getLocation().append(LocalRepository.SECURITIES_HISTORY_FILE);
         File file = path.append(String.valueOf(id) + ".xml").toFile();
         if (file.exists()) {
@@ -133,15 +173,30 @@ public class HistoryStore implements IStore {
      */
     @Override
     public IStore[] fetchChilds(IProgressMonitor monitor) {
+        return fetchChilds(null, null, monitor);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.repositories.IHistoryStore#fetchChilds(java.util.Date, java.util.Date, org.eclipse.core.runtime.IProgressMonitor)
+     */
+    @Override
+    public IStore[] fetchChilds(Date first, Date last, IProgressMonitor monitor) {
         DateFormat dateFormat = new SimpleDateFormat("yyyyMMdd");
 
+        BarsStorage storage = LocalRepository.getInstance().getBarsStorage();
+        if (storage != null && storage.exists(id)) {
+            return fetchColumnarChilds(storage, dateFormat, first, last);
+        }
+
         List<IStore> l = new ArrayList<IStore>();
 
         for (Iterator<WeakReference<IntradayHistoryStore>> iter = intradayStores.values().iterator(); iter.hasNext();) {
             WeakReference<IntradayHistoryStore> ref = iter.next();
             IntradayHistoryStore store = ref.get();
             if (store != null && store.getFile().exists()) {
-                l.add(store);
+                if (isInRange(store.getDate(), first, last)) {
+                    l.add(store);
+                }
             }
             else {
                 iter.remove();
@@ -163,6 +218,9 @@ public class HistoryStore implements IStore {
                 if (!intradayStores.containsKey(name)) {
                     try {
                         Date date = dateFormat.parse(name.substring(0, name.length() - 4));
+                        if (!isInRange(date, first, last)) {
+                            continue;
+                        }
                         IntradayHistoryStore store = new IntradayHistoryStore(id, security, date);
                         intradayStores.put(name, new WeakReference<IntradayHistoryStore>(store));
                         l.add(store);
@@ -176,6 +234,42 @@ public class HistoryStore implements IStore {
         return l.toArray(new IStore[l.size()]);
     }
 
+    protected IStore[] fetchColumnarChilds(BarsStorage storage, DateFormat dateFormat, Date first, Date last) {
+        List<IStore> l = new ArrayList<IStore>();
+
+        try {
+            Date[] days = storage.getIntradayDays(id);
+            for (int i = 0; i < days.length; i++) {
+                if (!isInRange(days[i], first, last)) {
+                    continue;
+                }
+                String name = dateFormat.format(days[i]) + ".xml";
+                WeakReference<IntradayHistoryStore> ref = intradayStores.get(name);
+                IntradayHistoryStore store = ref != null ? ref.get() : null;
+                if (store == null) {
+                    store = new IntradayHistoryStore(id, security, days[i]);
+                    intradayStores.put(name, new WeakReference<IntradayHistoryStore>(store));
+                }
+                l.add(store);
+            }
+        } catch (Exception e) {
+            Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error reading intraday history", e); //$NON-NLS-1$
+            Activator.log(status);
+        }
+
+        return l.toArray(new IStore[l.size()]);
+    }
+
+    static boolean isInRange(Date date, Date first, Date last) {
+        if (first != null && date.before(first)) {
+            return false;
+        }
+        if (last != null && date.after(last)) {
+            return false;
+        }
+        return true;
+    }
+
     /* (non-Javadoc)
      * @see org.eclipsetrader.core.repositories.IStore#createChild()
      */
@@ -213,23 +307,7 @@ public class HistoryStore implements IStore {
     @SuppressWarnings("unchecked")
     protected void marshal(Object object, Class clazz, File file) {
         try {
-            if (file.exists()) {
-                file.delete();
-            }
-            JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            marshaller.setEventHandler(new ValidationEventHandler() {
-
-                @Override
-                public boolean handleEvent(ValidationEvent event) {
-                    Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                    Activator.getDefault().getLog().log(status);
-                    return true;
-                }
-            });
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-            marshaller.marshal(object, new FileWriter(file));
+            PersistenceService.getInstance().marshal(object, clazz, file, IPersistenceService.COMPACT | IPersistenceService.GZIP);
         } catch (Exception e) {
             Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error saving securities", null); //$NON-NLS-1$
             Activator.getDefault().getLog().log(status);
@@ -12,11 +12,11 @@
 package org.eclipsetrader.repository.local.internal.stores;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -24,17 +24,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.IPersistenceService;
+import org.eclipsetrader.core.PersistenceService;
 import org.eclipsetrader.core.feed.IHistory;
 import org.eclipsetrader.core.feed.IOHLC;
 import org.eclipsetrader.core.feed.TimeSpan;
@@ -46,6 +42,7 @@ import org.eclipsetrader.core.repositories.IStoreProperties;
 import org.eclipsetrader.core.repositories.StoreProperties;
 import org.eclipsetrader.repository.local.LocalRepository;
 import org.eclipsetrader.repository.local.internal.Activator;
+import org.eclipsetrader.repository.local.internal.bars.BarsStorage;
 import org.eclipsetrader.repository.local.internal.types.HistoryDayType;
 import org.eclipsetrader.repository.local.internal.types.HistoryType;
 
@@ -93,6 +90,22 @@ public class IntradayHistoryStore implements IStore {
      */
     @Override
     public void delete(IProgressMonitor monitor) throws CoreException {
+        BarsStorage storage = getBarsStorage();
+        if (storage != null && storage.exists(id)) {
+            try {
+                for (TimeSpan timeSpan : storage.getTimeSpans(id)) {
+                    if (timeSpan.getUnits() == TimeSpan.Units.Minutes) {
+                        storage.getBarsFile(id, timeSpan).replace(date, getLastTime(), new IOHLC[0]);
+                    }
+                }
+            } catch (Exception e) {
+                Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error deleting history", e); //$NON-NLS-1$
+                Activator.log(status);
+            }
+            bars.clear();
+            return;
+        }
+
         File file = getFile();
         if (file.exists()) {
             file.delete();
@@ -109,6 +122,12 @@ public class IntradayHistoryStore implements IStore {
 
     protected void loadHistoryDayType() {
         if (dayType == null) {
+            BarsStorage storage = getBarsStorage();
+            if (storage != null && storage.exists(id)) {
+                loadBars(storage);
+                return;
+            }
+
             File file = getFile();
             if (file.exists()) {
                 dayType = (HistoryDayType) unmarshal(HistoryDayType.class, file);
@@ -126,6 +145,24 @@ public class IntradayHistoryStore implements IStore {
         }
     }
 
+    protected void loadBars(BarsStorage storage) {
+        dayType = new HistoryDayType(security, date);
+        try {
+            Date last = getLastTime();
+            for (TimeSpan timeSpan : storage.getTimeSpans(id)) {
+                if (timeSpan.getUnits() == TimeSpan.Units.Minutes && !bars.containsKey(timeSpan)) {
+                    IOHLC[] ohlc = storage.getBarsFile(id, timeSpan).read(date, last);
+                    if (ohlc.length != 0) {
+                        bars.put(timeSpan, ohlc);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error loading history", e); //$NON-NLS-1$
+            Activator.log(status);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.eclipsetrader.core.repositories.IStore#fetchProperties(org.eclipse.core.runtime.IProgressMonitor)
      */
@@ -137,8 +174,8 @@ public class IntradayHistoryStore implements IStore {
             public String[] getPropertyNames() {
                 loadHistoryDayType();
                 Set<String> s = new HashSet<String>(Arrays.asList(super.getPropertyNames()));
-                for (HistoryType type : dayType.getPeriods()) {
-                    s.add(type.getPeriod().toString());
+                for (TimeSpan timeSpan : bars.keySet()) {
+                    s.add(timeSpan.toString());
                 }
                 return s.toArray(new String[s.size()]);
             }
@@ -174,6 +211,30 @@ public class IntradayHistoryStore implements IStore {
         security = (ISecurity) properties.getProperty(IPropertyConstants.SECURITY);
         date = (Date) properties.getProperty(IPropertyConstants.BARS_DATE);
 
+        BarsStorage storage = getBarsStorage();
+        if (storage != null && storage.canWrite(id)) {
+            dayType = null;
+            loadHistoryDayType();
+            try {
+                Date last = getLastTime();
+                for (String name : properties.getPropertyNames()) {
+                    TimeSpan timeSpan = TimeSpan.fromString(name);
+                    if (timeSpan != null) {
+                        IOHLC[] ohlc = (IOHLC[]) properties.getProperty(name);
+                        if (ohlc == null) {
+                            ohlc = new IOHLC[0];
+                        }
+                        bars.put(timeSpan, ohlc);
+                        storage.getBarsFile(id, timeSpan).replace(date, last, ohlc);
+                    }
+                }
+            } catch (Exception e) {
+                Status status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, 0, "Error saving history", e); //$NON-NLS-1$
+                Activator.log(status);
+            }
+            return;
+        }
+
         loadHistoryDayType();
 
         for (String name : properties.getPropertyNames()) {
@@ -219,20 +280,7 @@ public class IntradayHistoryStore implements IStore {
     @SuppressWarnings("unchecked")
     protected Object unmarshal(Class clazz, File file) {
         try {
-            if (file.exists()) {
-                JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-                Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-                unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-                    @Override
-                    public boolean handleEvent(ValidationEvent event) {
-                        Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                        Activator.log(status);
-                        return true;
-                    }
-                });
-                return unmarshaller.unmarshal(file);
-            }
+            return PersistenceService.getInstance().unmarshal(clazz, file);
         } catch (Exception e) {
             Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error loading history", null); //$NON-NLS-1$
             Activator.log(status);
@@ -243,26 +291,28 @@ public class IntradayHistoryStore implements IStore {
     @SuppressWarnings("unchecked")
     protected void marshal(Object object, Class clazz, File file) {
         try {
-            if (file.exists()) {
-                file.delete();
-            }
-            JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            marshaller.setEventHandler(new ValidationEventHandler() {
-
-                @Override
-                public boolean handleEvent(ValidationEvent event) {
-                    return true;
-                }
-            });
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            marshaller.setProperty(Marshaller.JAXB_ENCODING, System.getProperty("file.encoding")); //$NON-NLS-1$
-            marshaller.marshal(object, new FileWriter(file));
+            PersistenceService.getInstance().marshal(object, clazz, file, IPersistenceService.COMPACT | IPersistenceService.GZIP);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    protected BarsStorage getBarsStorage() {
+        LocalRepository repository = LocalRepository.getInstance();
+        return repository != null ? repository.getBarsStorage() : null;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    protected Date getLastTime() {
+        Calendar c = Calendar.getInstance();
+        c.setTime(date);
+        c.add(Calendar.DATE, 1);
+        return new Date(c.getTimeInMillis() - 1);
+    }
+
     protected File getFile() {
         IPath path = LocalRepository.getInstance().getLocation().append(LocalRepository.SECURITIES_HISTORY_FILE).append("." + String.valueOf(id));
         path.toFile().mkdirs();
@@ -13,18 +13,16 @@ package org.eclipsetrader.repository.local.internal.stores;
 
 import java.io.File;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.PersistenceService;
+import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.repositories.IPropertyConstants;
 import org.eclipsetrader.core.repositories.StoreProperties;
 import org.eclipsetrader.repository.local.LocalRepository;
 import org.eclipsetrader.repository.local.internal.Activator;
+import org.eclipsetrader.repository.local.internal.bars.BarsStorage;
 import org.eclipsetrader.repository.local.internal.types.HistoryType;
 
 public class LazyStoreProperties extends StoreProperties {
@@ -42,6 +40,18 @@ public class LazyStoreProperties extends StoreProperties {
     public Object getProperty(String name) {
         if (IPropertyConstants.BARS.equals(name) || IPropertyConstants.SPLITS.equals(name)) {
             if (getProperties().get(name) == null) {
+                BarsStorage storage = LocalRepository.getInstance().getBarsStorage();
+                if (storage != null && storage.exists(id)) {
+                    try {
+                        getProperties().put(IPropertyConstants.BARS, storage.getBarsFile(id, TimeSpan.days(1)).read());
+                        getProperties().put(IPropertyConstants.SPLITS, storage.readSplits(id));
+                    } catch (Exception e) {
+                        Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error loading history", e); //$NON-NLS-1$
+                        Activator.getDefault().getLog().log(status);
+                    }
+                    return super.getProperty(name);
+                }
+
                 IPath path = LocalRepository.getInstance().getLocation().append(LocalRepository.SECURITIES_HISTORY_FILE);
                 path.toFile().mkdirs();
                 HistoryType historyType = (HistoryType) unmarshal(HistoryType.class, path.append(String.valueOf(id) + ".xml").toFile());
@@ -57,20 +67,7 @@ public class LazyStoreProperties extends StoreProperties {
     @SuppressWarnings("unchecked")
     protected Object unmarshal(Class clazz, File file) {
         try {
-            if (file.exists()) {
-                JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-                Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-                unmarshaller.setEventHandler(new ValidationEventHandler() {
-
-                    @Override
-                    public boolean handleEvent(ValidationEvent event) {
-                        Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error validating XML: " + event.getMessage(), null); //$NON-NLS-1$
-                        Activator.getDefault().getLog().log(status);
-                        return true;
-                    }
-                });
-                return unmarshaller.unmarshal(file);
-            }
+            return PersistenceService.getInstance().unmarshal(clazz, file);
         } catch (Exception e) {
             Status status = new Status(IStatus.WARNING, Activator.PLUGIN_ID, 0, "Error loading identifiers", null); //$NON-NLS-1$
             Activator.getDefault().getLog().log(status);
@@ -70,9 +70,9 @@ public class ADX extends IndicatorFunction {
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inHigh = Util.getValuesForField(values, OHLCField.High);
-        double[] inLow = Util.getValuesForField(values, OHLCField.Low);
-        double[] inClose = Util.getValuesForField(values, OHLCField.Close);
+        double[] inHigh = Util.getValuesForField(source, OHLCField.High);
+        double[] inLow = Util.getValuesForField(source, OHLCField.Low);
+        double[] inClose = Util.getValuesForField(source, OHLCField.Close);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -76,7 +76,7 @@ public class APO extends IndicatorFunction {
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inReal = Util.getValuesForField(values, field);
+        double[] inReal = Util.getValuesForField(source, field);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -70,8 +70,8 @@ public class AROOND extends IndicatorFunction {
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inHigh = Util.getValuesForField(values, OHLCField.High);
-        double[] inLow = Util.getValuesForField(values, OHLCField.Low);
+        double[] inHigh = Util.getValuesForField(source, OHLCField.High);
+        double[] inLow = Util.getValuesForField(source, OHLCField.Low);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -11,11 +11,14 @@
 
 package org.eclipsetrader.core.ats.javascript;
 
+import java.util.Arrays;
+
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipsetrader.core.ats.engines.BarsDataSeriesFunction;
 import org.eclipsetrader.core.ats.engines.IndicatorFunction;
 import org.eclipsetrader.core.ats.engines.JavaScriptEngineInstrument;
-import org.eclipsetrader.core.charts.NumericDataSeries;
+import org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction;
+import org.eclipsetrader.core.feed.IBar;
 import org.eclipsetrader.ui.charts.OHLCField;
 import org.eclipsetrader.ui.internal.charts.Util;
 import org.eclipsetrader.ui.internal.charts.indicators.Activator;
@@ -26,17 +29,20 @@ import org.mozilla.javascript.ScriptableObject;
 import com.tictactec.ta.lib.Core;
 import com.tictactec.ta.lib.MInteger;
 
-public class ATR extends IndicatorFunction {
+public class ATR extends StreamingIndicatorFunction {
 
     private static final long serialVersionUID = -9191442400382251716L;
 
     private int period;
+    private int count;
+    private double previousClose;
+    private double value;
 
     public ATR() {
     }
 
     public ATR(BarsDataSeriesFunction bars, int period) {
-        super(bars);
+        super(bars, String.format("ATR%d", period)); //$NON-NLS-1$
         this.period = period;
         calculate();
     }
@@ -54,25 +60,78 @@ public class ATR extends IndicatorFunction {
     }
 
     /* (non-Javadoc)
-     * @see org.eclipsetrader.core.ats.javascript.IndicatorFunction#calculate()
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#reset()
+     */
+    @Override
+    protected void reset() {
+        count = 0;
+        value = 0.0;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#update(org.eclipsetrader.core.feed.IBar)
+     */
+    @Override
+    protected double update(IBar bar) {
+        if (period < 1) {
+            return Double.NaN;
+        }
+
+        int index = count++;
+        if (index == 0) {
+            previousClose = bar.getClose();
+            return Double.NaN;
+        }
+
+        double high = bar.getHigh();
+        double low = bar.getLow();
+        double trueRange = high - low;
+        if (Math.abs(previousClose - high) > trueRange) {
+            trueRange = Math.abs(previousClose - high);
+        }
+        if (Math.abs(previousClose - low) > trueRange) {
+            trueRange = Math.abs(previousClose - low);
+        }
+        previousClose = bar.getClose();
+
+        if (period == 1) {
+            return trueRange;
+        }
+
+        if (index < period) {
+            value += trueRange;
+            return Double.NaN;
+        }
+        if (index == period) {
+            value = (value + trueRange) / period;
+        }
+        else {
+            value *= period - 1;
+            value += trueRange;
+            value /= period;
+        }
+        return value;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#calculateBatch()
      */
     @Override
-    protected void calculate() {
+    protected double[] calculateBatch() {
         IAdaptable[] values = source.getValues();
 
         Core core = Activator.getDefault() != null ? Activator.getDefault().getCore() : new Core();
 
         int lookback = core.atrLookback(period);
-        if (values.length < lookback) {
-            series = new NumericDataSeries(String.format("%s%d", getClassName(), period), new Number[0], source); //$NON-NLS-1$
-            return;
+        if (lookback < 0 || values.length <= lookback) {
+            return new double[0];
         }
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inHigh = Util.getValuesForField(values, OHLCField.High);
-        double[] inLow = Util.getValuesForField(values, OHLCField.Low);
-        double[] inClose = Util.getValuesForField(values, OHLCField.Close);
+        double[] inHigh = Util.getValuesForField(source, OHLCField.High);
+        double[] inLow = Util.getValuesForField(source, OHLCField.Low);
+        double[] inClose = Util.getValuesForField(source, OHLCField.Close);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -80,7 +139,7 @@ public class ATR extends IndicatorFunction {
 
         core.atr(startIdx, endIdx, inHigh, inLow, inClose, period, outBegIdx, outNbElement, outReal);
 
-        series = new NumericDataSeries(String.format("%s%d", getClassName(), period), outReal, source); //$NON-NLS-1$
+        return Arrays.copyOf(outReal, outNbElement.value);
     }
 
     /* (non-Javadoc)
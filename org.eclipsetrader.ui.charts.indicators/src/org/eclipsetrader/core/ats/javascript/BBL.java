@@ -11,11 +11,14 @@
 
 package org.eclipsetrader.core.ats.javascript;
 
+import java.util.Arrays;
+
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipsetrader.core.ats.engines.BarsDataSeriesFunction;
 import org.eclipsetrader.core.ats.engines.IndicatorFunction;
 import org.eclipsetrader.core.ats.engines.JavaScriptEngineInstrument;
-import org.eclipsetrader.core.charts.NumericDataSeries;
+import org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction;
+import org.eclipsetrader.core.feed.IBar;
 import org.eclipsetrader.ui.charts.MAType;
 import org.eclipsetrader.ui.charts.OHLCField;
 import org.eclipsetrader.ui.internal.charts.Util;
@@ -27,7 +30,7 @@ import org.mozilla.javascript.ScriptableObject;
 import com.tictactec.ta.lib.Core;
 import com.tictactec.ta.lib.MInteger;
 
-public class BBL extends IndicatorFunction {
+public class BBL extends StreamingIndicatorFunction {
 
     private static final long serialVersionUID = -9191442400382251716L;
 
@@ -35,14 +38,16 @@ public class BBL extends IndicatorFunction {
     private int period;
     private double deviation;
     private final MAType maType = MAType.SMA;
+    private BBandsState state;
 
     public BBL() {
     }
 
     public BBL(BarsDataSeriesFunction bars, int period, double deviation) {
-        super(bars);
+        super(bars, String.format("BBL%d", period)); //$NON-NLS-1$
         this.period = period;
         this.deviation = deviation;
+        this.state = new BBandsState(period, deviation);
         calculate();
     }
 
@@ -60,23 +65,38 @@ public class BBL extends IndicatorFunction {
     }
 
     /* (non-Javadoc)
-     * @see org.eclipsetrader.core.ats.javascript.IndicatorFunction#calculate()
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#reset()
+     */
+    @Override
+    protected void reset() {
+        state.reset();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#update(org.eclipsetrader.core.feed.IBar)
+     */
+    @Override
+    protected double update(IBar bar) {
+        return state.add(bar.getClose()) ? state.getLower() : Double.NaN;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#calculateBatch()
      */
     @Override
-    protected void calculate() {
+    protected double[] calculateBatch() {
         IAdaptable[] values = source.getValues();
 
         Core core = Activator.getDefault() != null ? Activator.getDefault().getCore() : new Core();
 
         int lookback = core.bbandsLookback(period, deviation, deviation, MAType.getTALib_MAType(maType));
-        if (values.length < lookback) {
-            series = new NumericDataSeries(String.format("%s%d", getClassName(), period), new Number[0], source); //$NON-NLS-1$
-            return;
+        if (lookback < 0 || values.length <= lookback) {
+            return new double[0];
         }
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inReal = Util.getValuesForField(values, field);
+        double[] inReal = Util.getValuesForField(source, field);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -86,7 +106,7 @@ public class BBL extends IndicatorFunction {
 
         core.bbands(startIdx, endIdx, inReal, period, deviation, deviation, MAType.getTALib_MAType(maType), outBegIdx, outNbElement, outUpper, outMiddle, outLower);
 
-        series = new NumericDataSeries(String.format("%s%d", getClassName(), period), outLower, source); //$NON-NLS-1$
+        return Arrays.copyOf(outLower, outNbElement.value);
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+package org.eclipsetrader.core.ats.javascript;
+
+/**
+ * Incremental bollinger bands with a simple moving average, matches the
+ * TA-Lib <code>BBANDS</code> function.
+ */
+class BBandsState {
+
+    private final int period;
+    private final double deviation;
+    private final double[] window;
+    private int count;
+    private double sum;
+    private double sum2;
+
+    private double middle;
+    private double band;
+
+    public BBandsState(int period, double deviation) {
+        this.period = period;
+        this.deviation = deviation;
+        this.window = new double[Math.max(period, 1)];
+    }
+
+    public void reset() {
+        count = 0;
+        sum = 0.0;
+        sum2 = 0.0;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the new value.
+     * @return <code>true</code> if the bands are available.
+     */
+    public boolean add(double value) {
+        if (period < 2) {
+            return false;
+        }
+
+        window[count % period] = value;
+        count++;
+
+        sum += value;
+        sum2 += value * value;
+        if (count < period) {
+            return false;
+        }
+
+        double oldest = window[count % period];
+
+        middle = sum / period;
+        sum -= oldest;
+
+        double mean2 = sum2 / period;
+        sum2 -= oldest * oldest;
+        mean2 -= middle * middle;
+
+        band = (mean2 < 0.00000001 ? 0.0 : Math.sqrt(mean2)) * deviation;
+
+        return true;
+    }
+
+    public double getUpper() {
+        return middle + band;
+    }
+
+    public double getMiddle() {
+        return middle;
+    }
+
+    public double getLower() {
+        return middle - band;
+    }
+}
@@ -11,11 +11,14 @@
 
 package org.eclipsetrader.core.ats.javascript;
 
+import java.util.Arrays;
+
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipsetrader.core.ats.engines.BarsDataSeriesFunction;
 import org.eclipsetrader.core.ats.engines.IndicatorFunction;
 import org.eclipsetrader.core.ats.engines.JavaScriptEngineInstrument;
-import org.eclipsetrader.core.charts.NumericDataSeries;
+import org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction;
+import org.eclipsetrader.core.feed.IBar;
 import org.eclipsetrader.ui.charts.MAType;
 import org.eclipsetrader.ui.charts.OHLCField;
 import org.eclipsetrader.ui.internal.charts.Util;
@@ -27,20 +30,22 @@ import org.mozilla.javascript.ScriptableObject;
 import com.tictactec.ta.lib.Core;
 import com.tictactec.ta.lib.MInteger;
 
-public class EMA extends IndicatorFunction {
+public class EMA extends StreamingIndicatorFunction {
 
     private static final long serialVersionUID = -9191442400382251716L;
 
     private final OHLCField field = OHLCField.Close;
     private int period;
     private final MAType type = MAType.EMA;
+    private EMAState state;
 
     public EMA() {
     }
 
     public EMA(BarsDataSeriesFunction bars, int period) {
-        super(bars);
+        super(bars, String.format("EMA%d", period)); //$NON-NLS-1$
         this.period = period;
+        this.state = new EMAState(period);
         calculate();
     }
 
@@ -57,23 +62,38 @@ public class EMA extends IndicatorFunction {
     }
 
     /* (non-Javadoc)
-     * @see org.eclipsetrader.core.ats.javascript.IndicatorFunction#calculate()
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#reset()
+     */
+    @Override
+    protected void reset() {
+        state.reset();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#update(org.eclipsetrader.core.feed.IBar)
+     */
+    @Override
+    protected double update(IBar bar) {
+        return state.add(bar.getClose());
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#calculateBatch()
      */
     @Override
-    protected void calculate() {
+    protected double[] calculateBatch() {
         IAdaptable[] values = source.getValues();
 
         Core core = Activator.getDefault() != null ? Activator.getDefault().getCore() : new Core();
 
         int lookback = core.movingAverageLookback(period, MAType.getTALib_MAType(type));
-        if (values.length >= lookback) {
-            series = new NumericDataSeries(String.format("%s%d", getClassName(), period), new Number[0], source); //$NON-NLS-1$
-            return;
+        if (lookback < 0 || values.length <= lookback) {
+            return new double[0];
         }
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inReal = Util.getValuesForField(values, field);
+        double[] inReal = Util.getValuesForField(source, field);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -81,7 +101,7 @@ public class EMA extends IndicatorFunction {
 
         core.movingAverage(startIdx, endIdx, inReal, period, MAType.getTALib_MAType(type), outBegIdx, outNbElement, outReal);
 
-        series = new NumericDataSeries(String.format("%s%d", getClassName(), period), outReal, source); //$NON-NLS-1$
+        return Arrays.copyOf(outReal, outNbElement.value);
     }
 
     /* (non-Javadoc)
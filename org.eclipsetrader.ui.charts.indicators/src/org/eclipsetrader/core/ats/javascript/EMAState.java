@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+package org.eclipsetrader.core.ats.javascript;
+
+/**
+ * Incremental exponential moving average, matches the TA-Lib <code>EMA</code>
+ * function with the default compatibility: the first value is the simple
+ * average of the first period values.
+ */
+class EMAState {
+
+    private final int period;
+    private final double k;
+    private int count;
+    private double value;
+
+    public EMAState(int period) {
+        this.period = period;
+        this.k = 2.0 / (period + 1);
+    }
+
+    public void reset() {
+        count = 0;
+        value = 0.0;
+    }
+
+    /**
+     * Adds a value to the average.
+     *
+     * @param value the new value.
+     * @return the average, or <code>NaN</code> if not enough values were added.
+     */
+    public double add(double value) {
+        if (period < 1) {
+            return Double.NaN;
+        }
+
+        count++;
+        if (count < period) {
+            this.value += value;
+            return Double.NaN;
+        }
+        if (count == period) {
+            this.value = (this.value + value) / period;
+        }
+        else {
+            this.value = (value - this.value) * k + this.value;
+        }
+        return this.value;
+    }
+}
@@ -11,11 +11,14 @@
 
 package org.eclipsetrader.core.ats.javascript;
 
+import java.util.Arrays;
+
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipsetrader.core.ats.engines.BarsDataSeriesFunction;
 import org.eclipsetrader.core.ats.engines.IndicatorFunction;
 import org.eclipsetrader.core.ats.engines.JavaScriptEngineInstrument;
-import org.eclipsetrader.core.charts.NumericDataSeries;
+import org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction;
+import org.eclipsetrader.core.feed.IBar;
 import org.eclipsetrader.ui.charts.MAType;
 import org.eclipsetrader.ui.charts.OHLCField;
 import org.eclipsetrader.ui.internal.charts.Util;
@@ -27,7 +30,7 @@ import org.mozilla.javascript.ScriptableObject;
 import com.tictactec.ta.lib.Core;
 import com.tictactec.ta.lib.MInteger;
 
-public class MACD extends IndicatorFunction {
+public class MACD extends StreamingIndicatorFunction {
 
     private static final long serialVersionUID = -9191442400382251716L;
 
@@ -38,15 +41,17 @@ public class MACD extends IndicatorFunction {
     private MAType slowMaType = MAType.EMA;
     private int signalPeriod = 14;
     private MAType signalMaType = MAType.EMA;
+    private MACDState state;
 
     public MACD() {
     }
 
     public MACD(BarsDataSeriesFunction bars, int fastPeriod, int slowPeriod, int signalPeriod) {
-        super(bars);
+        super(bars, String.format("MACD%d/%d/%d", fastPeriod, slowPeriod, signalPeriod)); //$NON-NLS-1$
         this.fastPeriod = fastPeriod;
         this.slowPeriod = slowPeriod;
         this.signalPeriod = signalPeriod;
+        this.state = new MACDState(fastPeriod, slowPeriod, signalPeriod);
         calculate();
     }
 
@@ -65,23 +70,38 @@ public class MACD extends IndicatorFunction {
     }
 
     /* (non-Javadoc)
-     * @see org.eclipsetrader.core.ats.javascript.IndicatorFunction#calculate()
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#reset()
+     */
+    @Override
+    protected void reset() {
+        state.reset();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#update(org.eclipsetrader.core.feed.IBar)
+     */
+    @Override
+    protected double update(IBar bar) {
+        return state.add(bar.getClose()) ? state.getMACD() : Double.NaN;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#calculateBatch()
      */
     @Override
-    protected void calculate() {
+    protected double[] calculateBatch() {
         IAdaptable[] values = source.getValues();
 
         Core core = Activator.getDefault() != null ? Activator.getDefault().getCore() : new Core();
 
         int lookback = core.macdExtLookback(fastPeriod, MAType.getTALib_MAType(fastMaType), slowPeriod, MAType.getTALib_MAType(slowMaType), signalPeriod, MAType.getTALib_MAType(signalMaType));
-        if (values.length < lookback) {
-            series = new NumericDataSeries(String.format("%s%d/%d/%d", getClassName(), fastPeriod, slowPeriod, signalPeriod), new Number[0], source); //$NON-NLS-1$
-            return;
+        if (lookback < 0 || values.length <= lookback) {
+            return new double[0];
         }
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inReal = Util.getValuesForField(values, field);
+        double[] inReal = Util.getValuesForField(source, field);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -91,7 +111,7 @@ public class MACD extends IndicatorFunction {
 
         core.macdExt(startIdx, endIdx, inReal, fastPeriod, MAType.getTALib_MAType(fastMaType), slowPeriod, MAType.getTALib_MAType(slowMaType), signalPeriod, MAType.getTALib_MAType(signalMaType), outBegIdx, outNbElement, outMACD, outSignal, outMACDHist);
 
-        series = new NumericDataSeries(String.format("%s%d/%d/%d", getClassName(), fastPeriod, slowPeriod, signalPeriod), outMACD, source); //$NON-NLS-1$
+        return Arrays.copyOf(outMACD, outNbElement.value);
     }
 
     /* (non-Javadoc)
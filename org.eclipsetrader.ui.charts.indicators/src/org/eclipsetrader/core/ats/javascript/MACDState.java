@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+package org.eclipsetrader.core.ats.javascript;
+
+/**
+ * Incremental moving average convergence/divergence with exponential moving
+ * averages, matches the TA-Lib <code>MACDEXT</code> function.
+ *
+ * <p>As with TA-Lib, the fast average is seeded on the bars ending where the
+ * slow average starts, and the values are available only after the signal
+ * average starts.</p>
+ */
+class MACDState {
+
+    private final boolean valid;
+    private final int fastStart;
+    private final EMAState fast;
+    private final EMAState slow;
+    private final EMAState signal;
+    private int count;
+
+    private double macd;
+    private double macdSignal;
+
+    public MACDState(int fastPeriod, int slowPeriod, int signalPeriod) {
+        if (slowPeriod < fastPeriod) {
+            int temp = slowPeriod;
+            slowPeriod = fastPeriod;
+            fastPeriod = temp;
+        }
+        this.valid = fastPeriod >= 2 && slowPeriod >= 2 && signalPeriod >= 1;
+        this.fastStart = slowPeriod - fastPeriod;
+        this.fast = new EMAState(fastPeriod);
+        this.slow = new EMAState(slowPeriod);
+        this.signal = new EMAState(signalPeriod);
+    }
+
+    public void reset() {
+        fast.reset();
+        slow.reset();
+        signal.reset();
+        count = 0;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the new value.
+     * @return <code>true</code> if the MACD, signal and histogram values are available.
+     */
+    public boolean add(double value) {
+        if (!valid) {
+            return false;
+        }
+
+        double slowValue = slow.add(value);
+        double fastValue = count >= fastStart ? fast.add(value) : Double.NaN;
+        count++;
+
+        if (Double.isNaN(slowValue)) {
+            return false;
+        }
+
+        macd = fastValue - slowValue;
+        macdSignal = signal.add(macd);
+
+        return !Double.isNaN(macdSignal);
+    }
+
+    public double getMACD() {
+        return macd;
+    }
+
+    public double getSignal() {
+        return macdSignal;
+    }
+
+    public double getHistogram() {
+        return macd - macdSignal;
+    }
+}
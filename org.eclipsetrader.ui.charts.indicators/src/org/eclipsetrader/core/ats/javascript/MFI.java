@@ -70,10 +70,10 @@ public class MFI extends IndicatorFunction {
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inHigh = Util.getValuesForField(values, OHLCField.High);
-        double[] inLow = Util.getValuesForField(values, OHLCField.Low);
-        double[] inClose = Util.getValuesForField(values, OHLCField.Close);
-        double[] inVolume = Util.getValuesForField(values, OHLCField.Volume);
+        double[] inHigh = Util.getValuesForField(source, OHLCField.High);
+        double[] inLow = Util.getValuesForField(source, OHLCField.Low);
+        double[] inClose = Util.getValuesForField(source, OHLCField.Close);
+        double[] inVolume = Util.getValuesForField(source, OHLCField.Volume);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -67,8 +67,8 @@ public class OBV extends IndicatorFunction {
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inReal = Util.getValuesForField(values, field);
-        double[] inVolume = Util.getValuesForField(values, OHLCField.Volume);
+        double[] inReal = Util.getValuesForField(source, field);
+        double[] inVolume = Util.getValuesForField(source, OHLCField.Volume);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
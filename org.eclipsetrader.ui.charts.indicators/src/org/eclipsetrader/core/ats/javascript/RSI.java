@@ -11,11 +11,14 @@
 
 package org.eclipsetrader.core.ats.javascript;
 
+import java.util.Arrays;
+
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipsetrader.core.ats.engines.BarsDataSeriesFunction;
 import org.eclipsetrader.core.ats.engines.IndicatorFunction;
 import org.eclipsetrader.core.ats.engines.JavaScriptEngineInstrument;
-import org.eclipsetrader.core.charts.NumericDataSeries;
+import org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction;
+import org.eclipsetrader.core.feed.IBar;
 import org.eclipsetrader.ui.charts.OHLCField;
 import org.eclipsetrader.ui.internal.charts.Util;
 import org.eclipsetrader.ui.internal.charts.indicators.Activator;
@@ -26,18 +29,22 @@ import org.mozilla.javascript.ScriptableObject;
 import com.tictactec.ta.lib.Core;
 import com.tictactec.ta.lib.MInteger;
 
-public class RSI extends IndicatorFunction {
+public class RSI extends StreamingIndicatorFunction {
 
     private static final long serialVersionUID = -9191442400382251716L;
 
     private final OHLCField field = OHLCField.Close;
     private int period;
+    private int count;
+    private double previous;
+    private double gain;
+    private double loss;
 
     public RSI() {
     }
 
     public RSI(BarsDataSeriesFunction bars, int period) {
-        super(bars);
+        super(bars, String.format("RSI%d", period)); //$NON-NLS-1$
         this.period = period;
         calculate();
     }
@@ -55,23 +62,81 @@ public class RSI extends IndicatorFunction {
     }
 
     /* (non-Javadoc)
-     * @see org.eclipsetrader.core.ats.javascript.IndicatorFunction#calculate()
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#reset()
+     */
+    @Override
+    protected void reset() {
+        count = 0;
+        gain = 0.0;
+        loss = 0.0;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#update(org.eclipsetrader.core.feed.IBar)
+     */
+    @Override
+    protected double update(IBar bar) {
+        if (period < 2) {
+            return Double.NaN;
+        }
+
+        double value = bar.getClose();
+        int index = count++;
+        if (index == 0) {
+            previous = value;
+            return Double.NaN;
+        }
+
+        double diff = value - previous;
+        previous = value;
+
+        if (index <= period) {
+            if (diff < 0) {
+                loss -= diff;
+            }
+            else {
+                gain += diff;
+            }
+            if (index < period) {
+                return Double.NaN;
+            }
+            loss /= period;
+            gain /= period;
+        }
+        else {
+            loss *= period - 1;
+            gain *= period - 1;
+            if (diff < 0) {
+                loss -= diff;
+            }
+            else {
+                gain += diff;
+            }
+            loss /= period;
+            gain /= period;
+        }
+
+        double total = gain + loss;
+        return total > -0.00000001 && total < 0.00000001 ? 0.0 : 100.0 * (gain / total);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.ats.engines.StreamingIndicatorFunction#calculateBatch()
      */
     @Override
-    protected void calculate() {
+    protected double[] calculateBatch() {
         IAdaptable[] values = source.getValues();
 
         Core core = Activator.getDefault() != null ? Activator.getDefault().getCore() : new Core();
 
         int lookback = core.rsiLookback(period);
-        if (values.length < lookback) {
-            series = new NumericDataSeries(String.format("%s%d", getClassName(), period), new Number[0], source); //$NON-NLS-1$
-            return;
+        if (lookback < 0 || values.length <= lookback) {
+            return new double[0];
         }
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inReal = Util.getValuesForField(values, field);
+        double[] inReal = Util.getValuesForField(source, field);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -79,7 +144,7 @@ public class RSI extends IndicatorFunction {
 
         core.rsi(startIdx, endIdx, inReal, period, outBegIdx, outNbElement, outReal);
 
-        series = new NumericDataSeries(String.format("%s%d", getClassName(), period), outReal, source); //$NON-NLS-1$
+        return Arrays.copyOf(outReal, outNbElement.value);
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+package org.eclipsetrader.core.ats.javascript;
+
+/**
+ * Incremental simple moving average, matches the TA-Lib <code>SMA</code> function.
+ */
+class SMAState {
+
+    private final int period;
+    private final double[] window;
+    private int count;
+    private double sum;
+
+    public SMAState(int period) {
+        this.period = period;
+        this.window = new double[Math.max(period, 1)];
+    }
+
+    public void reset() {
+        count = 0;
+        sum = 0.0;
+    }
+
+    /**
+     * Adds a value to the average.
+     *
+     * @param value the new value.
+     * @return the average of the last values, or <code>NaN</code> if not enough values were added.
+     */
+    public double add(double value) {
+        if (period < 1) {
+            return Double.NaN;
+        }
+
+        window[count % period] = value;
+        count++;
+
+        sum += value;
+        if (count < period) {
+            return Double.NaN;
+        }
+
+        double result = sum / period;
+        sum -= window[count % period];
+        return result;
+    }
+}
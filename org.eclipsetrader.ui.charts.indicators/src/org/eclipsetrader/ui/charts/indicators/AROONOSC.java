@@ -139,8 +139,8 @@ public class AROONOSC implements IChartObjectFactory, IGeneralPropertiesAdapter,
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inHigh = Util.getValuesForField(values, OHLCField.High);
-        double[] inLow = Util.getValuesForField(values, OHLCField.Low);
+        double[] inHigh = Util.getValuesForField(source, OHLCField.High);
+        double[] inLow = Util.getValuesForField(source, OHLCField.Low);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -129,10 +129,10 @@ public class AVGPRICE implements IChartObjectFactory, IGeneralPropertiesAdapter,
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inOpen = Util.getValuesForField(values, OHLCField.Open);
-        double[] inHigh = Util.getValuesForField(values, OHLCField.High);
-        double[] inLow = Util.getValuesForField(values, OHLCField.Low);
-        double[] inClose = Util.getValuesForField(values, OHLCField.Close);
+        double[] inOpen = Util.getValuesForField(source, OHLCField.Open);
+        double[] inHigh = Util.getValuesForField(source, OHLCField.High);
+        double[] inLow = Util.getValuesForField(source, OHLCField.Low);
+        double[] inClose = Util.getValuesForField(source, OHLCField.Close);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
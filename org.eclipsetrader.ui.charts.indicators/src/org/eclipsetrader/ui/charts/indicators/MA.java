@@ -158,7 +158,7 @@ public class MA implements IChartObjectFactory, IGeneralPropertiesAdapter, ILine
 
         int startIdx = 0;
         int endIdx = values.length - 1;
-        double[] inReal = Util.getValuesForField(values, field);
+        double[] inReal = Util.getValuesForField(source, field);
 
         MInteger outBegIdx = new MInteger();
         MInteger outNbElement = new MInteger();
@@ -290,7 +290,7 @@ public class TREND implements IChartObjectFactory, IExecutableExtension {
             return null;
         }
 
-        double[] inReal = Util.getValuesForField(values, OHLCField.Close);
+        double[] inReal = Util.getValuesForField(source, OHLCField.Close);
 
         int numberPlotPoints = 0;
         double sumxx = 0;
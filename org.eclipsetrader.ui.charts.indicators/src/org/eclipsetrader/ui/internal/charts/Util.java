@@ -14,6 +14,8 @@ package org.eclipsetrader.ui.internal.charts;
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipsetrader.core.charts.IDataSeries;
+import org.eclipsetrader.core.charts.OHLCDataSeries;
+import org.eclipsetrader.core.feed.IBarSeries;
 import org.eclipsetrader.core.feed.IOHLC;
 import org.eclipsetrader.ui.charts.HistogramAreaChart;
 import org.eclipsetrader.ui.charts.HistogramBarChart;
@@ -120,6 +122,49 @@ public class Util {
         return inReal;
     }
 
+    /**
+     * Returns an array of values representing the field passed as argument.
+     * <p>The values are read from the bar series backing the data series, if any,
+     * otherwise from the adaptable values. The returned array may be shared with
+     * the data series and must not be modified.</p>
+     *
+     * @param source the data series to read.
+     * @param field the field to return.
+     * @return the array of values.
+     */
+    public static double[] getValuesForField(IDataSeries source, OHLCField field) {
+        IBarSeries series = source instanceof OHLCDataSeries ? ((OHLCDataSeries) source).getBarSeries() : null;
+        if (series != null) {
+            return getValuesForField(series, field);
+        }
+        return getValuesForField(source.getValues(), field);
+    }
+
+    /**
+     * Returns an array of values representing the field passed as argument.
+     * <p>Unlike the adaptable version, when the series spans its whole storage
+     * the returned array is shared with the series and must not be modified.</p>
+     *
+     * @param series the bar series to read.
+     * @param field the field to return.
+     * @return the array of values.
+     */
+    public static double[] getValuesForField(IBarSeries series, OHLCField field) {
+        switch (field) {
+            case Open:
+                return series.getValues(IBarSeries.OPEN);
+            case High:
+                return series.getValues(IBarSeries.HIGH);
+            case Low:
+                return series.getValues(IBarSeries.LOW);
+            case Close:
+                return series.getValues(IBarSeries.CLOSE);
+            case Volume:
+                return series.getValues(IBarSeries.VOLUME);
+        }
+        throw new IllegalArgumentException("Invalid field " + field); //$NON-NLS-1$
+    }
+
     public static IChartObject createLineChartObject(IDataSeries result, RenderStyle renderStyle, RGB color) {
         LineStyle lineStyle = LineStyle.Solid;
         switch (renderStyle) {
@@ -32,7 +32,10 @@ import org.eclipse.ui.IWorkbenchSite;
 import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.handlers.HandlerUtil;
 import org.eclipsetrader.core.ats.IScriptStrategy;
+import org.eclipsetrader.core.ats.simulation.SimulationReport;
 import org.eclipsetrader.core.ats.simulation.SimulationRunner;
+import org.eclipsetrader.core.ats.simulation.TickSimulationRunner;
+import org.eclipsetrader.core.internal.CoreActivator;
 import org.eclipsetrader.core.repositories.IRepositoryService;
 import org.eclipsetrader.ui.internal.UIActivator;
 import org.osgi.framework.BundleContext;
@@ -66,7 +69,7 @@ public class RunSimulationHandler extends AbstractHandler {
                     if (dlg.open() == Dialog.OK) {
                         Date begin = dlg.getBeginDate();
                         Date end = dlg.getEndDate();
-                        scheduleJob(strategy, begin, end);
+                        scheduleJob(strategy, begin, end, dlg.isReplayTicks());
                     }
                 }
             }
@@ -74,7 +77,7 @@ public class RunSimulationHandler extends AbstractHandler {
         return null;
     }
 
-    private void scheduleJob(final IScriptStrategy strategy, final Date begin, final Date end) {
+    private void scheduleJob(final IScriptStrategy strategy, final Date begin, final Date end, final boolean replayTicks) {
         String title = NLS.bind("{0} Simulation", new Object[] {
             strategy.getName()
         });
@@ -88,8 +91,18 @@ public class RunSimulationHandler extends AbstractHandler {
 
                 IRepositoryService repositoryService = bundleContext.getService(serviceReference);
                 try {
-                    final SimulationRunner runner = new SimulationRunner(repositoryService, strategy, begin, end);
-                    runner.runWithProgress(monitor);
+                    final SimulationReport report;
+                    if (replayTicks) {
+                        TickSimulationRunner runner = new TickSimulationRunner(repositoryService, strategy, begin, end);
+                        runner.addJournals(CoreActivator.getDefault().getTickJournalLocation());
+                        runner.runWithProgress(monitor);
+                        report = runner.getReport();
+                    }
+                    else {
+                        SimulationRunner runner = new SimulationRunner(repositoryService, strategy, begin, end);
+                        runner.runWithProgress(monitor);
+                        report = runner.getReport();
+                    }
 
                     Display.getDefault().asyncExec(new Runnable() {
 
@@ -97,7 +110,7 @@ public class RunSimulationHandler extends AbstractHandler {
                         public void run() {
                             try {
                                 ReportViewPart viewPart = (ReportViewPart) site.getPage().showView(ReportViewPart.VIEW_ID, UUID.randomUUID().toString(), IWorkbenchPage.VIEW_ACTIVATE);
-                                viewPart.setReport(runner.getReport());
+                                viewPart.setReport(report);
                             } catch (PartInitException e) {
                                 Status status = new Status(IStatus.ERROR, UIActivator.PLUGIN_ID, 0, "Error opening report view", e); //$NON-NLS-1$
                                 UIActivator.log(status);
@@ -22,6 +22,7 @@ import org.eclipse.nebula.widgets.cdatetime.CDateTime;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Label;
@@ -33,13 +34,16 @@ public class SimulationParametersDialog extends Dialog {
 
     public static final String K_BEGIN_DATE = "BEGIN_DATE";
     public static final String K_END_DATE = "END_DATE";
+    public static final String K_TICK_REPLAY = "TICK_REPLAY";
     public static final String TODAY = "Today";
 
     private CDateTime begin;
     private CDateTime end;
+    private Button tickReplay;
 
     private Date beginDate;
     private Date endDate;
+    private boolean replayTicks;
 
     private final IDialogSettings rootDialogSettings;
 
@@ -83,6 +87,10 @@ public class SimulationParametersDialog extends Dialog {
         end.setNullText(TODAY);
         end.setLayoutData(new GridData(convertHorizontalDLUsToPixels("gtk".equals(SWT.getPlatform()) ? 80 : 65), SWT.DEFAULT));
 
+        tickReplay = new Button(composite, SWT.CHECK);
+        tickReplay.setText("Replay the recorded ticks, or the intraday bars if not recorded");
+        tickReplay.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 4, 1));
+
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DATE, -30);
         begin.setSelection(calendar.getTime());
@@ -97,6 +105,7 @@ public class SimulationParametersDialog extends Dialog {
                 calendar.setTimeInMillis(dialogSettings.getLong(K_END_DATE));
                 end.setSelection(calendar.getTime());
             }
+            tickReplay.setSelection(dialogSettings.getBoolean(K_TICK_REPLAY));
         }
 
         return composite;
@@ -109,12 +118,14 @@ public class SimulationParametersDialog extends Dialog {
     protected void okPressed() {
         beginDate = begin.getSelection();
         endDate = end.getSelection();
+        replayTicks = tickReplay.getSelection();
 
         IDialogSettings dialogSettings = rootDialogSettings.getSection(getClass().getName());
         if (dialogSettings == null) {
             dialogSettings = rootDialogSettings.addNewSection(getClass().getName());
         }
         dialogSettings.put(K_BEGIN_DATE, beginDate.getTime());
+        dialogSettings.put(K_TICK_REPLAY, replayTicks);
         if (endDate == null) {
             dialogSettings.put(K_END_DATE, TODAY);
             endDate = Calendar.getInstance().getTime();
@@ -133,4 +144,8 @@ public class SimulationParametersDialog extends Dialog {
     public Date getEndDate() {
         return endDate;
     }
+
+    public boolean isReplayTicks() {
+        return replayTicks;
+    }
 }
@@ -11,17 +11,15 @@
 
 package org.eclipsetrader.ui.internal.charts;
 
+import java.io.File;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.core.internal.runtime.AdapterManager;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -31,32 +29,26 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.osgi.util.NLS;
-import org.eclipsetrader.core.feed.History;
-import org.eclipsetrader.core.feed.HistoryDay;
+import org.eclipsetrader.core.feed.BackfillCheckpoint;
+import org.eclipsetrader.core.feed.BackfillScheduler;
+import org.eclipsetrader.core.feed.HistoryBackfillTask;
 import org.eclipsetrader.core.feed.IBackfillConnector;
 import org.eclipsetrader.core.feed.IConnectorOverride;
-import org.eclipsetrader.core.feed.IDividend;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
-import org.eclipsetrader.core.feed.IHistory;
-import org.eclipsetrader.core.feed.IOHLC;
-import org.eclipsetrader.core.feed.ISplit;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.instruments.ISecurity;
-import org.eclipsetrader.core.instruments.Stock;
 import org.eclipsetrader.core.internal.CoreActivator;
 import org.eclipsetrader.core.markets.IMarket;
 import org.eclipsetrader.core.markets.IMarketService;
-import org.eclipsetrader.core.repositories.IRepository;
 import org.eclipsetrader.core.repositories.IRepositoryService;
-import org.eclipsetrader.core.repositories.IStoreObject;
 import org.eclipsetrader.ui.internal.UIActivator;
 
 @SuppressWarnings("restriction")
 public class DataImportJob extends Job {
 
-    public static final int FULL = 0;
-    public static final int INCREMENTAL = 1;
-    public static final int FULL_INCREMENTAL = 2;
+    public static final int FULL = HistoryBackfillTask.FULL;
+    public static final int INCREMENTAL = HistoryBackfillTask.INCREMENTAL;
+    public static final int FULL_INCREMENTAL = HistoryBackfillTask.FULL_INCREMENTAL;
 
     private ISecurity[] securities;
     private int mode;
@@ -100,26 +92,28 @@ public class DataImportJob extends Job {
         IBackfillConnector defaultBackfillConnector = CoreActivator.getDefault().getDefaultBackfillConnector();
         IBackfillConnector defaultIntradayBackfillConnector = CoreActivator.getDefault().getDefaultBackfillConnector();
 
+        // Each import with multiple securities gets its own checkpoint, so concurrent imports don't interfere
+        String signature = getSignature(filteredList);
+        File checkpointFile = null;
+        if (filteredList.length > 1) {
+            checkpointFile = UIActivator.getDefault().getStateLocation().append("backfill-" + Integer.toHexString(signature.hashCode()) + ".checkpoint").toFile(); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        BackfillScheduler scheduler = new BackfillScheduler();
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint(checkpointFile, signature);
+        scheduler.setCheckpoint(checkpoint);
+
         try {
+            checkpoint.load();
+
             IRepositoryService repositoryService = UIActivator.getDefault().getRepositoryService();
             IMarketService marketService = UIActivator.getDefault().getMarketService();
 
-            for (ISecurity security : filteredList) {
-                if (monitor.isCanceled()) {
-                    if (results.size() != 0) {
-                        return new MultiStatus(UIActivator.PLUGIN_ID, 0, results.toArray(new IStatus[results.size()]), Messages.DataImportJob_DownloadErrorMessage, null);
-                    }
-                    return Status.CANCEL_STATUS;
-                }
-
-                monitor.subTask(security.getName().replace("&", "&&")); //$NON-NLS-1$ //$NON-NLS-2$
+            Date defaultStartDate = getDefaultStartDate();
 
+            List<HistoryBackfillTask> tasks = new ArrayList<HistoryBackfillTask>();
+            for (ISecurity security : filteredList) {
                 try {
-                    IStoreObject storeObject = (IStoreObject) security.getAdapter(IStoreObject.class);
-                    IRepository defaultRepository = storeObject.getStore().getRepository();
-
-                    IFeedIdentifier identifier = (IFeedIdentifier) security.getAdapter(IFeedIdentifier.class);
-
                     IBackfillConnector backfillConnector = defaultBackfillConnector;
                     IBackfillConnector intradayBackfillConnector = defaultIntradayBackfillConnector;
 
@@ -140,166 +134,38 @@ public class DataImportJob extends Job {
                         }
                     }
 
-                    Date beginDate = fromDate;
-                    Date endDate = toDate;
-
-                    if (beginDate == null) {
-                        beginDate = getDefaultStartDate();
-                    }
-                    if (endDate == null) {
-                        endDate = new Date();
-                    }
-
-                    IHistory history = repositoryService.getHistoryFor(security);
-                    Map<Date, IOHLC> dailyDataMap = new HashMap<Date, IOHLC>(2048);
-
-                    if (history != null && mode != FULL) {
-                        for (IOHLC d : history.getOHLC()) {
-                            dailyDataMap.put(d.getDate(), d);
-                        }
-                        if (mode == INCREMENTAL) {
-                            if (history.getLast() != null) {
-                                beginDate = history.getLast().getDate();
-                            }
-                            endDate = Calendar.getInstance().getTime();
-                        }
-                    }
-
-                    Map<TimeSpan, IOHLC[]> dataMap = new HashMap<TimeSpan, IOHLC[]>();
+                    Date beginDate = fromDate != null ? fromDate : defaultStartDate;
+                    Date endDate = toDate != null ? toDate : new Date();
 
-                    for (TimeSpan currentTimeSpan : timeSpan) {
-                        if (monitor.isCanceled()) {
-                            if (results.size() != 0) {
-                                return new MultiStatus(UIActivator.PLUGIN_ID, 0, results.toArray(new IStatus[results.size()]), Messages.DataImportJob_DownloadErrorMessage, null);
-                            }
-                            return Status.CANCEL_STATUS;
-                        }
+                    tasks.add(new HistoryBackfillTask(security, backfillConnector, intradayBackfillConnector, mode, beginDate, endDate, timeSpan, repositoryService) {
 
-                        if (currentTimeSpan.equals(TimeSpan.days(1))) {
-                            IOHLC[] ohlc = backfillConnector.backfillHistory(identifier, beginDate, endDate, currentTimeSpan);
-                            if (ohlc != null && ohlc.length != 0) {
-                                dataMap.put(currentTimeSpan, ohlc);
-                            }
-                        }
-                        else if (intradayBackfillConnector.canBackfill(identifier, currentTimeSpan)) {
-                            IOHLC[] ohlc = intradayBackfillConnector.backfillHistory(identifier, beginDate, endDate, currentTimeSpan);
-                            if (ohlc != null && ohlc.length != 0) {
-                                dataMap.put(currentTimeSpan, ohlc);
-                            }
-                        }
-                        else {
-                            dataMap.put(currentTimeSpan, null);
+                        @Override
+                        public String getErrorMessage() {
+                            return Messages.DataImportJob_SecurityDownloadErrorMessage + getSecurity().getName();
                         }
 
-                        if (!dataMap.containsKey(currentTimeSpan)) {
-                            String message = NLS.bind(Messages.DataImportJob_DownloadDataErrorMessage, new Object[] {
-                                currentTimeSpan.toString(),
-                                security.getName()
+                        @Override
+                        protected String getDownloadErrorMessage(TimeSpan timeSpan) {
+                            return NLS.bind(Messages.DataImportJob_DownloadDataErrorMessage, new Object[] {
+                                timeSpan.toString(),
+                                getSecurity().getName()
                             });
-                            Status status = new Status(IStatus.ERROR, UIActivator.PLUGIN_ID, 0, message, null);
-                            results.add(status);
-                        }
-                    }
-
-                    if (dataMap.size() == timeSpan.length) {
-                        for (TimeSpan currentTimeSpan : dataMap.keySet()) {
-                            IOHLC[] ohlc = dataMap.get(currentTimeSpan);
-                            if (ohlc == null) {
-                                continue;
-                            }
-                            if (currentTimeSpan.equals(TimeSpan.days(1))) {
-                                for (IOHLC d : ohlc) {
-                                    dailyDataMap.put(d.getDate(), d);
-                                }
-                                ohlc = dailyDataMap.values().toArray(new IOHLC[dailyDataMap.values().size()]);
-
-                                if (history == null) {
-                                    history = new History(security, ohlc);
-                                }
-                                else if (history instanceof History) {
-                                    ((History) history).setOHLC(ohlc);
-                                }
-
-                                if (security instanceof Stock && history instanceof History) {
-                                    ISplit[] splits = backfillConnector.backfillSplits(identifier, beginDate, endDate);
-                                    if (splits != null && splits.length != 0) {
-                                        Map<Date, ISplit> splitsMap = new HashMap<Date, ISplit>();
-
-                                        ISplit[] currentSplits = history.getSplits();
-                                        if (currentSplits != null && mode != FULL) {
-                                            for (ISplit s : currentSplits) {
-                                                splitsMap.put(s.getDate(), s);
-                                            }
-                                        }
-
-                                        for (int i = 0; i < splits.length; i++) {
-                                            splitsMap.put(splits[i].getDate(), splits[i]);
-                                        }
-
-                                        Collection<ISplit> c = splitsMap.values();
-                                        ((History) history).setSplits(c.toArray(new ISplit[c.size()]));
-                                    }
-                                }
-
-                                repositoryService.saveAdaptable(new IHistory[] {
-                                    history
-                                }, defaultRepository);
-                            }
-                            else {
-                                if (history == null) {
-                                    history = new History(security, ohlc);
-                                    IHistory intradayHistory = history.getSubset(beginDate, endDate, currentTimeSpan);
-                                    if (intradayHistory instanceof HistoryDay) {
-                                        ((HistoryDay) intradayHistory).setOHLC(ohlc);
-                                    }
-                                    repositoryService.saveAdaptable(new IHistory[] {
-                                        history, intradayHistory
-                                    }, defaultRepository);
-                                }
-                                else {
-                                    IHistory intradayHistory = history.getSubset(beginDate, endDate, currentTimeSpan);
-                                    if (intradayHistory instanceof HistoryDay) {
-                                        ((HistoryDay) intradayHistory).setOHLC(ohlc);
-                                    }
-                                    repositoryService.saveAdaptable(new IHistory[] {
-                                        intradayHistory
-                                    }, defaultRepository);
-                                }
-                            }
                         }
-
-                        if (security instanceof Stock) {
-                            IDividend[] dividends = backfillConnector.backfillDividends(identifier, beginDate, endDate);
-                            if (dividends != null && dividends.length != 0) {
-                                Map<Date, IDividend> dividendsMap = new HashMap<Date, IDividend>();
-
-                                IDividend[] currentDividends = ((Stock) security).getDividends();
-                                if (currentDividends != null && mode != FULL) {
-                                    for (IDividend d : currentDividends) {
-                                        dividendsMap.put(d.getExDate(), d);
-                                    }
-                                }
-
-                                for (int i = 0; i < dividends.length; i++) {
-                                    dividendsMap.put(dividends[i].getExDate(), dividends[i]);
-                                }
-
-                                if (dividendsMap.size() != 0) {
-                                    ((Stock) security).setDividends(dividendsMap.values().toArray(new IDividend[dividendsMap.values().size()]));
-                                    repositoryService.saveAdaptable(new ISecurity[] {
-                                        security
-                                    });
-                                }
-                            }
-                        }
-                    }
+                    });
                 } catch (Exception e) {
                     Status status = new Status(IStatus.ERROR, UIActivator.PLUGIN_ID, 0, Messages.DataImportJob_SecurityDownloadErrorMessage + security.getName(), e);
                     results.add(status);
+                    monitor.worked(1);
                 }
+            }
 
-                monitor.worked(1);
+            results.addAll(scheduler.run(tasks, monitor));
+            checkpoint.clear();
+        } catch (InterruptedException e) {
+            if (results.size() != 0) {
+                return new MultiStatus(UIActivator.PLUGIN_ID, 0, results.toArray(new IStatus[results.size()]), Messages.DataImportJob_DownloadErrorMessage, null);
             }
+            return Status.CANCEL_STATUS;
         } catch (Exception e) {
             Status status = new Status(IStatus.ERROR, UIActivator.PLUGIN_ID, 0, Messages.DataImportJob_DataErrorMessage, e);
             results.add(status);
@@ -313,6 +179,32 @@ public class DataImportJob extends Job {
         return Status.OK_STATUS;
     }
 
+    /**
+     * Returns the signature of the import parameters. An interrupted import
+     * is resumed only by a job with the same parameters started on the same day.
+     *
+     * @param list the securities to import.
+     * @return the signature string.
+     */
+    String getSignature(ISecurity[] list) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(new SimpleDateFormat("yyyyMMdd").format(new Date())); //$NON-NLS-1$
+        sb.append(';').append(mode);
+        sb.append(';').append(fromDate != null ? String.valueOf(fromDate.getTime()) : ""); //$NON-NLS-1$
+        sb.append(';').append(toDate != null ? String.valueOf(toDate.getTime()) : ""); //$NON-NLS-1$
+        if (timeSpan != null) {
+            for (TimeSpan currentTimeSpan : timeSpan) {
+                sb.append(';').append(currentTimeSpan.toString());
+            }
+        }
+        int hashCode = 0;
+        for (ISecurity security : list) {
+            hashCode = 31 * hashCode + security.getName().hashCode();
+        }
+        sb.append(';').append(list.length).append(';').append(Integer.toHexString(hashCode));
+        return sb.toString();
+    }
+
     Date getDefaultStartDate() throws ParseException {
         int method = preferences.getInt(UIActivator.PREFS_INITIAL_BACKFILL_METHOD);
 
@@ -350,4 +242,5 @@ public class DataImportJob extends Job {
 
         return l.toArray(new ISecurity[l.size()]);
     }
+
 }
@@ -18,6 +18,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipsetrader.core.feed.IBarSeries;
 import org.eclipsetrader.core.feed.IHistory;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.feed.TimeSpan.Units;
@@ -76,11 +77,12 @@ public class ChartLoadJob extends Job {
             c.set(Calendar.MILLISECOND, 999);
 
             if (timeSpan.getUnits() == Units.Days) {
-                int index = history.getOHLC().length - timeSpan.getLength();
+                IBarSeries series = history.getBarSeries();
+                int index = series.size() - timeSpan.getLength();
                 if (index < 0) {
                     index = 0;
                 }
-                Date firstDate = history.getOHLC()[index].getDate();
+                Date firstDate = series.getDate(index);
                 subsetHistory = history.getSubset(firstDate, null, resolutionTimeSpan);
             }
             else {
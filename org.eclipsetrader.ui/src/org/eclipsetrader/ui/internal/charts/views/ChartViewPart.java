@@ -174,7 +174,7 @@ public class ChartViewPart extends ViewPart implements ISaveablePart {
         public void propertyChange(PropertyChangeEvent evt) {
             if (IPropertyConstants.BARS.equals(evt.getPropertyName())) {
                 TimeSpan resolution = TimeSpan.fromString(dialogSettings.get(K_RESOLUTION));
-                view.setRootDataSeries(new OHLCDataSeries(security.getName(), subsetHistory.getAdjustedOHLC(), resolution));
+                view.setRootDataSeries(new OHLCDataSeries(security.getName(), subsetHistory.getAdjustedBarSeries(), resolution));
                 Display.getDefault().asyncExec(new Runnable() {
 
                     @Override
@@ -656,7 +656,7 @@ public class ChartViewPart extends ViewPart implements ISaveablePart {
 
                 history = job.getHistory();
                 subsetHistory = job.getSubsetHistory();
-                view.setRootDataSeries(new OHLCDataSeries(security.getName(), subsetHistory.getAdjustedOHLC(), job.getResolutionTimeSpan()));
+                view.setRootDataSeries(new OHLCDataSeries(security.getName(), subsetHistory.getAdjustedBarSeries(), job.getResolutionTimeSpan()));
 
                 display.asyncExec(new Runnable() {
 
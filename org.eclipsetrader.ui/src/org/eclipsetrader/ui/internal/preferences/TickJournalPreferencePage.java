@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.ui.internal.preferences;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jface.preference.PreferencePage;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPreferencePage;
+import org.eclipse.ui.preferences.ScopedPreferenceStore;
+import org.eclipsetrader.core.internal.CoreActivator;
+import org.eclipsetrader.ui.internal.UIActivator;
+
+public class TickJournalPreferencePage extends PreferencePage implements IWorkbenchPreferencePage {
+
+    private Button enabled;
+
+    public TickJournalPreferencePage() {
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.ui.IWorkbenchPreferencePage#init(org.eclipse.ui.IWorkbench)
+     */
+    @Override
+    public void init(IWorkbench workbench) {
+        setPreferenceStore(new ScopedPreferenceStore(InstanceScope.INSTANCE, CoreActivator.PLUGIN_ID));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.jface.preference.PreferencePage#createContents(org.eclipse.swt.widgets.Composite)
+     */
+    @Override
+    protected Control createContents(Composite parent) {
+        Composite content = new Composite(parent, SWT.NONE);
+        GridLayout gridLayout = new GridLayout();
+        gridLayout.numColumns = 2;
+        gridLayout.marginWidth = gridLayout.marginHeight = 0;
+        content.setLayout(gridLayout);
+
+        enabled = new Button(content, SWT.CHECK);
+        enabled.setText("Record quote updates");
+        enabled.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
+
+        Label label = new Label(content, SWT.WRAP);
+        label.setText("The journal files are written to " + CoreActivator.getDefault().getTickJournalLocation() + " and can be played back with the Tick Replay connector.");
+        label.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+        ((GridData) label.getLayoutData()).widthHint = convertHorizontalDLUsToPixels(240);
+
+        enabled.setSelection(getPreferenceStore().getBoolean(CoreActivator.TICK_JOURNAL_ENABLED));
+
+        return content;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.jface.preference.PreferencePage#performDefaults()
+     */
+    @Override
+    protected void performDefaults() {
+        enabled.setSelection(getPreferenceStore().getDefaultBoolean(CoreActivator.TICK_JOURNAL_ENABLED));
+        super.performDefaults();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.jface.preference.PreferencePage#performOk()
+     */
+    @Override
+    public boolean performOk() {
+        performApply();
+        return super.performOk();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.jface.preference.PreferencePage#performApply()
+     */
+    @Override
+    protected void performApply() {
+        getPreferenceStore().setValue(CoreActivator.TICK_JOURNAL_ENABLED, enabled.getSelection());
+        try {
+            ((ScopedPreferenceStore) getPreferenceStore()).save();
+        } catch (IOException e) {
+            Status status = new Status(IStatus.ERROR, UIActivator.PLUGIN_ID, 0, "Error saving preferences", e); //$NON-NLS-1$
+            UIActivator.log(status);
+        }
+    }
+}
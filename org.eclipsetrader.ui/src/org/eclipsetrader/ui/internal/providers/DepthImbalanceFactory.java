@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.ui.internal.providers;
+
+import java.text.NumberFormat;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipsetrader.core.feed.IDepthMetrics;
+import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.markets.MarketPricingEnvironment;
+import org.eclipsetrader.core.views.IDataProvider;
+import org.eclipsetrader.core.views.IDataProviderFactory;
+
+public class DepthImbalanceFactory extends AbstractProviderFactory {
+
+    private NumberFormat formatter = NumberFormat.getInstance();
+
+    public class DataProvider implements IDataProvider {
+
+        private Set<ISecurity> securities = new HashSet<ISecurity>();
+
+        public DataProvider() {
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.views.IDataProvider#init(org.eclipse.core.runtime.IAdaptable)
+         */
+        @Override
+        public void init(IAdaptable adaptable) {
+            ISecurity security = (ISecurity) adaptable.getAdapter(ISecurity.class);
+            MarketPricingEnvironment pricingEnvironment = (MarketPricingEnvironment) adaptable.getAdapter(MarketPricingEnvironment.class);
+            if (security != null && pricingEnvironment != null && securities.add(security)) {
+                pricingEnvironment.addLevel2Security(security);
+            }
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.views.IDataProvider#getFactory()
+         */
+        @Override
+        public IDataProviderFactory getFactory() {
+            return DepthImbalanceFactory.this;
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.views.IDataProvider#getValue(org.eclipse.core.runtime.IAdaptable)
+         */
+        @Override
+        public IAdaptable getValue(IAdaptable adaptable) {
+            IDepthMetrics metrics = (IDepthMetrics) adaptable.getAdapter(IDepthMetrics.class);
+            if (metrics == null || Double.isNaN(metrics.getImbalance())) {
+                return null;
+            }
+            Double result = metrics.getImbalance() * 100.0;
+            return new NumberValue(result, (result > 0 ? "+" : "") + formatter.format(result) + "%");
+        }
+
+        /* (non-Javadoc)
+         * @see org.eclipsetrader.core.views.IDataProvider#dispose()
+         */
+        @Override
+        public void dispose() {
+            securities.clear();
+        }
+    }
+
+    public DepthImbalanceFactory() {
+        formatter.setGroupingUsed(true);
+        formatter.setMinimumIntegerDigits(1);
+        formatter.setMinimumFractionDigits(1);
+        formatter.setMaximumFractionDigits(1);
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.views.IDataProviderFactory#createProvider()
+     */
+    @Override
+    public IDataProvider createProvider() {
+        return new DataProvider();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipsetrader.core.views.IDataProviderFactory#getType()
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Class[] getType() {
+        return new Class[] {
+            Double.class, String.class,
+        };
+    }
+}
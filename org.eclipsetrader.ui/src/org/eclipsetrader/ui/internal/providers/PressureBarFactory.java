@@ -22,9 +22,11 @@ import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Display;
+import org.eclipsetrader.core.feed.DepthAnalyzer;
 import org.eclipsetrader.core.feed.IBook;
-import org.eclipsetrader.core.feed.IBookEntry;
+import org.eclipsetrader.core.feed.IDepthMetrics;
 import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.internal.CoreActivator;
 import org.eclipsetrader.core.markets.MarketPricingEnvironment;
 import org.eclipsetrader.core.views.IDataProvider;
 import org.eclipsetrader.core.views.IDataProviderFactory;
@@ -43,7 +45,8 @@ public class PressureBarFactory extends AbstractProviderFactory {
 
     private class Data {
 
-        IBook book;
+        IDepthMetrics metrics;
+        DepthAnalyzer analyzer;
         Image image;
         ImageDataValue value;
     }
@@ -104,10 +107,19 @@ public class PressureBarFactory extends AbstractProviderFactory {
                 return null;
             }
 
-            IBook newBook = (IBook) adaptable.getAdapter(IBook.class);
-            if (newBook != null && !newBook.equals(data.book)) {
-                buildValue(newBook, data.image);
-                data.book = newBook;
+            IDepthMetrics newMetrics = (IDepthMetrics) adaptable.getAdapter(IDepthMetrics.class);
+            if (newMetrics == null) {
+                IBook newBook = (IBook) adaptable.getAdapter(IBook.class);
+                if (newBook != null) {
+                    if (data.analyzer == null) {
+                        data.analyzer = CoreActivator.getDefault().createDepthAnalyzer();
+                    }
+                    newMetrics = data.analyzer.update(newBook);
+                }
+            }
+            if (newMetrics != null && !newMetrics.equals(data.metrics)) {
+                buildValue(newMetrics, data.image);
+                data.metrics = newMetrics;
                 data.value = new ImageDataValue(data.image.getImageData());
             }
 
@@ -160,36 +172,9 @@ public class PressureBarFactory extends AbstractProviderFactory {
         };
     }
 
-    protected void buildValue(IBook book, Image image) {
-        int level = 0;
-        double currentPrice = 0.0;
-
-        double bidPressure = 0L;
-        for (IBookEntry entry : book.getBidProposals()) {
-            if (currentPrice != entry.getPrice().doubleValue()) {
-                currentPrice = entry.getPrice().doubleValue();
-                level++;
-                if (level > 5) {
-                    break;
-                }
-            }
-            bidPressure += entry.getQuantity();
-        }
-
-        level = 0;
-        currentPrice = 0.0;
-
-        double askPressure = 0L;
-        for (IBookEntry entry : book.getAskProposals()) {
-            if (currentPrice != entry.getPrice().doubleValue()) {
-                currentPrice = entry.getPrice().doubleValue();
-                level++;
-                if (level > 5) {
-                    break;
-                }
-            }
-            askPressure += entry.getQuantity();
-        }
+    protected void buildValue(IDepthMetrics metrics, Image image) {
+        double bidPressure = metrics.getBidDepth();
+        double askPressure = metrics.getAskDepth();
 
         int bidPixels = (int) (bidPressure / (bidPressure + askPressure) * IMAGE_HALF_WIDTH);
         int askPixels = (int) (askPressure / (bidPressure + askPressure) * IMAGE_HALF_WIDTH);
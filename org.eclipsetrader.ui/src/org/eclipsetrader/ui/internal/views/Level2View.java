@@ -15,6 +15,7 @@ import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -57,8 +58,12 @@ import org.eclipse.ui.forms.events.IHyperlinkListener;
 import org.eclipse.ui.forms.widgets.ImageHyperlink;
 import org.eclipse.ui.handlers.IHandlerService;
 import org.eclipse.ui.part.ViewPart;
+import org.eclipsetrader.core.feed.BookDelta;
+import org.eclipsetrader.core.feed.BookSnapshot;
+import org.eclipsetrader.core.feed.DepthAnalyzer;
 import org.eclipsetrader.core.feed.IBook;
 import org.eclipsetrader.core.feed.IBookEntry;
+import org.eclipsetrader.core.feed.IDepthMetrics;
 import org.eclipsetrader.core.feed.IFeedConnector;
 import org.eclipsetrader.core.feed.IFeedConnector2;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
@@ -115,6 +120,12 @@ public class Level2View extends ViewPart {
     private ILastClose lastClose;
     private IBook lastBook;
     private IBook nextBook;
+    private BookChanges bidChanges = new BookChanges();
+    private BookChanges askChanges = new BookChanges();
+    private boolean bookRefresh;
+    private boolean bookUpdateScheduled;
+    private DepthAnalyzer depthAnalyzer = CoreActivator.getDefault().createDepthAnalyzer();
+    private IDepthMetrics lastMetrics;
 
     private Action showMarketMakerAction;
     private Action hideSummaryAction;
@@ -142,13 +153,22 @@ public class Level2View extends ViewPart {
 
         @Override
         public void run() {
+            bookUpdateScheduled = false;
             if (table == null || table.isDisposed()) {
                 return;
             }
             if (lastBook != nextBook) {
-                onBookUpdate(lastBook = nextBook);
+                if (bookRefresh) {
+                    onBookUpdate(nextBook);
+                }
+                else {
+                    onBookUpdate(nextBook, bidChanges, askChanges);
+                }
+                lastBook = nextBook;
+                bookRefresh = false;
+                bidChanges.clear();
+                askChanges.clear();
             }
-            Display.getDefault().timerExec(100, bookUpdateRunnable);
         }
     };
 
@@ -358,8 +378,6 @@ public class Level2View extends ViewPart {
                 update();
             }
         }
-
-        Display.getDefault().timerExec(100, bookUpdateRunnable);
     }
 
     /* (non-Javadoc)
@@ -629,17 +647,34 @@ public class Level2View extends ViewPart {
     }
 
     protected void onBookUpdate(IBook book) {
+        onBookUpdate(book, null, null);
+    }
+
+    /**
+     * Updates the table rows of the changed book levels.
+     *
+     * @param book the book to display.
+     * @param bidChanges the bid levels changed since the displayed book, or <code>null</code> to update all rows.
+     * @param askChanges the ask levels changed since the displayed book, or <code>null</code> to update all rows.
+     */
+    protected void onBookUpdate(IBook book, BookChanges bidChanges, BookChanges askChanges) {
         IBookEntry[] bidEntries = book.getBidProposals();
         IBookEntry[] askEntries = book.getAskProposals();
         int rows = Math.max(bidEntries.length, askEntries.length);
 
         table.setRedraw(false);
-        boolean doLayout = rows != table.getItemCount();
+        int existingRows = table.getItemCount();
+        boolean doLayout = rows != existingRows;
         try {
             for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
-                TableItem tableItem = rowIndex < table.getItemCount() ? table.getItem(rowIndex) : new TableItem(table, SWT.NONE);
-                updateBid(tableItem, rowIndex < bidEntries.length ? bidEntries[rowIndex] : null);
-                updateAsk(tableItem, rowIndex < askEntries.length ? askEntries[rowIndex] : null);
+                boolean newRow = rowIndex >= existingRows;
+                TableItem tableItem = newRow ? new TableItem(table, SWT.NONE) : table.getItem(rowIndex);
+                if (newRow || bidChanges == null || bidChanges.isChanged(rowIndex)) {
+                    updateBid(tableItem, rowIndex < bidEntries.length ? bidEntries[rowIndex] : null);
+                }
+                if (newRow || askChanges == null || askChanges.isChanged(rowIndex)) {
+                    updateAsk(tableItem, rowIndex < askEntries.length ? askEntries[rowIndex] : null);
+                }
             }
             while (table.getItemCount() > rows) {
                 table.getItem(table.getItemCount() - 1).dispose();
@@ -655,17 +690,72 @@ public class Level2View extends ViewPart {
             table.getParent().layout();
         }
 
-        long[] leftWeights = new long[Math.min(bidEntries.length, 5)];
-        for (int i = 0; i < leftWeights.length; i++) {
-            leftWeights[i] = bidEntries[i] != null && bidEntries[i].getQuantity() != null ? bidEntries[i].getQuantity() : 0;
+        updatePressure(depthAnalyzer.getMetrics());
+    }
+
+    /**
+     * Updates the pressure bar with the depth of the first book levels.
+     *
+     * @param metrics the metrics computed from the received books.
+     */
+    protected void updatePressure(IDepthMetrics metrics) {
+        if (metrics == null || metrics == lastMetrics) {
+            return;
         }
+        pressureBar.setWeights(metrics.getBidLevels(), metrics.getAskLevels());
+        lastMetrics = metrics;
+    }
+
+    /**
+     * Displays the given book replacing the current table content.
+     *
+     * @param book the book to display.
+     */
+    protected void showBook(IBook book) {
+        depthAnalyzer.update(book);
+        onBookUpdate(book);
+        lastBook = nextBook = book;
+        bookRefresh = false;
+        bidChanges.clear();
+        askChanges.clear();
+    }
 
-        long[] rightWeights = new long[Math.min(askEntries.length, 5)];
-        for (int i = 0; i < rightWeights.length; i++) {
-            rightWeights[i] = askEntries[i] != null && askEntries[i].getQuantity() != null ? askEntries[i].getQuantity() : 0;
+    /**
+     * Queues a book received from the subscription for display.
+     *
+     * <p>Book snapshots that follow the queued book carry the changed levels, so only
+     * the rows of those levels are updated, other books replace the whole table.
+     * Updates are coalesced and applied at most every 100 milliseconds.</p>
+     *
+     * @param book the received book.
+     */
+    protected void queueBookUpdate(IBook book) {
+        if (!bookRefresh && book instanceof BookSnapshot && nextBook instanceof BookSnapshot) {
+            BookSnapshot snapshot = (BookSnapshot) book;
+            BookDelta[] deltas = snapshot.getDeltas();
+            if (deltas != null && snapshot.getBaseVersion() == ((BookSnapshot) nextBook).getVersion()) {
+                for (int i = 0; i < deltas.length; i++) {
+                    if (deltas[i].getSide() == BookDelta.BID) {
+                        bidChanges.add(deltas[i]);
+                    }
+                    else {
+                        askChanges.add(deltas[i]);
+                    }
+                }
+            }
+            else {
+                bookRefresh = true;
+            }
+        }
+        else {
+            bookRefresh = true;
         }
+        nextBook = book;
 
-        pressureBar.setWeights(leftWeights, rightWeights);
+        if (!bookUpdateScheduled) {
+            bookUpdateScheduled = true;
+            Display.getDefault().timerExec(100, bookUpdateRunnable);
+        }
     }
 
     protected void onSetSymbol() {
@@ -690,7 +780,7 @@ public class Level2View extends ViewPart {
 
             IBook book = subscription.getBook();
             if (book != null) {
-                onBookUpdate(book);
+                showBook(book);
             }
 
             ISecurity security = getSecurityFromSymbol(symbol.getText());
@@ -727,7 +817,7 @@ public class Level2View extends ViewPart {
 
                 IBook book = subscription.getBook();
                 if (book != null) {
-                    onBookUpdate(book);
+                    showBook(book);
                 }
             }
         }
@@ -776,7 +866,7 @@ public class Level2View extends ViewPart {
 
                 IBook book = subscription.getBook();
                 if (book != null) {
-                    onBookUpdate(book);
+                    showBook(book);
                 }
             }
         }
@@ -785,6 +875,13 @@ public class Level2View extends ViewPart {
     }
 
     protected void onQuoteUpdate(final QuoteEvent event) {
+        QuoteDelta[] delta = event.getDelta();
+        for (int i = 0; i < delta.length; i++) {
+            if (delta[i].getNewValue() instanceof IBook) {
+                depthAnalyzer.update((IBook) delta[i].getNewValue());
+            }
+        }
+
         Display.getDefault().asyncExec(new Runnable() {
 
             @Override
@@ -796,7 +893,7 @@ public class Level2View extends ViewPart {
                 QuoteDelta[] delta = event.getDelta();
                 for (int i = 0; i < delta.length; i++) {
                     if (delta[i].getNewValue() instanceof IBook) {
-                        nextBook = (IBook) delta[i].getNewValue();
+                        queueBookUpdate((IBook) delta[i].getNewValue());
                     }
                     if (delta[i].getNewValue() instanceof ITrade) {
                         lastTrade = (ITrade) delta[i].getNewValue();
@@ -857,4 +954,32 @@ public class Level2View extends ViewPart {
 
         return security;
     }
+
+    /**
+     * Table rows of one side of the book changed since the displayed book.
+     */
+    protected static class BookChanges {
+
+        private BitSet updatedRows = new BitSet();
+        private int shiftedFrom = Integer.MAX_VALUE;
+
+        public void add(BookDelta delta) {
+            if (delta.getAction() == BookDelta.UPDATE) {
+                updatedRows.set(delta.getLevel());
+            }
+            else {
+                // Inserted and deleted levels shift all the rows below
+                shiftedFrom = Math.min(shiftedFrom, delta.getLevel());
+            }
+        }
+
+        public boolean isChanged(int row) {
+            return row >= shiftedFrom || updatedRows.get(row);
+        }
+
+        public void clear() {
+            updatedRows.clear();
+            shiftedFrom = Integer.MAX_VALUE;
+        }
+    }
 }
@@ -11,6 +11,8 @@
 
 package org.eclipsetrader.ui.internal.views;
 
+import java.util.Arrays;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
@@ -38,6 +40,9 @@ public class PressureBar {
 
     private int separatorWidth = 3;
 
+    private int[] bandWidths;
+    private int bandWidthsArea;
+
     PressureBar() {
     }
 
@@ -89,8 +94,12 @@ public class PressureBar {
     }
 
     public void setWeights(long[] leftWeights, long[] rightWeights) {
+        if (Arrays.equals(this.leftWeights, leftWeights) && Arrays.equals(this.rightWeights, rightWeights)) {
+            return;
+        }
         this.leftWeights = leftWeights;
         this.rightWeights = rightWeights;
+        this.bandWidths = null;
         canvas.redraw();
     }
 
@@ -100,7 +109,11 @@ public class PressureBar {
         if (leftWeights != null && rightWeights != null) {
             int x = 0;
             int index = 0;
-            int[] widths = getBandWidths(leftWeights, rightWeights, clientArea);
+            if (bandWidths == null || bandWidthsArea != clientArea.width) {
+                bandWidths = getBandWidths(leftWeights, rightWeights, clientArea);
+                bandWidthsArea = clientArea.width;
+            }
+            int[] widths = bandWidths;
 
             for (int i = leftWeights.length - 1; i >= 0; i--) {
                 e.gc.setBackground(bandColors[i]);
@@ -162,6 +175,7 @@ public class PressureBar {
 
     public void setSeparatorWidth(int separatorWidth) {
         this.separatorWidth = separatorWidth;
+        this.bandWidths = null;
         canvas.redraw();
     }
 }
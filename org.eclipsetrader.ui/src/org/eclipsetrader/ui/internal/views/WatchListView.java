@@ -76,6 +76,7 @@ import org.eclipse.ui.actions.ActionFactory;
 import org.eclipse.ui.part.ViewPart;
 import org.eclipse.ui.themes.ITheme;
 import org.eclipse.ui.themes.IThemeManager;
+import org.eclipsetrader.core.feed.AsyncPricingListener;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.markets.MarketPricingEnvironment;
 import org.eclipsetrader.core.repositories.IRepositoryRunnable;
@@ -300,6 +301,7 @@ public class WatchListView extends ViewPart implements ISaveablePart {
         preferenceStore = UIActivator.getDefault().getPreferenceStore();
 
         pricingEnvironment = new MarketPricingEnvironment(UIActivator.getDefault().getMarketService());
+        pricingEnvironment.setAsyncDispatch(AsyncPricingListener.Policy.CONFLATE, AsyncPricingListener.DEFAULT_CAPACITY);
 
         deleteAction = new Action("Delete") {
 
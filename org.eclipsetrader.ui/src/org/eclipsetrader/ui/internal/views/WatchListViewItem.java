@@ -18,6 +18,7 @@ import java.util.Map;
 
 import org.eclipse.core.databinding.observable.list.ObservableList;
 import org.eclipsetrader.core.feed.IBook;
+import org.eclipsetrader.core.feed.IDepthMetrics;
 import org.eclipsetrader.core.feed.ILastClose;
 import org.eclipsetrader.core.feed.IPrice;
 import org.eclipsetrader.core.feed.IQuote;
@@ -44,6 +45,7 @@ public class WatchListViewItem implements ViewItem {
     private ITodayOHL todayOHL;
     private ILastClose lastClose;
     private IBook book;
+    private IDepthMetrics depthMetrics;
 
     private Long position;
     private Double purchasePrice;
@@ -143,6 +145,9 @@ public class WatchListViewItem implements ViewItem {
         if (obj instanceof IBook) {
             book = (IBook) obj;
         }
+        if (obj instanceof IDepthMetrics) {
+            depthMetrics = (IDepthMetrics) obj;
+        }
     }
 
     public IPrice getPrice() {
@@ -193,6 +198,14 @@ public class WatchListViewItem implements ViewItem {
         this.book = book;
     }
 
+    public IDepthMetrics getDepthMetrics() {
+        return depthMetrics;
+    }
+
+    public void setDepthMetrics(IDepthMetrics depthMetrics) {
+        this.depthMetrics = depthMetrics;
+    }
+
     public Long getPosition() {
         return position;
     }
@@ -259,6 +272,9 @@ public class WatchListViewItem implements ViewItem {
         if (adapter.isAssignableFrom(IBook.class)) {
             return book;
         }
+        if (adapter.isAssignableFrom(IDepthMetrics.class)) {
+            return depthMetrics;
+        }
 
         if (adapter.isAssignableFrom(element.getClass())) {
             return element;
@@ -31,6 +31,7 @@ import org.eclipsetrader.core.feed.IPricingListener;
 import org.eclipsetrader.core.feed.PricingDelta;
 import org.eclipsetrader.core.feed.PricingEvent;
 import org.eclipsetrader.core.instruments.ISecurity;
+import org.eclipsetrader.core.markets.MarketPricingEnvironment;
 import org.eclipsetrader.core.views.IWatchList;
 import org.eclipsetrader.core.views.IWatchListColumn;
 import org.eclipsetrader.core.views.IWatchListElement;
@@ -111,6 +112,9 @@ public class WatchListViewModel implements IAdaptable {
             viewItem.setLastClose(pricingEnvironment.getLastClose(elements[i].getSecurity()));
             viewItem.setTodayOHL(pricingEnvironment.getTodayOHL(elements[i].getSecurity()));
             viewItem.setBook(pricingEnvironment.getBook(elements[i].getSecurity()));
+            if (pricingEnvironment instanceof MarketPricingEnvironment) {
+                viewItem.setDepthMetrics(((MarketPricingEnvironment) pricingEnvironment).getDepthMetrics(elements[i].getSecurity()));
+            }
             viewItem.addPropertyChangeListener(WatchListViewItem.PROP_QUANTITY, holdingChangeListener);
             viewItem.addPropertyChangeListener(WatchListViewItem.PROP_PRICE, holdingChangeListener);
             observableItems.add(viewItem);
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.yahoo.internal.core;
+
+import java.io.ByteArrayInputStream;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class CSVTokenizerTest extends TestCase {
+
+    public void testSplitFields() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset("MSFT,28.50,,N/A");
+
+        assertEquals(4, tokenizer.getFieldCount());
+        assertEquals("MSFT", tokenizer.getString(0));
+        assertTrue(tokenizer.equals(0, "MSFT"));
+        assertFalse(tokenizer.equals(0, "MSF"));
+        assertTrue(tokenizer.isEmpty(2));
+        assertTrue(tokenizer.isNA(3));
+        assertFalse(tokenizer.isNA(1));
+    }
+
+    public void testSplitQuotedFields() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset("\"MSFT\",\"1,234.50\",\"say \"\"hi\"\"\"");
+
+        assertEquals(3, tokenizer.getFieldCount());
+        assertEquals("MSFT", tokenizer.getString(0));
+        assertEquals(1234.5, tokenizer.getDouble(1));
+        assertEquals("say \"hi\"", tokenizer.getString(2));
+    }
+
+    public void testSplitWithFirstSeparatorFound() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.setSeparators(";,");
+
+        tokenizer.reset("A;1,5;2");
+        assertEquals(3, tokenizer.getFieldCount());
+
+        tokenizer.reset("A,1.5,2");
+        assertEquals(3, tokenizer.getFieldCount());
+    }
+
+    public void testReadLines() throws Exception {
+        byte[] data = "a,b\r\n\r\nc,d\re\nf".getBytes();
+        CSVTokenizer tokenizer = new CSVTokenizer(new ByteArrayInputStream(data));
+
+        assertTrue(tokenizer.nextLine());
+        assertEquals("a", tokenizer.getString(0));
+        assertEquals("b", tokenizer.getString(1));
+        assertTrue(tokenizer.nextLine());
+        assertEquals("c", tokenizer.getString(0));
+        assertTrue(tokenizer.nextLine());
+        assertEquals("e", tokenizer.getString(0));
+        assertTrue(tokenizer.nextLine());
+        assertEquals("f", tokenizer.getString(0));
+        assertFalse(tokenizer.nextLine());
+    }
+
+    public void testReadLinesLongerThanBuffer() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(i).append(",1.5\n");
+        }
+        CSVTokenizer tokenizer = new CSVTokenizer(new ByteArrayInputStream(text.toString().getBytes()));
+
+        int count = 0;
+        while (tokenizer.nextLine()) {
+            assertEquals(count, tokenizer.getLong(0));
+            assertEquals(1.5, tokenizer.getDouble(1));
+            count++;
+        }
+        assertEquals(5000, count);
+    }
+
+    public void testParseDouble() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset("1.5840,-0.25,12,0.1,1234567.891,1.5e3");
+
+        assertEquals(1.5840, tokenizer.getDouble(0));
+        assertEquals(-0.25, tokenizer.getDouble(1));
+        assertEquals(12.0, tokenizer.getDouble(2));
+        assertEquals(0.1, tokenizer.getDouble(3));
+        assertEquals(1234567.891, tokenizer.getDouble(4));
+        assertEquals(1500.0, tokenizer.getDouble(5));
+    }
+
+    public void testParseDoubleWithCommaDecimalSeparator() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.setSeparators(";");
+        tokenizer.setDecimalSeparator(',');
+        tokenizer.reset("1,5840;1.234,5");
+
+        assertEquals(1.5840, tokenizer.getDouble(0));
+        assertEquals(1234.5, tokenizer.getDouble(1));
+    }
+
+    public void testParseInvalidDouble() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset("N/A,,1.2.3");
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                tokenizer.getDouble(i);
+                fail();
+            } catch (ParseException e) {
+                // Expected
+            }
+        }
+    }
+
+    public void testParseLong() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset("204432704,-15,1598500.0");
+
+        assertEquals(204432704L, tokenizer.getLong(0));
+        assertEquals(-15L, tokenizer.getLong(1));
+        assertEquals(1598500L, tokenizer.getLong(2));
+    }
+
+    public void testParseDates() throws Exception {
+        Calendar date = Calendar.getInstance();
+        date.clear();
+        date.set(2011, Calendar.JANUARY, 3);
+
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset("20110103,2011-01-03,11-01-03,03-Jan-2011,03-jan-11,01/03/2011");
+
+        for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+            assertEquals(tokenizer.getString(i), date.getTimeInMillis(), tokenizer.getDate(i));
+        }
+    }
+
+    public void testParseInvalidDate() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset("2011-13-03,03-Foo-2011,2011");
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                tokenizer.getDate(i);
+                fail(tokenizer.getString(i));
+            } catch (ParseException e) {
+                // Expected
+            }
+        }
+    }
+
+    public void testParseDateTime() throws Exception {
+        TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+
+        Calendar date = Calendar.getInstance(timeZone);
+        date.clear();
+        date.set(2011, Calendar.JANUARY, 3, 16, 5, 0);
+
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.setTimeZone(timeZone);
+        tokenizer.reset("\"1/3/2011\",\"4:05pm\",16:05,12:30am");
+
+        assertEquals(date.getTimeInMillis(), tokenizer.getDateTime(0, 1));
+        assertEquals(date.getTimeInMillis(), tokenizer.getDateTime(0, 2));
+
+        date.set(2011, Calendar.JANUARY, 3, 0, 30, 0);
+        assertEquals(date.getTimeInMillis(), tokenizer.getDateTime(0, 3));
+    }
+
+    public void testParseDateTimeWithoutValues() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset("N/A,N/A");
+
+        assertEquals(-1, tokenizer.getDateTime(0, 1));
+    }
+}
@@ -11,11 +11,8 @@
 
 package org.eclipsetrader.yahoo.internal.core.connector;
 
-import java.io.BufferedReader;
-import java.io.StringReader;
-import java.util.ArrayList;
+import java.io.ByteArrayInputStream;
 import java.util.Calendar;
-import java.util.List;
 import java.util.TimeZone;
 
 import junit.framework.TestCase;
@@ -24,6 +21,7 @@ import org.eclipsetrader.core.feed.FeedIdentifier;
 import org.eclipsetrader.core.feed.FeedProperties;
 import org.eclipsetrader.core.feed.OHLC;
 import org.eclipsetrader.core.feed.TimeSpan;
+import org.eclipsetrader.yahoo.internal.core.BarColumns;
 
 public class BackfillConnectorTest extends TestCase {
 
@@ -83,27 +81,27 @@ public class BackfillConnectorTest extends TestCase {
         text.append("values:Date,close,high,low,open,volume\r\n");
         text.append("20110103,1.5840,1.6190,1.5660,1.5750,204432704\r\n");
         text.append("20110104,1.5900,1.6060,1.5690,1.5830,254641200\r\n");
-        StringReader sr = new StringReader(text.toString());
+        ByteArrayInputStream in = new ByteArrayInputStream(text.toString().getBytes());
 
-        List<OHLC> list = new ArrayList<OHLC>();
+        BarColumns bars = new BarColumns();
 
         BackfillConnector connector = new BackfillConnector();
-        connector.readBackfillStream(list, new BufferedReader(sr));
+        connector.readBackfillStream(bars, in);
 
-        assertEquals(2, list.size());
+        assertEquals(2, bars.size());
     }
 
     public void testReadEmptyBackfillStream() throws Exception {
         StringBuilder text = new StringBuilder();
         text.append("values:Date,close,high,low,open,volume\r\n");
-        StringReader sr = new StringReader(text.toString());
+        ByteArrayInputStream in = new ByteArrayInputStream(text.toString().getBytes());
 
-        List<OHLC> list = new ArrayList<OHLC>();
+        BarColumns bars = new BarColumns();
 
         BackfillConnector connector = new BackfillConnector();
-        connector.readBackfillStream(list, new BufferedReader(sr));
+        connector.readBackfillStream(bars, in);
 
-        assertEquals(0, list.size());
+        assertEquals(0, bars.size());
     }
 
     public void testRead1DayBackfillStream() throws Exception {
@@ -125,14 +123,39 @@ public class BackfillConnectorTest extends TestCase {
         text.append("1245418200,29.0600,29.0700,28.9400,28.9900,1598500\r\n");
         text.append("1245418260,29.0700,29.0890,29.0300,29.0700,18100\r\n");
         text.append("1245418320,29.2200,29.2300,29.0700,29.0800,24100\r\n");
-        StringReader sr = new StringReader(text.toString());
+        ByteArrayInputStream in = new ByteArrayInputStream(text.toString().getBytes());
 
-        List<OHLC> list = new ArrayList<OHLC>();
+        BarColumns bars = new BarColumns();
 
         BackfillConnector connector = new BackfillConnector();
-        connector.read1DayBackfillStream(list, new BufferedReader(sr));
+        connector.read1DayBackfillStream(bars, in);
 
-        assertEquals(3, list.size());
+        assertEquals(3, bars.size());
+    }
+
+    public void testReadDailyBackfillStream() throws Exception {
+        StringBuilder text = new StringBuilder();
+        text.append("Date,close,high,low,open,volume\n");
+        text.append("2011-01-04,1.5900,1.6060,1.5690,1.5830,254641200\n");
+        text.append("2011-01-03,1.5840,1.6190,1.5660,1.5750,204432704\n");
+        ByteArrayInputStream in = new ByteArrayInputStream(text.toString().getBytes());
+
+        BarColumns bars = new BarColumns();
+
+        BackfillConnector connector = new BackfillConnector();
+        connector.readDailyBackfillStream(bars, in);
+        bars.sort();
+
+        Calendar date = Calendar.getInstance();
+        date.set(2011, Calendar.JANUARY, 3, 0, 0, 0);
+        date.set(Calendar.MILLISECOND, 0);
+
+        assertEquals(2, bars.size());
+        assertEquals(date.getTimeInMillis(), bars.getDate(0));
+        assertEquals(1.5750, bars.getOpen(0));
+        assertEquals(1.5840, bars.getClose(0));
+        assertEquals(204432704L, bars.getVolume(0));
+        assertEquals(1.5830, bars.getOpen(1));
     }
 
     public void testCanBackfillDailyHistory() throws Exception {
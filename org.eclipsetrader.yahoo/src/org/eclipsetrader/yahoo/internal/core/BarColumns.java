@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.yahoo.internal.core;
+
+import java.util.Date;
+
+import org.eclipsetrader.core.feed.IOHLC;
+import org.eclipsetrader.core.feed.OHLC;
+
+/**
+ * Price bars stored in primitive columns.
+ *
+ * <p>Parsed bars are collected, sorted and filtered without boxing the values,
+ * the <code>OHLC</code> objects are created only for the bars returned to the caller.</p>
+ *
+ * @since 1.0
+ */
+public class BarColumns {
+
+    private long[] date;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private long[] volume;
+    private int size;
+
+    public BarColumns() {
+        this(256);
+    }
+
+    public BarColumns(int capacity) {
+        date = new long[capacity];
+        open = new double[capacity];
+        high = new double[capacity];
+        low = new double[capacity];
+        close = new double[capacity];
+        volume = new long[capacity];
+    }
+
+    public void add(long date, double open, double high, double low, double close, long volume) {
+        if (size == this.date.length) {
+            grow();
+        }
+        this.date[size] = date;
+        this.open[size] = open;
+        this.high[size] = high;
+        this.low[size] = low;
+        this.close[size] = close;
+        this.volume[size] = volume;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, date.length * 2);
+
+        long[] newDate = new long[capacity];
+        System.arraycopy(date, 0, newDate, 0, size);
+        date = newDate;
+
+        double[] newOpen = new double[capacity];
+        System.arraycopy(open, 0, newOpen, 0, size);
+        open = newOpen;
+
+        double[] newHigh = new double[capacity];
+        System.arraycopy(high, 0, newHigh, 0, size);
+        high = newHigh;
+
+        double[] newLow = new double[capacity];
+        System.arraycopy(low, 0, newLow, 0, size);
+        low = newLow;
+
+        double[] newClose = new double[capacity];
+        System.arraycopy(close, 0, newClose, 0, size);
+        close = newClose;
+
+        long[] newVolume = new long[capacity];
+        System.arraycopy(volume, 0, newVolume, 0, size);
+        volume = newVolume;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public long getDate(int index) {
+        return date[index];
+    }
+
+    public double getOpen(int index) {
+        return open[index];
+    }
+
+    public double getHigh(int index) {
+        return high[index];
+    }
+
+    public double getLow(int index) {
+        return low[index];
+    }
+
+    public double getClose(int index) {
+        return close[index];
+    }
+
+    public long getVolume(int index) {
+        return volume[index];
+    }
+
+    public OHLC get(int index) {
+        return new OHLC(new Date(date[index]), open[index], high[index], low[index], close[index], volume[index]);
+    }
+
+    /**
+     * Sorts the bars by ascending date.
+     *
+     * <p>Already sorted columns, and columns in reverse order as usually returned
+     * by the history downloads, are handled in linear time.</p>
+     */
+    public void sort() {
+        boolean ascending = true;
+        boolean descending = true;
+        for (int i = 1; i < size && (ascending || descending); i++) {
+            if (date[i - 1] > date[i]) {
+                ascending = false;
+            }
+            if (date[i - 1] < date[i]) {
+                descending = false;
+            }
+        }
+
+        if (ascending) {
+            return;
+        }
+        if (descending) {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                swap(i, j);
+            }
+            return;
+        }
+
+        sort(0, size - 1);
+    }
+
+    private void sort(int lo, int hi) {
+        while (lo < hi) {
+            long pivot = date[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (date[i] < pivot) {
+                    i++;
+                }
+                while (date[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+
+            // Recurse into the smaller partition to bound the stack depth
+            if (j - lo < hi - i) {
+                sort(lo, j);
+                lo = i;
+            }
+            else {
+                sort(i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        long l = date[i];
+        date[i] = date[j];
+        date[j] = l;
+
+        double d = open[i];
+        open[i] = open[j];
+        open[j] = d;
+
+        d = high[i];
+        high[i] = high[j];
+        high[j] = d;
+
+        d = low[i];
+        low[i] = low[j];
+        low[j] = d;
+
+        d = close[i];
+        close[i] = close[j];
+        close[j] = d;
+
+        l = volume[i];
+        volume[i] = volume[j];
+        volume[j] = l;
+    }
+
+    /**
+     * Returns the bars as an array of <code>IOHLC</code> objects.
+     *
+     * @return the bars.
+     */
+    public IOHLC[] toArray() {
+        return toArray(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the bars with a date in the given range as an array of <code>IOHLC</code> objects.
+     *
+     * @param from the first date in milliseconds, inclusive.
+     * @param to the last date in milliseconds, inclusive.
+     * @return the bars.
+     */
+    public IOHLC[] toArray(long from, long to) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (date[i] >= from && date[i] <= to) {
+                count++;
+            }
+        }
+
+        IOHLC[] result = new IOHLC[count];
+        for (int i = 0, n = 0; i < size; i++) {
+            if (date[i] >= from && date[i] <= to) {
+                result[n++] = get(i);
+            }
+        }
+
+        return result;
+    }
+}
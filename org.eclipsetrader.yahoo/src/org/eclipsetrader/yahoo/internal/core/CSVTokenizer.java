@@ -0,0 +1,728 @@
+/*
+ * Copyright (c) 2004-2011 Marco Maccaferri and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Marco Maccaferri - initial API and implementation
+ */
+
+package org.eclipsetrader.yahoo.internal.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Streaming tokenizer for comma separated values.
+ *
+ * <p>The tokenizer reads the stream in a reusable byte buffer and splits each line
+ * in fields without creating strings, numbers and dates are parsed directly from
+ * the buffer into primitive values. Fields enclosed in double quotes may contain
+ * separators, the quotes are removed from the field value.</p>
+ *
+ * <p>Dates are recognized in the <code>yyyyMMdd</code>, <code>yyyy-MM-dd</code>,
+ * <code>yy-MM-dd</code>, <code>dd-MMM-yy</code>, <code>dd-MMM-yyyy</code> and
+ * <code>MM/dd/yyyy</code> formats, times in the <code>HH:mm</code>, <code>HH:mm:ss</code>
+ * and <code>h:mma</code> formats. Two digits years are expanded in the century
+ * starting 80 years before the current year.</p>
+ *
+ * <p>Instances are not thread safe, each stream should be read with its own tokenizer.</p>
+ *
+ * @since 1.0
+ */
+public class CSVTokenizer {
+
+    private static final double[] POWERS_OF_TEN = new double[] {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_MANTISSA = (1L << 53) - 1;
+    private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec"; //$NON-NLS-1$
+
+    private InputStream in;
+    private byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    private byte[] line = new byte[256];
+    private int length;
+    private char[] chars = new char[64];
+
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+
+    private String separators = ","; //$NON-NLS-1$
+    private byte decimalSeparator = '.';
+    private byte groupingSeparator = ',';
+
+    private Calendar calendar;
+    private int centuryStart;
+
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int second;
+
+    public CSVTokenizer() {
+        setTimeZone(TimeZone.getDefault());
+    }
+
+    public CSVTokenizer(InputStream in) {
+        this();
+        this.in = in;
+    }
+
+    /**
+     * Sets the field separators.
+     *
+     * <p>If more than one separator is given, each line is split with the first
+     * separator found in the line, in the given order.</p>
+     *
+     * @param separators the separator characters.
+     */
+    public void setSeparators(String separators) {
+        this.separators = separators;
+    }
+
+    /**
+     * Sets the decimal separator, the grouping separator is set to the other
+     * of the comma and period characters.
+     *
+     * @param decimalSeparator the decimal separator, either <code>'.'</code> or <code>','</code>.
+     */
+    public void setDecimalSeparator(char decimalSeparator) {
+        this.decimalSeparator = (byte) decimalSeparator;
+        this.groupingSeparator = (byte) (decimalSeparator == ',' ? '.' : ',');
+    }
+
+    /**
+     * Sets the time zone used to compute dates and times.
+     *
+     * @param timeZone the time zone.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        calendar = Calendar.getInstance(timeZone);
+        centuryStart = calendar.get(Calendar.YEAR) - 80;
+    }
+
+    /**
+     * Resets the tokenizer to read the lines of the given stream.
+     *
+     * @param in the stream to read.
+     */
+    public void reset(InputStream in) {
+        this.in = in;
+        this.position = 0;
+        this.limit = 0;
+        this.length = 0;
+        this.fieldCount = 0;
+    }
+
+    /**
+     * Resets the tokenizer to the given line.
+     *
+     * <p>The line is split immediately and there is no need to call <code>nextLine</code>,
+     * characters outside the ISO-8859-1 range are not supported.</p>
+     *
+     * @param s the line.
+     */
+    public void reset(CharSequence s) {
+        reset((InputStream) null);
+        for (int i = 0; i < s.length(); i++) {
+            append((byte) s.charAt(i));
+        }
+        split();
+    }
+
+    /**
+     * Advances to the next non-empty line of the stream.
+     *
+     * @return <code>true</code> if a line was read, <code>false</code> at the end of the stream.
+     * @throws IOException if the stream can't be read.
+     */
+    public boolean nextLine() throws IOException {
+        if (in == null) {
+            return false;
+        }
+
+        for (;;) {
+            length = 0;
+            boolean eol = false;
+
+            while (!eol) {
+                if (position >= limit) {
+                    limit = in.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        break;
+                    }
+                }
+
+                int start = position;
+                while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                    position++;
+                }
+                append(buffer, start, position - start);
+
+                if (position < limit) {
+                    if (buffer[position] == '\r') {
+                        position++;
+                        if (position >= limit) {
+                            limit = in.read(buffer, 0, buffer.length);
+                            position = 0;
+                            if (limit < 0) {
+                                limit = 0;
+                            }
+                        }
+                        if (position < limit && buffer[position] == '\n') {
+                            position++;
+                        }
+                    }
+                    else {
+                        position++;
+                    }
+                    eol = true;
+                }
+            }
+
+            if (length != 0) {
+                split();
+                return true;
+            }
+            if (!eol) {
+                fieldCount = 0;
+                return false;
+            }
+        }
+    }
+
+    private void append(byte b) {
+        if (length == line.length) {
+            byte[] newLine = new byte[line.length * 2];
+            System.arraycopy(line, 0, newLine, 0, length);
+            line = newLine;
+        }
+        line[length++] = b;
+    }
+
+    private void append(byte[] b, int offset, int count) {
+        if (length + count > line.length) {
+            byte[] newLine = new byte[Math.max(line.length * 2, length + count)];
+            System.arraycopy(line, 0, newLine, 0, length);
+            line = newLine;
+        }
+        System.arraycopy(b, offset, line, length, count);
+        length += count;
+    }
+
+    private void split() {
+        byte separator = getLineSeparator();
+
+        fieldCount = 0;
+        int i = 0;
+        do {
+            if (fieldCount == fieldStart.length) {
+                int[] newStart = new int[fieldStart.length * 2];
+                System.arraycopy(fieldStart, 0, newStart, 0, fieldCount);
+                fieldStart = newStart;
+                int[] newEnd = new int[fieldEnd.length * 2];
+                System.arraycopy(fieldEnd, 0, newEnd, 0, fieldCount);
+                fieldEnd = newEnd;
+            }
+
+            if (i < length && line[i] == '"') {
+                // Quoted fields are unescaped in place, the value can only shrink
+                int start = ++i;
+                int end = start;
+                while (i < length) {
+                    if (line[i] == '"') {
+                        if (i + 1 < length && line[i + 1] == '"') {
+                            line[end++] = '"';
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    line[end++] = line[i++];
+                }
+                while (i < length && line[i] != separator) {
+                    i++;
+                }
+                fieldStart[fieldCount] = start;
+                fieldEnd[fieldCount] = end;
+            }
+            else {
+                int start = i;
+                while (i < length && line[i] != separator) {
+                    i++;
+                }
+                fieldStart[fieldCount] = start;
+                fieldEnd[fieldCount] = i;
+            }
+            fieldCount++;
+        } while (i++ < length);
+    }
+
+    private byte getLineSeparator() {
+        if (separators.length() == 1) {
+            return (byte) separators.charAt(0);
+        }
+        for (int s = 0; s < separators.length(); s++) {
+            byte separator = (byte) separators.charAt(s);
+            for (int i = 0; i < length; i++) {
+                if (line[i] == separator) {
+                    return separator;
+                }
+            }
+        }
+        return (byte) separators.charAt(separators.length() - 1);
+    }
+
+    /**
+     * Returns the number of fields in the current line.
+     *
+     * @return the number of fields.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the first character of the current line.
+     *
+     * @return the first character, or <code>-1</code> if there is no current line.
+     */
+    public int getFirstChar() {
+        return length != 0 ? line[0] & 0xFF : -1;
+    }
+
+    /**
+     * Returns whether the given field is empty.
+     *
+     * @param field the field index.
+     * @return <code>true</code> if the field is empty.
+     */
+    public boolean isEmpty(int field) {
+        int start = trimStart(field);
+        return start >= trimEnd(field, start);
+    }
+
+    /**
+     * Returns whether the given field is empty or has the <code>N/A</code> value.
+     *
+     * @param field the field index.
+     * @return <code>true</code> if the field has no value.
+     */
+    public boolean isNA(int field) {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+        if (start == end) {
+            return true;
+        }
+        return end - start == 3 && (line[start] | 0x20) == 'n' && line[start + 1] == '/' && (line[start + 2] | 0x20) == 'a';
+    }
+
+    /**
+     * Compares the given field with a string without creating a new string.
+     *
+     * @param field the field index.
+     * @param s the string to compare.
+     * @return <code>true</code> if the field value is equal to the string.
+     */
+    public boolean equals(int field, String s) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if ((line[i] & 0xFF) != s.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of the given field as a string.
+     *
+     * @param field the field index.
+     * @return the field value.
+     */
+    public String getString(int field) {
+        return toString(fieldStart[field], fieldEnd[field]);
+    }
+
+    /**
+     * Returns the value of the given field as a long number, the decimal digits
+     * are truncated.
+     *
+     * @param field the field index.
+     * @return the field value.
+     * @throws ParseException if the field is not a number.
+     */
+    public long getLong(int field) throws ParseException {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        for (; i < end; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits++;
+            }
+            else if (b == groupingSeparator && digits != 0) {
+                continue;
+            }
+            else if (b == decimalSeparator) {
+                for (i++; i < end && line[i] >= '0' && line[i] <= '9'; i++) {
+                }
+                break;
+            }
+            else {
+                break;
+            }
+        }
+        if (digits == 0 || digits > 18 || i != end) {
+            throw new ParseException("Unparseable number: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the value of the given field as a double number.
+     *
+     * @param field the field index.
+     * @return the field value.
+     * @throws ParseException if the field is not a number.
+     */
+    public double getDouble(int field) throws ParseException {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean decimals = false;
+        boolean exact = true;
+        for (; i < end; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9') {
+                if (mantissa <= (MAX_MANTISSA - 9) / 10) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (decimals) {
+                        scale++;
+                    }
+                }
+                else {
+                    exact = false;
+                }
+                digits++;
+            }
+            else if (b == decimalSeparator && !decimals) {
+                decimals = true;
+            }
+            else if (b == groupingSeparator && digits != 0 && !decimals) {
+                continue;
+            }
+            else if ((b == 'e' || b == 'E') && digits != 0) {
+                exact = false;
+                break;
+            }
+            else {
+                throw new ParseException("Unparseable number: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        if (digits == 0) {
+            throw new ParseException("Unparseable number: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        if (!exact || scale >= POWERS_OF_TEN.length) {
+            return parseDouble(field, start, end);
+        }
+
+        // Both the mantissa and the power of ten are exact doubles, so the division is correctly rounded
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private double parseDouble(int field, int start, int end) throws ParseException {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            byte b = line[i];
+            if (b == groupingSeparator) {
+                continue;
+            }
+            sb.append(b == decimalSeparator ? '.' : (char) (b & 0xFF));
+        }
+        try {
+            return Double.parseDouble(sb.toString());
+        } catch (NumberFormatException e) {
+            throw new ParseException("Unparseable number: \"" + getString(field) + "\"", 0); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Returns the value of the given field as a date at midnight.
+     *
+     * @param field the field index.
+     * @return the date in milliseconds.
+     * @throws ParseException if the field is not a date.
+     */
+    public long getDate(int field) throws ParseException {
+        parseDate(field);
+
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Returns the date and time of the given fields.
+     *
+     * <p>If one of the fields has no value, the current date or time is used.</p>
+     *
+     * @param dateField the date field index.
+     * @param timeField the time field index.
+     * @return the date in milliseconds, or <code>-1</code> if both fields have no value.
+     * @throws ParseException if the fields are not a date and time.
+     */
+    public long getDateTime(int dateField, int timeField) throws ParseException {
+        boolean noDate = isNA(dateField);
+        boolean noTime = isNA(timeField);
+        if (noDate && noTime) {
+            return -1;
+        }
+
+        if (noDate || noTime) {
+            calendar.setTimeInMillis(System.currentTimeMillis());
+            year = calendar.get(Calendar.YEAR);
+            month = calendar.get(Calendar.MONTH);
+            day = calendar.get(Calendar.DAY_OF_MONTH);
+            hour = calendar.get(Calendar.HOUR_OF_DAY);
+            minute = calendar.get(Calendar.MINUTE);
+            second = 0;
+        }
+        if (!noDate) {
+            parseDate(dateField);
+        }
+        if (!noTime) {
+            parseTime(timeField);
+        }
+
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+
+    private void parseDate(int field) throws ParseException {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+
+        int i = start;
+        int first = 0;
+        int firstDigits = 0;
+        for (; i < end && line[i] >= '0' && line[i] <= '9'; i++, firstDigits++) {
+            first = first * 10 + (line[i] - '0');
+        }
+
+        if (i == end && firstDigits == 8) {
+            year = first / 10000;
+            month = first / 100 % 100 - 1;
+            day = first % 100;
+        }
+        else if (i < end && firstDigits != 0 && (line[i] == '-' || line[i] == '/')) {
+            byte separator = line[i++];
+
+            int middle = 0;
+            int secondDigits = 0;
+            int secondStart = i;
+            if (separator == '-' && i < end && !(line[i] >= '0' && line[i] <= '9')) {
+                middle = parseMonth(field, i);
+                i += 3;
+                secondDigits = 3;
+            }
+            else {
+                for (; i < end && line[i] >= '0' && line[i] <= '9'; i++, secondDigits++) {
+                    middle = middle * 10 + (line[i] - '0');
+                }
+            }
+            if (secondDigits == 0 || i >= end || line[i] != separator) {
+                throw new ParseException("Unparseable date: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            i++;
+
+            int third = 0;
+            int thirdDigits = 0;
+            for (; i < end && line[i] >= '0' && line[i] <= '9'; i++, thirdDigits++) {
+                third = third * 10 + (line[i] - '0');
+            }
+            if (thirdDigits == 0 || i != end) {
+                throw new ParseException("Unparseable date: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+
+            if (separator == '/') {
+                month = first - 1;
+                day = middle;
+                year = expandYear(third, thirdDigits);
+            }
+            else if (!(line[secondStart] >= '0' && line[secondStart] <= '9')) {
+                day = first;
+                month = middle;
+                year = expandYear(third, thirdDigits);
+            }
+            else {
+                year = expandYear(first, firstDigits);
+                month = middle - 1;
+                day = third;
+            }
+        }
+        else {
+            throw new ParseException("Unparseable date: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        if (month < 0 || month > 11 || day < 1 || day > 31) {
+            throw new ParseException("Unparseable date: \"" + getString(field) + "\"", 0); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private int parseMonth(int field, int i) throws ParseException {
+        if (i + 3 <= fieldEnd[field]) {
+            int b0 = line[i] | 0x20;
+            int b1 = line[i + 1] | 0x20;
+            int b2 = line[i + 2] | 0x20;
+            for (int m = 0; m < 12; m++) {
+                if (MONTHS.charAt(m * 3) == b0 && MONTHS.charAt(m * 3 + 1) == b1 && MONTHS.charAt(m * 3 + 2) == b2) {
+                    return m;
+                }
+            }
+        }
+        throw new ParseException("Unparseable date: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private int expandYear(int value, int digits) {
+        if (digits > 2) {
+            return value;
+        }
+        int result = centuryStart / 100 * 100 + value;
+        if (result < centuryStart) {
+            result += 100;
+        }
+        return result;
+    }
+
+    private void parseTime(int field) throws ParseException {
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+
+        hour = minute = second = 0;
+        int count = 0;
+        int i = start;
+        while (count < 3) {
+            int value = 0;
+            int digits = 0;
+            for (; i < end && line[i] >= '0' && line[i] <= '9'; i++, digits++) {
+                value = value * 10 + (line[i] - '0');
+            }
+            if (digits == 0 || digits > 2) {
+                throw new ParseException("Unparseable time: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (count == 0) {
+                hour = value;
+            }
+            else if (count == 1) {
+                minute = value;
+            }
+            else {
+                second = value;
+            }
+            count++;
+            if (i >= end || line[i] != ':') {
+                break;
+            }
+            i++;
+        }
+        if (count < 2) {
+            throw new ParseException("Unparseable time: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        while (i < end && line[i] == ' ') {
+            i++;
+        }
+        if (i + 2 == end && (line[i + 1] | 0x20) == 'm') {
+            int marker = line[i] | 0x20;
+            if (marker == 'a' || marker == 'p') {
+                if (hour < 1 || hour > 12) {
+                    throw new ParseException("Unparseable time: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                hour = hour % 12 + (marker == 'p' ? 12 : 0);
+                i = end;
+            }
+        }
+        if (i != end || hour > 23 || minute > 59 || second > 59) {
+            throw new ParseException("Unparseable time: \"" + getString(field) + "\"", i - fieldStart[field]); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private int trimStart(int field) {
+        int i = fieldStart[field];
+        int end = fieldEnd[field];
+        while (i < end && line[i] == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private int trimEnd(int field, int start) {
+        int i = fieldEnd[field];
+        while (i > start && line[i - 1] == ' ') {
+            i--;
+        }
+        return i;
+    }
+
+    private String toString(int start, int end) {
+        if (end - start > chars.length) {
+            chars = new char[end - start];
+        }
+        for (int i = start; i < end; i++) {
+            chars[i - start] = (char) (line[i] & 0xFF);
+        }
+        return new String(chars, 0, end - start);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return toString(0, length);
+    }
+}
@@ -11,28 +11,22 @@
 
 package org.eclipsetrader.yahoo.internal.core.connector;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.text.NumberFormat;
+import java.io.InputStream;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExecutableExtension;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.HttpClientService;
+import org.eclipsetrader.core.IHttpClientService;
 import org.eclipsetrader.core.feed.Dividend;
 import org.eclipsetrader.core.feed.IBackfillConnector;
 import org.eclipsetrader.core.feed.IDividend;
@@ -43,6 +37,8 @@ import org.eclipsetrader.core.feed.OHLC;
 import org.eclipsetrader.core.feed.TimeSpan;
 import org.eclipsetrader.core.feed.TimeSpan.Units;
 import org.eclipsetrader.yahoo.internal.YahooActivator;
+import org.eclipsetrader.yahoo.internal.core.BarColumns;
+import org.eclipsetrader.yahoo.internal.core.CSVTokenizer;
 import org.eclipsetrader.yahoo.internal.core.Util;
 
 public class BackfillConnector implements IBackfillConnector, IExecutableExtension {
@@ -50,12 +46,6 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
     private String id;
     private String name;
 
-    private SimpleDateFormat df = new SimpleDateFormat("yy-MM-dd"); //$NON-NLS-1$
-    private SimpleDateFormat df2 = new SimpleDateFormat("yyyyMMdd"); //$NON-NLS-1$
-    private SimpleDateFormat dfAlt = new SimpleDateFormat("dd-MMM-yy", Locale.US); //$NON-NLS-1$
-    private NumberFormat nf = NumberFormat.getInstance(Locale.US);
-    private NumberFormat pf = NumberFormat.getInstance(Locale.US);
-
     public BackfillConnector() {
     }
 
@@ -131,7 +121,7 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
     }
 
     private IOHLC[] backfillDailyHistory(IFeedIdentifier identifier, Date from, Date to) {
-        List<OHLC> list = new ArrayList<OHLC>();
+        BarColumns bars = new BarColumns();
 
         Calendar c = Calendar.getInstance();
         c.setTime(from);
@@ -139,186 +129,164 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
         c.setTime(to);
         int lastYear = c.get(Calendar.YEAR);
 
-        HttpClient client = new HttpClient();
+        IHttpClientService httpClientService = HttpClientService.getInstance();
         for (int ys = firstYear; ys <= lastYear; ys++) {
+            HttpMethod method = null;
             try {
-                HttpMethod method = Util.get1YearHistoryFeedMethod(identifier, ys);
-                Util.setupProxy(client, method.getURI().getHost());
-                client.executeMethod(method);
+                method = Util.get1YearHistoryFeedMethod(identifier, ys);
+                httpClientService.executeMethod(method);
 
-                BufferedReader in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
-                readDailyBackfillStream(list, in);
+                InputStream in = httpClientService.getResponseBodyAsStream(method);
+                readDailyBackfillStream(bars, in);
                 in.close();
 
             } catch (Exception e) {
                 Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error reading data", e);
                 YahooActivator.log(status);
+            } finally {
+                if (method != null) {
+                    method.releaseConnection();
+                }
             }
         }
 
-        Collections.sort(list, new Comparator<OHLC>() {
-
-            @Override
-            public int compare(OHLC o1, OHLC o2) {
-                return o1.getDate().compareTo(o2.getDate());
-            }
-        });
-
-        for (Iterator<OHLC> iter = list.iterator(); iter.hasNext();) {
-            OHLC ohlc = iter.next();
-            if (ohlc.getDate().before(from) || ohlc.getDate().after(to)) {
-                iter.remove();
-            }
-        }
+        bars.sort();
 
-        return list.toArray(new IOHLC[list.size()]);
+        return bars.toArray(from.getTime(), to.getTime());
     }
 
     private IOHLC[] backfill1DayHistory(IFeedIdentifier identifier) throws Exception {
-        List<OHLC> list = new ArrayList<OHLC>();
+        BarColumns bars = new BarColumns();
 
         HttpMethod method = Util.get1DayHistoryFeedMethod(identifier);
         method.setFollowRedirects(true);
 
-        HttpClient client = new HttpClient();
-        Util.setupProxy(client, method.getURI().getHost());
-        client.executeMethod(method);
+        IHttpClientService httpClientService = HttpClientService.getInstance();
+        try {
+            httpClientService.executeMethod(method);
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
-        read1DayBackfillStream(list, in);
-        in.close();
+            InputStream in = httpClientService.getResponseBodyAsStream(method);
+            read1DayBackfillStream(bars, in);
+            in.close();
+        } finally {
+            method.releaseConnection();
+        }
 
-        return list.toArray(new IOHLC[list.size()]);
+        return bars.toArray();
     }
 
     private IOHLC[] backfill5DayHistory(IFeedIdentifier identifier) throws Exception {
-        List<OHLC> list = new ArrayList<OHLC>();
+        BarColumns bars = new BarColumns();
 
         HttpMethod method = Util.get5DayHistoryFeedMethod(identifier);
         method.setFollowRedirects(true);
 
-        HttpClient client = new HttpClient();
-        Util.setupProxy(client, method.getURI().getHost());
-        client.executeMethod(method);
+        IHttpClientService httpClientService = HttpClientService.getInstance();
+        try {
+            httpClientService.executeMethod(method);
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
-        read1DayBackfillStream(list, in);
-        in.close();
+            InputStream in = httpClientService.getResponseBodyAsStream(method);
+            read1DayBackfillStream(bars, in);
+            in.close();
+        } finally {
+            method.releaseConnection();
+        }
 
-        return list.toArray(new IOHLC[list.size()]);
+        return bars.toArray();
     }
 
-    void readBackfillStream(List<OHLC> list, BufferedReader in) throws IOException {
-        String inputLine = in.readLine();
-        while ((inputLine = in.readLine()) != null) {
-            if (inputLine.startsWith("<")) {
+    void readBackfillStream(BarColumns bars, InputStream in) throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(in);
+
+        // The first line is the header, ignoring
+        if (!tokenizer.nextLine()) {
+            return;
+        }
+        while (tokenizer.nextLine()) {
+            if (tokenizer.getFirstChar() == '<') {
                 continue;
             }
 
             try {
-                OHLC bar = parseResponseLine(inputLine);
-                if (bar != null) {
-                    list.add(bar);
-                }
+                readBar(tokenizer, bars, false);
             } catch (ParseException e) {
-                Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing data: " + inputLine, e);
+                Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing data: " + tokenizer, e);
                 YahooActivator.log(status);
             }
         }
     }
 
-    void read1DayBackfillStream(List<OHLC> list, BufferedReader in) throws IOException {
-        String inputLine;
-
-        while ((inputLine = in.readLine()) != null) {
-            if (!Character.isDigit(inputLine.charAt(0))) {
-                continue;
-            }
+    void read1DayBackfillStream(BarColumns bars, InputStream in) throws IOException {
+        readDigitLines(bars, in, true);
+    }
 
-            try {
-                OHLC bar = parse1DayResponseLine(inputLine);
-                if (bar != null) {
-                    list.add(bar);
-                }
-            } catch (ParseException e) {
-                Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing data: " + inputLine, e);
-                YahooActivator.log(status);
-            }
-        }
+    void readDailyBackfillStream(BarColumns bars, InputStream in) throws IOException {
+        readDigitLines(bars, in, false);
     }
 
-    void readDailyBackfillStream(List<OHLC> list, BufferedReader in) throws IOException {
-        String inputLine;
+    private void readDigitLines(BarColumns bars, InputStream in, boolean timestamp) throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(in);
 
-        while ((inputLine = in.readLine()) != null) {
-            if (!Character.isDigit(inputLine.charAt(0))) {
+        while (tokenizer.nextLine()) {
+            int c = tokenizer.getFirstChar();
+            if (c < '0' || c > '9') {
                 continue;
             }
 
             try {
-                OHLC bar = parseResponseLine(inputLine);
-                if (bar != null) {
-                    list.add(bar);
-                }
+                readBar(tokenizer, bars, timestamp);
             } catch (ParseException e) {
-                Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing data: " + inputLine, e);
+                Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing data: " + tokenizer, e);
                 YahooActivator.log(status);
             }
         }
     }
 
-    protected OHLC parseResponseLine(String inputLine) throws ParseException {
-        String[] item = inputLine.split(","); //$NON-NLS-1$
-        if (item.length < 6) {
-            return null;
+    /**
+     * Reads a bar from the current line of the tokenizer, with the date, close, high,
+     * low, open and volume columns.
+     *
+     * @param tokenizer the tokenizer.
+     * @param bars the bars to add the line to.
+     * @param timestamp <code>true</code> if the date column is a unix timestamp.
+     * @return <code>true</code> if the bar was added, <code>false</code> if the line has less columns than required.
+     * @throws ParseException if the line can't be parsed.
+     */
+    private boolean readBar(CSVTokenizer tokenizer, BarColumns bars, boolean timestamp) throws ParseException {
+        if (tokenizer.getFieldCount() < 6) {
+            return false;
         }
 
-        Calendar day = Calendar.getInstance();
-        try {
-            day.setTime(df.parse(item[0]));
-        } catch (ParseException e) {
-            try {
-                day.setTime(df2.parse(item[0]));
-            } catch (ParseException e1) {
-                try {
-                    day.setTime(dfAlt.parse(item[0]));
-                } catch (ParseException e2) {
-                    throw e2;
-                }
-            }
-        }
-        day.set(Calendar.HOUR, 0);
-        day.set(Calendar.MINUTE, 0);
-        day.set(Calendar.SECOND, 0);
-        day.set(Calendar.MILLISECOND, 0);
+        long date = timestamp ? tokenizer.getLong(0) * 1000 : tokenizer.getDate(0);
+        double close = tokenizer.getDouble(1);
+        double high = tokenizer.getDouble(2);
+        double low = tokenizer.getDouble(3);
+        double open = tokenizer.getDouble(4);
+        long volume = tokenizer.getLong(5);
 
-        double close = pf.parse(item[1].replace(',', '.')).doubleValue();
-        double high = pf.parse(item[2].replace(',', '.')).doubleValue();
-        double low = pf.parse(item[3].replace(',', '.')).doubleValue();
-        double open = pf.parse(item[4].replace(',', '.')).doubleValue();
-        long volume = nf.parse(item[5]).longValue();
+        bars.add(date, open, high, low, close, volume);
 
-        OHLC bar = new OHLC(day.getTime(), open, high, low, close, volume);
+        return true;
+    }
 
-        return bar;
+    protected OHLC parseResponseLine(String inputLine) throws ParseException {
+        return parseLine(inputLine, false);
     }
 
     protected OHLC parse1DayResponseLine(String inputLine) throws ParseException {
-        String[] item = inputLine.split(","); //$NON-NLS-1$
-        if (item.length < 6) {
-            return null;
-        }
+        return parseLine(inputLine, true);
+    }
 
-        Date date = new Date(Long.parseLong(item[0]) * 1000);
-        double close = pf.parse(item[1].replace(',', '.')).doubleValue();
-        double high = pf.parse(item[2].replace(',', '.')).doubleValue();
-        double low = pf.parse(item[3].replace(',', '.')).doubleValue();
-        double open = pf.parse(item[4].replace(',', '.')).doubleValue();
-        long volume = nf.parse(item[5]).longValue();
+    private OHLC parseLine(String inputLine, boolean timestamp) throws ParseException {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.reset(inputLine);
 
-        OHLC bar = new OHLC(date, open, high, low, close, volume);
+        BarColumns bars = new BarColumns(1);
+        if (!readBar(tokenizer, bars, timestamp)) {
+            return null;
+        }
 
-        return bar;
+        return bars.get(0);
     }
 
     /* (non-Javadoc)
@@ -328,30 +296,28 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
     public IDividend[] backfillDividends(IFeedIdentifier identifier, Date from, Date to) {
         List<IDividend> list = new ArrayList<IDividend>();
 
+        HttpMethod method = null;
         try {
-            HttpMethod method = Util.getDividendsHistoryMethod(identifier, from, to);
+            method = Util.getDividendsHistoryMethod(identifier, from, to);
             method.setFollowRedirects(true);
 
-            HttpClient client = new HttpClient();
-            Util.setupProxy(client, method.getURI().getHost());
-            client.executeMethod(method);
+            IHttpClientService httpClientService = HttpClientService.getInstance();
+            httpClientService.executeMethod(method);
 
-            BufferedReader in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
+            InputStream in = httpClientService.getResponseBodyAsStream(method);
+            CSVTokenizer tokenizer = new CSVTokenizer(in);
 
             // The first line is the header, ignoring
-            String inputLine = in.readLine();
-            while ((inputLine = in.readLine()) != null) {
-                if (inputLine.startsWith("<")) {
+            tokenizer.nextLine();
+            while (tokenizer.nextLine()) {
+                if (tokenizer.getFirstChar() == '<' || tokenizer.getFieldCount() < 2) {
                     continue;
                 }
 
                 try {
-                    Dividend dividend = parseDividendsResponseLine(inputLine);
-                    if (dividend != null) {
-                        list.add(dividend);
-                    }
+                    list.add(new Dividend(new Date(tokenizer.getDate(0)), tokenizer.getDouble(1)));
                 } catch (ParseException e) {
-                    Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing data: " + inputLine, e);
+                    Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing data: " + tokenizer, e);
                     YahooActivator.log(status);
                 }
             }
@@ -361,33 +327,13 @@ public class BackfillConnector implements IBackfillConnector, IExecutableExtensi
         } catch (Exception e) {
             Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error reading data", e);
             YahooActivator.log(status);
-        }
-
-        return list.toArray(new IDividend[list.size()]);
-    }
-
-    protected Dividend parseDividendsResponseLine(String inputLine) throws ParseException {
-        String[] item = inputLine.split(","); //$NON-NLS-1$
-        if (item.length < 2) {
-            return null;
-        }
-
-        Calendar day = Calendar.getInstance();
-        try {
-            day.setTime(df.parse(item[0]));
-        } catch (ParseException e) {
-            try {
-                day.setTime(dfAlt.parse(item[0]));
-            } catch (ParseException e1) {
-                throw e1;
+        } finally {
+            if (method != null) {
+                method.releaseConnection();
             }
         }
-        day.set(Calendar.HOUR, 0);
-        day.set(Calendar.MINUTE, 0);
-        day.set(Calendar.SECOND, 0);
-        day.set(Calendar.MILLISECOND, 0);
 
-        return new Dividend(day.getTime(), pf.parse(item[1].replace(',', '.')).doubleValue());
+        return list.toArray(new IDividend[list.size()]);
     }
 
     /* (non-Javadoc)
@@ -14,12 +14,9 @@ package org.eclipsetrader.yahoo.internal.core.connector;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.text.NumberFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -27,19 +24,22 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExecutableExtension;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.Status;
+import org.eclipsetrader.core.HttpClientService;
+import org.eclipsetrader.core.IHttpClientService;
 import org.eclipsetrader.core.feed.IConnectorListener;
 import org.eclipsetrader.core.feed.IFeedConnector;
 import org.eclipsetrader.core.feed.IFeedIdentifier;
 import org.eclipsetrader.core.feed.IFeedSubscription;
 import org.eclipsetrader.yahoo.internal.YahooActivator;
+import org.eclipsetrader.yahoo.internal.core.CSVTokenizer;
 import org.eclipsetrader.yahoo.internal.core.Util;
 import org.eclipsetrader.yahoo.internal.core.repository.IdentifierType;
 import org.eclipsetrader.yahoo.internal.core.repository.IdentifiersList;
@@ -69,9 +69,6 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
     private ListenerList listeners = new ListenerList(ListenerList.IDENTITY);
 
     protected TimeZone timeZone;
-    private SimpleDateFormat dateTimeParser;
-    private SimpleDateFormat dateParser;
-    private SimpleDateFormat timeParser;
     private NumberFormat numberFormat;
 
     protected Thread thread;
@@ -83,15 +80,6 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
 
         timeZone = TimeZone.getTimeZone("America/New_York");
 
-        dateTimeParser = new SimpleDateFormat("MM/dd/yyyy h:mma"); //$NON-NLS-1$
-        dateTimeParser.setTimeZone(timeZone);
-
-        dateParser = new SimpleDateFormat("MM/dd/yyyy"); //$NON-NLS-1$
-        dateParser.setTimeZone(timeZone);
-
-        timeParser = new SimpleDateFormat("h:mma"); //$NON-NLS-1$
-        timeParser.setTimeZone(timeZone);
-
         numberFormat = NumberFormat.getInstance(Locale.US);
     }
 
@@ -212,16 +200,12 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
     @Override
     public void run() {
         try {
-            HttpClient client = new HttpClient();
-            client.getHttpConnectionManager().getParams().setConnectionTimeout(5000);
-            Util.setupProxy(client, Util.snapshotFeedHost);
-
             synchronized (thread) {
                 while (!isStopping()) {
                     synchronized (symbolSubscriptions) {
                         if (symbolSubscriptions.size() != 0) {
                             String[] symbols = symbolSubscriptions.keySet().toArray(new String[symbolSubscriptions.size()]);
-                            fetchLatestSnapshot(client, symbols, false);
+                            fetchLatestSnapshot(symbols, false);
                             setSubscriptionsChanged(false);
                         }
                     }
@@ -239,19 +223,27 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
         }
     }
 
-    protected void fetchLatestSnapshot(HttpClient client, String[] symbols, boolean isStaleUpdate) {
+    protected void fetchLatestSnapshot(String[] symbols, boolean isStaleUpdate) {
         HttpMethod method = null;
-        BufferedReader in = null;
-        String line = ""; //$NON-NLS-1$
+        InputStream in = null;
 
         try {
             method = Util.getSnapshotFeedMethod(symbols);
 
-            client.executeMethod(method);
+            IHttpClientService httpClientService = HttpClientService.getInstance();
+            if (httpClientService.executeConditionalMethod(method) == HttpStatus.SC_NOT_MODIFIED) {
+                return;
+            }
 
-            in = new BufferedReader(new InputStreamReader(method.getResponseBodyAsStream()));
-            while ((line = in.readLine()) != null) {
-                processSnapshotData(line, isStaleUpdate);
+            in = httpClientService.getResponseBodyAsStream(method);
+
+            CSVTokenizer tokenizer = new CSVTokenizer(in);
+            tokenizer.setSeparators(";,"); //$NON-NLS-1$
+            tokenizer.setTimeZone(timeZone);
+
+            // Lines are usually returned in the same order of the requested symbols
+            for (int index = 0; tokenizer.nextLine(); index++) {
+                processSnapshotData(tokenizer, index < symbols.length ? symbols[index] : null, isStaleUpdate);
             }
 
             FeedSubscription[] subscriptions;
@@ -281,79 +273,84 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
         }
     }
 
-    void processSnapshotData(String line, boolean isStaleUpdate) {
-        String[] elements;
-        if (line.indexOf(";") != -1) {
-            elements = line.split(";"); //$NON-NLS-1$
+    void processSnapshotData(CSVTokenizer tokenizer, String expectedSymbol, boolean isStaleUpdate) {
+        if (tokenizer.getFieldCount() <= I_CLOSE) {
+            return;
+        }
+
+        FeedSubscription subscription;
+        if (expectedSymbol != null && tokenizer.equals(I_CODE, expectedSymbol)) {
+            subscription = symbolSubscriptions.get(expectedSymbol);
         }
         else {
-            elements = line.split(","); //$NON-NLS-1$
+            subscription = symbolSubscriptions.get(tokenizer.getString(I_CODE));
         }
 
-        String symbol = stripQuotes(elements[I_CODE]);
-        FeedSubscription subscription = symbolSubscriptions.get(symbol);
         if (subscription != null) {
             IdentifierType identifierType = subscription.getIdentifierType();
             PriceDataType priceData = identifierType.getPriceData();
 
-            priceData.setTime(getDateValue(elements[I_DATE], elements[I_TIME]));
-            priceData.setLast(getDoubleValue(elements[I_LAST]));
-            priceData.setVolume(getLongValue(elements[I_VOLUME]));
+            priceData.setTime(getDateValue(tokenizer, I_DATE, I_TIME));
+            priceData.setLast(getDoubleValue(tokenizer, I_LAST));
+            priceData.setVolume(getLongValue(tokenizer, I_VOLUME));
             subscription.setTrade(priceData.getTime(), priceData.getLast(), null, priceData.getVolume());
 
-            priceData.setBid(getDoubleValue(elements[I_BID]));
+            priceData.setBid(getDoubleValue(tokenizer, I_BID));
             if (!isStaleUpdate) {
-                priceData.setBidSize(null); // getLongValue(elements[I_BID_SIZE]));
+                priceData.setBidSize(null); // getLongValue(tokenizer, I_BID_SIZE));
             }
-            priceData.setAsk(getDoubleValue(elements[I_ASK]));
+            priceData.setAsk(getDoubleValue(tokenizer, I_ASK));
             if (!isStaleUpdate) {
-                priceData.setAskSize(null); // getLongValue(elements[I_ASK_SIZE]));
+                priceData.setAskSize(null); // getLongValue(tokenizer, I_ASK_SIZE));
             }
             subscription.setQuote(priceData.getBid(), priceData.getAsk(), priceData.getBidSize(), priceData.getAskSize());
 
-            priceData.setOpen(getDoubleValue(elements[I_OPEN]));
-            priceData.setHigh(getDoubleValue(elements[I_HIGH]));
-            priceData.setLow(getDoubleValue(elements[I_LOW]));
+            priceData.setOpen(getDoubleValue(tokenizer, I_OPEN));
+            priceData.setHigh(getDoubleValue(tokenizer, I_HIGH));
+            priceData.setLow(getDoubleValue(tokenizer, I_LOW));
             if (priceData.getOpen() != null && priceData.getOpen() != 0.0 && priceData.getHigh() != null && priceData.getHigh() != 0.0 && priceData.getLow() != null && priceData.getLow() != 0.0) {
                 subscription.setTodayOHL(priceData.getOpen(), priceData.getHigh(), priceData.getLow());
             }
 
-            priceData.setClose(getDoubleValue(elements[I_CLOSE]));
+            priceData.setClose(getDoubleValue(tokenizer, I_CLOSE));
             subscription.setLastClose(priceData.getClose(), null);
         }
     }
 
-    protected Date getDateValue(String dateValue, String timeValue) {
-        String date = stripQuotes(dateValue);
-        String time = stripQuotes(timeValue);
-
-        if (date.indexOf("N/A") != -1 && time.indexOf("N/A") != -1) {
-            return null;
+    protected Date getDateValue(CSVTokenizer tokenizer, int dateField, int timeField) {
+        try {
+            long time = tokenizer.getDateTime(dateField, timeField);
+            if (time != -1) {
+                return new Date(time);
+            }
+        } catch (ParseException e) {
+            Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing date/time values", e);
+            YahooActivator.log(status);
         }
+        return null;
+    }
 
+    protected Double getDoubleValue(CSVTokenizer tokenizer, int field) {
         try {
-            if (date.indexOf("N/A") != -1) {
-                date = dateParser.format(Calendar.getInstance(timeZone).getTime());
-            }
-            if (time.indexOf("N/A") != -1) {
-                time = timeParser.format(Calendar.getInstance(timeZone).getTime());
+            if (!tokenizer.isNA(field)) {
+                return tokenizer.getDouble(field);
             }
+        } catch (ParseException e) {
+            Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing number", e);
+            YahooActivator.log(status);
+        }
+        return null;
+    }
 
-            Calendar c = Calendar.getInstance();
-            c.setTime(dateTimeParser.parse(date + " " + time)); //$NON-NLS-1$
-            c.set(Calendar.SECOND, 0);
-            c.set(Calendar.MILLISECOND, 0);
-            c.setTimeZone(TimeZone.getDefault());
-            if (c.get(Calendar.YEAR) < 70) {
-                c.add(Calendar.YEAR, 2000);
+    protected Long getLongValue(CSVTokenizer tokenizer, int field) {
+        try {
+            if (!tokenizer.isNA(field)) {
+                return tokenizer.getLong(field);
             }
-
-            return c.getTime();
         } catch (ParseException e) {
-            Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing date/time values", e);
+            Status status = new Status(IStatus.ERROR, YahooActivator.PLUGIN_ID, 0, "Error parsing number", e);
             YahooActivator.log(status);
         }
-
         return null;
     }
 
@@ -381,16 +378,6 @@ public class SnapshotConnector implements Runnable, IFeedConnector, IExecutableE
         return null;
     }
 
-    protected String stripQuotes(String s) {
-        if (s.startsWith("\"")) {
-            s = s.substring(1);
-        }
-        if (s.endsWith("\"")) {
-            s = s.substring(0, s.length() - 1);
-        }
-        return s;
-    }
-
     protected boolean isSubscriptionsChanged() {
         return subscriptionsChanged;
     }
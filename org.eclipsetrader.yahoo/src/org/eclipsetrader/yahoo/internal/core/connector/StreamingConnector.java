@@ -21,9 +21,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
-import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.URI;
 import org.eclipse.core.net.proxy.IProxyData;
 import org.eclipse.core.net.proxy.IProxyService;
@@ -78,10 +76,6 @@ public class StreamingConnector extends SnapshotConnector {
         long lastActivity = System.currentTimeMillis();
 
         try {
-            HttpClient client = new HttpClient(new MultiThreadedHttpConnectionManager());
-            client.getHttpConnectionManager().getParams().setConnectionTimeout(5000);
-            Util.setupProxy(client, Util.streamingFeedHost);
-
             while (!isStopping()) {
                 // Check if the connection was not yet initialized or there are changed in the subscriptions.
                 if (sc == null || isSubscriptionsChanged()) {
@@ -148,7 +142,7 @@ public class StreamingConnector extends SnapshotConnector {
                     inScript = false;
                     lastActivity = System.currentTimeMillis();
 
-                    fetchLatestSnapshot(client, symbols, false);
+                    fetchLatestSnapshot(symbols, false);
                 }
 
                 if (sc.read(bufferWrapper) > 0) {
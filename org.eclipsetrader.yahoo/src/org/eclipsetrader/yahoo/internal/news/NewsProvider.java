@@ -37,10 +37,6 @@ import javax.xml.namespace.QName;
 import javax.xml.transform.stream.StreamSource;
 
 import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.UsernamePasswordCredentials;
-import org.apache.commons.httpclient.auth.AuthScope;
-import org.eclipse.core.net.proxy.IProxyData;
-import org.eclipse.core.net.proxy.IProxyService;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -50,6 +46,7 @@ import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipsetrader.core.HttpClientService;
 import org.eclipsetrader.core.instruments.ISecurity;
 import org.eclipsetrader.core.repositories.IRepositoryService;
 import org.eclipsetrader.news.core.IHeadLine;
@@ -245,9 +242,6 @@ public class NewsProvider implements INewsProvider {
         today.add(Calendar.HOUR_OF_DAY, -hoursAsRecent);
         Date recentLimitDate = today.getTime();
 
-        HttpClient client = new HttpClient();
-        client.getHttpConnectionManager().getParams().setConnectionTimeout(5000);
-
         try {
             JAXBContext jaxbContext = JAXBContext.newInstance(Category[].class);
             Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
@@ -320,23 +314,7 @@ public class NewsProvider implements INewsProvider {
                     monitor.subTask(feedUrl.toString());
 
                     try {
-                        if (YahooActivator.getDefault() != null) {
-                            BundleContext context = YahooActivator.getDefault().getBundle().getBundleContext();
-                            ServiceReference reference = context.getServiceReference(IProxyService.class.getName());
-                            if (reference != null) {
-                                IProxyService proxy = (IProxyService) context.getService(reference);
-                                IProxyData data = proxy.getProxyDataForHost(feedUrl.getHost(), IProxyData.HTTP_PROXY_TYPE);
-                                if (data != null) {
-                                    if (data.getHost() != null) {
-                                        client.getHostConfiguration().setProxy(data.getHost(), data.getPort());
-                                    }
-                                    if (data.isRequiresAuthentication()) {
-                                        client.getState().setProxyCredentials(AuthScope.ANY, new UsernamePasswordCredentials(data.getUserId(), data.getPassword()));
-                                    }
-                                }
-                                context.ungetService(reference);
-                            }
-                        }
+                        HttpClient client = HttpClientService.getInstance().createHttpClient(feedUrl.getHost());
 
                         SyndFeed feed = fetcher.retrieveFeed(feedUrl, client);
                         for (Iterator<?> iter = feed.getEntries().iterator(); iter.hasNext();) {
@@ -19,7 +19,7 @@ import java.util.List;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipsetrader.yahoo.internal.core.Util;
+import org.eclipsetrader.core.HttpClientService;
 
 import com.sun.syndication.feed.synd.SyndEntry;
 import com.sun.syndication.feed.synd.SyndFeed;
@@ -42,14 +42,11 @@ public class RSSNewsHandler implements INewsHandler {
     public HeadLine[] parseNewsPages(URL[] url, IProgressMonitor monitor) {
         List<HeadLine> list = new ArrayList<HeadLine>();
 
-        HttpClient client = new HttpClient();
-        client.getHttpConnectionManager().getParams().setConnectionTimeout(5000);
-
         for (int i = 0; i < url.length && !monitor.isCanceled(); i++) {
             monitor.subTask(url[i].toString());
 
             try {
-                Util.setupProxy(client, url[i].getHost());
+                HttpClient client = HttpClientService.getInstance().createHttpClient(url[i].getHost());
 
                 SyndFeed feed = fetcher.retrieveFeed(url[i], client);
                 for (Iterator<?> iter = feed.getEntries().iterator(); iter.hasNext();) {